@@ -7,6 +7,7 @@ enum TurmsCloseStatus {
     SERVER_ERROR = 200,
     SERVER_CLOSED,
     SERVER_UNAVAILABLE,
+    SERVER_DRAINING,
 
     CONNECTION_CLOSED = 300,
 
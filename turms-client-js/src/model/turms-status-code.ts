@@ -140,6 +140,9 @@ enum Code {
     ADD_BLOCKED_USER_TO_INACTIVE_GROUP,
     ADD_USER_TO_INACTIVE_GROUP,
     ADD_NEW_MEMBER_WITH_ROLE_HIGHER_THAN_REQUESTER,
+    ADD_EXISTING_MEMBER_TO_GROUP,
+    GROUP_MEMBERS_LIMIT_REACHED,
+    UPDATE_OR_REMOVE_NON_EXISTING_GROUP_MEMBER,
 
     // Group - Blocklist
     NOT_OWNER_OR_MANAGER_TO_ADD_BLOCKED_USER = 3500,
@@ -197,6 +200,7 @@ enum Code {
     // Storage
     STORAGE_NOT_IMPLEMENTED = 6000,
     FILE_TOO_LARGE,
+    STORAGE_QUOTA_EXCEEDED,
 
     // Storage - Extension
     REDUNDANT_REQUEST_FOR_PRESIGNED_PROFILE_URL = 6900
@@ -17,6 +17,9 @@
 package im.turms.client
 
 import im.turms.client.driver.TurmsDriver
+import im.turms.client.driver.transport.TransportFactory
+import im.turms.client.model.ReconnectOptions
+import im.turms.client.store.LocalStore
 import im.turms.client.service.*
 
 /**
@@ -28,10 +31,13 @@ class TurmsClient constructor(
     requestTimeout: Int? = null,
     minRequestInterval: Int? = null,
     heartbeatInterval: Int? = null,
-    storageServerUrl: String? = null
+    storageServerUrl: String? = null,
+    reconnectOptions: ReconnectOptions? = null,
+    transportFactory: TransportFactory? = null,
+    localStore: LocalStore? = null
 ) {
     val driver: TurmsDriver =
-        TurmsDriver(url, connectTimeout, requestTimeout, minRequestInterval, heartbeatInterval)
+        TurmsDriver(url, connectTimeout, requestTimeout, minRequestInterval, heartbeatInterval, reconnectOptions, transportFactory)
     val userService: UserService = UserService(this)
     val groupService: GroupService = GroupService(this)
     val conversationService: ConversationService = ConversationService(this)
@@ -39,7 +45,13 @@ class TurmsClient constructor(
     val storageService: StorageService = StorageService(this, storageServerUrl)
     val notificationService: NotificationService = NotificationService(this)
 
+    /**
+     * Null if no local store is provided
+     */
+    val syncService: SyncService? = localStore?.let { SyncService(this, it) }
+
     suspend fun close() {
+        syncService?.localStore?.close()
         return this.driver.close();
     }
 
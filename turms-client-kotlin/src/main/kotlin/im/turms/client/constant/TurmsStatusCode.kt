@@ -33,6 +33,7 @@ object TurmsStatusCode {
     const val CLIENT_REQUESTS_TOO_FREQUENT = 101
     const val REQUEST_TIMEOUT = 102
     const val ILLEGAL_ARGUMENT = 103
+    const val OFFLINE_REQUEST_QUEUE_FULL = 104
 
     // Server - Notification
     const val INVALID_NOTIFICATION = 200
@@ -157,6 +158,9 @@ object TurmsStatusCode {
     const val ADD_BLOCKED_USER_TO_INACTIVE_GROUP = 3405
     const val ADD_USER_TO_INACTIVE_GROUP = 3406
     const val ADD_NEW_MEMBER_WITH_ROLE_HIGHER_THAN_REQUESTER = 3407
+    const val ADD_EXISTING_MEMBER_TO_GROUP = 3408
+    const val GROUP_MEMBERS_LIMIT_REACHED = 3409
+    const val UPDATE_OR_REMOVE_NON_EXISTING_GROUP_MEMBER = 3410
 
     // Group - Blocklist
     const val NOT_OWNER_OR_MANAGER_TO_ADD_BLOCKED_USER = 3500
@@ -214,6 +218,7 @@ object TurmsStatusCode {
     // Storage
     const val STORAGE_NOT_IMPLEMENTED = 6000
     const val FILE_TOO_LARGE = 6001
+    const val STORAGE_QUOTA_EXCEEDED = 6002
 
     // Storage - Extension
     const val REDUNDANT_REQUEST_FOR_PRESIGNED_PROFILE_URL = 6900
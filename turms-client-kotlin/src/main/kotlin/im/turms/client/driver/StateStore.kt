@@ -16,14 +16,14 @@
  */
 package im.turms.client.driver
 
-import okhttp3.internal.ws.RealWebSocket
+import im.turms.client.driver.transport.Transport
 
 /**
  * @author James Chen
  */
 class StateStore {
     // Connection
-    var websocket: RealWebSocket? = null
+    var transport: Transport? = null
 
     @Volatile
     var isConnected = false
@@ -38,7 +38,7 @@ class StateStore {
     var lastRequestDate = 0L
 
     fun reset() {
-        websocket = null
+        transport = null
         isConnected = false
         isSessionOpen = false
         sessionId = null
@@ -22,15 +22,22 @@ import com.google.protobuf.Message
 import im.turms.client.driver.service.ConnectionService
 import im.turms.client.driver.service.HeartbeatService
 import im.turms.client.driver.service.MessageService
+import im.turms.client.driver.service.ReconnectService
+import im.turms.client.driver.transport.TransportFactory
+import im.turms.client.driver.transport.TransportMetrics
 import im.turms.client.extension.camelToSnakeCase
 import im.turms.client.model.ConnectionDisconnectInfo
+import im.turms.client.model.ConnectionState
+import im.turms.client.model.ReconnectOptions
 import im.turms.common.model.dto.notification.TurmsNotification
 import im.turms.common.model.dto.request.TurmsRequest
+import im.turms.common.model.dto.request.user.CreateSessionRequest
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.async
 import kotlinx.coroutines.coroutineScope
 import java.nio.ByteBuffer
+import java.util.*
 import java.util.concurrent.ScheduledThreadPoolExecutor
 import java.util.logging.Level
 import java.util.logging.Logger
@@ -44,7 +51,9 @@ class TurmsDriver(
     connectTimeout: Int?,
     requestTimeout: Int?,
     minRequestInterval: Int?,
-    heartbeatInterval: Int?
+    heartbeatInterval: Int?,
+    reconnectOptions: ReconnectOptions? = null,
+    transportFactory: TransportFactory? = null
 ) : CoroutineScope {
 
     override val coroutineContext: CoroutineContext =
@@ -52,7 +61,8 @@ class TurmsDriver(
     internal val stateStore: StateStore = StateStore()
 
     private val connectionService: ConnectionService =
-        ConnectionService(coroutineContext, stateStore, websocketUrl, connectTimeout).apply {
+        ConnectionService(coroutineContext, stateStore, websocketUrl, connectTimeout, transportFactory).apply {
+            addOnConnectedListener { reconnectService.updateState(ConnectionState.CONNECTED) }
             addOnDisconnectedListener { onConnectionDisconnected() }
             addMessageListener { byteBuffer: ByteBuffer -> onMessage(byteBuffer) }
         }
@@ -60,6 +70,9 @@ class TurmsDriver(
         HeartbeatService(coroutineContext, stateStore, heartbeatInterval)
     private val messageService: MessageService =
         MessageService(coroutineContext, stateStore, requestTimeout, minRequestInterval)
+    private val reconnectService: ReconnectService =
+        ReconnectService(coroutineContext, stateStore, reconnectOptions, ::resumeSession, ::send)
+    private val onSessionResumedListeners: MutableList<(CreateSessionRequest) -> Unit> = LinkedList()
 
     // Close
 
@@ -67,9 +80,11 @@ class TurmsDriver(
         val closeConnectionService = async { connectionService.close() }
         val closeHeartbeatService = async { heartbeatService.close() }
         val closeMessageService = async { messageService.close() }
+        val closeReconnectService = async { reconnectService.close() }
         closeConnectionService.await()
         closeHeartbeatService.await()
         closeMessageService.await()
+        closeReconnectService.await()
     }
 
     // Heartbeat Service
@@ -88,13 +103,31 @@ class TurmsDriver(
     suspend fun connect(
         wsUrl: String? = null,
         connectTimeout: Int? = null
-    ) = connectionService.connect(wsUrl, connectTimeout)
+    ) {
+        reconnectService.updateState(ConnectionState.CONNECTING)
+        try {
+            connectionService.connect(wsUrl, connectTimeout)
+        } catch (e: Exception) {
+            reconnectService.updateState(ConnectionState.DISCONNECTED)
+            throw e
+        }
+        reconnectService.onConnectedByUser()
+    }
 
-    suspend fun disconnect() = connectionService.disconnect()
+    suspend fun disconnect() {
+        reconnectService.disable()
+        connectionService.disconnect()
+    }
 
     val isConnected: Boolean
         get() = stateStore.isConnected
 
+    /**
+     * The metrics of the current transport, or null if it has never connected
+     */
+    val transportMetrics: TransportMetrics?
+        get() = stateStore.transport?.metrics
+
     // Connection Listeners
 
     fun addOnConnectedListener(listener: () -> Unit) =
@@ -109,12 +142,51 @@ class TurmsDriver(
     fun removeOnDisconnectedListener(listener: (ConnectionDisconnectInfo) -> Unit) =
         connectionService.removeOnDisconnectedListener(listener)
 
+    // Reconnect Service
+
+    val connectionState: ConnectionState
+        get() = reconnectService.state
+
+    fun addConnectionStateListener(listener: (ConnectionState) -> Unit) =
+        reconnectService.addStateListener(listener)
+
+    fun removeConnectionStateListener(listener: (ConnectionState) -> Unit) =
+        reconnectService.removeStateListener(listener)
+
+    /**
+     * Notified with the request used to log in again after the session is resumed automatically
+     */
+    fun addOnSessionResumedListener(listener: (CreateSessionRequest) -> Unit) =
+        onSessionResumedListeners.add(listener)
+
+    fun removeOnSessionResumedListener(listener: (CreateSessionRequest) -> Unit) =
+        onSessionResumedListeners.remove(listener)
+
+    /**
+     * Should be called by the app when the network becomes available to reconnect immediately
+     */
+    fun onNetworkAvailable() = reconnectService.onNetworkAvailable()
+
+    /**
+     * Should be called by the app when the network becomes unavailable to stop reconnect attempts
+     */
+    fun onNetworkUnavailable() = reconnectService.onNetworkUnavailable()
+
     // Message Service
 
     suspend fun send(requestBuilder: TurmsRequest.Builder): TurmsNotification {
+        if (!stateStore.isSessionOpen
+            && reconnectService.isReconnecting
+            && reconnectService.isIdempotent(requestBuilder)
+        ) {
+            return reconnectService.enqueue(requestBuilder)
+        }
         val notification = messageService.sendRequest(requestBuilder)
         if (requestBuilder.hasCreateSessionRequest()) {
             heartbeatService.start()
+            reconnectService.onLoggedIn(requestBuilder.createSessionRequest)
+        } else {
+            reconnectService.onRequestSucceeded(requestBuilder.build())
         }
         return notification
     }
@@ -141,6 +213,29 @@ class TurmsDriver(
         stateStore.reset()
         heartbeatService.onDisconnected()
         messageService.onDisconnected()
+        reconnectService.onDisconnected()
+    }
+
+    /**
+     * Connect and log in again with the last credentials and device status
+     */
+    private suspend fun resumeSession(sessionRequest: CreateSessionRequest?) {
+        connectionService.connect()
+        if (sessionRequest == null) {
+            return
+        }
+        try {
+            messageService.sendRequest(TurmsRequest.newBuilder().setCreateSessionRequest(sessionRequest))
+        } catch (e: Exception) {
+            connectionService.disconnect()
+            throw e
+        }
+        stateStore.isSessionOpen = true
+        heartbeatService.start()
+        reconnectService.onLoggedIn(sessionRequest)
+        for (listener in onSessionResumedListeners) {
+            listener(sessionRequest)
+        }
     }
 
     private fun onMessage(byteBuffer: ByteBuffer) {
@@ -160,6 +255,7 @@ class TurmsDriver(
                 stateStore.serverId = notification.data.userSession.serverId
             } else if (notification.hasCloseStatus()) {
                 stateStore.isSessionOpen = false
+                reconnectService.onSessionClosed(notification.closeStatus)
             }
             messageService.didReceiveNotification(notification)
         } else {
@@ -20,15 +20,12 @@ import im.turms.client.constant.TurmsStatusCode
 import im.turms.client.driver.StateStore
 import im.turms.client.exception.TurmsBusinessException
 import im.turms.client.extension.tryResumeWithException
+import im.turms.client.driver.transport.TransportFactory
+import im.turms.client.driver.transport.TransportListener
 import im.turms.client.model.ConnectionDisconnectInfo
-import okhttp3.*
-import okhttp3.HttpUrl.Companion.toHttpUrl
-import okhttp3.internal.ws.RealWebSocket
-import okio.ByteString
 import java.nio.ByteBuffer
 import java.util.*
 import java.util.concurrent.ConcurrentLinkedQueue
-import java.util.concurrent.TimeUnit
 import kotlin.coroutines.*
 
 /**
@@ -38,12 +35,13 @@ class ConnectionService(
     coroutineContext: CoroutineContext,
     stateStore: StateStore,
     wsUrl: String?,
-    connectTimeout: Int?
+    connectTimeout: Int?,
+    transportFactory: TransportFactory?
 ) : BaseService(coroutineContext, stateStore) {
     private val initialWsUrl: String = wsUrl ?: DEFAULT_WEBSOCKET_URL
     private val initialConnectTimeout: Int =
         if (connectTimeout == null || connectTimeout <= 0) DEFAULT_CONNECT_TIMEOUT else connectTimeout
-    private var httpClient: OkHttpClient = OkHttpClient().newBuilder().build()
+    private val transportFactory: TransportFactory = transportFactory ?: TransportFactory.DEFAULT
     private val disconnectFutures = ConcurrentLinkedQueue<Continuation<Unit>>()
     private val onConnectedListeners: MutableList<() -> Unit> = LinkedList()
     private val onDisconnectedListeners: MutableList<(ConnectionDisconnectInfo) -> Unit> = LinkedList()
@@ -110,7 +108,7 @@ class ConnectionService(
         val wsUrl = wsUrl ?: initialWsUrl
         val connectTimeout = connectTimeout ?: initialConnectTimeout
         if (stateStore.isConnected) {
-            if (wsUrl.toHttpUrl() == stateStore.websocket?.request()?.url) {
+            if (wsUrl == stateStore.transport?.url) {
                 cont.resume(Unit)
             } else {
                 cont.resumeWithException(TurmsBusinessException(TurmsStatusCode.CLIENT_SESSION_ALREADY_ESTABLISHED))
@@ -118,48 +116,36 @@ class ConnectionService(
             return@suspendCoroutine
         }
         resetStates()
-        val isConnectTimeoutChanged = connectTimeout != httpClient.connectTimeoutMillis
-        if (isConnectTimeoutChanged) {
-            httpClient = httpClient.newBuilder()
-                .connectTimeout(connectTimeout.toLong(), TimeUnit.MILLISECONDS)
-                .build()
-        }
-        val request = Request.Builder()
-            .url(wsUrl)
-            .build()
-        stateStore.websocket = httpClient.newWebSocket(request, object : WebSocketListener() {
-            override fun onOpen(webSocket: WebSocket, response: Response) {
+        stateStore.transport = transportFactory.connect(wsUrl, connectTimeout, object : TransportListener {
+            override fun onOpen() {
                 onWebSocketOpen()
                 cont.resume(Unit)
             }
 
-            override fun onMessage(webSocket: WebSocket, bytes: ByteString) {
-                notifyMessageListeners(bytes.asByteBuffer())
+            override fun onMessage(data: ByteBuffer) {
+                notifyMessageListeners(data)
             }
 
-            override fun onClosing(webSocket: WebSocket, code: Int, reason: String) {
+            override fun onClosing() {
                 stateStore.isConnected = false
             }
 
-            override fun onClosed(webSocket: WebSocket, code: Int, reason: String) {
-                onWebSocketClose(code, reason, null)
+            override fun onClosed(code: Int, reason: String?) {
+                onWebSocketClose(wsUrl, code, reason, null)
                 cont.tryResumeWithException(IllegalStateException())
             }
 
-            /**
-             * @param response is not null when it failed at handshake stage
-             */
-            override fun onFailure(webSocket: WebSocket, t: Throwable, response: Response?) {
-                onWebSocketClose(1006, null, t)
+            override fun onFailure(t: Throwable) {
+                onWebSocketClose(wsUrl, 1006, null, t)
                 cont.tryResumeWithException(t)
             }
-        }) as RealWebSocket
+        })
     }
 
     suspend fun disconnect(): Unit = suspendCoroutine { cont ->
         if (stateStore.isConnected) {
             // close is a synchronous method
-            val wasEnqueued = stateStore.websocket!!.close(1000, null)
+            val wasEnqueued = stateStore.transport!!.close(1000, null)
             if (wasEnqueued) {
                 disconnectFutures.offer(cont)
             } else {
@@ -177,12 +163,12 @@ class ConnectionService(
     }
 
     private fun onWebSocketClose(
+        url: String,
         code: Int,
         reason: String?,
         throwable: Throwable?
     ): ConnectionDisconnectInfo {
         val wasConnected = stateStore.isConnected
-        val url = stateStore.websocket!!.request().url.toUrl()
         completeDisconnectFutures()
         val disconnectInfo = ConnectionDisconnectInfo(wasConnected, url, code, reason, throwable)
         notifyOnDisconnectedListeners(disconnectInfo)
@@ -24,7 +24,7 @@ import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.async
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.isActive
-import okio.ByteString
+import java.nio.ByteBuffer
 import java.util.concurrent.ConcurrentLinkedQueue
 import kotlin.coroutines.*
 
@@ -72,7 +72,7 @@ class HeartbeatService(
             cont.resumeWithException(TurmsBusinessException(TurmsStatusCode.CLIENT_SESSION_HAS_BEEN_CLOSED))
             return@suspendCoroutine
         }
-        val wasEnqueued = stateStore.websocket!!.send(ByteString.EMPTY)
+        val wasEnqueued = stateStore.transport!!.send(EMPTY_BUFFER)
         if (wasEnqueued) {
             heartbeatContinuationQueue.offer(cont)
         } else {
@@ -111,6 +111,7 @@ class HeartbeatService(
 
     companion object {
         private const val HEARTBEAT_FAILURE_REQUEST_ID = -100L
+        private val EMPTY_BUFFER: ByteBuffer = ByteBuffer.allocate(0)
     }
 
 }
\ No newline at end of file
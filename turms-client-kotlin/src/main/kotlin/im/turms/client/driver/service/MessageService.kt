@@ -26,7 +26,6 @@ import im.turms.common.model.dto.request.TurmsRequest
 import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.async
 import kotlinx.coroutines.delay
-import okio.ByteString.Companion.toByteString
 import java.nio.ByteBuffer
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
@@ -90,7 +89,7 @@ class MessageService(
             val wasRequestAbsent = requestMap.putIfAbsent(requestId, currentRequest) == null
             if (wasRequestAbsent) {
                 val data = ByteBuffer.wrap(request.toByteArray())
-                val wasEnqueued: Boolean = stateStore.websocket!!.send(data.toByteString())
+                val wasEnqueued: Boolean = stateStore.transport!!.send(data)
                 if (!wasEnqueued) {
                     cont.resumeWithException(TurmsBusinessException(TurmsStatusCode.MESSAGE_IS_REJECTED))
                 }
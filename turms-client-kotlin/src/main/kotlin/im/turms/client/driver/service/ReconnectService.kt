@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.service
+
+import im.turms.client.constant.TurmsStatusCode
+import im.turms.client.driver.StateStore
+import im.turms.client.exception.TurmsBusinessException
+import im.turms.client.model.ConnectionState
+import im.turms.client.model.ReconnectOptions
+import im.turms.common.constant.statuscode.SessionCloseStatus
+import im.turms.common.model.dto.notification.TurmsNotification
+import im.turms.common.model.dto.request.TurmsRequest
+import im.turms.common.model.dto.request.user.CreateSessionRequest
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ThreadLocalRandom
+import java.util.logging.Level
+import java.util.logging.Logger
+import kotlin.coroutines.CoroutineContext
+import kotlin.math.pow
+
+/**
+ * Reconnects with exponential backoff and jitter after the connection is lost unexpectedly,
+ * and holds idempotent requests sent while reconnecting to replay them once the session is resumed.
+ *
+ * @author James Chen
+ */
+class ReconnectService(
+    coroutineContext: CoroutineContext,
+    stateStore: StateStore,
+    reconnectOptions: ReconnectOptions?,
+    private val reconnect: suspend (CreateSessionRequest?) -> Unit,
+    private val sendRequest: suspend (TurmsRequest.Builder) -> TurmsNotification
+) : BaseService(coroutineContext, stateStore) {
+    private val options = reconnectOptions ?: ReconnectOptions()
+    private val stateListeners: MutableList<(ConnectionState) -> Unit> = CopyOnWriteArrayList()
+    private val offlineRequests: Deque<OfflineRequest> = LinkedList()
+
+    @Volatile
+    var state = ConnectionState.DISCONNECTED
+        private set
+
+    /**
+     * The request used to log in last time, which is used to log in again after reconnecting
+     */
+    @Volatile
+    var sessionRequest: CreateSessionRequest? = null
+        private set
+
+    private var isEnabled = false
+    private var isNetworkAvailable = true
+    private var attempts = 0
+    private var reconnectJob: Job? = null
+
+    val isReconnecting: Boolean
+        get() = isEnabled && when (state) {
+            ConnectionState.WAITING_TO_RECONNECT,
+            ConnectionState.WAITING_FOR_NETWORK -> true
+            ConnectionState.CONNECTING,
+            ConnectionState.CONNECTED -> reconnectJob?.isActive == true
+            else -> false
+        }
+
+    // Listeners
+
+    fun addStateListener(listener: (ConnectionState) -> Unit) {
+        stateListeners.add(listener)
+    }
+
+    fun removeStateListener(listener: (ConnectionState) -> Unit) {
+        stateListeners.remove(listener)
+    }
+
+    fun updateState(state: ConnectionState) {
+        if (this.state == state) {
+            return
+        }
+        this.state = state
+        for (listener in stateListeners) {
+            try {
+                listener(state)
+            } catch (e: Exception) {
+                LOGGER.log(Level.SEVERE, "Failed to notify the connection state listener", e)
+            }
+        }
+    }
+
+    // Session
+
+    /**
+     * Reconnect automatically only after the client connects successfully by itself
+     */
+    @Synchronized
+    fun onConnectedByUser() {
+        isEnabled = options.enabled
+        attempts = 0
+    }
+
+    @Synchronized
+    fun onLoggedIn(request: CreateSessionRequest) {
+        sessionRequest = request
+        updateState(ConnectionState.LOGGED_IN)
+    }
+
+    @Synchronized
+    fun onRequestSucceeded(request: TurmsRequest) {
+        val sessionRequest = sessionRequest ?: return
+        if (request.hasUpdateUserOnlineStatusRequest()) {
+            val statusRequest = request.updateUserOnlineStatusRequest
+            if (statusRequest.deviceTypesCount == 0) {
+                this.sessionRequest = sessionRequest.toBuilder()
+                    .setUserStatus(statusRequest.userStatus)
+                    .build()
+            }
+        } else if (request.hasDeleteSessionRequest()) {
+            this.sessionRequest = null
+        }
+    }
+
+    /**
+     * Stop reconnecting if the session is closed by the user or the server on purpose
+     */
+    fun onSessionClosed(closeStatus: Int) {
+        when (closeStatus) {
+            SessionCloseStatus.DISCONNECTED_BY_CLIENT.code,
+            SessionCloseStatus.DISCONNECTED_BY_OTHER_DEVICE.code,
+            SessionCloseStatus.DISCONNECTED_BY_ADMIN.code,
+            SessionCloseStatus.USER_IS_DELETED_OR_INACTIVATED.code -> disable()
+        }
+    }
+
+    @Synchronized
+    fun disable() {
+        isEnabled = false
+        sessionRequest = null
+        reconnectJob?.cancel()
+        reconnectJob = null
+        rejectOfflineRequests()
+    }
+
+    // Network hooks
+
+    @Synchronized
+    fun onNetworkAvailable() {
+        isNetworkAvailable = true
+        if (isEnabled && state == ConnectionState.WAITING_FOR_NETWORK) {
+            attempts = 0
+            scheduleReconnect(0)
+        }
+    }
+
+    @Synchronized
+    fun onNetworkUnavailable() {
+        isNetworkAvailable = false
+        if (state == ConnectionState.WAITING_TO_RECONNECT) {
+            reconnectJob?.cancel()
+            reconnectJob = null
+            updateState(ConnectionState.WAITING_FOR_NETWORK)
+        }
+    }
+
+    // Reconnect
+
+    @Synchronized
+    override fun onDisconnected() {
+        // The failures of the current attempt are handled by the attempt itself
+        if (reconnectJob?.isActive == true) {
+            return
+        }
+        if (isEnabled) {
+            scheduleReconnect(nextDelay())
+        } else {
+            updateState(ConnectionState.DISCONNECTED)
+            rejectOfflineRequests()
+        }
+    }
+
+    private fun scheduleReconnect(delayMillis: Long) {
+        if (!isNetworkAvailable) {
+            updateState(ConnectionState.WAITING_FOR_NETWORK)
+            return
+        }
+        if (attempts >= options.maxAttempts) {
+            disable()
+            updateState(ConnectionState.DISCONNECTED)
+            return
+        }
+        attempts++
+        updateState(ConnectionState.WAITING_TO_RECONNECT)
+        reconnectJob = launch {
+            delay(delayMillis)
+            updateState(ConnectionState.CONNECTING)
+            try {
+                reconnect(sessionRequest)
+                synchronized(this@ReconnectService) {
+                    attempts = 0
+                    // The attempt is done, so a disconnection while replaying needs a new attempt
+                    reconnectJob = null
+                }
+                replayOfflineRequests()
+            } catch (e: Exception) {
+                onReconnectFailed(e)
+            }
+        }
+    }
+
+    @Synchronized
+    private fun onReconnectFailed(e: Exception) {
+        if (!isEnabled) {
+            return
+        }
+        val isRetryable = e !is TurmsBusinessException || when (e.code) {
+            TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED,
+            TurmsStatusCode.LOGGING_IN_USER_NOT_ACTIVE,
+            TurmsStatusCode.LOGIN_FROM_FORBIDDEN_DEVICE_TYPE,
+            TurmsStatusCode.SESSION_SIMULTANEOUS_CONFLICTS_DECLINE -> false
+            else -> true
+        }
+        if (isRetryable) {
+            LOGGER.log(Level.INFO, "Failed to reconnect and will retry", e)
+            scheduleReconnect(nextDelay())
+        } else {
+            LOGGER.log(Level.WARNING, "Failed to reconnect and stop retrying", e)
+            disable()
+            updateState(ConnectionState.DISCONNECTED)
+        }
+    }
+
+    private fun nextDelay(): Long {
+        val backoff = (options.initialDelay * options.multiplier.pow(attempts))
+            .coerceAtMost(options.maxDelay.toDouble())
+        val jitter = options.jitter.coerceIn(0.0, 1.0)
+        val randomFactor = 1 - jitter * ThreadLocalRandom.current().nextDouble()
+        return (backoff * randomFactor).toLong()
+    }
+
+    // Offline requests
+
+    fun isIdempotent(requestBuilder: TurmsRequest.Builder): Boolean =
+        requestBuilder.kindCase.name.startsWith("QUERY_")
+
+    suspend fun enqueue(requestBuilder: TurmsRequest.Builder): TurmsNotification {
+        val request = OfflineRequest(requestBuilder, CompletableDeferred())
+        synchronized(offlineRequests) {
+            if (offlineRequests.size >= options.offlineRequestQueueCapacity) {
+                throw TurmsBusinessException(TurmsStatusCode.OFFLINE_REQUEST_QUEUE_FULL)
+            }
+            offlineRequests.offer(request)
+        }
+        return withTimeoutOrNull(options.offlineRequestTimeout) {
+            request.deferred.await()
+        } ?: run {
+            synchronized(offlineRequests) {
+                offlineRequests.remove(request)
+            }
+            throw TurmsBusinessException(TurmsStatusCode.REQUEST_TIMEOUT)
+        }
+    }
+
+    private suspend fun replayOfflineRequests() {
+        while (true) {
+            val request = synchronized(offlineRequests) { offlineRequests.poll() } ?: return
+            try {
+                request.deferred.complete(sendRequest(request.requestBuilder))
+            } catch (e: Exception) {
+                request.deferred.completeExceptionally(e)
+            }
+        }
+    }
+
+    private fun rejectOfflineRequests() {
+        val e = TurmsBusinessException(TurmsStatusCode.CLIENT_SESSION_HAS_BEEN_CLOSED)
+        while (true) {
+            val request = synchronized(offlineRequests) { offlineRequests.poll() } ?: return
+            request.deferred.completeExceptionally(e)
+        }
+    }
+
+    override suspend fun close() {
+        disable()
+        updateState(ConnectionState.DISCONNECTED)
+    }
+
+    private data class OfflineRequest(
+        val requestBuilder: TurmsRequest.Builder,
+        val deferred: CompletableDeferred<TurmsNotification>
+    )
+
+    companion object {
+        private val LOGGER = Logger.getLogger(ReconnectService::class.java.name)
+    }
+
+}
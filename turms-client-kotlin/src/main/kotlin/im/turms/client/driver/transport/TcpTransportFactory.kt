@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.InetSocketAddress
+import java.net.Socket
+import java.net.URI
+import java.nio.ByteBuffer
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.net.SocketFactory
+import javax.net.ssl.SSLSocket
+import javax.net.ssl.SSLSocketFactory
+
+/**
+ * Connects to the TCP server of turms-gateway, which frames messages with varint32 length prefixes
+ *
+ * @param useTls whether to use TLS. If [sslSocketFactory] is null, the default SSL socket factory is used
+ * @author James Chen
+ */
+class TcpTransportFactory(
+    private val useTls: Boolean = false,
+    private val sslSocketFactory: SSLSocketFactory? = null,
+    private val maxFrameLength: Int = 1024 * 1024
+) : TransportFactory {
+
+    override fun connect(url: String, connectTimeout: Int, listener: TransportListener): Transport {
+        val uri = URI(url)
+        val host = uri.host ?: throw IllegalArgumentException("The host is missing in the URL: $url")
+        val port = if (uri.port == -1) DEFAULT_PORT else uri.port
+        val transport = TcpTransport(url, listener)
+        transport.start(host, port, connectTimeout)
+        return transport
+    }
+
+    private inner class TcpTransport(
+        override val url: String,
+        private val listener: TransportListener
+    ) : Transport {
+        override val metrics = TransportMetrics()
+        private val isClosed = AtomicBoolean()
+        private val writer: ExecutorService = Executors.newSingleThreadExecutor { r ->
+            Thread(r, "turms-tcp-writer").apply { isDaemon = true }
+        }
+
+        @Volatile
+        private var socket: Socket? = null
+
+        @Volatile
+        private var output: OutputStream? = null
+
+        fun start(host: String, port: Int, connectTimeout: Int) {
+            Thread({ run(host, port, connectTimeout) }, "turms-tcp-reader")
+                .apply { isDaemon = true }
+                .start()
+        }
+
+        private fun run(host: String, port: Int, connectTimeout: Int) {
+            val input: InputStream
+            try {
+                val plainSocket = SocketFactory.getDefault().createSocket()
+                plainSocket.tcpNoDelay = true
+                plainSocket.connect(InetSocketAddress(host, port), connectTimeout)
+                val socket = if (useTls) {
+                    val factory = sslSocketFactory ?: SSLSocketFactory.getDefault() as SSLSocketFactory
+                    (factory.createSocket(plainSocket, host, port, true) as SSLSocket)
+                        .apply { startHandshake() }
+                } else {
+                    plainSocket
+                }
+                this.socket = socket
+                input = socket.getInputStream()
+                output = socket.getOutputStream()
+            } catch (e: IOException) {
+                fail(e)
+                return
+            }
+            if (isClosed.get()) {
+                closeSocket()
+                return
+            }
+            listener.onOpen()
+            val decoder = VarintFrameCodec.Decoder(maxFrameLength)
+            val bytes = ByteArray(8192)
+            try {
+                while (!isClosed.get()) {
+                    val count = input.read(bytes)
+                    if (count == -1) {
+                        // The server closed the connection
+                        onClosed(NORMAL_CLOSURE_CODE, null)
+                        return
+                    }
+                    decoder.decode(bytes, count) { payload, wireBytes ->
+                        metrics.onReceived(payload.remaining(), wireBytes)
+                        listener.onMessage(payload)
+                    }
+                }
+            } catch (e: IOException) {
+                fail(e)
+            }
+        }
+
+        override fun send(data: ByteBuffer): Boolean {
+            val output = output
+            if (isClosed.get() || output == null) {
+                return false
+            }
+            val frame = VarintFrameCodec.encode(data)
+            val payloadSize = data.remaining()
+            return try {
+                writer.execute {
+                    try {
+                        output.write(frame)
+                        output.flush()
+                        metrics.onSent(payloadSize, frame.size)
+                    } catch (e: IOException) {
+                        fail(e)
+                    }
+                }
+                true
+            } catch (e: RejectedExecutionException) {
+                false
+            }
+        }
+
+        /**
+         * TCP has no close frame, so the connection is closed directly
+         */
+        override fun close(code: Int, reason: String?): Boolean {
+            if (isClosed.get()) {
+                return false
+            }
+            listener.onClosing()
+            // Close after the enqueued messages are written
+            return try {
+                writer.execute { onClosed(code, reason) }
+                true
+            } catch (e: RejectedExecutionException) {
+                false
+            }
+        }
+
+        private fun onClosed(code: Int, reason: String?) {
+            if (isClosed.compareAndSet(false, true)) {
+                closeSocket()
+                listener.onClosed(code, reason)
+            }
+        }
+
+        private fun fail(t: Throwable) {
+            if (isClosed.compareAndSet(false, true)) {
+                closeSocket()
+                listener.onFailure(t)
+            }
+        }
+
+        private fun closeSocket() {
+            writer.shutdown()
+            try {
+                socket?.close()
+            } catch (ignored: IOException) {
+            }
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_PORT = 11510
+        private const val NORMAL_CLOSURE_CODE = 1000
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import java.nio.ByteBuffer
+
+/**
+ * A connection to the gateway that transfers framed binary messages.
+ * An empty message is a heartbeat
+ *
+ * @author James Chen
+ */
+interface Transport {
+
+    val url: String
+
+    val metrics: TransportMetrics
+
+    /**
+     * @return true if the message is enqueued to be sent
+     */
+    fun send(data: ByteBuffer): Boolean
+
+    /**
+     * @return true if the close request is enqueued
+     */
+    fun close(code: Int, reason: String?): Boolean
+
+}
+
+/**
+ * The callbacks are invoked by the I/O thread of the transport.
+ * Only one of [onClosed] and [onFailure] will be invoked once for a transport
+ */
+interface TransportListener {
+
+    fun onOpen()
+
+    fun onMessage(data: ByteBuffer)
+
+    fun onClosing()
+
+    fun onClosed(code: Int, reason: String?)
+
+    fun onFailure(t: Throwable)
+
+}
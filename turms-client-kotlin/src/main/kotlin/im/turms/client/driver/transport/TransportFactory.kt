@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+/**
+ * @author James Chen
+ */
+fun interface TransportFactory {
+
+    /**
+     * Start connecting to the URL asynchronously. The result is notified to the listener
+     */
+    fun connect(url: String, connectTimeout: Int, listener: TransportListener): Transport
+
+    companion object {
+        private val webSocketTransportFactory by lazy { WebSocketTransportFactory() }
+        private val tcpTransportFactory by lazy { TcpTransportFactory() }
+        private val tlsTransportFactory by lazy { TcpTransportFactory(useTls = true) }
+
+        /**
+         * Choose the transport by the scheme of the URL:
+         * "ws" and "wss" for WebSocket, "tcp" for TCP, and "tls" for TCP over TLS
+         */
+        val DEFAULT = TransportFactory { url, connectTimeout, listener ->
+            val factory = when (url.substringBefore("://").lowercase()) {
+                "tcp" -> tcpTransportFactory
+                "tls" -> tlsTransportFactory
+                else -> webSocketTransportFactory
+            }
+            factory.connect(url, connectTimeout, listener)
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The statistics of a transport.
+ * The wire bytes include the overhead of framing but exclude the overhead of TCP/IP and TLS
+ *
+ * @author James Chen
+ */
+class TransportMetrics {
+    val sentFrames = AtomicLong()
+    val sentPayloadBytes = AtomicLong()
+    val sentWireBytes = AtomicLong()
+    val receivedFrames = AtomicLong()
+    val receivedPayloadBytes = AtomicLong()
+    val receivedWireBytes = AtomicLong()
+
+    fun onSent(payloadBytes: Int, wireBytes: Int) {
+        sentFrames.incrementAndGet()
+        sentPayloadBytes.addAndGet(payloadBytes.toLong())
+        sentWireBytes.addAndGet(wireBytes.toLong())
+    }
+
+    fun onReceived(payloadBytes: Int, wireBytes: Int) {
+        receivedFrames.incrementAndGet()
+        receivedPayloadBytes.addAndGet(payloadBytes.toLong())
+        receivedWireBytes.addAndGet(wireBytes.toLong())
+    }
+
+    val overheadBytes: Long
+        get() = sentWireBytes.get() - sentPayloadBytes.get() + receivedWireBytes.get() - receivedPayloadBytes.get()
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * Frames messages with a prefix of the protobuf base 128 varint of the message length,
+ * which is the same as ProtobufVarint32LengthFieldPrepender and ProtobufVarint32FrameDecoder of Netty
+ * used by the TCP server of turms-gateway
+ *
+ * @author James Chen
+ */
+object VarintFrameCodec {
+
+    const val MAX_VARINT32_BYTES = 5
+
+    fun computeVarint32Size(value: Int): Int = when {
+        value and (0.inv() shl 7) == 0 -> 1
+        value and (0.inv() shl 14) == 0 -> 2
+        value and (0.inv() shl 21) == 0 -> 3
+        value and (0.inv() shl 28) == 0 -> 4
+        else -> 5
+    }
+
+    fun encode(payload: ByteBuffer): ByteArray {
+        val length = payload.remaining()
+        val headerSize = computeVarint32Size(length)
+        val frame = ByteArray(headerSize + length)
+        var value = length
+        var index = 0
+        while (value and 0x7F.inv() != 0) {
+            frame[index++] = ((value and 0x7F) or 0x80).toByte()
+            value = value ushr 7
+        }
+        frame[index] = value.toByte()
+        payload.duplicate().get(frame, headerSize, length)
+        return frame
+    }
+
+    /**
+     * Accumulates the received bytes and splits them into frames.
+     * Not thread-safe and should be used by the reader thread only
+     */
+    class Decoder(private val maxFrameLength: Int = 1024 * 1024) {
+        private var buffer = ByteArray(4096)
+        private var size = 0
+
+        /**
+         * @param onFrame is called with the payload of every complete frame and the size of the frame on the wire
+         */
+        fun decode(bytes: ByteArray, length: Int, onFrame: (ByteBuffer, Int) -> Unit) {
+            ensureCapacity(size + length)
+            System.arraycopy(bytes, 0, buffer, size, length)
+            size += length
+            var position = 0
+            while (position < size) {
+                var frameLength = 0
+                var shift = 0
+                var headerSize = 0
+                var isHeaderComplete = false
+                while (position + headerSize < size) {
+                    val b = buffer[position + headerSize].toInt()
+                    headerSize++
+                    frameLength = frameLength or ((b and 0x7F) shl shift)
+                    if (b and 0x80 == 0) {
+                        isHeaderComplete = true
+                        break
+                    }
+                    shift += 7
+                    if (headerSize == MAX_VARINT32_BYTES) {
+                        throw IOException("Malformed varint32 frame length")
+                    }
+                }
+                if (!isHeaderComplete) {
+                    break
+                }
+                if (frameLength < 0 || frameLength > maxFrameLength) {
+                    throw IOException("The frame length $frameLength exceeds the max frame length $maxFrameLength")
+                }
+                val frameEnd = position + headerSize + frameLength
+                if (frameEnd > size) {
+                    break
+                }
+                val payload = ByteBuffer.wrap(buffer.copyOfRange(position + headerSize, frameEnd))
+                position = frameEnd
+                onFrame(payload, headerSize + frameLength)
+            }
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, size - position)
+                size -= position
+            }
+        }
+
+        private fun ensureCapacity(capacity: Int) {
+            if (capacity > buffer.size) {
+                buffer = buffer.copyOf(capacity.coerceAtLeast(buffer.size * 2))
+            }
+        }
+    }
+
+}
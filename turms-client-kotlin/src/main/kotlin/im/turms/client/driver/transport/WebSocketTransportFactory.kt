@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.WebSocket
+import okhttp3.WebSocketListener
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
+import java.nio.ByteBuffer
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author James Chen
+ */
+class WebSocketTransportFactory : TransportFactory {
+
+    private var httpClient: OkHttpClient = OkHttpClient().newBuilder().build()
+
+    @Synchronized
+    private fun getHttpClient(connectTimeout: Int): OkHttpClient {
+        if (connectTimeout != httpClient.connectTimeoutMillis) {
+            httpClient = httpClient.newBuilder()
+                .connectTimeout(connectTimeout.toLong(), TimeUnit.MILLISECONDS)
+                .build()
+        }
+        return httpClient
+    }
+
+    override fun connect(url: String, connectTimeout: Int, listener: TransportListener): Transport {
+        val request = Request.Builder()
+            .url(url)
+            .build()
+        val metrics = TransportMetrics()
+        val websocket = getHttpClient(connectTimeout).newWebSocket(request, object : WebSocketListener() {
+            override fun onOpen(webSocket: WebSocket, response: Response) {
+                listener.onOpen()
+            }
+
+            override fun onMessage(webSocket: WebSocket, bytes: ByteString) {
+                metrics.onReceived(bytes.size, serverFrameHeaderSize(bytes.size) + bytes.size)
+                listener.onMessage(bytes.asByteBuffer())
+            }
+
+            override fun onClosing(webSocket: WebSocket, code: Int, reason: String) {
+                listener.onClosing()
+            }
+
+            override fun onClosed(webSocket: WebSocket, code: Int, reason: String) {
+                listener.onClosed(code, reason)
+            }
+
+            /**
+             * @param response is not null when it failed at handshake stage
+             */
+            override fun onFailure(webSocket: WebSocket, t: Throwable, response: Response?) {
+                listener.onFailure(t)
+            }
+        })
+        return WebSocketTransport(url, websocket, metrics)
+    }
+
+    private class WebSocketTransport(
+        override val url: String,
+        private val websocket: WebSocket,
+        override val metrics: TransportMetrics
+    ) : Transport {
+
+        override fun send(data: ByteBuffer): Boolean {
+            val size = data.remaining()
+            val wasEnqueued = websocket.send(data.toByteString())
+            if (wasEnqueued) {
+                metrics.onSent(size, clientFrameHeaderSize(size) + size)
+            }
+            return wasEnqueued
+        }
+
+        override fun close(code: Int, reason: String?): Boolean = websocket.close(code, reason)
+
+    }
+
+    companion object {
+        private const val MASKING_KEY_SIZE = 4
+
+        /**
+         * Frames sent by clients are always masked
+         */
+        private fun clientFrameHeaderSize(payloadLength: Int): Int =
+            serverFrameHeaderSize(payloadLength) + MASKING_KEY_SIZE
+
+        private fun serverFrameHeaderSize(payloadLength: Int): Int = when {
+            payloadLength <= 125 -> 2
+            payloadLength <= 0xFFFF -> 4
+            else -> 10
+        }
+    }
+
+}
@@ -17,14 +17,12 @@
 
 package im.turms.client.model
 
-import java.net.URL
-
 /**
  * @author James Chen
  */
 data class ConnectionDisconnectInfo(
     var wasConnected: Boolean,
-    var wsUrl: URL,
+    var url: String,
     var code: Int,
     var reason: String? = null,
     var throwable: Throwable? = null
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.model
+
+/**
+ * @author James Chen
+ */
+enum class ConnectionState {
+    DISCONNECTED,
+    CONNECTING,
+    CONNECTED,
+    LOGGED_IN,
+
+    /**
+     * The connection is lost unexpectedly and the driver is waiting for the next reconnect attempt
+     */
+    WAITING_TO_RECONNECT,
+
+    /**
+     * The connection is lost unexpectedly and the driver will reconnect once the network becomes available
+     */
+    WAITING_FOR_NETWORK
+}
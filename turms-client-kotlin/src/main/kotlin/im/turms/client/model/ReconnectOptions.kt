@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.model
+
+/**
+ * @param initialDelay the delay in millis before the first reconnect attempt
+ * @param maxDelay the upper bound of the delay in millis between attempts
+ * @param multiplier the factor by which the delay grows after every failed attempt
+ * @param jitter the ratio of the delay that is randomized so that clients
+ * disconnected by the same outage don't reconnect in lockstep
+ * @param offlineRequestQueueCapacity the max number of idempotent requests held while reconnecting
+ * @param offlineRequestTimeout the max time in millis a request can be held while reconnecting
+ */
+data class ReconnectOptions(
+    val enabled: Boolean = true,
+    val initialDelay: Long = 1000,
+    val maxDelay: Long = 60 * 1000,
+    val multiplier: Double = 2.0,
+    val jitter: Double = 0.5,
+    val maxAttempts: Int = Int.MAX_VALUE,
+    val offlineRequestQueueCapacity: Int = 64,
+    val offlineRequestTimeout: Long = 60 * 1000
+)
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.model
+
+import im.turms.client.store.ConversationKey
+import im.turms.common.model.bo.message.Message
+
+/**
+ * @param previousHighWaterMark the delivery date before which all messages had been stored locally
+ * @param missedMessages the messages that were not stored before syncing,
+ * e.g. the messages sent while the client was disconnected
+ * @param isComplete false if there may be more messages to sync
+ */
+data class SyncResult(
+    val conversationKey: ConversationKey,
+    val previousHighWaterMark: Long?,
+    val highWaterMark: Long?,
+    val missedMessages: List<Message>,
+    val isComplete: Boolean
+) {
+    val hasGap: Boolean
+        get() = missedMessages.isNotEmpty() || !isComplete
+}
@@ -17,6 +17,7 @@
 package im.turms.client.service
 
 import im.turms.client.TurmsClient
+import im.turms.client.store.ConversationKey
 import im.turms.common.model.bo.conversation.GroupConversation
 import im.turms.common.model.bo.conversation.PrivateConversation
 import im.turms.common.model.dto.request.conversation.QueryConversationsRequest
@@ -37,6 +38,7 @@ class ConversationService(private val turmsClient: TurmsClient) {
             .send(QueryConversationsRequest.newBuilder().apply {
                 addAllTargetIds(targetIds)
             }).data.conversations.privateConversationsList
+            .also { turmsClient.syncService?.localStore?.putPrivateConversations(it) }
 
     suspend fun queryGroupConversations(groupIds: Set<Long>?): List<GroupConversation> =
         if (Validator.areAllFalsy(groupIds)) {
@@ -45,20 +47,33 @@ class ConversationService(private val turmsClient: TurmsClient) {
             .send(QueryConversationsRequest.newBuilder().apply {
                 addAllGroupIds(groupIds)
             }).data.conversations.groupConversationsList
+            .also { turmsClient.syncService?.localStore?.putGroupConversations(it) }
 
-    suspend fun updatePrivateConversationReadDate(targetId: Long, readDate: Date? = null) =
+    suspend fun updatePrivateConversationReadDate(targetId: Long, readDate: Date? = null) {
+        val date = readDate?.time ?: Date().time
         turmsClient.driver
             .send(UpdateConversationRequest.newBuilder().apply {
                 this.targetId = targetId
-                this.readDate = readDate?.time ?: Date().time
-            }).run {}
+                this.readDate = date
+            })
+        turmsClient.syncService?.localStore?.putReadDate(ConversationKey(false, targetId), date)
+    }
 
-    suspend fun updateGroupConversationReadDate(groupId: Long, readDate: Date? = null) =
+    suspend fun updateGroupConversationReadDate(groupId: Long, readDate: Date? = null) {
+        val date = readDate?.time ?: Date().time
         turmsClient.driver
             .send(UpdateConversationRequest.newBuilder().apply {
                 this.groupId = groupId
-                this.readDate = readDate?.time ?: Date().time
-            }).run {}
+                this.readDate = date
+            })
+        turmsClient.syncService?.localStore?.putReadDate(ConversationKey(true, groupId), date)
+    }
+
+    /**
+     * @return the read date stored locally, or null if there is no local store or it is unknown
+     */
+    fun queryLocalReadDate(isGroup: Boolean, targetId: Long): Date? =
+        turmsClient.syncService?.localStore?.getReadDate(ConversationKey(isGroup, targetId))?.let { Date(it) }
 
     suspend fun updatePrivateConversationTypingStatus(targetId: Long) =
         turmsClient.driver
@@ -61,20 +61,27 @@ class MessageService(private val turmsClient: TurmsClient) {
         if (text == null && records == null) {
             throw TurmsBusinessException(TurmsStatusCode.ILLEGAL_ARGUMENT, "text and records must not all be null")
         }
-        return turmsClient.driver
-            .send(
-                CreateMessageRequest.newBuilder().apply {
-                    if (isGroupMessage) {
-                        this.groupId = targetId
-                    } else {
-                        this.recipientId = targetId
-                    }
-                    this.deliveryDate = deliveryDate.time
-                    text?.let { this.text = it }
-                    records?.let { this.addAllRecords(it.map { buffer -> ByteString.copyFrom(buffer) }) }
-                    burnAfter?.let { this.burnAfter = it }
-                }
-            ).data.ids.getValues(0)
+        val request = CreateMessageRequest.newBuilder().apply {
+            if (isGroupMessage) {
+                this.groupId = targetId
+            } else {
+                this.recipientId = targetId
+            }
+            this.deliveryDate = deliveryDate.time
+            text?.let { this.text = it }
+            records?.let { this.addAllRecords(it.map { buffer -> ByteString.copyFrom(buffer) }) }
+            burnAfter?.let { this.burnAfter = it }
+        }
+        val messageId = turmsClient.driver
+            .send(request)
+            .data.ids.getValues(0)
+        turmsClient.syncService?.let { syncService ->
+            turmsClient.userService.userInfo?.userId?.let { userId ->
+                val message = createMessageRequest2Message(userId, request.setMessageId(messageId).build())
+                syncService.onMessageSent(message)
+            }
+        }
+        return messageId
     }
 
     suspend fun forwardMessage(
@@ -132,6 +139,28 @@ class MessageService(private val turmsClient: TurmsClient) {
             }
         ).data.messages.messagesList
 
+    /**
+     * Query the messages of a private or group conversation,
+     * including the messages sent by the logged-in user from any device
+     *
+     * @param targetId the group ID for group conversations, or the ID of the other user for private conversations
+     * @return the messages delivered after [deliveryDateStart] in ascending order if it isn't null,
+     * or the latest messages in descending order otherwise
+     */
+    suspend fun queryConversationMessages(
+        isGroup: Boolean,
+        targetId: Long,
+        deliveryDateStart: Date? = null,
+        deliveryDateEnd: Date? = null,
+        size: Int = 50
+    ): List<Message> = queryMessages(
+        areGroupMessages = isGroup,
+        senderId = targetId,
+        deliveryDateStart = deliveryDateStart,
+        deliveryDateEnd = deliveryDateEnd,
+        size = size
+    )
+
     suspend fun queryMessagesWithTotal(
         ids: Set<Long?>? = null,
         areGroupMessages: Boolean? = null,
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.service
+
+import im.turms.client.TurmsClient
+import im.turms.client.model.ConnectionState
+import im.turms.client.model.SyncResult
+import im.turms.client.store.ConversationKey
+import im.turms.client.store.LocalStore
+import im.turms.common.model.bo.message.Message
+import kotlinx.coroutines.launch
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * Keeps the local store in sync with the server.
+ * After logging in or resuming the session, only the messages delivered after
+ * the local high water mark of every known conversation are queried.
+ * A conversation becomes known once a message of it is stored,
+ * or [syncConversation] is called for it
+ *
+ * @author James Chen
+ */
+class SyncService(
+    private val turmsClient: TurmsClient,
+    val localStore: LocalStore,
+    private val batchSize: Int = 100
+) {
+    private val onGapDetectedListeners: MutableList<(SyncResult) -> Unit> = LinkedList()
+    private val cacheHits = AtomicLong()
+    private val cacheMisses = AtomicLong()
+
+    /**
+     * Whether all messages have been received since the last sync.
+     * Only then can the live messages advance the high water marks
+     */
+    @Volatile
+    private var isLive = false
+
+    val cacheHitRate: Double
+        get() {
+            val hits = cacheHits.get()
+            val total = hits + cacheMisses.get()
+            return if (total == 0L) 0.0 else hits.toDouble() / total
+        }
+
+    init {
+        turmsClient.driver.addConnectionStateListener {
+            if (it != ConnectionState.LOGGED_IN) {
+                isLive = false
+            }
+        }
+        turmsClient.userService.addOnOnlineListener {
+            turmsClient.driver.launch {
+                try {
+                    syncAll()
+                } catch (e: Exception) {
+                    LOGGER.log(Level.WARNING, "Failed to sync messages", e)
+                }
+            }
+        }
+        turmsClient.messageService.addMessageListener { message, _ -> onMessageReceived(message) }
+    }
+
+    fun addOnGapDetectedListener(listener: (SyncResult) -> Unit) = onGapDetectedListeners.add(listener)
+
+    fun removeOnGapDetectedListener(listener: (SyncResult) -> Unit) = onGapDetectedListeners.remove(listener)
+
+    /**
+     * Sync all known conversations
+     */
+    suspend fun syncAll(): List<SyncResult> {
+        isLive = false
+        val results = localStore.getConversationKeys().map { syncConversation(it) }
+        isLive = turmsClient.driver.connectionState == ConnectionState.LOGGED_IN
+        return results
+    }
+
+    suspend fun syncConversation(key: ConversationKey): SyncResult {
+        val previousHighWaterMark = localStore.getHighWaterMark(key)
+        var highWaterMark = previousHighWaterMark
+        val missedMessages = LinkedList<Message>()
+        var isComplete = false
+        while (true) {
+            val messages = turmsClient.messageService.queryConversationMessages(
+                isGroup = key.isGroup,
+                targetId = key.targetId,
+                deliveryDateStart = highWaterMark?.let { Date(it) },
+                size = batchSize
+            )
+            if (messages.isEmpty()) {
+                isComplete = true
+                break
+            }
+            // The start of the range is inclusive, so the messages on the high water mark are returned again
+            val storedIds = localStore
+                .getMessages(key, highWaterMark ?: Long.MIN_VALUE, Long.MAX_VALUE)
+                .mapTo(HashSet()) { it.id }
+            messages.filterTo(missedMessages) { !storedIds.contains(it.id) }
+            localStore.putMessages(key, messages)
+            val maxDeliveryDate = messages.maxOf { it.deliveryDate }
+            val hasAdvanced = highWaterMark == null || maxDeliveryDate > highWaterMark
+            highWaterMark = maxDeliveryDate
+            if (messages.size < batchSize) {
+                isComplete = true
+                break
+            }
+            if (!hasAdvanced) {
+                // Too many messages share the same delivery date to page by the date
+                break
+            }
+        }
+        val lowWaterMark = if (localStore.getLowWaterMark(key) == null) {
+            missedMessages.minOfOrNull { it.deliveryDate } ?: highWaterMark
+        } else null
+        localStore.updateWaterMarks(key, lowWaterMark, highWaterMark)
+        val result = SyncResult(key, previousHighWaterMark, highWaterMark, missedMessages, isComplete)
+        if (previousHighWaterMark != null && result.hasGap) {
+            for (listener in onGapDetectedListeners) {
+                listener(result)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Query the latest messages delivered before [deliveryDateBefore] in a conversation
+     * from the local store if they have been stored, or from the server otherwise
+     */
+    suspend fun queryConversationMessages(
+        key: ConversationKey,
+        deliveryDateBefore: Date? = null,
+        size: Int = 50
+    ): List<Message> {
+        val before = deliveryDateBefore?.time ?: Long.MAX_VALUE
+        val lowWaterMark = localStore.getLowWaterMark(key)
+        val highWaterMark = localStore.getHighWaterMark(key)
+        if (lowWaterMark != null && highWaterMark != null && (isLive || before <= highWaterMark)) {
+            val localMessages = localStore.getMessages(key, lowWaterMark, before, size)
+            if (localMessages.size == size || lowWaterMark == Long.MIN_VALUE) {
+                cacheHits.incrementAndGet()
+                return localMessages
+            }
+        }
+        cacheMisses.incrementAndGet()
+        val messages = turmsClient.messageService.queryConversationMessages(
+            isGroup = key.isGroup,
+            targetId = key.targetId,
+            deliveryDateEnd = deliveryDateBefore,
+            size = size
+        )
+        localStore.putMessages(key, messages)
+        // Extend the contiguous range only if the queried range overlaps it
+        if (lowWaterMark != null && before >= lowWaterMark) {
+            val newLowWaterMark = if (messages.size < size) {
+                Long.MIN_VALUE
+            } else {
+                messages.minOf { it.deliveryDate }
+            }
+            if (newLowWaterMark < lowWaterMark) {
+                localStore.updateWaterMarks(key, newLowWaterMark, null)
+            }
+        }
+        return messages.sortedBy { it.deliveryDate }
+    }
+
+    fun onMessageSent(message: Message) = storeLiveMessage(message)
+
+    private fun onMessageReceived(message: Message) = storeLiveMessage(message)
+
+    private fun storeLiveMessage(message: Message) {
+        val ownerId = turmsClient.userService.userInfo?.userId
+        val key = ConversationKey.of(message, ownerId)
+        localStore.putMessages(key, listOf(message))
+        if (isLive) {
+            val deliveryDate = message.deliveryDate
+            val highWaterMark = localStore.getHighWaterMark(key)
+            if (highWaterMark == null) {
+                localStore.updateWaterMarks(key, deliveryDate, deliveryDate)
+            } else if (deliveryDate > highWaterMark) {
+                localStore.updateWaterMarks(key, null, deliveryDate)
+            }
+        }
+    }
+
+    companion object {
+        private val LOGGER = Logger.getLogger(SyncService::class.java.name)
+    }
+
+}
@@ -56,6 +56,12 @@ class UserService(private val turmsClient: TurmsClient) {
 
     init {
         turmsClient.driver.addOnDisconnectedListener { changeToOffline(SessionCloseInfo(SessionCloseStatus.CONNECTION_CLOSED.code)) }
+        turmsClient.driver.addOnSessionResumedListener {
+            if (userInfo != null) {
+                changeToOnline()
+                userInfo?.onlineStatus = it.userStatus
+            }
+        }
         turmsClient.driver.addNotificationListener {
             if (it.hasCloseStatus() && isLoggedIn) {
                 val info = SessionCloseInfo(
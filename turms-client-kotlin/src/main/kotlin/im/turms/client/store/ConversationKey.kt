@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.store
+
+import im.turms.common.model.bo.message.Message
+
+/**
+ * @param targetId the group ID for group conversations, or the ID of the other user for private conversations
+ * @author James Chen
+ */
+data class ConversationKey(
+    val isGroup: Boolean,
+    val targetId: Long
+) {
+    companion object {
+        fun of(message: Message, ownerId: Long?): ConversationKey =
+            if (message.hasGroupId()) {
+                ConversationKey(true, message.groupId)
+            } else if (message.senderId == ownerId) {
+                ConversationKey(false, message.recipientId)
+            } else {
+                ConversationKey(false, message.senderId)
+            }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.store
+
+import com.google.protobuf.MessageLite
+import com.google.protobuf.Parser
+import im.turms.common.model.bo.conversation.GroupConversation
+import im.turms.common.model.bo.conversation.PrivateConversation
+import im.turms.common.model.bo.message.Message
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.*
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * A local store that keeps all data in memory and,
+ * if [directory] isn't null, persists them to files in the directory:
+ * 1. Messages are appended to one file per conversation as length-delimited protobuf messages.
+ * A message appended later replaces the one with the same ID when loading (e.g. recalled or updated messages).
+ * The file is compacted once most of its records have been replaced
+ * 2. Conversations are rewritten to one file per conversation type when changed
+ * 3. Water marks and read dates are rewritten to a properties file when changed
+ *
+ * The files are written in order by a single writer in [Dispatchers.IO],
+ * so the callers are never blocked by the file I/O.
+ * Use [open] to load the files in [Dispatchers.IO] too, and use a different directory for every user
+ *
+ * @author James Chen
+ */
+class FileLocalStore private constructor(private val directory: File?) : LocalStore {
+
+    private val conversations: MutableMap<ConversationKey, ConversationMessages> = HashMap()
+    private val privateConversations: MutableMap<Long, PrivateConversation> = HashMap()
+    private val groupConversations: MutableMap<Long, GroupConversation> = HashMap()
+    private val state = Properties()
+
+    private val writeTasks = Channel<() -> Unit>(Channel.UNLIMITED)
+    private val writer = CoroutineScope(Dispatchers.IO + SupervisorJob()).launch {
+        for (task in writeTasks) {
+            task()
+        }
+    }
+
+    /**
+     * Keep all data in memory only
+     */
+    constructor() : this(null)
+
+    init {
+        directory?.let { load(it) }
+    }
+
+    // Messages
+
+    @Synchronized
+    override fun putMessages(key: ConversationKey, messages: Collection<Message>) {
+        if (messages.isEmpty()) {
+            return
+        }
+        val conversationMessages = conversations.getOrPut(key) { ConversationMessages() }
+        for (message in messages) {
+            conversationMessages.put(message)
+        }
+        directory?.let {
+            val file = File(File(it, MESSAGES_DIRECTORY), "${key.toFileName()}.bin")
+            conversationMessages.recordCount += messages.size
+            if (conversationMessages.needsCompaction()) {
+                compact(file, conversationMessages)
+            } else {
+                val records = messages.toList()
+                writeTasks.trySend { appendAll(file, records) }
+            }
+        }
+    }
+
+    @Synchronized
+    override fun getMessages(
+        key: ConversationKey,
+        deliveryDateAfter: Long,
+        deliveryDateBefore: Long,
+        size: Int
+    ): List<Message> {
+        val conversationMessages = conversations[key] ?: return emptyList()
+        return conversationMessages.get(deliveryDateAfter, deliveryDateBefore, size)
+    }
+
+    @Synchronized
+    override fun getHighWaterMark(key: ConversationKey): Long? =
+        state.getProperty("$HIGH_WATER_MARK_PREFIX${key.toFileName()}")?.toLong()
+
+    @Synchronized
+    override fun getLowWaterMark(key: ConversationKey): Long? =
+        state.getProperty("$LOW_WATER_MARK_PREFIX${key.toFileName()}")?.toLong()
+
+    @Synchronized
+    override fun updateWaterMarks(key: ConversationKey, lowWaterMark: Long?, highWaterMark: Long?) {
+        lowWaterMark?.let { state.setProperty("$LOW_WATER_MARK_PREFIX${key.toFileName()}", it.toString()) }
+        highWaterMark?.let { state.setProperty("$HIGH_WATER_MARK_PREFIX${key.toFileName()}", it.toString()) }
+        conversations.getOrPut(key) { ConversationMessages() }
+        saveState()
+    }
+
+    @Synchronized
+    override fun getConversationKeys(): Set<ConversationKey> = HashSet(conversations.keys)
+
+    // Conversations
+
+    @Synchronized
+    override fun putPrivateConversations(conversations: Collection<PrivateConversation>) {
+        for (conversation in conversations) {
+            privateConversations[conversation.targetId] = conversation
+        }
+        directory?.let {
+            val records = privateConversations.values.toList()
+            writeTasks.trySend { rewriteAll(File(it, PRIVATE_CONVERSATIONS_FILE), records) }
+        }
+    }
+
+    @Synchronized
+    override fun putGroupConversations(conversations: Collection<GroupConversation>) {
+        for (conversation in conversations) {
+            groupConversations[conversation.groupId] = conversation
+        }
+        directory?.let {
+            val records = groupConversations.values.toList()
+            writeTasks.trySend { rewriteAll(File(it, GROUP_CONVERSATIONS_FILE), records) }
+        }
+    }
+
+    @Synchronized
+    override fun getPrivateConversation(targetId: Long): PrivateConversation? = privateConversations[targetId]
+
+    @Synchronized
+    override fun getGroupConversation(groupId: Long): GroupConversation? = groupConversations[groupId]
+
+    // Read dates
+
+    @Synchronized
+    override fun putReadDate(key: ConversationKey, readDate: Long) {
+        state.setProperty("$READ_DATE_PREFIX${key.toFileName()}", readDate.toString())
+        saveState()
+    }
+
+    @Synchronized
+    override fun getReadDate(key: ConversationKey): Long? =
+        state.getProperty("$READ_DATE_PREFIX${key.toFileName()}")?.toLong()
+
+    /**
+     * Wait until the pending writes are done
+     */
+    override suspend fun close() {
+        writeTasks.close()
+        writer.join()
+    }
+
+    // Persistence
+
+    private fun load(directory: File) {
+        File(directory, MESSAGES_DIRECTORY).mkdirs()
+        File(directory, STATE_FILE).takeIf { it.exists() }?.let { file ->
+            try {
+                FileInputStream(file).use { state.load(it) }
+            } catch (e: IOException) {
+                LOGGER.log(Level.SEVERE, "Failed to load the local state from $file", e)
+            }
+        }
+        for (key in state.stringPropertyNames()) {
+            key.substringAfter('.', "").toConversationKey()?.let {
+                conversations.getOrPut(it) { ConversationMessages() }
+            }
+        }
+        File(directory, MESSAGES_DIRECTORY).listFiles()?.forEach { file ->
+            val key = file.nameWithoutExtension.toConversationKey() ?: return@forEach
+            val conversationMessages = conversations.getOrPut(key) { ConversationMessages() }
+            readAll(file, Message.parser()) {
+                conversationMessages.put(it)
+                conversationMessages.recordCount++
+            }
+            if (conversationMessages.needsCompaction()) {
+                compact(file, conversationMessages)
+            }
+        }
+        readAll(File(directory, PRIVATE_CONVERSATIONS_FILE), PrivateConversation.parser()) {
+            privateConversations[it.targetId] = it
+        }
+        readAll(File(directory, GROUP_CONVERSATIONS_FILE), GroupConversation.parser()) {
+            groupConversations[it.groupId] = it
+        }
+    }
+
+    private fun <T : MessageLite> readAll(file: File, parser: Parser<T>, consumer: (T) -> Unit) {
+        if (!file.exists()) {
+            return
+        }
+        try {
+            BufferedInputStream(FileInputStream(file)).use { input ->
+                while (true) {
+                    // Stop at the end or at a partially written record
+                    val value = parser.parseDelimitedFrom(input) ?: break
+                    consumer(value)
+                }
+            }
+        } catch (e: IOException) {
+            LOGGER.log(Level.WARNING, "Failed to read the records completely from $file", e)
+        }
+    }
+
+    private fun appendAll(file: File, values: Collection<MessageLite>) {
+        try {
+            BufferedOutputStream(FileOutputStream(file, true)).use { output ->
+                for (value in values) {
+                    value.writeDelimitedTo(output)
+                }
+            }
+        } catch (e: IOException) {
+            LOGGER.log(Level.SEVERE, "Failed to append the records to $file", e)
+        }
+    }
+
+    private fun rewriteAll(file: File, values: Collection<MessageLite>) {
+        val tempFile = File(file.parentFile, "${file.name}.tmp")
+        try {
+            BufferedOutputStream(FileOutputStream(tempFile)).use { output ->
+                for (value in values) {
+                    value.writeDelimitedTo(output)
+                }
+            }
+            if (!tempFile.renameTo(file)) {
+                file.delete()
+                tempFile.renameTo(file)
+            }
+        } catch (e: IOException) {
+            LOGGER.log(Level.SEVERE, "Failed to write the records to $file", e)
+        }
+    }
+
+    /**
+     * Rewrite the file with the latest version of every message
+     * so that the replaced records no longer take up space and loading time
+     */
+    private fun compact(file: File, conversationMessages: ConversationMessages) {
+        val records = conversationMessages.values()
+        conversationMessages.recordCount = records.size
+        writeTasks.trySend { rewriteAll(file, records) }
+    }
+
+    private fun saveState() {
+        val directory = directory ?: return
+        val file = File(directory, STATE_FILE)
+        val snapshot = state.clone() as Properties
+        writeTasks.trySend {
+            try {
+                FileOutputStream(file).use { snapshot.store(it, null) }
+            } catch (e: IOException) {
+                LOGGER.log(Level.SEVERE, "Failed to save the local state to $file", e)
+            }
+        }
+    }
+
+    private class ConversationMessages {
+        private val messages = TreeMap<MessageOrder, Message>()
+        private val idToOrder: MutableMap<Long, MessageOrder> = HashMap()
+
+        /**
+         * The number of the records in the file, including the replaced ones
+         */
+        var recordCount = 0
+
+        fun needsCompaction(): Boolean =
+            recordCount >= MIN_RECORDS_TO_COMPACT && recordCount > messages.size * 2
+
+        fun values(): List<Message> = ArrayList(messages.values)
+
+        fun put(message: Message) {
+            val order = MessageOrder(message.deliveryDate, message.id)
+            idToOrder.put(message.id, order)?.let { messages.remove(it) }
+            messages[order] = message
+        }
+
+        fun get(deliveryDateAfter: Long, deliveryDateBefore: Long, size: Int): List<Message> {
+            if (deliveryDateAfter >= deliveryDateBefore || size <= 0) {
+                return emptyList()
+            }
+            val range = messages.subMap(
+                MessageOrder(deliveryDateAfter, Long.MIN_VALUE), true,
+                MessageOrder(deliveryDateBefore, Long.MIN_VALUE), false
+            )
+            // Return the latest messages in the range
+            val result = ArrayList<Message>(size.coerceAtMost(range.size))
+            for (message in range.descendingMap().values) {
+                if (result.size == size) {
+                    break
+                }
+                result.add(message)
+            }
+            result.reverse()
+            return result
+        }
+    }
+
+    private data class MessageOrder(val deliveryDate: Long, val id: Long) : Comparable<MessageOrder> {
+        override fun compareTo(other: MessageOrder): Int {
+            val result = deliveryDate.compareTo(other.deliveryDate)
+            return if (result != 0) result else id.compareTo(other.id)
+        }
+    }
+
+    companion object {
+        private val LOGGER = Logger.getLogger(FileLocalStore::class.java.name)
+        private const val MESSAGES_DIRECTORY = "messages"
+        private const val PRIVATE_CONVERSATIONS_FILE = "private_conversations.bin"
+        private const val GROUP_CONVERSATIONS_FILE = "group_conversations.bin"
+        private const val STATE_FILE = "state.properties"
+        private const val HIGH_WATER_MARK_PREFIX = "hwm."
+        private const val LOW_WATER_MARK_PREFIX = "lwm."
+        private const val READ_DATE_PREFIX = "read."
+        private const val MIN_RECORDS_TO_COMPACT = 1024
+
+        /**
+         * Load the files in [directory] in [Dispatchers.IO]
+         */
+        suspend fun open(directory: File): FileLocalStore = withContext(Dispatchers.IO) {
+            FileLocalStore(directory)
+        }
+
+        private fun ConversationKey.toFileName(): String = "${if (isGroup) "g" else "p"}_$targetId"
+
+        private fun String.toConversationKey(): ConversationKey? {
+            val type = substringBefore('_', "")
+            val targetId = substringAfter('_', "").toLongOrNull() ?: return null
+            return when (type) {
+                "g" -> ConversationKey(true, targetId)
+                "p" -> ConversationKey(false, targetId)
+                else -> null
+            }
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.store
+
+import im.turms.common.model.bo.conversation.GroupConversation
+import im.turms.common.model.bo.conversation.PrivateConversation
+import im.turms.common.model.bo.message.Message
+
+/**
+ * Stores messages, conversations and read dates locally so that
+ * they don't need to be downloaded again after the app restarts.
+ * Messages are keyed by the conversation and ordered by the delivery date.
+ *
+ * For every conversation, the store keeps a contiguous range [low water mark, high water mark]
+ * of delivery dates in which all messages have been stored.
+ * Messages out of the range may be missing.
+ *
+ * Implementations must be thread-safe
+ *
+ * @author James Chen
+ */
+interface LocalStore {
+
+    // Messages
+
+    fun putMessages(key: ConversationKey, messages: Collection<Message>)
+
+    /**
+     * @return at most [size] messages delivered before [deliveryDateBefore]
+     * and not before [deliveryDateAfter], ordered by the delivery date ascending
+     */
+    fun getMessages(
+        key: ConversationKey,
+        deliveryDateAfter: Long = Long.MIN_VALUE,
+        deliveryDateBefore: Long = Long.MAX_VALUE,
+        size: Int = Int.MAX_VALUE
+    ): List<Message>
+
+    fun getHighWaterMark(key: ConversationKey): Long?
+
+    fun getLowWaterMark(key: ConversationKey): Long?
+
+    fun updateWaterMarks(key: ConversationKey, lowWaterMark: Long?, highWaterMark: Long?)
+
+    fun getConversationKeys(): Set<ConversationKey>
+
+    // Conversations
+
+    fun putPrivateConversations(conversations: Collection<PrivateConversation>)
+
+    fun putGroupConversations(conversations: Collection<GroupConversation>)
+
+    fun getPrivateConversation(targetId: Long): PrivateConversation?
+
+    fun getGroupConversation(groupId: Long): GroupConversation?
+
+    // Read dates
+
+    fun putReadDate(key: ConversationKey, readDate: Long)
+
+    fun getReadDate(key: ConversationKey): Long?
+
+    suspend fun close()
+
+}
@@ -18,6 +18,7 @@ package helper
 
 object Constants {
     const val WS_URL = "ws://localhost:10510"
+    const val TCP_URL = "tcp://localhost:11510"
     const val STORAGE_SERVER_URL = "http://localhost:9000"
     const val ORDER_FIRST = Int.MIN_VALUE
     const val ORDER_HIGHEST_PRIORITY = 0
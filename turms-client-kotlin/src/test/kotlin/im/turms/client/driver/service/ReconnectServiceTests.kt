@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.service
+
+import im.turms.client.constant.TurmsStatusCode
+import im.turms.client.driver.StateStore
+import im.turms.client.exception.TurmsBusinessException
+import im.turms.client.model.ConnectionState
+import im.turms.client.model.ReconnectOptions
+import im.turms.common.model.dto.notification.TurmsNotification
+import im.turms.common.model.dto.request.TurmsRequest
+import im.turms.common.model.dto.request.user.CreateSessionRequest
+import im.turms.common.model.dto.request.user.QueryUserProfileRequest
+import kotlinx.coroutines.async
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import kotlinx.coroutines.test.runBlockingTest
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+
+internal class ReconnectServiceTests {
+
+    private val dispatcher = TestCoroutineDispatcher()
+    private val options = ReconnectOptions(
+        initialDelay = 100,
+        jitter = 0.0,
+        offlineRequestQueueCapacity = 1
+    )
+
+    @Test
+    fun enqueue_shouldRejectWithQueueFullCode_ifQueueIsFull() = dispatcher.runBlockingTest {
+        val service = newService()
+        val pendingResponse = async { service.enqueue(newQueryRequest()) }
+
+        val result = runCatching { service.enqueue(newQueryRequest()) }
+
+        val exception = result.exceptionOrNull() as TurmsBusinessException
+        assertEquals(TurmsStatusCode.OFFLINE_REQUEST_QUEUE_FULL, exception.code)
+        pendingResponse.cancel()
+    }
+
+    @Test
+    fun onDisconnected_shouldReplayOfflineRequests_afterReconnecting() = dispatcher.runBlockingTest {
+        var reconnectCount = 0
+        val service = newService(reconnect = { reconnectCount++ })
+        service.onConnectedByUser()
+        service.onDisconnected()
+        assertEquals(ConnectionState.WAITING_TO_RECONNECT, service.state)
+        val response = async { service.enqueue(newQueryRequest()) }
+
+        advanceTimeBy(options.initialDelay)
+
+        assertEquals(1, reconnectCount)
+        assertEquals(NOTIFICATION, response.await())
+        service.close()
+    }
+
+    @Test
+    fun onDisconnected_shouldScheduleNewAttempt_ifDisconnectedWhileReplaying() = dispatcher.runBlockingTest {
+        var reconnectCount = 0
+        lateinit var service: ReconnectService
+        service = newService(reconnect = { reconnectCount++ }) {
+            service.onDisconnected()
+            throw TurmsBusinessException(TurmsStatusCode.CLIENT_SESSION_HAS_BEEN_CLOSED)
+        }
+        service.onConnectedByUser()
+        service.onDisconnected()
+        val response = async { runCatching { service.enqueue(newQueryRequest()) } }
+
+        advanceTimeBy(options.initialDelay)
+
+        assertEquals(1, reconnectCount)
+        assertTrue(response.await().isFailure)
+        assertEquals(ConnectionState.WAITING_TO_RECONNECT, service.state)
+
+        advanceTimeBy(options.initialDelay)
+
+        assertEquals(2, reconnectCount)
+        service.close()
+    }
+
+    @Test
+    fun updateState_shouldNotifyAllListeners_ifListenerRemovesItself() {
+        val service = newService()
+        val states = mutableListOf<ConnectionState>()
+        lateinit var listener: (ConnectionState) -> Unit
+        listener = {
+            states.add(it)
+            service.removeStateListener(listener)
+        }
+        service.addStateListener(listener)
+        service.addStateListener { states.add(it) }
+
+        service.updateState(ConnectionState.CONNECTING)
+        service.updateState(ConnectionState.CONNECTED)
+
+        assertEquals(
+            listOf(ConnectionState.CONNECTING, ConnectionState.CONNECTING, ConnectionState.CONNECTED),
+            states
+        )
+    }
+
+    private fun newService(
+        reconnect: suspend (CreateSessionRequest?) -> Unit = {},
+        sendRequest: suspend (TurmsRequest.Builder) -> TurmsNotification = { NOTIFICATION }
+    ) = ReconnectService(dispatcher, StateStore(), options, reconnect, sendRequest)
+
+    private fun newQueryRequest(): TurmsRequest.Builder = TurmsRequest.newBuilder()
+        .setQueryUserProfileRequest(QueryUserProfileRequest.newBuilder().setUserId(1))
+
+    companion object {
+        private val NOTIFICATION = TurmsNotification.getDefaultInstance()
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.driver.transport
+
+import helper.Constants.TCP_URL
+import helper.Constants.WS_URL
+import im.turms.client.TurmsClient
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.Timeout
+
+/**
+ * Runs the same scenario over WebSocket and TCP and compares the framing overhead.
+ * Requires a running turms-gateway with the TCP server enabled (e.g. the "dev" profile)
+ */
+internal class TransportST {
+
+    @Test
+    @Timeout(10)
+    fun tcp_shouldHaveLessFrameOverheadThanWebSocket() = runBlocking {
+        val webSocketMetrics = runScenario(WS_URL)
+        val tcpMetrics = runScenario(TCP_URL)
+
+        assertEquals(webSocketMetrics.sentFrames.get(), tcpMetrics.sentFrames.get())
+        assertEquals(webSocketMetrics.receivedFrames.get(), tcpMetrics.receivedFrames.get())
+        assertTrue(tcpMetrics.overheadBytes < webSocketMetrics.overheadBytes) {
+            "The overhead of TCP (${tcpMetrics.overheadBytes} bytes) should be less than " +
+                    "the overhead of WebSocket (${webSocketMetrics.overheadBytes} bytes)"
+        }
+    }
+
+    private suspend fun runScenario(url: String): TransportMetrics {
+        val client = TurmsClient(url)
+        try {
+            client.userService.login(1L, "123")
+            assertTrue(client.userService.isLoggedIn)
+            client.driver.sendHeartbeat()
+            client.userService.queryUserProfile(1L)
+            return client.driver.transportMetrics!!
+        } finally {
+            client.driver.disconnect()
+            client.close()
+        }
+    }
+
+}
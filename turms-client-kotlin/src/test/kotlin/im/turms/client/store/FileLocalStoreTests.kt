@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.client.store
+
+import im.turms.common.model.bo.message.Message
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+internal class FileLocalStoreTests {
+
+    private val key = ConversationKey(false, 2L)
+
+    @Test
+    fun open_shouldLoadLatestMessagesAndState_afterReopening(@TempDir directory: File) = runBlocking {
+        val store = FileLocalStore.open(directory)
+        store.putMessages(key, listOf(newMessage(1L, 100L, "a"), newMessage(2L, 200L, "b")))
+        store.putMessages(key, listOf(newMessage(1L, 100L, "a (edited)")))
+        store.updateWaterMarks(key, 100L, 200L)
+        store.putReadDate(key, 150L)
+        store.close()
+
+        val reopenedStore = FileLocalStore.open(directory)
+
+        assertEquals(listOf("a (edited)", "b"), reopenedStore.getMessages(key).map { it.text })
+        assertEquals(100L, reopenedStore.getLowWaterMark(key))
+        assertEquals(200L, reopenedStore.getHighWaterMark(key))
+        assertEquals(150L, reopenedStore.getReadDate(key))
+        assertEquals(setOf(key), reopenedStore.getConversationKeys())
+        reopenedStore.close()
+    }
+
+    @Test
+    fun putMessages_shouldCompactFile_ifMostRecordsAreReplaced(@TempDir directory: File) = runBlocking {
+        val store = FileLocalStore.open(directory)
+        repeat(2000) {
+            store.putMessages(key, listOf(newMessage(1L, 100L, "version $it")))
+        }
+        store.close()
+
+        val file = File(File(directory, "messages"), "p_2.bin")
+        val recordCount = file.inputStream().buffered().use { input ->
+            generateSequence { Message.parseDelimitedFrom(input) }.count()
+        }
+        assertTrue(recordCount < 2000) { "The file should be compacted but has $recordCount records" }
+        val reopenedStore = FileLocalStore.open(directory)
+        assertEquals(listOf("version 1999"), reopenedStore.getMessages(key).map { it.text })
+        reopenedStore.close()
+    }
+
+    @Test
+    fun getMessages_shouldReturnLatestMessagesInRange_inAscendingOrder() = runBlocking {
+        val store = FileLocalStore()
+        store.putMessages(key, (1L..5L).map { newMessage(it, it * 100, "$it") })
+
+        val messages = store.getMessages(key, deliveryDateAfter = 200L, deliveryDateBefore = 500L, size = 2)
+
+        assertEquals(listOf(3L, 4L), messages.map { it.id })
+        store.close()
+    }
+
+    private fun newMessage(id: Long, deliveryDate: Long, text: String): Message = Message.newBuilder()
+        .setId(id)
+        .setDeliveryDate(deliveryDate)
+        .setSenderId(key.targetId)
+        .setRecipientId(1L)
+        .setText(text)
+        .build()
+
+}
@@ -10,6 +10,7 @@ public enum TurmsCloseStatus: Int {
     case serverError = 200
     case serverClosed
     case serverUnavailable
+    case serverDraining
 
     case connectionClosed = 300
 
@@ -137,6 +137,9 @@ public enum TurmsStatusCode: Int {
     case addBlockedUserToInactiveGroup
     case addUserToInactiveGroup
     case addNewMemberWithRoleHigherThanRequester
+    case addExistingMemberToGroup
+    case groupMembersLimitReached
+    case updateOrRemoveNonExistingGroupMember
 
     // Group - Blocklist
     case notOwnerOrManagerToAddBlockedUser = 3500
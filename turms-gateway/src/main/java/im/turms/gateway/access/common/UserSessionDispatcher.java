@@ -78,7 +78,10 @@ public abstract class UserSessionDispatcher {
                         })
                         .onErrorResume(throwable -> handleConnectionError(throwable, netConnection, userSession))
                         .contextWrite(context -> context.put(RequestLoggingContext.CTX_KEY_NAME, loggingContext))
-                        .doFinally(signal -> loggingContext.clearMdc())
+                        .doFinally(signal -> {
+                            userSession.onNotificationFluxTerminated();
+                            loggingContext.clearMdc();
+                        })
                         .subscribe();
             });
             respondWithRequests(connection, isWebSocketConnection, in, out, sessionWrapper)
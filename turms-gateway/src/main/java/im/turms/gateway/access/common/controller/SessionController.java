@@ -49,6 +49,8 @@ public class SessionController {
     public Mono<TurmsNotification> handleDeleteSessionRequest(UserSessionWrapper sessionWrapper) {
         UserSession session = sessionWrapper.getUserSession();
         if (session != null) {
+            // The client logs out explicitly, so it shouldn't be able to resume the session
+            serviceMediator.revokeResumptionTickets(session).subscribe();
             serviceMediator
                     .setLocalUserDeviceOffline(session.getUserId(), session.getDeviceType(), SessionCloseStatus.DISCONNECTED_BY_CLIENT)
                     .subscribe();
@@ -98,7 +100,10 @@ public class SessionController {
                     UserSessionsManager userSessionsManager = serviceMediator.getUserSessionsManager(userId);
                     serviceMediator.onSessionEstablished(userSessionsManager, session.getDeviceType());
                     serviceMediator.triggerGoOnlinePlugins(userSessionsManager, session).subscribe();
-                    return Mono.just(new RequestHandlerResult(TurmsStatusCode.OK));
+                    // Pass the resumption ticket to the client via the reason
+                    // because there is no dedicated field in the response
+                    String resumptionTicket = serviceMediator.issueResumptionTicket(session);
+                    return Mono.just(new RequestHandlerResult(TurmsStatusCode.OK, resumptionTicket));
                 } else {
                     return serviceMediator.setLocalUserDeviceOffline(userId, finalDeviceType, SessionCloseStatus.LOGIN_TIMEOUT)
                             .then(Mono.empty());
@@ -38,6 +38,8 @@ import im.turms.server.common.manager.ServerStatusManager;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.env.gateway.clientapi.ClientApiLoggingProperties;
 import im.turms.server.common.property.env.service.env.clientapi.property.LoggingRequestProperties;
+import im.turms.server.common.tracing.Span;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.tracing.TracingCloseableContext;
 import im.turms.server.common.tracing.TracingContext;
 import im.turms.server.common.util.ProtoUtil;
@@ -69,6 +71,10 @@ public class UserRequestDispatcher {
 
     private static final long HEARTBEAT_FAILURE_REQUEST_ID = -100;
 
+    private static final String SPAN_NAME_CLIENT_REQUEST = "gateway.clientRequest";
+    private static final String SPAN_TAG_REQUEST_TYPE = "type";
+    private static final String SPAN_TAG_STATUS_CODE = "code";
+
     static {
         TurmsNotification notification = NotificationFactory
                 .create(TurmsStatusCode.UPDATE_NON_EXISTING_SESSION_HEARTBEAT, HEARTBEAT_FAILURE_REQUEST_ID);
@@ -117,8 +123,21 @@ public class UserRequestDispatcher {
         int requestSize = serviceRequestBuffer.readableBytes();
         SimpleTurmsRequest request = TurmsRequestUtil.parseSimpleRequest(serviceRequestBuffer.nioBuffer());
         TurmsRequest.KindCase requestType = request.getType();
-        TracingContext tracingContext = supportsTracing(requestType) ? new TracingContext() : TracingContext.NOOP;
-        return handleServiceRequest(sessionWrapper, request, serviceRequestBuffer, tracingContext)
+        TracingContext tracingContext;
+        Span span;
+        if (supportsTracing(requestType)) {
+            // The root span of the trace, which is sampled only here
+            // and the sampling decision is propagated to the downstream nodes
+            Tracer tracer = Tracer.getGlobal();
+            TracingContext rootContext = tracer.newRootContext();
+            span = tracer.startEntrySpan(rootContext, SPAN_NAME_CLIENT_REQUEST)
+                    .tag(SPAN_TAG_REQUEST_TYPE, requestType);
+            tracingContext = span.getContextOr(rootContext);
+        } else {
+            span = Span.NOOP;
+            tracingContext = TracingContext.NOOP;
+        }
+        Mono<ByteBuf> response = handleServiceRequest(sessionWrapper, request, serviceRequestBuffer, tracingContext)
                 // Metrics and logging
                 .name(CLIENT_REQUEST_NAME)
                 .tag(CLIENT_REQUEST_TAG_TYPE, requestType.name())
@@ -132,6 +151,7 @@ public class UserRequestDispatcher {
                     return Mono.just(NotificationFactory.create(info, request.getRequestId()));
                 })
                 .map(notification -> {
+                    span.tag(SPAN_TAG_STATUS_CODE, notification.getCode());
                     TurmsRequest.KindCase type = request.getType();
                     // TODO: exclude the error because the server is inactive
                     if (TurmsStatusCode.isServerError(notification.getCode())
@@ -156,7 +176,8 @@ public class UserRequestDispatcher {
                         }
                     }
                     return ProtoUtil.getDirectByteBuffer(notification);
-                })
+                });
+        return span.endOnTermination(response)
                 .contextWrite(context -> {
                     RequestLoggingContext loggingContext = context.get(RequestLoggingContext.CTX_KEY_NAME);
                     loggingContext.setTracingContext(tracingContext);
@@ -187,6 +208,13 @@ public class UserRequestDispatcher {
             }
             // Handle the request to get a response
             TurmsRequest.KindCase requestType = request.getType();
+            // Reject new sessions so that the clients log in to other servers when the local server is draining
+            if (requestType == CREATE_SESSION_REQUEST && serverStatusManager.isDraining()) {
+                TurmsNotification notification = NotificationFactory.create(TurmsStatusCode.SERVER_UNAVAILABLE,
+                        "The server is draining",
+                        requestId);
+                return Mono.just(notification);
+            }
             tracingContext.updateMdc();
             return switch (requestType) {
                 case CREATE_SESSION_REQUEST -> sessionController
@@ -36,7 +36,8 @@ public class ServerAvailabilityHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) {
-        if (serverStatusManager.isActive()) {
+        // A draining server rejects new connections so that clients connect to other servers
+        if (serverStatusManager.isActive() && !serverStatusManager.isDraining()) {
             ctx.fireChannelRegistered();
         } else {
             ctx.close();
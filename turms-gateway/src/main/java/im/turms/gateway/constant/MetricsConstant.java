@@ -27,4 +27,8 @@ public final class MetricsConstant {
 
     public static final String LOGGED_IN_USERS_COUNTER_NAME = "user.logged_in";
     public static final String ONLINE_USERS_GAUGE_NAME = "user.online";
+    public static final String FULL_LOGINS_COUNTER_NAME = "user.login.full";
+    public static final String RESUMED_LOGINS_COUNTER_NAME = "user.login.resumed";
+    public static final String REJECTED_RESUMPTION_TICKETS_COUNTER_NAME = "user.login.resumption_rejected";
+    public static final String DRAINED_SESSIONS_COUNTER_NAME = "user.session.drained";
 }
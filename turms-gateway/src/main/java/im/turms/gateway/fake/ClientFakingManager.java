@@ -31,6 +31,7 @@ import im.turms.server.common.fake.RandomProtobufGenerator;
 import im.turms.server.common.fake.RandomRequestFactory;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.env.gateway.FakeProperties;
+import im.turms.server.common.property.env.gateway.WorkloadProperties;
 import im.turms.server.common.util.ProtoUtil;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.log4j.Log4j2;
@@ -60,7 +61,9 @@ public class ClientFakingManager {
     private final List<TurmsClient> clients;
     private final FakeProperties fakeProperties;
     private final TcpDispatcher tcpDispatcher;
+    private final LoopResources loopResources = LoopResources.create("turms-client");
     private Thread thread;
+    private WorkloadRunner workloadRunner;
 
     public ClientFakingManager(TcpDispatcher tcpDispatcher,
                                TurmsApplicationContext context,
@@ -83,6 +86,20 @@ public class ClientFakingManager {
 
     @PostConstruct
     private void init() {
+        WorkloadProperties workloadProperties = fakeProperties.getWorkload();
+        if (workloadProperties.isEnabled()) {
+            if (clients.isEmpty()) {
+                return;
+            }
+            workloadRunner = new WorkloadRunner(clients,
+                    fakeProperties.getFirstUserId(),
+                    workloadProperties,
+                    tcpDispatcher.getHost(),
+                    tcpDispatcher.getPort(),
+                    loopResources);
+            workloadRunner.start();
+            return;
+        }
         log.info("Start sending random requests from clients");
         startSendingRandomRequests(clients,
                 fakeProperties.getFirstUserId(),
@@ -93,11 +110,15 @@ public class ClientFakingManager {
 
     @PreDestroy
     private void shutdown() {
-        thread.interrupt();
+        if (workloadRunner != null) {
+            workloadRunner.stop();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
     }
 
     private Mono<List<TurmsClient>> prepareClients(long firstUserId, int userCount) {
-        LoopResources loopResources = LoopResources.create("turms-client");
         List<Mono<TurmsNotification>> results = new ArrayList<>(userCount);
         List<TurmsClient> clients = new ArrayList<>(userCount);
         for (int i = 0; i < userCount; i++) {
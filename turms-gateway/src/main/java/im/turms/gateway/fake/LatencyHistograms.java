@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.gateway.fake;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records latencies per request type into HdrHistogram recorders,
+ * which are lock-free for writers so that recording doesn't disturb the measured latencies.
+ *
+ * @author James Chen
+ */
+public class LatencyHistograms {
+
+    private static final long HIGHEST_TRACKABLE_VALUE = TimeUnit.MINUTES.toNanos(1);
+    private static final int NUMBER_OF_SIGNIFICANT_VALUE_DIGITS = 3;
+
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>(32);
+    private final Map<String, LongAdder> errorCounters = new ConcurrentHashMap<>(32);
+
+    public void record(String type, long latencyNanos) {
+        Recorder recorder = recorders.computeIfAbsent(type,
+                key -> new Recorder(HIGHEST_TRACKABLE_VALUE, NUMBER_OF_SIGNIFICANT_VALUE_DIGITS));
+        recorder.recordValue(Math.min(Math.max(0, latencyNanos), HIGHEST_TRACKABLE_VALUE));
+    }
+
+    public void recordError(String type) {
+        errorCounters.computeIfAbsent(type, key -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * @return the histograms of the latencies (in nanoseconds) recorded since the last call, sorted by type
+     */
+    public Map<String, Histogram> snapshot() {
+        Map<String, Histogram> histograms = new TreeMap<>();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().getIntervalHistogram());
+        }
+        return histograms;
+    }
+
+    public Map<String, Long> errorCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : errorCounters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+}
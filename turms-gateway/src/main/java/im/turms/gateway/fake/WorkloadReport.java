@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.gateway.fake;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+/**
+ * @author James Chen
+ */
+public record WorkloadReport(
+        int targetRequestsPerSecond,
+        long sentRequestCount,
+        long measurementNanos,
+        Map<String, Histogram> latencyHistograms,
+        Map<String, Long> errorCounts
+) {
+
+    private static final double NANOS_PER_MILLI = 1_000_000D;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public String toText() {
+        StringBuilder builder = new StringBuilder(512);
+        double seconds = measurementNanos / 1_000_000_000D;
+        builder.append(String.format("Target throughput: %d req/s%n", targetRequestsPerSecond))
+                .append(String.format("Actual throughput: %.1f req/s (%d requests in %.1f s)%n",
+                        seconds > 0 ? sentRequestCount / seconds : 0, sentRequestCount, seconds))
+                .append("Latencies are measured from the intended send time (corrected for coordinated omission) in milliseconds")
+                .append(System.lineSeparator())
+                .append(String.format("%-40s %10s %8s %10s %10s %10s %10s %10s%n",
+                        "type", "count", "errors", "p50", "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<String, Histogram> entry : latencyHistograms.entrySet()) {
+            String type = entry.getKey();
+            Histogram histogram = entry.getValue();
+            builder.append(String.format("%-40s %10d %8d", type, histogram.getTotalCount(), errorCounts.getOrDefault(type, 0L)));
+            for (double percentile : PERCENTILES) {
+                builder.append(String.format(" %10.2f", histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI));
+            }
+            builder.append(String.format(" %10.2f%n", histogram.getMaxValue() / NANOS_PER_MILLI));
+        }
+        return builder.toString();
+    }
+
+}
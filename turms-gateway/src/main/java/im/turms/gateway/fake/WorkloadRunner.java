@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.gateway.fake;
+
+import com.google.common.collect.Range;
+import im.turms.common.constant.DeviceType;
+import im.turms.common.constant.UserStatus;
+import im.turms.common.model.dto.notification.TurmsNotification;
+import im.turms.common.model.dto.request.TurmsRequest;
+import im.turms.common.model.dto.request.message.CreateMessageRequest;
+import im.turms.common.model.dto.request.user.UpdateUserOnlineStatusRequest;
+import im.turms.server.common.client.TurmsClient;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.fake.RandomProtobufGenerator;
+import im.turms.server.common.fake.RandomRequestFactory;
+import im.turms.server.common.property.env.gateway.WorkloadProperties;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.LoopResources;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the faked clients with a declarative workload profile.
+ * <p>
+ * Requests are scheduled open-loop: the i-th request is intended to be sent at
+ * {@code startTime + i * interval} no matter how long the previous responses take,
+ * and its latency is measured from the intended send time instead of the actual send time.
+ * Otherwise, a stalled server would also stall the load generator and hide the latencies
+ * that real clients would experience (coordinated omission).
+ * <p>
+ * The end-to-end delivery latency of notifications is measured by embedding the intended send time
+ * ({@link System#nanoTime()} based, which is comparable because all clients run in the same JVM)
+ * in the text of messages.
+ *
+ * @author James Chen
+ */
+@Log4j2
+public class WorkloadRunner {
+
+    private static final String TYPE_PRIVATE_MESSAGE = "PRIVATE_MESSAGE";
+    private static final String TYPE_GROUP_MESSAGE = "GROUP_MESSAGE";
+    private static final String TYPE_LOGIN_CHURN = "LOGIN_CHURN";
+    private static final String TYPE_NOTIFICATION_DELIVERY = "NOTIFICATION_DELIVERY";
+    private static final String SEND_TIME_PREFIX = "lt:";
+    private static final String PASSWORD = "123";
+    private static final Set<String> EXCLUDED_REQUEST_NAMES = Set.of(RandomRequestFactory.CREATE_SESSION_REQUEST_FILED_NAME,
+            RandomRequestFactory.DELETE_SESSION_REQUEST_FILED_NAME);
+
+    private final List<TurmsClient> clients;
+    private final long firstUserId;
+    private final WorkloadProperties properties;
+    private final String host;
+    private final int port;
+    private final LoopResources loopResources;
+
+    private final LatencyHistograms histograms = new LatencyHistograms();
+    private final Set<TurmsClient> churningClients = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sentRequestCount = new AtomicLong();
+    private final int totalWeight;
+    private final Range<Long> fakedNumberRange;
+    private final String textPadding;
+    private volatile long measurementStartTime = Long.MAX_VALUE;
+    private Thread thread;
+
+    public WorkloadRunner(List<TurmsClient> clients,
+                          long firstUserId,
+                          WorkloadProperties properties,
+                          String host,
+                          int port,
+                          LoopResources loopResources) {
+        this.clients = clients;
+        this.firstUserId = firstUserId;
+        this.properties = properties;
+        this.host = host;
+        this.port = port;
+        this.loopResources = loopResources;
+        totalWeight = properties.getPrivateMessageWeight()
+                + properties.getGroupMessageWeight()
+                + properties.getRandomRequestWeight()
+                + properties.getLoginChurnWeight();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The total weight of the workload must be greater than 0");
+        }
+        int jitter = clients.size() / 10;
+        fakedNumberRange = Range.closedOpen(Math.max(0, firstUserId - jitter), firstUserId + clients.size() + jitter);
+        textPadding = "x".repeat(Math.max(0, properties.getMessageTextSize() - 24));
+        for (TurmsClient client : clients) {
+            client.setNotificationListener(this::handleNotification);
+        }
+    }
+
+    public synchronized void start() {
+        if (clients.isEmpty() || thread != null) {
+            return;
+        }
+        thread = new DefaultThreadFactory("turms-workload-runner", true).newThread(this::run);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / properties.getTargetRequestsPerSecond();
+        long startTime = System.nanoTime();
+        long warmupEndTime = startTime + TimeUnit.SECONDS.toNanos(properties.getWarmupSeconds());
+        long endTime = warmupEndTime + TimeUnit.SECONDS.toNanos(properties.getDurationSeconds());
+        // Requests intended to be sent during the warmup are not recorded
+        measurementStartTime = warmupEndTime;
+        log.info("Start running the workload with the target throughput {} req/s", properties.getTargetRequestsPerSecond());
+        for (long i = 0; !Thread.currentThread().isInterrupted(); i++) {
+            long intendedSendTime = startTime + i * intervalNanos;
+            if (intendedSendTime >= endTime) {
+                break;
+            }
+            long waitNanos = intendedSendTime - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            try {
+                sendNext(intendedSendTime);
+            } catch (Exception e) {
+                log.error("Caught an internal error when sending request", e);
+            }
+            if (intendedSendTime >= warmupEndTime) {
+                sentRequestCount.incrementAndGet();
+            }
+        }
+        // Wait for the in-flight responses and notifications
+        LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(5));
+        long measurementNanos = Math.max(0, Math.min(System.nanoTime(), endTime) - warmupEndTime);
+        WorkloadReport report = new WorkloadReport(properties.getTargetRequestsPerSecond(),
+                sentRequestCount.get(),
+                measurementNanos,
+                histograms.snapshot(),
+                histograms.errorCounts());
+        exportReport(report);
+    }
+
+    private void sendNext(long intendedSendTime) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(clients.size());
+        TurmsClient client = clients.get(index);
+        if (churningClients.contains(client)) {
+            index = (index + 1) % clients.size();
+            client = clients.get(index);
+        }
+        int value = random.nextInt(totalWeight);
+        if ((value -= properties.getPrivateMessageWeight()) < 0) {
+            long recipientId = random.nextInt(100) < properties.getOnlineRecipientPercentage()
+                    ? firstUserId + random.nextInt(clients.size())
+                    : firstUserId + clients.size() + random.nextInt(clients.size());
+            CreateMessageRequest.Builder request = CreateMessageRequest.newBuilder()
+                    .setRecipientId(recipientId);
+            send(client, TYPE_PRIVATE_MESSAGE, newMessageRequest(request, intendedSendTime), intendedSendTime);
+        } else if ((value -= properties.getGroupMessageWeight()) < 0) {
+            long groupId = properties.getFirstGroupId() + random.nextInt(properties.getGroupCount());
+            CreateMessageRequest.Builder request = CreateMessageRequest.newBuilder()
+                    .setGroupId(groupId);
+            send(client, TYPE_GROUP_MESSAGE, newMessageRequest(request, intendedSendTime), intendedSendTime);
+        } else if ((value -= properties.getRandomRequestWeight()) < 0) {
+            TurmsRequest.Builder builder = newRandomRequest();
+            send(client, builder.getKindCase().name(), builder, intendedSendTime);
+        } else {
+            churn(client, firstUserId + index, intendedSendTime);
+        }
+    }
+
+    /**
+     * Carry the intended send time instead of the actual send time so that the notification delivery latency
+     * is also corrected for coordinated omission
+     */
+    private TurmsRequest.Builder newMessageRequest(CreateMessageRequest.Builder request, long intendedSendTime) {
+        request.setDeliveryDate(System.currentTimeMillis())
+                .setText(SEND_TIME_PREFIX + intendedSendTime + ":" + textPadding);
+        return TurmsRequest.newBuilder()
+                .setCreateMessageRequest(request);
+    }
+
+    private TurmsRequest.Builder newRandomRequest() {
+        RandomProtobufGenerator.GeneratorOptions options = new RandomProtobufGenerator
+                .GeneratorOptions(1, 1, fakedNumberRange);
+        TurmsRequest.Builder builder = RandomRequestFactory.create(EXCLUDED_REQUEST_NAMES, options);
+        if (builder.hasUpdateUserOnlineStatusRequest()) {
+            UpdateUserOnlineStatusRequest updateStatusRequest = builder.getUpdateUserOnlineStatusRequest();
+            if (updateStatusRequest.getUserStatus() == UserStatus.OFFLINE) {
+                builder.setUpdateUserOnlineStatusRequest(updateStatusRequest.toBuilder()
+                        .setUserStatus(UserStatus.INVISIBLE));
+            }
+        }
+        return builder;
+    }
+
+    private void send(TurmsClient client, String type, TurmsRequest.Builder builder, long intendedSendTime) {
+        client.sendRequest(builder)
+                .doOnNext(notification -> {
+                    if (TurmsStatusCode.isSuccessCode(notification.getCode())) {
+                        record(type, intendedSendTime);
+                    } else {
+                        recordError(type, intendedSendTime);
+                    }
+                })
+                .onErrorResume(t -> {
+                    recordError(type, intendedSendTime);
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
+    private void churn(TurmsClient client, long userId, long intendedSendTime) {
+        if (!churningClients.add(client)) {
+            return;
+        }
+        client.logout()
+                .onErrorResume(t -> Mono.empty())
+                .then(Mono.defer(() -> client.connect(host, port, loopResources)))
+                .then(Mono.defer(() -> client.login(userId, DeviceType.DESKTOP, PASSWORD)))
+                .doOnNext(notification -> record(TYPE_LOGIN_CHURN, intendedSendTime))
+                .doOnError(t -> recordError(TYPE_LOGIN_CHURN, intendedSendTime))
+                .doFinally(signal -> churningClients.remove(client))
+                .onErrorResume(t -> Mono.empty())
+                .subscribe();
+    }
+
+    private void handleNotification(TurmsNotification notification) {
+        if (!notification.hasRelayedRequest() || !notification.getRelayedRequest().hasCreateMessageRequest()) {
+            return;
+        }
+        String text = notification.getRelayedRequest().getCreateMessageRequest().getText();
+        if (!text.startsWith(SEND_TIME_PREFIX)) {
+            return;
+        }
+        int end = text.indexOf(':', SEND_TIME_PREFIX.length());
+        if (end < 0) {
+            return;
+        }
+        try {
+            long intendedSendTime = Long.parseLong(text, SEND_TIME_PREFIX.length(), end, 10);
+            record(TYPE_NOTIFICATION_DELIVERY, intendedSendTime);
+        } catch (NumberFormatException ignored) {
+            // The message isn't sent by the workload runner
+        }
+    }
+
+    private void record(String type, long startTime) {
+        if (startTime >= measurementStartTime) {
+            histograms.record(type, System.nanoTime() - startTime);
+        }
+    }
+
+    private void recordError(String type, long startTime) {
+        if (startTime >= measurementStartTime) {
+            histograms.recordError(type);
+        }
+    }
+
+    private void exportReport(WorkloadReport report) {
+        String text = report.toText();
+        log.info("The workload has finished:{}{}", System.lineSeparator(), text);
+        String reportPath = properties.getReportPath();
+        if (!StringUtils.hasText(reportPath)) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(reportPath), text);
+            log.info("The workload report has been written to: {}", reportPath);
+        } catch (IOException e) {
+            log.error("Failed to write the workload report to: {}", reportPath, e);
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.gateway.manager;
+
+import im.turms.common.constant.statuscode.SessionCloseStatus;
+import im.turms.gateway.service.impl.SessionService;
+import im.turms.server.common.dto.CloseReason;
+import im.turms.server.common.property.env.common.cluster.DrainProperties;
+import io.micrometer.core.instrument.Counter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Closes the local sessions in waves when the local node is draining
+ * so that clients reconnect to other turms-gateway servers gradually
+ * instead of stampeding them all at once.
+ *
+ * @author James Chen
+ * @implNote The number of the users to close in a wave is recalculated with the remaining users and waves
+ * so that the sessions are spread evenly even if some users go offline or new users log in during draining.
+ * The sleep between waves is jittered so that the waves of different draining servers don't line up.
+ */
+@Log4j2
+public class SessionDrainManager {
+
+    private static final CloseReason CLOSE_REASON = CloseReason.get(SessionCloseStatus.SERVER_DRAINING);
+
+    private final SessionService sessionService;
+    private final Map<Long, UserSessionsManager> sessionsManagerByUserId;
+    private final Supplier<DrainProperties> drainPropertiesSupplier;
+    private final Counter drainedSessionsCounter;
+    private Thread workerThread;
+
+    public SessionDrainManager(SessionService sessionService,
+                               Map<Long, UserSessionsManager> sessionsManagerByUserId,
+                               Supplier<DrainProperties> drainPropertiesSupplier,
+                               Counter drainedSessionsCounter) {
+        this.sessionService = sessionService;
+        this.sessionsManagerByUserId = sessionsManagerByUserId;
+        this.drainPropertiesSupplier = drainPropertiesSupplier;
+        this.drainedSessionsCounter = drainedSessionsCounter;
+    }
+
+    public synchronized void onDrainingChange(boolean isDraining) {
+        if (isDraining) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    public synchronized void destroy() {
+        stop();
+    }
+
+    private void start() {
+        if (workerThread != null) {
+            return;
+        }
+        DrainProperties properties = drainPropertiesSupplier.get();
+        long waveIntervalMillis = properties.getSessionCloseWaveIntervalMillis();
+        long endTime = System.currentTimeMillis() + properties.getSessionCloseDurationSeconds() * 1000L;
+        Duration flushNotificationsTimeout = Duration.ofMillis(properties.getFlushNotificationsTimeoutMillis());
+        DefaultThreadFactory factory = new DefaultThreadFactory("session-drain", true);
+        workerThread = factory.newThread(() -> {
+            log.info("Start closing {} local online users in waves", sessionsManagerByUserId.size());
+            // The users whose sessions are being closed stay in sessionsManagerByUserId
+            // until their status is removed from Redis, so record them to avoid closing them again
+            Set<Long> closingUserIds = ConcurrentHashMap.newKeySet();
+            while (!Thread.currentThread().isInterrupted() && !sessionsManagerByUserId.isEmpty()) {
+                long remainingWaves = Math.max(1, (endTime - System.currentTimeMillis()) / waveIntervalMillis);
+                try {
+                    closeWave(closingUserIds, remainingWaves, flushNotificationsTimeout);
+                } catch (Exception e) {
+                    log.error("Failed to close a wave of sessions", e);
+                }
+                long jitteredIntervalMillis = waveIntervalMillis / 2
+                        + ThreadLocalRandom.current().nextLong(waveIntervalMillis);
+                try {
+                    Thread.sleep(jitteredIntervalMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            log.info("Stop closing local sessions in waves with {} local online users remaining",
+                    sessionsManagerByUserId.size());
+        });
+        workerThread.start();
+    }
+
+    private void stop() {
+        if (workerThread != null) {
+            workerThread.interrupt();
+            workerThread = null;
+        }
+    }
+
+    private void closeWave(Set<Long> closingUserIds, long remainingWaves, Duration flushNotificationsTimeout) {
+        int remainingUsers = Math.max(0, sessionsManagerByUserId.size() - closingUserIds.size());
+        long usersToClose = (remainingUsers + remainingWaves - 1) / remainingWaves;
+        Iterator<Map.Entry<Long, UserSessionsManager>> iterator = sessionsManagerByUserId.entrySet().iterator();
+        while (usersToClose > 0 && iterator.hasNext()) {
+            Map.Entry<Long, UserSessionsManager> entry = iterator.next();
+            Long userId = entry.getKey();
+            if (!closingUserIds.add(userId)) {
+                continue;
+            }
+            UserSessionsManager manager = entry.getValue();
+            sessionService.drainLocalSessions(userId,
+                            manager.getLoggedInDeviceTypes(),
+                            CLOSE_REASON,
+                            flushNotificationsTimeout)
+                    .doFinally(signal -> closingUserIds.remove(userId))
+                    .subscribe(closedSessionCount -> drainedSessionsCounter.increment(closedSessionCount),
+                            t -> log.error("Failed to close the sessions of the user {} for draining", userId, t));
+            usersToClose--;
+        }
+    }
+
+}
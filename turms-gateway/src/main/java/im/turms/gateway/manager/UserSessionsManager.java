@@ -32,6 +32,7 @@ import org.springframework.util.Assert;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Set;
@@ -85,9 +86,24 @@ public final class UserSessionsManager {
     public void setDeviceOffline(
             @NotNull DeviceType deviceType,
             @NotNull CloseReason closeReason) {
+        setDeviceOffline(deviceType, closeReason, null);
+    }
+
+    /**
+     * @param flushNotificationsTimeout if not null, the session will be closed after its pending notifications
+     *                                  have been sent or the timeout elapses
+     */
+    public void setDeviceOffline(
+            @NotNull DeviceType deviceType,
+            @NotNull CloseReason closeReason,
+            @Nullable Duration flushNotificationsTimeout) {
         UserSession session = sessionMap.remove(deviceType);
         if (session != null) {
-            session.close(closeReason);
+            if (flushNotificationsTimeout == null) {
+                session.close(closeReason);
+            } else {
+                session.closeAfterFlushingNotifications(closeReason, flushNotificationsTimeout);
+            }
         }
     }
 
@@ -21,6 +21,7 @@ import im.turms.gateway.plugin.extension.NotificationHandler;
 import im.turms.gateway.plugin.extension.UserAuthenticator;
 import im.turms.gateway.plugin.extension.UserLoginActionLogHandler;
 import im.turms.gateway.plugin.extension.UserOnlineStatusChangeHandler;
+import im.turms.server.common.cluster.node.Node;
 import im.turms.server.common.plugin.base.AbstractTurmsPluginManager;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import lombok.Getter;
@@ -38,17 +39,21 @@ import java.util.List;
 @Log4j2
 public class TurmsPluginManager extends AbstractTurmsPluginManager {
 
-    private List<UserLoginActionLogHandler> userLoginActionLogHandlerList;
-    private List<NotificationHandler> notificationHandlerList;
-    private List<UserAuthenticator> userAuthenticatorList;
-    private List<UserOnlineStatusChangeHandler> userOnlineStatusChangeHandlerList;
+    private volatile List<UserLoginActionLogHandler> userLoginActionLogHandlerList;
+    private volatile List<NotificationHandler> notificationHandlerList;
+    private volatile List<UserAuthenticator> userAuthenticatorList;
+    private volatile List<UserOnlineStatusChangeHandler> userOnlineStatusChangeHandlerList;
 
     public TurmsPluginManager(
             ApplicationContext context,
+            Node node,
             TurmsPropertiesManager turmsPropertiesManager) {
-        super(context, turmsPropertiesManager.getLocalProperties());
+        super(context, node, turmsPropertiesManager.getLocalProperties());
     }
 
+    /**
+     * Called at startup and every time plugins are loaded, enabled, disabled, upgraded or unloaded at runtime
+     */
     @Override
     protected void initPlugins() {
         userLoginActionLogHandlerList = getAndInitExtensions(UserLoginActionLogHandler.class);
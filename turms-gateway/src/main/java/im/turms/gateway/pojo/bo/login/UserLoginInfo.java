@@ -28,10 +28,18 @@ import org.springframework.data.geo.Point;
 @Data
 public final class UserLoginInfo {
     private final Long userId;
+    /**
+     * Null if the user is resuming a session with a resumption ticket
+     */
     private final String password;
     private final DeviceType loggingInDeviceType;
     private final UserStatus userStatus;
     private final Point location;
     private final String ip;
     private final String deviceDetails;
+    /**
+     * True if the user has been authenticated by a resumption ticket,
+     * and the authenticator can still reject the login (e.g. if the user has been banned)
+     */
+    private final boolean resumingSession;
 }
\ No newline at end of file
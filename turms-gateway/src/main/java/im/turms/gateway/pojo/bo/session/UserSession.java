@@ -29,11 +29,13 @@ import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.data.geo.Point;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.util.concurrent.Queues;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.Date;
 
 /**
@@ -65,6 +67,12 @@ public final class UserSession {
     @Getter(AccessLevel.PRIVATE)
     private final Sinks.Many<ByteBuf> notificationSink = Sinks.many().unicast()
             .onBackpressureBuffer(Queues.<ByteBuf>unbounded(64).get());
+    /**
+     * Completed when all notifications in {@link #notificationSink} have been sent
+     * or the notification flux has been terminated
+     */
+    @Getter(AccessLevel.PRIVATE)
+    private final Sinks.Empty<Void> notificationsFlushedSink = Sinks.empty();
     @Nullable
     private Long logId;
     private volatile long lastHeartbeatRequestTimestampMillis;
@@ -121,6 +129,28 @@ public final class UserSession {
         }
     }
 
+    /**
+     * Stop accepting new notifications and close the session after the pending notifications
+     * have been sent to the client so that no notification is lost when the server drains sessions
+     */
+    public void closeAfterFlushingNotifications(@NotNull CloseReason closeReason, @NotNull Duration timeout) {
+        if (!isSessionOpen) {
+            return;
+        }
+        notificationSink.tryEmitComplete();
+        notificationsFlushedSink.asMono()
+                .timeout(timeout, Mono.empty())
+                .doFinally(signal -> close(closeReason))
+                .subscribe(null, t -> log.error("Failed to flush the notifications of the user session: {}", this, t));
+    }
+
+    /**
+     * Called by the subscriber of the notification flux when the flux terminates or is cancelled
+     */
+    public void onNotificationFluxTerminated() {
+        notificationsFlushedSink.tryEmitEmpty();
+    }
+
     public boolean isOpen() {
         return isSessionOpen;
     }
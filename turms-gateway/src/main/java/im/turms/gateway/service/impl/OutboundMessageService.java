@@ -139,12 +139,14 @@ public class OutboundMessageService implements IOutboundMessageService {
         }
         Mono<Void> resultMono;
         if (size == 1) {
-            resultMono = handlerList.get(0)
-                    .handle(notification, recipientIds, offlineRecipientIds);
+            NotificationHandler handler = handlerList.get(0);
+            TurmsNotification finalNotification = notification;
+            resultMono = handler.invoke(() -> handler.handle(finalNotification, recipientIds, offlineRecipientIds));
         } else {
             List<Mono<Void>> monos = new ArrayList<>(size);
+            TurmsNotification finalNotification = notification;
             for (NotificationHandler handler : handlerList) {
-                monos.add(handler.handle(notification, recipientIds, offlineRecipientIds));
+                monos.add(handler.invoke(() -> handler.handle(finalNotification, recipientIds, offlineRecipientIds)));
             }
             resultMono = Mono.when(monos);
         }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.gateway.service.impl;
+
+import im.turms.common.constant.DeviceType;
+import im.turms.common.util.RandomUtil;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.property.env.gateway.SessionResumptionProperties;
+import im.turms.server.common.security.HmacSigner;
+import im.turms.server.common.service.session.ResumptionTicketRevocationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import static im.turms.gateway.constant.MetricsConstant.FULL_LOGINS_COUNTER_NAME;
+import static im.turms.gateway.constant.MetricsConstant.REJECTED_RESUMPTION_TICKETS_COUNTER_NAME;
+import static im.turms.gateway.constant.MetricsConstant.RESUMED_LOGINS_COUNTER_NAME;
+
+/**
+ * Issues and verifies short-lived session resumption tickets so that reconnecting clients
+ * (e.g. after a turms-gateway restart or a network flap) can log in again without checking
+ * their credentials in MongoDB.
+ * <p>
+ * A ticket is "rt1." + Base64URL(payload + HMAC-SHA256(payload)), and the payload consists of:
+ * key ID (4), user ID (8), device type (4), session ID (4), ticket ID (8), issue time (8), expiration time (8).
+ * Tickets are verified locally, and a ticket can only be used once because it is consumed
+ * atomically in the revocation hash of the user in Redis by {@link ResumptionTicketRevocationService}.
+ *
+ * @author James Chen
+ */
+@Service
+@Log4j2
+public class SessionResumptionService {
+
+    public static final String TICKET_PREFIX = "rt1.";
+
+    private static final int KEY_ID_LENGTH = Integer.BYTES;
+    private static final int MAC_LENGTH = HmacSigner.SIGNATURE_LENGTH;
+    private static final int PAYLOAD_LENGTH = KEY_ID_LENGTH
+            + Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + Long.BYTES;
+
+    private final ResumptionTicketRevocationService revocationService;
+    private final Counter fullLoginsCounter;
+    private final Counter resumedLoginsCounter;
+    private final Counter rejectedTicketsCounter;
+
+    private volatile boolean enabled;
+    private volatile int ticketTtlSeconds;
+    /**
+     * The first key is used to sign new tickets
+     */
+    private volatile List<SigningKey> signingKeys = Collections.emptyList();
+
+    public SessionResumptionService(Node node,
+                                    ResumptionTicketRevocationService revocationService,
+                                    MetricsService metricsService) {
+        this.revocationService = revocationService;
+        MeterRegistry registry = metricsService.getRegistry();
+        fullLoginsCounter = registry.counter(FULL_LOGINS_COUNTER_NAME);
+        resumedLoginsCounter = registry.counter(RESUMED_LOGINS_COUNTER_NAME);
+        rejectedTicketsCounter = registry.counter(REJECTED_RESUMPTION_TICKETS_COUNTER_NAME);
+        updateProperties(node.getSharedProperties().getGateway().getSession().getResumption());
+        node.addPropertiesChangeListener(properties -> updateProperties(properties.getGateway().getSession().getResumption()));
+    }
+
+    private void updateProperties(SessionResumptionProperties properties) {
+        List<String> encodedKeys = properties.getSigningKeys();
+        List<SigningKey> keys = new ArrayList<>(encodedKeys.size());
+        for (String encodedKey : encodedKeys) {
+            try {
+                keys.add(SigningKey.of(Base64.getDecoder().decode(encodedKey)));
+            } catch (IllegalArgumentException | GeneralSecurityException e) {
+                log.error("Failed to parse a signing key for resumption tickets", e);
+            }
+        }
+        if (properties.isEnabled() && keys.isEmpty()) {
+            log.warn("Session resumption is disabled because there is no valid signing key");
+        }
+        signingKeys = keys;
+        ticketTtlSeconds = properties.getTicketTtlSeconds();
+        enabled = properties.isEnabled() && !keys.isEmpty();
+    }
+
+    public boolean isTicket(@Nullable String password) {
+        return enabled && password != null && password.startsWith(TICKET_PREFIX);
+    }
+
+    public void onFullLoginSucceeded() {
+        fullLoginsCounter.increment();
+    }
+
+    /**
+     * @return null if session resumption is disabled
+     */
+    @Nullable
+    public String issueTicket(long userId, DeviceType deviceType, int sessionId) {
+        List<SigningKey> keys = signingKeys;
+        if (!enabled || keys.isEmpty()) {
+            return null;
+        }
+        SigningKey key = keys.get(0);
+        long ticketId = RandomUtil.nextPositiveLong();
+        long now = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(PAYLOAD_LENGTH + MAC_LENGTH)
+                .putInt(key.id())
+                .putLong(userId)
+                .putInt(deviceType.getNumber())
+                .putInt(sessionId)
+                .putLong(ticketId)
+                .putLong(now)
+                .putLong(now + ticketTtlSeconds * 1000L);
+        buffer.put(key.signer().sign(buffer.array(), 0, PAYLOAD_LENGTH));
+        return TICKET_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Verifies the signature and the claims of the ticket locally
+     *
+     * @param currentSessionId the ID of the session of the device on the local node if the device is still online.
+     *                         A ticket can only resume the session it was issued for,
+     *                         so the ticket of an older session is rejected if the device is online with a newer session
+     * @return the verified ticket, or null if the ticket is invalid for the user and the device type
+     */
+    @Nullable
+    public Ticket verifyTicket(String ticket, long userId, DeviceType deviceType, @Nullable Integer currentSessionId) {
+        ByteBuffer buffer = decodeAndVerifySignature(ticket);
+        if (buffer == null) {
+            rejectedTicketsCounter.increment();
+            return null;
+        }
+        long ticketUserId = buffer.getLong();
+        int ticketDeviceType = buffer.getInt();
+        int sessionId = buffer.getInt();
+        long ticketId = buffer.getLong();
+        long issueTime = buffer.getLong();
+        long expirationTime = buffer.getLong();
+        if (ticketUserId != userId
+                || ticketDeviceType != deviceType.getNumber()
+                || (currentSessionId != null && currentSessionId != sessionId)
+                || expirationTime <= System.currentTimeMillis()) {
+            rejectedTicketsCounter.increment();
+            return null;
+        }
+        return new Ticket(ticketId, sessionId, issueTime);
+    }
+
+    /**
+     * Consumes the verified ticket so that it cannot be replayed
+     *
+     * @return true if the ticket was neither consumed nor revoked
+     */
+    public Mono<Boolean> consumeTicket(long userId, DeviceType deviceType, Ticket ticket) {
+        return revocationService.consumeTicket(userId, deviceType, ticket.id(), ticket.issueTime())
+                .doOnNext(consumed -> {
+                    if (consumed) {
+                        resumedLoginsCounter.increment();
+                    } else {
+                        rejectedTicketsCounter.increment();
+                    }
+                });
+    }
+
+    /**
+     * Revokes all tickets issued to the device of the user before now (e.g. after the user logs out)
+     */
+    public Mono<Void> revokeAllTickets(long userId, DeviceType deviceType) {
+        return revocationService.revokeAllTickets(userId, deviceType);
+    }
+
+    /**
+     * @return the buffer positioned after the key ID if the signature is valid; otherwise null
+     */
+    @Nullable
+    private ByteBuffer decodeAndVerifySignature(String ticket) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(ticket.substring(TICKET_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != PAYLOAD_LENGTH + MAC_LENGTH) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int keyId = buffer.getInt();
+        for (SigningKey key : signingKeys) {
+            if (key.id() != keyId) {
+                continue;
+            }
+            return key.signer().verify(bytes, 0, PAYLOAD_LENGTH, bytes, PAYLOAD_LENGTH) ? buffer : null;
+        }
+        return null;
+    }
+
+    /**
+     * @param issueTime the epoch millis when the ticket was issued
+     */
+    public record Ticket(long id, int sessionId, long issueTime) {
+    }
+
+    /**
+     * @param id the first 4 bytes of the SHA-256 digest of the secret,
+     *           so that keys can be rotated without assigning IDs manually
+     */
+    private record SigningKey(int id, HmacSigner signer) {
+
+        static SigningKey of(byte[] secret) throws GeneralSecurityException {
+            int id = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(secret)).getInt();
+            return new SigningKey(id, new HmacSigner(secret));
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import im.turms.common.constant.DeviceType;
 import im.turms.common.constant.UserStatus;
 import im.turms.common.constant.statuscode.SessionCloseStatus;
 import im.turms.gateway.manager.HeartbeatManager;
+import im.turms.gateway.manager.SessionDrainManager;
 import im.turms.gateway.manager.UserSessionsManager;
 import im.turms.gateway.plugin.extension.UserOnlineStatusChangeHandler;
 import im.turms.gateway.plugin.manager.TurmsPluginManager;
@@ -36,6 +37,7 @@ import im.turms.server.common.constant.TurmsStatusCode;
 import im.turms.server.common.constraint.ValidDeviceType;
 import im.turms.server.common.dto.CloseReason;
 import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.DrainManager;
 import im.turms.server.common.property.TurmsProperties;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.env.gateway.SessionProperties;
@@ -59,6 +61,7 @@ import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -67,6 +70,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static im.turms.gateway.constant.MetricsConstant.DRAINED_SESSIONS_COUNTER_NAME;
 import static im.turms.gateway.constant.MetricsConstant.LOGGED_IN_USERS_COUNTER_NAME;
 import static im.turms.gateway.constant.MetricsConstant.ONLINE_USERS_GAUGE_NAME;
 
@@ -76,10 +80,13 @@ import static im.turms.gateway.constant.MetricsConstant.ONLINE_USERS_GAUGE_NAME;
 @Service
 public class SessionService implements ISessionService {
 
+    private static final String DRAIN_PENDING_WORK_SESSIONS = "sessions";
+
     private final Node node;
     private final TurmsPropertiesManager turmsPropertiesManager;
     private final TurmsPluginManager turmsPluginManager;
     private final HeartbeatManager heartbeatManager;
+    private final SessionDrainManager sessionDrainManager;
 
     private final SessionLocationService sessionLocationService;
     private final UserStatusService userStatusService;
@@ -100,7 +107,8 @@ public class SessionService implements ISessionService {
             SessionLocationService sessionLocationService,
             UserStatusService userStatusService,
             UserSimultaneousLoginService userSimultaneousLoginService,
-            MetricsService metricsService) {
+            MetricsService metricsService,
+            DrainManager drainManager) {
         this.node = node;
         this.userLoginActionService = userLoginActionService;
         this.sessionLocationService = sessionLocationService;
@@ -136,11 +144,19 @@ public class SessionService implements ISessionService {
         MeterRegistry registry = metricsService.getRegistry();
         loggedInUsersCounter = registry.counter(LOGGED_IN_USERS_COUNTER_NAME);
         registry.gaugeMapSize(ONLINE_USERS_GAUGE_NAME, Tags.empty(), sessionsManagerByUserId);
+
+        sessionDrainManager = new SessionDrainManager(this,
+                sessionsManagerByUserId,
+                () -> node.getSharedProperties().getCluster().getDrain(),
+                registry.counter(DRAINED_SESSIONS_COUNTER_NAME));
+        drainManager.addDrainingListener(sessionDrainManager::onDrainingChange);
+        drainManager.addPendingWork(DRAIN_PENDING_WORK_SESSIONS, this::countLocalOnlineUsers);
     }
 
     @PreDestroy
     public void destroy() {
         heartbeatManager.destroy();
+        sessionDrainManager.destroy();
         CloseReason closeReason = CloseReason.get(SessionCloseStatus.SERVER_CLOSED);
         clearAllLocalSessions(new Date(), closeReason)
                 .subscribe();
@@ -190,7 +206,8 @@ public class SessionService implements ISessionService {
         UserSession session = manager.getSession(deviceType);
         if (session.getId() == sessionId) {
             return setLocalSessionOfflineByUserIdAndDeviceTypes0(userId, Collections.singleton(deviceType), closeReason, new Date(),
-                    manager);
+                            manager, null)
+                    .map(count -> true);
         } else {
             return Mono.just(false);
         }
@@ -210,15 +227,45 @@ public class SessionService implements ISessionService {
         if (manager == null) {
             return Mono.just(false);
         }
-        return setLocalSessionOfflineByUserIdAndDeviceTypes0(userId, deviceTypes, closeReason, disconnectionDate, manager);
+        return setLocalSessionOfflineByUserIdAndDeviceTypes0(userId, deviceTypes, closeReason, disconnectionDate, manager, null)
+                .map(count -> true);
+    }
+
+    /**
+     * Set the sessions offline like {@link #setLocalSessionOfflineByUserIdAndDeviceTypes(Long, Set, CloseReason)}
+     * but close them after their pending notifications have been sent
+     *
+     * @return the number of the sessions that have been set offline
+     */
+    public Mono<Integer> drainLocalSessions(
+            @NotNull Long userId,
+            @NotEmpty Set<@ValidDeviceType DeviceType> deviceTypes,
+            @NotNull CloseReason closeReason,
+            @NotNull Duration flushNotificationsTimeout) {
+        try {
+            AssertUtil.notNull(userId, "userId");
+            AssertUtil.notNull(flushNotificationsTimeout, "flushNotificationsTimeout");
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        UserSessionsManager manager = getUserSessionsManager(userId);
+        if (manager == null) {
+            return Mono.just(0);
+        }
+        return setLocalSessionOfflineByUserIdAndDeviceTypes0(userId, deviceTypes, closeReason, new Date(), manager,
+                flushNotificationsTimeout);
     }
 
-    private Mono<Boolean> setLocalSessionOfflineByUserIdAndDeviceTypes0(
+    /**
+     * @return the number of the sessions that have been set offline
+     */
+    private Mono<Integer> setLocalSessionOfflineByUserIdAndDeviceTypes0(
             @NotNull Long userId,
             @NotEmpty Set<@ValidDeviceType DeviceType> deviceTypes,
             @NotNull CloseReason closeReason,
             @NotNull Date disconnectionDate,
-            @NotNull UserSessionsManager manager) {
+            @NotNull UserSessionsManager manager,
+            @Nullable Duration flushNotificationsTimeout) {
         try {
             AssertUtil.notNull(closeReason, "closeReason");
             AssertUtil.notNull(disconnectionDate, "disconnectionDate");
@@ -234,9 +281,14 @@ public class SessionService implements ISessionService {
                     List<Mono<UserSession>> disconnectMonos = new ArrayList<>(deviceTypes.size());
                     for (DeviceType deviceType : deviceTypes) {
                         UserSession session = manager.getSession(deviceType);
-                        if (session != null && sessionLocationService.isLocationEnabled()) {
+                        if (session == null) {
+                            continue;
+                        }
+                        if (sessionLocationService.isLocationEnabled()) {
                             disconnectMonos.add(sessionLocationService.removeUserLocation(userId, deviceType)
                                     .thenReturn(session));
+                        } else {
+                            disconnectMonos.add(Mono.just(session));
                         }
                     }
                     return Flux.merge(disconnectMonos)
@@ -246,10 +298,11 @@ public class SessionService implements ISessionService {
                                 if (logId != null) {
                                     userLoginActionService.tryLogLogoutActionAndTriggerHandlers(logId, userId, disconnectionDate);
                                 }
-                                manager.setDeviceOffline(session.getDeviceType(), closeReason);
+                                manager.setDeviceOffline(session.getDeviceType(), closeReason, flushNotificationsTimeout);
                                 removeSessionsManagerIfEmpty(closeReason, manager, userId);
                             })
-                            .then(Mono.just(true));
+                            .count()
+                            .map(Long::intValue);
                 });
     }
 
@@ -479,7 +532,7 @@ public class SessionService implements ISessionService {
             List<UserOnlineStatusChangeHandler> handlerList = turmsPluginManager.getUserOnlineStatusChangeHandlerList();
             if (!handlerList.isEmpty()) {
                 for (UserOnlineStatusChangeHandler handler : handlerList) {
-                    handler.goOffline(manager, closeReason).subscribe();
+                    handler.invoke(() -> handler.goOffline(manager, closeReason)).subscribe();
                 }
             }
         }
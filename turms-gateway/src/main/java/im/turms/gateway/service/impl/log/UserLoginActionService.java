@@ -98,7 +98,7 @@ public class UserLoginActionService {
         if (!logHandlerList.isEmpty()) {
             List<Mono<Void>> monos = new ArrayList<>(logHandlerList.size());
             for (UserLoginActionLogHandler handler : logHandlerList) {
-                monos.add(handler.handleUserLoginActionLog(log));
+                monos.add(handler.invoke(() -> handler.handleUserLoginActionLog(log)));
             }
             return Mono.when(monos);
         }
@@ -110,7 +110,7 @@ public class UserLoginActionService {
         if (!logHandlerList.isEmpty()) {
             List<Mono<Void>> monos = new ArrayList<>(logHandlerList.size());
             for (UserLoginActionLogHandler handler : logHandlerList) {
-                monos.add(handler.handleUserLogoutActionLog(log));
+                monos.add(handler.invoke(() -> handler.handleUserLogoutActionLog(log)));
             }
             return Mono.when(monos);
         }
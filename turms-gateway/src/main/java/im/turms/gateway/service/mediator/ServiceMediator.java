@@ -28,6 +28,7 @@ import im.turms.gateway.plugin.manager.TurmsPluginManager;
 import im.turms.gateway.pojo.bo.login.UserLoginInfo;
 import im.turms.gateway.pojo.bo.session.UserSession;
 import im.turms.gateway.service.impl.InboundRequestService;
+import im.turms.gateway.service.impl.SessionResumptionService;
 import im.turms.gateway.service.impl.SessionService;
 import im.turms.gateway.service.impl.UserService;
 import im.turms.gateway.service.impl.UserSimultaneousLoginService;
@@ -62,6 +63,7 @@ public class ServiceMediator {
     private final SessionService sessionService;
     private final UserSimultaneousLoginService userSimultaneousLoginService;
     private final InboundRequestService inboundRequestService;
+    private final SessionResumptionService sessionResumptionService;
 
     public ServiceMediator(
             Node node,
@@ -69,13 +71,15 @@ public class ServiceMediator {
             UserService userService,
             SessionService sessionService,
             UserSimultaneousLoginService userSimultaneousLoginService,
-            InboundRequestService inboundRequestService) {
+            InboundRequestService inboundRequestService,
+            SessionResumptionService sessionResumptionService) {
         this.node = node;
         this.turmsPluginManager = turmsPluginManager;
         this.userService = userService;
         this.sessionService = sessionService;
         this.userSimultaneousLoginService = userSimultaneousLoginService;
         this.inboundRequestService = inboundRequestService;
+        this.sessionResumptionService = sessionResumptionService;
     }
 
     // Login
@@ -97,6 +101,22 @@ public class ServiceMediator {
                         : Mono.error(TurmsBusinessException.get(statusCode)));
     }
 
+    /**
+     * @return the resumption ticket, or null if session resumption is disabled
+     */
+    @Nullable
+    public String issueResumptionTicket(@NotNull UserSession session) {
+        return sessionResumptionService.issueTicket(session.getUserId(), session.getDeviceType(), session.getId());
+    }
+
+    /**
+     * Revokes all tickets issued to the device of the session,
+     * including the tickets of the previous sessions that haven't expired
+     */
+    public Mono<Void> revokeResumptionTickets(@NotNull UserSession session) {
+        return sessionResumptionService.revokeAllTickets(session.getUserId(), session.getDeviceType());
+    }
+
     // Disconnect
 
     /**
@@ -148,11 +168,14 @@ public class ServiceMediator {
             int size = handlers.size();
             return switch (size) {
                 case 0 -> Mono.empty();
-                case 1 -> handlers.get(0).goOnline(userSessionsManager, userSession);
+                case 1 -> {
+                    UserOnlineStatusChangeHandler handler = handlers.get(0);
+                    yield handler.invoke(() -> handler.goOnline(userSessionsManager, userSession));
+                }
                 default -> {
                     List<Mono<Void>> monos = new ArrayList<>(size);
                     for (UserOnlineStatusChangeHandler handler : handlers) {
-                        monos.add(handler.goOnline(userSessionsManager, userSession));
+                        monos.add(handler.invoke(() -> handler.goOnline(userSessionsManager, userSession)));
                     }
                     yield Mono.when(monos);
                 }
@@ -179,28 +202,102 @@ public class ServiceMediator {
         if (!enableAuthentication) {
             return Mono.just(TurmsStatusCode.OK);
         }
-        if (turmsPluginManager.isEnabled()) {
-            List<UserAuthenticator> authenticatorList = turmsPluginManager.getUserAuthenticatorList();
-            if (!authenticatorList.isEmpty()) {
-                Mono<Boolean> authenticate = Mono.empty();
-                UserLoginInfo userLoginInfo = new UserLoginInfo(
-                        userId,
-                        password,
-                        deviceType,
-                        userStatus,
-                        position,
-                        ip,
-                        deviceDetails);
-                for (UserAuthenticator authenticator : authenticatorList) {
-                    Mono<Boolean> authenticateMono = authenticator.authenticate(userLoginInfo);
-                    authenticate = authenticate.switchIfEmpty(authenticateMono);
-                }
-                return authenticate
-                        .map(authenticated -> authenticated ? TurmsStatusCode.OK : TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED)
-                        .switchIfEmpty(authenticate0(userId, password));
-            }
+        // Note that the ticket is carried in the password field
+        // because it is the only credential field of CreateSessionRequest
+        if (sessionResumptionService.isTicket(password)) {
+            return authenticateWithTicket(userId, password, deviceType, userStatus, position, ip, deviceDetails);
+        }
+        return authenticateWithCredentials(userId, password, deviceType, userStatus, position, ip, deviceDetails)
+                .doOnNext(statusCode -> {
+                    if (statusCode == TurmsStatusCode.OK) {
+                        sessionResumptionService.onFullLoginSucceeded();
+                    }
+                });
+    }
+
+    /**
+     * The ticket only replaces the password check, so the user still needs to be active
+     * and the login can still be rejected by plugins. The ticket is consumed after the checks pass
+     *
+     * @return OK, AUTHENTICATION_FAILED, LOGGING_IN_USER_NOT_ACTIVE
+     */
+    private Mono<TurmsStatusCode> authenticateWithTicket(
+            @NotNull Long userId,
+            @NotNull String ticket,
+            @NotNull DeviceType deviceType,
+            @Nullable UserStatus userStatus,
+            @Nullable Point position,
+            @Nullable String ip,
+            @Nullable String deviceDetails) {
+        UserSessionsManager sessionsManager = sessionService.getUserSessionsManager(userId);
+        UserSession currentSession = sessionsManager == null ? null : sessionsManager.getSession(deviceType);
+        Integer currentSessionId = currentSession == null ? null : currentSession.getId();
+        SessionResumptionService.Ticket verifiedTicket =
+                sessionResumptionService.verifyTicket(ticket, userId, deviceType, currentSessionId);
+        if (verifiedTicket == null) {
+            return Mono.just(TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED);
+        }
+        UserLoginInfo userLoginInfo = new UserLoginInfo(
+                userId,
+                null,
+                deviceType,
+                userStatus,
+                position,
+                ip,
+                deviceDetails,
+                true);
+        return userService.isActiveAndNotDeleted(userId)
+                .flatMap(isActiveAndNotDeleted -> isActiveAndNotDeleted
+                        ? authenticateWithPlugins(userLoginInfo).defaultIfEmpty(TurmsStatusCode.OK)
+                        : Mono.just(TurmsStatusCode.LOGGING_IN_USER_NOT_ACTIVE))
+                .flatMap(statusCode -> statusCode == TurmsStatusCode.OK
+                        ? sessionResumptionService.consumeTicket(userId, deviceType, verifiedTicket)
+                        .map(consumed -> consumed ? TurmsStatusCode.OK : TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED)
+                        : Mono.just(statusCode));
+    }
+
+    /**
+     * @return OK, AUTHENTICATION_FAILED, LOGGING_IN_USER_NOT_ACTIVE
+     */
+    private Mono<TurmsStatusCode> authenticateWithCredentials(
+            @NotNull Long userId,
+            @Nullable String password,
+            @NotNull DeviceType deviceType,
+            @Nullable UserStatus userStatus,
+            @Nullable Point position,
+            @Nullable String ip,
+            @Nullable String deviceDetails) {
+        UserLoginInfo userLoginInfo = new UserLoginInfo(
+                userId,
+                password,
+                deviceType,
+                userStatus,
+                position,
+                ip,
+                deviceDetails,
+                false);
+        return authenticateWithPlugins(userLoginInfo)
+                .switchIfEmpty(authenticate0(userId, password));
+    }
+
+    /**
+     * @return OK or AUTHENTICATION_FAILED, or empty if no plugin decides the result
+     */
+    private Mono<TurmsStatusCode> authenticateWithPlugins(UserLoginInfo userLoginInfo) {
+        if (!turmsPluginManager.isEnabled()) {
+            return Mono.empty();
+        }
+        List<UserAuthenticator> authenticatorList = turmsPluginManager.getUserAuthenticatorList();
+        if (authenticatorList.isEmpty()) {
+            return Mono.empty();
+        }
+        Mono<Boolean> authenticate = Mono.empty();
+        for (UserAuthenticator authenticator : authenticatorList) {
+            Mono<Boolean> authenticateMono = authenticator.invoke(() -> authenticator.authenticate(userLoginInfo));
+            authenticate = authenticate.switchIfEmpty(authenticateMono);
         }
-        return authenticate0(userId, password);
+        return authenticate
+                .map(authenticated -> authenticated ? TurmsStatusCode.OK : TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED);
     }
 
     /**
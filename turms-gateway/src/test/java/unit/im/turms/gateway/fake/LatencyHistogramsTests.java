@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.gateway.fake;
+
+import im.turms.gateway.fake.LatencyHistograms;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class LatencyHistogramsTests {
+
+    @Test
+    void snapshot_shouldReturnLatenciesPerType() {
+        LatencyHistograms histograms = new LatencyHistograms();
+        histograms.record("A", TimeUnit.MILLISECONDS.toNanos(1));
+        histograms.record("A", TimeUnit.MILLISECONDS.toNanos(3));
+        histograms.record("B", TimeUnit.MILLISECONDS.toNanos(2));
+        histograms.recordError("B");
+
+        Map<String, Histogram> snapshot = histograms.snapshot();
+
+        assertThat(snapshot).containsOnlyKeys("A", "B");
+        assertThat(snapshot.get("A").getTotalCount()).isEqualTo(2);
+        assertThat(snapshot.get("B").getTotalCount()).isEqualTo(1);
+        assertThat(histograms.errorCounts()).containsEntry("B", 1L);
+    }
+
+    @Test
+    void snapshot_shouldOnlyContainLatenciesSinceLastSnapshot() {
+        LatencyHistograms histograms = new LatencyHistograms();
+        histograms.record("A", TimeUnit.MILLISECONDS.toNanos(1));
+        histograms.snapshot();
+
+        histograms.record("A", TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(histograms.snapshot().get("A").getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    void record_shouldClampLatencyExceedingHighestTrackableValue() {
+        LatencyHistograms histograms = new LatencyHistograms();
+        histograms.record("A", TimeUnit.HOURS.toNanos(1));
+
+        assertThat(histograms.snapshot().get("A").getMaxValue())
+                .isLessThanOrEqualTo(TimeUnit.MINUTES.toNanos(1) * 2);
+    }
+
+}
@@ -18,6 +18,7 @@
 package unit.im.turms.gateway.plugin.manager;
 
 import im.turms.gateway.plugin.manager.TurmsPluginManager;
+import im.turms.server.common.cluster.node.Node;
 import im.turms.server.common.property.TurmsProperties;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.env.common.PluginProperties;
@@ -46,7 +47,10 @@ class TurmsPluginManagerTests {
                 .build();
         when(propertiesManager.getLocalProperties())
                 .thenReturn(properties);
-        TurmsPluginManager turmsPluginManager = new TurmsPluginManager(context, propertiesManager);
+        Node node = mock(Node.class);
+        when(node.getSharedProperties())
+                .thenReturn(properties);
+        TurmsPluginManager turmsPluginManager = new TurmsPluginManager(context, node, propertiesManager);
 
         assertThat(turmsPluginManager.getUserLoginActionLogHandlerList()).isNotNull();
         assertThat(turmsPluginManager.getNotificationHandlerList()).isNotNull();
@@ -66,7 +70,10 @@ class TurmsPluginManagerTests {
                 .build();
         when(propertiesManager.getLocalProperties())
                 .thenReturn(properties);
-        TurmsPluginManager turmsPluginManager = new TurmsPluginManager(context, propertiesManager);
+        Node node = mock(Node.class);
+        when(node.getSharedProperties())
+                .thenReturn(properties);
+        TurmsPluginManager turmsPluginManager = new TurmsPluginManager(context, node, propertiesManager);
 
         assertThatCode(turmsPluginManager::destroy)
                 .doesNotThrowAnyException();
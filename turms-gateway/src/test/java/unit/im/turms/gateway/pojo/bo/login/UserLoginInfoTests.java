@@ -45,13 +45,13 @@ class UserLoginInfoTests {
 
     @Test
     void constructor_shouldReturnInstance() {
-        UserLoginInfo userLoginInfo = new UserLoginInfo(userId, password, loggingInDeviceType, userStatus, location, ip, deviceDetails);
+        UserLoginInfo userLoginInfo = new UserLoginInfo(userId, password, loggingInDeviceType, userStatus, location, ip, deviceDetails, false);
         assertThat(userLoginInfo).isNotNull();
     }
 
     @Test
     void getters_shouldGetValues() {
-        UserLoginInfo userLoginInfo = new UserLoginInfo(userId, password, loggingInDeviceType, userStatus, location, ip, deviceDetails);
+        UserLoginInfo userLoginInfo = new UserLoginInfo(userId, password, loggingInDeviceType, userStatus, location, ip, deviceDetails, false);
         assertThat(userLoginInfo.getUserId()).isEqualTo(userId);
         assertThat(userLoginInfo.getPassword()).isEqualTo(password);
         assertThat(userLoginInfo.getLoggingInDeviceType()).isEqualTo(loggingInDeviceType);
@@ -18,11 +18,23 @@
 package unit.im.turms.gateway.pojo.bo.session;
 
 import im.turms.common.constant.DeviceType;
+import im.turms.common.constant.statuscode.SessionCloseStatus;
 import im.turms.gateway.pojo.bo.session.UserSession;
+import im.turms.gateway.pojo.bo.session.connection.NetConnection;
+import im.turms.server.common.dto.CloseReason;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.geo.Point;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author James Chen
@@ -56,4 +68,45 @@ class UserSessionTests {
         assertThat(userSession.getLogId()).isEqualTo(logId);
     }
 
+    @Test
+    void closeAfterFlushingNotifications_shouldCloseAfterNotificationsAreFlushed() {
+        UserSession userSession = new UserSession(
+                userId,
+                deviceType,
+                loginLocation,
+                logId);
+        NetConnection connection = mock(NetConnection.class);
+        userSession.setConnection(connection);
+        ByteBuf notification = Unpooled.buffer();
+        userSession.tryEmitNextNotification(notification);
+        List<ByteBuf> sentNotifications = new ArrayList<>();
+        userSession.getNotificationFlux()
+                .doFinally(signal -> userSession.onNotificationFluxTerminated())
+                .subscribe(sentNotifications::add);
+
+        CloseReason closeReason = CloseReason.get(SessionCloseStatus.SERVER_DRAINING);
+        userSession.closeAfterFlushingNotifications(closeReason, Duration.ofMinutes(1));
+
+        assertThat(sentNotifications).containsExactly(notification);
+        assertThat(userSession.isOpen()).isFalse();
+        verify(connection).close(closeReason);
+    }
+
+    @Test
+    void closeAfterFlushingNotifications_shouldClose_ifTimeout() {
+        UserSession userSession = new UserSession(
+                userId,
+                deviceType,
+                loginLocation,
+                logId);
+        NetConnection connection = mock(NetConnection.class);
+        userSession.setConnection(connection);
+
+        CloseReason closeReason = CloseReason.get(SessionCloseStatus.SERVER_DRAINING);
+        userSession.closeAfterFlushingNotifications(closeReason, Duration.ofMillis(10));
+
+        verify(connection, timeout(5000)).close(closeReason);
+        assertThat(userSession.isOpen()).isFalse();
+    }
+
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.gateway.service.impl;
+
+import im.turms.common.constant.DeviceType;
+import im.turms.gateway.service.impl.MetricsService;
+import im.turms.gateway.service.impl.SessionResumptionService;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.env.gateway.SessionResumptionProperties;
+import im.turms.server.common.service.session.ResumptionTicketRevocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class SessionResumptionServiceTests {
+
+    private static final String SIGNING_KEY = Base64.getEncoder()
+            .encodeToString("a-signing-key-for-resumption-tickets".getBytes(StandardCharsets.UTF_8));
+
+    private final long userId = 1L;
+    private final DeviceType deviceType = DeviceType.ANDROID;
+    private final int sessionId = 10;
+
+    private final TurmsProperties properties = new TurmsProperties();
+    private ResumptionTicketRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        revocationService = mock(ResumptionTicketRevocationService.class);
+        SessionResumptionProperties resumptionProperties = properties.getGateway().getSession().getResumption();
+        resumptionProperties.setEnabled(true);
+        resumptionProperties.setSigningKeys(List.of(SIGNING_KEY));
+    }
+
+    @Test
+    void verifyTicket_shouldReturnTicket_forValidTicket() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+
+        SessionResumptionService.Ticket verifiedTicket = service.verifyTicket(ticket, userId, deviceType, null);
+
+        assertThat(verifiedTicket).isNotNull();
+        assertThat(verifiedTicket.sessionId()).isEqualTo(sessionId);
+        assertThat(service.verifyTicket(ticket, userId, deviceType, sessionId)).isNotNull();
+    }
+
+    @Test
+    void verifyTicket_shouldReject_ifSignatureIsInvalid() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+        byte[] bytes = Base64.getUrlDecoder().decode(ticket.substring(SessionResumptionService.TICKET_PREFIX.length()));
+        // Tamper with the user ID
+        bytes[Integer.BYTES + Long.BYTES - 1] ^= 1;
+        String tamperedTicket = SessionResumptionService.TICKET_PREFIX
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        assertThat(service.verifyTicket(tamperedTicket, userId + 1, deviceType, null)).isNull();
+        assertThat(service.verifyTicket(SessionResumptionService.TICKET_PREFIX + "invalid", userId, deviceType, null)).isNull();
+    }
+
+    @Test
+    void verifyTicket_shouldReject_ifSigningKeyIsRemoved() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+        properties.getGateway().getSession().getResumption()
+                .setSigningKeys(List.of(Base64.getEncoder().encodeToString("another-key".getBytes(StandardCharsets.UTF_8))));
+        SessionResumptionService serviceWithRotatedKey = newService();
+
+        assertThat(serviceWithRotatedKey.verifyTicket(ticket, userId, deviceType, null)).isNull();
+    }
+
+    @Test
+    void verifyTicket_shouldReject_ifTicketIsExpired() {
+        properties.getGateway().getSession().getResumption().setTicketTtlSeconds(0);
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+
+        assertThat(service.verifyTicket(ticket, userId, deviceType, null)).isNull();
+    }
+
+    @Test
+    void verifyTicket_shouldReject_ifUserOrDeviceTypeDoesNotMatch() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+
+        assertThat(service.verifyTicket(ticket, userId + 1, deviceType, null)).isNull();
+        assertThat(service.verifyTicket(ticket, userId, DeviceType.IOS, null)).isNull();
+    }
+
+    @Test
+    void verifyTicket_shouldReject_ifDeviceIsOnlineWithAnotherSession() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+
+        assertThat(service.verifyTicket(ticket, userId, deviceType, sessionId + 1)).isNull();
+    }
+
+    @Test
+    void consumeTicket_shouldReject_ifTicketIsReplayedOrRevoked() {
+        SessionResumptionService service = newService();
+        String ticket = service.issueTicket(userId, deviceType, sessionId);
+        SessionResumptionService.Ticket verifiedTicket = service.verifyTicket(ticket, userId, deviceType, null);
+        assertThat(verifiedTicket).isNotNull();
+        // The revocation service consumes a ticket only once
+        when(revocationService.consumeTicket(eq(userId), eq(deviceType), eq(verifiedTicket.id()), anyLong()))
+                .thenReturn(Mono.just(true), Mono.just(false));
+
+        StepVerifier.create(service.consumeTicket(userId, deviceType, verifiedTicket))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(service.consumeTicket(userId, deviceType, verifiedTicket))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void issueTicket_shouldReturnNull_ifDisabled() {
+        properties.getGateway().getSession().getResumption().setEnabled(false);
+        SessionResumptionService service = newService();
+
+        assertThat(service.issueTicket(userId, deviceType, sessionId)).isNull();
+        assertThat(service.isTicket(SessionResumptionService.TICKET_PREFIX)).isFalse();
+    }
+
+    private SessionResumptionService newService() {
+        Node node = mock(Node.class);
+        when(node.getSharedProperties()).thenReturn(properties);
+        return new SessionResumptionService(node, revocationService, new MetricsService());
+    }
+
+}
@@ -24,6 +24,7 @@ import im.turms.gateway.manager.UserSessionsManager;
 import im.turms.gateway.plugin.manager.TurmsPluginManager;
 import im.turms.gateway.pojo.bo.session.UserSession;
 import im.turms.gateway.service.impl.InboundRequestService;
+import im.turms.gateway.service.impl.SessionResumptionService;
 import im.turms.gateway.service.impl.SessionService;
 import im.turms.gateway.service.impl.UserService;
 import im.turms.gateway.service.impl.UserSimultaneousLoginService;
@@ -45,8 +46,10 @@ import java.util.Collections;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNoException;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -56,12 +59,14 @@ import static org.mockito.Mockito.when;
  */
 class ServiceMediatorTests {
 
+    private static final String TICKET = SessionResumptionService.TICKET_PREFIX + "ticket";
+
     private final Long userId = 1L;
     private final DeviceType deviceType = DeviceType.ANDROID;
 
     @Test
     void constructor_shouldSucceed() {
-        ServiceMediator mediator = new ServiceMediator(null, null, null, null, null, null);
+        ServiceMediator mediator = new ServiceMediator(null, null, null, null, null, null, null);
 
         assertThat(mediator).isNotNull();
     }
@@ -108,6 +113,41 @@ class ServiceMediatorTests {
                 .verifyComplete();
     }
 
+    @Test
+    void processLoginRequest_shouldReturnNotActive_ifTicketIsValidButUserIsNotActive() {
+        SessionResumptionService resumptionService = newSessionResumptionService(true);
+        ServiceMediator mediator = newServiceMediator(true, false, false, false, resumptionService);
+        Mono<UserSession> result = mediator.processLoginRequest(userId, TICKET, deviceType, null, null, null, null);
+
+        StepVerifier.create(result)
+                .expectErrorMatches(throwable -> ExceptionUtil.isStatusCode(throwable, TurmsStatusCode.LOGGING_IN_USER_NOT_ACTIVE))
+                .verify();
+        verify(resumptionService, never()).consumeTicket(anyLong(), any(), any());
+    }
+
+    @Test
+    void processLoginRequest_shouldReturnUnauthorized_ifTicketHasBeenConsumed() {
+        SessionResumptionService resumptionService = newSessionResumptionService(false);
+        ServiceMediator mediator = newServiceMediator(true, true, false, false, resumptionService);
+        Mono<UserSession> result = mediator.processLoginRequest(userId, TICKET, deviceType, null, null, null, null);
+
+        StepVerifier.create(result)
+                .expectErrorMatches(throwable -> ExceptionUtil.isStatusCode(throwable, TurmsStatusCode.LOGIN_AUTHENTICATION_FAILED))
+                .verify();
+    }
+
+    @Test
+    void processLoginRequest_shouldLogIn_ifTicketIsValidAndUserIsActive() {
+        SessionResumptionService resumptionService = newSessionResumptionService(true);
+        ServiceMediator mediator = newServiceMediator(true, true, false, false, resumptionService);
+        Mono<UserSession> result = mediator.processLoginRequest(userId, TICKET, deviceType, null, null, null, null);
+
+        StepVerifier.create(result)
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(resumptionService).consumeTicket(eq(userId.longValue()), eq(deviceType), any());
+    }
+
     @Test
     void setLocalUserDeviceOffline_shouldSucceed() {
         ServiceMediator mediator = newServiceMediator();
@@ -172,6 +212,25 @@ class ServiceMediatorTests {
             boolean isActiveAndNotDeleted,
             boolean isAuthenticated,
             boolean isForbiddenDeviceType) {
+        return newServiceMediator(enableAuthentication, isActiveAndNotDeleted, isAuthenticated, isForbiddenDeviceType,
+                mock(SessionResumptionService.class));
+    }
+
+    private SessionResumptionService newSessionResumptionService(boolean isTicketConsumable) {
+        SessionResumptionService resumptionService = mock(SessionResumptionService.class);
+        SessionResumptionService.Ticket ticket = new SessionResumptionService.Ticket(1L, 1, System.currentTimeMillis());
+        when(resumptionService.isTicket(TICKET)).thenReturn(true);
+        when(resumptionService.verifyTicket(eq(TICKET), anyLong(), any(), any())).thenReturn(ticket);
+        when(resumptionService.consumeTicket(anyLong(), any(), eq(ticket))).thenReturn(Mono.just(isTicketConsumable));
+        return resumptionService;
+    }
+
+    private ServiceMediator newServiceMediator(
+            boolean enableAuthentication,
+            boolean isActiveAndNotDeleted,
+            boolean isAuthenticated,
+            boolean isForbiddenDeviceType,
+            SessionResumptionService sessionResumptionService) {
         Node node = mock(Node.class);
         TurmsProperties properties = new TurmsProperties().toBuilder()
                 .gateway(new GatewayProperties().toBuilder()
@@ -207,7 +266,9 @@ class ServiceMediatorTests {
         InboundRequestService inboundRequestService = mock(InboundRequestService.class);
         when(inboundRequestService.processServiceRequest(any()))
                 .thenReturn(Mono.empty());
-        return new ServiceMediator(node, pluginManager, userService, sessionService, userSimultaneousLoginService, inboundRequestService);
+
+        return new ServiceMediator(node, pluginManager, userService, sessionService, userSimultaneousLoginService, inboundRequestService,
+                sessionResumptionService);
     }
 
 }
\ No newline at end of file
@@ -40,6 +40,7 @@ public enum SessionCloseStatus {
     SERVER_ERROR(200),
     SERVER_CLOSED(201),
     SERVER_UNAVAILABLE(202), //TODO: reserved
+    SERVER_DRAINING(203),
 
     //**********************************************************
     //* Closed due to network error
@@ -27,6 +27,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Collection;
+import java.util.function.Function;
 
 /**
  * @author James Chen
@@ -54,6 +55,28 @@ public final class ResponseFactory {
         return okIfTruthy(mono);
     }
 
+    /**
+     * @param size          the max size of the page, and the next cursor will be null
+     *                      if the size of the data is less than the size
+     * @param cursorEncoder encodes the key of the last record as the next cursor
+     */
+    public static <T> Mono<ResponseEntity<ResponseDTO<CursorPaginationDTO<T>>>> cursorPage(Flux<T> data,
+                                                                                          int size,
+                                                                                          Function<T, String> cursorEncoder) {
+        Mono<CursorPaginationDTO<T>> mono = data
+                .collectList()
+                .map(records -> {
+                    if (records.isEmpty()) {
+                        throw TurmsBusinessException.get(TurmsStatusCode.NO_CONTENT);
+                    }
+                    String nextCursor = records.size() < size
+                            ? null
+                            : cursorEncoder.apply(records.get(records.size() - 1));
+                    return new CursorPaginationDTO<>(nextCursor, records);
+                });
+        return okIfTruthy(mono);
+    }
+
     public static Mono<ResponseEntity<ResponseDTO<UpdateResultDTO>>> updateResult(Mono<UpdateResult> data) {
         return okIfTruthy(data.map(UpdateResultDTO::get));
     }
@@ -27,6 +27,7 @@ import reactor.netty.resources.LoopResources;
 import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * @author James Chen
@@ -34,6 +35,8 @@ import java.util.concurrent.ConcurrentHashMap;
 public abstract class TurmsClient {
 
     private final Map<Long, Sinks.One<TurmsNotification>> pendingRequestMap = new ConcurrentHashMap<>(128);
+    @Nullable
+    private volatile Consumer<TurmsNotification> notificationListener;
 
     public static TurmsTcpClient tcp() {
         return new TurmsTcpClient();
@@ -47,6 +50,14 @@ public abstract class TurmsClient {
 
     public abstract Mono<TurmsNotification> sendRequest(TurmsRequest.Builder requestBuilder);
 
+    /**
+     * @param listener is called for the notifications that aren't responses to requests
+     *                 (e.g. relayed messages)
+     */
+    public void setNotificationListener(@Nullable Consumer<TurmsNotification> listener) {
+        notificationListener = listener;
+    }
+
     Mono<TurmsNotification> waitForResponse(TurmsRequest request) {
         long requestId = request.getRequestId();
         Sinks.One<TurmsNotification> sink = Sinks.one();
@@ -56,6 +67,10 @@ public abstract class TurmsClient {
 
     void handleResponse(TurmsNotification notification) {
         if (!notification.hasRequestId()) {
+            Consumer<TurmsNotification> listener = notificationListener;
+            if (listener != null) {
+                listener.accept(notification);
+            }
             return;
         }
         long requestId = notification.getRequestId();
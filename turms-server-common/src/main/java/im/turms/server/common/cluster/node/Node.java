@@ -30,12 +30,15 @@ import im.turms.server.common.context.TurmsApplicationContext;
 import im.turms.server.common.manager.address.BaseServiceAddressManager;
 import im.turms.server.common.property.TurmsProperties;
 import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.server.common.property.env.common.TracingProperties;
 import im.turms.server.common.property.env.common.cluster.ClusterProperties;
 import im.turms.server.common.property.env.common.cluster.DiscoveryProperties;
 import im.turms.server.common.property.env.common.cluster.NodeProperties;
 import im.turms.server.common.property.env.common.cluster.RpcProperties;
 import im.turms.server.common.property.env.common.cluster.SharedConfigProperties;
 import im.turms.server.common.property.env.common.cluster.connection.ConnectionProperties;
+import im.turms.server.common.tracing.Tracer;
+import im.turms.server.common.tracing.exporter.SpanExporter;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -111,6 +114,10 @@ public class Node {
 
         String clusterId = clusterProperties.getId();
         nodeId = initNodeId(nodeProperties.getId());
+        TracingProperties tracingProperties = turmsProperties.getTracing();
+        SpanExporter spanExporter = context.getBeanProvider(SpanExporter.class)
+                .getIfAvailable(() -> SpanExporter.of(tracingProperties.getExporter()));
+        Tracer.setGlobal(new Tracer(tracingProperties, spanExporter));
 
         // Init services
         // pass the properties one by one rather than passing the node instance
@@ -212,6 +219,10 @@ public class Node {
         return discoveryService.getLocalNodeStatusManager().getLocalMember().getStatus().isActive();
     }
 
+    public boolean isDraining() {
+        return discoveryService.getLocalNodeStatusManager().isDraining();
+    }
+
     public long nextIncreasingId(ServiceType serviceType) {
         return idService.nextIncreasingId(serviceType);
     }
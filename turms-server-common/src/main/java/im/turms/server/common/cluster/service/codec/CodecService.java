@@ -44,6 +44,9 @@ public class CodecService implements ClusterService {
         CodecPool.init();
     }
 
+    /**
+     * @return the buffer starting with the schema version negotiated with peers
+     */
     public <T> ByteBuf serializeWithoutCodecId(T data) {
         Class<T> clazz = (Class<T>) data.getClass();
         Codec<T> codec = CodecPool.getCodec(clazz);
@@ -55,9 +58,11 @@ public class CodecService implements ClusterService {
             throw new IllegalReferenceCountException("byteBufToComposite of the data has been released: " + data);
         }
         int initialCapacity = codec.initialCapacity(data);
+        int schemaVersion = CodecPool.getWriteSchemaVersion(codec);
         ByteBuf output = PooledByteBufAllocator.DEFAULT
-                .directBuffer(initialCapacity > -1 ? initialCapacity : 128);
-        codec.write(output, data);
+                .directBuffer(initialCapacity > -1 ? initialCapacity + Byte.BYTES : 128)
+                .writeByte(schemaVersion);
+        codec.write(output, data, schemaVersion);
         if (byteBufToComposite != null) {
             output = PooledByteBufAllocator.DEFAULT
                     .compositeDirectBuffer(2)
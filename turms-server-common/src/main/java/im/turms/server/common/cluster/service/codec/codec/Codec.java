@@ -26,10 +26,46 @@ public interface Codec<T> {
 
     CodecId getCodecId();
 
+    /**
+     * @return the latest schema version that the codec can write and read.
+     * Bump it when changing the schema of the data (e.g. adding a field),
+     * and keep writing and reading the previous versions in {@link #write(ByteBuf, Object, int)}
+     * and {@link #read(ByteBuf, int)} so that nodes of different versions
+     * can communicate with each other during rolling upgrades
+     */
+    default int getSchemaVersion() {
+        return 1;
+    }
+
+    /**
+     * @return the oldest schema version that the codec can still write and read.
+     * Peers whose supported schema versions don't overlap with the ones of the local node
+     * will be rejected during the opening handshake
+     */
+    default int getMinSchemaVersion() {
+        return 1;
+    }
+
     void write(ByteBuf output, T data);
 
+    /**
+     * @param schemaVersion the version negotiated with peers, which is in the range
+     *                      [{@link #getMinSchemaVersion()}, {@link #getSchemaVersion()}]
+     */
+    default void write(ByteBuf output, T data, int schemaVersion) {
+        write(output, data);
+    }
+
     T read(ByteBuf input);
 
+    /**
+     * @param schemaVersion the version in which the data was written, which is in the range
+     *                      [{@link #getMinSchemaVersion()}, {@link #getSchemaVersion()}]
+     */
+    default T read(ByteBuf input, int schemaVersion) {
+        return read(input);
+    }
+
     int initialCapacity(T data);
 
     default ByteBuf byteBufToComposite(T data) {
@@ -44,14 +44,19 @@ public enum CodecId {
     COLLECTION_LIST(100),
 
     BO_USER_ONLINE_INFO(201),
+    BO_TRACING_SPAN(202),
 
     // RPC - Common
     RPC_EXCEPTION(1000),
+    RPC_CANCELLATION(1001),
+    RPC_STREAM_CREDIT(1002),
+    RPC_STREAM_COMPLETE(1003),
 
     // RPC - Connection
     RPC_OPENING_HANDSHAKE(1100),
     RPC_CLOSING_HANDSHAKE(1101),
     RPC_KEEPALIVE(1102),
+    RPC_OPENING_HANDSHAKE_RESPONSE(1103),
 
     // RPC - Request/Notification
     RPC_HANDLE_SERVICE_REQUEST(1200),
@@ -64,6 +69,12 @@ public enum CodecId {
     // RPC - Statistics
     RPC_COUNT_ONLINE_USERS(1400),
 
+    // RPC - Plugin
+    RPC_MANAGE_PLUGIN(1500),
+
+    // RPC - Tracing
+    RPC_QUERY_TRACE_SPANS(1600),
+
     DTO_SERVICE_RESPONSE(2000);
 
     @Getter
@@ -31,16 +31,27 @@ import im.turms.server.common.cluster.service.codec.codec.impl.StringCodec;
 import im.turms.server.common.cluster.service.connection.codec.ClosingHandshakeRequestCodec;
 import im.turms.server.common.cluster.service.connection.codec.KeepaliveRequestCodec;
 import im.turms.server.common.cluster.service.connection.codec.OpeningHandshakeRequestCodec;
+import im.turms.server.common.cluster.service.connection.codec.OpeningHandshakeResponseCodec;
+import im.turms.server.common.cluster.service.rpc.codec.RpcCancellationCodec;
 import im.turms.server.common.cluster.service.rpc.codec.RpcExceptionCodec;
+import im.turms.server.common.cluster.service.rpc.codec.RpcStreamCompleteCodec;
+import im.turms.server.common.cluster.service.rpc.codec.RpcStreamCreditCodec;
 import im.turms.server.common.rpc.codec.request.CountOnlineUsersRequestCodec;
 import im.turms.server.common.rpc.codec.request.HandleServiceRequestCodec;
+import im.turms.server.common.rpc.codec.request.ManagePluginRequestCodec;
+import im.turms.server.common.rpc.codec.request.QueryTraceSpansRequestCodec;
 import im.turms.server.common.rpc.codec.request.SendNotificationRequestCodec;
 import im.turms.server.common.rpc.codec.request.SetUserOfflineRequestCodec;
 import im.turms.server.common.rpc.codec.response.ServiceResponseCodec;
+import im.turms.server.common.rpc.codec.response.SpanDataCodec;
 import org.springframework.core.GenericTypeResolver;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -50,6 +61,14 @@ public final class CodecPool {
 
     private static final Map<Integer, Codec> ID_CODEC_MAP = new HashMap<>(32);
     private static final Map<Class<?>, Codec> CLASS_CODEC_MAP = new IdentityHashMap<>(32);
+    private static final Map<Integer, CodecSchemaVersionRange> ID_SCHEMA_VERSION_RANGE_MAP = new HashMap<>(32);
+    private static final Map<Integer, CodecSchemaVersionRange> UNMODIFIABLE_ID_SCHEMA_VERSION_RANGE_MAP =
+            Collections.unmodifiableMap(ID_SCHEMA_VERSION_RANGE_MAP);
+    /**
+     * Codec ID -> The schema version to write, which can be read by all connected peers.
+     * Use an array indexed by codec IDs to avoid boxing in the hot path of encoding
+     */
+    private static volatile byte[] writeSchemaVersions = new byte[0];
 
     public static void init() {
         if (!ID_CODEC_MAP.isEmpty()) {
@@ -74,18 +93,29 @@ public final class CodecPool {
 
         // RPC
         register(new RpcExceptionCodec());
+        register(new RpcCancellationCodec());
+        register(new RpcStreamCreditCodec());
+        register(new RpcStreamCompleteCodec());
 
         register(new OpeningHandshakeRequestCodec());
+        register(new OpeningHandshakeResponseCodec());
         register(new ClosingHandshakeRequestCodec());
         register(new KeepaliveRequestCodec());
 
         register(new CountOnlineUsersRequestCodec());
         register(new HandleServiceRequestCodec());
+        register(new ManagePluginRequestCodec());
+        register(new QueryTraceSpansRequestCodec());
         register(new SendNotificationRequestCodec());
         register(new SetUserOfflineRequestCodec());
 
         // DTO
         register(new ServiceResponseCodec());
+
+        // BO
+        register(new SpanDataCodec());
+
+        negotiateWriteSchemaVersions(Collections.emptyList());
     }
 
     private CodecPool() {
@@ -105,6 +135,65 @@ public final class CodecPool {
         return CLASS_CODEC_MAP.get(clazz);
     }
 
+    /**
+     * @return Codec ID -> The schema versions supported by the local node
+     */
+    public static Map<Integer, CodecSchemaVersionRange> getSchemaVersionRanges() {
+        return UNMODIFIABLE_ID_SCHEMA_VERSION_RANGE_MAP;
+    }
+
+    public static int getWriteSchemaVersion(Codec<?> codec) {
+        return writeSchemaVersions[codec.getCodecId().getId()];
+    }
+
+    /**
+     * @return the descriptions of the codecs whose supported schema versions
+     * don't overlap with the ones of the peer.
+     * Codecs unknown to either side are ignored because they are never sent to the other side
+     */
+    public static List<String> findIncompatibleCodecs(Map<Integer, CodecSchemaVersionRange> peerSchemaVersionRanges) {
+        List<String> incompatibleCodecs = new ArrayList<>(0);
+        for (Map.Entry<Integer, CodecSchemaVersionRange> entry : ID_SCHEMA_VERSION_RANGE_MAP.entrySet()) {
+            Integer codecId = entry.getKey();
+            CodecSchemaVersionRange localRange = entry.getValue();
+            CodecSchemaVersionRange peerRange = peerSchemaVersionRanges.get(codecId);
+            if (peerRange != null && !localRange.overlaps(peerRange)) {
+                incompatibleCodecs.add("%s (local: %s, peer: %s)"
+                        .formatted(ID_CODEC_MAP.get(codecId).getCodecId(), localRange, peerRange));
+            }
+        }
+        return incompatibleCodecs;
+    }
+
+    /**
+     * Negotiates the schema version to write for each codec, which is the latest version
+     * supported by both the local node and all the connected peers,
+     * so that a newer schema is used only after all peers of older versions have been upgraded.
+     * Should be called when a peer joins or leaves
+     */
+    public static synchronized void negotiateWriteSchemaVersions(
+            Collection<Map<Integer, CodecSchemaVersionRange>> peerSchemaVersionRanges) {
+        int maxCodecId = 0;
+        for (Integer codecId : ID_SCHEMA_VERSION_RANGE_MAP.keySet()) {
+            maxCodecId = Math.max(maxCodecId, codecId);
+        }
+        byte[] versions = new byte[maxCodecId + 1];
+        for (Map.Entry<Integer, CodecSchemaVersionRange> entry : ID_SCHEMA_VERSION_RANGE_MAP.entrySet()) {
+            Integer codecId = entry.getKey();
+            CodecSchemaVersionRange localRange = entry.getValue();
+            int version = localRange.version();
+            for (Map<Integer, CodecSchemaVersionRange> peerRanges : peerSchemaVersionRanges) {
+                CodecSchemaVersionRange peerRange = peerRanges.get(codecId);
+                if (peerRange != null) {
+                    version = Math.min(version, peerRange.version());
+                }
+            }
+            // The opening handshake has ensured the ranges overlap
+            versions[codecId] = (byte) Math.max(version, localRange.minVersion());
+        }
+        writeSchemaVersions = versions;
+    }
+
     private static void register(Codec<?> codec) {
         Class<?> clazz = GenericTypeResolver.resolveTypeArgument(codec.getClass(), Codec.class);
         if (clazz == null) {
@@ -117,8 +206,15 @@ public final class CodecPool {
         if (ID_CODEC_MAP.containsKey(codecId)) {
             throw new IllegalStateException("The codec ID %d has already existed".formatted(codecId));
         }
+        int minSchemaVersion = codec.getMinSchemaVersion();
+        int schemaVersion = codec.getSchemaVersion();
+        if (minSchemaVersion < 1 || minSchemaVersion > schemaVersion || schemaVersion > Byte.MAX_VALUE) {
+            throw new IllegalStateException("The schema versions [%d, %d] of the codec %s are illegal"
+                    .formatted(minSchemaVersion, schemaVersion, codec.getCodecId()));
+        }
         CLASS_CODEC_MAP.put(clazz, codec);
         ID_CODEC_MAP.put(codecId, codec);
+        ID_SCHEMA_VERSION_RANGE_MAP.put(codecId, new CodecSchemaVersionRange(minSchemaVersion, schemaVersion));
     }
 
 }
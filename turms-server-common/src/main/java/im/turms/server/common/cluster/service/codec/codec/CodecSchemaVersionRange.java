@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.codec.codec;
+
+/**
+ * @param minVersion the oldest schema version that a codec can write and read
+ * @param version    the latest schema version that a codec can write and read
+ * @author James Chen
+ */
+public record CodecSchemaVersionRange(int minVersion, int version) {
+
+    public boolean overlaps(CodecSchemaVersionRange that) {
+        return minVersion <= that.version && that.minVersion <= version;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + minVersion + ", " + version + "]";
+    }
+
+}
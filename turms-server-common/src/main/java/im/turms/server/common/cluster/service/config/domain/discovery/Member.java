@@ -23,12 +23,12 @@ import im.turms.server.common.cluster.node.NodeVersion;
 import im.turms.server.common.mongo.entity.annotation.Document;
 import im.turms.server.common.mongo.entity.annotation.Id;
 import im.turms.server.common.mongo.entity.annotation.Indexed;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.FieldNameConstants;
 import org.springframework.data.annotation.PersistenceConstructor;
 
+import javax.annotation.Nullable;
 import java.util.Date;
 
 /**
@@ -44,7 +44,9 @@ public final class Member {
     public static final String ID_NODE_ID = "_id.nodeId";
     public static final String STATUS_IS_HEALTHY = Fields.status + "." + MemberStatus.Fields.isHealthy;
     public static final String STATUS_IS_ACTIVE = Fields.status + "." + MemberStatus.Fields.isActive;
+    public static final String STATUS_IS_DRAINING = Fields.status + "." + MemberStatus.Fields.isDraining;
     public static final String STATUS_LAST_HEARTBEAT_DATE = Fields.status + "." + MemberStatus.Fields.lastHeartbeatDate;
+    public static final String STATUS_LOAD = Fields.status + "." + MemberStatus.Fields.load;
 
     @Id
     @EqualsAndHashCode.Include
@@ -155,7 +157,7 @@ public final class Member {
                 wsAddress,
                 tcpAddress,
                 udpAddress,
-                new MemberStatus(hasJoinedCluster, isActive, new Date()));
+                new MemberStatus(hasJoinedCluster, isActive, false, new Date(), null));
     }
 
     public void updateIfNotNull(
@@ -171,7 +173,9 @@ public final class Member {
             // Status
             Boolean hasJoinedCluster,
             Boolean isActive,
-            Date lastHeartbeatDate) {
+            Boolean isDraining,
+            Date lastHeartbeatDate,
+            Float load) {
         if (isSeed != null) {
             this.isSeed = isSeed;
         }
@@ -206,9 +210,15 @@ public final class Member {
         if (isActive != null) {
             status.setActive(isActive);
         }
+        if (isDraining != null) {
+            status.setDraining(isDraining);
+        }
         if (lastHeartbeatDate != null) {
             status.setLastHeartbeatDate(lastHeartbeatDate);
         }
+        if (load != null) {
+            status.setLoad(load);
+        }
     }
 
     @JsonIgnore
@@ -245,7 +255,6 @@ public final class Member {
         private final String nodeId;
     }
 
-    @AllArgsConstructor
     @Data
     @FieldNameConstants
     public static class MemberStatus {
@@ -263,12 +272,43 @@ public final class Member {
          */
         private boolean isActive;
 
+        /**
+         * A draining node is going to leave the cluster (e.g. during rolling deployment):
+         * 1. It won't be selected by other members to handle RPC requests;
+         * 2. turms-gateway stops accepting new sessions and closes its existing sessions in waves
+         * so that clients reconnect to other nodes gradually.
+         * Developer can update the value via admin API, and the node marks itself as draining before shutting down.
+         */
+        private volatile boolean isDraining;
+
         /**
          * Note that the TTL index isn't the heartbeat timeout but is only used to make sure
          * the record can be removed automatically even if the turms server crashes
          */
         @Indexed(partialFilter = "{" + Member.Fields.isSeed + ":{$eq:false}}", expireAfterSeconds = 60)
         private volatile Date lastHeartbeatDate;
+
+        /**
+         * The CPU load of the process in [0, 1] published with heartbeats,
+         * or null if unknown
+         */
+        private volatile Float load;
+
+        /**
+         * @param isDraining null if the member is registered by a node that doesn't support draining
+         */
+        @PersistenceConstructor
+        public MemberStatus(boolean isHealthy,
+                            boolean isActive,
+                            @Nullable Boolean isDraining,
+                            Date lastHeartbeatDate,
+                            @Nullable Float load) {
+            this.isHealthy = isHealthy;
+            this.isActive = isActive;
+            this.isDraining = isDraining != null && isDraining;
+            this.lastHeartbeatDate = lastHeartbeatDate;
+            this.load = load;
+        }
     }
 
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import im.turms.server.common.property.env.common.LoggingProperties;
 import im.turms.server.common.property.env.common.MonitorProperties;
 import im.turms.server.common.property.env.common.PluginProperties;
 import im.turms.server.common.property.env.common.ServerAvailabilityProperties;
+import im.turms.server.common.property.env.common.TracingProperties;
 import im.turms.server.common.property.env.common.UserStatusProperties;
 import im.turms.server.common.property.env.common.cluster.ClusterProperties;
 import im.turms.server.common.property.env.common.location.LocationProperties;
@@ -52,6 +53,8 @@ public class CommonProperties {
 
     private ServerAvailabilityProperties serverAvailability;
 
+    private TracingProperties tracing;
+
     private UserStatusProperties userStatus;
 
 }
\ No newline at end of file
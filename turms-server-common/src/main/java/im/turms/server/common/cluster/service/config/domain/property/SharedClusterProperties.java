@@ -76,6 +76,7 @@ public class SharedClusterProperties {
                 turmsProperties.getPlugin(),
                 turmsProperties.getSecurity(),
                 turmsProperties.getServerAvailability(),
+                turmsProperties.getTracing(),
                 turmsProperties.getUserStatus());
     }
 
@@ -90,6 +91,7 @@ public class SharedClusterProperties {
                     commonProperties.getPlugin(),
                     commonProperties.getSecurity(),
                     commonProperties.getServerAvailability(),
+                    commonProperties.getTracing(),
                     commonProperties.getUserStatus(),
                     gatewayProperties,
                     serviceProperties);
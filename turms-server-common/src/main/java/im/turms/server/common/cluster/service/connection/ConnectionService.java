@@ -17,13 +17,18 @@
 
 package im.turms.server.common.cluster.service.connection;
 
+import im.turms.server.common.cluster.node.NodeVersion;
 import im.turms.server.common.cluster.service.ClusterService;
 import im.turms.server.common.cluster.service.codec.CodecService;
+import im.turms.server.common.cluster.service.codec.codec.CodecPool;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
 import im.turms.server.common.cluster.service.config.SharedConfigService;
 import im.turms.server.common.cluster.service.config.domain.discovery.Member;
+import im.turms.server.common.cluster.service.connection.detector.MemberFailureDetector;
 import im.turms.server.common.cluster.service.connection.request.ClosingHandshakeRequest;
 import im.turms.server.common.cluster.service.connection.request.KeepaliveRequest;
 import im.turms.server.common.cluster.service.connection.request.OpeningHandshakeRequest;
+import im.turms.server.common.cluster.service.connection.response.OpeningHandshakeResponse;
 import im.turms.server.common.cluster.service.discovery.DiscoveryService;
 import im.turms.server.common.cluster.service.discovery.MemberConnectionListener;
 import im.turms.server.common.cluster.service.idgen.IdService;
@@ -31,6 +36,7 @@ import im.turms.server.common.cluster.service.rpc.RpcService;
 import im.turms.server.common.property.env.common.cluster.connection.ConnectionClientProperties;
 import im.turms.server.common.property.env.common.cluster.connection.ConnectionProperties;
 import im.turms.server.common.property.env.common.cluster.connection.ConnectionServerProperties;
+import im.turms.server.common.property.env.common.cluster.connection.FailureDetectorProperties;
 import im.turms.server.common.util.ExceptionUtil;
 import im.turms.server.common.util.SslUtil;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -47,6 +53,8 @@ import reactor.netty.tcp.TcpClient;
 import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +72,7 @@ import static im.turms.server.common.cluster.service.connection.request.ClosingH
  * 1. Requested by DiscoveryService to disconnect/Connect to member
  * 2. Reconnect if disconnected unexpectedly
  * 3. Send keepalive probe (via RpcService)
+ * 4. Detect the failures of members by keepalive requests
  * <p>
  * Lifecycles of a connection:
  * 1. Creating a TCP connection -> Connected
@@ -88,7 +97,13 @@ public class ConnectionService implements ClusterService {
     private final Ssl clientSsl;
     private final long keepaliveIntervalMillis;
     private final long keepaliveTimeoutMillis;
+    private final long keepaliveCheckIntervalMillis;
     private final Duration reconnectInterval;
+    /**
+     * Null if the failure detector is disabled
+     */
+    @Nullable
+    private final MemberFailureDetector failureDetector;
 
     // Thread resources
     private final ScheduledExecutorService connectionRetryScheduler;
@@ -123,8 +138,18 @@ public class ConnectionService implements ClusterService {
         serverProperties = connectionProperties.getServer();
         ConnectionClientProperties clientProperties = connectionProperties.getClient();
         clientSsl = clientProperties.getSsl();
-        keepaliveIntervalMillis = clientProperties.getKeepaliveIntervalSeconds() * 1000L;
+        FailureDetectorProperties failureDetectorProperties = connectionProperties.getFailureDetector();
+        if (failureDetectorProperties.isEnabled()) {
+            failureDetector = new MemberFailureDetector(failureDetectorProperties);
+            keepaliveIntervalMillis = failureDetectorProperties.getHeartbeatIntervalMillis();
+        } else {
+            failureDetector = null;
+            keepaliveIntervalMillis = clientProperties.getKeepaliveIntervalSeconds() * 1000L;
+        }
         keepaliveTimeoutMillis = clientProperties.getKeepaliveTimeoutSeconds() * 1000L;
+        // Check more frequently than the keepalive interval so that
+        // the failure detector can suspect a member in time
+        keepaliveCheckIntervalMillis = Math.max(10, Math.min(keepaliveIntervalMillis / 4, 1000));
         reconnectInterval = Duration.ofSeconds(clientProperties.getReconnectIntervalSeconds());
         eventLoopGroupForClients = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors(),
                 new DefaultThreadFactory("turms-cluster-connection-client-io"));
@@ -253,11 +278,26 @@ public class ConnectionService implements ClusterService {
                     TurmsConnection connection =
                             new TurmsConnection(nodeId, (ChannelOperations<?, ?>) conn, true, newMemberConnectionListeners());
                     onMemberConnectionAdded(member, connection);
-                    String localNodeId = discoveryService.getLocalMember().getNodeId();
+                    Member localMember = discoveryService.getLocalMember();
                     log.info("[Client] Sending a open handshake request to member: {}[{}:{}]",
                             nodeId, member.getMemberHost(), member.getMemberPort());
-                    rpcService.requestResponse(nodeId, new OpeningHandshakeRequest(localNodeId), null, connection)
-                            .doOnSuccess(unused -> onMemberConnectionHandshakeCompleted(member, connection, true))
+                    OpeningHandshakeRequest request = new OpeningHandshakeRequest(localMember.getNodeId(),
+                            localMember.getNodeVersion(),
+                            CodecPool.getSchemaVersionRanges());
+                    rpcService.requestResponse(nodeId, request, null, connection)
+                            .doOnSuccess(response -> {
+                                if (response.code() == OpeningHandshakeRequest.RESPONSE_CODE_INCOMPATIBLE_CODEC_SCHEMA_VERSIONS) {
+                                    log.error("[Client] The member {}[{}:{}] of the version {} rejected the handshake " +
+                                                    "because of the incompatible codec schema versions: {}. " +
+                                                    "Closing connection to reconnect",
+                                            nodeId, member.getMemberHost(), member.getMemberPort(), response.nodeVersion(),
+                                            CodecPool.findIncompatibleCodecs(response.codecSchemaVersionRanges()));
+                                    disconnectConnection(connection);
+                                    return;
+                                }
+                                connection.setPeerCodecSchemaVersionRanges(response.codecSchemaVersionRanges());
+                                onMemberConnectionHandshakeCompleted(member, connection, true);
+                            })
                             .onErrorResume(throwable -> {
                                 log.error("[Client] Failed to complete handshake with member: {}[{}:{}]. Closing connection to reconnect",
                                         nodeId, member.getMemberHost(), member.getMemberPort(), throwable);
@@ -297,9 +337,31 @@ public class ConnectionService implements ClusterService {
 
     // Keepalive
 
-    public void keepalive(String nodeId) {
+    public void keepalive(String nodeId, Collection<String> suspectedMemberIds) {
+        long now = System.currentTimeMillis();
         TurmsConnection connection = connectionPool.get(nodeId);
-        connection.setLastKeepaliveTimestamp(System.currentTimeMillis());
+        if (connection != null) {
+            connection.setLastKeepaliveTimestamp(now);
+        }
+        if (failureDetector != null) {
+            failureDetector.heartbeat(nodeId, now);
+            failureDetector.onPeerSuspicionReceived(nodeId, suspectedMemberIds, now);
+        }
+    }
+
+    public boolean isFailureDetectorEnabled() {
+        return failureDetector != null;
+    }
+
+    /**
+     * @return the IDs of the members suspected to be unavailable by the failure detector.
+     * Note that the connections to the suspected members are still kept
+     * because they may recover soon (e.g. after a long GC pause)
+     */
+    public Set<String> getSuspectedMemberIds() {
+        return failureDetector == null
+                ? Collections.emptySet()
+                : failureDetector.getSuspectedMemberIds();
     }
 
     private void sendKeepaliveToConnectionsForever() {
@@ -312,8 +374,15 @@ public class ConnectionService implements ClusterService {
                     log.error("Caught an exception when sending keepalive", e);
                 }
             }
+            if (failureDetector != null) {
+                try {
+                    failureDetector.detect(System.currentTimeMillis());
+                } catch (Exception e) {
+                    log.error("Caught an exception when detecting the failures of members", e);
+                }
+            }
             try {
-                Thread.sleep(1000L);
+                Thread.sleep(keepaliveCheckIntervalMillis);
             } catch (InterruptedException e) {
                 break;
             }
@@ -329,23 +398,29 @@ public class ConnectionService implements ClusterService {
             iterator.remove();
             return;
         }
-        if (!connection.isLocalNodeClient()) {
+        boolean isLocalNodeClient = connection.isLocalNodeClient();
+        // Both peers send heartbeats to feed the failure detectors of each other,
+        // while only the client side is responsible for reconnecting
+        if (!isLocalNodeClient && failureDetector == null) {
             return;
         }
         long now = System.currentTimeMillis();
-        long elapsedTime = now - connection.getLastKeepaliveTimestamp();
-        if (elapsedTime > keepaliveTimeoutMillis) {
+        if (isLocalNodeClient && now - connection.getLastKeepaliveTimestamp() > keepaliveTimeoutMillis) {
             log.warn("Reconnecting to the member {} due to keepalive timeout", nodeId);
             // onConnectionClosed() will reconnect the member
             disconnectConnection(connection);
             iterator.remove();
             return;
         }
-        if (elapsedTime < keepaliveIntervalMillis) {
+        if (now - connection.getLastKeepaliveRequestTimestamp() < keepaliveIntervalMillis) {
             return;
         }
+        connection.setLastKeepaliveRequestTimestamp(now);
+        Collection<String> suspectedMemberIds = failureDetector == null
+                ? Collections.emptySet()
+                : failureDetector.getLocallySuspectedMemberIds();
         try {
-            rpcService.requestResponse(nodeId, new KeepaliveRequest())
+            rpcService.requestResponse(nodeId, new KeepaliveRequest(suspectedMemberIds))
                     .doOnSuccess(unused -> connection.setLastKeepaliveTimestamp(System.currentTimeMillis()))
                     .onErrorResume(t -> {
                         log.warn("Failed to send a keepalive request to the member " + nodeId, t);
@@ -367,11 +442,31 @@ public class ConnectionService implements ClusterService {
         return ClosingHandshakeRequest.RESPONSE_CODE_SUCCESS;
     }
 
-    public byte handleHandshakeRequest(TurmsConnection connection, String nodeId) {
+    public OpeningHandshakeResponse handleHandshakeRequest(TurmsConnection connection,
+                                                           String nodeId,
+                                                           NodeVersion nodeVersion,
+                                                           Map<Integer, CodecSchemaVersionRange> codecSchemaVersionRanges) {
+        byte code = handleHandshakeRequest0(connection, nodeId, nodeVersion, codecSchemaVersionRanges);
+        return new OpeningHandshakeResponse(code,
+                discoveryService.getLocalMember().getNodeVersion(),
+                CodecPool.getSchemaVersionRanges());
+    }
+
+    private byte handleHandshakeRequest0(TurmsConnection connection,
+                                         String nodeId,
+                                         NodeVersion nodeVersion,
+                                         Map<Integer, CodecSchemaVersionRange> codecSchemaVersionRanges) {
         Member member = discoveryService.getMember(nodeId);
         if (member == null) {
             return OpeningHandshakeRequest.RESPONSE_CODE_UNKNOWN_MEMBER;
         }
+        List<String> incompatibleCodecs = CodecPool.findIncompatibleCodecs(codecSchemaVersionRanges);
+        if (!incompatibleCodecs.isEmpty()) {
+            log.error("[Server] Rejected the handshake with the member {} of the version {} " +
+                            "because of the incompatible codec schema versions: {}",
+                    nodeId, nodeVersion, incompatibleCodecs);
+            return OpeningHandshakeRequest.RESPONSE_CODE_INCOMPATIBLE_CODEC_SCHEMA_VERSIONS;
+        }
         TurmsConnection existingConnection = connectionPool.get(nodeId);
         if (existingConnection != null) {
             if (!existingConnection.getConnection().isDisposed()) {
@@ -382,6 +477,7 @@ public class ConnectionService implements ClusterService {
             return OpeningHandshakeRequest.RESPONSE_CODE_CONNECTION_CLOSED;
         }
         connection.setNodeId(nodeId);
+        connection.setPeerCodecSchemaVersionRanges(codecSchemaVersionRanges);
         onMemberConnectionHandshakeCompleted(member, connection, false);
         return OpeningHandshakeRequest.RESPONSE_CODE_SUCCESS;
     }
@@ -456,6 +552,13 @@ public class ConnectionService implements ClusterService {
                 connection.isClosing() ? "" : " unexpectedly",
                 member == null ? "" : ": " + getMemberIdAndAddress(member),
                 throwable);
+        if (failureDetector != null && nodeId != null) {
+            failureDetector.removeMember(nodeId);
+        }
+        if (connection.getPeerCodecSchemaVersionRanges() != null) {
+            // Use newer schemas if the peer is the last one of the old versions
+            negotiateCodecSchemaVersions();
+        }
         for (MemberConnectionListener listener : connection.getListeners()) {
             try {
                 listener.onConnectionClosed();
@@ -484,6 +587,10 @@ public class ConnectionService implements ClusterService {
                 member.getMemberHost(),
                 member.getMemberPort());
         connectionPool.put(nodeId, connection);
+        negotiateCodecSchemaVersions();
+        if (failureDetector != null) {
+            failureDetector.addMember(nodeId, System.currentTimeMillis());
+        }
         connectionRetryTimesMap.remove(nodeId);
         connectingMembers.remove(nodeId);
         updateHasConnectedToAllMembers(discoveryService.getAllKnownMembers().keySet());
@@ -496,6 +603,17 @@ public class ConnectionService implements ClusterService {
         }
     }
 
+    private void negotiateCodecSchemaVersions() {
+        List<Map<Integer, CodecSchemaVersionRange>> peerRanges = new ArrayList<>(connectionPool.size());
+        for (TurmsConnection connection : connectionPool.values()) {
+            Map<Integer, CodecSchemaVersionRange> ranges = connection.getPeerCodecSchemaVersionRanges();
+            if (ranges != null && !connection.getConnection().isDisposed()) {
+                peerRanges.add(ranges);
+            }
+        }
+        CodecPool.negotiateWriteSchemaVersions(peerRanges);
+    }
+
     private String getMemberIdAndAddress(Member member) {
         if (member == null) {
             return "";
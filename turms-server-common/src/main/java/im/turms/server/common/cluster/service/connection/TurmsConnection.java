@@ -17,6 +17,7 @@
 
 package im.turms.server.common.cluster.service.connection;
 
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
 import im.turms.server.common.cluster.service.discovery.MemberConnectionListener;
 import lombok.Data;
 import reactor.netty.channel.ChannelOperations;
@@ -24,6 +25,7 @@ import reactor.netty.channel.ChannelOperations;
 import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author James Chen
@@ -46,6 +48,14 @@ public class TurmsConnection {
 
     private final boolean isLocalNodeClient;
     private volatile long lastKeepaliveTimestamp;
+    private volatile long lastKeepaliveRequestTimestamp;
+
+    /**
+     * Codec ID -> The schema versions supported by the peer.
+     * Is null until the opening handshake is completed
+     */
+    @Nullable
+    private volatile Map<Integer, CodecSchemaVersionRange> peerCodecSchemaVersionRanges;
 
     private final List<MemberConnectionListener> listeners;
 
@@ -20,8 +20,11 @@ package im.turms.server.common.cluster.service.connection.codec;
 import im.turms.server.common.cluster.service.codec.codec.CodecId;
 import im.turms.server.common.cluster.service.connection.request.KeepaliveRequest;
 import im.turms.server.common.rpc.codec.request.RpcRequestCodec;
+import im.turms.server.common.util.CodecUtil;
 import io.netty.buffer.ByteBuf;
 
+import java.util.Collection;
+
 /**
  * @author James Chen
  */
@@ -34,12 +37,23 @@ public class KeepaliveRequestCodec extends RpcRequestCodec<KeepaliveRequest> {
 
     @Override
     protected int initialCapacityForRequest(KeepaliveRequest data) {
-        return 0;
+        Collection<String> suspectedMemberIds = data.getSuspectedMemberIds();
+        int capacity = Short.BYTES;
+        // nodeId consists of only letters and digits
+        for (String nodeId : suspectedMemberIds) {
+            capacity += Short.BYTES + nodeId.length();
+        }
+        return capacity;
+    }
+
+    @Override
+    protected void writeRequestData(ByteBuf output, KeepaliveRequest data) {
+        CodecUtil.writeStrings(output, data.getSuspectedMemberIds());
     }
 
     @Override
     public KeepaliveRequest readRequestData(ByteBuf input) {
-        return new KeepaliveRequest();
+        return new KeepaliveRequest(CodecUtil.readStringList(input));
     }
 
 }
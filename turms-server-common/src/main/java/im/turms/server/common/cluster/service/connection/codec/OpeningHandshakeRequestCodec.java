@@ -17,43 +17,99 @@
 
 package im.turms.server.common.cluster.service.connection.codec;
 
+import im.turms.server.common.cluster.node.NodeVersion;
 import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
 import im.turms.server.common.cluster.service.connection.request.OpeningHandshakeRequest;
 import im.turms.server.common.rpc.codec.request.RpcRequestCodec;
+import im.turms.server.common.util.CodecUtil;
 import io.netty.buffer.ByteBuf;
 
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author James Chen
+ * @implNote The schema of the opening handshake request and response must never be changed
+ * because they are used to negotiate the schema versions of other codecs with peers of different versions.
  */
 public class OpeningHandshakeRequestCodec extends RpcRequestCodec<OpeningHandshakeRequest> {
 
+    private static final int NODE_VERSION_LENGTH = Integer.BYTES;
+    // Codec ID + Min version + Version
+    private static final int CODEC_SCHEMA_VERSION_RANGE_LENGTH = Short.BYTES + Byte.BYTES + Byte.BYTES;
+
     @Override
     public CodecId getCodecId() {
         return CodecId.RPC_OPENING_HANDSHAKE;
     }
 
+    /**
+     * Pin the schema version because the request is sent before negotiating schema versions
+     */
+    @Override
+    public int getSchemaVersion() {
+        return 1;
+    }
+
     @Override
     public int initialCapacityForRequest(OpeningHandshakeRequest data) {
         // 1. Don't get the length from bytes because it
         // introduces new unnecessary heap memory
         // 2. nodeId consists of only letters and digits
-        return data.getNodeId().length();
+        return Short.BYTES + data.getNodeId().length()
+                + NODE_VERSION_LENGTH
+                + getCodecSchemaVersionRangesLength(data.getCodecSchemaVersionRanges());
     }
 
     @Override
     protected void writeRequestData(ByteBuf output, OpeningHandshakeRequest data) {
-        byte[] bytes = data.getNodeId().getBytes(StandardCharsets.UTF_8);
-        output.writeBytes(bytes);
+        CodecUtil.writeString(output, data.getNodeId());
+        writeNodeVersion(output, data.getNodeVersion());
+        writeCodecSchemaVersionRanges(output, data.getCodecSchemaVersionRanges());
     }
 
     @Override
     public OpeningHandshakeRequest readRequestData(ByteBuf input) {
-        byte[] bytes = new byte[input.readableBytes()];
-        input.readBytes(bytes);
-        String nodeId = new String(bytes, StandardCharsets.UTF_8);
-        return new OpeningHandshakeRequest(nodeId);
+        String nodeId = CodecUtil.readString(input);
+        NodeVersion nodeVersion = readNodeVersion(input);
+        Map<Integer, CodecSchemaVersionRange> ranges = readCodecSchemaVersionRanges(input);
+        return new OpeningHandshakeRequest(nodeId, nodeVersion, ranges);
+    }
+
+    static void writeNodeVersion(ByteBuf output, NodeVersion version) {
+        output.writeByte(version.getMajor())
+                .writeByte(version.getMinor())
+                .writeByte(version.getPatch())
+                .writeByte(version.getQualifier());
+    }
+
+    static NodeVersion readNodeVersion(ByteBuf input) {
+        return new NodeVersion(input.readByte(), input.readByte(), input.readByte(), input.readByte());
+    }
+
+    static int getCodecSchemaVersionRangesLength(Map<Integer, CodecSchemaVersionRange> ranges) {
+        return Short.BYTES + ranges.size() * CODEC_SCHEMA_VERSION_RANGE_LENGTH;
+    }
+
+    static void writeCodecSchemaVersionRanges(ByteBuf output, Map<Integer, CodecSchemaVersionRange> ranges) {
+        output.writeShort(ranges.size());
+        for (Map.Entry<Integer, CodecSchemaVersionRange> entry : ranges.entrySet()) {
+            CodecSchemaVersionRange range = entry.getValue();
+            output.writeShort(entry.getKey())
+                    .writeByte(range.minVersion())
+                    .writeByte(range.version());
+        }
+    }
+
+    static Map<Integer, CodecSchemaVersionRange> readCodecSchemaVersionRanges(ByteBuf input) {
+        int size = input.readShort();
+        Map<Integer, CodecSchemaVersionRange> ranges = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            int codecId = input.readShort() & 0xFFFF;
+            ranges.put(codecId, new CodecSchemaVersionRange(input.readByte(), input.readByte()));
+        }
+        return ranges;
     }
 
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.connection.codec;
+
+import im.turms.server.common.cluster.node.NodeVersion;
+import im.turms.server.common.cluster.service.codec.codec.Codec;
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
+import im.turms.server.common.cluster.service.connection.response.OpeningHandshakeResponse;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Map;
+
+/**
+ * @author James Chen
+ * @see OpeningHandshakeRequestCodec
+ */
+public class OpeningHandshakeResponseCodec implements Codec<OpeningHandshakeResponse> {
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_OPENING_HANDSHAKE_RESPONSE;
+    }
+
+    @Override
+    public void write(ByteBuf output, OpeningHandshakeResponse data) {
+        output.writeByte(data.code());
+        OpeningHandshakeRequestCodec.writeNodeVersion(output, data.nodeVersion());
+        OpeningHandshakeRequestCodec.writeCodecSchemaVersionRanges(output, data.codecSchemaVersionRanges());
+    }
+
+    @Override
+    public OpeningHandshakeResponse read(ByteBuf input) {
+        byte code = input.readByte();
+        NodeVersion nodeVersion = OpeningHandshakeRequestCodec.readNodeVersion(input);
+        Map<Integer, CodecSchemaVersionRange> ranges = OpeningHandshakeRequestCodec.readCodecSchemaVersionRanges(input);
+        return new OpeningHandshakeResponse(code, nodeVersion, ranges);
+    }
+
+    @Override
+    public int initialCapacity(OpeningHandshakeResponse data) {
+        return Byte.BYTES
+                + Integer.BYTES
+                + OpeningHandshakeRequestCodec.getCodecSchemaVersionRangesLength(data.codecSchemaVersionRanges());
+    }
+
+}
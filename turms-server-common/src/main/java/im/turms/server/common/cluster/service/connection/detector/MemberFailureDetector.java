@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.connection.detector;
+
+import im.turms.server.common.property.env.common.cluster.connection.FailureDetectorProperties;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects the failures of the connected members by the heartbeats (keepalive requests) they send,
+ * and merges the suspicions gossiped by other members.
+ * <p>
+ * A member is suspected if:
+ * 1. its phi value reaches phiThreshold;
+ * 2. or its phi value reaches phiThresholdWithPeerSuspicion and another member suspects it.
+ * The second condition speeds up the detection without trusting a single peer blindly,
+ * so a member that is only unreachable from one peer (e.g. an asymmetric network partition)
+ * won't be excluded by all members.
+ * <p>
+ * Only the members suspected by the local detectors are gossiped to avoid amplifying suspicions.
+ *
+ * @author James Chen
+ */
+@Log4j2
+public class MemberFailureDetector {
+
+    private final long heartbeatIntervalMillis;
+    private final double phiThreshold;
+    private final double phiThresholdWithPeerSuspicion;
+    private final int maxSampleSize;
+    private final double minStdDeviationMillis;
+    private final long acceptableHeartbeatPauseMillis;
+    private final long peerSuspicionTtlMillis;
+
+    /**
+     * Member node ID -> Detector
+     */
+    private final Map<String, PhiAccrualFailureDetector> detectors = new ConcurrentHashMap<>(32);
+    /**
+     * Reporter node ID -> Suspicion
+     */
+    private final Map<String, PeerSuspicion> peerSuspicions = new ConcurrentHashMap<>(32);
+
+    /**
+     * The members suspected by the local detectors, which are gossiped to other members
+     */
+    @Getter
+    private volatile Set<String> locallySuspectedMemberIds = Collections.emptySet();
+    /**
+     * The members suspected by the local detectors or with the suspicion of other members
+     */
+    @Getter
+    private volatile Set<String> suspectedMemberIds = Collections.emptySet();
+
+    public MemberFailureDetector(FailureDetectorProperties properties) {
+        heartbeatIntervalMillis = properties.getHeartbeatIntervalMillis();
+        phiThreshold = properties.getPhiThreshold();
+        phiThresholdWithPeerSuspicion = properties.getPhiThresholdWithPeerSuspicion();
+        maxSampleSize = properties.getMaxSampleSize();
+        minStdDeviationMillis = properties.getMinStdDeviationMillis();
+        acceptableHeartbeatPauseMillis = properties.getAcceptableHeartbeatPauseMillis();
+        peerSuspicionTtlMillis = properties.getPeerSuspicionTtlMillis();
+    }
+
+    public void addMember(String nodeId, long now) {
+        detectors.put(nodeId, new PhiAccrualFailureDetector(maxSampleSize,
+                minStdDeviationMillis,
+                acceptableHeartbeatPauseMillis,
+                heartbeatIntervalMillis,
+                now));
+    }
+
+    public void removeMember(String nodeId) {
+        detectors.remove(nodeId);
+        peerSuspicions.remove(nodeId);
+    }
+
+    public void heartbeat(String nodeId, long now) {
+        PhiAccrualFailureDetector detector = detectors.get(nodeId);
+        if (detector != null) {
+            detector.heartbeat(now);
+        }
+    }
+
+    /**
+     * @param suspectedMemberIds replaces the suspicion reported by the reporter last time
+     */
+    public void onPeerSuspicionReceived(String reporterNodeId, Collection<String> suspectedMemberIds, long now) {
+        if (suspectedMemberIds.isEmpty()) {
+            peerSuspicions.remove(reporterNodeId);
+        } else {
+            peerSuspicions.put(reporterNodeId, new PeerSuspicion(Set.copyOf(suspectedMemberIds), now));
+        }
+    }
+
+    public boolean isSuspected(String nodeId) {
+        return suspectedMemberIds.contains(nodeId);
+    }
+
+    /**
+     * Should be called periodically and more frequently than the heartbeat interval
+     * so that the suspected members are excluded in time
+     */
+    public void detect(long now) {
+        Set<String> peerSuspectedMemberIds = getPeerSuspectedMemberIds(now);
+        Set<String> newLocallySuspectedMemberIds = null;
+        Set<String> newSuspectedMemberIds = null;
+        for (Map.Entry<String, PhiAccrualFailureDetector> entry : detectors.entrySet()) {
+            String nodeId = entry.getKey();
+            double phi = entry.getValue().phi(now);
+            if (phi >= phiThreshold) {
+                if (newLocallySuspectedMemberIds == null) {
+                    newLocallySuspectedMemberIds = new HashSet<>(8);
+                }
+                newLocallySuspectedMemberIds.add(nodeId);
+            } else if (phi < phiThresholdWithPeerSuspicion || !peerSuspectedMemberIds.contains(nodeId)) {
+                continue;
+            }
+            if (newSuspectedMemberIds == null) {
+                newSuspectedMemberIds = new HashSet<>(8);
+            }
+            if (newSuspectedMemberIds.add(nodeId) && !suspectedMemberIds.contains(nodeId)) {
+                log.warn("The member {} is suspected to be unavailable. Phi: {}", nodeId, phi);
+            }
+        }
+        for (String nodeId : suspectedMemberIds) {
+            if (newSuspectedMemberIds == null || !newSuspectedMemberIds.contains(nodeId)) {
+                log.info("The member {} is no longer suspected to be unavailable", nodeId);
+            }
+        }
+        locallySuspectedMemberIds = newLocallySuspectedMemberIds == null
+                ? Collections.emptySet()
+                : newLocallySuspectedMemberIds;
+        suspectedMemberIds = newSuspectedMemberIds == null
+                ? Collections.emptySet()
+                : newSuspectedMemberIds;
+    }
+
+    private Set<String> getPeerSuspectedMemberIds(long now) {
+        if (peerSuspicions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        // The reporter may have been partitioned from the local node
+        peerSuspicions.values()
+                .removeIf(suspicion -> now - suspicion.reportTimestamp() > peerSuspicionTtlMillis);
+        Set<String> memberIds = null;
+        for (PeerSuspicion suspicion : peerSuspicions.values()) {
+            if (memberIds == null) {
+                memberIds = new HashSet<>(suspicion.suspectedMemberIds());
+            } else {
+                memberIds.addAll(suspicion.suspectedMemberIds());
+            }
+        }
+        return memberIds == null ? Collections.emptySet() : memberIds;
+    }
+
+    private record PeerSuspicion(Set<String> suspectedMemberIds, long reportTimestamp) {
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.connection.detector;
+
+/**
+ * Estimates the distribution of the heartbeat inter-arrival times of a member
+ * by a sliding window of samples, and outputs a suspicion level (phi) instead of a boolean,
+ * so that the threshold can be tuned between the detection time and the false positive rate.
+ * phi = -log10(1 - F(timeSinceLastHeartbeat)), where F is the cumulative distribution function
+ * of the normal distribution with the mean and the standard deviation of the samples.
+ *
+ * @author James Chen
+ * @see <a href="https://doi.org/10.1109/RELDIS.2004.1353004">The φ Accrual Failure Detector</a>
+ */
+public class PhiAccrualFailureDetector {
+
+    private final long acceptableHeartbeatPauseMillis;
+    private final double minStdDeviationMillis;
+
+    /**
+     * A ring buffer of the recent inter-arrival times
+     */
+    private final long[] intervals;
+    private int nextIndex;
+    private int sampleSize;
+    private long intervalSum;
+    private double squaredIntervalSum;
+
+    private long lastHeartbeatTimestamp;
+
+    /**
+     * @param firstHeartbeatEstimateMillis is used to bootstrap the samples
+     *                                     because there is no inter-arrival time until the second heartbeat
+     */
+    public PhiAccrualFailureDetector(int maxSampleSize,
+                                     double minStdDeviationMillis,
+                                     long acceptableHeartbeatPauseMillis,
+                                     long firstHeartbeatEstimateMillis,
+                                     long now) {
+        if (maxSampleSize < 2) {
+            throw new IllegalArgumentException("maxSampleSize must be greater than 1");
+        }
+        if (minStdDeviationMillis <= 0) {
+            throw new IllegalArgumentException("minStdDeviationMillis must be greater than 0");
+        }
+        this.acceptableHeartbeatPauseMillis = acceptableHeartbeatPauseMillis;
+        this.minStdDeviationMillis = minStdDeviationMillis;
+        intervals = new long[maxSampleSize];
+        long stdDeviation = firstHeartbeatEstimateMillis / 4;
+        addInterval(firstHeartbeatEstimateMillis - stdDeviation);
+        addInterval(firstHeartbeatEstimateMillis + stdDeviation);
+        lastHeartbeatTimestamp = now;
+    }
+
+    public synchronized void heartbeat(long now) {
+        long interval = now - lastHeartbeatTimestamp;
+        if (interval < 0) {
+            return;
+        }
+        lastHeartbeatTimestamp = now;
+        addInterval(interval);
+    }
+
+    public synchronized double phi(long now) {
+        long timeSinceLastHeartbeat = now - lastHeartbeatTimestamp;
+        double mean = (double) intervalSum / sampleSize;
+        double variance = squaredIntervalSum / sampleSize - mean * mean;
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDeviationMillis);
+        return phi(timeSinceLastHeartbeat, mean + acceptableHeartbeatPauseMillis, stdDeviation);
+    }
+
+    public synchronized long getLastHeartbeatTimestamp() {
+        return lastHeartbeatTimestamp;
+    }
+
+    private void addInterval(long interval) {
+        if (sampleSize == intervals.length) {
+            long evicted = intervals[nextIndex];
+            intervalSum -= evicted;
+            squaredIntervalSum -= (double) evicted * evicted;
+        } else {
+            sampleSize++;
+        }
+        intervals[nextIndex] = interval;
+        intervalSum += interval;
+        squaredIntervalSum += (double) interval * interval;
+        nextIndex = (nextIndex + 1) % intervals.length;
+    }
+
+    /**
+     * Uses the logistic approximation of the cumulative distribution function of the normal distribution,
+     * whose error is less than 0.00014 and which avoids the loss of precision of "1 - F(x)" when F(x) is close to 1
+     */
+    private static double phi(long timeDiff, double mean, double stdDeviation) {
+        double y = (timeDiff - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        return timeDiff > mean
+                ? -Math.log10(e / (1 + e))
+                : -Math.log10(1 - 1 / (1 + e));
+    }
+
+}
@@ -24,6 +24,8 @@ import im.turms.server.common.lang.Null;
 import lombok.Data;
 import org.springframework.context.ApplicationContext;
 
+import java.util.Collection;
+
 /**
  * @author James Chen
  */
@@ -34,6 +36,16 @@ public class KeepaliveRequest extends RpcRequest<Null> {
 
     private Node node;
 
+    /**
+     * The members suspected to be unavailable by the sender,
+     * which are gossiped to the receiver with heartbeats
+     */
+    private final Collection<String> suspectedMemberIds;
+
+    public KeepaliveRequest(Collection<String> suspectedMemberIds) {
+        this.suspectedMemberIds = suspectedMemberIds;
+    }
+
     @Override
     public String name() {
         return NAME;
@@ -64,7 +76,7 @@ public class KeepaliveRequest extends RpcRequest<Null> {
 
     @Override
     public Null call() {
-        node.getConnectionService().keepalive(getFromNodeId());
+        node.getConnectionService().keepalive(getFromNodeId(), suspectedMemberIds);
         return Null.INSTANCE;
     }
 
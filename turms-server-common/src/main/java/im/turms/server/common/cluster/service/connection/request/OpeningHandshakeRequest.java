@@ -18,16 +18,21 @@
 package im.turms.server.common.cluster.service.connection.request;
 
 import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.cluster.node.NodeVersion;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
+import im.turms.server.common.cluster.service.connection.response.OpeningHandshakeResponse;
 import im.turms.server.common.cluster.service.rpc.NodeTypeToHandleRpc;
 import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
 import lombok.Data;
 import org.springframework.context.ApplicationContext;
 
+import java.util.Map;
+
 /**
  * @author James Chen
  */
 @Data
-public class OpeningHandshakeRequest extends RpcRequest<Byte> {
+public class OpeningHandshakeRequest extends RpcRequest<OpeningHandshakeResponse> {
 
     private static final String NAME = "openingHandshake";
 
@@ -35,10 +40,16 @@ public class OpeningHandshakeRequest extends RpcRequest<Byte> {
     public static final byte RESPONSE_CODE_CONNECTION_CLOSED = 1;
     public static final byte RESPONSE_CODE_CONNECTION_ALREADY_EXISTS = 2;
     public static final byte RESPONSE_CODE_UNKNOWN_MEMBER = 3;
+    public static final byte RESPONSE_CODE_INCOMPATIBLE_CODEC_SCHEMA_VERSIONS = 4;
 
     private Node node;
 
     private final String nodeId;
+    private final NodeVersion nodeVersion;
+    /**
+     * Codec ID -> The schema versions supported by the requester
+     */
+    private final Map<Integer, CodecSchemaVersionRange> codecSchemaVersionRanges;
 
     @Override
     public String name() {
@@ -69,8 +80,9 @@ public class OpeningHandshakeRequest extends RpcRequest<Byte> {
     }
 
     @Override
-    public Byte call() {
-        return node.getConnectionService().handleHandshakeRequest(getConnection(), nodeId);
+    public OpeningHandshakeResponse call() {
+        return node.getConnectionService()
+                .handleHandshakeRequest(getConnection(), nodeId, nodeVersion, codecSchemaVersionRanges);
     }
 
 }
\ No newline at end of file
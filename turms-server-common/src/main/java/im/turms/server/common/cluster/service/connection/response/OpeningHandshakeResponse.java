@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.connection.response;
+
+import im.turms.server.common.cluster.node.NodeVersion;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
+
+import java.util.Map;
+
+/**
+ * @param code                     the response code defined in
+ *                                 {@link im.turms.server.common.cluster.service.connection.request.OpeningHandshakeRequest}
+ * @param nodeVersion              the version of the node that responds
+ * @param codecSchemaVersionRanges Codec ID -> The schema versions supported by the node that responds
+ * @author James Chen
+ */
+public record OpeningHandshakeResponse(
+        byte code,
+        NodeVersion nodeVersion,
+        Map<Integer, CodecSchemaVersionRange> codecSchemaVersionRanges
+) {
+}
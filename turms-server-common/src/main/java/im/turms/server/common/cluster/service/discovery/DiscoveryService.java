@@ -220,6 +220,7 @@ public class DiscoveryService implements ClusterService {
                          RpcService rpcService,
                          SharedConfigService sharedConfigService) {
         this.connectionService = connectionService;
+        localNodeStatusManager.setConnectionService(connectionService);
         this.connectionService.addMemberConnectionListenerSupplier(() -> new MemberConnectionListener() {
             private Member member;
 
@@ -321,7 +322,9 @@ public class DiscoveryService implements ClusterService {
         // Status
         Boolean hasJoinedCluster = null;
         Boolean isActive = null;
+        Boolean isDraining = null;
         Date lastHeartbeatDate = null;
+        Float load = null;
         // Info
         Boolean isSeed = null;
         Boolean isLeaderEligible = null;
@@ -341,6 +344,10 @@ public class DiscoveryService implements ClusterService {
                 lastHeartbeatDate = new Date(value.asDateTime().getValue());
                 continue;
             }
+            if (fieldName.endsWith(Member.MemberStatus.Fields.load)) {
+                load = (float) value.asNumber().doubleValue();
+                continue;
+            }
             if (fieldName.endsWith(Member.MemberStatus.Fields.isHealthy)) {
                 hasJoinedCluster = value.asBoolean().getValue();
                 continue;
@@ -349,6 +356,10 @@ public class DiscoveryService implements ClusterService {
                 isActive = value.asBoolean().getValue();
                 continue;
             }
+            if (fieldName.endsWith(Member.MemberStatus.Fields.isDraining)) {
+                isDraining = value.asBoolean().getValue();
+                continue;
+            }
             // Check info
             if (fieldName.equals(Member.Fields.isSeed)) {
                 isSeed = value.asBoolean().getValue();
@@ -398,7 +409,14 @@ public class DiscoveryService implements ClusterService {
                 udpAddress,
                 hasJoinedCluster,
                 isActive,
-                lastHeartbeatDate);
+                isDraining,
+                lastHeartbeatDate,
+                load);
+        if (isDraining != null && localNodeStatusManager.isLocalNodeId(nodeId)) {
+            // Only apply the draining status if it is updated in the event so that
+            // the local node won't stop draining due to the stale status in other events (e.g. heartbeats)
+            localNodeStatusManager.updateLocalDraining(isDraining);
+        }
     }
 
     /**
@@ -519,6 +537,7 @@ public class DiscoveryService implements ClusterService {
                                        @Nullable Boolean isSeed,
                                        @Nullable Boolean isLeaderEligible,
                                        @Nullable Boolean isActive,
+                                       @Nullable Boolean isDraining,
                                        @Nullable Integer priority) {
         Member member = allKnownMembers.get(id);
         if (member == null) {
@@ -527,10 +546,11 @@ public class DiscoveryService implements ClusterService {
         Filter filter = Filter.newBuilder(2)
                 .eq(Member.ID_CLUSTER_ID, getLocalMember().getClusterId())
                 .eq(Member.ID_NODE_ID, id);
-        Update update = Update.newBuilder(4)
+        Update update = Update.newBuilder(5)
                 .setIfNotNull(Member.Fields.isSeed, isSeed)
                 .setIfNotNull(Member.Fields.isLeaderEligible, isLeaderEligible)
                 .setIfNotNull(Member.STATUS_IS_ACTIVE, isActive)
+                .setIfNotNull(Member.STATUS_IS_DRAINING, isDraining)
                 .setIfNotNull(Member.Fields.priority, priority);
         // Note that we just need to update the member info in the config server
         // and the listener to the change stream will do remaining jobs.
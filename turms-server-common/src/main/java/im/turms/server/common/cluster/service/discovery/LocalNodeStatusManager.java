@@ -17,9 +17,11 @@
 
 package im.turms.server.common.cluster.service.discovery;
 
+import com.sun.management.OperatingSystemMXBean;
 import im.turms.server.common.cluster.service.config.SharedConfigService;
 import im.turms.server.common.cluster.service.config.domain.discovery.Leader;
 import im.turms.server.common.cluster.service.config.domain.discovery.Member;
+import im.turms.server.common.cluster.service.connection.ConnectionService;
 import im.turms.server.common.mongo.exception.DuplicateKeyException;
 import im.turms.server.common.mongo.operation.option.Filter;
 import im.turms.server.common.mongo.operation.option.Update;
@@ -27,19 +29,19 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
-import org.eclipse.collections.impl.set.mutable.UnifiedSet;
 import reactor.core.publisher.Mono;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -48,8 +50,18 @@ import java.util.concurrent.TimeUnit;
 @Log4j2
 public class LocalNodeStatusManager {
 
+    /**
+     * The minimum change of the load to publish it before the durable heartbeat is due
+     */
+    private static final float LOAD_CHANGE_THRESHOLD_TO_PUBLISH = 0.05F;
+
     private final DiscoveryService discoveryService;
     private final SharedConfigService sharedConfigService;
+    /**
+     * Null until the cluster services are initialized
+     */
+    @Setter
+    private ConnectionService connectionService;
     @Getter
     private final Member localMember;
     @Getter
@@ -58,11 +70,28 @@ public class LocalNodeStatusManager {
     @Getter
     @Setter
     private volatile boolean isClosing;
+    /**
+     * Tracked separately from the status of the local member to detect the change
+     * because the status may be updated from the change stream directly
+     */
+    @Getter
+    private volatile boolean isDraining;
     private final long heartbeatTimeoutMillis;
     private final Duration heartbeatInterval;
     private final long heartbeatIntervalMillis;
+    /**
+     * The max interval to write the heartbeat to the config server if the failure detector is enabled.
+     * The heartbeat only needs to keep the member record from expiring and to keep nodes
+     * that don't use the failure detector from marking the local member unhealthy
+     * because the liveness of members is detected by the failure detector
+     */
+    private final long durableHeartbeatIntervalMillis;
+    private volatile long lastPublishedHeartbeatTime;
+    private volatile Float lastPublishedLoad;
     private ScheduledFuture<?> heartbeatFuture;
     private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("discovery-heartbeat"));
+    private final OperatingSystemMXBean operatingSystemBean = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+    private final List<LocalNodeDrainingListener> drainingListeners = new CopyOnWriteArrayList<>();
 
     public LocalNodeStatusManager(
             DiscoveryService discoveryService,
@@ -76,6 +105,7 @@ public class LocalNodeStatusManager {
         this.heartbeatTimeoutMillis = heartbeatTimeoutSeconds * 1000L;
         this.heartbeatInterval = Duration.ofSeconds(heartbeatIntervalSeconds);
         this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+        this.durableHeartbeatIntervalMillis = Math.max(heartbeatIntervalMillis, heartbeatTimeoutMillis - heartbeatIntervalMillis);
     }
 
     public Mono<Void> upsertLocalNodeInfo(Update update) {
@@ -155,16 +185,35 @@ public class LocalNodeStatusManager {
                 }
                 try {
                     Date now = new Date();
+                    // Publish the load with heartbeats so that other members can balance requests by it
+                    Float load = getProcessCpuLoad();
+                    boolean shouldPublishHeartbeat = shouldPublishHeartbeat(now.getTime(), load);
                     List<Mono<?>> monos = new ArrayList<>(2);
-                    monos.add(upsertLocalNodeInfo(Update.newBuilder(1)
-                            .set(Member.STATUS_LAST_HEARTBEAT_DATE, now)));
+                    if (shouldPublishHeartbeat) {
+                        monos.add(upsertLocalNodeInfo(Update.newBuilder(2)
+                                .set(Member.STATUS_LAST_HEARTBEAT_DATE, now)
+                                .setIfNotNull(Member.STATUS_LOAD, load)));
+                    }
                     if (isLocalNodeLeader()) {
                         monos.add(renewLocalLeader(now)
                                 .flatMap(isLeader -> isLeader ? updateMembersStatus(now) : Mono.empty()));
                     }
+                    if (monos.isEmpty()) {
+                        return;
+                    }
                     Mono.when(monos)
                             .timeout(heartbeatInterval)
-                            .doOnSuccess(ignored -> localMember.getStatus().setLastHeartbeatDate(now))
+                            .doOnSuccess(ignored -> {
+                                if (!shouldPublishHeartbeat) {
+                                    return;
+                                }
+                                lastPublishedHeartbeatTime = now.getTime();
+                                lastPublishedLoad = load;
+                                localMember.getStatus().setLastHeartbeatDate(now);
+                                if (load != null) {
+                                    localMember.getStatus().setLoad(load);
+                                }
+                            })
                             .onErrorResume(e -> {
                                 log.error("Failed to send heartbeat request", e);
                                 return Mono.empty();
@@ -177,6 +226,45 @@ public class LocalNodeStatusManager {
         }
     }
 
+    /**
+     * If the failure detector is disabled, publish heartbeats every interval
+     * because the leader detects the liveness of members by them.
+     * Otherwise, only publish heartbeats when the load changes notably
+     * or the durable heartbeat is due to take the config server off the hot path
+     */
+    private boolean shouldPublishHeartbeat(long now, Float load) {
+        if (!isFailureDetectorEnabled()) {
+            return true;
+        }
+        if (now - lastPublishedHeartbeatTime >= durableHeartbeatIntervalMillis) {
+            return true;
+        }
+        Float lastLoad = lastPublishedLoad;
+        if (load == null || lastLoad == null) {
+            return load != lastLoad;
+        }
+        return Math.abs(load - lastLoad) >= LOAD_CHANGE_THRESHOLD_TO_PUBLISH;
+    }
+
+    private boolean isFailureDetectorEnabled() {
+        return connectionService != null && connectionService.isFailureDetectorEnabled();
+    }
+
+    public void addDrainingListener(LocalNodeDrainingListener listener) {
+        drainingListeners.add(listener);
+    }
+
+    /**
+     * Update the draining status of the local node immediately instead of waiting for
+     * the change stream so that the local node starts or stops draining without
+     * a round trip to the config server, and publish it to other members
+     */
+    public Mono<Void> updateDraining(boolean isDraining) {
+        updateLocalDraining(isDraining);
+        return upsertLocalNodeInfo(Update.newBuilder(1)
+                .set(Member.STATUS_IS_DRAINING, isDraining));
+    }
+
     public void updateInfo(Member member) {
         boolean isLeaderEligible = member.isLeaderEligible();
         boolean wasLeaderEligible = localMember.isLeaderEligible();
@@ -193,7 +281,10 @@ public class LocalNodeStatusManager {
                 member.getUdpAddress(),
                 member.getStatus().isHealthy(),
                 member.getStatus().isActive(),
-                member.getStatus().getLastHeartbeatDate());
+                // The draining status is updated by updateLocalDraining() to notify the listeners
+                null,
+                member.getStatus().getLastHeartbeatDate(),
+                member.getStatus().getLoad());
         if (isLeaderEligibleChanged) {
             if (isLeaderEligible) {
                 tryBecomeFirstLeader().subscribe();
@@ -203,6 +294,30 @@ public class LocalNodeStatusManager {
         }
     }
 
+    public synchronized void updateLocalDraining(boolean isDraining) {
+        localMember.getStatus().setDraining(isDraining);
+        if (this.isDraining == isDraining) {
+            return;
+        }
+        this.isDraining = isDraining;
+        log.info(isDraining ? "The local node started draining" : "The local node stopped draining");
+        for (LocalNodeDrainingListener listener : drainingListeners) {
+            try {
+                listener.onDrainingChange(isDraining);
+            } catch (Exception e) {
+                log.error("Failed to notify the listener of the draining change", e);
+            }
+        }
+    }
+
+    /**
+     * @return null if the load is unavailable
+     */
+    private Float getProcessCpuLoad() {
+        double load = operatingSystemBean.getProcessCpuLoad();
+        return load < 0 ? null : (float) load;
+    }
+
     private Mono<Boolean> renewLocalLeader(Date renewDate) {
         Leader leader = discoveryService.getLeader();
         if (leader == null) {
@@ -229,32 +344,50 @@ public class LocalNodeStatusManager {
                 });
     }
 
+    /**
+     * Update the health status of members in the config server so that developers can see it.
+     * If the failure detector is enabled, a member is healthy if the leader is connected to it
+     * and doesn't suspect it, and only the changed status is written.
+     * Otherwise, a member is healthy if its last heartbeat has not timed out
+     */
     private Mono<Void> updateMembersStatus(Date lastHeartbeatDate) {
         Collection<Member> knownMembers = discoveryService.getAllKnownMembers().values();
-        int knownMembersSize = knownMembers.size();
-        List<String> availableMemberNodeIds = new LinkedList<>();
-        int availableMembersSize = 0;
+        boolean isFailureDetectorEnabled = isFailureDetectorEnabled();
+        Set<String> suspectedMemberIds = isFailureDetectorEnabled
+                ? connectionService.getSuspectedMemberIds()
+                : Set.of();
+        List<String> availableMemberNodeIds = new ArrayList<>(knownMembers.size());
+        List<String> unavailableMemberNodeIds = new ArrayList<>(knownMembers.size());
         long lastHeartbeatTime = lastHeartbeatDate.getTime();
         for (Member knownMember : knownMembers) {
-            Date memberHeartbeat = knownMember.getStatus().getLastHeartbeatDate();
-            boolean isAvailable = memberHeartbeat != null && (lastHeartbeatTime - memberHeartbeat.getTime()) < heartbeatTimeoutMillis;
+            String nodeId = knownMember.getNodeId();
+            boolean isAvailable;
+            if (isFailureDetectorEnabled) {
+                isAvailable = isLocalNodeId(nodeId)
+                        || (connectionService.isMemberConnected(nodeId) && !suspectedMemberIds.contains(nodeId));
+                if (isAvailable == knownMember.getStatus().isHealthy()) {
+                    continue;
+                }
+            } else {
+                Date memberHeartbeat = knownMember.getStatus().getLastHeartbeatDate();
+                isAvailable = memberHeartbeat != null && (lastHeartbeatTime - memberHeartbeat.getTime()) < heartbeatTimeoutMillis;
+            }
             if (isAvailable) {
-                availableMemberNodeIds.add(knownMember.getNodeId());
-                availableMembersSize++;
+                availableMemberNodeIds.add(nodeId);
+            } else {
+                unavailableMemberNodeIds.add(nodeId);
             }
         }
-        if (availableMembersSize == 0) {
-            return updateFollowersToUnavailable(discoveryService.getAllKnownMembers().keySet());
-        } else if (knownMembersSize == availableMembersSize) {
+        if (availableMemberNodeIds.isEmpty()) {
+            return unavailableMemberNodeIds.isEmpty()
+                    ? Mono.empty()
+                    : updateFollowersToUnavailable(unavailableMemberNodeIds);
+        } else if (unavailableMemberNodeIds.isEmpty()) {
             return updateFollowersToAvailable(availableMemberNodeIds);
         } else {
-            Set<String> unavailableMemberIds = UnifiedSet.newSet(discoveryService.getAllKnownMembers().keySet());
-            for (String availableMemberNodeId : availableMemberNodeIds) {
-                unavailableMemberIds.remove(availableMemberNodeId);
-            }
             return Mono.when(
                     updateFollowersToAvailable(availableMemberNodeIds),
-                    updateFollowersToUnavailable(unavailableMemberIds));
+                    updateFollowersToUnavailable(unavailableMemberNodeIds));
         }
     }
 
@@ -35,5 +35,7 @@ public enum ServiceType {
     USER_LOCATION,
     USER_PERMISSION_GROUP,
 
-    LOG
+    LOG,
+
+    DELETION_JOB
 }
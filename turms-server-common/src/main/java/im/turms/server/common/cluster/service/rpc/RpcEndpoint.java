@@ -18,14 +18,22 @@
 package im.turms.server.common.cluster.service.rpc;
 
 import im.turms.server.common.cluster.service.connection.TurmsConnection;
+import im.turms.server.common.cluster.service.rpc.balancer.LatencyEwma;
 import im.turms.server.common.cluster.service.rpc.codec.RpcFrameEncoder;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
 import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.cluster.service.rpc.dto.RpcResponse;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamComplete;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
+import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamReceiver;
+import im.turms.server.common.tracing.TracingContext;
 import im.turms.server.common.util.MapUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.IllegalReferenceCountException;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.netty.channel.ChannelOperations;
@@ -49,13 +57,34 @@ public final class RpcEndpoint {
     private final String nodeId;
     @Getter
     private final TurmsConnection connection;
-    private final Map<Integer, Sinks.One<?>> pendingRequestMap =
+    private final Map<Integer, PendingRequest> pendingRequestMap =
             new ConcurrentHashMap<>(MapUtil.getCapability(
                     (int) (EXPECTED_MAX_QPS * EXPECTED_AVERAGE_RTT * (INITIAL_CAPACITY_PERCENTAGE / 100F))));
+    /**
+     * Request ID -> the receiver of the stream request sent to the peer
+     */
+    private final Map<Integer, RpcStreamReceiver<?>> pendingStreamMap = new ConcurrentHashMap<>(16);
+    private final LatencyEwma latencyEwma;
+    private final RpcRequestMonitor requestMonitor;
 
-    public RpcEndpoint(String nodeId, TurmsConnection connection) {
+    public RpcEndpoint(String nodeId,
+                       TurmsConnection connection,
+                       LatencyEwma latencyEwma,
+                       RpcRequestMonitor requestMonitor) {
         this.nodeId = nodeId;
         this.connection = connection;
+        this.latencyEwma = latencyEwma;
+        this.requestMonitor = requestMonitor;
+    }
+
+    // Load
+
+    public int getPendingRequestCount() {
+        return pendingRequestMap.size();
+    }
+
+    public double getLatencyEwmaNanos() {
+        return latencyEwma.get();
     }
 
     // Handle Request
@@ -63,9 +92,10 @@ public final class RpcEndpoint {
     /**
      * Accept requestBody of ByteBuf so that we can send the same buffer to multiple peers
      *
+     * @param serializeNanos the time in nanoseconds spent to serialize requestBody
      * @implNote The method ensures requestBody will be released by 1
      */
-    public <T> Mono<T> sendRequest(RpcRequest<T> request, ByteBuf requestBody) {
+    public <T> Mono<T> sendRequest(RpcRequest<T> request, ByteBuf requestBody, long serializeNanos) {
         ChannelOperations<?, ?> conn = connection.getConnection();
         if (conn.isDisposed()) {
             requestBody.release();
@@ -75,54 +105,237 @@ public final class RpcEndpoint {
             return Mono.error(new IllegalReferenceCountException("The request body has been released"));
         }
         Sinks.One<T> sink = Sinks.one();
+        PendingRequest pendingRequest = new PendingRequest(sink,
+                request.name(),
+                request.getTracingContext(),
+                requestBody.readableBytes(),
+                serializeNanos,
+                System.nanoTime());
+        int requestId;
         while (true) {
-            int requestId = generateRandomId();
-            Sinks.One<?> previous = pendingRequestMap.putIfAbsent(requestId, sink);
+            int id = generateRandomId();
+            PendingRequest previous = pendingRequestMap.putIfAbsent(id, pendingRequest);
             if (previous != null) {
                 continue;
             }
-            request.setRequestId(requestId);
+            requestId = id;
+            request.setRequestId(id);
             ByteBuf buffer;
             try {
                 buffer = RpcFrameEncoder.INSTANCE.encodeRequest(request, requestBody);
             } catch (Exception e) {
                 requestBody.release();
-                resolveRequest(requestId, null, new IllegalStateException("Failed to encode request", e));
+                resolveRequest(id, null, new IllegalStateException("Failed to encode request", e), -1);
                 break;
             }
             // Note sendObject() should release the buffer no matter it succeeds or fails
             conn.sendObject(buffer)
                     .then()
+                    .doOnSuccess(unused -> {
+                        long writeNanos = System.nanoTime() - pendingRequest.startTime;
+                        pendingRequest.writeNanos = writeNanos;
+                        requestMonitor.record(pendingRequest.requestName, nodeId, RpcRequestMonitor.Phase.WRITE, writeNanos);
+                    })
                     .onErrorResume(t -> {
-                        resolveRequest(requestId, null, t);
+                        resolveRequest(id, null, t, -1);
                         return Mono.empty();
                     })
                     .subscribe();
             break;
         }
+        int sentRequestId = requestId;
+        // Remove the request if it is cancelled (e.g. timed out) so that it isn't counted as pending forever,
+        // and take the elapsed time as a sample so that the member that doesn't respond is penalized.
+        // Then tell the peer to stop running the request because nobody waits for its response
+        return sink.asMono()
+                .doOnCancel(() -> {
+                    if (pendingRequestMap.remove(sentRequestId, pendingRequest)) {
+                        long now = System.nanoTime();
+                        long elapsedNanos = now - pendingRequest.startTime;
+                        latencyEwma.observe(elapsedNanos, now);
+                        onRequestDone(pendingRequest, -1, elapsedNanos);
+                        sendCancellation(sentRequestId);
+                    }
+                });
+    }
+
+    /**
+     * Send the request without registering it as a pending request,
+     * and the peer won't send any response
+     *
+     * @return completes once the request has been written to the connection
+     * @implNote The method ensures requestBody will be released by 1
+     */
+    public Mono<Void> sendFireAndForgetRequest(RpcRequest<?> request, ByteBuf requestBody) {
+        ChannelOperations<?, ?> conn = connection.getConnection();
+        if (conn.isDisposed()) {
+            requestBody.release();
+            return Mono.error(new ClosedChannelException());
+        }
+        if (requestBody.refCnt() == 0) {
+            return Mono.error(new IllegalReferenceCountException("The request body has been released"));
+        }
+        request.setRequestId(RpcRequest.FIRE_AND_FORGET_REQUEST_ID);
+        ByteBuf buffer;
+        try {
+            buffer = RpcFrameEncoder.INSTANCE.encodeRequest(request, requestBody);
+        } catch (Exception e) {
+            requestBody.release();
+            return Mono.error(new IllegalStateException("Failed to encode request", e));
+        }
+        Sinks.Empty<Void> sink = Sinks.empty();
+        long startTime = System.nanoTime();
+        // Note sendObject() should release the buffer no matter it succeeds or fails
+        conn.sendObject(buffer)
+                .then()
+                .subscribe(null,
+                        sink::tryEmitError,
+                        () -> {
+                            long writeNanos = System.nanoTime() - startTime;
+                            requestMonitor.record(request.name(), nodeId, RpcRequestMonitor.Phase.WRITE, writeNanos);
+                            sink.tryEmitEmpty();
+                        });
         return sink.asMono();
     }
 
+    /**
+     * @return the elements sent by the peer, which are requested as many as the subscriber demands
+     * @implNote The method ensures requestBody will be released by 1 once the stream is subscribed
+     */
+    public <T> Flux<T> sendStreamRequest(RpcRequest<T> request, ByteBuf requestBody) {
+        ChannelOperations<?, ?> conn = connection.getConnection();
+        if (conn.isDisposed()) {
+            requestBody.release();
+            return Flux.error(new ClosedChannelException());
+        }
+        if (requestBody.refCnt() == 0) {
+            return Flux.error(new IllegalReferenceCountException("The request body has been released"));
+        }
+        return RpcStreamReceiver.create(receiver -> {
+                    int requestId;
+                    do {
+                        requestId = generateRandomId();
+                    } while (pendingStreamMap.putIfAbsent(requestId, receiver) != null);
+                    request.setRequestId(requestId);
+                    ByteBuf buffer;
+                    try {
+                        buffer = RpcFrameEncoder.INSTANCE.encodeRequest(request, requestBody);
+                    } catch (Exception e) {
+                        requestBody.release();
+                        pendingStreamMap.remove(requestId);
+                        receiver.onError(new IllegalStateException("Failed to encode request", e));
+                        return -1;
+                    }
+                    int sentRequestId = requestId;
+                    conn.sendObject(buffer)
+                            .then()
+                            .onErrorResume(t -> {
+                                if (pendingStreamMap.remove(sentRequestId, receiver)) {
+                                    receiver.onError(t);
+                                }
+                                return Mono.empty();
+                            })
+                            .subscribe();
+                    return requestId;
+                },
+                (requestId, credit) -> sendControlFrame(requestId, new RpcStreamCredit(requestId, credit)),
+                requestId -> {
+                    // Tell the peer to stop producing elements because nobody consumes them
+                    if (pendingStreamMap.remove(requestId) != null) {
+                        sendControlFrame(requestId, new RpcCancellation(requestId));
+                    }
+                });
+    }
+
+    private void sendCancellation(int requestId) {
+        sendControlFrame(requestId, new RpcCancellation(requestId));
+    }
+
+    private void sendControlFrame(int requestId, Object frame) {
+        ChannelOperations<?, ?> conn = connection.getConnection();
+        if (conn.isDisposed()) {
+            return;
+        }
+        ByteBuf buffer;
+        try {
+            buffer = RpcFrameEncoder.INSTANCE.encode(requestId, frame);
+        } catch (Exception e) {
+            log.error("Failed to encode the frame {} of the request: " + requestId, frame, e);
+            return;
+        }
+        conn.sendObject(buffer)
+                .then()
+                .onErrorResume(t -> {
+                    log.warn("Failed to send the frame {} of the request: " + requestId, frame, t);
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
     private int generateRandomId() {
         int id;
         do {
             id = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
-        } while (pendingRequestMap.containsKey(id));
+        } while (pendingRequestMap.containsKey(id) || pendingStreamMap.containsKey(id));
         return id;
     }
 
     // Handle Response
 
     public void handleResponse(RpcResponse response) {
-        resolveRequest(response.requestId(), response.result(), response.exception());
+        int requestId = response.requestId();
+        RpcStreamReceiver<?> receiver = pendingStreamMap.get(requestId);
+        if (receiver != null) {
+            // An element or the error of the stream
+            RpcException exception = response.exception();
+            if (exception == null) {
+                receiver.onNext(response.result());
+            } else if (pendingStreamMap.remove(requestId, receiver)) {
+                receiver.onError(exception);
+            }
+            return;
+        }
+        resolveRequest(requestId, response.result(), response.exception(), response.decodeNanos());
+    }
+
+    public void handleStreamComplete(RpcStreamComplete complete) {
+        RpcStreamReceiver<?> receiver = pendingStreamMap.remove(complete.requestId());
+        if (receiver != null) {
+            receiver.onComplete();
+        }
+    }
+
+    /**
+     * Fail the pending requests and streams immediately once the connection is closed
+     * instead of waiting for them to time out because the peer will never respond
+     */
+    public void close() {
+        for (Integer requestId : pendingRequestMap.keySet()) {
+            resolveRequest(requestId, null, new ClosedChannelException(), -1);
+        }
+        for (Map.Entry<Integer, RpcStreamReceiver<?>> entry : pendingStreamMap.entrySet()) {
+            RpcStreamReceiver<?> receiver = entry.getValue();
+            if (pendingStreamMap.remove(entry.getKey(), receiver)) {
+                receiver.onError(new ClosedChannelException());
+            }
+        }
     }
 
-    private <T> void resolveRequest(int requestId, T response, Throwable error) {
-        Sinks.One<T> sink = (Sinks.One<T>) pendingRequestMap.remove(requestId);
-        if (sink == null) {
-            log.warn("No sink of the request with ID {} is found for the response: " + response, requestId);
+    /**
+     * @param decodeNanos -1 if the request is resolved without a response from the peer
+     */
+    private <T> void resolveRequest(int requestId, T response, Throwable error, long decodeNanos) {
+        PendingRequest pendingRequest = pendingRequestMap.remove(requestId);
+        if (pendingRequest == null) {
+            // Expected if the request has been cancelled (e.g. timed out) before the response arrives
+            log.debug("No sink of the request with ID {} is found for the response: " + response, requestId);
             return;
         }
+        long now = System.nanoTime();
+        long elapsedNanos = now - pendingRequest.startTime;
+        latencyEwma.observe(elapsedNanos, now);
+        onRequestDone(pendingRequest, decodeNanos, elapsedNanos);
+        Sinks.One<T> sink = (Sinks.One<T>) pendingRequest.sink;
         if (error == null) {
             sink.tryEmitValue(response);
         } else {
@@ -130,4 +343,42 @@ public final class RpcEndpoint {
         }
     }
 
+    private void onRequestDone(PendingRequest pendingRequest, long decodeNanos, long elapsedNanos) {
+        requestMonitor.onCallerRequestDone(pendingRequest.requestName,
+                nodeId,
+                pendingRequest.tracingContext,
+                pendingRequest.payloadSize,
+                pendingRequest.serializeNanos,
+                pendingRequest.writeNanos,
+                decodeNanos,
+                elapsedNanos);
+    }
+
+    private static final class PendingRequest {
+        private final Sinks.One<?> sink;
+        private final String requestName;
+        private final TracingContext tracingContext;
+        private final int payloadSize;
+        private final long serializeNanos;
+        /**
+         * The time in nanoseconds when the request is sent
+         */
+        private final long startTime;
+        private volatile long writeNanos = -1;
+
+        private PendingRequest(Sinks.One<?> sink,
+                               String requestName,
+                               TracingContext tracingContext,
+                               int payloadSize,
+                               long serializeNanos,
+                               long startTime) {
+            this.sink = sink;
+            this.requestName = requestName;
+            this.tracingContext = tracingContext;
+            this.payloadSize = payloadSize;
+            this.serializeNanos = serializeNanos;
+            this.startTime = startTime;
+        }
+    }
+
 }
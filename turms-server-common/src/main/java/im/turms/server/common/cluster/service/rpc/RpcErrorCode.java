@@ -33,6 +33,10 @@ public enum RpcErrorCode {
     MEMBER_NOT_FOUND(2),
     CONNECTION_NOT_FOUND(3),
 
+    // Flow control
+    DEADLINE_EXCEEDED(4),
+    EXECUTION_LANE_FULL(5),
+
     // Codec
     CORRUPTED_HEADER(10),
     CODEC_FOR_REQUEST_NOT_FOUND(11),
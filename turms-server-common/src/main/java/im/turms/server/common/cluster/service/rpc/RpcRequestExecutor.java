@@ -20,15 +20,22 @@ package im.turms.server.common.cluster.service.rpc;
 import im.turms.server.common.cluster.service.connection.TurmsConnection;
 import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.cluster.service.rpc.lane.RpcExecutionLanes;
 import im.turms.server.common.constant.TurmsStatusCode;
 import im.turms.server.common.exception.TurmsBusinessException;
 import im.turms.server.common.lang.Null;
+import im.turms.server.common.tracing.Span;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.tracing.TracingContext;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author James Chen
@@ -36,18 +43,86 @@ import javax.annotation.Nullable;
 @Log4j2
 public class RpcRequestExecutor {
 
+    private static final String METRICS_NAME_RPC_REQUEST_SHED = "rpc.request.shed";
+    private static final String METRICS_NAME_RPC_REQUEST_CANCELLED = "rpc.request.cancelled";
+    private static final String METRICS_TAG_REQUEST_NAME = "name";
+
+    private static final String SPAN_NAME_PREFIX_RPC_SERVER = "rpc.server.";
+    private static final String SPAN_TAG_FROM_NODE = "fromNode";
+    private static final String SPAN_TAG_QUEUE_MICROS = "queueMicros";
+
     private final ApplicationContext context;
+    private final RpcRequestMonitor requestMonitor;
+    private final RpcExecutionLanes executionLanes;
+    /**
+     * The number of the requests sent by peers that are queued or running,
+     * which is used to wait for them to finish before the local node shuts down
+     */
+    private final AtomicInteger inFlightRequestCount = new AtomicInteger();
 
-    public RpcRequestExecutor(ApplicationContext context) {
+    public RpcRequestExecutor(ApplicationContext context,
+                              RpcRequestMonitor requestMonitor,
+                              RpcExecutionLanes executionLanes) {
         this.context = context;
+        this.requestMonitor = requestMonitor;
+        this.executionLanes = executionLanes;
     }
 
     /**
      * @implNote 1. We record request time/response here because the RPC request may run on the local machine
      * 2.The method itself will call RpcRequest#releaseBoundBuffer()
+     * 3.The request will be rejected without running if the caller has given up waiting for the response
+     * 4.The request runs in the execution lane of its type, and will be rejected if the lane is full
      */
     public <T> Mono<T> runRpcRequest(RpcRequest<T> rpcRequest, @Nullable TurmsConnection connection, String fromNodeId) {
         rpcRequest.touchBuffer(rpcRequest);
+        Mono<T> result = executionLanes.execute(rpcRequest.name(),
+                () -> runRpcRequest0(rpcRequest, connection, fromNodeId),
+                rpcRequest::releaseBoundBuffer);
+        return connection == null
+                ? result
+                : result.doOnSubscribe(subscription -> onInFlightRequestStarted())
+                .doFinally(signal -> onInFlightRequestEnded());
+    }
+
+    public int getInFlightRequestCount() {
+        return inFlightRequestCount.get();
+    }
+
+    /**
+     * @implNote Only count the requests at the entries of running requests
+     * so that every request sent by peers is counted exactly once
+     */
+    private void onInFlightRequestStarted() {
+        inFlightRequestCount.incrementAndGet();
+    }
+
+    private void onInFlightRequestEnded() {
+        inFlightRequestCount.decrementAndGet();
+    }
+
+    private <T> Mono<T> runRpcRequest0(RpcRequest<T> rpcRequest, @Nullable TurmsConnection connection, String fromNodeId) {
+        // Check the deadline when the request is about to run
+        // because it may have been queued in the execution lane for a while
+        if (rpcRequest.isExpired(System.currentTimeMillis())) {
+            rpcRequest.releaseBoundBuffer();
+            Metrics.counter(METRICS_NAME_RPC_REQUEST_SHED, METRICS_TAG_REQUEST_NAME, rpcRequest.name()).increment();
+            return Mono.error(RpcException.get(RpcErrorCode.DEADLINE_EXCEEDED, TurmsStatusCode.SERVER_UNAVAILABLE,
+                    "The request has passed its deadline before running"));
+        }
+        String requestName = rpcRequest.name();
+        long startTime = System.nanoTime();
+        // The request is received from the peer if the connection isn't null
+        long queueNanos = -1;
+        if (connection != null) {
+            queueNanos = startTime - rpcRequest.getReceivedNanos();
+            requestMonitor.record(requestName, fromNodeId, RpcRequestMonitor.Phase.REMOTE_QUEUE, queueNanos);
+        }
+        long finalQueueNanos = queueNanos;
+        Span span = startServerSpan(rpcRequest, connection, fromNodeId);
+        if (span.isRecording()) {
+            span.tag(SPAN_TAG_QUEUE_MICROS, TimeUnit.NANOSECONDS.toMicros(queueNanos));
+        }
         TracingContext tracingContext = null;
         try {
             tracingContext = rpcRequest.getTracingContext();
@@ -68,21 +143,38 @@ public class RpcRequestExecutor {
                 }
                 result = Mono.just(data);
             }
-            // TODO: slow log
-            return result
+            result = result
                     .onErrorMap(e -> e instanceof RpcException
                             ? e
                             : RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, TurmsStatusCode.SERVER_INTERNAL_ERROR, e.toString(), e))
-                    .doFinally(signalType -> finalTracingContext.clearMdc());
-        } catch (RpcException e) {
-            rpcRequest.releaseBoundBuffer();
-            return Mono.error(e);
-        } catch (TurmsBusinessException e) {
-            rpcRequest.releaseBoundBuffer();
-            return Mono.error(RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, e.getCode(), e.getReason()));
+                    .doOnCancel(() -> Metrics
+                            .counter(METRICS_NAME_RPC_REQUEST_CANCELLED, METRICS_TAG_REQUEST_NAME, requestName)
+                            .increment())
+                    .doFinally(signalType -> {
+                        requestMonitor.onCalleeRequestDone(requestName,
+                                fromNodeId,
+                                finalTracingContext,
+                                rpcRequest.getPayloadSize(),
+                                finalQueueNanos,
+                                System.nanoTime() - startTime);
+                        finalTracingContext.clearMdc();
+                    });
+            // Propagate the deadline so that the RPC requests sent
+            // while running the request won't outlive it
+            if (rpcRequest.hasDeadline()) {
+                long deadline = rpcRequest.getDeadline();
+                result = result.contextWrite(ctx -> ctx.put(RpcRequest.CTX_KEY_DEADLINE, deadline));
+            }
+            if (span.isRecording()) {
+                result = span.endOnTermination(result)
+                        .contextWrite(ctx -> ctx.put(TracingContext.CTX_KEY_NAME, finalTracingContext));
+            }
+            return result;
         } catch (Exception e) {
             rpcRequest.releaseBoundBuffer();
-            return Mono.error(RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, TurmsStatusCode.SERVER_INTERNAL_ERROR, e.toString(), e));
+            span.setError(e);
+            span.end();
+            return Mono.error(translateException(e));
         } finally {
             if (tracingContext != null) {
                 tracingContext.clearMdc();
@@ -90,4 +182,87 @@ public class RpcRequestExecutor {
         }
     }
 
+    /**
+     * @implNote 1. The method itself will call RpcRequest#releaseBoundBuffer()
+     * 2. The request will be rejected without running if the caller has given up waiting for the stream
+     * 3. The request doesn't run in any execution lane because the elements are only produced
+     * as many as the caller has requested, and the execution lane only bounds the requests
+     * that run to completion once they start
+     */
+    public <T> Flux<T> runRpcStreamRequest(RpcRequest<T> rpcRequest, @Nullable TurmsConnection connection, String fromNodeId) {
+        rpcRequest.touchBuffer(rpcRequest);
+        Flux<T> result = runRpcStreamRequest0(rpcRequest, connection, fromNodeId);
+        return connection == null
+                ? result
+                : result.doOnSubscribe(subscription -> onInFlightRequestStarted())
+                .doFinally(signal -> onInFlightRequestEnded());
+    }
+
+    private <T> Flux<T> runRpcStreamRequest0(RpcRequest<T> rpcRequest, @Nullable TurmsConnection connection, String fromNodeId) {
+        String requestName = rpcRequest.name();
+        if (rpcRequest.isExpired(System.currentTimeMillis())) {
+            rpcRequest.releaseBoundBuffer();
+            Metrics.counter(METRICS_NAME_RPC_REQUEST_SHED, METRICS_TAG_REQUEST_NAME, requestName).increment();
+            return Flux.error(RpcException.get(RpcErrorCode.DEADLINE_EXCEEDED, TurmsStatusCode.SERVER_UNAVAILABLE,
+                    "The request has passed its deadline before running"));
+        }
+        Span span = startServerSpan(rpcRequest, connection, fromNodeId);
+        TracingContext tracingContext = rpcRequest.getTracingContext();
+        try {
+            tracingContext.updateMdc();
+            rpcRequest.init(context, connection, fromNodeId);
+            // It's the responsibility of the implementations of callStream()
+            // to release by 1 if the request has a bound buffer
+            Flux<T> result = rpcRequest.callStream()
+                    .onErrorMap(e -> e instanceof RpcException
+                            ? e
+                            : RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, TurmsStatusCode.SERVER_INTERNAL_ERROR, e.toString(), e))
+                    .doOnCancel(() -> Metrics
+                            .counter(METRICS_NAME_RPC_REQUEST_CANCELLED, METRICS_TAG_REQUEST_NAME, requestName)
+                            .increment());
+            if (span.isRecording()) {
+                result = span.endOnTermination(result)
+                        .contextWrite(ctx -> ctx.put(TracingContext.CTX_KEY_NAME, tracingContext));
+            }
+            return result;
+        } catch (Exception e) {
+            rpcRequest.releaseBoundBuffer();
+            span.setError(e);
+            span.end();
+            return Flux.error(translateException(e));
+        } finally {
+            tracingContext.clearMdc();
+        }
+    }
+
+    /**
+     * Start the span of running the request sent by the peer if the trace is sampled by the peer.
+     * The requests sent by the local node aren't traced here because they run
+     * in the span of the caller
+     *
+     * @return {@link Span#NOOP} if the request is sent by the local node or the trace isn't sampled
+     */
+    private Span startServerSpan(RpcRequest<?> rpcRequest, @Nullable TurmsConnection connection, String fromNodeId) {
+        if (connection == null) {
+            return Span.NOOP;
+        }
+        Span span = Tracer.getGlobal().startEntrySpan(rpcRequest.getTracingContext(),
+                SPAN_NAME_PREFIX_RPC_SERVER + rpcRequest.name());
+        if (span.isRecording()) {
+            span.tag(SPAN_TAG_FROM_NODE, fromNodeId);
+            rpcRequest.setTracingContext(span.getContext());
+        }
+        return span;
+    }
+
+    private static RpcException translateException(Exception e) {
+        if (e instanceof RpcException rpcException) {
+            return rpcException;
+        }
+        if (e instanceof TurmsBusinessException businessException) {
+            return RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, businessException.getCode(), businessException.getReason());
+        }
+        return RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, TurmsStatusCode.SERVER_INTERNAL_ERROR, e.toString(), e);
+    }
+
 }
\ No newline at end of file
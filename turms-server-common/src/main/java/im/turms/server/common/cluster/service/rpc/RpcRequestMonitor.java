@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.rpc;
+
+import im.turms.server.common.property.env.common.cluster.RpcSlowRequestLogProperties;
+import im.turms.server.common.tracing.TracingContext;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time spent in each phase of RPC requests by request type and peer,
+ * and logs the slow requests.
+ * <p>
+ * The percentiles of timers are computed by HdrHistogram in Micrometer,
+ * and the timers can be queried via {@link im.turms.server.common.actuator.metrics.MetricsPool}
+ *
+ * @author James Chen
+ */
+@Log4j2
+public class RpcRequestMonitor {
+
+    private static final String METRICS_NAME_RPC_REQUEST_PHASE = "rpc.request.phase";
+    private static final String METRICS_TAG_REQUEST_NAME = "name";
+    private static final String METRICS_TAG_NODE_ID = "node";
+    private static final String METRICS_TAG_PHASE = "phase";
+
+    private static final Duration MIN_EXPECTED_DURATION = Duration.ofNanos(1000);
+    private static final Duration MAX_EXPECTED_DURATION = Duration.ofMinutes(1);
+
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>(64);
+    private final boolean isSlowRequestLogEnabled;
+    private final long slowRequestThresholdNanos;
+    private final float slowRequestSampleRate;
+
+    public RpcRequestMonitor(RpcSlowRequestLogProperties slowRequestLogProperties) {
+        isSlowRequestLogEnabled = slowRequestLogProperties.isEnabled();
+        slowRequestThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestLogProperties.getThresholdMillis());
+        slowRequestSampleRate = slowRequestLogProperties.getSampleRate();
+    }
+
+    public void record(String requestName, String nodeId, Phase phase, long nanos) {
+        timers.computeIfAbsent(new TimerKey(requestName, nodeId, phase), key -> Timer
+                        .builder(METRICS_NAME_RPC_REQUEST_PHASE)
+                        .tag(METRICS_TAG_REQUEST_NAME, requestName)
+                        .tag(METRICS_TAG_NODE_ID, nodeId)
+                        .tag(METRICS_TAG_PHASE, phase.getTagValue())
+                        .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED_DURATION)
+                        .maximumExpectedValue(MAX_EXPECTED_DURATION)
+                        .register(Metrics.globalRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param writeNanos     -1 if the request hasn't been flushed
+     * @param decodeNanos    -1 if no response is received (e.g. the request has been cancelled)
+     * @param roundTripNanos the time from sending the request to receiving the response or the cancellation
+     */
+    public void onCallerRequestDone(String requestName,
+                                    String targetNodeId,
+                                    TracingContext tracingContext,
+                                    int payloadSize,
+                                    long serializeNanos,
+                                    long writeNanos,
+                                    long decodeNanos,
+                                    long roundTripNanos) {
+        boolean isResponded = decodeNanos >= 0;
+        if (isResponded) {
+            record(requestName, targetNodeId, Phase.RESPONSE_DECODE, decodeNanos);
+            record(requestName, targetNodeId, Phase.ROUND_TRIP, roundTripNanos);
+        }
+        if (shouldLogSlowRequest(roundTripNanos)) {
+            log.warn("Slow RPC request on the caller side: " +
+                            "name={}, traceId={}, targetNode={}, payloadSize={}, status={}, " +
+                            "roundTrip={}us, serialize={}us, write={}us, responseDecode={}us",
+                    requestName,
+                    tracingContext.hasTraceId() ? tracingContext.getTraceId() : null,
+                    targetNodeId,
+                    payloadSize,
+                    isResponded ? "responded" : "not_responded",
+                    toMicros(roundTripNanos),
+                    toMicros(serializeNanos),
+                    toMicros(writeNanos),
+                    toMicros(decodeNanos));
+        }
+    }
+
+    /**
+     * @param queueNanos -1 if the request runs on the local node
+     */
+    public void onCalleeRequestDone(String requestName,
+                                    String fromNodeId,
+                                    TracingContext tracingContext,
+                                    int payloadSize,
+                                    long queueNanos,
+                                    long executeNanos) {
+        record(requestName, fromNodeId, Phase.EXECUTE, executeNanos);
+        if (shouldLogSlowRequest(Math.max(queueNanos, 0) + executeNanos)) {
+            log.warn("Slow RPC request on the callee side: " +
+                            "name={}, traceId={}, fromNode={}, payloadSize={}, queue={}us, execute={}us",
+                    requestName,
+                    tracingContext.hasTraceId() ? tracingContext.getTraceId() : null,
+                    fromNodeId,
+                    payloadSize,
+                    toMicros(queueNanos),
+                    toMicros(executeNanos));
+        }
+    }
+
+    private boolean shouldLogSlowRequest(long nanos) {
+        if (!isSlowRequestLogEnabled || nanos < slowRequestThresholdNanos || slowRequestSampleRate <= 0) {
+            return false;
+        }
+        return slowRequestSampleRate >= 1.0f || ThreadLocalRandom.current().nextFloat() < slowRequestSampleRate;
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private record TimerKey(String requestName, String nodeId, Phase phase) {
+    }
+
+    public enum Phase {
+        /**
+         * Caller: Serialize the request body
+         */
+        SERIALIZE("serialize"),
+        /**
+         * Caller: From handing the frame over to the channel
+         * to the frame being flushed, including the time waiting in the outbound buffer
+         */
+        WRITE("write"),
+        /**
+         * Callee: From decoding the frame to starting running the request
+         */
+        REMOTE_QUEUE("remote_queue"),
+        /**
+         * Callee: Run the request until the result is available
+         */
+        EXECUTE("execute"),
+        /**
+         * Caller: Decode the response
+         */
+        RESPONSE_DECODE("response_decode"),
+        /**
+         * Caller: From sending the request to receiving the response
+         */
+        ROUND_TRIP("round_trip");
+
+        @Getter
+        private final String tagValue;
+
+        Phase(String tagValue) {
+            this.tagValue = tagValue;
+        }
+    }
+
+}
@@ -28,14 +28,27 @@ import im.turms.server.common.cluster.service.connection.TurmsConnection;
 import im.turms.server.common.cluster.service.discovery.DiscoveryService;
 import im.turms.server.common.cluster.service.discovery.MemberConnectionListener;
 import im.turms.server.common.cluster.service.idgen.IdService;
+import im.turms.server.common.cluster.service.rpc.balancer.LatencyEwma;
+import im.turms.server.common.cluster.service.rpc.balancer.RpcLoadBalancer;
+import im.turms.server.common.cluster.service.rpc.balancer.RpcLoadStats;
 import im.turms.server.common.cluster.service.rpc.codec.RpcFrameDecoder;
 import im.turms.server.common.cluster.service.rpc.codec.RpcFrameEncoder;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
 import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.cluster.service.rpc.dto.RpcResponse;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamComplete;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
 import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.cluster.service.rpc.hedge.RpcRequestHedger;
+import im.turms.server.common.cluster.service.rpc.lane.RpcExecutionLanes;
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamSender;
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamTimeout;
 import im.turms.server.common.constant.TurmsStatusCode;
-import im.turms.server.common.logging.RequestLoggingContext;
+import im.turms.server.common.property.env.common.cluster.RpcHedgingProperties;
+import im.turms.server.common.property.env.common.cluster.RpcLoadBalancingProperties;
 import im.turms.server.common.property.env.common.cluster.RpcProperties;
+import im.turms.server.common.tracing.Span;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.tracing.TracingContext;
 import im.turms.server.common.util.CollectorUtil;
 import im.turms.server.common.util.ExceptionUtil;
@@ -46,6 +59,8 @@ import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.util.Pair;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.channel.ChannelOperations;
@@ -57,7 +72,9 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author James Chen
@@ -69,10 +86,30 @@ public class RpcService implements ClusterService {
     private static final String METRICS_TAG_REQUEST_NAME = "name";
     private static final String METRICS_TAG_REQUEST_TARGET_NODE_ID = "node";
 
+    private static final String SPAN_NAME_PREFIX_RPC_CLIENT = "rpc.client.";
+    private static final String SPAN_TAG_PEER = "peer";
+    private static final String SPAN_TAG_PEER_COUNT = "peerCount";
+
+    /**
+     * Keep a fully loaded member selectable so that its load can still be observed
+     */
+    private static final double MIN_MEMBER_WEIGHT = 0.05;
+
     private final NodeType nodeType;
     @Getter
     private final RpcRequestExecutor requestExecutor;
     private final Duration defaultRequestTimeoutDuration;
+    private final RpcRequestMonitor requestMonitor;
+    private final RpcExecutionLanes executionLanes;
+    private final RpcLoadBalancer loadBalancer;
+    private final RpcLoadStats loadStats;
+    private final long latencyEwmaDecayNanos;
+    private final boolean weightByMemberLoad;
+    /**
+     * Null if hedging is disabled
+     */
+    @Nullable
+    private final RpcRequestHedger requestHedger;
 
     private CodecService codecService;
     private ConnectionService connectionService;
@@ -87,8 +124,42 @@ public class RpcService implements ClusterService {
                       NodeType nodeType,
                       RpcProperties rpcProperties) {
         this.nodeType = nodeType;
-        this.requestExecutor = new RpcRequestExecutor(context);
+        requestMonitor = new RpcRequestMonitor(rpcProperties.getSlowRequestLog());
+        executionLanes = new RpcExecutionLanes(rpcProperties.getExecution());
+        this.requestExecutor = new RpcRequestExecutor(context, requestMonitor, executionLanes);
         defaultRequestTimeoutDuration = Duration.ofMillis(rpcProperties.getRequestTimeoutMillis());
+        RpcLoadBalancingProperties loadBalancingProperties = rpcProperties.getLoadBalancing();
+        loadBalancer = context.getBeanProvider(RpcLoadBalancer.class)
+                .getIfAvailable(() -> RpcLoadBalancer.of(loadBalancingProperties.getStrategy()));
+        latencyEwmaDecayNanos = TimeUnit.MILLISECONDS.toNanos(loadBalancingProperties.getLatencyEwmaDecayMillis());
+        weightByMemberLoad = loadBalancingProperties.isWeightByMemberLoad();
+        RpcHedgingProperties hedgingProperties = rpcProperties.getHedging();
+        requestHedger = hedgingProperties.isEnabled()
+                ? new RpcRequestHedger(hedgingProperties)
+                : null;
+        loadStats = new RpcLoadStats() {
+            @Override
+            public int getPendingRequestCount(String memberId) {
+                RpcEndpoint endpoint = endpointPool.get(memberId);
+                return endpoint == null ? 0 : endpoint.getPendingRequestCount();
+            }
+
+            @Override
+            public double getLatencyEwmaNanos(String memberId) {
+                RpcEndpoint endpoint = endpointPool.get(memberId);
+                return endpoint == null ? 0 : endpoint.getLatencyEwmaNanos();
+            }
+
+            @Override
+            public double getWeight(String memberId) {
+                if (!weightByMemberLoad) {
+                    return 1;
+                }
+                Member member = discoveryService.getAllKnownMembers().get(memberId);
+                Float load = member == null ? null : member.getStatus().getLoad();
+                return load == null ? 1 : Math.max(MIN_MEMBER_WEIGHT, 1 - load);
+            }
+        };
     }
 
     @Override
@@ -105,6 +176,14 @@ public class RpcService implements ClusterService {
             private TurmsConnection connection;
             private Member member;
             private RpcEndpoint endpoint;
+            /**
+             * Request ID -> the subscription of the running request sent by the peer
+             */
+            private final Map<Integer, Disposable.Swap> runningRequests = new ConcurrentHashMap<>(64);
+            /**
+             * Request ID -> the sender of the running stream request sent by the peer
+             */
+            private final Map<Integer, RpcStreamSender<?>> streamSenders = new ConcurrentHashMap<>(16);
 
             @Override
             public void onConnectionOpen(TurmsConnection connection) {
@@ -117,6 +196,18 @@ public class RpcService implements ClusterService {
             @Override
             public void onConnectionClosed() {
                 endpointPool.remove(member.getNodeId());
+                if (endpoint != null) {
+                    endpoint.close();
+                }
+                // Nobody will receive the responses
+                for (Disposable.Swap runningRequest : runningRequests.values()) {
+                    runningRequest.dispose();
+                }
+                runningRequests.clear();
+                for (RpcStreamSender<?> sender : streamSenders.values()) {
+                    sender.dispose();
+                }
+                streamSenders.clear();
             }
 
             @Override
@@ -128,46 +219,133 @@ public class RpcService implements ClusterService {
             @Override
             public void onDataReceived(Object data) {
                 if (data instanceof RpcRequest<?> request) {
-                    ChannelOperations<?, ?> conn = connection.getConnection();
-                    requestExecutor.runRpcRequest(request, connection, connection.getNodeId())
-                            .onErrorResume(RpcException.class, t -> (Mono) Mono.just(t))
-                            .doOnNext(response -> {
-                                if (conn.isDisposed()) {
-                                    log.error("Cannot send response to disposed connection: " + response);
-                                    return;
-                                }
-                                ByteBuf buf;
-                                try {
-                                    buf = RpcFrameEncoder.INSTANCE.encode(request.getRequestId(), response);
-                                } catch (Exception e) {
-                                    log.error("Failed to encode response: {}", response, e);
-                                    return;
-                                }
-                                if (buf.refCnt() == 0) {
-                                    log.error("The buffer of response is released unexpectedly: " + response);
-                                    return;
-                                }
-                                conn.sendObject(buf)
-                                        .then()
-                                        .onErrorResume(t -> {
-                                            log.error("Failed to send response", t);
-                                            return Mono.empty();
-                                        })
-                                        .subscribe();
-                            })
-                            .subscribe();
-                } else if (data instanceof RpcResponse response) {
-                    if (endpoint == null) {
-                        endpoint = getOrCreateEndpoint(connection.getNodeId(), connection);
+                    if (request.isFireAndForget()) {
+                        runFireAndForgetRequest(request);
+                    } else if (request.isStream()) {
+                        runStreamRequest(request);
+                    } else {
+                        runRequest(request);
                     }
-                    endpoint.handleResponse(response);
+                } else if (data instanceof RpcCancellation cancellation) {
+                    int requestId = cancellation.requestId();
+                    Disposable.Swap runningRequest = runningRequests.remove(requestId);
+                    if (runningRequest != null) {
+                        runningRequest.dispose();
+                    }
+                    RpcStreamSender<?> sender = streamSenders.remove(requestId);
+                    if (sender != null) {
+                        sender.dispose();
+                    }
+                } else if (data instanceof RpcStreamCredit credit) {
+                    RpcStreamSender<?> sender = streamSenders.get(credit.requestId());
+                    if (sender != null) {
+                        sender.addCredit(credit.credit());
+                    }
+                } else if (data instanceof RpcResponse response) {
+                    getEndpoint().handleResponse(response);
+                } else if (data instanceof RpcStreamComplete complete) {
+                    getEndpoint().handleStreamComplete(complete);
                 } else {
                     log.error("Receive an unknown data: " + data);
                 }
             }
+
+            private RpcEndpoint getEndpoint() {
+                if (endpoint == null) {
+                    endpoint = getOrCreateEndpoint(connection.getNodeId(), connection);
+                }
+                return endpoint;
+            }
+
+            private void runRequest(RpcRequest<?> request) {
+                ChannelOperations<?, ?> conn = connection.getConnection();
+                int requestId = request.getRequestId();
+                Disposable.Swap runningRequest = Disposables.swap();
+                runningRequests.put(requestId, runningRequest);
+                Disposable subscription = requestExecutor.runRpcRequest(request, connection, connection.getNodeId())
+                        .onErrorResume(RpcException.class, t -> (Mono) Mono.just(t))
+                        .doOnNext(response -> sendResponse(conn, requestId, response))
+                        .doFinally(signal -> runningRequests.remove(requestId, runningRequest))
+                        .subscribe();
+                runningRequest.update(subscription);
+            }
+
+            private void runFireAndForgetRequest(RpcRequest<?> request) {
+                // Nobody waits for the result, so just log the error
+                requestExecutor.runRpcRequest(request, connection, connection.getNodeId())
+                        .subscribe(null, t -> log.warn("Failed to run the fire-and-forget request: " + request, t));
+            }
+
+            private <T> void runStreamRequest(RpcRequest<T> request) {
+                ChannelOperations<?, ?> conn = connection.getConnection();
+                int requestId = request.getRequestId();
+                RpcStreamSender<T> sender = new RpcStreamSender<>(new RpcStreamSender.Output<>() {
+                    @Override
+                    public void sendElement(T element) {
+                        sendResponse(conn, requestId, element);
+                    }
+
+                    @Override
+                    public void sendComplete() {
+                        streamSenders.remove(requestId);
+                        sendResponse(conn, requestId, new RpcStreamComplete(requestId));
+                    }
+
+                    @Override
+                    public void sendError(Throwable throwable) {
+                        streamSenders.remove(requestId);
+                        RpcException exception = throwable instanceof RpcException e
+                                ? e
+                                : RpcException.get(RpcErrorCode.FAILED_TO_RUN_RPC, TurmsStatusCode.SERVER_INTERNAL_ERROR,
+                                throwable.toString(), throwable);
+                        sendResponse(conn, requestId, exception);
+                    }
+                });
+                streamSenders.put(requestId, sender);
+                // The sender requests elements only after the caller grants credits
+                requestExecutor.runRpcStreamRequest(request, connection, connection.getNodeId())
+                        .subscribe(sender);
+            }
         });
     }
 
+    @Override
+    public void stop() {
+        executionLanes.dispose();
+    }
+
+    /**
+     * @return the number of the requests sent by peers that are queued or running on the local node
+     */
+    public int getInFlightRequestCount() {
+        return requestExecutor.getInFlightRequestCount();
+    }
+
+    private void sendResponse(ChannelOperations<?, ?> conn, int requestId, Object response) {
+        if (conn.isDisposed()) {
+            log.error("Cannot send response to disposed connection: " + response);
+            return;
+        }
+        ByteBuf buf;
+        try {
+            buf = RpcFrameEncoder.INSTANCE.encode(requestId, response);
+        } catch (Exception e) {
+            log.error("Failed to encode response: {}", response, e);
+            return;
+        }
+        if (buf.refCnt() == 0) {
+            log.error("The buffer of response is released unexpectedly: " + response);
+            return;
+        }
+        conn.sendObject(buf)
+                .then()
+                .onErrorResume(t -> {
+                    log.error("Failed to send response", t);
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
     public RpcEndpoint getOrCreateEndpoint(String nodeId) {
         return getOrCreateEndpoint(nodeId, null);
     }
@@ -194,7 +372,7 @@ public class RpcService implements ClusterService {
                         + " doesn't exist");
             }
         }
-        return new RpcEndpoint(nodeId, connection);
+        return new RpcEndpoint(nodeId, connection, new LatencyEwma(latencyEwmaDecayNanos), requestMonitor);
     }
 
     /**
@@ -203,18 +381,15 @@ public class RpcService implements ClusterService {
      * 3. error for other cases (e.g. no peer exists).
      */
     public <T> Mono<T> requestResponse(RpcRequest<T> request) {
-        //TODO: Provide richer load balancing strategies
-        List<String> otherMembers = getOtherActiveConnectedMembersToRespond(request);
-        int size = otherMembers.size();
-        if (size == 0) {
+        List<String> otherMembers = getOtherAvailableMembersToRespond(request);
+        if (otherMembers.isEmpty()) {
             request.releaseBoundBuffer();
             return Mono.error(RpcException.get(RpcErrorCode.MEMBER_NOT_FOUND, TurmsStatusCode.SERVER_UNAVAILABLE));
         }
-        // use System.currentTimeMillis() instead of "RandomUtil.nextPositiveInt()" for better performance
-        int index = (int) (System.currentTimeMillis() % size);
-        String memberNodeId = otherMembers.get(index);
+        String memberNodeId;
         RpcEndpoint client;
         try {
+            memberNodeId = loadBalancer.select(otherMembers, loadStats);
             client = getOrCreateEndpoint(memberNodeId);
         } catch (Exception e) {
             request.releaseBoundBuffer();
@@ -222,10 +397,25 @@ public class RpcService implements ClusterService {
         }
         // Retain to invoke requestResponse() again if an error occurs
         request.retainBoundBuffer();
-        return requestResponse(client, request, defaultRequestTimeoutDuration)
+        Mono<T> responseMono = requestResponse(client, request, defaultRequestTimeoutDuration);
+        if (requestHedger != null && request.isIdempotent()) {
+            responseMono = requestHedger.hedge(request.name(),
+                    responseMono,
+                    () -> {
+                        RpcEndpoint hedgeEndpoint = selectHedgeEndpoint(request, memberNodeId);
+                        if (hedgeEndpoint == null) {
+                            return null;
+                        }
+                        // Retain for the duplicate request
+                        request.retainBoundBuffer();
+                        return requestResponse(hedgeEndpoint, request, defaultRequestTimeoutDuration);
+                    },
+                    defaultRequestTimeoutDuration);
+        }
+        return responseMono
                 .onErrorResume(throwable -> {
                     if (ExceptionUtil.isDisconnectedClientError(throwable)) {
-                        for (String newMemberId : getOtherActiveConnectedMembersToRespond(request)) {
+                        for (String newMemberId : getOtherAvailableMembersToRespond(request)) {
                             if (!newMemberId.equals(memberNodeId)) {
                                 return requestResponse(newMemberId, request, defaultRequestTimeoutDuration);
                             }
@@ -237,6 +427,29 @@ public class RpcService implements ClusterService {
                 .doFinally(signal -> request.releaseBoundBuffer());
     }
 
+    /**
+     * @return null if there is no other member to send the duplicate request
+     */
+    @Nullable
+    private RpcEndpoint selectHedgeEndpoint(RpcRequest<?> request, String excludedMemberNodeId) {
+        List<String> members = getOtherAvailableMembersToRespond(request);
+        List<String> candidates = new ArrayList<>(members.size());
+        for (String member : members) {
+            if (!member.equals(excludedMemberNodeId)) {
+                candidates.add(member);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        try {
+            return getOrCreateEndpoint(loadBalancer.select(candidates, loadStats));
+        } catch (Exception e) {
+            log.warn("Failed to select the member to send the hedged request: " + request, e);
+            return null;
+        }
+    }
+
     /**
      * @return 1. an empty publisher if the peer responds with a null value;
      * 2. a non-empty publisher if the peer responds with a non-null value;
@@ -286,6 +499,97 @@ public class RpcService implements ClusterService {
         }
     }
 
+    /**
+     * Send the request without waiting for a response, and the member won't send any response.
+     * Used for the requests whose responses are never used (e.g. notifications to deliver)
+     * so that they don't occupy the pending requests and the response traffic
+     *
+     * @return completes once the request has been written to the connection,
+     * or has started running if the member is the local node
+     */
+    public Mono<Void> requestFireAndForget(String memberNodeId, RpcRequest<?> request) {
+        try {
+            if (discoveryService.getLocalNodeStatusManager().isLocalNodeId(memberNodeId)) {
+                requestExecutor.runRpcRequest(request, null, memberNodeId)
+                        .subscribe(null, t -> log.warn("Failed to run the fire-and-forget request: " + request, t));
+                return Mono.empty();
+            }
+            assertCurrentNodeIsAllowedToSend(request);
+            RpcEndpoint endpoint = getOrCreateEndpoint(memberNodeId);
+            return Mono
+                    .deferContextual(context -> {
+                        Span span = startClientSpan(context, request)
+                                .tag(SPAN_TAG_PEER, memberNodeId);
+                        // Let the member drop the request if it cannot run the request in time
+                        addDeadlineToRequest(context, request, defaultRequestTimeoutDuration);
+                        ByteBuf requestBody;
+                        long serializeStartTime = System.nanoTime();
+                        try {
+                            requestBody = codecService.serializeWithoutCodecId(request);
+                        } catch (Exception e) {
+                            request.releaseBoundBuffer();
+                            span.end();
+                            return Mono.error(new IllegalStateException("Failed to encode the request: " + request, e));
+                        }
+                        long serializeNanos = System.nanoTime() - serializeStartTime;
+                        requestMonitor.record(request.name(), memberNodeId, RpcRequestMonitor.Phase.SERIALIZE, serializeNanos);
+                        return span.endOnTermination(endpoint.sendFireAndForgetRequest(request, requestBody));
+                    })
+                    .onErrorMap(t -> mapThrowable(t, request));
+        } catch (Exception e) {
+            request.releaseBoundBuffer();
+            return Mono.error(e);
+        }
+    }
+
+    public <T> Flux<T> requestStream(String memberNodeId, RpcRequest<T> request) {
+        return requestStream(memberNodeId, request, defaultRequestTimeoutDuration);
+    }
+
+    /**
+     * @param timeout the maximum time to wait for the next element while the subscriber is waiting for it.
+     *                The time when the subscriber has no outstanding demand isn't counted
+     * @return the elements sent by the member, which are requested from the member
+     * as many as the subscriber demands, so a slow subscriber won't be flooded.
+     * The stream terminates with an error if the connection is closed before the stream completes
+     */
+    public <T> Flux<T> requestStream(String memberNodeId, RpcRequest<T> request, Duration timeout) {
+        if (!request.isStream()) {
+            request.releaseBoundBuffer();
+            return Flux.error(new IllegalArgumentException("The request " + request.name() + " isn't a stream request"));
+        }
+        try {
+            if (discoveryService.getLocalNodeStatusManager().isLocalNodeId(memberNodeId)) {
+                return requestExecutor.runRpcStreamRequest(request, null, memberNodeId);
+            }
+            assertCurrentNodeIsAllowedToSend(request);
+            RpcEndpoint endpoint = getOrCreateEndpoint(memberNodeId);
+            Flux<T> stream = Flux
+                    .deferContextual(context -> {
+                        Span span = startClientSpan(context, request)
+                                .tag(SPAN_TAG_PEER, memberNodeId);
+                        addDeadlineToRequest(context, request, timeout);
+                        ByteBuf requestBody;
+                        long serializeStartTime = System.nanoTime();
+                        try {
+                            requestBody = codecService.serializeWithoutCodecId(request);
+                        } catch (Exception e) {
+                            request.releaseBoundBuffer();
+                            span.end();
+                            return Flux.error(new IllegalStateException("Failed to encode the request: " + request, e));
+                        }
+                        long serializeNanos = System.nanoTime() - serializeStartTime;
+                        requestMonitor.record(request.name(), memberNodeId, RpcRequestMonitor.Phase.SERIALIZE, serializeNanos);
+                        return span.endOnTermination(endpoint.sendStreamRequest(request, requestBody));
+                    });
+            return RpcStreamTimeout.apply(stream, timeout)
+                    .onErrorMap(t -> mapThrowable(t, request));
+        } catch (Exception e) {
+            request.releaseBoundBuffer();
+            return Flux.error(e);
+        }
+    }
+
     /**
      * @return 1. an empty publisher if all peers respond with an empty payload;
      * 2. a non-empty publisher if the peer responds with an non-empty valid payload;
@@ -303,7 +607,7 @@ public class RpcService implements ClusterService {
     public <T> Flux<T> requestResponsesFromOtherMembers(@NotNull RpcRequest<T> request,
                                                         @NotNull Duration timeout,
                                                         boolean rejectIfMissingAnyConnection) {
-        List<String> memberIds = getOtherActiveConnectedMembersToRespond(request);
+        List<String> memberIds = getOtherReachableMembersToRespond(request);
         return requestResponsesFromOtherMembers(memberIds, request, timeout, rejectIfMissingAnyConnection);
     }
 
@@ -327,7 +631,7 @@ public class RpcService implements ClusterService {
     public <T> Mono<Map<String, T>> requestResponsesAsMapFromOtherMembers(@NotNull RpcRequest<T> request,
                                                                           @NotNull Duration timeout,
                                                                           boolean rejectIfMissingAnyConnection) {
-        List<String> memberIds = getOtherActiveConnectedMembersToRespond(request);
+        List<String> memberIds = getOtherReachableMembersToRespond(request);
         return requestResponsesAsMap(memberIds, request, timeout, rejectIfMissingAnyConnection);
     }
 
@@ -345,17 +649,24 @@ public class RpcService implements ClusterService {
         if (timeout == null) {
             timeout = defaultRequestTimeoutDuration;
         }
+        Duration finalTimeout = timeout;
         Mono<T> mono = Mono
                 .deferContextual(context -> {
-                    addTraceIdToRequestFromContext(context, request);
+                    Span span = startClientSpan(context, request)
+                            .tag(SPAN_TAG_PEER, endpoint.getNodeId());
+                    addDeadlineToRequest(context, request, finalTimeout);
                     ByteBuf requestBody;
+                    long serializeStartTime = System.nanoTime();
                     try {
                         requestBody = codecService.serializeWithoutCodecId(request);
                     } catch (Exception e) {
                         request.releaseBoundBuffer();
+                        span.end();
                         return Mono.error(new IllegalStateException("Failed to encode the request: " + request, e));
                     }
-                    return endpoint.sendRequest(request, requestBody);
+                    long serializeNanos = System.nanoTime() - serializeStartTime;
+                    requestMonitor.record(request.name(), endpoint.getNodeId(), RpcRequestMonitor.Phase.SERIALIZE, serializeNanos);
+                    return span.endOnTermination(endpoint.sendRequest(request, requestBody, serializeNanos));
                 })
                 .timeout(timeout)
                 .name(METRICS_NAME_RPC_REQUEST)
@@ -387,8 +698,12 @@ public class RpcService implements ClusterService {
                     .get(RpcErrorCode.CONNECTION_NOT_FOUND, TurmsStatusCode.SERVER_UNAVAILABLE, "Not all connections are established"));
         }
         return Flux.deferContextual(context -> {
-            addTraceIdToRequestFromContext(context, request);
+            Span span = startClientSpan(context, request)
+                    .tag(SPAN_TAG_PEER_COUNT, memberIds.size());
+            addDeadlineToRequest(context, request, timeout);
+            long serializeStartTime = System.nanoTime();
             ByteBuf requestBody = codecService.serializeWithoutCodecId(request);
+            long serializeNanos = System.nanoTime() - serializeStartTime;
             List<Mono<T>> results = new ArrayList<>(memberIds.size());
             for (String memberId : memberIds) {
                 RpcEndpoint client;
@@ -398,8 +713,9 @@ public class RpcService implements ClusterService {
                     results.add(Mono.error(e));
                     continue;
                 }
+                requestMonitor.record(request.name(), memberId, RpcRequestMonitor.Phase.SERIALIZE, serializeNanos);
                 requestBody.retain();
-                Mono<T> responseMono = client.sendRequest(request, requestBody)
+                Mono<T> responseMono = client.sendRequest(request, requestBody, serializeNanos)
                         .name(METRICS_NAME_RPC_REQUEST)
                         .tag(METRICS_TAG_REQUEST_NAME, request.name())
                         .tag(METRICS_TAG_REQUEST_TARGET_NODE_ID, memberId)
@@ -411,8 +727,7 @@ public class RpcService implements ClusterService {
             if (tag != null) {
                 responseFlux = responseFlux.tag(tag.getKey(), tag.getValue());
             }
-            return responseFlux
-                    .timeout(timeout)
+            return span.endOnTermination(responseFlux.timeout(timeout))
                     .onErrorMap(t -> mapThrowable(t, request))
                     .doFinally(signal -> requestBody.release());
         });
@@ -435,8 +750,12 @@ public class RpcService implements ClusterService {
                     .get(RpcErrorCode.CONNECTION_NOT_FOUND, TurmsStatusCode.SERVER_UNAVAILABLE, "Not all connections are established"));
         }
         return Mono.deferContextual(context -> {
-            addTraceIdToRequestFromContext(context, request);
+            Span span = startClientSpan(context, request)
+                    .tag(SPAN_TAG_PEER_COUNT, memberIds.size());
+            addDeadlineToRequest(context, request, timeout);
+            long serializeStartTime = System.nanoTime();
             ByteBuf requestBody = codecService.serializeWithoutCodecId(request);
+            long serializeNanos = System.nanoTime() - serializeStartTime;
             int size = memberIds.size();
             List<Mono<Pair<String, T>>> results = new ArrayList<>(size);
             for (String memberId : memberIds) {
@@ -447,8 +766,9 @@ public class RpcService implements ClusterService {
                     results.add(Mono.error(e));
                     continue;
                 }
+                requestMonitor.record(request.name(), memberId, RpcRequestMonitor.Phase.SERIALIZE, serializeNanos);
                 requestBody.retain();
-                Mono<Pair<String, T>> responseMono = client.sendRequest(request, requestBody)
+                Mono<Pair<String, T>> responseMono = client.sendRequest(request, requestBody, serializeNanos)
                         .name(METRICS_NAME_RPC_REQUEST)
                         .tag(METRICS_TAG_REQUEST_NAME, request.name())
                         .tag(METRICS_TAG_REQUEST_TARGET_NODE_ID, memberId)
@@ -461,23 +781,47 @@ public class RpcService implements ClusterService {
             if (tag != null) {
                 resultFlux = resultFlux.tag(tag.getKey(), tag.getValue());
             }
-            return resultFlux
-                    .timeout(timeout)
+            return span.endOnTermination(resultFlux.timeout(timeout))
                     .collectMap(Pair::getFirst, Pair::getSecond, CollectorUtil.toMap(MapUtil.getCapability(size)))
                     .onErrorMap(t -> mapThrowable(t, request))
                     .doFinally(signal -> requestBody.release());
         });
     }
 
-    private void addTraceIdToRequestFromContext(ContextView contextView, RpcRequest<?> request) {
-        if (request.getTracingContext().hasTraceId()) {
-            return;
+    /**
+     * Start the span of sending the request if the trace in the context is sampled,
+     * and propagate the span context (or the trace ID only if the trace isn't sampled) to peers
+     * in the request
+     *
+     * @return {@link Span#NOOP} if the trace isn't sampled
+     */
+    private Span startClientSpan(ContextView contextView, RpcRequest<?> request) {
+        TracingContext parent = Tracer.readContext(contextView);
+        Span span = Tracer.getGlobal().startSpan(parent, SPAN_NAME_PREFIX_RPC_CLIENT + request.name());
+        if (span.isRecording()) {
+            request.setTracingContext(span.getContext());
+            return span;
+        }
+        if (!request.getTracingContext().hasTraceId()) {
+            request.setTracingContext(parent == null
+                    ? new TracingContext(RandomUtil.nextPositiveLong())
+                    : parent);
         }
-        Long traceId = RequestLoggingContext.readTraceIdFromContext(contextView);
-        if (traceId == null) {
-            traceId = RandomUtil.nextPositiveLong();
+        return span;
+    }
+
+    /**
+     * Use the earlier one of the deadline of the timeout and the deadline of the RPC request
+     * being run on the local node (if any) so that the peer won't run the request
+     * after the caller has given up waiting for the response
+     */
+    private void addDeadlineToRequest(ContextView contextView, RpcRequest<?> request, Duration timeout) {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        Long upstreamDeadline = contextView.getOrDefault(RpcRequest.CTX_KEY_DEADLINE, null);
+        if (upstreamDeadline != null && upstreamDeadline < deadline) {
+            deadline = upstreamDeadline;
         }
-        request.setTracingContext(new TracingContext(traceId));
+        request.setDeadline(deadline);
     }
 
 
@@ -496,6 +840,62 @@ public class RpcService implements ClusterService {
         };
     }
 
+    /**
+     * @return the members excluding the ones suspected to be unavailable by the failure detector
+     * so that the liveness of members doesn't depend on the heartbeats in the config server.
+     * Note that the active status of members is still read from the config server
+     * because it is the intent of developers instead of the liveness.
+     * If all members are excluded, return all of them because
+     * it usually means that the local node itself has problems (e.g. a long GC pause) instead of all peers
+     */
+    private List<String> getOtherReachableMembersToRespond(RpcRequest<?> request) {
+        return filterAvailableMembers(getOtherActiveConnectedMembersToRespond(request), false);
+    }
+
+    /**
+     * @return the members excluding the draining ones and the ones suspected to be unavailable
+     * by the failure detector. If all members are excluded, return all of them because
+     * it usually means that the local node itself has problems (e.g. a long GC pause) instead of all peers,
+     * or all peers are draining but can still handle requests until they shut down
+     */
+    private List<String> getOtherAvailableMembersToRespond(RpcRequest<?> request) {
+        return filterAvailableMembers(getOtherActiveConnectedMembersToRespond(request), true);
+    }
+
+    private List<String> filterAvailableMembers(List<String> memberIds, boolean excludeDrainingMembers) {
+        Set<String> suspectedMemberIds = connectionService.getSuspectedMemberIds();
+        if (suspectedMemberIds.isEmpty() && !excludeDrainingMembers) {
+            return memberIds;
+        }
+        Map<String, Member> knownMembers = discoveryService.getAllKnownMembers();
+        List<String> availableMemberIds = null;
+        int size = memberIds.size();
+        for (int i = 0; i < size; i++) {
+            String memberId = memberIds.get(i);
+            boolean isAvailable = !suspectedMemberIds.contains(memberId);
+            if (isAvailable && excludeDrainingMembers) {
+                Member member = knownMembers.get(memberId);
+                isAvailable = member == null || !member.getStatus().isDraining();
+            }
+            if (availableMemberIds == null) {
+                if (isAvailable) {
+                    continue;
+                }
+                // Allocate the list lazily because all members are available in most cases
+                availableMemberIds = new ArrayList<>(size);
+                availableMemberIds.addAll(memberIds.subList(0, i));
+            } else if (isAvailable) {
+                availableMemberIds.add(memberId);
+            }
+        }
+        if (availableMemberIds == null) {
+            return memberIds;
+        }
+        return availableMemberIds.isEmpty()
+                ? memberIds
+                : availableMemberIds;
+    }
+
     private void assertCurrentNodeIsAllowedToSend(RpcRequest<?> request) {
         NodeTypeToHandleRpc type = request.nodeTypeToRequest();
         boolean allowed = switch (type) {
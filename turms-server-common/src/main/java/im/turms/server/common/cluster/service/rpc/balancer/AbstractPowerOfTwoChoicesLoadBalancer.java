@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Selects the member with the lower cost from two random members.
+ * Comparing two random members instead of all members avoids sending all requests
+ * to the same member whose stats are stale (herd behavior), and still avoids overloaded members exponentially well.
+ *
+ * @author James Chen
+ */
+abstract class AbstractPowerOfTwoChoicesLoadBalancer implements RpcLoadBalancer {
+
+    @Override
+    public String select(List<String> memberIds, RpcLoadStats stats) {
+        int size = memberIds.size();
+        if (size == 1) {
+            return memberIds.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        String firstMemberId = memberIds.get(first);
+        String secondMemberId = memberIds.get(second);
+        return getCost(secondMemberId, stats) < getCost(firstMemberId, stats)
+                ? secondMemberId
+                : firstMemberId;
+    }
+
+    protected abstract double getCost(String memberId, RpcLoadStats stats);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+/**
+ * An exponentially weighted moving average of latency decayed by time instead of by the number of samples,
+ * so a member that hasn't been requested for a while is forgotten rather than penalized forever.
+ *
+ * @author James Chen
+ */
+public final class LatencyEwma {
+
+    private final double decayNanos;
+    private double ewma;
+    private long lastUpdateTime;
+
+    /**
+     * @param decayNanos the time for the weight of a sample to decay to 1/e
+     */
+    public LatencyEwma(long decayNanos) {
+        if (decayNanos <= 0) {
+            throw new IllegalArgumentException("The decay time must be greater than 0");
+        }
+        this.decayNanos = decayNanos;
+    }
+
+    public synchronized void observe(long latencyNanos, long now) {
+        if (lastUpdateTime == 0) {
+            ewma = latencyNanos;
+        } else {
+            double weight = Math.exp(-Math.max(0, now - lastUpdateTime) / decayNanos);
+            // Take the new sample directly if it is higher (peak EWMA)
+            // so that a member slowing down is detected immediately
+            ewma = latencyNanos > ewma
+                    ? latencyNanos
+                    : ewma * weight + latencyNanos * (1 - weight);
+        }
+        lastUpdateTime = now;
+    }
+
+    public synchronized double get() {
+        return ewma;
+    }
+
+}
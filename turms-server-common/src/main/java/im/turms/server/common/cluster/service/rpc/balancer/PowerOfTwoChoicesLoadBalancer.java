@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+/**
+ * Prefers the member with fewer pending requests, which reflects both the throughput and the latency of a member
+ * because a slow member accumulates pending requests
+ *
+ * @author James Chen
+ */
+public final class PowerOfTwoChoicesLoadBalancer extends AbstractPowerOfTwoChoicesLoadBalancer {
+
+    @Override
+    protected double getCost(String memberId, RpcLoadStats stats) {
+        return (stats.getPendingRequestCount(memberId) + 1) / stats.getWeight(memberId);
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects members in turn regardless of their load
+ *
+ * @author James Chen
+ */
+public final class RoundRobinLoadBalancer implements RpcLoadBalancer {
+
+    private final AtomicInteger index = new AtomicInteger();
+
+    @Override
+    public String select(List<String> memberIds, RpcLoadStats stats) {
+        return memberIds.get(Math.floorMod(index.getAndIncrement(), memberIds.size()));
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+import im.turms.server.common.property.constant.RpcLoadBalancingStrategy;
+
+import java.util.List;
+
+/**
+ * Selects the member to handle a RPC request that can be handled by any member.
+ * Provide a bean of this type to replace the built-in strategies.
+ *
+ * @author James Chen
+ */
+public interface RpcLoadBalancer {
+
+    /**
+     * @param memberIds the IDs of the candidate members, which is never empty
+     * @param stats     the load of the candidate members
+     * @return one of memberIds
+     */
+    String select(List<String> memberIds, RpcLoadStats stats);
+
+    static RpcLoadBalancer of(RpcLoadBalancingStrategy strategy) {
+        return switch (strategy) {
+            case ROUND_ROBIN -> new RoundRobinLoadBalancer();
+            case POWER_OF_TWO_CHOICES -> new PowerOfTwoChoicesLoadBalancer();
+            case EWMA -> new EwmaLoadBalancer();
+        };
+    }
+
+}
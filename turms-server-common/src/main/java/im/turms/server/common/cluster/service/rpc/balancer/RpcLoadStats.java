@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.balancer;
+
+/**
+ * The load of members observed by the local member
+ *
+ * @author James Chen
+ */
+public interface RpcLoadStats {
+
+    /**
+     * @return the number of requests sent to the member that haven't been responded
+     */
+    int getPendingRequestCount(String memberId);
+
+    /**
+     * @return the EWMA of the latency of the requests to the member in nanoseconds,
+     * or 0 if no request has been responded
+     */
+    double getLatencyEwmaNanos(String memberId);
+
+    /**
+     * @return the relative capacity of the member in (0, 1].
+     * 1 if the member is idle or the load of the member is unknown
+     */
+    double getWeight(String memberId);
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.rpc.codec;
+
+import im.turms.server.common.cluster.service.codec.codec.Codec;
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author James Chen
+ */
+public class RpcCancellationCodec implements Codec<RpcCancellation> {
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_CANCELLATION;
+    }
+
+    @Override
+    public void write(ByteBuf output, RpcCancellation data) {
+        output.writeInt(data.requestId());
+    }
+
+    @Override
+    public RpcCancellation read(ByteBuf input) {
+        return new RpcCancellation(input.readInt());
+    }
+
+    @Override
+    public int initialCapacity(RpcCancellation data) {
+        return Integer.BYTES;
+    }
+
+}
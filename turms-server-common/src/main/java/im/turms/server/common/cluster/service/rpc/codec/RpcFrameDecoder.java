@@ -20,8 +20,11 @@ package im.turms.server.common.cluster.service.rpc.codec;
 import im.turms.server.common.cluster.service.codec.codec.Codec;
 import im.turms.server.common.cluster.service.codec.codec.CodecPool;
 import im.turms.server.common.cluster.service.codec.exception.CodecNotFoundException;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
 import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
 import im.turms.server.common.cluster.service.rpc.dto.RpcResponse;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamComplete;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
 import im.turms.server.common.cluster.service.rpc.exception.RpcException;
 import im.turms.server.common.rpc.codec.request.RpcRequestCodec;
 import io.netty.buffer.ByteBuf;
@@ -76,6 +79,8 @@ public class RpcFrameDecoder extends LengthFieldBasedFrameDecoder {
     }
 
     public Object decodePayload(ChannelHandlerContext ctx, ByteBuf frame) {
+        long receivedNanos = System.nanoTime();
+        int payloadSize = frame.readableBytes();
         int codecId = Integer.MIN_VALUE;
         try {
             codecId = frame.readShort() & 0xFFFF;
@@ -91,15 +96,33 @@ public class RpcFrameDecoder extends LengthFieldBasedFrameDecoder {
                         "requestId must be larger than 0. Actual: " + requestId);
                 throw new CorruptedFrameException(reason);
             }
+            int schemaVersion = frame.readByte();
+            if (schemaVersion < codec.getMinSchemaVersion() || schemaVersion > codec.getSchemaVersion()) {
+                String reason = ReactorNetty.format(ctx.channel(),
+                        "The schema version %d of the codec %s is unsupported. Supported versions: [%d, %d]"
+                                .formatted(schemaVersion,
+                                        codec.getCodecId(),
+                                        codec.getMinSchemaVersion(),
+                                        codec.getSchemaVersion()));
+                throw new CorruptedFrameException(reason);
+            }
             if (codec instanceof RpcRequestCodec<?> requestCodec) {
-                RpcRequest<?> request = requestCodec.read(frame);
+                RpcRequest<?> request = requestCodec.read(frame, schemaVersion);
                 request.setRequestId(requestId);
+                request.setPayloadSize(payloadSize);
+                request.setReceivedNanos(receivedNanos);
                 return request;
             }
-            Object responseValue = codec.read(frame);
+            Object responseValue = codec.read(frame, schemaVersion);
+            if (responseValue instanceof RpcCancellation
+                    || responseValue instanceof RpcStreamCredit
+                    || responseValue instanceof RpcStreamComplete) {
+                return responseValue;
+            }
+            long decodeNanos = System.nanoTime() - receivedNanos;
             return responseValue instanceof RpcException exception
-                    ? new RpcResponse(requestId, null, exception)
-                    : new RpcResponse(requestId, responseValue, null);
+                    ? new RpcResponse(requestId, null, exception, decodeNanos)
+                    : new RpcResponse(requestId, responseValue, null, decodeNanos);
         } catch (Exception e) {
             String msg = "Failed to parse the buffer by the codec";
             if (codecId != Integer.MIN_VALUE) {
@@ -27,6 +27,10 @@ import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.util.IllegalReferenceCountException;
 
 /**
+ * Frame: [Codec ID (short)][Request ID (int)][Schema version (byte)][Data written by the codec].
+ * Note that the layout must never be changed because it is also used to
+ * negotiate the schema versions with peers of different versions in the opening handshake
+ *
  * @author James Chen
  */
 public final class RpcFrameEncoder extends LengthFieldPrepender {
@@ -40,14 +44,18 @@ public final class RpcFrameEncoder extends LengthFieldPrepender {
     }
 
     public <T> ByteBuf encode(int requestId, T value) {
+        Codec<T> valueCodec = getCodec(value);
+        return encode(requestId, value, valueCodec, CodecPool.getWriteSchemaVersion(valueCodec));
+    }
+
+    public <T> ByteBuf encode(int requestId, T value, int schemaVersion) {
+        return encode(requestId, value, getCodec(value), schemaVersion);
+    }
+
+    private <T> ByteBuf encode(int requestId, T value, Codec<T> valueCodec, int schemaVersion) {
         if (requestId < 0) {
             throw new IllegalArgumentException("requestId must be larger than 0. Actual: " + requestId);
         }
-        Class<?> valueClass = value.getClass();
-        Codec<T> valueCodec = CodecPool.getCodec(valueClass);
-        if (valueCodec == null) {
-            throw new CodecNotFoundException("No codec found for the class: " + valueClass.getName());
-        }
         ByteBuf byteBufToComposite = valueCodec.byteBufToComposite(value);
         if (byteBufToComposite != null && byteBufToComposite.refCnt() == 0) {
             throw new IllegalReferenceCountException("byteBufToComposite of the data has been released: " + value);
@@ -55,13 +63,14 @@ public final class RpcFrameEncoder extends LengthFieldPrepender {
         int codecId = valueCodec.getCodecId().getId();
         int initialCapacity = valueCodec.initialCapacity(value);
         initialCapacity = initialCapacity > -1
-                ? initialCapacity + Short.BYTES + Integer.BYTES
+                ? initialCapacity + Short.BYTES + Integer.BYTES + Byte.BYTES
                 : 128;
         ByteBuf outputBuffer = PooledByteBufAllocator.DEFAULT
                 .directBuffer(initialCapacity)
                 .writeShort(codecId)
-                .writeInt(requestId);
-        valueCodec.write(outputBuffer, value);
+                .writeInt(requestId)
+                .writeByte(schemaVersion);
+        valueCodec.write(outputBuffer, value, schemaVersion);
         if (byteBufToComposite != null) {
             outputBuffer = PooledByteBufAllocator.DEFAULT
                     .compositeDirectBuffer(2)
@@ -71,7 +80,7 @@ public final class RpcFrameEncoder extends LengthFieldPrepender {
     }
 
     /**
-     * @param requestBody includes the trace ID
+     * @param requestBody includes the schema version and the trace ID
      */
     public ByteBuf encodeRequest(RpcRequest<?> request, ByteBuf requestBody) {
         ByteBuf header = PooledByteBufAllocator.DEFAULT
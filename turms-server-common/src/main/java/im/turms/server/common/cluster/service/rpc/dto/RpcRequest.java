@@ -27,6 +27,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.Nullable;
@@ -42,6 +43,16 @@ import javax.annotation.Nullable;
  */
 public abstract class RpcRequest<T> {
 
+    public static final String CTX_KEY_DEADLINE = "RPC_DEADLINE";
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * The request ID of the requests sent without waiting for a response,
+     * in which case the peer won't send any response
+     */
+    public static final int FIRE_AND_FORGET_REQUEST_ID = 0;
+
     /**
      * Is null if the RPC request runs on the local node
      */
@@ -61,6 +72,29 @@ public abstract class RpcRequest<T> {
     @Getter
     private final long requestTime = System.currentTimeMillis();
 
+    /**
+     * The size in bytes of the frame of the request received from the peer.
+     * Is 0 if the RPC request runs on the local node
+     */
+    @Getter
+    @Setter
+    private int payloadSize;
+
+    /**
+     * The value of {@link System#nanoTime()} when the frame of the request is received from the peer.
+     * Is meaningless if the RPC request runs on the local node
+     */
+    @Getter
+    @Setter
+    private long receivedNanos;
+
+    /**
+     * The epoch millis of the local clock after which the caller no longer waits for the response
+     */
+    @Getter
+    @Setter
+    private long deadline = NO_DEADLINE;
+
     @Getter
     @Setter
     private TracingContext tracingContext = TracingContext.NOOP;
@@ -77,6 +111,7 @@ public abstract class RpcRequest<T> {
                 ", fromNodeId='" + fromNodeId + "'" +
                 ", requestId=" + requestId +
                 ", requestTime=" + requestTime +
+                ", deadline=" + deadline +
                 ", tracingContext=" + tracingContext +
                 '}';
     }
@@ -87,6 +122,18 @@ public abstract class RpcRequest<T> {
         setFromNodeId(fromNodeId);
     }
 
+    public boolean hasDeadline() {
+        return deadline != NO_DEADLINE;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= deadline;
+    }
+
+    public boolean isFireAndForget() {
+        return requestId == FIRE_AND_FORGET_REQUEST_ID;
+    }
+
     public <Bean> Bean getBean(Class<Bean> clazz) {
         if (applicationContext == null) {
             throw new IllegalStateException("Failed to get the bean because the context is null");
@@ -132,6 +179,30 @@ public abstract class RpcRequest<T> {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Whether running the request more than once has the same effect as running it once.
+     * Only idempotent requests can be hedged, i.e. a duplicate of the request may be sent
+     * to another member if the request hasn't been responded for a while
+     */
+    public boolean isIdempotent() {
+        return false;
+    }
+
+    /**
+     * Use a method instead of a field to avoid serializing/deserializing
+     */
+    public boolean isStream() {
+        return false;
+    }
+
+    /**
+     * Used if {@link #isStream()} is true, and the elements will be requested
+     * as many as the credits granted by the caller
+     */
+    public Flux<T> callStream() {
+        throw new UnsupportedOperationException();
+    }
+
     public void retainBoundBuffer() {
     }
 
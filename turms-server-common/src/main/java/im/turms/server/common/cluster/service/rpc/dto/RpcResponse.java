@@ -20,7 +20,8 @@ package im.turms.server.common.cluster.service.rpc.dto;
 import im.turms.server.common.cluster.service.rpc.exception.RpcException;
 
 /**
+ * @param decodeNanos the time in nanoseconds spent to decode the response
  * @author James Chen
  */
-public record RpcResponse(int requestId, Object result, RpcException exception) {
+public record RpcResponse(int requestId, Object result, RpcException exception, long decodeNanos) {
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.dto;
+
+/**
+ * Sent by the caller of a stream request to allow the peer to send
+ * at most {@code credit} more elements of the stream
+ *
+ * @param credit {@link Integer#MAX_VALUE} means the caller accepts an unbounded number of elements
+ * @author James Chen
+ */
+public record RpcStreamCredit(int requestId, int credit) {
+
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.hedge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that caps the extra load caused by hedging:
+ * each hedgeable request deposits a fraction of a token, and each hedged request withdraws one token,
+ * so the hedged requests never exceed the ratio of the hedgeable requests in the long run
+ *
+ * @author James Chen
+ */
+public final class RpcHedgeBudget {
+
+    /**
+     * Use milli-tokens so that we can deposit a fraction of a token atomically
+     */
+    private static final long TOKEN = 1000;
+
+    private final long tokensPerDeposit;
+    private final long maxTokens;
+    private final AtomicLong tokens = new AtomicLong();
+
+    public RpcHedgeBudget(float ratio, int maxTokens) {
+        tokensPerDeposit = (long) (ratio * TOKEN);
+        this.maxTokens = maxTokens * TOKEN;
+    }
+
+    public void deposit() {
+        if (tokensPerDeposit > 0) {
+            tokens.accumulateAndGet(tokensPerDeposit, (current, delta) -> Math.min(maxTokens, current + delta));
+        }
+    }
+
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+}
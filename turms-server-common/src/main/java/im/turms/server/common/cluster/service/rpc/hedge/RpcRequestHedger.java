@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.hedge;
+
+import im.turms.server.common.property.env.common.cluster.RpcHedgingProperties;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.TimeWindowPercentileHistogram;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sends a duplicate of an idempotent request to another member if the request hasn't been responded
+ * after the hedging delay, which is a high percentile of the recent response latencies of the same request type,
+ * so that a single stalled member (e.g. in a GC pause) doesn't dictate the tail latency.
+ * The first response wins, and the other request is cancelled.
+ *
+ * @author James Chen
+ */
+public class RpcRequestHedger {
+
+    private static final String METRICS_NAME_RPC_HEDGE_ELIGIBLE = "rpc.hedge.eligible";
+    private static final String METRICS_NAME_RPC_HEDGE_SENT = "rpc.hedge.sent";
+    private static final String METRICS_NAME_RPC_HEDGE_WON = "rpc.hedge.won";
+    private static final String METRICS_NAME_RPC_HEDGE_BUDGET_EXHAUSTED = "rpc.hedge.budget.exhausted";
+    private static final String METRICS_TAG_REQUEST_NAME = "name";
+
+    /**
+     * Don't hedge until there are enough samples to estimate the percentile
+     */
+    private static final int MIN_SAMPLES = 100;
+    private static final long DELAY_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Duration LATENCY_WINDOW = Duration.ofMinutes(1);
+
+    private final double delayPercentile;
+    private final long minDelayNanos;
+    private final RpcHedgeBudget budget;
+    private final Map<String, LatencyTracker> latencyTrackers = new ConcurrentHashMap<>(32);
+
+    public RpcRequestHedger(RpcHedgingProperties properties) {
+        delayPercentile = properties.getDelayPercentile();
+        minDelayNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMinDelayMillis());
+        budget = new RpcHedgeBudget(properties.getBudgetRatio(), properties.getMaxBudgetTokens());
+    }
+
+    /**
+     * @param primary the request sent to the selected member
+     * @param hedge   supplies the duplicate request sent to another member,
+     *                or returns null if there is no other member to send
+     * @param timeout the timeout of the request, and the request won't be hedged
+     *                if the hedging delay isn't less than the timeout
+     */
+    public <T> Mono<T> hedge(String requestName, Mono<T> primary, Supplier<Mono<T>> hedge, Duration timeout) {
+        Metrics.counter(METRICS_NAME_RPC_HEDGE_ELIGIBLE, METRICS_TAG_REQUEST_NAME, requestName).increment();
+        budget.deposit();
+        LatencyTracker tracker = getLatencyTracker(requestName);
+        long delayNanos = tracker.getDelayNanos(System.nanoTime());
+        if (delayNanos < 0 || delayNanos >= timeout.toNanos()) {
+            return Mono.defer(() -> {
+                long startTime = System.nanoTime();
+                return primary.doOnSuccess(value -> tracker.record(System.nanoTime() - startTime));
+            });
+        }
+        return Mono.create(sink -> new HedgedCall<>(requestName, tracker, sink, hedge).start(primary, delayNanos));
+    }
+
+    public void recordLatency(String requestName, long latencyNanos) {
+        getLatencyTracker(requestName).record(latencyNanos);
+    }
+
+    /**
+     * @return null if there are not enough samples to estimate the delay
+     */
+    @Nullable
+    public Duration getDelay(String requestName) {
+        long delayNanos = getLatencyTracker(requestName).getDelayNanos(System.nanoTime());
+        return delayNanos < 0 ? null : Duration.ofNanos(delayNanos);
+    }
+
+    private LatencyTracker getLatencyTracker(String requestName) {
+        return latencyTrackers.computeIfAbsent(requestName, key -> new LatencyTracker());
+    }
+
+    private final class LatencyTracker {
+        private final TimeWindowPercentileHistogram histogram;
+        private final LongAdder sampleCount = new LongAdder();
+        private volatile long delayNanos = -1;
+        private volatile long nextRefreshTime = System.nanoTime();
+
+        private LatencyTracker() {
+            DistributionStatisticConfig config = DistributionStatisticConfig.builder()
+                    .percentiles(delayPercentile)
+                    .expiry(LATENCY_WINDOW)
+                    .build()
+                    .merge(DistributionStatisticConfig.DEFAULT);
+            histogram = new TimeWindowPercentileHistogram(Clock.SYSTEM, config, false);
+        }
+
+        private void record(long latencyNanos) {
+            histogram.recordLong(latencyNanos);
+            sampleCount.increment();
+        }
+
+        /**
+         * @return -1 if there are not enough samples to estimate the delay
+         * @implNote Estimating the percentile is relatively expensive,
+         * so we cache the delay and refresh it at intervals
+         */
+        private long getDelayNanos(long now) {
+            if (now - nextRefreshTime < 0) {
+                return delayNanos;
+            }
+            if (sampleCount.sum() < MIN_SAMPLES) {
+                return -1;
+            }
+            nextRefreshTime = now + DELAY_REFRESH_INTERVAL_NANOS;
+            ValueAtPercentile[] percentileValues = histogram.takeSnapshot(0, 0, 0).percentileValues();
+            double percentileNanos = percentileValues.length == 0 ? 0 : percentileValues[0].value();
+            // The value is 0 if all samples have expired
+            delayNanos = percentileNanos <= 0 ? -1 : Math.max(minDelayNanos, (long) percentileNanos);
+            return delayNanos;
+        }
+    }
+
+    /**
+     * The state of a hedged call, and it terminates with the first response of the requests,
+     * or the error of the last failed request
+     */
+    private final class HedgedCall<T> {
+        private final String requestName;
+        private final LatencyTracker tracker;
+        private final MonoSink<T> sink;
+        private final Supplier<Mono<T>> hedgeSupplier;
+        private final Disposable.Composite subscriptions = Disposables.composite();
+
+        private boolean terminated;
+        private int runningRequestCount;
+        private Throwable error;
+        /**
+         * Record the latency from the start of the call instead of the start of the request that wins,
+         * otherwise the short latencies of winning hedges would pull the percentile,
+         * and hence the hedging delay, below the latency that callers actually experience
+         */
+        private long startTime;
+
+        private HedgedCall(String requestName, LatencyTracker tracker, MonoSink<T> sink, Supplier<Mono<T>> hedgeSupplier) {
+            this.requestName = requestName;
+            this.tracker = tracker;
+            this.sink = sink;
+            this.hedgeSupplier = hedgeSupplier;
+        }
+
+        private void start(Mono<T> primary, long delayNanos) {
+            // Cancel the request that loses, or all requests if the subscriber cancels
+            sink.onDispose(subscriptions);
+            startTime = System.nanoTime();
+            synchronized (this) {
+                runningRequestCount = 1;
+            }
+            subscribe(primary, false);
+            subscriptions.add(Mono.delay(Duration.ofNanos(delayNanos))
+                    .subscribe(ignored -> sendHedge()));
+        }
+
+        private void sendHedge() {
+            Mono<T> hedge;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                if (!budget.tryWithdraw()) {
+                    Metrics.counter(METRICS_NAME_RPC_HEDGE_BUDGET_EXHAUSTED, METRICS_TAG_REQUEST_NAME, requestName).increment();
+                    return;
+                }
+                hedge = hedgeSupplier.get();
+                if (hedge == null) {
+                    return;
+                }
+                runningRequestCount++;
+            }
+            Metrics.counter(METRICS_NAME_RPC_HEDGE_SENT, METRICS_TAG_REQUEST_NAME, requestName).increment();
+            subscribe(hedge, true);
+        }
+
+        private void subscribe(Mono<T> request, boolean isHedge) {
+            subscriptions.add(request.subscribe(
+                    value -> onSuccess(value, isHedge),
+                    this::onError,
+                    () -> onSuccess(null, isHedge)));
+        }
+
+        private void onSuccess(@Nullable T value, boolean isHedge) {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+            }
+            tracker.record(System.nanoTime() - startTime);
+            if (isHedge) {
+                Metrics.counter(METRICS_NAME_RPC_HEDGE_WON, METRICS_TAG_REQUEST_NAME, requestName).increment();
+            }
+            if (value == null) {
+                sink.success();
+            } else {
+                sink.success(value);
+            }
+        }
+
+        private void onError(Throwable throwable) {
+            Throwable errorToEmit;
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                if (error == null) {
+                    error = throwable;
+                }
+                // Wait for the other request if it is still running
+                if (--runningRequestCount > 0) {
+                    return;
+                }
+                terminated = true;
+                errorToEmit = error;
+            }
+            sink.error(errorToEmit);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.rpc.lane;
+
+import im.turms.server.common.property.env.common.cluster.RpcExecutionLaneProperties;
+import lombok.Getter;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * @author James Chen
+ * @implNote The mutable states are guarded by the lock of {@link RpcExecutionLanes}
+ */
+public final class RpcExecutionLane {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int priority;
+    final int reservedConcurrency;
+    final int maxConcurrency;
+    final int maxQueueSize;
+    /**
+     * Null if the requests run on the thread that receives them
+     */
+    @Nullable
+    final Scheduler scheduler;
+
+    final Deque<RpcExecutionLanes.Task<?>> queue = new ArrayDeque<>(64);
+    int runningCount;
+
+    RpcExecutionLane(String name, RpcExecutionLaneProperties properties) {
+        this.name = name;
+        priority = properties.getPriority();
+        reservedConcurrency = properties.getReservedConcurrency();
+        maxConcurrency = properties.getMaxConcurrency();
+        maxQueueSize = properties.getMaxQueueSize();
+        if (reservedConcurrency > maxConcurrency) {
+            throw new IllegalArgumentException("The reserved concurrency (" + reservedConcurrency
+                    + ") of the RPC execution lane \"" + name + "\" must not be greater than its max concurrency ("
+                    + maxConcurrency + ")");
+        }
+        int threads = properties.getThreads();
+        scheduler = threads > 0
+                ? Schedulers.newParallel("rpc-lane-" + name, threads, true)
+                : null;
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.cluster.service.rpc.lane;
+
+import im.turms.server.common.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.property.env.common.cluster.RpcExecutionLaneProperties;
+import im.turms.server.common.property.env.common.cluster.RpcExecutionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkheads the RPC requests from peers by their types.
+ * <p>
+ * Each lane has its own bounded queue and concurrency limit.
+ * A request runs in a slot reserved by its lane if any, or in a slot shared by all lanes.
+ * Once a slot is released, the queued requests in the lane with a higher priority are run first.
+ *
+ * @author James Chen
+ */
+public class RpcExecutionLanes {
+
+    private static final String METRICS_NAME_LANE_QUEUE_SIZE = "rpc.lane.queue.size";
+    private static final String METRICS_NAME_LANE_RUNNING = "rpc.lane.running";
+    private static final String METRICS_NAME_LANE_REJECTED = "rpc.lane.rejected";
+    private static final String METRICS_TAG_LANE = "lane";
+
+    private final RpcExecutionLane defaultLane;
+    /**
+     * Sorted by the priority in descending order
+     */
+    private final List<RpcExecutionLane> lanes;
+    /**
+     * Request type -> Lane
+     */
+    private final Map<String, RpcExecutionLane> requestTypeToLane;
+    private final Map<RpcExecutionLane, Counter> rejectedCounters;
+    private final List<Meter> meters;
+
+    private final int sharedConcurrency;
+    private int sharedRunningCount;
+    private final AtomicInteger drainWip = new AtomicInteger();
+
+    public RpcExecutionLanes(RpcExecutionProperties properties) {
+        Map<String, RpcExecutionLaneProperties> laneProperties = properties.getLanes();
+        int size = laneProperties.size() + 1;
+        lanes = new ArrayList<>(size);
+        requestTypeToLane = new HashMap<>(32);
+        rejectedCounters = new HashMap<>(size);
+        meters = new ArrayList<>(size * 3);
+        int reservedConcurrency = 0;
+        RpcExecutionLane defaultLane = null;
+        for (Map.Entry<String, RpcExecutionLaneProperties> entry : laneProperties.entrySet()) {
+            RpcExecutionLane lane = new RpcExecutionLane(entry.getKey(), entry.getValue());
+            for (String requestType : entry.getValue().getRequestTypes()) {
+                RpcExecutionLane previous = requestTypeToLane.put(requestType, lane);
+                if (previous != null) {
+                    throw new IllegalArgumentException("The RPC request type \"" + requestType
+                            + "\" is specified in both the lanes \"" + previous.getName() + "\" and \"" + lane.getName() + "\"");
+                }
+            }
+            if (RpcExecutionProperties.LANE_DEFAULT.equals(lane.getName())) {
+                defaultLane = lane;
+            }
+            lanes.add(lane);
+            reservedConcurrency += lane.reservedConcurrency;
+        }
+        if (defaultLane == null) {
+            defaultLane = new RpcExecutionLane(RpcExecutionProperties.LANE_DEFAULT, new RpcExecutionLaneProperties());
+            lanes.add(defaultLane);
+        }
+        this.defaultLane = defaultLane;
+        sharedConcurrency = properties.getMaxConcurrency() - reservedConcurrency;
+        if (sharedConcurrency < 0) {
+            throw new IllegalArgumentException("The total reserved concurrency (" + reservedConcurrency
+                    + ") of RPC execution lanes must not be greater than the max concurrency ("
+                    + properties.getMaxConcurrency() + ")");
+        }
+        lanes.sort(Comparator.comparingInt(RpcExecutionLane::getPriority).reversed());
+        for (RpcExecutionLane lane : lanes) {
+            registerMeters(lane);
+        }
+    }
+
+    /**
+     * @param onDiscard called if the task is rejected or cancelled before running
+     */
+    public <T> Mono<T> execute(String requestType, Supplier<Mono<T>> task, Runnable onDiscard) {
+        RpcExecutionLane lane = requestTypeToLane.getOrDefault(requestType, defaultLane);
+        return Mono.create(sink -> {
+            Task<T> pendingTask = new Task<>(lane, task, onDiscard, sink);
+            boolean runNow;
+            boolean rejected = false;
+            synchronized (this) {
+                runNow = lane.queue.isEmpty() && tryAcquireSlot(lane, true);
+                if (runNow) {
+                    pendingTask.started = true;
+                } else if (lane.queue.size() < lane.maxQueueSize) {
+                    lane.queue.addLast(pendingTask);
+                } else {
+                    rejected = true;
+                }
+            }
+            if (rejected) {
+                rejectedCounters.get(lane).increment();
+                onDiscard.run();
+                sink.error(RpcException.get(RpcErrorCode.EXECUTION_LANE_FULL, TurmsStatusCode.SERVER_UNAVAILABLE,
+                        "The RPC execution lane \"" + lane.getName() + "\" is full"));
+                return;
+            }
+            sink.onCancel(pendingTask::cancel);
+            if (runNow) {
+                pendingTask.start();
+            }
+        });
+    }
+
+    public synchronized int getQueueSize(RpcExecutionLane lane) {
+        return lane.queue.size();
+    }
+
+    public synchronized int getRunningCount(RpcExecutionLane lane) {
+        return lane.runningCount;
+    }
+
+    public RpcExecutionLane getLane(String requestType) {
+        return requestTypeToLane.getOrDefault(requestType, defaultLane);
+    }
+
+    public void dispose() {
+        for (Meter meter : meters) {
+            Metrics.globalRegistry.remove(meter);
+        }
+        for (RpcExecutionLane lane : lanes) {
+            if (lane.scheduler != null) {
+                lane.scheduler.dispose();
+            }
+        }
+    }
+
+    /**
+     * @param yieldToHigherPriorityLanes true if the slot shared by all lanes should be left
+     *                                   for the queued tasks in the lanes with a higher priority
+     */
+    private boolean tryAcquireSlot(RpcExecutionLane lane, boolean yieldToHigherPriorityLanes) {
+        if (lane.runningCount < lane.reservedConcurrency) {
+            lane.runningCount++;
+            return true;
+        }
+        if (lane.runningCount >= lane.maxConcurrency || sharedRunningCount >= sharedConcurrency) {
+            return false;
+        }
+        if (yieldToHigherPriorityLanes) {
+            for (RpcExecutionLane otherLane : lanes) {
+                if (otherLane.getPriority() <= lane.getPriority()) {
+                    break;
+                }
+                if (!otherLane.queue.isEmpty() && otherLane.runningCount < otherLane.maxConcurrency) {
+                    return false;
+                }
+            }
+        }
+        lane.runningCount++;
+        sharedRunningCount++;
+        return true;
+    }
+
+    private void releaseSlot(RpcExecutionLane lane) {
+        synchronized (this) {
+            if (lane.runningCount > lane.reservedConcurrency) {
+                sharedRunningCount--;
+            }
+            lane.runningCount--;
+        }
+        drain();
+    }
+
+    /**
+     * @implNote Use a work-in-progress counter so that the tasks completed synchronously
+     * while draining won't drain recursively
+     */
+    private void drain() {
+        if (drainWip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                Task<?> task = pollRunnableTask();
+                if (task == null) {
+                    break;
+                }
+                task.start();
+            }
+            missed = drainWip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized Task<?> pollRunnableTask() {
+        for (RpcExecutionLane lane : lanes) {
+            if (!lane.queue.isEmpty() && tryAcquireSlot(lane, false)) {
+                Task<?> task = lane.queue.pollFirst();
+                task.started = true;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void registerMeters(RpcExecutionLane lane) {
+        String name = lane.getName();
+        meters.add(Gauge.builder(METRICS_NAME_LANE_QUEUE_SIZE, lane, this::getQueueSize)
+                .tag(METRICS_TAG_LANE, name)
+                .register(Metrics.globalRegistry));
+        meters.add(Gauge.builder(METRICS_NAME_LANE_RUNNING, lane, this::getRunningCount)
+                .tag(METRICS_TAG_LANE, name)
+                .register(Metrics.globalRegistry));
+        Counter rejectedCounter = Counter.builder(METRICS_NAME_LANE_REJECTED)
+                .tag(METRICS_TAG_LANE, name)
+                .register(Metrics.globalRegistry);
+        meters.add(rejectedCounter);
+        rejectedCounters.put(lane, rejectedCounter);
+    }
+
+    final class Task<T> {
+        private final RpcExecutionLane lane;
+        private final Supplier<Mono<T>> supplier;
+        private final Runnable onDiscard;
+        private final MonoSink<T> sink;
+        private final Disposable.Swap subscription = Disposables.swap();
+        /**
+         * Guarded by the lock of {@link RpcExecutionLanes}
+         */
+        private boolean started;
+
+        private Task(RpcExecutionLane lane, Supplier<Mono<T>> supplier, Runnable onDiscard, MonoSink<T> sink) {
+            this.lane = lane;
+            this.supplier = supplier;
+            this.onDiscard = onDiscard;
+            this.sink = sink;
+        }
+
+        private void start() {
+            Mono<T> mono = Mono.defer(supplier);
+            if (lane.scheduler != null) {
+                mono = mono.subscribeOn(lane.scheduler);
+            }
+            subscription.update(mono
+                    .contextWrite(sink.contextView())
+                    .doFinally(signal -> releaseSlot(lane))
+                    .subscribe(sink::success, sink::error, () -> sink.success()));
+        }
+
+        private void cancel() {
+            boolean removed;
+            synchronized (RpcExecutionLanes.this) {
+                removed = !started && lane.queue.remove(this);
+            }
+            if (removed) {
+                onDiscard.run();
+            } else {
+                subscription.dispose();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.stream;
+
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * The caller side of a stream request, which translates the demand of the subscriber
+ * into the credits granted to the peer so that the peer never sends more elements
+ * than the subscriber has requested
+ *
+ * @author James Chen
+ */
+public final class RpcStreamReceiver<T> {
+
+    private final FluxSink<T> sink;
+
+    private RpcStreamReceiver(FluxSink<T> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * @param start        registers the receiver, sends the request to the peer, and returns the request ID.
+     *                     Returns -1 if it fails to send the request, in which case the receiver should have been terminated
+     * @param creditSender sends the credits of the request to the peer
+     * @param onCancel     called with the request ID if the subscriber cancels the stream before it terminates
+     */
+    public static <T> Flux<T> create(ToIntFunction<RpcStreamReceiver<T>> start,
+                                     CreditSender creditSender,
+                                     IntConsumer onCancel) {
+        return Flux.create(sink -> {
+            RpcStreamReceiver<T> receiver = new RpcStreamReceiver<>(sink);
+            int requestId = start.applyAsInt(receiver);
+            if (requestId < 0) {
+                return;
+            }
+            sink.onCancel(() -> onCancel.accept(requestId));
+            // Called with the outstanding demand once registered, and then with every new demand
+            sink.onRequest(n -> creditSender.send(requestId, n >= RpcStreamCredit.UNBOUNDED
+                    ? RpcStreamCredit.UNBOUNDED
+                    : (int) n));
+        });
+    }
+
+    public void onNext(Object element) {
+        sink.next((T) element);
+    }
+
+    public void onComplete() {
+        sink.complete();
+    }
+
+    public void onError(Throwable throwable) {
+        sink.error(throwable);
+    }
+
+    @FunctionalInterface
+    public interface CreditSender {
+        void send(int requestId, int credit);
+    }
+
+}
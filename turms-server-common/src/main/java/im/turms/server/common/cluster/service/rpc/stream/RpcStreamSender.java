@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.cluster.service.rpc.stream;
+
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Operators;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The peer side of a stream request, which only requests the elements
+ * from the stream as many as the credits granted by the caller
+ * so that a slow caller won't be flooded
+ *
+ * @author James Chen
+ */
+public final class RpcStreamSender<T> extends BaseSubscriber<T> {
+
+    private final Output<T> output;
+    /**
+     * The credits received before subscribing to the stream,
+     * and -1 after subscribing to the stream
+     */
+    private final AtomicLong pendingCredits = new AtomicLong();
+
+    public RpcStreamSender(Output<T> output) {
+        this.output = output;
+    }
+
+    public void addCredit(int credit) {
+        if (credit <= 0) {
+            return;
+        }
+        long n = credit == RpcStreamCredit.UNBOUNDED ? Long.MAX_VALUE : credit;
+        while (true) {
+            long pending = pendingCredits.get();
+            if (pending < 0) {
+                request(n);
+                return;
+            }
+            if (pendingCredits.compareAndSet(pending, Operators.addCap(pending, n))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        // Don't request any element until the caller grants credits
+        long pending = pendingCredits.getAndSet(-1);
+        if (pending > 0) {
+            subscription.request(pending);
+        }
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+        output.sendElement(value);
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        output.sendComplete();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        output.sendError(throwable);
+    }
+
+    public interface Output<T> {
+        void sendElement(T element);
+
+        void sendComplete();
+
+        void sendError(Throwable throwable);
+    }
+
+}
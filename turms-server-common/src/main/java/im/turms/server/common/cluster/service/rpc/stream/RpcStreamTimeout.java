@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.server.common.cluster.service.rpc.stream;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+/**
+ * Fails a stream if the next element doesn't arrive in time while the subscriber is waiting for it.
+ * Unlike {@link Flux#timeout(Duration)}, the timer doesn't run while the subscriber has no outstanding demand,
+ * so a slow subscriber of a long stream won't cause the stream to time out
+ *
+ * @author James Chen
+ */
+public final class RpcStreamTimeout {
+
+    private final Duration timeout;
+    /**
+     * The number of elements requested by the subscriber but not received yet
+     */
+    private long pendingCount;
+    /**
+     * Not null if the timer is waiting for demand
+     */
+    private Sinks.Empty<Void> demandSink;
+
+    private RpcStreamTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public static <T> Flux<T> apply(Flux<T> stream, Duration timeout) {
+        return Flux.defer(() -> {
+            RpcStreamTimeout streamTimeout = new RpcStreamTimeout(timeout);
+            return stream
+                    .timeout(streamTimeout.nextTimer(false), element -> streamTimeout.nextTimer(true))
+                    .doOnRequest(streamTimeout::onRequest);
+        });
+    }
+
+    private void onRequest(long n) {
+        Sinks.Empty<Void> sink;
+        synchronized (this) {
+            pendingCount = Operators.addCap(pendingCount, n);
+            sink = demandSink;
+            demandSink = null;
+        }
+        if (sink != null) {
+            sink.tryEmitEmpty();
+        }
+    }
+
+    private Publisher<?> nextTimer(boolean hasReceivedElement) {
+        Mono<Void> demand;
+        synchronized (this) {
+            if (hasReceivedElement && pendingCount != Long.MAX_VALUE) {
+                pendingCount--;
+            }
+            if (pendingCount > 0) {
+                demand = Mono.empty();
+            } else {
+                demandSink = Sinks.empty();
+                demand = demandSink.asMono();
+            }
+        }
+        return demand.then(Mono.delay(timeout));
+    }
+
+}
@@ -35,5 +35,12 @@ public final class CronConstant {
     public static final String DEFAULT_EXPIRED_GROUP_JOIN_REQUESTS_CLEANUP_CRON = "0 30 2 * * *";
 
     public static final String DEFAULT_EXPIRED_MESSAGES_CLEANUP_CRON = "0 45 2 * * *";
+    public static final String DEFAULT_COLD_MESSAGES_ARCHIVING_CRON = "0 0 3 * * *";
+
+    public static final String DEFAULT_STATISTICS_ROLLUP_CRON = "0 5 * * * *";
+
+    public static final String DEFAULT_DELETION_JOBS_PROCESSING_CRON = "0/10 * * * * *";
+
+    public static final String DEFAULT_STORAGE_BLOBS_CLEANUP_CRON = "0 0 4 * * *";
 
 }
@@ -144,6 +144,9 @@ public enum TurmsStatusCode {
     ADD_BLOCKED_USER_TO_INACTIVE_GROUP(3405, "Cannot add a blocked user to the inactive group", 403),
     ADD_USER_TO_INACTIVE_GROUP(3406, "Cannot add a user to the inactive group", 403),
     ADD_NEW_MEMBER_WITH_ROLE_HIGHER_THAN_REQUESTER(3407, "Cannot add a user with the role higher than the requester's", 403),
+    ADD_EXISTING_MEMBER_TO_GROUP(3408, "Cannot add an existing member to the group", 409),
+    GROUP_MEMBERS_LIMIT_REACHED(3409, "The group has reached the maximum allowed members", 403),
+    UPDATE_OR_REMOVE_NON_EXISTING_GROUP_MEMBER(3410, "Cannot update or remove a non-existing group member", 404),
 
     // Group - Blocklist
     NOT_OWNER_OR_MANAGER_TO_ADD_BLOCKED_USER(3500, "Only the owner and managers of the group can add blocked users", 403),
@@ -202,6 +205,7 @@ public enum TurmsStatusCode {
     // Storage
     STORAGE_NOT_IMPLEMENTED(6000, "The storage feature is enabled but not implemented yet", 501),
     FILE_TOO_LARGE(6001, "The file is too large to upload", 413),
+    STORAGE_QUOTA_EXCEEDED(6002, "The storage quota of the user has been exceeded", 413),
 
     // Storage - Extension
     REDUNDANT_REQUEST_FOR_PRESIGNED_PROFILE_URL(6900, "The request for the presigned profile URL is redundant", 406);
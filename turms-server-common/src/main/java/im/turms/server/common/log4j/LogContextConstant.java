@@ -35,6 +35,7 @@ public final class LogContextConstant {
         public static final String ADMIN_API = "ADMIN_API";
         public static final String CLIENT_API = "USER_API";
         public static final String USER_ACTIVITY = "USER_ACTIVITY";
+        public static final String SPAN = "SPAN";
     }
 
     public static final class NodeType {
@@ -23,6 +23,7 @@ import im.turms.server.common.cluster.node.NodeType;
 import im.turms.server.common.log4j.LogContextConstant;
 import im.turms.server.common.logging.AdminApiLogging;
 import im.turms.server.common.logging.CommonClientApiLogging;
+import im.turms.server.common.logging.SpanLogging;
 import im.turms.server.common.logging.UserActivityLogging;
 import im.turms.server.common.util.ReflectionUtil;
 import lombok.Setter;
@@ -69,6 +70,8 @@ public class TurmsContextLookup implements StrLookup {
                     yield LogContextConstant.LogType.USER_ACTIVITY;
                 } else if (logger == AdminApiLogging.logger) {
                     yield LogContextConstant.LogType.ADMIN_API;
+                } else if (logger == SpanLogging.logger) {
+                    yield LogContextConstant.LogType.SPAN;
                 } else {
                     yield null;
                 }
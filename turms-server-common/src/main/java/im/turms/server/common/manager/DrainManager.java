@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.manager;
+
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.cluster.service.discovery.LocalNodeDrainingListener;
+import im.turms.server.common.property.env.common.cluster.DrainProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Drains the local node so that it can leave the cluster without dropping the work in flight
+ * (e.g. during rolling deployment).
+ * <p>
+ * The local node starts draining if it is marked as draining via admin API, or before it shuts down.
+ * Other members stop selecting a draining node to handle RPC requests,
+ * and the local work (e.g. sessions on turms-gateway) is drained by the listeners.
+ * Before shutting down, the local node waits for all pending work registered by
+ * {@link #addPendingWork(String, IntSupplier)} to finish.
+ *
+ * @author James Chen
+ */
+@Component
+@Log4j2
+public class DrainManager {
+
+    private static final String METRICS_NAME_DRAINING = "node.draining";
+    private static final String METRICS_NAME_DRAIN_PENDING = "node.drain.pending";
+    private static final String METRICS_TAG_WORK = "work";
+    private static final String WORK_RPC_REQUESTS = "rpc_requests";
+
+    private static final long DRAIN_CHECK_INTERVAL_MILLIS = 100;
+
+    private final Node node;
+    /**
+     * Work name -> Pending count
+     */
+    private final Map<String, IntSupplier> pendingWorkCounters = new ConcurrentHashMap<>(8);
+
+    public DrainManager(Node node) {
+        this.node = node;
+        Gauge.builder(METRICS_NAME_DRAINING, node, n -> n.isDraining() ? 1 : 0)
+                .register(Metrics.globalRegistry);
+        addPendingWork(WORK_RPC_REQUESTS, node.getRpcService()::getInFlightRequestCount);
+    }
+
+    public boolean isDraining() {
+        return node.isDraining();
+    }
+
+    public void addDrainingListener(LocalNodeDrainingListener listener) {
+        node.getDiscoveryService().getLocalNodeStatusManager().addDrainingListener(listener);
+    }
+
+    /**
+     * Register the work that should be finished before the local node shuts down,
+     * and report the pending count as the progress of draining via metrics
+     */
+    public void addPendingWork(String name, IntSupplier pendingCount) {
+        pendingWorkCounters.put(name, pendingCount);
+        Gauge.builder(METRICS_NAME_DRAIN_PENDING, pendingCount, IntSupplier::getAsInt)
+                .tag(METRICS_TAG_WORK, name)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @implNote Drain when the context is closed instead of when the beans are destroyed
+     * because the pending work needs the beans (e.g. MongoDB clients) to finish
+     */
+    @EventListener(classes = ContextClosedEvent.class)
+    public void drainBeforeShutdown() {
+        DrainProperties properties = node.getSharedProperties().getCluster().getDrain();
+        if (!properties.isDrainOnShutdown()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + properties.getShutdownTimeoutSeconds() * 1000L;
+        log.info("Draining the local node before shutting down");
+        try {
+            // Note that the local node starts draining even if it fails to publish the status
+            node.getDiscoveryService()
+                    .getLocalNodeStatusManager()
+                    .updateDraining(true)
+                    .block(Duration.ofMillis(Math.max(1, deadline - System.currentTimeMillis())));
+        } catch (Exception e) {
+            log.error("Failed to publish the draining status of the local node", e);
+        }
+        awaitDrained(deadline, properties.getQuietPeriodMillis());
+    }
+
+    /**
+     * @implNote The quiet period is only waited for if there has been pending work
+     * because the local node is likely to keep receiving work shortly after it finishes
+     * the pending work, while an idle node shouldn't delay its shutdown
+     */
+    private void awaitDrained(long deadline, int quietPeriodMillis) {
+        long quietStartTime = -1;
+        boolean hasPendingWork = false;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (countPendingWork() == 0) {
+                if (!hasPendingWork) {
+                    log.info("The local node has been drained");
+                    return;
+                }
+                if (quietStartTime == -1) {
+                    quietStartTime = now;
+                }
+                if (now - quietStartTime >= quietPeriodMillis) {
+                    log.info("The local node has been drained");
+                    return;
+                }
+            } else {
+                hasPendingWork = true;
+                quietStartTime = -1;
+            }
+            if (now >= deadline) {
+                log.warn("Shutting down the local node with the pending work {} because the drain timed out",
+                        getPendingWork());
+                return;
+            }
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int countPendingWork() {
+        int count = 0;
+        for (IntSupplier counter : pendingWorkCounters.values()) {
+            count += counter.getAsInt();
+        }
+        return count;
+    }
+
+    private Map<String, Integer> getPendingWork() {
+        Map<String, Integer> pendingWork = new HashMap<>(pendingWorkCounters.size());
+        for (Map.Entry<String, IntSupplier> entry : pendingWorkCounters.entrySet()) {
+            pendingWork.put(entry.getKey(), entry.getValue().getAsInt());
+        }
+        return pendingWork;
+    }
+
+}
@@ -47,4 +47,12 @@ public class ServerStatusManager {
         return node.isActive() && !memoryMonitor.isExceeded();
     }
 
+    /**
+     * A draining node should stop accepting new sessions,
+     * but it should still handle the requests of existing sessions and peers
+     */
+    public boolean isDraining() {
+        return node.isDraining();
+    }
+
 }
@@ -17,6 +17,7 @@
 
 package im.turms.server.common.mongo.operation;
 
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.model.IndexModel;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.FullDocument;
@@ -25,6 +26,8 @@ import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.ClientSession;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import im.turms.server.common.mongo.entity.MongoEntity;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.BulkWrite;
 import im.turms.server.common.mongo.operation.option.Filter;
 import im.turms.server.common.mongo.operation.option.QueryOptions;
 import im.turms.server.common.mongo.operation.option.Update;
@@ -76,6 +79,12 @@ public interface MongoOperationsSupport {
 
     Mono<Void> insertAll(List<?> values);
 
+    <T> Mono<List<BulkWriteError>> insertAllUnordered(Class<T> clazz, List<T> values);
+
+    <T> Mono<TurmsBulkWriteResult> bulkWrite(Class<T> clazz, BulkWrite<T> bulkWrite);
+
+    <T> Mono<TurmsBulkWriteResult> bulkWrite(@Nullable ClientSession session, Class<T> clazz, BulkWrite<T> bulkWrite);
+
     <T> Mono<UpdateResult> updateOne(Class<T> clazz, Filter filter, Update update);
 
     <T> Mono<UpdateResult> updateOne(ClientSession session, Class<T> clazz, Filter filter, Update update);
@@ -94,6 +103,12 @@ public interface MongoOperationsSupport {
 
     <T> Mono<Long> countDistinct(Class<T> clazz, Filter filter, String groupByFieldName);
 
+    <T> Flux<T> aggregate(Class<T> clazz, Aggregation aggregation);
+
+    <T, R> Flux<R> aggregate(Class<T> clazz, Aggregation aggregation, Class<R> resultClass);
+
+    <T, R> Flux<R> aggregate(@Nullable ClientSession session, Class<T> clazz, Aggregation aggregation, Class<R> resultClass);
+
     <T> Mono<Void> ensureIndexes(Class<T> clazz, List<IndexModel> indexModels);
 
     <T> Flux<Document> listIndexes(Class<T> clazz);
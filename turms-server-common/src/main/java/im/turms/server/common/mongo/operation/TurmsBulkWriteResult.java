@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.mongo.operation;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonValue;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a bulk write, which can tell the status of every operation by its index
+ *
+ * @author James Chen
+ */
+public record TurmsBulkWriteResult(
+        int operationCount,
+        boolean ordered,
+        int insertedCount,
+        int matchedCount,
+        int modifiedCount,
+        int deletedCount,
+        List<BulkWriteUpsert> upserts,
+        List<BulkWriteError> writeErrors
+) {
+
+    public static TurmsBulkWriteResult of(int operationCount,
+                                          boolean ordered,
+                                          BulkWriteResult result,
+                                          List<BulkWriteError> writeErrors) {
+        if (!result.wasAcknowledged()) {
+            return new TurmsBulkWriteResult(operationCount, ordered, 0, 0, 0, 0,
+                    Collections.emptyList(), writeErrors);
+        }
+        return new TurmsBulkWriteResult(operationCount,
+                ordered,
+                result.getInsertedCount(),
+                result.getMatchedCount(),
+                result.getModifiedCount(),
+                result.getDeletedCount(),
+                result.getUpserts(),
+                writeErrors);
+    }
+
+    public boolean isSucceeded() {
+        return writeErrors.isEmpty();
+    }
+
+    public Status getStatus(int index) {
+        if (index < 0 || index >= operationCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        for (BulkWriteError error : writeErrors) {
+            int errorIndex = error.getIndex();
+            if (errorIndex == index) {
+                return Status.FAILED;
+            }
+            // Mongo servers stop at the first error for ordered operations
+            if (ordered && errorIndex < index) {
+                return Status.NOT_EXECUTED;
+            }
+        }
+        return Status.SUCCEEDED;
+    }
+
+    @Nullable
+    public BulkWriteError getError(int index) {
+        for (BulkWriteError error : writeErrors) {
+            if (error.getIndex() == index) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    public BsonValue getUpsertedId(int index) {
+        for (BulkWriteUpsert upsert : upserts) {
+            if (upsert.getIndex() == index) {
+                return upsert.getId();
+            }
+        }
+        return null;
+    }
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        NOT_EXECUTED
+    }
+
+}
@@ -18,14 +18,17 @@
 package im.turms.server.common.mongo.operation;
 
 import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.TransactionOptions;
-import com.mongodb.client.model.Accumulators;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.DeleteOptions;
 import com.mongodb.client.model.IndexModel;
 import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.InsertOneOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
@@ -47,9 +50,12 @@ import im.turms.server.common.mongo.BsonPool;
 import im.turms.server.common.mongo.MongoContext;
 import im.turms.server.common.mongo.entity.MongoEntity;
 import im.turms.server.common.mongo.exception.MongoExceptionTranslator;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.BulkWrite;
 import im.turms.server.common.mongo.operation.option.Filter;
 import im.turms.server.common.mongo.operation.option.QueryOptions;
 import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.util.CollectorUtil;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.StringUtils;
@@ -66,6 +72,7 @@ import reactor.core.publisher.Mono;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -101,10 +108,28 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     private static final CountOptions DEFAULT_COUNT_OPTIONS = new CountOptions();
     private static final DeleteOptions DEFAULT_DELETE_OPTIONS = new DeleteOptions();
     private static final InsertManyOptions DEFAULT_INSERT_MANY_OPTIONS = new InsertManyOptions();
+    private static final InsertManyOptions UNORDERED_INSERT_MANY_OPTIONS = new InsertManyOptions().ordered(false);
     private static final InsertOneOptions DEFAULT_INSERT_ONE_OPTIONS = new InsertOneOptions();
     private static final UpdateOptions DEFAULT_UPDATE_OPTIONS = new UpdateOptions();
     private static final UpdateOptions DEFAULT_UPSERT_OPTIONS = new UpdateOptions().upsert(true);
 
+    /**
+     * Tracing
+     */
+    private static final String SPAN_NAME_FIND = "mongo.find";
+    private static final String SPAN_NAME_EXISTS = "mongo.exists";
+    private static final String SPAN_NAME_COUNT = "mongo.count";
+    private static final String SPAN_NAME_UPSERT = "mongo.upsert";
+    private static final String SPAN_NAME_INSERT = "mongo.insert";
+    private static final String SPAN_NAME_INSERT_MANY = "mongo.insertMany";
+    private static final String SPAN_NAME_BULK_WRITE = "mongo.bulkWrite";
+    private static final String SPAN_NAME_UPDATE_ONE = "mongo.updateOne";
+    private static final String SPAN_NAME_UPDATE_MANY = "mongo.updateMany";
+    private static final String SPAN_NAME_DELETE_MANY = "mongo.deleteMany";
+    private static final String SPAN_NAME_COUNT_DISTINCT = "mongo.countDistinct";
+    private static final String SPAN_NAME_AGGREGATE = "mongo.aggregate";
+    private static final String SPAN_TAG_COLLECTION = "collection";
+
     private final MongoContext context;
     private final MongoExceptionTranslator translator = new MongoExceptionTranslator();
     private final Map<Class<?>, MongoOperationPublisher<?>> publisherMap = new IdentityHashMap<>(32);
@@ -121,7 +146,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     public <T> Mono<T> findById(Class<T> clazz, Object id) {
         MongoCollection<T> collection = context.getCollection(clazz);
         FindPublisher<T> source = find(collection, new Document("_id", id), null);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_FIND, collection);
     }
 
     @Override
@@ -141,7 +166,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
                 ? QueryOptions.newBuilder(1).limit(1)
                 : options.limit(1);
         FindPublisher<T> source = find(collection, filter, options);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_FIND, collection);
     }
 
     @Override
@@ -153,7 +178,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     public <T> Flux<T> findMany(Class<T> clazz, Filter filter, @Nullable QueryOptions options) {
         MongoCollection<T> collection = context.getCollection(clazz);
         FindPublisher<T> source = find(collection, filter, options);
-        return Flux.from(source);
+        return trace(Flux.from(source), SPAN_NAME_FIND, collection);
     }
 
     @Override
@@ -165,7 +190,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     public <T> Flux<T> findAll(Class<T> clazz, @Nullable QueryOptions options) {
         MongoCollection<T> collection = context.getCollection(clazz);
         FindPublisher<T> source = find(collection, FILTER_ALL_DOCUMENT, options);
-        return Flux.from(source);
+        return trace(Flux.from(source), SPAN_NAME_FIND, collection);
     }
 
     @Override
@@ -175,7 +200,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
                 .projection(ID_ONLY)
                 .limit(1);
         FindPublisher<T> publisher = find(collection, filter, options);
-        return Mono.from(publisher).hasElement();
+        return trace(Mono.from(publisher).hasElement(), SPAN_NAME_EXISTS, collection);
     }
 
     /**
@@ -186,14 +211,14 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     public <T> Mono<Long> count(Class<T> clazz, Filter filter) {
         MongoCollection<T> collection = context.getCollection(clazz);
         Publisher<Long> source = collection.countDocuments(filter, DEFAULT_COUNT_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_COUNT, collection);
     }
 
     @Override
     public <T> Mono<Long> countAll(Class<T> clazz) {
         MongoCollection<T> collection = context.getCollection(clazz);
         Publisher<Long> source = collection.countDocuments(FILTER_ALL_DOCUMENT, DEFAULT_COUNT_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_COUNT, collection);
     }
 
     /**
@@ -218,18 +243,20 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         Publisher<UpdateResult> result = session == null
                 ? collection.updateOne(filter, update, DEFAULT_UPSERT_OPTIONS)
                 : collection.updateOne(session, filter, update, DEFAULT_UPSERT_OPTIONS);
-        return Mono.from(result)
+        Mono<Void> mono = Mono.from(result)
                 .onErrorMap(translator::translate)
                 .then();
+        return trace(mono, SPAN_NAME_UPSERT, collection);
     }
 
     @Override
     public <T> Mono<Void> upsert(Class<T> clazz, Filter filter, Update update) {
         MongoCollection<T> collection = context.getCollection(clazz);
         Publisher<UpdateResult> source = collection.updateOne(filter, update, DEFAULT_UPSERT_OPTIONS);
-        return Mono.from(source)
+        Mono<Void> mono = Mono.from(source)
                 .onErrorMap(translator::translate)
                 .then();
+        return trace(mono, SPAN_NAME_UPSERT, collection);
     }
 
     /**
@@ -248,9 +275,10 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         Publisher<InsertOneResult> source = session == null
                 ? collection.insertOne(value, DEFAULT_INSERT_ONE_OPTIONS)
                 : collection.insertOne(session, value, DEFAULT_INSERT_ONE_OPTIONS);
-        return Mono.from(source)
+        Mono<Void> mono = Mono.from(source)
                 .onErrorMap(translator::translate)
                 .then();
+        return trace(mono, SPAN_NAME_INSERT, collection);
     }
 
     @Override
@@ -266,14 +294,70 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
                     MongoCollection collection = context.getCollection(entry.getKey());
                     List<?> value = entry.getValue();
                     Publisher<InsertManyResult> source = collection.insertMany(value, DEFAULT_INSERT_MANY_OPTIONS);
-                    return Mono.from(source)
+                    Mono<Void> mono = Mono.from(source)
                             .onErrorMap(translator::translate)
                             .then();
+                    return trace(mono, SPAN_NAME_INSERT_MANY, collection);
                 })
                 .toList();
         return Mono.when(sources);
     }
 
+    /**
+     * Insert all values without stopping at the first failed value (e.g. a duplicate key)
+     *
+     * @return the write errors of the values failed to insert, whose indexes are the indexes in values
+     */
+    @Override
+    public <T> Mono<List<BulkWriteError>> insertAllUnordered(Class<T> clazz, List<T> values) {
+        if (values.isEmpty()) {
+            return Mono.just(Collections.emptyList());
+        }
+        MongoCollection<T> collection = context.getCollection(clazz);
+        Mono<List<BulkWriteError>> mono = Mono.from(collection.insertMany(values, UNORDERED_INSERT_MANY_OPTIONS))
+                .map(result -> Collections.<BulkWriteError>emptyList())
+                .onErrorResume(MongoBulkWriteException.class, e -> e.getWriteConcernError() == null
+                        ? Mono.just(e.getWriteErrors())
+                        : Mono.error(e));
+        return trace(mono, SPAN_NAME_INSERT_MANY, collection);
+    }
+
+    /**
+     * Bulk Write
+     */
+
+    @Override
+    public <T> Mono<TurmsBulkWriteResult> bulkWrite(Class<T> clazz, BulkWrite<T> bulkWrite) {
+        return bulkWrite(null, clazz, bulkWrite);
+    }
+
+    /**
+     * @return the result with the write errors of the failed operations
+     * instead of an error signal so that callers can handle every operation.
+     * Only an error that isn't caused by a specific operation (e.g. a write concern error) is signaled
+     */
+    @Override
+    public <T> Mono<TurmsBulkWriteResult> bulkWrite(@Nullable ClientSession session, Class<T> clazz, BulkWrite<T> bulkWrite) {
+        int count = bulkWrite.size();
+        boolean ordered = bulkWrite.isOrdered();
+        if (count == 0) {
+            return Mono.just(new TurmsBulkWriteResult(0, ordered, 0, 0, 0, 0,
+                    Collections.emptyList(), Collections.emptyList()));
+        }
+        MongoCollection<T> collection = context.getCollection(clazz);
+        List<WriteModel<T>> models = bulkWrite.getModels();
+        Publisher<BulkWriteResult> source = session == null
+                ? collection.bulkWrite(models, bulkWrite.getOptions())
+                : collection.bulkWrite(session, models, bulkWrite.getOptions());
+        Mono<TurmsBulkWriteResult> mono = Mono.from(source)
+                .map(result -> TurmsBulkWriteResult.of(count, ordered, result, Collections.emptyList()))
+                .onErrorResume(MongoBulkWriteException.class, e -> e.getWriteConcernError() == null
+                        ? Mono.just(TurmsBulkWriteResult.of(count, ordered, e.getWriteResult(), e.getWriteErrors()))
+                        : Mono.error(e))
+                .onErrorMap(translator::translate);
+        return trace(mono, SPAN_NAME_BULK_WRITE, collection);
+    }
+
     /**
      * Update
      */
@@ -289,7 +373,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         Publisher<UpdateResult> source = session == null
                 ? collection.updateOne(filter, update, DEFAULT_UPDATE_OPTIONS)
                 : collection.updateOne(session, filter, update, DEFAULT_UPDATE_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_UPDATE_ONE, collection);
     }
 
     @Override
@@ -303,7 +387,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         Publisher<UpdateResult> source = session == null
                 ? collection.updateMany(filter, update, DEFAULT_UPDATE_OPTIONS)
                 : collection.updateMany(session, filter, update, DEFAULT_UPDATE_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_UPDATE_MANY, collection);
     }
 
     /**
@@ -316,7 +400,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         Publisher<DeleteResult> source = session == null
                 ? collection.deleteMany(filter, DEFAULT_DELETE_OPTIONS)
                 : collection.deleteMany(session, filter, DEFAULT_DELETE_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_DELETE_MANY, collection);
     }
 
     @Override
@@ -328,7 +412,7 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
     public <T> Mono<DeleteResult> deleteAll(Class<T> clazz) {
         MongoCollection<T> collection = context.getCollection(clazz);
         Publisher<DeleteResult> source = collection.deleteMany(FILTER_ALL_DOCUMENT, DEFAULT_DELETE_OPTIONS);
-        return Mono.from(source);
+        return trace(Mono.from(source), SPAN_NAME_DELETE_MANY, collection);
     }
 
     /**
@@ -357,11 +441,45 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
                 Aggregates.project(Projections.fields(
                         Projections.excludeId(),
                         Projections.include(groupByFieldName))),
-                Aggregates.group("$" + groupByFieldName, Accumulators.sum("count", 1)));
+                Aggregates.group("$" + groupByFieldName),
+                Aggregates.count("count"));
         AggregatePublisher<Document> count = collection.aggregate(pipeline, Document.class);
-        return Mono.from(count)
+        Mono<Long> mono = Mono.from(count)
                 .map(document -> Long.valueOf((Integer) document.get("count")))
                 .defaultIfEmpty(0L);
+        return trace(mono, SPAN_NAME_COUNT_DISTINCT, collection);
+    }
+
+    @Override
+    public <T> Flux<T> aggregate(Class<T> clazz, Aggregation aggregation) {
+        return aggregate(null, clazz, aggregation, clazz);
+    }
+
+    @Override
+    public <T, R> Flux<R> aggregate(Class<T> clazz, Aggregation aggregation, Class<R> resultClass) {
+        return aggregate(null, clazz, aggregation, resultClass);
+    }
+
+    /**
+     * @param resultClass the class of the output documents, which is decoded
+     *                    by the codec registry of the context (e.g. an entity class or Document)
+     */
+    @Override
+    public <T, R> Flux<R> aggregate(@Nullable ClientSession session,
+                                    Class<T> clazz,
+                                    Aggregation aggregation,
+                                    Class<R> resultClass) {
+        MongoCollection<T> collection = context.getCollection(clazz);
+        List<Bson> stages = aggregation.getStages();
+        AggregatePublisher<R> source = session == null
+                ? collection.aggregate(stages, resultClass)
+                : collection.aggregate(session, stages, resultClass);
+        if (aggregation.isAllowDiskUse()) {
+            source = source.allowDiskUse(true);
+        }
+        Flux<R> flux = Flux.from(source)
+                .onErrorMap(translator::translate);
+        return trace(flux, SPAN_NAME_AGGREGATE, collection);
     }
 
     /**
@@ -570,4 +688,18 @@ public class TurmsMongoOperations implements MongoOperationsSupport {
         return publisher;
     }
 
+    /**
+     * Instrument at the operations layer instead of the command listener of the driver
+     * because the driver cannot propagate the Reactor context to the listener
+     */
+    private <T> Mono<T> trace(Mono<T> source, String spanName, MongoCollection<?> collection) {
+        return Tracer.getGlobal()
+                .trace(source, spanName, SPAN_TAG_COLLECTION, collection.getNamespace().getCollectionName());
+    }
+
+    private <T> Flux<T> trace(Flux<T> source, String spanName, MongoCollection<?> collection) {
+        return Tracer.getGlobal()
+                .trace(source, spanName, SPAN_TAG_COLLECTION, collection.getNamespace().getCollectionName());
+    }
+
 }
\ No newline at end of file
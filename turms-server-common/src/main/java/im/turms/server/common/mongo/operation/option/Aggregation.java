@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.mongo.operation.option;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import com.mongodb.client.model.Projections;
+import im.turms.server.common.mongo.BsonPool;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A builder of an aggregation pipeline.
+ * The stages are executed by mongo servers in the order in which they are added
+ *
+ * @author James Chen
+ */
+public final class Aggregation {
+
+    private final List<Bson> stages;
+    private boolean allowDiskUse;
+
+    private Aggregation(int expectedSize) {
+        stages = new ArrayList<>(expectedSize);
+    }
+
+    public static Aggregation newBuilder() {
+        return new Aggregation(4);
+    }
+
+    public static Aggregation newBuilder(int expectedSize) {
+        return new Aggregation(expectedSize);
+    }
+
+    public Aggregation match(Filter filter) {
+        stages.add(Aggregates.match(filter));
+        return this;
+    }
+
+    public Aggregation project(Bson projection) {
+        stages.add(Aggregates.project(projection));
+        return this;
+    }
+
+    public Aggregation include(String... fields) {
+        stages.add(Aggregates.project(Projections.include(fields)));
+        return this;
+    }
+
+    /**
+     * @param id the expression of the group key, e.g. "$userId",
+     *           or null to group all input documents into one document
+     */
+    public Aggregation group(Object id, BsonField... accumulators) {
+        stages.add(Aggregates.group(id, accumulators));
+        return this;
+    }
+
+    public Aggregation sort(String field, boolean ascending) {
+        stages.add(Aggregates.sort(new BsonDocument(field, ascending ? BsonPool.BSON_INT32_1 : BsonPool.BSON_INT32_NEGATIVE_1)));
+        return this;
+    }
+
+    public Aggregation skip(int skip) {
+        stages.add(Aggregates.skip(skip));
+        return this;
+    }
+
+    public Aggregation limit(int limit) {
+        stages.add(Aggregates.limit(limit));
+        return this;
+    }
+
+    public Aggregation unwind(String field) {
+        stages.add(Aggregates.unwind("$" + field));
+        return this;
+    }
+
+    /**
+     * Promote the embedded document in the field to the top level
+     */
+    public Aggregation replaceRoot(String field) {
+        stages.add(Aggregates.replaceRoot("$" + field));
+        return this;
+    }
+
+    /**
+     * Append the output documents of the pipeline on another collection
+     */
+    public Aggregation unionWith(String collection, Aggregation pipeline) {
+        stages.add(Aggregates.unionWith(collection, pipeline.getStages()));
+        return this;
+    }
+
+    public Aggregation lookup(String fromCollection, String localField, String foreignField, String as) {
+        stages.add(Aggregates.lookup(fromCollection, localField, foreignField, as));
+        return this;
+    }
+
+    /**
+     * Output one document with the number of the input documents in the field
+     */
+    public Aggregation count(String field) {
+        stages.add(Aggregates.count(field));
+        return this;
+    }
+
+    public Aggregation stage(Bson stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * @param allowDiskUse whether stages can write temporary files when they exceed the memory limit of mongo servers
+     */
+    public Aggregation allowDiskUse(boolean allowDiskUse) {
+        this.allowDiskUse = allowDiskUse;
+        return this;
+    }
+
+    public boolean isAllowDiskUse() {
+        return allowDiskUse;
+    }
+
+    public List<Bson> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+}
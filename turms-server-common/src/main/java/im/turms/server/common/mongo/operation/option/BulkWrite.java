@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.mongo.operation.option;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A builder of mixed write operations on one collection,
+ * which will be sent to mongo servers in one round trip (split by the driver if too large).
+ * The index of an operation is the order in which it is added to the builder
+ *
+ * @author James Chen
+ */
+public final class BulkWrite<T> {
+
+    private static final UpdateOptions UPSERT_OPTIONS = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions ORDERED_OPTIONS = new BulkWriteOptions().ordered(true);
+    private static final BulkWriteOptions UNORDERED_OPTIONS = new BulkWriteOptions().ordered(false);
+
+    private final List<WriteModel<T>> models;
+    private boolean ordered = true;
+
+    private BulkWrite(int expectedSize) {
+        models = new ArrayList<>(expectedSize);
+    }
+
+    public static <T> BulkWrite<T> newBuilder() {
+        return new BulkWrite<>(8);
+    }
+
+    public static <T> BulkWrite<T> newBuilder(int expectedSize) {
+        return new BulkWrite<>(expectedSize);
+    }
+
+    /**
+     * @param ordered if true, mongo servers stop executing the remaining operations
+     *                once an operation fails. Otherwise, all operations will be tried
+     */
+    public BulkWrite<T> ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public BulkWrite<T> insert(T value) {
+        models.add(new InsertOneModel<>(value));
+        return this;
+    }
+
+    public BulkWrite<T> insertAll(List<T> values) {
+        for (T value : values) {
+            models.add(new InsertOneModel<>(value));
+        }
+        return this;
+    }
+
+    public BulkWrite<T> updateOne(Filter filter, Update update) {
+        models.add(new UpdateOneModel<>(filter, update));
+        return this;
+    }
+
+    public BulkWrite<T> updateMany(Filter filter, Update update) {
+        models.add(new UpdateManyModel<>(filter, update));
+        return this;
+    }
+
+    public BulkWrite<T> upsert(Filter filter, Update update) {
+        models.add(new UpdateOneModel<>(filter, update, UPSERT_OPTIONS));
+        return this;
+    }
+
+    public BulkWrite<T> deleteOne(Filter filter) {
+        models.add(new DeleteOneModel<>(filter));
+        return this;
+    }
+
+    public BulkWrite<T> deleteMany(Filter filter) {
+        models.add(new DeleteManyModel<>(filter));
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public boolean isEmpty() {
+        return models.isEmpty();
+    }
+
+    public int size() {
+        return models.size();
+    }
+
+    public List<WriteModel<T>> getModels() {
+        return Collections.unmodifiableList(models);
+    }
+
+    public BulkWriteOptions getOptions() {
+        return ordered ? ORDERED_OPTIONS : UNORDERED_OPTIONS;
+    }
+
+}
@@ -88,6 +88,33 @@ public class Filter implements Bson {
         return this;
     }
 
+    /**
+     * Used with {@link QueryOptions#paginateByKeyset} to query the documents after the last key of the previous page
+     */
+    public Filter afterIfNotNull(@NotNull String key, @Nullable Object lastKey, boolean asc) {
+        if (lastKey == null) {
+            return this;
+        }
+        String operator = asc ? "$gt" : "$lt";
+        BsonValue lastKeyValue = SerializationUtil.encodeSingleValue(lastKey);
+        BsonValue existingValue = document.get(key);
+        if (existingValue == null) {
+            document.append(key, new BsonDocument(operator, lastKeyValue));
+        } else if (existingValue instanceof BsonDocument doc && !doc.isEmpty() && doc.getFirstKey().startsWith("$")) {
+            doc.append(operator, lastKeyValue);
+        } else {
+            // The key is used for equality, so we cannot put the operator into the same document
+            document.remove(key);
+            BsonArray conditions = document.get("$and") instanceof BsonArray array
+                    ? array
+                    : new BsonArray(2);
+            conditions.add(new BsonDocument(key, existingValue));
+            conditions.add(new BsonDocument(key, new BsonDocument(operator, lastKeyValue)));
+            document.put("$and", conditions);
+        }
+        return this;
+    }
+
     public Filter eq(String key, Object value) {
         document.append(key, SerializationUtil.encodeSingleValue(value));
         return this;
@@ -151,6 +178,11 @@ public class Filter implements Bson {
         return this;
     }
 
+    public Filter lte(String key, Object value) {
+        document.append(key, new BsonDocument("$lte", SerializationUtil.encodeSingleValue(value)));
+        return this;
+    }
+
     public Filter ltOrNull(String key, Object value) {
         or(Filter.newBuilder(1).eq(key, null),
                 Filter.newBuilder(1).lt(key, value));
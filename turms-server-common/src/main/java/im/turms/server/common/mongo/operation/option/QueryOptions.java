@@ -93,6 +93,20 @@ public final class QueryOptions {
         return this;
     }
 
+    /**
+     * Keyset pagination. Unlike {@link #paginateIfNotNull(Integer, Integer)},
+     * MongoDB doesn't need to walk and discard the skipped documents,
+     * so the cost of a page is O(size) no matter how deep the page is.
+     *
+     * @param field should be unique (e.g. "_id") and the filter should apply
+     *              {@link Filter#afterIfNotNull(String, Object, boolean)} with the last key of the previous page
+     */
+    public QueryOptions paginateByKeyset(String field, boolean asc, int size) {
+        sort(asc, field);
+        document.put("limit", new BsonInt32(size));
+        return this;
+    }
+
     public QueryOptions sort(boolean asc, String field) {
         BsonInt32 value = asc
                 ? BsonPool.BSON_INT32_1
@@ -119,6 +133,11 @@ public final class QueryOptions {
         return this;
     }
 
+    public QueryOptions skip(int skip) {
+        document.put("skip", new BsonInt32(skip));
+        return this;
+    }
+
     public QueryOptions limit(int limit) {
         document.put("limit", new BsonInt32(limit));
         return this;
@@ -42,6 +42,8 @@ public final class Update implements Bson {
     private final BsonDocument document;
     private BsonDocument set;
     private BsonDocument unset;
+    private BsonDocument push;
+    private BsonDocument inc;
 
     private Update(int expectedSize) {
         document = new BsonDocument(MapUtil.getCapability(expectedSize));
@@ -99,6 +101,29 @@ public final class Update implements Bson {
         return appendUnset(field);
     }
 
+    /**
+     * Appends the values to the array field.
+     * Unlike $addToSet, mongo servers don't need to scan the existing elements,
+     * so use a guard in the filter if the update needs to be idempotent
+     */
+    public Update push(String field, Collection<?> values) {
+        if (push == null) {
+            push = new BsonDocument();
+            document.append("$push", push);
+        }
+        push.put(field, new BsonDocument("$each", SerializationUtil.encodeValue(values)));
+        return this;
+    }
+
+    public Update inc(String field, Number value) {
+        if (inc == null) {
+            inc = new BsonDocument();
+            document.append("$inc", inc);
+        }
+        inc.put(field, SerializationUtil.encodeValue(value));
+        return this;
+    }
+
     private Update appendSet(String key, Object value) {
         if (set == null) {
             set = new BsonDocument();
@@ -17,31 +17,73 @@
 
 package im.turms.server.common.plugin.base;
 
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.plugin.bo.PluginInfo;
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.server.common.plugin.invoker.ExtensionInvoker;
 import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.env.common.ExtensionInvocationProperties;
 import im.turms.server.common.property.env.common.PluginProperties;
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 import org.pf4j.DefaultPluginManager;
+import org.pf4j.PluginDescriptor;
 import org.pf4j.PluginManager;
+import org.pf4j.PluginState;
+import org.pf4j.PluginWrapper;
 import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author James Chen
+ * @implNote The lifecycle operations (load, enable, disable, upgrade, unload) are serialized by a lock,
+ * and every change of the started plugins triggers {@link #initPlugins()} so that subclasses can swap
+ * their extension lists atomically. Before a plugin is stopped, its extensions are removed from the lists first
+ * and then its in-flight invocations are drained.
+ * <p>
+ * Whether a plugin is enabled is decided by {@link PluginProperties#getDisabledPluginIds()} of the shared properties,
+ * which is applied before the plugins are started and every time the shared properties change,
+ * so that all nodes converge to the same state even if they missed the cluster-wide operation.
  */
 @Log4j2
 public abstract class AbstractTurmsPluginManager {
 
+    private static final long DRAIN_CHECK_INTERVAL_MILLIS = 100;
+
     @Getter
     private final boolean enabled;
     private final ApplicationContext context;
     private final TurmsProperties turmsProperties;
     private final PluginManager pluginManager;
 
-    protected AbstractTurmsPluginManager(ApplicationContext context, TurmsProperties localProperties) {
+    /**
+     * pf4j creates a new extension instance every time we get extensions from it,
+     * so we cache the instances to keep their states and in-flight invocations across refreshes
+     */
+    private final Map<Class<?>, TurmsExtension> extensionCache = new ConcurrentHashMap<>(32);
+    /**
+     * The plugins that are being drained, and their extensions should be excluded when refreshing
+     */
+    private final Set<String> retiringPluginIds = ConcurrentHashMap.newKeySet();
+    private final Object lifecycleLock = new Object();
+    private boolean isInitialized;
+
+    protected AbstractTurmsPluginManager(ApplicationContext context, Node node, TurmsProperties localProperties) {
         this.context = context;
         turmsProperties = localProperties;
         PluginProperties pluginProperties = turmsProperties.getPlugin();
@@ -50,8 +92,13 @@ public abstract class AbstractTurmsPluginManager {
             Path dir = Path.of(pluginProperties.getDir());
             pluginManager = new DefaultPluginManager(dir);
             pluginManager.loadPlugins();
+            applyDisabledPluginIdsBeforeStarting(node.getSharedProperties().getPlugin().getDisabledPluginIds());
             pluginManager.startPlugins();
             initPlugins();
+            isInitialized = true;
+            node.addPropertiesChangeListener(properties ->
+                    applyDisabledPluginIds(properties.getPlugin().getDisabledPluginIds())
+                            .subscribe(null, t -> log.error("Failed to apply the disabled plugin IDs", t)));
         } else {
             pluginManager = null;
         }
@@ -61,42 +108,344 @@ public abstract class AbstractTurmsPluginManager {
     public void destroy() {
         if (pluginManager != null) {
             pluginManager.stopPlugins();
+            for (TurmsExtension extension : extensionCache.values()) {
+                closeInvoker(extension);
+            }
+            extensionCache.clear();
         }
     }
 
+    /**
+     * Called at startup and every time the started plugins change.
+     * Implementations should replace their extension fields with the new lists
+     * instead of mutating them, so that readers always see a consistent snapshot
+     */
     protected abstract void initPlugins();
 
     protected <T extends TurmsExtension> T getAndInitExtension(Class<T> clazz) {
-        List<T> extensions = pluginManager.getExtensions(clazz);
-        if (extensions != null && !extensions.isEmpty()) {
-            T extension = extensions.get(0);
-            initExtension(extension);
-            return extension;
-        }
-        return null;
+        List<T> extensions = getAndInitExtensions(clazz);
+        return extensions.isEmpty() ? null : extensions.get(0);
     }
 
     protected <T extends TurmsExtension> List<T> getAndInitExtensions(Class<T> clazz) {
-        List<T> extensions = pluginManager.getExtensions(clazz);
-        initExtensions(extensions);
+        List<Class<? extends T>> extensionClasses = pluginManager.getExtensionClasses(clazz);
+        List<T> extensions = new ArrayList<>(extensionClasses.size());
+        for (Class<? extends T> extensionClass : extensionClasses) {
+            T extension = getOrCreateExtension(extensionClass);
+            if (extension != null) {
+                extensions.add(extension);
+            }
+        }
+        return Collections.unmodifiableList(extensions);
+    }
+
+    // Lifecycle
+
+    public List<PluginInfo> getPlugins() {
+        if (pluginManager == null) {
+            return Collections.emptyList();
+        }
+        List<PluginWrapper> plugins = pluginManager.getPlugins();
+        List<PluginInfo> infos = new ArrayList<>(plugins.size());
+        for (PluginWrapper plugin : plugins) {
+            infos.add(toPluginInfo(plugin));
+        }
+        return infos;
+    }
+
+    /**
+     * @return the info of the affected plugin, or empty if the plugin is unloaded
+     */
+    public Mono<PluginInfo> handle(PluginAction action, @Nullable String pluginId, @Nullable String path) {
+        return switch (action) {
+            case LOAD -> loadPlugin(path);
+            case ENABLE -> enablePlugin(pluginId);
+            case DISABLE -> disablePlugin(pluginId);
+            case UPGRADE -> upgradePlugin(pluginId, path);
+            case UNLOAD -> unloadPlugin(pluginId).then(Mono.empty());
+        };
+    }
+
+    public Mono<PluginInfo> loadPlugin(String path) {
+        return runLifecycleOperation(() -> {
+            assertPathNotBlank(path);
+            return load0(Path.of(path));
+        });
+    }
+
+    public Mono<PluginInfo> enablePlugin(String pluginId) {
+        return runLifecycleOperation(() -> {
+            PluginWrapper plugin = getPlugin(pluginId);
+            if (plugin.getPluginState() != PluginState.STARTED) {
+                pluginManager.enablePlugin(pluginId);
+                PluginState state = pluginManager.startPlugin(pluginId);
+                if (state != PluginState.STARTED) {
+                    throw new IllegalStateException("Failed to start the plugin " + pluginId + " in the state " + state);
+                }
+                refreshExtensions();
+            }
+            return toPluginInfo(plugin);
+        });
+    }
+
+    public Mono<PluginInfo> disablePlugin(String pluginId) {
+        return runLifecycleOperation(() -> {
+            PluginWrapper plugin = getPlugin(pluginId);
+            if (plugin.getPluginState() == PluginState.STARTED) {
+                retire(pluginId, () -> pluginManager.disablePlugin(pluginId));
+            } else {
+                pluginManager.disablePlugin(pluginId);
+            }
+            return toPluginInfo(plugin);
+        });
+    }
+
+    /**
+     * Replaces the plugin with the one at the specified path, which must have the same plugin ID.
+     * If the new plugin fails to start, the old one is loaded again.
+     */
+    public Mono<PluginInfo> upgradePlugin(String pluginId, String path) {
+        return runLifecycleOperation(() -> {
+            assertPathNotBlank(path);
+            PluginWrapper oldPlugin = getPlugin(pluginId);
+            Path oldPath = oldPlugin.getPluginPath();
+            retire(pluginId, () -> pluginManager.unloadPlugin(pluginId));
+            try {
+                PluginInfo info = load0(Path.of(path));
+                if (!info.id().equals(pluginId)) {
+                    retire(info.id(), () -> pluginManager.unloadPlugin(info.id()));
+                    throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT,
+                            "The plugin ID of the new plugin is " + info.id() + " but should be " + pluginId);
+                }
+                return info;
+            } catch (Exception e) {
+                try {
+                    load0(oldPath);
+                } catch (Exception rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+                throw e;
+            }
+        });
+    }
+
+    public Mono<Void> unloadPlugin(String pluginId) {
+        return runLifecycleOperation(() -> {
+            getPlugin(pluginId);
+            retire(pluginId, () -> pluginManager.unloadPlugin(pluginId));
+            return null;
+        });
+    }
+
+    /**
+     * Enables or disables the loaded plugins whose states differ from the desired ones
+     */
+    public Mono<Void> applyDisabledPluginIds(Set<String> disabledPluginIds) {
+        return runLifecycleOperation(() -> {
+            for (PluginWrapper plugin : pluginManager.getPlugins()) {
+                String pluginId = plugin.getPluginId();
+                PluginState state = plugin.getPluginState();
+                if (disabledPluginIds.contains(pluginId)) {
+                    if (state == PluginState.STARTED) {
+                        log.info("Disabling the plugin {} according to the shared properties", pluginId);
+                        retire(pluginId, () -> pluginManager.disablePlugin(pluginId));
+                    }
+                } else if (state == PluginState.DISABLED) {
+                    log.info("Enabling the plugin {} according to the shared properties", pluginId);
+                    pluginManager.enablePlugin(pluginId);
+                    if (pluginManager.startPlugin(pluginId) == PluginState.STARTED) {
+                        refreshExtensions();
+                    } else {
+                        log.error("Failed to start the plugin {} in the state {}", pluginId, plugin.getPluginState());
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // Internal implementations
+
+    private <T> Mono<T> runLifecycleOperation(Callable<T> operation) {
+        if (pluginManager == null) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE, "Plugins are disabled"));
+        }
+        return Mono.fromCallable(() -> {
+                    synchronized (lifecycleLock) {
+                        return operation.call();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * The disabled state in the shared properties overrides the one in the local plugin status file of pf4j
+     */
+    private void applyDisabledPluginIdsBeforeStarting(Set<String> disabledPluginIds) {
+        for (PluginWrapper plugin : pluginManager.getPlugins()) {
+            String pluginId = plugin.getPluginId();
+            boolean isDisabled = plugin.getPluginState() == PluginState.DISABLED;
+            if (disabledPluginIds.contains(pluginId)) {
+                if (!isDisabled) {
+                    pluginManager.disablePlugin(pluginId);
+                }
+            } else if (isDisabled) {
+                pluginManager.enablePlugin(pluginId);
+            }
+        }
+    }
+
+    private PluginInfo load0(Path path) {
+        String pluginId = pluginManager.loadPlugin(path);
+        PluginState state = pluginManager.startPlugin(pluginId);
+        if (state != PluginState.STARTED) {
+            pluginManager.unloadPlugin(pluginId);
+            throw new IllegalStateException("Failed to start the plugin " + pluginId + " in the state " + state);
+        }
+        refreshExtensions();
+        return toPluginInfo(pluginManager.getPlugin(pluginId));
+    }
+
+    /**
+     * Removes the extensions of the plugin from the extension lists,
+     * waits for their in-flight invocations to complete, and then stops the plugin
+     */
+    private void retire(String pluginId, Runnable stop) {
+        retiringPluginIds.add(pluginId);
+        try {
+            refreshExtensions();
+            Map<Class<?>, TurmsExtension> classToExtension = getCachedExtensions(pluginId);
+            List<TurmsExtension> extensions = new ArrayList<>(classToExtension.values());
+            for (TurmsExtension extension : extensions) {
+                extension.setServing(false);
+            }
+            drain(pluginId, extensions);
+            stop.run();
+            // Remove by the class instead of TurmsExtension#equals,
+            // which may be overridden by the extensions and match the extensions of other plugins
+            for (Class<?> extensionClass : classToExtension.keySet()) {
+                TurmsExtension extension = extensionCache.remove(extensionClass);
+                if (extension != null) {
+                    closeInvoker(extension);
+                }
+            }
+        } finally {
+            retiringPluginIds.remove(pluginId);
+            refreshExtensions();
+        }
+    }
+
+    private void drain(String pluginId, List<TurmsExtension> extensions) {
+        long deadline = System.currentTimeMillis() + turmsProperties.getPlugin().getDrainTimeoutMillis();
+        int pendingInvocationCount;
+        while ((pendingInvocationCount = countPendingInvocations(extensions)) > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("Stopping the plugin {} with {} in-flight invocations because the drain timed out",
+                        pluginId, pendingInvocationCount);
+                return;
+            }
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int countPendingInvocations(List<TurmsExtension> extensions) {
+        int count = 0;
+        for (TurmsExtension extension : extensions) {
+            count += extension.getPendingInvocationCount();
+        }
+        return count;
+    }
+
+    private Map<Class<?>, TurmsExtension> getCachedExtensions(String pluginId) {
+        Map<Class<?>, TurmsExtension> extensions = new IdentityHashMap<>();
+        for (Map.Entry<Class<?>, TurmsExtension> entry : extensionCache.entrySet()) {
+            PluginWrapper plugin = pluginManager.whichPlugin(entry.getKey());
+            if (plugin != null && plugin.getPluginId().equals(pluginId)) {
+                extensions.put(entry.getKey(), entry.getValue());
+            }
+        }
         return extensions;
     }
 
+    /**
+     * Close the invoker so that its meters are removed instead of reporting stale values
+     */
+    private void closeInvoker(TurmsExtension extension) {
+        ExtensionInvoker invoker = extension.getInvoker();
+        if (invoker != null) {
+            invoker.close();
+        }
+    }
+
+    private void refreshExtensions() {
+        initPlugins();
+    }
+
+    private <T extends TurmsExtension> T getOrCreateExtension(Class<? extends T> extensionClass) {
+        PluginWrapper plugin = pluginManager.whichPlugin(extensionClass);
+        if (plugin != null && retiringPluginIds.contains(plugin.getPluginId())) {
+            return null;
+        }
+        TurmsExtension extension = extensionCache.get(extensionClass);
+        if (extension == null) {
+            extension = pluginManager.getExtensionFactory().create(extensionClass);
+            initExtension(extension);
+            extension.setInvoker(createInvoker(extensionClass));
+            TurmsExtension existingExtension = extensionCache.putIfAbsent(extensionClass, extension);
+            if (existingExtension != null) {
+                closeInvoker(extension);
+                extension = existingExtension;
+            }
+        }
+        return (T) extension;
+    }
+
+    private ExtensionInvoker createInvoker(Class<?> extensionClass) {
+        PluginProperties pluginProperties = turmsProperties.getPlugin();
+        String extensionName = extensionClass.getName();
+        ExtensionInvocationProperties properties = pluginProperties.getExtensionInvocations()
+                .getOrDefault(extensionName, pluginProperties.getInvocation());
+        return new ExtensionInvoker(extensionName, properties);
+    }
+
+    private PluginWrapper getPlugin(String pluginId) {
+        PluginWrapper plugin = pluginId == null ? null : pluginManager.getPlugin(pluginId);
+        if (plugin == null) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "Cannot find the plugin " + pluginId);
+        }
+        return plugin;
+    }
+
+    private void assertPathNotBlank(String path) {
+        if (path == null || path.isBlank()) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The plugin path must not be blank");
+        }
+    }
+
+    private PluginInfo toPluginInfo(PluginWrapper plugin) {
+        PluginDescriptor descriptor = plugin.getDescriptor();
+        return new PluginInfo(plugin.getPluginId(),
+                descriptor.getVersion(),
+                descriptor.getPluginDescription(),
+                descriptor.getProvider(),
+                plugin.getPluginState(),
+                plugin.getPluginPath().toString());
+    }
+
     private void initExtension(TurmsExtension extension) {
         try {
             extension.setContext(context);
         } catch (Exception e) {
             log.error("Extension {} failed to init", extension.getClass().getName(), e);
-            if (turmsProperties.getPlugin().isExitIfExceptionOccursAtStartup()) {
+            if (!isInitialized && turmsProperties.getPlugin().isExitIfExceptionOccursAtStartup()) {
                 throw e;
             }
         }
     }
 
-    private void initExtensions(List<? extends TurmsExtension> extensions) {
-        for (TurmsExtension extension : extensions) {
-            initExtension(extension);
-        }
-    }
-
-}
\ No newline at end of file
+}
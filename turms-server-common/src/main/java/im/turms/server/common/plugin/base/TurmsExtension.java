@@ -17,9 +17,20 @@
 
 package im.turms.server.common.plugin.base;
 
+import im.turms.server.common.plugin.invoker.ExtensionInvoker;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.pf4j.ExtensionPoint;
 import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * @author James Chen
@@ -30,4 +41,50 @@ public abstract class TurmsExtension implements ExtensionPoint {
     private ApplicationContext context;
     private boolean isServing;
 
-}
\ No newline at end of file
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicInteger pendingInvocations = new AtomicInteger();
+
+    /**
+     * Null if the extension is not managed by the plugin manager
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Nullable
+    private volatile ExtensionInvoker invoker;
+
+    /**
+     * Invokes the extension with its timeout, concurrency limit and circuit breaker,
+     * and counts the invocation as in-flight from subscription until termination
+     * so that the plugin manager can wait for it to complete before stopping the plugin.
+     *
+     * @return an empty publisher if the extension is skipped because of the fallback
+     */
+    public <T> Mono<T> invoke(Supplier<Mono<T>> invocation) {
+        return invoke(invocation, Mono.empty());
+    }
+
+    /**
+     * @param skipped the result to return if the extension is skipped because of the fallback
+     */
+    public <T> Mono<T> invoke(Supplier<Mono<T>> invocation, Mono<T> skipped) {
+        ExtensionInvoker currentInvoker = invoker;
+        Mono<T> mono = currentInvoker == null
+                ? Mono.defer(invocation)
+                : currentInvoker.invoke(invocation, skipped);
+        return Mono.defer(() -> {
+                    pendingInvocations.incrementAndGet();
+                    return mono;
+                })
+                .doFinally(signal -> pendingInvocations.decrementAndGet());
+    }
+
+    public int getPendingInvocationCount() {
+        return pendingInvocations.get();
+    }
+
+}
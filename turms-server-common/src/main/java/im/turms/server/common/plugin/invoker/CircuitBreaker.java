@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.plugin.invoker;
+
+import im.turms.server.common.property.env.common.ExtensionInvocationProperties;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A count-based circuit breaker.
+ * It opens when the failure rate of the latest invocations reaches the threshold,
+ * rejects invocations until the open duration passes, and then allows a limited number of trial invocations
+ * to decide whether to close or open again.
+ *
+ * @author James Chen
+ * @implNote The methods are synchronized because they only touch a few fields,
+ * and it is much simpler than a lock-free implementation
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int minimumNumberOfCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMillis;
+    private final int permittedCallsInHalfOpenState;
+    private final LongSupplier clock;
+
+    /**
+     * A ring buffer of the outcomes of the latest invocations. true if the invocation failed
+     */
+    private final boolean[] outcomes;
+    private int nextIndex;
+    private int recordedCount;
+    private int failureCount;
+
+    private State state = State.CLOSED;
+    private long openedTimestamp;
+    private int availableHalfOpenPermits;
+    private int halfOpenSuccessCount;
+
+    public CircuitBreaker(ExtensionInvocationProperties.CircuitBreakerProperties properties) {
+        this(properties, System::currentTimeMillis);
+    }
+
+    public CircuitBreaker(ExtensionInvocationProperties.CircuitBreakerProperties properties, LongSupplier clock) {
+        outcomes = new boolean[properties.getSlidingWindowSize()];
+        minimumNumberOfCalls = Math.min(properties.getMinimumNumberOfCalls(), outcomes.length);
+        failureRateThreshold = properties.getFailureRateThreshold();
+        openDurationMillis = properties.getOpenDurationMillis();
+        permittedCallsInHalfOpenState = properties.getPermittedCallsInHalfOpenState();
+        this.clock = clock;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the invocation is permitted.
+     * The caller must call one of {@link #onSuccess()}, {@link #onFailure()} and {@link #onIgnored()}
+     * after the permitted invocation terminates
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedTimestamp < openDurationMillis) {
+                return false;
+            }
+            transitionToHalfOpen();
+        }
+        if (availableHalfOpenPermits > 0) {
+            availableHalfOpenPermits--;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.CLOSED) {
+            record(false);
+        } else if (state == State.HALF_OPEN && ++halfOpenSuccessCount >= permittedCallsInHalfOpenState) {
+            transitionToClosed();
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.CLOSED) {
+            record(true);
+            if (recordedCount >= minimumNumberOfCalls
+                    && failureCount * 100 >= failureRateThreshold * recordedCount) {
+                transitionToOpen();
+            }
+        } else if (state == State.HALF_OPEN) {
+            transitionToOpen();
+        }
+    }
+
+    /**
+     * Called when a permitted invocation is cancelled, so its outcome is unknown
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            availableHalfOpenPermits++;
+        }
+    }
+
+    private void record(boolean failed) {
+        if (recordedCount == outcomes.length) {
+            if (outcomes[nextIndex]) {
+                failureCount--;
+            }
+        } else {
+            recordedCount++;
+        }
+        outcomes[nextIndex] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        nextIndex = (nextIndex + 1) % outcomes.length;
+    }
+
+    private void transitionToOpen() {
+        state = State.OPEN;
+        openedTimestamp = clock.getAsLong();
+    }
+
+    private void transitionToHalfOpen() {
+        state = State.HALF_OPEN;
+        availableHalfOpenPermits = permittedCallsInHalfOpenState;
+        halfOpenSuccessCount = 0;
+    }
+
+    private void transitionToClosed() {
+        state = State.CLOSED;
+        nextIndex = 0;
+        recordedCount = 0;
+        failureCount = 0;
+    }
+
+}
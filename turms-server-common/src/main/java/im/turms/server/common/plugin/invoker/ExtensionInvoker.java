@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.plugin.invoker;
+
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.plugin.constant.ExtensionFallback;
+import im.turms.server.common.property.env.common.ExtensionInvocationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Guards the invocations of an extension with a timeout, a concurrency limit and a circuit breaker,
+ * and records the latency and the outcome of every invocation, so that a slow or broken extension
+ * won't stall the requests that pass through it.
+ *
+ * @author James Chen
+ */
+public class ExtensionInvoker {
+
+    private static final String METRICS_NAME_INVOCATION = "plugin.extension.invocation";
+    private static final String METRICS_NAME_REJECTION = "plugin.extension.rejection";
+    private static final String METRICS_NAME_CIRCUIT_BREAKER_STATE = "plugin.extension.circuit.breaker.state";
+    private static final String METRICS_TAG_EXTENSION = "extension";
+    private static final String METRICS_TAG_REASON = "reason";
+
+    @Getter
+    private final String extensionName;
+    @Nullable
+    private final Duration timeout;
+    private final int maxConcurrentInvocations;
+    private final AtomicInteger concurrentInvocations = new AtomicInteger();
+    @Nullable
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    private final ExtensionFallback fallback;
+
+    private final Counter circuitOpenCounter;
+    private final Counter concurrencyLimitCounter;
+    private final Counter timeoutCounter;
+    private final List<Meter> meters = new ArrayList<>(4);
+
+    public ExtensionInvoker(String extensionName, ExtensionInvocationProperties properties) {
+        this.extensionName = extensionName;
+        int timeoutMillis = properties.getTimeoutMillis();
+        timeout = timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null;
+        maxConcurrentInvocations = properties.getMaxConcurrentInvocations();
+        fallback = properties.getFallback();
+        ExtensionInvocationProperties.CircuitBreakerProperties circuitBreakerProperties = properties.getCircuitBreaker();
+        if (circuitBreakerProperties.isEnabled()) {
+            circuitBreaker = new CircuitBreaker(circuitBreakerProperties);
+            meters.add(Gauge.builder(METRICS_NAME_CIRCUIT_BREAKER_STATE, circuitBreaker, breaker -> breaker.getState().ordinal())
+                    .tag(METRICS_TAG_EXTENSION, extensionName)
+                    .register(Metrics.globalRegistry));
+        } else {
+            circuitBreaker = null;
+        }
+        circuitOpenCounter = registerRejectionCounter("circuit_open");
+        concurrencyLimitCounter = registerRejectionCounter("concurrency_limit");
+        timeoutCounter = registerRejectionCounter("timeout");
+    }
+
+    /**
+     * @param skipped the result to return if the fallback is {@link ExtensionFallback#SKIP}
+     *                and the extension cannot be invoked or has timed out
+     */
+    public <T> Mono<T> invoke(Supplier<Mono<T>> invocation, Mono<T> skipped) {
+        return Mono.defer(() -> {
+            if (maxConcurrentInvocations > 0 && concurrentInvocations.incrementAndGet() > maxConcurrentInvocations) {
+                concurrentInvocations.decrementAndGet();
+                concurrencyLimitCounter.increment();
+                return fallback(skipped, "the concurrency limit is reached");
+            }
+            if (circuitBreaker != null && !circuitBreaker.tryAcquirePermission()) {
+                releaseConcurrencyPermit();
+                circuitOpenCounter.increment();
+                return fallback(skipped, "the circuit breaker is open");
+            }
+            Mono<T> mono;
+            try {
+                mono = invocation.get();
+            } catch (Exception e) {
+                mono = Mono.error(e);
+            }
+            if (timeout != null) {
+                mono = mono.timeout(timeout);
+            }
+            mono = mono
+                    .name(METRICS_NAME_INVOCATION)
+                    .tag(METRICS_TAG_EXTENSION, extensionName)
+                    .metrics();
+            if (circuitBreaker != null) {
+                mono = mono
+                        .doOnSuccess(ignored -> circuitBreaker.onSuccess())
+                        .doOnError(this::recordFailure)
+                        .doOnCancel(circuitBreaker::onIgnored);
+            }
+            return mono
+                    .doFinally(signal -> releaseConcurrencyPermit())
+                    .onErrorResume(TimeoutException.class, e -> {
+                        timeoutCounter.increment();
+                        return fallback(skipped, "the invocation has timed out");
+                    });
+        });
+    }
+
+    public void close() {
+        for (Meter meter : meters) {
+            Metrics.globalRegistry.remove(meter);
+        }
+    }
+
+    /**
+     * A business exception is a deliberate result of the extension (e.g. rejecting a login request)
+     * rather than a sign that it is unhealthy, so only timeouts and unexpected exceptions are counted as failures
+     */
+    private void recordFailure(Throwable throwable) {
+        if (throwable instanceof TurmsBusinessException) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private void releaseConcurrencyPermit() {
+        if (maxConcurrentInvocations > 0) {
+            concurrentInvocations.decrementAndGet();
+        }
+    }
+
+    private <T> Mono<T> fallback(Mono<T> skipped, String reason) {
+        return switch (fallback) {
+            case SKIP -> skipped;
+            case DENY -> Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE,
+                    "The extension " + extensionName + " is unavailable because " + reason));
+        };
+    }
+
+    private Counter registerRejectionCounter(String reason) {
+        Counter counter = Counter.builder(METRICS_NAME_REJECTION)
+                .tag(METRICS_TAG_EXTENSION, extensionName)
+                .tag(METRICS_TAG_REASON, reason)
+                .register(Metrics.globalRegistry);
+        meters.add(counter);
+        return counter;
+    }
+
+}
@@ -23,6 +23,7 @@ import im.turms.server.common.property.env.common.LoggingProperties;
 import im.turms.server.common.property.env.common.MonitorProperties;
 import im.turms.server.common.property.env.common.PluginProperties;
 import im.turms.server.common.property.env.common.ServerAvailabilityProperties;
+import im.turms.server.common.property.env.common.TracingProperties;
 import im.turms.server.common.property.env.common.UserStatusProperties;
 import im.turms.server.common.property.env.common.cluster.ClusterProperties;
 import im.turms.server.common.property.env.common.location.LocationProperties;
@@ -87,6 +88,10 @@ public class TurmsProperties {
     @NestedConfigurationProperty
     private ServerAvailabilityProperties serverAvailability = new ServerAvailabilityProperties();
 
+    @JsonView(MutablePropertiesView.class)
+    @NestedConfigurationProperty
+    private TracingProperties tracing = new TracingProperties();
+
     @JsonView(MutablePropertiesView.class)
     @NestedConfigurationProperty
     private UserStatusProperties userStatus = new UserStatusProperties();
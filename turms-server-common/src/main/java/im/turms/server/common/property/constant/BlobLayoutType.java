@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.constant;
+
+/**
+ * @author James Chen
+ */
+public enum BlobLayoutType {
+    /**
+     * Store all blobs in one directory
+     */
+    FLAT,
+    /**
+     * Store blobs in two levels of directories named after the first four characters of their hashes
+     * (e.g. "ab/cd/abcd...") to keep the number of files per directory small
+     */
+    HASH_PREFIX
+}
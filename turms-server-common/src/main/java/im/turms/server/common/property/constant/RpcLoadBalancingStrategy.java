@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.constant;
+
+/**
+ * @author James Chen
+ */
+public enum RpcLoadBalancingStrategy {
+    /**
+     * Select members in turn
+     */
+    ROUND_ROBIN,
+    /**
+     * Select the member with fewer pending requests from two random members
+     */
+    POWER_OF_TWO_CHOICES,
+    /**
+     * Select the member with the lower cost from two random members,
+     * and the cost is the EWMA of the latency multiplied by the number of pending requests
+     */
+    EWMA
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.env.common;
+
+import im.turms.server.common.plugin.constant.ExtensionFallback;
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class ExtensionInvocationProperties {
+
+    @Description("The timeout in millis of an invocation of an extension. 0 for no timeout")
+    @Min(0)
+    private int timeoutMillis = 10 * 1000;
+
+    @Description("The maximum number of concurrent invocations of an extension. 0 for no limit")
+    @Min(0)
+    private int maxConcurrentInvocations = 1024;
+
+    @Description("What to do when an extension cannot be invoked because its circuit breaker is open, " +
+            "it has reached the concurrency limit, or it has timed out. " +
+            "SKIP: skip the extension as if it didn't exist; DENY: reject the operation")
+    private ExtensionFallback fallback = ExtensionFallback.SKIP;
+
+    @NestedConfigurationProperty
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+
+    @AllArgsConstructor
+    @Builder(toBuilder = true)
+    @Data
+    @NoArgsConstructor
+    public static class CircuitBreakerProperties {
+
+        @Description("Whether to enable the circuit breaker for extensions")
+        private boolean enabled = true;
+
+        @Description("The number of the latest invocations used to calculate the failure rate")
+        @Min(1)
+        private int slidingWindowSize = 100;
+
+        @Description("The minimum number of invocations in the sliding window before the failure rate is calculated")
+        @Min(1)
+        private int minimumNumberOfCalls = 20;
+
+        @Description("The circuit breaker opens when the failure rate in percentage is equal to or greater than the threshold")
+        @Min(1)
+        @Max(100)
+        private int failureRateThreshold = 50;
+
+        @Description("The time in millis the circuit breaker stays open before allowing trial invocations")
+        @Min(0)
+        private int openDurationMillis = 30 * 1000;
+
+        @Description("The number of trial invocations allowed when the circuit breaker is half-open. " +
+                "The circuit breaker closes if all of them succeed, and opens again if any of them fails")
+        @Min(1)
+        private int permittedCallsInHalfOpenState = 5;
+
+    }
+
+}
@@ -22,6 +22,12 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import javax.validation.constraints.Min;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Convention over configuration
@@ -43,4 +49,21 @@ public class PluginProperties {
     @Description("Whether to exit if any exception is thrown at startup")
     private boolean exitIfExceptionOccursAtStartup = true;
 
+    @Description("The maximum time in millis to wait for the in-flight invocations of a plugin's extensions to complete " +
+            "before the plugin is stopped when disabling, upgrading or unloading it")
+    @Min(0)
+    private int drainTimeoutMillis = 30 * 1000;
+
+    @Description("The IDs of the plugins that are disabled on all nodes. " +
+            "It is updated when plugins are enabled or disabled via the admin API, " +
+            "and applied when a node starts and when the shared properties change")
+    private Set<String> disabledPluginIds = Collections.emptySet();
+
+    @NestedConfigurationProperty
+    private ExtensionInvocationProperties invocation = new ExtensionInvocationProperties();
+
+    @Description("The invocation properties for specific extensions, keyed by the fully qualified class name of the extension " +
+            "(e.g. \"[com.mydomain.MyPlugin$MyUserAuthenticator]\"). The extensions not specified use \"invocation\"")
+    private Map<String, ExtensionInvocationProperties> extensionInvocations = Collections.emptyMap();
+
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common;
+
+import im.turms.server.common.property.constant.SpanExporterType;
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class TracingProperties {
+
+    @Description("Whether to record the spans of the sampled client requests and admin requests " +
+            "across nodes, RPC requests, MongoDB and Redis. Note that the trace ID is always used for logging")
+    private boolean enabled;
+
+    @Description("The sample rate of the client requests and admin requests to trace. " +
+            "The sampling decision is made by the node that receives the request and is propagated to other nodes")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private float sampleRate = 0.01f;
+
+    @Description("The threshold in milliseconds of the duration of the root span of a trace, " +
+            "or the span to run a RPC request sent by peers, above which the trace is considered slow")
+    @Min(0)
+    private int slowTraceThresholdMillis = 1000;
+
+    @Description("The maximum number of the recent spans kept in memory to query slow traces")
+    @Min(0)
+    private int maxRecentSpans = 10_000;
+
+    @Description("The maximum number of the recent slow traces to keep")
+    @Min(0)
+    private int maxSlowTraces = 100;
+
+    @Description("The exporter to export ended spans. " +
+            "Note that the exporter is ignored if a bean of SpanExporter is provided")
+    private SpanExporterType exporter = SpanExporterType.LOG;
+
+}
@@ -57,4 +57,8 @@ public class ClusterProperties {
     @NestedConfigurationProperty
     private RpcProperties rpc = new RpcProperties();
 
+    @JsonView(MutablePropertiesView.class)
+    @NestedConfigurationProperty
+    private DrainProperties drain = new DrainProperties();
+
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class DrainProperties {
+
+    @Description("Whether to drain the local node before it shuts down. " +
+            "A draining node won't be selected by other members to handle RPC requests, " +
+            "and a draining turms-gateway closes its sessions in waves instead of all at once")
+    private boolean drainOnShutdown = true;
+
+    @Description("The maximum time in seconds to wait for the local node to be drained before it shuts down")
+    @Min(0)
+    private int shutdownTimeoutSeconds = 60;
+
+    @Description("The local node is considered drained once it has had no pending work (e.g. sessions " +
+            "and the RPC requests sent by peers) for the quiet period in milliseconds, " +
+            "which also gives other members time to know the local node is draining. " +
+            "The quiet period is skipped if the local node has no pending work when it starts draining")
+    @Min(0)
+    private int quietPeriodMillis = 2000;
+
+    @Description("The time in seconds over which a draining turms-gateway spreads closing its sessions " +
+            "so that clients reconnect to other turms-gateway servers gradually")
+    @Min(0)
+    private int sessionCloseDurationSeconds = 30;
+
+    @Description("The interval in milliseconds between the waves of closing sessions. " +
+            "The sessions in a wave are closed at random times within the interval")
+    @Min(1)
+    private int sessionCloseWaveIntervalMillis = 1000;
+
+    @Description("The maximum time in milliseconds to wait for the pending notifications of a session " +
+            "to be sent before the session is closed due to draining")
+    @Min(0)
+    private int flushNotificationsTimeoutMillis = 5000;
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcExecutionLaneProperties {
+
+    @Description("The names of the RPC request types (e.g. \"handleServiceRequest\") that run in the lane")
+    private Set<String> requestTypes = Collections.emptySet();
+
+    @Description("The priority of the lane. The slots shared by all lanes are assigned to the queued requests " +
+            "in the lane with a higher priority first")
+    private int priority;
+
+    @Description("The number of slots reserved for the lane, which cannot be used by other lanes")
+    @Min(0)
+    private int reservedConcurrency;
+
+    @Description("The maximum number of requests that can run concurrently in the lane")
+    @Min(1)
+    private int maxConcurrency = 1024;
+
+    @Description("The maximum number of requests waiting for a slot in the lane. " +
+            "The requests exceeding the limit will be rejected")
+    @Min(0)
+    private int maxQueueSize = 4096;
+
+    @Description("The number of dedicated threads to run the requests in the lane. " +
+            "0 means running the requests on the thread that receives them " +
+            "or the thread that completes the previous request if they have been queued")
+    @Min(0)
+    private int threads;
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcExecutionProperties {
+
+    public static final String LANE_CONTROL = "control";
+    public static final String LANE_NOTIFICATION = "notification";
+    public static final String LANE_DEFAULT = "default";
+
+    @Description("The maximum number of RPC requests that can run concurrently on the local node. " +
+            "The slots not reserved by lanes are shared by all lanes")
+    @Min(1)
+    private int maxConcurrency = 4096;
+
+    @Description("The execution lanes keyed by the lane name. " +
+            "The RPC requests whose types are not specified in any lane run in the lane \"default\"")
+    private Map<String, RpcExecutionLaneProperties> lanes = getDefaultLanes();
+
+    private static Map<String, RpcExecutionLaneProperties> getDefaultLanes() {
+        Map<String, RpcExecutionLaneProperties> lanes = new HashMap<>(8);
+        // Keepalive and handshakes affect the health of the cluster, and "setUserOffline" is used to kick out sessions,
+        // so they should never wait for heavy requests
+        lanes.put(LANE_CONTROL, new RpcExecutionLaneProperties(
+                Set.of("keepalive", "openingHandshake", "closingHandshake", "setUserOffline", "managePlugin"),
+                100, 128, 512, 4096, 0));
+        // Run the notifications that may be fanned out to many sessions on dedicated threads
+        // so that they won't block the I/O threads
+        lanes.put(LANE_NOTIFICATION, new RpcExecutionLaneProperties(
+                Set.of("sendNotification"),
+                10, 0, 1024, 8192, 2));
+        lanes.put(LANE_DEFAULT, new RpcExecutionLaneProperties(
+                Collections.emptySet(),
+                0, 0, 4096, 8192, 0));
+        return lanes;
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcHedgingProperties {
+
+    @Description("Whether to send a duplicate of an idempotent RPC request to another member " +
+            "if the request hasn't been responded after the hedging delay, and use the first response")
+    private boolean enabled;
+
+    @Description("The percentile of the recent response latencies of the same request type used as the hedging delay")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double delayPercentile = 0.95;
+
+    @Description("The minimum hedging delay in milliseconds, which avoids hedging requests " +
+            "whose latencies are too low to benefit from hedging")
+    @Min(0)
+    private int minDelayMillis = 5;
+
+    @Description("The maximum ratio of hedged requests to idempotent requests, which caps the extra load caused by hedging")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private float budgetRatio = 0.1f;
+
+    @Description("The maximum number of hedged requests that can be sent in a burst " +
+            "after the budget has been accumulated")
+    @Min(0)
+    private int maxBudgetTokens = 100;
+
+}
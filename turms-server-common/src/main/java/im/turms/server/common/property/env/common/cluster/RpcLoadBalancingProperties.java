@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.constant.RpcLoadBalancingStrategy;
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcLoadBalancingProperties {
+
+    @Description("The strategy to select the member to handle a RPC request that can be handled by any member. " +
+            "Note that the strategy is ignored if a bean of RpcLoadBalancer is provided")
+    private RpcLoadBalancingStrategy strategy = RpcLoadBalancingStrategy.POWER_OF_TWO_CHOICES;
+
+    @Description("The time in milliseconds for the weight of a latency sample to decay to 1/e in the EWMA of latency")
+    @Min(1)
+    private int latencyEwmaDecayMillis = 10 * 1000;
+
+    @Description("Whether to weight members by the CPU load published by members through discovery, " +
+            "so that heavily loaded members receive fewer requests")
+    private boolean weightByMemberLoad;
+
+}
@@ -22,6 +22,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import javax.validation.constraints.Min;
 
@@ -38,4 +39,16 @@ public class RpcProperties {
     @Min(1)
     private int requestTimeoutMillis = 30 * 1000;
 
+    @NestedConfigurationProperty
+    private RpcLoadBalancingProperties loadBalancing = new RpcLoadBalancingProperties();
+
+    @NestedConfigurationProperty
+    private RpcSlowRequestLogProperties slowRequestLog = new RpcSlowRequestLogProperties();
+
+    @NestedConfigurationProperty
+    private RpcExecutionProperties execution = new RpcExecutionProperties();
+
+    @NestedConfigurationProperty
+    private RpcHedgingProperties hedging = new RpcHedgingProperties();
+
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common.cluster;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class RpcSlowRequestLogProperties {
+
+    @Description("Whether to log the RPC requests that take longer than the threshold on the caller or the callee side")
+    private boolean enabled = true;
+
+    @Description("The threshold in milliseconds of the round trip time on the caller side, " +
+            "or the queuing and execution time on the callee side, above which a RPC request is considered slow")
+    @Min(0)
+    private int thresholdMillis = 1000;
+
+    @Description("The sample rate of slow RPC requests to log. " +
+            "It should be less than 1 to avoid flooding logs when the cluster is overloaded")
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private float sampleRate = 0.1f;
+
+}
@@ -39,4 +39,7 @@ public class ConnectionProperties {
     @NestedConfigurationProperty
     private ConnectionServerProperties server = new ConnectionServerProperties();
 
+    @NestedConfigurationProperty
+    private FailureDetectorProperties failureDetector = new FailureDetectorProperties();
+
 }
\ No newline at end of file
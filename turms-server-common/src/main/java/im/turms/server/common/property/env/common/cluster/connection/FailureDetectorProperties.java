@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.property.env.common.cluster.connection;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class FailureDetectorProperties {
+
+    @Description("Whether to detect the failures of members by the phi accrual failure detector " +
+            "and stop routing RPC requests to the suspected members. " +
+            "If enabled, both peers of a connection send keepalive requests every heartbeatIntervalMillis " +
+            "instead of keepaliveIntervalSeconds, the leader updates the health status of members by the detector, " +
+            "and members write their heartbeats to the config server less frequently. " +
+            "Note that the keepalive requests of the nodes with the detector cannot be decoded by the nodes without it, " +
+            "so don't mix them in a cluster")
+    private boolean enabled = true;
+
+    @Description("The interval in milliseconds to send keepalive requests as heartbeats to each connected member")
+    @Min(10)
+    private int heartbeatIntervalMillis = 200;
+
+    @Description("A member is suspected if the phi value of its heartbeats reaches the threshold. " +
+            "A threshold of 8 means the chance of a false positive is about 10^-8 " +
+            "if the heartbeat inter-arrival times follow the normal distribution")
+    @DecimalMin("1")
+    private double phiThreshold = 8;
+
+    @Description("A member is also suspected if the phi value of its heartbeats reaches the threshold " +
+            "and another member reports that it suspects the member. " +
+            "The threshold should be less than phiThreshold so that the suspicion gossiped by peers " +
+            "can speed up the detection, while a member that is only unreachable from a single peer won't be suspected")
+    @DecimalMin("0")
+    private double phiThresholdWithPeerSuspicion = 4;
+
+    @Description("The maximum number of the recent heartbeat inter-arrival times used to estimate the distribution")
+    @Min(2)
+    private int maxSampleSize = 200;
+
+    @Description("The minimum standard deviation in milliseconds of the heartbeat inter-arrival times, " +
+            "which avoids suspecting a member for a tiny jitter when the heartbeats are too regular")
+    @Min(1)
+    private int minStdDeviationMillis = 50;
+
+    @Description("The duration in milliseconds of the heartbeat pauses that are acceptable " +
+            "(e.g. caused by GC pauses or network jitters)")
+    @Min(0)
+    private int acceptableHeartbeatPauseMillis = 100;
+
+    @Description("The suspicion reported by a member expires if the member hasn't reported again in the duration in milliseconds")
+    @Min(0)
+    private int peerSuspicionTtlMillis = 1000;
+
+}
@@ -22,6 +22,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import javax.validation.constraints.Min;
 
@@ -55,4 +56,7 @@ public class FakeProperties {
     @Min(1)
     private int requestIntervalMillis = 1000;
 
+    @NestedConfigurationProperty
+    private WorkloadProperties workload = new WorkloadProperties();
+
 }
\ No newline at end of file
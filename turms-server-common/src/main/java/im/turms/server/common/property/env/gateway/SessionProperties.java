@@ -25,6 +25,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
 import javax.validation.constraints.Min;
 
@@ -79,4 +80,8 @@ public class SessionProperties {
             "If false, turms-gateway won't connect to the MongoDB server for user records")
     private boolean enableAuthentication;
 
+    @JsonView(MutablePropertiesView.class)
+    @NestedConfigurationProperty
+    private SessionResumptionProperties resumption = new SessionResumptionProperties();
+
 }
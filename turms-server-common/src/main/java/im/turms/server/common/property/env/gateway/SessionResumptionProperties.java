@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.server.common.property.env.gateway;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import im.turms.server.common.property.metadata.annotation.Description;
+import im.turms.server.common.property.metadata.annotation.GlobalProperty;
+import im.turms.server.common.property.metadata.view.MutablePropertiesView;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class SessionResumptionProperties {
+
+    @Description("Whether to issue a signed resumption ticket to the client after it logs in successfully, " +
+            "so that the client can log in again with the ticket as the password " +
+            "and turms-gateway can verify it locally without checking the credentials of the user")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    private boolean enabled;
+
+    @Description("The time-to-live of a resumption ticket")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int ticketTtlSeconds = 300;
+
+    @Description("The Base64 encoded HMAC-SHA256 keys shared by all turms-gateway servers. " +
+            "The first key is used to sign new tickets and all keys are used to verify tickets, " +
+            "so to rotate keys, prepend a new key and remove the old key after ticketTtlSeconds has elapsed")
+    @GlobalProperty
+    private List<String> signingKeys = Collections.emptyList();
+
+}
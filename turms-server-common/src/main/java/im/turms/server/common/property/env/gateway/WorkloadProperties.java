@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.server.common.property.env.gateway;
+
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class WorkloadProperties {
+
+    @Description("Whether to run the workload profile instead of sending random requests at a fixed interval")
+    private boolean enabled;
+
+    // Rate
+
+    @Description("The target number of requests per second. " +
+            "Requests are scheduled open-loop, which means a slow response never delays the next request, " +
+            "and latencies are measured from the intended send time to correct coordinated omission")
+    @Min(1)
+    private int targetRequestsPerSecond = 1000;
+
+    @Description("The duration of the warmup during which latencies are not recorded")
+    @Min(0)
+    private int warmupSeconds = 10;
+
+    @Description("The duration of the measurement after the warmup")
+    @Min(1)
+    private int durationSeconds = 60;
+
+    // Mix
+
+    @Description("The relative weight of private messages")
+    @Min(0)
+    private int privateMessageWeight = 60;
+
+    @Description("The relative weight of group messages")
+    @Min(0)
+    private int groupMessageWeight = 20;
+
+    @Description("The relative weight of random requests generated by RandomRequestFactory")
+    @Min(0)
+    private int randomRequestWeight = 15;
+
+    @Description("The relative weight of logging out and logging in again a random client")
+    @Min(0)
+    private int loginChurnWeight = 5;
+
+    // Message
+
+    @Description("The size of the text of messages in bytes")
+    @Min(0)
+    private int messageTextSize = 64;
+
+    @Description("The percentage of private messages sent to online faked users. " +
+            "The others are sent to users out of the range of faked users")
+    @Max(100)
+    @Min(0)
+    private int onlineRecipientPercentage = 90;
+
+    @Min(0)
+    private long firstGroupId = 1;
+
+    @Description("Group messages are sent to groups with an ID from [firstGroupId, firstGroupId + groupCount)")
+    @Min(1)
+    private int groupCount = 100;
+
+    // Report
+
+    @Description("The file path of the report. The report is only logged if the path is blank")
+    private String reportPath = "";
+
+}
@@ -26,6 +26,7 @@ import im.turms.server.common.property.env.service.business.conversation.Convers
 import im.turms.server.common.property.env.service.business.message.MessageProperties;
 import im.turms.server.common.property.env.service.business.user.UserProperties;
 import im.turms.server.common.property.env.service.env.AdminApiProperties;
+import im.turms.server.common.property.env.service.env.DeletionJobProperties;
 import im.turms.server.common.property.env.service.env.FakeProperties;
 import im.turms.server.common.property.env.service.env.LogProperties;
 import im.turms.server.common.property.env.service.env.clientapi.ClientApiProperties;
@@ -57,6 +58,10 @@ public class ServiceProperties {
     @NestedConfigurationProperty
     private ClientApiProperties clientApi = new ClientApiProperties();
 
+    @JsonView(MutablePropertiesView.class)
+    @NestedConfigurationProperty
+    private DeletionJobProperties deletionJob = new DeletionJobProperties();
+
     @JsonView(MutablePropertiesView.class)
     @NestedConfigurationProperty
     private FakeProperties fake = new FakeProperties();
@@ -78,6 +78,13 @@ public class GroupProperties {
     @JsonView(MutablePropertiesView.class)
     private boolean deleteGroupLogicallyByDefault = true;
 
+    @Description("The maximum number of users to add, update, or remove in a chunk of a bulk group member operation. " +
+            "The members version of the group is updated once and one notification is sent for every chunk")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int groupMembersBulkOperationChunkSize = 1000;
+
     @Description("Whether to delete expired group join requests when the cron expression is triggered")
     @GlobalProperty
     @JsonView(MutablePropertiesView.class)
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.env.service.business;
+
+import im.turms.server.common.constant.CronConstant;
+import im.turms.server.common.constraint.ValidCron;
+import im.turms.server.common.property.constant.BlobLayoutType;
+import im.turms.server.common.property.metadata.annotation.Description;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class LocalStorageProperties {
+
+    @Description("Whether to store files in the local file system and serve them over the HTTP server of turms " +
+            "if no storage plugin is provided. " +
+            "Note that the directory should be shared by all turms servers (e.g. NFS) if there are more than one server")
+    private boolean enabled;
+
+    @Description("The directory to store files")
+    private String dir = "./storage";
+
+    @Description("The base URL of the HTTP server of turms used to generate the URLs of files " +
+            "(e.g. \"https://turms.example.com:8510\")")
+    private String baseUrl = "http://localhost:8510";
+
+    @Description("The secret key to sign URLs with HMAC-SHA256. " +
+            "A random key is generated if it is blank, " +
+            "and in that case a URL signed by a server cannot be verified by other servers")
+    private String hmacSecret = "";
+
+    @Description("The layout of the directories to store the files named after their hashes")
+    private BlobLayoutType layout = BlobLayoutType.HASH_PREFIX;
+
+    @Description("The maximum total size in bytes of the files uploaded by a user. 0 means no limit")
+    @Min(0)
+    private long userQuotaBytes = 1024L * 1024 * 1024;
+
+    @Description("Clean the expired files and the files no longer referenced when the cron expression is triggered")
+    @ValidCron
+    private String blobsCleanupCron = CronConstant.DEFAULT_STORAGE_BLOBS_CLEANUP_CRON;
+
+    @Description("The files no longer referenced will be deleted only if they have not been modified " +
+            "for the grace period in minutes so that the files being uploaded are not deleted")
+    @Min(1)
+    private int orphanedBlobGracePeriodMinutes = 60;
+
+}
@@ -21,6 +21,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.util.MimeTypeUtils;
 
 import javax.validation.constraints.Min;
@@ -68,4 +69,7 @@ public class StorageProperties {
 
     private Duration signatureDurationForPut = Duration.ofMinutes(5);
 
+    @NestedConfigurationProperty
+    private LocalStorageProperties local = new LocalStorageProperties();
+
 }
\ No newline at end of file
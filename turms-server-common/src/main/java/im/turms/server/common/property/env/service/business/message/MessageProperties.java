@@ -83,6 +83,52 @@ public class MessageProperties {
     @ValidCron
     private String expiredMessagesCleanupCron = CronConstant.DEFAULT_EXPIRED_MESSAGES_CLEANUP_CRON;
 
+    @Description("The number of expired messages to delete per batch")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int expiredMessagesDeletionBatchSize = 1000;
+
+    @Description("The maximum number of batches of expired messages to delete concurrently")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int expiredMessagesDeletionConcurrency = 2;
+
+    @Description("The minimum interval between two batches of expired messages to delete " +
+            "so that the cleanup doesn't saturate MongoDB. 0 means no rate limit")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(0)
+    private int expiredMessagesDeletionBatchIntervalMillis = 100;
+
+    @Description("Messages will be moved from the message collection to the message archive collection " +
+            "after the days have elapsed. 0 means never archive messages. " +
+            "Archived messages are read-only and can only be queried and counted with target IDs or a delivery date range " +
+            "with a start date. They cannot be recalled, updated, deleted by IDs, paginated by cursors or exported")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(0)
+    private int archiveMessagesAfterDays;
+
+    @Description("Archive the cold messages when the cron expression is triggered")
+    @GlobalProperty
+    @ValidCron
+    private String coldMessagesArchivingCron = CronConstant.DEFAULT_COLD_MESSAGES_ARCHIVING_CRON;
+
+    @Description("The number of messages to move to the message archive collection per batch")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int messagesArchivingBatchSize = 1000;
+
+    @Description("The maximum number of messages in a bucket of the message archive collection. " +
+            "A bucket is also capped by the size of its messages so that it stays below the document size limit of MongoDB")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int maxMessagesPerArchiveBucket = 500;
+
     @Description("Whether to delete messages logically by default")
     @GlobalProperty
     @JsonView(MutablePropertiesView.class)
@@ -97,4 +97,8 @@ public class AdminApiProperties {
     @NestedConfigurationProperty
     private AddressProperties address = new AddressProperties();
 
+    @JsonView(MutablePropertiesView.class)
+    @NestedConfigurationProperty
+    private StatisticsRollupProperties statisticsRollup = new StatisticsRollupProperties();
+
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.property.env.service.env;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import im.turms.server.common.constant.CronConstant;
+import im.turms.server.common.constraint.ValidCron;
+import im.turms.server.common.property.metadata.annotation.Description;
+import im.turms.server.common.property.metadata.annotation.GlobalProperty;
+import im.turms.server.common.property.metadata.view.MutablePropertiesView;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Min;
+
+/**
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@Data
+@NoArgsConstructor
+public class StatisticsRollupProperties {
+
+    @Description("Whether to serve the statistics of closed hours and days from the pre-aggregated rollups " +
+            "instead of counting the raw collections")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    private boolean enabled = true;
+
+    @Description("Compute the rollups of the closed hours and days when the cron expression is triggered")
+    @ValidCron
+    private String rollupCron = CronConstant.DEFAULT_STATISTICS_ROLLUP_CRON;
+
+    @Description("The maximum number of past hours to look back for the rollups that have not been computed yet")
+    @GlobalProperty
+    @JsonView(MutablePropertiesView.class)
+    @Min(1)
+    private int maxBackfillHours = 7 * 24;
+
+}
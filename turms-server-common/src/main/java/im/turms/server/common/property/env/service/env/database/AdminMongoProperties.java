@@ -18,4 +18,6 @@ import lombok.NoArgsConstructor;
 public class AdminMongoProperties extends TurmsMongoProperties {
     private WriteConcern adminWriteConcern = WriteConcern.MAJORITY;
     private WriteConcern adminRoleWriteConcern = WriteConcern.MAJORITY;
+    private WriteConcern statisticsRollupWriteConcern = WriteConcern.ACKNOWLEDGED;
+    private WriteConcern deletionJobWriteConcern = WriteConcern.MAJORITY;
 }
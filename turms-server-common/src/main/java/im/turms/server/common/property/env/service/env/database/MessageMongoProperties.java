@@ -20,6 +20,12 @@ public class MessageMongoProperties extends TurmsMongoProperties {
 
     private WriteConcern messageWriteConcern = WriteConcern.ACKNOWLEDGED;
 
+    private WriteConcern messageArchiveWriteConcern = WriteConcern.ACKNOWLEDGED;
+
+    private WriteConcern storageObjectWriteConcern = WriteConcern.ACKNOWLEDGED;
+
+    private WriteConcern storageUsageWriteConcern = WriteConcern.ACKNOWLEDGED;
+
     @NestedConfigurationProperty
     private MultiTemperatureProperties temperature = new MultiTemperatureProperties();
 
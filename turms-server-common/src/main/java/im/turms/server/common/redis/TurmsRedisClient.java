@@ -21,6 +21,7 @@ import im.turms.server.common.redis.codec.TurmsRedisCodecAdapter;
 import im.turms.server.common.redis.codec.context.RedisCodecContext;
 import im.turms.server.common.redis.command.TurmsCommandEncoder;
 import im.turms.server.common.redis.script.RedisScript;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.util.ByteBufUtil;
 import io.lettuce.core.AbstractRedisReactiveCommands;
 import io.lettuce.core.GeoArgs;
@@ -65,6 +66,14 @@ import static io.lettuce.core.protocol.CommandType.GEORADIUSBYMEMBER;
 @Data
 public class TurmsRedisClient {
 
+    private static final String SPAN_NAME_HDEL = "redis.hdel";
+    private static final String SPAN_NAME_HGETALL = "redis.hgetall";
+    private static final String SPAN_NAME_GEOADD = "redis.geoadd";
+    private static final String SPAN_NAME_GEOPOS = "redis.geopos";
+    private static final String SPAN_NAME_GEORADIUSBYMEMBER = "redis.georadiusbymember";
+    private static final String SPAN_NAME_GEOREM = "redis.georem";
+    private static final String SPAN_NAME_EVAL = "redis.eval";
+
     private final DefaultClientResources resources;
 
     private final RedisClient nativeClient;
@@ -124,11 +133,12 @@ public class TurmsRedisClient {
     public Mono<Long> hdel(Object key, Object... fields) {
         ByteBuf keyBuffer = serializationContext.encodeHashKey(key);
         ByteBuf[] fieldBuffers = serializationContext.encodeHashFields(fields);
-        return commands.hdel(keyBuffer, fieldBuffers)
+        Mono<Long> mono = commands.hdel(keyBuffer, fieldBuffers)
                 .doFinally(signal -> {
                     ByteBufUtil.ensureReleased(keyBuffer);
                     ByteBufUtil.ensureReleased(fieldBuffers);
                 });
+        return Tracer.getGlobal().trace(mono, SPAN_NAME_HDEL);
     }
 
     public <K, V> Flux<Map.Entry<K, V>> hgetall(K key) {
@@ -141,8 +151,9 @@ public class TurmsRedisClient {
                     }
                     return Mono.just(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue()));
                 });
-        return entryFlux
+        entryFlux = entryFlux
                 .doFinally(signal -> ByteBufUtil.ensureReleased(keyBuffer));
+        return Tracer.getGlobal().trace(entryFlux, SPAN_NAME_HGETALL);
     }
 
     // Geo
@@ -150,22 +161,24 @@ public class TurmsRedisClient {
     public Mono<Long> geoadd(Object key, Point coordinates, Object member) {
         ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
         ByteBuf memberBuffer = serializationContext.encodeGeoMember(member);
-        return commands.geoadd(keyBuffer, coordinates.getX(), coordinates.getY(), memberBuffer)
+        Mono<Long> mono = commands.geoadd(keyBuffer, coordinates.getX(), coordinates.getY(), memberBuffer)
                 .doFinally(signal -> {
                     ByteBufUtil.ensureReleased(keyBuffer);
                     ByteBufUtil.ensureReleased(memberBuffer);
                 });
+        return Tracer.getGlobal().trace(mono, SPAN_NAME_GEOADD);
     }
 
     public Flux<GeoCoordinates> geopos(Object key, Object... members) {
         ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
         ByteBuf[] memberBuffers = serializationContext.encodeGeoMembers(members);
-        return commands.geopos(keyBuffer, memberBuffers)
+        Flux<GeoCoordinates> flux = commands.geopos(keyBuffer, memberBuffers)
                 .flatMap(value -> value.isEmpty() ? Mono.empty() : Mono.just(value.getValue()))
                 .doFinally(signal -> {
                     ByteBufUtil.ensureReleased(keyBuffer);
                     ByteBufUtil.ensureReleased(memberBuffers);
                 });
+        return Tracer.getGlobal().trace(flux, SPAN_NAME_GEOPOS);
     }
 
     public <T> Flux<GeoWithin<T>> georadiusbymember(Object key, Object member, double distanceMeters, GeoArgs geoArgs) {
@@ -173,7 +186,7 @@ public class TurmsRedisClient {
         ByteBuf memberBuffer = serializationContext.encodeGeoMember(member);
         Flux<GeoWithin<T>> flux = commands.createDissolvingFlux(() -> commandBuilder
                 .georadiusbymember(GEORADIUSBYMEMBER, keyBuffer, memberBuffer, distanceMeters, GeoArgs.Unit.m.name(), geoArgs));
-        return flux
+        flux = flux
                 .onErrorResume(RedisCommandExecutionException.class, e -> {
                     String message = e.getMessage();
                     if (message != null && message.endsWith("could not decode requested zset member")) {
@@ -185,16 +198,18 @@ public class TurmsRedisClient {
                     ByteBufUtil.ensureReleased(keyBuffer);
                     ByteBufUtil.ensureReleased(memberBuffer);
                 });
+        return Tracer.getGlobal().trace(flux, SPAN_NAME_GEORADIUSBYMEMBER);
     }
 
     public Mono<Long> georem(Object key, Object... members) {
         ByteBuf keyBuffer = serializationContext.encodeGeoKey(key);
         ByteBuf[] memberBuffers = serializationContext.encodeGeoMembers(members);
-        return commands.zrem(keyBuffer, memberBuffers)
+        Mono<Long> mono = commands.zrem(keyBuffer, memberBuffers)
                 .doFinally(signal -> {
                     ByteBufUtil.ensureReleased(keyBuffer);
                     ByteBufUtil.ensureReleased(memberBuffers);
                 });
+        return Tracer.getGlobal().trace(mono, SPAN_NAME_GEOREM);
     }
 
     // Scripting
@@ -203,7 +218,7 @@ public class TurmsRedisClient {
         for (ByteBuf key : keys) {
             key.retain();
         }
-        return (Mono<T>) commands
+        Mono<T> mono = (Mono<T>) commands
                 .createFlux(() -> commandBuilder.evalsha(script.getDigest(), script.getOutputType(), keys))
                 .onErrorResume(e -> {
                     if (exceptionContainsNoScriptException(e)) {
@@ -220,6 +235,7 @@ public class TurmsRedisClient {
                     }
                 })
                 .single();
+        return Tracer.getGlobal().trace(mono, SPAN_NAME_EVAL);
     }
 
     private static boolean exceptionContainsNoScriptException(Throwable e) {
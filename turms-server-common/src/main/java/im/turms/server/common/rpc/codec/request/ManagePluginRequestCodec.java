@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.rpc.codec.request;
+
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.server.common.rpc.request.ManagePluginRequest;
+import im.turms.server.common.util.CodecUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * @author James Chen
+ */
+public class ManagePluginRequestCodec extends RpcRequestCodec<ManagePluginRequest> {
+
+    private static final PluginAction[] ACTIONS = PluginAction.values();
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_MANAGE_PLUGIN;
+    }
+
+    @Override
+    public void writeRequestData(ByteBuf output, ManagePluginRequest data) {
+        output.writeByte(data.getAction().ordinal());
+        CodecUtil.writeString(output, data.getPluginId());
+        CodecUtil.writeString(output, data.getPath());
+    }
+
+    @Override
+    public ManagePluginRequest readRequestData(ByteBuf input) {
+        PluginAction action = ACTIONS[input.readByte()];
+        String pluginId = CodecUtil.readString(input);
+        String path = CodecUtil.readString(input);
+        return new ManagePluginRequest(action, pluginId, path);
+    }
+
+    @Override
+    public int initialCapacityForRequest(ManagePluginRequest data) {
+        return Byte.BYTES
+                + Short.BYTES + getStringLength(data.getPluginId())
+                + Short.BYTES + getStringLength(data.getPath());
+    }
+
+    private int getStringLength(String str) {
+        return str == null ? 0 : ByteBufUtil.utf8Bytes(str);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.rpc.codec.request;
+
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.rpc.request.QueryTraceSpansRequest;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Set;
+
+/**
+ * @author James Chen
+ */
+public class QueryTraceSpansRequestCodec extends RpcRequestCodec<QueryTraceSpansRequest> {
+
+    private static final int NO_TRACE_IDS = -1;
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.RPC_QUERY_TRACE_SPANS;
+    }
+
+    @Override
+    public void writeRequestData(ByteBuf output, QueryTraceSpansRequest data) {
+        output.writeInt(data.getMaxSlowTraces());
+        Set<Long> traceIds = data.getTraceIds();
+        if (traceIds == null) {
+            output.writeInt(NO_TRACE_IDS);
+            return;
+        }
+        output.writeInt(traceIds.size());
+        for (Long traceId : traceIds) {
+            output.writeLong(traceId);
+        }
+    }
+
+    @Override
+    public QueryTraceSpansRequest readRequestData(ByteBuf input) {
+        int maxSlowTraces = input.readInt();
+        int size = input.readInt();
+        Set<Long> traceIds = null;
+        if (size != NO_TRACE_IDS) {
+            traceIds = Set.of(readTraceIds(input, size));
+        }
+        return new QueryTraceSpansRequest(traceIds, maxSlowTraces);
+    }
+
+    @Override
+    public int initialCapacityForRequest(QueryTraceSpansRequest data) {
+        Set<Long> traceIds = data.getTraceIds();
+        return Integer.BYTES * 2 + (traceIds == null ? 0 : traceIds.size() * Long.BYTES);
+    }
+
+    private Long[] readTraceIds(ByteBuf input, int size) {
+        Long[] traceIds = new Long[size];
+        for (int i = 0; i < size; i++) {
+            traceIds[i] = input.readLong();
+        }
+        return traceIds;
+    }
+
+}
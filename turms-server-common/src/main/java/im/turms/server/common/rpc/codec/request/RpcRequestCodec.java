@@ -28,31 +28,80 @@ import io.netty.buffer.ByteBuf;
  * a part of the data (e.g. without requestId), this is because we want to decouple the header
  * and body so that we can reuse and flush the same buffer of body to multiple peers without duplicating
  * while using different headers according for different peers
+ * <p>
+ * Schema versions:
+ * 1. traceId + timeout + request data;
+ * 2. traceId + timeout + spanId + sampled + request data.
+ * The impls should use versions greater than {@link #SPAN_CONTEXT_SCHEMA_VERSION}
+ * if they change the schema of their request data
  */
 public abstract class RpcRequestCodec<T extends RpcRequest<?>> implements Codec<T> {
 
+    /**
+     * The schema version since which the span context is propagated to peers
+     */
+    public static final int SPAN_CONTEXT_SCHEMA_VERSION = 2;
+
     private static final int TRACE_ID_LENGTH = Long.BYTES;
+    private static final int TIMEOUT_LENGTH = Long.BYTES;
+    private static final int SPAN_CONTEXT_LENGTH = Long.BYTES + Byte.BYTES;
+
+    @Override
+    public int getSchemaVersion() {
+        return SPAN_CONTEXT_SCHEMA_VERSION;
+    }
 
     @Override
     public int initialCapacity(T data) {
-        return TRACE_ID_LENGTH + initialCapacityForRequest(data);
+        return TRACE_ID_LENGTH + TIMEOUT_LENGTH + SPAN_CONTEXT_LENGTH + initialCapacityForRequest(data);
     }
 
     @Override
     public void write(ByteBuf output, T data) {
+        write(output, data, getSchemaVersion());
+    }
+
+    @Override
+    public void write(ByteBuf output, T data, int schemaVersion) {
         TracingContext tracingContext = data.getTracingContext();
         if (!tracingContext.hasTraceId()) {
             throw new IllegalArgumentException("Cannot get the trace ID in the request: " + data.name());
         }
         output.writeLong(tracingContext.getTraceId());
-        writeRequestData(output, data);
+        // Send the remaining time instead of the deadline itself
+        // so that the deadline doesn't depend on the clocks of nodes being synchronized
+        output.writeLong(data.hasDeadline()
+                ? data.getDeadline() - System.currentTimeMillis()
+                : RpcRequest.NO_DEADLINE);
+        if (schemaVersion >= SPAN_CONTEXT_SCHEMA_VERSION) {
+            output.writeLong(tracingContext.getSpanId());
+            output.writeBoolean(tracingContext.isSampled());
+        }
+        writeRequestData(output, data, schemaVersion);
     }
 
     @Override
     public T read(ByteBuf in) {
+        return read(in, getSchemaVersion());
+    }
+
+    @Override
+    public T read(ByteBuf in, int schemaVersion) {
         long traceId = in.readLong();
-        T request = readRequestData(in);
-        request.setTracingContext(new TracingContext(traceId));
+        long timeoutMillis = in.readLong();
+        TracingContext tracingContext;
+        if (schemaVersion >= SPAN_CONTEXT_SCHEMA_VERSION) {
+            long spanId = in.readLong();
+            boolean sampled = in.readBoolean();
+            tracingContext = new TracingContext(traceId, spanId, sampled);
+        } else {
+            tracingContext = new TracingContext(traceId);
+        }
+        T request = readRequestData(in, schemaVersion);
+        request.setTracingContext(tracingContext);
+        if (timeoutMillis != RpcRequest.NO_DEADLINE) {
+            request.setDeadline(System.currentTimeMillis() + timeoutMillis);
+        }
         return request;
     }
 
@@ -62,6 +111,22 @@ public abstract class RpcRequestCodec<T extends RpcRequest<?>> implements Codec<
         // TODO
     }
 
+    /**
+     * Override it instead of {@link #writeRequestData(ByteBuf, RpcRequest)}
+     * if the codec supports multiple schema versions
+     */
+    protected void writeRequestData(ByteBuf output, T data, int schemaVersion) {
+        writeRequestData(output, data);
+    }
+
     protected abstract T readRequestData(ByteBuf input);
 
+    /**
+     * Override it instead of {@link #readRequestData(ByteBuf)}
+     * if the codec supports multiple schema versions
+     */
+    protected T readRequestData(ByteBuf input, int schemaVersion) {
+        return readRequestData(input);
+    }
+
 }
\ No newline at end of file
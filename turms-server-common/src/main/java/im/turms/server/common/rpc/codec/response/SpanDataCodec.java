@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.rpc.codec.response;
+
+import im.turms.server.common.cluster.service.codec.codec.Codec;
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.util.CodecUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author James Chen
+ */
+public class SpanDataCodec implements Codec<SpanData> {
+
+    @Override
+    public CodecId getCodecId() {
+        return CodecId.BO_TRACING_SPAN;
+    }
+
+    @Override
+    public void write(ByteBuf output, SpanData data) {
+        output.writeLong(data.traceId())
+                .writeLong(data.spanId())
+                .writeLong(data.parentSpanId());
+        CodecUtil.writeString(output, data.name());
+        CodecUtil.writeString(output, data.nodeId());
+        output.writeLong(data.startEpochMicros())
+                .writeLong(data.durationMicros());
+        CodecUtil.writeString(output, data.error());
+        Map<String, String> tags = data.tags();
+        output.writeShort(tags.size());
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            CodecUtil.writeString(output, entry.getKey());
+            CodecUtil.writeString(output, entry.getValue());
+        }
+    }
+
+    @Override
+    public SpanData read(ByteBuf input) {
+        long traceId = input.readLong();
+        long spanId = input.readLong();
+        long parentSpanId = input.readLong();
+        String name = CodecUtil.readString(input);
+        String nodeId = CodecUtil.readString(input);
+        long startEpochMicros = input.readLong();
+        long durationMicros = input.readLong();
+        String error = CodecUtil.readString(input);
+        int tagCount = input.readShort();
+        Map<String, String> tags;
+        if (tagCount == 0) {
+            tags = Collections.emptyMap();
+        } else {
+            tags = new HashMap<>(tagCount * 2);
+            for (int i = 0; i < tagCount; i++) {
+                tags.put(CodecUtil.readString(input), CodecUtil.readString(input));
+            }
+        }
+        return new SpanData(traceId, spanId, parentSpanId, name, nodeId, startEpochMicros, durationMicros, error, tags);
+    }
+
+    @Override
+    public int initialCapacity(SpanData data) {
+        int capacity = Long.BYTES * 5
+                + getStringLength(data.name())
+                + getStringLength(data.nodeId())
+                + getStringLength(data.error())
+                + Short.BYTES;
+        for (Map.Entry<String, String> entry : data.tags().entrySet()) {
+            capacity += getStringLength(entry.getKey()) + getStringLength(entry.getValue());
+        }
+        return capacity;
+    }
+
+    private int getStringLength(String str) {
+        return Short.BYTES + (str == null ? 0 : ByteBufUtil.utf8Bytes(str));
+    }
+
+}
@@ -52,6 +52,11 @@ public class CountOnlineUsersRequest extends RpcRequest<Integer> {
         return false;
     }
 
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) {
         super.setApplicationContext(applicationContext);
@@ -28,6 +28,29 @@ import lombok.Data;
 import org.springframework.context.ApplicationContext;
 import reactor.core.publisher.Mono;
 
+import java.util.EnumSet;
+import java.util.Set;
+
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_CONVERSATIONS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_FRIEND_REQUESTS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_BLOCKED_USER_IDS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_BLOCKED_USER_INFOS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_INVITATIONS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_JOIN_QUESTIONS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_JOIN_REQUESTS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_MEMBERS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_GROUP_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_JOINED_GROUP_IDS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_JOINED_GROUP_INFOS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_MESSAGES_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_RELATED_USER_IDS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_RELATIONSHIPS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_RELATIONSHIP_GROUPS_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_SIGNED_GET_URL_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_SIGNED_PUT_URL_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_USER_ONLINE_STATUSES_REQUEST;
+import static im.turms.common.model.dto.request.TurmsRequest.KindCase.QUERY_USER_PROFILE_REQUEST;
+
 /**
  * @author James Chen
  */
@@ -36,6 +59,31 @@ public class HandleServiceRequest extends RpcRequest<ServiceResponse> {
 
     private static final String NAME = "handleServiceRequest";
     private static final String METRICS_TAG_CLIENT_REQUEST_TYPE = "type";
+    /**
+     * The client requests that don't change any data.
+     * Note that QUERY_NEARBY_USERS_REQUEST isn't included because it updates the location of the requester
+     */
+    private static final Set<TurmsRequest.KindCase> READ_ONLY_REQUEST_TYPES = EnumSet.of(
+            QUERY_CONVERSATIONS_REQUEST,
+            QUERY_MESSAGES_REQUEST,
+            QUERY_GROUP_MEMBERS_REQUEST,
+            QUERY_USER_PROFILE_REQUEST,
+            QUERY_USER_ONLINE_STATUSES_REQUEST,
+            QUERY_FRIEND_REQUESTS_REQUEST,
+            QUERY_RELATED_USER_IDS_REQUEST,
+            QUERY_RELATIONSHIP_GROUPS_REQUEST,
+            QUERY_RELATIONSHIPS_REQUEST,
+            QUERY_GROUP_REQUEST,
+            QUERY_JOINED_GROUP_IDS_REQUEST,
+            QUERY_JOINED_GROUP_INFOS_REQUEST,
+            QUERY_GROUP_BLOCKED_USER_IDS_REQUEST,
+            QUERY_GROUP_BLOCKED_USER_INFOS_REQUEST,
+            QUERY_GROUP_INVITATIONS_REQUEST,
+            QUERY_GROUP_JOIN_REQUESTS_REQUEST,
+            QUERY_GROUP_JOIN_QUESTIONS_REQUEST,
+            QUERY_SIGNED_GET_URL_REQUEST,
+            QUERY_SIGNED_PUT_URL_REQUEST);
+
     private static IServiceRequestDispatcher dispatcher;
 
     private final ServiceRequest serviceRequest;
@@ -84,6 +132,16 @@ public class HandleServiceRequest extends RpcRequest<ServiceResponse> {
         return true;
     }
 
+    /**
+     * @implNote The type of the service request is only available on the caller side,
+     * which is where it matters
+     */
+    @Override
+    public boolean isIdempotent() {
+        TurmsRequest.KindCase type = serviceRequest.getType();
+        return type != null && READ_ONLY_REQUEST_TYPES.contains(type);
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) {
         super.setApplicationContext(applicationContext);
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.rpc.request;
+
+import im.turms.server.common.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.plugin.base.AbstractTurmsPluginManager;
+import im.turms.server.common.plugin.constant.PluginAction;
+import lombok.Data;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Applies a plugin lifecycle action on the peer so that all members keep the same plugin state
+ *
+ * @author James Chen
+ */
+@Data
+public class ManagePluginRequest extends RpcRequest<Boolean> {
+
+    private static final String NAME = "managePlugin";
+    private static AbstractTurmsPluginManager pluginManager;
+
+    private final PluginAction action;
+    @Nullable
+    private final String pluginId;
+    @Nullable
+    private final String path;
+
+    public ManagePluginRequest(@NotNull PluginAction action, @Nullable String pluginId, @Nullable String path) {
+        this.action = action;
+        this.pluginId = pluginId;
+        this.path = path;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRequest() {
+        return NodeTypeToHandleRpc.SERVICE;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRespond() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        super.setApplicationContext(applicationContext);
+        if (pluginManager == null) {
+            pluginManager = getBean(AbstractTurmsPluginManager.class);
+        }
+    }
+
+    @Override
+    public Mono<Boolean> callAsync() {
+        return pluginManager.handle(action, pluginId, path)
+                .thenReturn(true);
+    }
+
+}
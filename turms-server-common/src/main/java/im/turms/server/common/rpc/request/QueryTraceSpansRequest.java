@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.rpc.request;
+
+import im.turms.server.common.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.tracing.Tracer;
+import lombok.Data;
+import reactor.core.publisher.Flux;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Queries the spans recorded on the peer for troubleshooting slow traces across the cluster.
+ * The spans are streamed one by one because all of them may not fit in a single frame
+ *
+ * @author James Chen
+ */
+@Data
+public class QueryTraceSpansRequest extends RpcRequest<SpanData> {
+
+    private static final String NAME = "queryTraceSpans";
+
+    /**
+     * Null to query the spans of the recent slow traces found on the peer
+     */
+    @Nullable
+    private final Set<Long> traceIds;
+    private final int maxSlowTraces;
+
+    public QueryTraceSpansRequest(@Nullable Set<Long> traceIds, int maxSlowTraces) {
+        this.traceIds = traceIds;
+        this.maxSlowTraces = maxSlowTraces;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRequest() {
+        return NodeTypeToHandleRpc.SERVICE;
+    }
+
+    @Override
+    public NodeTypeToHandleRpc nodeTypeToRespond() {
+        return NodeTypeToHandleRpc.BOTH;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public boolean isStream() {
+        return true;
+    }
+
+    @Override
+    public Flux<SpanData> callStream() {
+        return Flux.defer(() -> {
+            Tracer tracer = Tracer.getGlobal();
+            Collection<Long> ids = traceIds == null
+                    ? tracer.getRecentSlowTraceIds(maxSlowTraces)
+                    : traceIds;
+            return Flux.fromIterable(tracer.getRecentSpans(ids));
+        });
+    }
+
+}
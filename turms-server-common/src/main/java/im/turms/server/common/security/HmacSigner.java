@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.server.common.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Signs and verifies data with HMAC-SHA256.
+ * The instance is thread-safe because the initialized prototype of Mac is cloned for every use.
+ *
+ * @author James Chen
+ */
+public final class HmacSigner {
+
+    public static final String ALGORITHM = "HmacSHA256";
+    public static final int SIGNATURE_LENGTH = 32;
+
+    private final Mac prototype;
+
+    /**
+     * @throws IllegalArgumentException if the secret is empty or invalid
+     */
+    public HmacSigner(byte[] secret) {
+        try {
+            prototype = Mac.getInstance(ALGORITHM);
+            prototype.init(new SecretKeySpec(secret, ALGORITHM));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The algorithm " + ALGORITHM + " is unsupported", e);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("Invalid secret", e);
+        }
+    }
+
+    public byte[] sign(byte[] data) {
+        return sign(data, 0, data.length);
+    }
+
+    public byte[] sign(byte[] data, int offset, int length) {
+        Mac mac = newMac();
+        mac.update(data, offset, length);
+        return mac.doFinal();
+    }
+
+    public boolean verify(byte[] data, byte[] signature) {
+        return signature.length == SIGNATURE_LENGTH
+                && verify(data, 0, data.length, signature, 0);
+    }
+
+    /**
+     * @return true if the {@link #SIGNATURE_LENGTH} bytes of the signature starting from signatureOffset
+     * are the signature of the data.
+     * The bytes are compared in constant time so that the signature cannot be guessed byte by byte by timing
+     */
+    public boolean verify(byte[] data, int offset, int length, byte[] signature, int signatureOffset) {
+        if (signatureOffset < 0 || signature.length - signatureOffset < SIGNATURE_LENGTH) {
+            return false;
+        }
+        byte[] expected = sign(data, offset, length);
+        int result = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            result |= expected[i] ^ signature[signatureOffset + i];
+        }
+        return result == 0;
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
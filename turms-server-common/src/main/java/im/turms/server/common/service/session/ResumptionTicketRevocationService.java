@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.server.common.service.session;
+
+import im.turms.common.constant.DeviceType;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.redis.TurmsRedisClientManager;
+import im.turms.server.common.redis.script.RedisScript;
+import io.lettuce.core.ScriptOutputType;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Records consumed and revoked session resumption tickets in the revocation hash of the user in Redis.
+ * It is shared by turms-gateway, which consumes tickets, and turms, which revokes tickets
+ * when users are deleted or inactivated or their passwords are changed.
+ * <pre>
+ * +-------------+-------------------------------+-----------------------------+
+ * |     Key     |             Field             |            Value            |
+ * +-------------+-------------------------------+-----------------------------+
+ * |             |      123 (Ticket ID)          |              1              |
+ * |             +-------------------------------+-----------------------------+
+ * |  rt:123456  |               b               | Revoked before (in seconds) |
+ * |             +-------------------------------+-----------------------------+
+ * |             |   b:1 (Device type number)    | Revoked before (in seconds) |
+ * +-------------+-------------------------------+-----------------------------+
+ * </pre>
+ *
+ * @author James Chen
+ */
+@Service
+public class ResumptionTicketRevocationService {
+
+    private static final String REVOCATION_KEY_PREFIX = "rt:";
+    private static final String REVOKED_BEFORE_FIELD = "b";
+    private static final String DEVICE_REVOKED_BEFORE_FIELD_PREFIX = "b:";
+    private static final Duration OPERATION_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final RedisScript CONSUME_TICKET_SCRIPT =
+            new RedisScript(new ClassPathResource("redis/consume_resumption_ticket.lua"), ScriptOutputType.BOOLEAN);
+    private static final RedisScript REVOKE_TICKET_SCRIPT =
+            new RedisScript(new ClassPathResource("redis/revoke_resumption_ticket.lua"), ScriptOutputType.BOOLEAN);
+
+    private final Node node;
+    private final TurmsRedisClientManager sessionRedisClientManager;
+
+    public ResumptionTicketRevocationService(Node node, TurmsRedisClientManager sessionRedisClientManager) {
+        this.node = node;
+        this.sessionRedisClientManager = sessionRedisClientManager;
+    }
+
+    /**
+     * Checks whether the ticket has been revoked and consumes it in one script,
+     * so that a ticket can never be used twice even if it is replayed concurrently
+     *
+     * @return true if the ticket was neither consumed nor revoked
+     */
+    public Mono<Boolean> consumeTicket(long userId, DeviceType deviceType, long ticketId, long issueTimeMillis) {
+        Mono<Boolean> result = sessionRedisClientManager.eval(userId,
+                CONSUME_TICKET_SCRIPT,
+                REVOCATION_KEY_PREFIX + userId,
+                String.valueOf(ticketId),
+                String.valueOf(issueTimeMillis / 1000),
+                DEVICE_REVOKED_BEFORE_FIELD_PREFIX + deviceType.getNumber(),
+                String.valueOf(getTicketTtlSeconds()));
+        return result
+                .defaultIfEmpty(false)
+                .timeout(OPERATION_TIMEOUT);
+    }
+
+    /**
+     * Revokes all tickets issued to the device of the user before now (e.g. after the user logs out)
+     */
+    public Mono<Void> revokeAllTickets(long userId, @NotNull DeviceType deviceType) {
+        return revoke(userId, DEVICE_REVOKED_BEFORE_FIELD_PREFIX + deviceType.getNumber(), getRevokedBefore());
+    }
+
+    /**
+     * Revokes all tickets issued to the users before now
+     * (e.g. after the users are deleted or inactivated or their passwords are changed)
+     */
+    public Mono<Void> revokeAllTickets(@NotNull Set<Long> userIds) {
+        String revokedBefore = getRevokedBefore();
+        return Flux.fromIterable(userIds)
+                .flatMap(userId -> revoke(userId, REVOKED_BEFORE_FIELD, revokedBefore))
+                .then();
+    }
+
+    private Mono<Void> revoke(long userId, String field, String value) {
+        Mono<Boolean> result = sessionRedisClientManager.eval(userId,
+                REVOKE_TICKET_SCRIPT,
+                REVOCATION_KEY_PREFIX + userId,
+                field,
+                value,
+                String.valueOf(getTicketTtlSeconds()));
+        return result
+                .timeout(OPERATION_TIMEOUT)
+                .then();
+    }
+
+    /**
+     * Round up so that the tickets issued in the current second are revoked too
+     */
+    private String getRevokedBefore() {
+        return String.valueOf(System.currentTimeMillis() / 1000 + 1);
+    }
+
+    private int getTicketTtlSeconds() {
+        return node.getSharedProperties().getGateway().getSession().getResumption().getTicketTtlSeconds();
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing;
+
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A timed operation in a trace. Spans are created by {@link Tracer}
+ * and exported once they end.
+ *
+ * @author James Chen
+ * @implNote Tags should be added on the same reactive chain that ends the span,
+ * so they don't need to be thread-safe
+ */
+public class Span {
+
+    public static final String TAG_CANCELLED = "cancelled";
+
+    /**
+     * The span that records nothing, which is used if the trace isn't sampled
+     */
+    public static final Span NOOP = new Span(null, 0, 0, TracingContext.NO_SPAN_ID, "", false) {
+        @Override
+        public Span tag(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public void setError(Throwable throwable) {
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public TracingContext getContext() {
+            return TracingContext.NOOP;
+        }
+    };
+
+    private static final AtomicIntegerFieldUpdater<Span> ENDED =
+            AtomicIntegerFieldUpdater.newUpdater(Span.class, "ended");
+
+    private final Tracer tracer;
+    @Getter
+    private final long traceId;
+    @Getter
+    private final long spanId;
+    @Getter
+    private final long parentSpanId;
+    @Getter
+    private final String name;
+    /**
+     * Whether the span is the entry of the trace on the local node (e.g. the root span
+     * or the span to run a RPC request sent by peers), whose duration decides whether the trace is slow
+     */
+    @Getter
+    private final boolean entry;
+    private final long startEpochMicros;
+    private final long startNanos;
+    private final TracingContext context;
+    private Map<String, String> tags;
+    @Nullable
+    private String error;
+    private volatile int ended;
+
+    Span(Tracer tracer, long traceId, long spanId, long parentSpanId, String name, boolean entry) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.entry = entry;
+        startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        startNanos = System.nanoTime();
+        context = new TracingContext(traceId, spanId, true);
+    }
+
+    public Span tag(String key, Object value) {
+        if (tags == null) {
+            tags = new HashMap<>(8);
+        }
+        tags.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public void setError(Throwable throwable) {
+        error = throwable.toString();
+    }
+
+    public void end() {
+        if (ENDED.compareAndSet(this, 0, 1)) {
+            long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            tracer.onSpanEnded(this, durationMicros);
+        }
+    }
+
+    public void end(SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            tag(TAG_CANCELLED, true);
+        }
+        end();
+    }
+
+    public boolean isRecording() {
+        return true;
+    }
+
+    /**
+     * @return the context to propagate to the children of the span
+     */
+    public TracingContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return the context to propagate to the children of the span if the span is recording,
+     * or the parent context otherwise so that the trace ID is still propagated for logging
+     */
+    public TracingContext getContextOr(TracingContext parent) {
+        return isRecording() ? getContext() : parent;
+    }
+
+    public <T> Mono<T> endOnTermination(Mono<T> mono) {
+        if (!isRecording()) {
+            return mono;
+        }
+        return mono
+                .doOnError(this::setError)
+                .doFinally(this::end);
+    }
+
+    public <T> Flux<T> endOnTermination(Flux<T> flux) {
+        if (!isRecording()) {
+            return flux;
+        }
+        return flux
+                .doOnError(this::setError)
+                .doFinally(this::end);
+    }
+
+    SpanData toData(String nodeId, long durationMicros) {
+        return new SpanData(traceId,
+                spanId,
+                parentSpanId,
+                name,
+                nodeId,
+                startEpochMicros,
+                durationMicros,
+                error,
+                tags == null ? Collections.emptyMap() : tags);
+    }
+
+}
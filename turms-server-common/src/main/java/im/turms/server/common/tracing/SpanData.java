@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * The immutable snapshot of an ended span, which is exported and transferred between nodes
+ *
+ * @param parentSpanId      {@link TracingContext#NO_SPAN_ID} if the span is the root span of the trace
+ * @param nodeId            the ID of the node that records the span
+ * @param startEpochMicros  the start time in microseconds since the epoch
+ * @param durationMicros    the duration in microseconds
+ * @param error             the error that the span ends with, or null if it succeeds
+ * @param tags              the tags to describe the operation, e.g. the collection name of a MongoDB operation
+ * @author James Chen
+ */
+public record SpanData(
+        long traceId,
+        long spanId,
+        long parentSpanId,
+        String name,
+        String nodeId,
+        long startEpochMicros,
+        long durationMicros,
+        @Nullable String error,
+        Map<String, String> tags
+) {
+
+    public boolean isRoot() {
+        return parentSpanId == TracingContext.NO_SPAN_ID;
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing;
+
+import im.turms.common.util.RandomUtil;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.logging.RequestLoggingContext;
+import im.turms.server.common.property.env.common.TracingProperties;
+import im.turms.server.common.tracing.exporter.InMemorySpanExporter;
+import im.turms.server.common.tracing.exporter.SpanExporter;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates spans for the sampled traces, keeps the recent spans and slow traces in memory,
+ * and exports ended spans.
+ * <p>
+ * A trace is sampled by the node that receives the client request or the admin request,
+ * and the sampling decision is propagated with the span context:
+ * 1. in the Reactor context ({@link TracingContext#CTX_KEY_NAME} or {@link RequestLoggingContext}) on the local node;
+ * 2. in {@link im.turms.server.common.cluster.service.rpc.dto.RpcRequest} to peers.
+ *
+ * @author James Chen
+ */
+@Log4j2
+public class Tracer {
+
+    /**
+     * For the clients (e.g. MongoDB and Redis clients) that aren't managed by Spring to access,
+     * we use static.
+     */
+    @Getter
+    @Setter
+    private static volatile Tracer global = new Tracer(new TracingProperties(), span -> {
+    });
+
+    private final boolean enabled;
+    private final float sampleRate;
+    private final long slowTraceThresholdMicros;
+    private final int maxSlowTraces;
+    private final InMemorySpanExporter recentSpans;
+    private final SpanExporter exporter;
+    /**
+     * The trace IDs of the recent slow traces in the order they were found
+     */
+    private final ArrayDeque<Long> slowTraceIds;
+
+    public Tracer(TracingProperties properties, SpanExporter exporter) {
+        enabled = properties.isEnabled();
+        sampleRate = properties.getSampleRate();
+        slowTraceThresholdMicros = TimeUnit.MILLISECONDS.toMicros(properties.getSlowTraceThresholdMillis());
+        maxSlowTraces = properties.getMaxSlowTraces();
+        recentSpans = new InMemorySpanExporter(enabled ? properties.getMaxRecentSpans() : 0);
+        this.exporter = exporter;
+        slowTraceIds = new ArrayDeque<>(Math.min(maxSlowTraces, 128));
+    }
+
+    /**
+     * @return the context of a new trace, which is sampled according to the sample rate
+     */
+    public TracingContext newRootContext() {
+        boolean sampled = enabled
+                && sampleRate > 0
+                && (sampleRate >= 1.0f || ThreadLocalRandom.current().nextFloat() < sampleRate);
+        return new TracingContext(RandomUtil.nextPositiveLong(), TracingContext.NO_SPAN_ID, sampled);
+    }
+
+    /**
+     * @return {@link Span#NOOP} if the parent isn't sampled or tracing is disabled
+     */
+    public Span startSpan(@Nullable TracingContext parent, String name) {
+        return startSpan(parent, name, false);
+    }
+
+    /**
+     * Start the span that is the entry of the trace on the local node
+     * (e.g. the root span of a client request or the span to run a RPC request sent by peers),
+     * and the trace is considered slow if the entry span is slow
+     *
+     * @return {@link Span#NOOP} if the parent isn't sampled or tracing is disabled
+     */
+    public Span startEntrySpan(@Nullable TracingContext parent, String name) {
+        return startSpan(parent, name, true);
+    }
+
+    private Span startSpan(@Nullable TracingContext parent, String name, boolean entry) {
+        if (!enabled || parent == null || !parent.isSampled()) {
+            return Span.NOOP;
+        }
+        return new Span(this, parent.getTraceId(), RandomUtil.nextPositiveLong(), parent.getSpanId(), name, entry);
+    }
+
+    /**
+     * Record the span of the source as a child of the span in the subscriber context
+     */
+    public <T> Mono<T> trace(Mono<T> source, String name) {
+        return trace(source, name, null, null);
+    }
+
+    /**
+     * Record the span of the source as a child of the span in the subscriber context
+     */
+    public <T> Mono<T> trace(Mono<T> source, String name, @Nullable String tagKey, @Nullable Object tagValue) {
+        if (!enabled) {
+            return source;
+        }
+        return Mono.deferContextual(context -> {
+            Span span = startSpan(readContext(context), name);
+            if (!span.isRecording()) {
+                return source;
+            }
+            if (tagKey != null) {
+                span.tag(tagKey, tagValue);
+            }
+            return span.endOnTermination(source)
+                    .contextWrite(ctx -> ctx.put(TracingContext.CTX_KEY_NAME, span.getContext()));
+        });
+    }
+
+    /**
+     * Record the span of the source as a child of the span in the subscriber context
+     */
+    public <T> Flux<T> trace(Flux<T> source, String name) {
+        return trace(source, name, null, null);
+    }
+
+    /**
+     * Record the span of the source as a child of the span in the subscriber context
+     */
+    public <T> Flux<T> trace(Flux<T> source, String name, @Nullable String tagKey, @Nullable Object tagValue) {
+        if (!enabled) {
+            return source;
+        }
+        return Flux.deferContextual(context -> {
+            Span span = startSpan(readContext(context), name);
+            if (!span.isRecording()) {
+                return source;
+            }
+            if (tagKey != null) {
+                span.tag(tagKey, tagValue);
+            }
+            return span.endOnTermination(source)
+                    .contextWrite(ctx -> ctx.put(TracingContext.CTX_KEY_NAME, span.getContext()));
+        });
+    }
+
+    void onSpanEnded(Span span, long durationMicros) {
+        String nodeId = Node.getNodeId();
+        SpanData data = span.toData(nodeId == null ? "" : nodeId, durationMicros);
+        recentSpans.export(data);
+        if (span.isEntry() && durationMicros >= slowTraceThresholdMicros) {
+            addSlowTrace(data.traceId());
+        }
+        try {
+            exporter.export(data);
+        } catch (Exception e) {
+            log.error("Failed to export the span: {}", data, e);
+        }
+    }
+
+    private void addSlowTrace(long traceId) {
+        if (maxSlowTraces <= 0) {
+            return;
+        }
+        synchronized (slowTraceIds) {
+            // Multiple entry spans of a trace may be slow
+            // (e.g. the RPC requests sent to the local node by multiple peers)
+            if (slowTraceIds.contains(traceId)) {
+                return;
+            }
+            if (slowTraceIds.size() == maxSlowTraces) {
+                slowTraceIds.pollFirst();
+            }
+            slowTraceIds.addLast(traceId);
+        }
+    }
+
+    /**
+     * @return the trace IDs of the most recent slow traces found on the local node, from the newest to the oldest
+     */
+    public List<Long> getRecentSlowTraceIds(int limit) {
+        synchronized (slowTraceIds) {
+            int size = Math.min(limit, slowTraceIds.size());
+            List<Long> ids = new ArrayList<>(size);
+            Iterator<Long> iterator = slowTraceIds.descendingIterator();
+            while (iterator.hasNext() && ids.size() < size) {
+                ids.add(iterator.next());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * @return the spans of the traces recorded on the local node that are still kept in memory
+     */
+    public List<SpanData> getRecentSpans(Collection<Long> traceIds) {
+        return recentSpans.getSpans(traceIds);
+    }
+
+    /**
+     * @return the current span context in the Reactor context, or null if absent
+     */
+    @Nullable
+    public static TracingContext readContext(ContextView context) {
+        TracingContext tracingContext = context.getOrDefault(TracingContext.CTX_KEY_NAME, null);
+        if (tracingContext != null) {
+            return tracingContext;
+        }
+        RequestLoggingContext loggingContext = context.getOrDefault(RequestLoggingContext.CTX_KEY_NAME, null);
+        if (loggingContext == null) {
+            return null;
+        }
+        tracingContext = loggingContext.getTracingContext();
+        return tracingContext == TracingContext.NOOP ? null : tracingContext;
+    }
+
+}
@@ -26,6 +26,10 @@ import org.apache.logging.log4j.ThreadContext;
 import reactor.core.scheduler.Schedulers;
 
 /**
+ * Carries the trace ID for logging, and the span context (the ID of the current span
+ * and whether the trace is sampled) so that the spans created on this node or on peers
+ * become the children of the current span
+ *
  * @author James Chen
  */
 @Data
@@ -35,6 +39,12 @@ import reactor.core.scheduler.Schedulers;
 public class TracingContext {
 
     public static final String SCHEDULE_HOOK_NAME = "TRACING";
+    public static final String CTX_KEY_NAME = "TRACING_CONTEXT";
+
+    /**
+     * The span ID of the contexts that aren't in any span
+     */
+    public static final long NO_SPAN_ID = 0;
 
     public static final TracingContext NOOP = new TracingContext(0) {
         @Override
@@ -82,15 +92,31 @@ public class TracingContext {
     @EqualsAndHashCode.Include
     @ToString.Include
     private final long traceId;
+    /**
+     * The ID of the current span, which is the parent of the spans created in the context
+     */
+    @ToString.Include
+    private final long spanId;
+    /**
+     * Spans are only recorded in sampled contexts
+     */
+    @ToString.Include
+    private final boolean sampled;
     private String traceIdStr;
 
     public TracingContext(long traceId) {
+        this(traceId, NO_SPAN_ID, false);
+    }
+
+    public TracingContext(long traceId, long spanId, boolean sampled) {
         this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
     }
 
     public TracingContext() {
         // TODO: use a global unique trace ID
-        this.traceId = RandomUtil.nextPositiveLong();
+        this(RandomUtil.nextPositiveLong());
     }
 
     public String getTraceIdStr() {
@@ -104,6 +130,10 @@ public class TracingContext {
         return true;
     }
 
+    public boolean hasSpanId() {
+        return spanId != NO_SPAN_ID;
+    }
+
     public void updateMdc() {
         ThreadContext.put(Fields.traceId, getTraceIdStr());
     }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing.exporter;
+
+import im.turms.server.common.tracing.SpanData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the most recent spans in memory, and evicts the oldest spans if the capacity is reached
+ *
+ * @author James Chen
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+    private final int capacity;
+    private final ArrayDeque<SpanData> spans;
+
+    public InMemorySpanExporter(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must be greater than or equal to 0");
+        }
+        this.capacity = capacity;
+        spans = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public void export(SpanData span) {
+        if (capacity == 0) {
+            return;
+        }
+        synchronized (spans) {
+            if (spans.size() == capacity) {
+                spans.pollFirst();
+            }
+            spans.addLast(span);
+        }
+    }
+
+    /**
+     * @return the spans in the order they ended
+     */
+    public List<SpanData> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    public List<SpanData> getSpans(Collection<Long> traceIds) {
+        Set<Long> ids = traceIds instanceof Set<Long> set ? set : Set.copyOf(traceIds);
+        List<SpanData> result = new ArrayList<>();
+        synchronized (spans) {
+            for (SpanData span : spans) {
+                if (ids.contains(span.traceId())) {
+                    result.add(span);
+                }
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        synchronized (spans) {
+            spans.clear();
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing.exporter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import im.turms.server.common.logging.SpanLogging;
+import im.turms.server.common.tracing.SpanData;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes spans as JSON lines into the span log file, which is written asynchronously by Log4j
+ *
+ * @author James Chen
+ */
+@Log4j2
+public class LogSpanExporter implements SpanExporter {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(SpanData.class);
+
+    @Override
+    public void export(SpanData span) {
+        String json;
+        try {
+            json = WRITER.writeValueAsString(span);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize the span: {}", span, e);
+            return;
+        }
+        SpanLogging.log(json);
+    }
+
+}
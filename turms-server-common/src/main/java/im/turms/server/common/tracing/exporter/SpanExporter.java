@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.server.common.tracing.exporter;
+
+import im.turms.server.common.property.constant.SpanExporterType;
+import im.turms.server.common.tracing.SpanData;
+
+/**
+ * Exports ended spans to a tracing backend.
+ * Provide a bean of SpanExporter to replace the exporter specified by the properties
+ *
+ * @author James Chen
+ * @implNote The method is called on the thread that ends the span (usually an event loop),
+ * so the implementations should hand over the spans to other threads instead of blocking
+ */
+public interface SpanExporter {
+
+    void export(SpanData span);
+
+    static SpanExporter of(SpanExporterType type) {
+        return switch (type) {
+            case NONE -> span -> {
+            };
+            case LOG -> new LogSpanExporter();
+        };
+    }
+
+}
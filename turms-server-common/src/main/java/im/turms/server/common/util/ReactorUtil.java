@@ -20,8 +20,10 @@ package im.turms.server.common.util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @author James Chen
@@ -79,4 +81,26 @@ public final class ReactorUtil {
                 });
     }
 
+    /**
+     * Streams all records by querying page by page with keyset pagination,
+     * so that only one page is kept in memory at a time and
+     * the cost of every page doesn't grow with the depth of the page.
+     *
+     * @param pageQuery  queries the records after the passed key (null for the first page),
+     *                   and the records should be sorted by the key
+     * @param keyMapper  gets the key of a record
+     * @param batchSize  the size of every page
+     */
+    public static <T, K> Flux<T> keysetStream(@NotNull Function<@Nullable K, Flux<T>> pageQuery,
+                                              @NotNull Function<T, K> keyMapper,
+                                              int batchSize) {
+        return pageQuery.apply(null)
+                .collect(CollectorUtil.toList(batchSize))
+                .expand(page -> page.size() < batchSize
+                        ? Mono.empty()
+                        : pageQuery.apply(keyMapper.apply(page.get(page.size() - 1)))
+                        .collect(CollectorUtil.toList(batchSize)))
+                .flatMapIterable(Function.identity(), 1);
+    }
+
 }
@@ -0,0 +1,20 @@
+local key = KEYS[1]
+local ticket_id = KEYS[2]
+local issued_at = tonumber(KEYS[3])
+local device_revoked_before_field = KEYS[4]
+local ttl = tonumber(KEYS[5])
+
+local revoked_before_values = redis.call('hmget', key, 'b', device_revoked_before_field)
+for _, revoked_before in ipairs(revoked_before_values) do
+    if revoked_before and issued_at < tonumber(revoked_before) then
+        return false
+    end
+end
+
+-- HSETNX sets nothing if the ticket has been consumed or revoked,
+-- so checking and consuming the ticket is atomic
+if redis.call('hsetnx', key, ticket_id, '1') == 0 then
+    return false
+end
+redis.call('expire', key, ttl)
+return true
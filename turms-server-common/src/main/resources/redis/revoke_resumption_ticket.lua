@@ -0,0 +1,8 @@
+local key = KEYS[1]
+local field = KEYS[2]
+local value = KEYS[3]
+local ttl = tonumber(KEYS[4])
+
+redis.call('hset', key, field, value)
+redis.call('expire', key, ttl)
+return true
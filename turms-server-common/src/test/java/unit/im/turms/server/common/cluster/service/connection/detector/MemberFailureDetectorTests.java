@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.cluster.service.connection.detector;
+
+import im.turms.server.common.cluster.service.connection.detector.MemberFailureDetector;
+import im.turms.server.common.cluster.service.connection.detector.PhiAccrualFailureDetector;
+import im.turms.server.common.property.env.common.cluster.connection.FailureDetectorProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class MemberFailureDetectorTests {
+
+    private static final String MEMBER_ID = "turms001";
+    private static final String REPORTER_ID = "turms002";
+    private static final int HEARTBEAT_INTERVAL_MILLIS = 200;
+    private static final int HEARTBEAT_COUNT = 20;
+    private static final long LAST_HEARTBEAT_TIME = HEARTBEAT_INTERVAL_MILLIS * HEARTBEAT_COUNT;
+
+    @Test
+    void phi_shouldIncrease_asTimeSinceLastHeartbeatIncreases() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(200, 50, 100, HEARTBEAT_INTERVAL_MILLIS, 0);
+        for (int i = 1; i <= HEARTBEAT_COUNT; i++) {
+            detector.heartbeat((long) i * HEARTBEAT_INTERVAL_MILLIS);
+        }
+
+        double phiInTime = detector.phi(LAST_HEARTBEAT_TIME + 300);
+        double phiWhenDelayed = detector.phi(LAST_HEARTBEAT_TIME + 530);
+        double phiWhenLost = detector.phi(LAST_HEARTBEAT_TIME + 1000);
+
+        assertThat(phiInTime).isLessThan(1);
+        assertThat(phiWhenDelayed).isBetween(4D, 8D);
+        assertThat(phiWhenLost).isGreaterThan(8);
+    }
+
+    @Test
+    void detect_shouldSuspectMember_ifHeartbeatsAreLost() {
+        MemberFailureDetector detector = newDetectorWithHeartbeats();
+
+        detector.detect(LAST_HEARTBEAT_TIME + 300);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+
+        detector.detect(LAST_HEARTBEAT_TIME + 1000);
+        assertThat(detector.isSuspected(MEMBER_ID)).isTrue();
+        assertThat(detector.getLocallySuspectedMemberIds()).containsExactly(MEMBER_ID);
+    }
+
+    @Test
+    void detect_shouldNotSuspectMember_afterHeartbeatIsReceivedAgain() {
+        MemberFailureDetector detector = newDetectorWithHeartbeats();
+        long now = LAST_HEARTBEAT_TIME + 1000;
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isTrue();
+
+        detector.heartbeat(MEMBER_ID, now);
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+    }
+
+    @Test
+    void detect_shouldSuspectMemberEarlier_ifPeerSuspectsIt() {
+        MemberFailureDetector detector = newDetectorWithHeartbeats();
+        long now = LAST_HEARTBEAT_TIME + 530;
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+
+        detector.onPeerSuspicionReceived(REPORTER_ID, List.of(MEMBER_ID), now);
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isTrue();
+        // Shouldn't gossip the suspicion of others
+        assertThat(detector.getLocallySuspectedMemberIds()).isEmpty();
+
+        detector.onPeerSuspicionReceived(REPORTER_ID, Collections.emptyList(), now);
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+    }
+
+    @Test
+    void detect_shouldNotSuspectMember_ifOnlyPeerSuspectsIt() {
+        MemberFailureDetector detector = newDetectorWithHeartbeats();
+        long now = LAST_HEARTBEAT_TIME + 300;
+        detector.onPeerSuspicionReceived(REPORTER_ID, List.of(MEMBER_ID), now);
+
+        detector.detect(now);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+    }
+
+    @Test
+    void detect_shouldIgnoreExpiredPeerSuspicion() {
+        MemberFailureDetector detector = newDetectorWithHeartbeats();
+        detector.onPeerSuspicionReceived(REPORTER_ID, List.of(MEMBER_ID), LAST_HEARTBEAT_TIME - 600);
+
+        detector.detect(LAST_HEARTBEAT_TIME + 530);
+        assertThat(detector.isSuspected(MEMBER_ID)).isFalse();
+    }
+
+    private MemberFailureDetector newDetectorWithHeartbeats() {
+        FailureDetectorProperties properties = new FailureDetectorProperties(true,
+                HEARTBEAT_INTERVAL_MILLIS,
+                8,
+                4,
+                200,
+                50,
+                100,
+                1000);
+        MemberFailureDetector detector = new MemberFailureDetector(properties);
+        detector.addMember(MEMBER_ID, 0);
+        for (int i = 1; i <= HEARTBEAT_COUNT; i++) {
+            detector.heartbeat(MEMBER_ID, (long) i * HEARTBEAT_INTERVAL_MILLIS);
+        }
+        return detector;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.server.common.cluster.service.rpc;
+
+import im.turms.server.common.cluster.service.codec.CodecService;
+import im.turms.server.common.cluster.service.codec.codec.CodecPool;
+import im.turms.server.common.cluster.service.connection.TurmsConnection;
+import im.turms.server.common.cluster.service.rpc.RpcEndpoint;
+import im.turms.server.common.cluster.service.rpc.RpcRequestMonitor;
+import im.turms.server.common.cluster.service.rpc.balancer.LatencyEwma;
+import im.turms.server.common.cluster.service.rpc.codec.RpcFrameDecoder;
+import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.rpc.request.CountOnlineUsersRequest;
+import im.turms.server.common.tracing.TracingContext;
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+import reactor.netty.NettyOutbound;
+import reactor.netty.channel.ChannelOperations;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class RpcEndpointTests {
+
+    static {
+        CodecPool.init();
+    }
+
+    @Test
+    void sendFireAndForgetRequest_shouldSendRequest_withoutWaitingForResponse() {
+        NettyOutbound outbound = mock(NettyOutbound.class);
+        when(outbound.then())
+                .thenReturn(Mono.empty());
+        ChannelOperations<?, ?> channelOperations = mock(ChannelOperations.class);
+        ArgumentCaptor<Object> frameCaptor = ArgumentCaptor.forClass(Object.class);
+        when(channelOperations.sendObject(frameCaptor.capture()))
+                .thenReturn(outbound);
+        TurmsConnection connection = mock(TurmsConnection.class);
+        doReturn(channelOperations).when(connection).getConnection();
+        RpcEndpoint endpoint = new RpcEndpoint("node",
+                connection,
+                new LatencyEwma(Duration.ofSeconds(1).toNanos()),
+                mock(RpcRequestMonitor.class));
+        CountOnlineUsersRequest request = new CountOnlineUsersRequest();
+        request.setTracingContext(new TracingContext());
+        ByteBuf requestBody = new CodecService().serializeWithoutCodecId(request);
+
+        StepVerifier.create(endpoint.sendFireAndForgetRequest(request, requestBody))
+                .verifyComplete();
+
+        assertThat(endpoint.getPendingRequestCount()).isZero();
+        ByteBuf frame = (ByteBuf) frameCaptor.getValue();
+        try {
+            Object decodedRequest = new RpcFrameDecoder().decodePayload(null, frame);
+            assertThat(decodedRequest).isInstanceOf(CountOnlineUsersRequest.class);
+            assertThat(((RpcRequest<?>) decodedRequest).isFireAndForget()).isTrue();
+        } finally {
+            frame.release();
+        }
+    }
+
+}
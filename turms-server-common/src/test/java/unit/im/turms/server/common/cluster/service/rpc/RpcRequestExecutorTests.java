@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.cluster.service.rpc;
+
+import im.turms.server.common.cluster.service.connection.TurmsConnection;
+import im.turms.server.common.cluster.service.rpc.NodeTypeToHandleRpc;
+import im.turms.server.common.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.cluster.service.rpc.RpcRequestExecutor;
+import im.turms.server.common.cluster.service.rpc.RpcRequestMonitor;
+import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.cluster.service.rpc.lane.RpcExecutionLanes;
+import im.turms.server.common.property.env.common.cluster.RpcExecutionProperties;
+import im.turms.server.common.property.env.common.cluster.RpcSlowRequestLogProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author James Chen
+ */
+class RpcRequestExecutorTests {
+
+    private final RpcRequestExecutor executor = new RpcRequestExecutor(null,
+            new RpcRequestMonitor(new RpcSlowRequestLogProperties()),
+            new RpcExecutionLanes(new RpcExecutionProperties()));
+
+    @Test
+    void runRpcRequest_shouldShedRequest_ifDeadlineHasPassed() {
+        TestRequest request = new TestRequest(Mono.just("ok"));
+        request.setDeadline(System.currentTimeMillis() - 1);
+
+        StepVerifier.create(executor.runRpcRequest(request, null, "node"))
+                .expectErrorMatches(t -> RpcException.isErrorCode(t, RpcErrorCode.DEADLINE_EXCEEDED))
+                .verify();
+        assertThat(request.called).isFalse();
+    }
+
+    @Test
+    void runRpcRequest_shouldRunRequest_ifDeadlineHasNotPassed() {
+        TestRequest request = new TestRequest(Mono.just("ok"));
+        request.setDeadline(System.currentTimeMillis() + 60_000);
+
+        StepVerifier.create(executor.runRpcRequest(request, null, "node"))
+                .expectNext("ok")
+                .verifyComplete();
+        assertThat(request.called).isTrue();
+    }
+
+    @Test
+    void runRpcRequest_shouldPropagateDeadlineToContext() {
+        long deadline = System.currentTimeMillis() + 60_000;
+        TestRequest request = new TestRequest(Mono.deferContextual(context -> Mono.just(readDeadline(context))));
+        request.setDeadline(deadline);
+
+        StepVerifier.create(executor.runRpcRequest(request, null, "node"))
+                .expectNext(String.valueOf(deadline))
+                .verifyComplete();
+    }
+
+    @Test
+    void runRpcRequest_shouldCancelRunningRequest_ifSubscriptionIsDisposed() {
+        TestRequest request = new TestRequest(Mono.never());
+        request.setDeadline(System.currentTimeMillis() + 60_000);
+
+        StepVerifier.create(executor.runRpcRequest(request, null, "node"))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(10))
+                .thenCancel()
+                .verify();
+        assertThat(request.cancelled).isTrue();
+    }
+
+    @Test
+    void runRpcRequest_shouldCountPeerRequestOnce_untilItCompletes() {
+        Sinks.One<String> sink = Sinks.one();
+        TestRequest request = new TestRequest(sink.asMono());
+        request.setDeadline(System.currentTimeMillis() + 60_000);
+
+        StepVerifier.create(executor.runRpcRequest(request, mock(TurmsConnection.class), "node"))
+                .expectSubscription()
+                .then(() -> {
+                    assertThat(executor.getInFlightRequestCount()).isEqualTo(1);
+                    sink.tryEmitValue("ok");
+                })
+                .expectNext("ok")
+                .verifyComplete();
+        assertThat(executor.getInFlightRequestCount()).isZero();
+    }
+
+    @Test
+    void runRpcStreamRequest_shouldCountPeerRequest_untilItCompletes() {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        TestRequest request = new TestRequest(Mono.empty(), sink.asFlux());
+        request.setDeadline(System.currentTimeMillis() + 60_000);
+
+        StepVerifier.create(executor.runRpcStreamRequest(request, mock(TurmsConnection.class), "node"))
+                .expectSubscription()
+                .then(() -> {
+                    assertThat(executor.getInFlightRequestCount()).isEqualTo(1);
+                    sink.tryEmitNext("ok");
+                    sink.tryEmitComplete();
+                })
+                .expectNext("ok")
+                .verifyComplete();
+        assertThat(executor.getInFlightRequestCount()).isZero();
+    }
+
+    private static String readDeadline(ContextView context) {
+        return String.valueOf(context.<Long>get(RpcRequest.CTX_KEY_DEADLINE));
+    }
+
+    private static class TestRequest extends RpcRequest<String> {
+
+        private final Mono<String> result;
+        private final Flux<String> stream;
+        private boolean called;
+        private boolean cancelled;
+
+        TestRequest(Mono<String> result) {
+            this(result, Flux.empty());
+        }
+
+        TestRequest(Mono<String> result, Flux<String> stream) {
+            this.result = result;
+            this.stream = stream;
+        }
+
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public NodeTypeToHandleRpc nodeTypeToRequest() {
+            return NodeTypeToHandleRpc.BOTH;
+        }
+
+        @Override
+        public NodeTypeToHandleRpc nodeTypeToRespond() {
+            return NodeTypeToHandleRpc.BOTH;
+        }
+
+        @Override
+        public Mono<String> callAsync() {
+            called = true;
+            return result.doOnCancel(() -> cancelled = true);
+        }
+
+        @Override
+        public Flux<String> callStream() {
+            called = true;
+            return stream.doOnCancel(() -> cancelled = true);
+        }
+    }
+
+}
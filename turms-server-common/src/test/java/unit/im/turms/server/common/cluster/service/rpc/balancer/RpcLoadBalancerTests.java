@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.cluster.service.rpc.balancer;
+
+import im.turms.server.common.cluster.service.rpc.balancer.LatencyEwma;
+import im.turms.server.common.cluster.service.rpc.balancer.RpcLoadBalancer;
+import im.turms.server.common.cluster.service.rpc.balancer.RpcLoadStats;
+import im.turms.server.common.property.constant.RpcLoadBalancingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcLoadBalancerTests {
+
+    private static final List<String> MEMBER_IDS = List.of("0", "1", "2", "3", "4");
+
+    @Test
+    void roundRobin_shouldSelectMembersInTurn() {
+        RpcLoadBalancer balancer = RpcLoadBalancer.of(RpcLoadBalancingStrategy.ROUND_ROBIN);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < MEMBER_IDS.size() * 100; i++) {
+            counts.merge(balancer.select(MEMBER_IDS, new StaticLoadStats(Map.of())), 1, Integer::sum);
+        }
+        assertThat(counts.values()).containsOnly(100);
+    }
+
+    @Test
+    void powerOfTwoChoices_shouldNeverSelectMemberWithMostPendingRequests() {
+        RpcLoadBalancer balancer = RpcLoadBalancer.of(RpcLoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+        StaticLoadStats stats = new StaticLoadStats(Map.of("0", 100));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(balancer.select(MEMBER_IDS, stats)).isNotEqualTo("0");
+        }
+    }
+
+    @Test
+    void select_shouldReturnTheOnlyMember() {
+        for (RpcLoadBalancingStrategy strategy : RpcLoadBalancingStrategy.values()) {
+            RpcLoadBalancer balancer = RpcLoadBalancer.of(strategy);
+            assertThat(balancer.select(List.of("0"), new StaticLoadStats(Map.of()))).isEqualTo("0");
+        }
+    }
+
+    /**
+     * Simulates 5 members with 4 workers each, and one of them is 10 times slower than others.
+     * Round-robin keeps sending a fifth of the requests to the slow member, which cannot keep up,
+     * while the load-aware strategies route around it.
+     */
+    @Test
+    void loadAwareStrategies_shouldReduceTailLatency_whenOneMemberIsSlow() {
+        long roundRobinP99 = simulate(RpcLoadBalancingStrategy.ROUND_ROBIN).p99();
+        long powerOfTwoChoicesP99 = simulate(RpcLoadBalancingStrategy.POWER_OF_TWO_CHOICES).p99();
+        long ewmaP99 = simulate(RpcLoadBalancingStrategy.EWMA).p99();
+
+        assertThat(powerOfTwoChoicesP99)
+                .as("The P99 latency of power-of-two-choices should be much lower than round-robin")
+                .isLessThan(roundRobinP99 / 10);
+        assertThat(ewmaP99)
+                .as("The P99 latency of EWMA should be much lower than round-robin")
+                .isLessThan(roundRobinP99 / 10);
+    }
+
+    // Simulation
+
+    private static final int REQUEST_COUNT = 20_000;
+    private static final int WORKERS_PER_MEMBER = 4;
+    private static final long FAST_SERVICE_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW_SERVICE_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /**
+     * 6000 requests per second in total, and the capacity of a fast member is 4000 and the slow one is 400
+     */
+    private static final long MEAN_ARRIVAL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 6000;
+    private static final String SLOW_MEMBER_ID = "0";
+
+    private SimulationResult simulate(RpcLoadBalancingStrategy strategy) {
+        RpcLoadBalancer balancer = RpcLoadBalancer.of(strategy);
+        Random random = new Random(0);
+        Map<String, SimulatedMember> members = new HashMap<>();
+        for (String memberId : MEMBER_IDS) {
+            long serviceTime = memberId.equals(SLOW_MEMBER_ID) ? SLOW_SERVICE_TIME_NANOS : FAST_SERVICE_TIME_NANOS;
+            members.put(memberId, new SimulatedMember(serviceTime));
+        }
+        RpcLoadStats stats = new RpcLoadStats() {
+            @Override
+            public int getPendingRequestCount(String memberId) {
+                SimulatedMember member = members.get(memberId);
+                return member.busyWorkers + member.queue.size();
+            }
+
+            @Override
+            public double getLatencyEwmaNanos(String memberId) {
+                return members.get(memberId).latencyEwma.get();
+            }
+
+            @Override
+            public double getWeight(String memberId) {
+                return 1;
+            }
+        };
+        PriorityQueue<Completion> completions = new PriorityQueue<>();
+        List<Long> latencies = new ArrayList<>(REQUEST_COUNT);
+        long now = 0;
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            long arrivalTime = now + (long) (-Math.log(1 - random.nextDouble()) * MEAN_ARRIVAL_INTERVAL_NANOS);
+            // Process the completions before the arrival
+            while (!completions.isEmpty() && completions.peek().time <= arrivalTime) {
+                complete(completions.poll(), members, completions, latencies, random);
+            }
+            now = arrivalTime;
+            String memberId = balancer.select(MEMBER_IDS, stats);
+            SimulatedMember member = members.get(memberId);
+            if (member.busyWorkers < WORKERS_PER_MEMBER) {
+                member.busyWorkers++;
+                completions.add(new Completion(memberId, now, now + member.nextServiceTime(random)));
+            } else {
+                member.queue.add(now);
+            }
+        }
+        while (!completions.isEmpty()) {
+            complete(completions.poll(), members, completions, latencies, random);
+        }
+        Collections.sort(latencies);
+        return new SimulationResult(latencies);
+    }
+
+    private void complete(Completion completion,
+                          Map<String, SimulatedMember> members,
+                          Queue<Completion> completions,
+                          List<Long> latencies,
+                          Random random) {
+        SimulatedMember member = members.get(completion.memberId);
+        long latency = completion.time - completion.arrivalTime;
+        latencies.add(latency);
+        member.latencyEwma.observe(latency, completion.time);
+        Long queuedArrivalTime = member.queue.poll();
+        if (queuedArrivalTime == null) {
+            member.busyWorkers--;
+        } else {
+            completions.add(new Completion(completion.memberId, queuedArrivalTime,
+                    completion.time + member.nextServiceTime(random)));
+        }
+    }
+
+    private static final class SimulatedMember {
+        private final long meanServiceTime;
+        private final LatencyEwma latencyEwma = new LatencyEwma(TimeUnit.SECONDS.toNanos(1));
+        private final Queue<Long> queue = new ArrayDeque<>();
+        private int busyWorkers;
+
+        private SimulatedMember(long meanServiceTime) {
+            this.meanServiceTime = meanServiceTime;
+        }
+
+        private long nextServiceTime(Random random) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanServiceTime);
+        }
+    }
+
+    private record Completion(String memberId, long arrivalTime, long time) implements Comparable<Completion> {
+        @Override
+        public int compareTo(Completion other) {
+            return Long.compare(time, other.time);
+        }
+    }
+
+    private record SimulationResult(List<Long> sortedLatencies) {
+        long p99() {
+            return sortedLatencies.get((int) (sortedLatencies.size() * 0.99));
+        }
+    }
+
+    private record StaticLoadStats(Map<String, Integer> pendingRequestCounts) implements RpcLoadStats {
+        @Override
+        public int getPendingRequestCount(String memberId) {
+            return pendingRequestCounts.getOrDefault(memberId, 0);
+        }
+
+        @Override
+        public double getLatencyEwmaNanos(String memberId) {
+            return 0;
+        }
+
+        @Override
+        public double getWeight(String memberId) {
+            return 1;
+        }
+    }
+
+}
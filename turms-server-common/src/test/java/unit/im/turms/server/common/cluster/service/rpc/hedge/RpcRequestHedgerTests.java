@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.cluster.service.rpc.hedge;
+
+import im.turms.server.common.cluster.service.rpc.hedge.RpcHedgeBudget;
+import im.turms.server.common.cluster.service.rpc.hedge.RpcRequestHedger;
+import im.turms.server.common.property.env.common.cluster.RpcHedgingProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcRequestHedgerTests {
+
+    private static final String REQUEST_NAME = "countOnlineUsers";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void getDelay_shouldReturnNull_ifNotEnoughSamples() {
+        RpcRequestHedger hedger = newHedger(1);
+        hedger.recordLatency(REQUEST_NAME, LATENCY_NANOS);
+
+        assertThat(hedger.getDelay(REQUEST_NAME)).isNull();
+    }
+
+    @Test
+    void getDelay_shouldReturnPercentileOfLatencies() {
+        RpcRequestHedger hedger = newWarmedUpHedger(1);
+
+        assertThat(hedger.getDelay(REQUEST_NAME))
+                .isBetween(Duration.ofMillis(9), Duration.ofMillis(12));
+    }
+
+    @Test
+    void hedge_shouldUseFirstResponse_andCancelPrimary_ifPrimaryStalls() {
+        RpcRequestHedger hedger = newWarmedUpHedger(1);
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        Mono<String> primary = Mono.<String>never()
+                .doOnCancel(() -> primaryCancelled.set(true));
+
+        StepVerifier.create(hedger.hedge(REQUEST_NAME, primary, () -> Mono.just("hedge"), TIMEOUT))
+                .expectNext("hedge")
+                .verifyComplete();
+        assertThat(primaryCancelled).isTrue();
+    }
+
+    @Test
+    void hedge_shouldNotSendHedge_ifPrimaryRespondsBeforeDelay() {
+        RpcRequestHedger hedger = newWarmedUpHedger(1);
+        AtomicInteger hedgeCount = new AtomicInteger();
+
+        StepVerifier.create(hedger.hedge(REQUEST_NAME, Mono.just("primary"), () -> {
+                    hedgeCount.incrementAndGet();
+                    return Mono.just("hedge");
+                }, TIMEOUT))
+                .expectNext("primary")
+                .verifyComplete();
+        assertThat(hedgeCount).hasValue(0);
+    }
+
+    @Test
+    void hedge_shouldNotSendHedge_ifBudgetIsExhausted() {
+        RpcRequestHedger hedger = newWarmedUpHedger(0);
+        AtomicInteger hedgeCount = new AtomicInteger();
+        Mono<String> primary = Mono.delay(Duration.ofMillis(100))
+                .thenReturn("primary");
+
+        StepVerifier.create(hedger.hedge(REQUEST_NAME, primary, () -> {
+                    hedgeCount.incrementAndGet();
+                    return Mono.just("hedge");
+                }, TIMEOUT))
+                .expectNext("primary")
+                .verifyComplete();
+        assertThat(hedgeCount).hasValue(0);
+    }
+
+    @Test
+    void hedge_shouldWaitForHedge_ifPrimaryFailsAfterHedgeIsSent() {
+        RpcRequestHedger hedger = newWarmedUpHedger(1);
+        Mono<String> primary = Mono.delay(Duration.ofMillis(50))
+                .then(Mono.error(new IllegalStateException("The member is stalled")));
+        Mono<String> hedge = Mono.delay(Duration.ofMillis(100))
+                .thenReturn("hedge");
+
+        StepVerifier.create(hedger.hedge(REQUEST_NAME, primary, () -> hedge, TIMEOUT))
+                .expectNext("hedge")
+                .verifyComplete();
+    }
+
+    @Test
+    void hedge_shouldFail_ifPrimaryFailsBeforeHedgeIsSent() {
+        RpcRequestHedger hedger = newWarmedUpHedger(1);
+        AtomicInteger hedgeCount = new AtomicInteger();
+        Mono<String> primary = Mono.error(new IllegalStateException("The member is down"));
+
+        StepVerifier.create(hedger.hedge(REQUEST_NAME, primary, () -> {
+                    hedgeCount.incrementAndGet();
+                    return Mono.just("hedge");
+                }, TIMEOUT))
+                .verifyError(IllegalStateException.class);
+        assertThat(hedgeCount).hasValue(0);
+    }
+
+    @Test
+    void budget_shouldCapWithdrawalsByRatioAndMaxTokens() {
+        RpcHedgeBudget budget = new RpcHedgeBudget(0.5f, 1);
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    private RpcRequestHedger newWarmedUpHedger(float budgetRatio) {
+        RpcRequestHedger hedger = newHedger(budgetRatio);
+        for (int i = 0; i < 100; i++) {
+            hedger.recordLatency(REQUEST_NAME, LATENCY_NANOS);
+        }
+        return hedger;
+    }
+
+    private RpcRequestHedger newHedger(float budgetRatio) {
+        RpcHedgingProperties properties = new RpcHedgingProperties(true, 0.95, 1, budgetRatio, 10);
+        return new RpcRequestHedger(properties);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.cluster.service.rpc.lane;
+
+import im.turms.server.common.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.cluster.service.rpc.lane.RpcExecutionLane;
+import im.turms.server.common.cluster.service.rpc.lane.RpcExecutionLanes;
+import im.turms.server.common.property.env.common.cluster.RpcExecutionLaneProperties;
+import im.turms.server.common.property.env.common.cluster.RpcExecutionProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcExecutionLanesTests {
+
+    private static final String CONTROL_REQUEST = "keepalive";
+    private static final String HEAVY_REQUEST = "handleServiceRequest";
+
+    @Test
+    void execute_shouldRunControlRequestsInReservedSlots_ifSharedSlotsAreExhausted() {
+        RpcExecutionLanes lanes = newLanes(4, 2, 2, 8);
+        List<Sinks.Empty<Void>> heavyTasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Sinks.Empty<Void> task = Sinks.empty();
+            heavyTasks.add(task);
+            lanes.execute(HEAVY_REQUEST, task::asMono, () -> {
+            }).subscribe();
+        }
+        RpcExecutionLane heavyLane = lanes.getLane(HEAVY_REQUEST);
+        assertThat(lanes.getRunningCount(heavyLane)).isEqualTo(2);
+        assertThat(lanes.getQueueSize(heavyLane)).isEqualTo(2);
+
+        AtomicInteger controlRuns = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            lanes.execute(CONTROL_REQUEST, () -> Mono.fromRunnable(controlRuns::incrementAndGet), () -> {
+            }).subscribe();
+        }
+        assertThat(controlRuns).hasValue(2);
+
+        heavyTasks.get(0).tryEmitEmpty();
+        assertThat(lanes.getRunningCount(heavyLane)).isEqualTo(2);
+        assertThat(lanes.getQueueSize(heavyLane)).isEqualTo(1);
+        lanes.dispose();
+    }
+
+    @Test
+    void execute_shouldReject_ifQueueIsFull() {
+        RpcExecutionLanes lanes = newLanes(2, 1, 1, 1);
+        AtomicInteger discarded = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            lanes.execute(HEAVY_REQUEST, Mono::never, discarded::incrementAndGet).subscribe();
+        }
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        lanes.execute(HEAVY_REQUEST, Mono::never, discarded::incrementAndGet)
+                .subscribe(null, error::set);
+
+        assertThat(RpcException.isErrorCode(error.get(), RpcErrorCode.EXECUTION_LANE_FULL)).isTrue();
+        assertThat(discarded).hasValue(1);
+        lanes.dispose();
+    }
+
+    @Test
+    void execute_shouldDiscardTask_ifCancelledWhileQueued() {
+        RpcExecutionLanes lanes = newLanes(2, 1, 1, 1);
+        lanes.execute(HEAVY_REQUEST, Mono::never, () -> {
+        }).subscribe();
+        AtomicInteger discarded = new AtomicInteger();
+        AtomicInteger runs = new AtomicInteger();
+        Disposable queued = lanes.execute(HEAVY_REQUEST, () -> Mono.fromRunnable(runs::incrementAndGet), discarded::incrementAndGet)
+                .subscribe();
+        RpcExecutionLane heavyLane = lanes.getLane(HEAVY_REQUEST);
+        assertThat(lanes.getQueueSize(heavyLane)).isEqualTo(1);
+
+        queued.dispose();
+
+        assertThat(lanes.getQueueSize(heavyLane)).isZero();
+        assertThat(discarded).hasValue(1);
+        assertThat(runs).hasValue(0);
+        lanes.dispose();
+    }
+
+    @Test
+    void execute_shouldRunQueuedTasksOfHigherPriorityLanesFirst() {
+        RpcExecutionProperties properties = new RpcExecutionProperties(1, Map.of(
+                "high", new RpcExecutionLaneProperties(Set.of("high"), 10, 0, 8, 8, 0),
+                "low", new RpcExecutionLaneProperties(Set.of("low"), 0, 0, 8, 8, 0)));
+        RpcExecutionLanes lanes = new RpcExecutionLanes(properties);
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        lanes.execute("low", blocker::asMono, () -> {
+        }).subscribe();
+
+        List<String> order = new ArrayList<>();
+        lanes.execute("low", () -> Mono.fromRunnable(() -> order.add("low")), () -> {
+        }).subscribe();
+        lanes.execute("high", () -> Mono.fromRunnable(() -> order.add("high")), () -> {
+        }).subscribe();
+        assertThat(order).isEmpty();
+
+        blocker.tryEmitEmpty();
+
+        assertThat(order).containsExactly("high", "low");
+        lanes.dispose();
+    }
+
+    private static RpcExecutionLanes newLanes(int maxConcurrency,
+                                              int controlLaneReservedConcurrency,
+                                              int defaultLaneMaxConcurrency,
+                                              int defaultLaneMaxQueueSize) {
+        RpcExecutionProperties properties = new RpcExecutionProperties(maxConcurrency, Map.of(
+                RpcExecutionProperties.LANE_CONTROL, new RpcExecutionLaneProperties(Set.of(CONTROL_REQUEST),
+                        100, controlLaneReservedConcurrency, controlLaneReservedConcurrency, 0, 0),
+                RpcExecutionProperties.LANE_DEFAULT, new RpcExecutionLaneProperties(Set.of(),
+                        0, 0, defaultLaneMaxConcurrency, defaultLaneMaxQueueSize, 0)));
+        return new RpcExecutionLanes(properties);
+    }
+
+}
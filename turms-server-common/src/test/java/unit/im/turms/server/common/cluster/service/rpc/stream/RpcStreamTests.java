@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.cluster.service.rpc.stream;
+
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamReceiver;
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamSender;
+import im.turms.server.common.cluster.service.rpc.stream.RpcStreamTimeout;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class RpcStreamTests {
+
+    private static final int REQUEST_ID = 1;
+
+    @Test
+    void stream_shouldOnlyProduceElementsAsManyAsRequested() {
+        AtomicLong produced = new AtomicLong();
+        Flux<Integer> source = Flux.range(0, 100)
+                .doOnNext(element -> produced.incrementAndGet());
+        Peer peer = new Peer();
+        Flux<Integer> stream = peer.connect(source);
+
+        StepVerifier.create(stream, 0)
+                .then(() -> assertThat(produced).hasValue(0))
+                .thenRequest(3)
+                .expectNext(0, 1, 2)
+                .then(() -> assertThat(produced).hasValue(3))
+                .thenRequest(2)
+                .expectNext(3, 4)
+                .then(() -> assertThat(produced).hasValue(5))
+                .thenCancel()
+                .verify();
+
+        assertThat(peer.cancelled).isTrue();
+    }
+
+    @Test
+    void stream_shouldComplete_ifAllElementsAreSent() {
+        Flux<Integer> stream = new Peer().connect(Flux.range(0, 3));
+
+        StepVerifier.create(stream)
+                .expectNext(0, 1, 2)
+                .verifyComplete();
+    }
+
+    @Test
+    void stream_shouldPropagateError_ifPeerFailsMidStream() {
+        Flux<Integer> source = Flux.concat(Flux.range(0, 2), Flux.error(new IllegalStateException("Failed to produce")));
+        Flux<Integer> stream = new Peer().connect(source);
+
+        StepVerifier.create(stream)
+                .expectNext(0, 1)
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    void stream_shouldFail_andStopPeer_ifConnectionIsClosedMidStream() {
+        AtomicBoolean sourceCancelled = new AtomicBoolean();
+        Flux<Integer> source = Flux.concat(Flux.range(0, 2), Flux.never())
+                .doOnCancel(() -> sourceCancelled.set(true));
+        Peer peer = new Peer();
+        Flux<Integer> stream = peer.connect(source);
+
+        StepVerifier.create(stream)
+                .expectNext(0, 1)
+                .then(peer::closeConnection)
+                .verifyError(ClosedChannelException.class);
+
+        assertThat(sourceCancelled).isTrue();
+    }
+
+    @Test
+    void timeout_shouldNotFire_whileSubscriberHasNoDemand() {
+        Flux<Integer> stream = RpcStreamTimeout.apply(Flux.range(0, 2), Duration.ofSeconds(1));
+
+        StepVerifier.withVirtualTime(() -> stream, 0)
+                .thenAwait(Duration.ofSeconds(10))
+                .thenRequest(1)
+                .expectNext(0)
+                .thenAwait(Duration.ofSeconds(10))
+                .thenRequest(1)
+                .expectNext(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void timeout_shouldFire_ifElementDoesNotArriveInTimeWhileDemanded() {
+        Flux<Integer> stream = RpcStreamTimeout.apply(Flux.concat(Flux.just(0), Flux.never()), Duration.ofSeconds(1));
+
+        StepVerifier.withVirtualTime(() -> stream, 0)
+                .thenAwait(Duration.ofSeconds(10))
+                .thenRequest(2)
+                .expectNext(0)
+                .thenAwait(Duration.ofSeconds(1))
+                .verifyError(TimeoutException.class);
+    }
+
+    /**
+     * Connects a receiver and a sender directly as if they communicate over a connection
+     */
+    private static class Peer {
+        private final AtomicReference<RpcStreamReceiver<Integer>> receiver = new AtomicReference<>();
+        private final AtomicReference<RpcStreamSender<Integer>> sender = new AtomicReference<>();
+        private volatile boolean cancelled;
+
+        Flux<Integer> connect(Flux<Integer> source) {
+            return RpcStreamReceiver.create(streamReceiver -> {
+                        receiver.set(streamReceiver);
+                        RpcStreamSender<Integer> streamSender = new RpcStreamSender<>(new RpcStreamSender.Output<>() {
+                            @Override
+                            public void sendElement(Integer element) {
+                                streamReceiver.onNext(element);
+                            }
+
+                            @Override
+                            public void sendComplete() {
+                                streamReceiver.onComplete();
+                            }
+
+                            @Override
+                            public void sendError(Throwable throwable) {
+                                streamReceiver.onError(throwable);
+                            }
+                        });
+                        sender.set(streamSender);
+                        source.subscribe(streamSender);
+                        return REQUEST_ID;
+                    },
+                    (requestId, credit) -> sender.get().addCredit(credit),
+                    requestId -> {
+                        cancelled = true;
+                        sender.get().dispose();
+                    });
+        }
+
+        void closeConnection() {
+            sender.get().dispose();
+            receiver.get().onError(new ClosedChannelException());
+        }
+    }
+
+}
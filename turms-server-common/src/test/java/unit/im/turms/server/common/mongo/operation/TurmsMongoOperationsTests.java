@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.mongo.operation;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcernError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import im.turms.server.common.mongo.MongoContext;
+import im.turms.server.common.mongo.operation.TurmsBulkWriteResult;
+import im.turms.server.common.mongo.operation.TurmsMongoOperations;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.BulkWrite;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.Update;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class TurmsMongoOperationsTests {
+
+    @Test
+    void bulkWrite_shouldBuildModelsInOrder() {
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1))
+                .upsert(Filter.newBuilder(1).eq("_id", 2), Update.newBuilder(1).set("name", "a"))
+                .deleteOne(Filter.newBuilder(1).eq("_id", 3))
+                .ordered(false);
+
+        List<WriteModel<Document>> models = bulkWrite.getModels();
+        assertThat(models).hasSize(3);
+        assertThat(models.get(0)).isInstanceOf(InsertOneModel.class);
+        assertThat(models.get(1)).isInstanceOf(UpdateOneModel.class);
+        assertThat(((UpdateOneModel<Document>) models.get(1)).getOptions().isUpsert()).isTrue();
+        assertThat(models.get(2)).isInstanceOf(DeleteOneModel.class);
+        assertThat(bulkWrite.getOptions().isOrdered()).isFalse();
+    }
+
+    @Test
+    void bulkWrite_shouldReturnResult_forSucceededOperations() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.wasAcknowledged()).thenReturn(true);
+        when(result.getInsertedCount()).thenReturn(1);
+        when(result.getDeletedCount()).thenReturn(1);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(Mono.just(result));
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1))
+                .deleteOne(Filter.newBuilder(1).eq("_id", 2));
+
+        StepVerifier.create(operations.bulkWrite(Document.class, bulkWrite))
+                .assertNext(writeResult -> {
+                    assertThat(writeResult.isSucceeded()).isTrue();
+                    assertThat(writeResult.insertedCount()).isEqualTo(1);
+                    assertThat(writeResult.deletedCount()).isEqualTo(1);
+                    assertThat(writeResult.getStatus(0)).isEqualTo(TurmsBulkWriteResult.Status.SUCCEEDED);
+                    assertThat(writeResult.getStatus(1)).isEqualTo(TurmsBulkWriteResult.Status.SUCCEEDED);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkWrite_shouldReportEveryOperation_forOrderedWriteErrors() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.error(newBulkWriteException(List.of(newWriteError(1)), null)));
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1))
+                .insert(new Document("_id", 1))
+                .insert(new Document("_id", 2));
+
+        StepVerifier.create(operations.bulkWrite(Document.class, bulkWrite))
+                .assertNext(writeResult -> {
+                    assertThat(writeResult.isSucceeded()).isFalse();
+                    assertThat(writeResult.getStatus(0)).isEqualTo(TurmsBulkWriteResult.Status.SUCCEEDED);
+                    assertThat(writeResult.getStatus(1)).isEqualTo(TurmsBulkWriteResult.Status.FAILED);
+                    assertThat(writeResult.getStatus(2)).isEqualTo(TurmsBulkWriteResult.Status.NOT_EXECUTED);
+                    assertThat(writeResult.getError(1)).isNotNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkWrite_shouldExecuteRemainingOperations_forUnorderedWriteErrors() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.error(newBulkWriteException(List.of(newWriteError(0)), null)));
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1))
+                .insert(new Document("_id", 2))
+                .ordered(false);
+
+        StepVerifier.create(operations.bulkWrite(Document.class, bulkWrite))
+                .assertNext(writeResult -> {
+                    assertThat(writeResult.getStatus(0)).isEqualTo(TurmsBulkWriteResult.Status.FAILED);
+                    assertThat(writeResult.getStatus(1)).isEqualTo(TurmsBulkWriteResult.Status.SUCCEEDED);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkWrite_shouldError_forWriteConcernError() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        WriteConcernError writeConcernError = new WriteConcernError(64, "", "waiting for replication timed out", new BsonDocument());
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.error(newBulkWriteException(Collections.emptyList(), writeConcernError)));
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1));
+
+        StepVerifier.create(operations.bulkWrite(Document.class, bulkWrite))
+                .expectError()
+                .verify();
+    }
+
+    @Test
+    void bulkWrite_shouldUseSession() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        ClientSession session = mock(ClientSession.class);
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.wasAcknowledged()).thenReturn(true);
+        when(collection.bulkWrite(eq(session), anyList(), any(BulkWriteOptions.class))).thenReturn(Mono.just(result));
+        BulkWrite<Document> bulkWrite = BulkWrite.<Document>newBuilder()
+                .insert(new Document("_id", 1));
+
+        StepVerifier.create(operations.bulkWrite(session, Document.class, bulkWrite))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(collection).bulkWrite(eq(session), anyList(), any(BulkWriteOptions.class));
+    }
+
+    @Test
+    void bulkWrite_shouldNotSendRequest_forEmptyOperations() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+
+        StepVerifier.create(operations.bulkWrite(Document.class, BulkWrite.newBuilder()))
+                .assertNext(writeResult -> assertThat(writeResult.operationCount()).isZero())
+                .verifyComplete();
+    }
+
+    @Test
+    void aggregate_shouldBuildStagesAndDecodeResults() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        TurmsMongoOperations operations = newOperations(collection);
+        AggregatePublisher<Document> publisher = mockAggregatePublisher(
+                List.of(new Document("_id", 1L).append("count", 2), new Document("_id", 2L).append("count", 1)));
+        when(collection.aggregate(anyList(), eq(Document.class))).thenReturn(publisher);
+        Aggregation aggregation = Aggregation.newBuilder()
+                .match(Filter.newBuilder(1).eq("status", 1))
+                .group("$userId")
+                .sort("_id", true)
+                .limit(10)
+                .allowDiskUse(true);
+
+        List<Bson> stages = aggregation.getStages();
+        assertThat(stages).hasSize(4);
+        assertThat(stages.get(0).toBsonDocument().containsKey("$match")).isTrue();
+        assertThat(stages.get(1).toBsonDocument().containsKey("$group")).isTrue();
+        assertThat(stages.get(2).toBsonDocument().containsKey("$sort")).isTrue();
+        assertThat(stages.get(3).toBsonDocument().containsKey("$limit")).isTrue();
+
+        StepVerifier.create(operations.aggregate(Document.class, aggregation, Document.class))
+                .expectNextMatches(document -> document.getLong("_id") == 1L)
+                .expectNextMatches(document -> document.getLong("_id") == 2L)
+                .verifyComplete();
+        verify(publisher).allowDiskUse(true);
+    }
+
+    private TurmsMongoOperations newOperations(MongoCollection<Document> collection) {
+        MongoContext context = mock(MongoContext.class);
+        when(context.getCollection(Document.class)).thenReturn(collection);
+        return new TurmsMongoOperations(context);
+    }
+
+    private AggregatePublisher<Document> mockAggregatePublisher(List<Document> documents) {
+        AggregatePublisher<Document> publisher = mock(AggregatePublisher.class);
+        when(publisher.allowDiskUse(anyBoolean())).thenReturn(publisher);
+        doAnswer(invocation -> {
+            Subscriber<? super Document> subscriber = invocation.getArgument(0);
+            Flux.fromIterable(documents).subscribe(subscriber);
+            return null;
+        }).when(publisher).subscribe(any());
+        return publisher;
+    }
+
+    private MongoBulkWriteException newBulkWriteException(List<BulkWriteError> errors, WriteConcernError writeConcernError) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.wasAcknowledged()).thenReturn(true);
+        return new MongoBulkWriteException(result, errors, writeConcernError, new ServerAddress());
+    }
+
+    private BulkWriteError newWriteError(int index) {
+        return new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), index);
+    }
+
+}
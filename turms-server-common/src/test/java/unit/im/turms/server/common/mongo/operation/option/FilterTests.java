@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.mongo.operation.option;
+
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class FilterTests {
+
+    @Test
+    void afterIfNotNull_shouldDoNothing_forFirstPage() {
+        BsonDocument document = toDocument(Filter.newBuilder(1)
+                .afterIfNotNull("_id", null, true));
+
+        assertThat(document).isEmpty();
+    }
+
+    @Test
+    void afterIfNotNull_shouldAddGreaterThan_ifAscending() {
+        BsonDocument document = toDocument(Filter.newBuilder(1)
+                .afterIfNotNull("_id", 10L, true));
+
+        assertThat(document).isEqualTo(new BsonDocument("_id", new BsonDocument("$gt", new BsonInt64(10))));
+    }
+
+    @Test
+    void afterIfNotNull_shouldAddLessThan_ifDescending() {
+        BsonDocument document = toDocument(Filter.newBuilder(1)
+                .afterIfNotNull("_id", 10L, false));
+
+        assertThat(document).isEqualTo(new BsonDocument("_id", new BsonDocument("$lt", new BsonInt64(10))));
+    }
+
+    @Test
+    void afterIfNotNull_shouldMergeIntoExistingOperators() {
+        BsonDocument document = toDocument(Filter.newBuilder(1)
+                .gte("_id", 5L)
+                .afterIfNotNull("_id", 10L, true));
+
+        assertThat(document.getDocument("_id"))
+                .isEqualTo(new BsonDocument("$gte", new BsonInt64(5)).append("$gt", new BsonInt64(10)));
+    }
+
+    @Test
+    void afterIfNotNull_shouldUseAnd_ifKeyIsUsedForEquality() {
+        BsonDocument document = toDocument(Filter.newBuilder(1)
+                .eq("_id", 5L)
+                .afterIfNotNull("_id", 10L, true));
+
+        assertThat(document.containsKey("_id")).isFalse();
+        BsonArray conditions = document.getArray("$and");
+        assertThat(conditions).containsExactly(
+                new BsonDocument("_id", new BsonInt64(5)),
+                new BsonDocument("_id", new BsonDocument("$gt", new BsonInt64(10))));
+    }
+
+    @Test
+    void paginateByKeyset_shouldSortByKeyAndLimit() {
+        BsonDocument document = QueryOptions.newBuilder(2)
+                .paginateByKeyset("_id", true, 20)
+                .asDocument("message", new BsonDocument());
+
+        assertThat(document.getDocument("sort")).isEqualTo(new BsonDocument("_id", new BsonInt32(1)));
+        assertThat(document.getInt32("limit").getValue()).isEqualTo(20);
+        assertThat(document.containsKey("skip")).isFalse();
+    }
+
+    private static BsonDocument toDocument(Filter filter) {
+        return filter.toBsonDocument(BsonDocument.class, null);
+    }
+
+}
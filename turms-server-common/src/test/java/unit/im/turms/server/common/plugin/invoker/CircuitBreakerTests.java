@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.plugin.invoker;
+
+import im.turms.server.common.plugin.invoker.CircuitBreaker;
+import im.turms.server.common.property.env.common.ExtensionInvocationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTests {
+
+    private static final int OPEN_DURATION_MILLIS = 1000;
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker newCircuitBreaker() {
+        ExtensionInvocationProperties.CircuitBreakerProperties properties = new ExtensionInvocationProperties.CircuitBreakerProperties(
+                true,
+                10,
+                4,
+                50,
+                OPEN_DURATION_MILLIS,
+                2);
+        return new CircuitBreaker(properties, now::get);
+    }
+
+    @Test
+    void shouldStayClosed_whenCallsAreFewerThanMinimum() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        for (int i = 0; i < 3; i++) {
+            assertThat(breaker.tryAcquirePermission()).isTrue();
+            breaker.onFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldOpen_whenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void shouldEvictOldestOutcomes_whenSlidingWindowIsFull() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess();
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // The window of size 10 contains 5 successes and 5 failures now
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void shouldCloseAfterOpenDuration_whenTrialCallsSucceed() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        now.addAndGet(OPEN_DURATION_MILLIS);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldOpenAgain_whenTrialCallFails() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        now.addAndGet(OPEN_DURATION_MILLIS);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void shouldReturnPermit_whenTrialCallIsIgnored() {
+        CircuitBreaker breaker = newCircuitBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        now.addAndGet(OPEN_DURATION_MILLIS);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onIgnored();
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.server.common.plugin.invoker;
+
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.plugin.invoker.CircuitBreaker;
+import im.turms.server.common.plugin.invoker.ExtensionInvoker;
+import im.turms.server.common.property.env.common.ExtensionInvocationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtensionInvokerTests {
+
+    private ExtensionInvoker invoker;
+
+    @AfterEach
+    void closeInvoker() {
+        if (invoker != null) {
+            invoker.close();
+        }
+    }
+
+    private ExtensionInvoker newInvoker() {
+        ExtensionInvocationProperties.CircuitBreakerProperties circuitBreakerProperties =
+                new ExtensionInvocationProperties.CircuitBreakerProperties(
+                        true,
+                        10,
+                        4,
+                        50,
+                        1000,
+                        2);
+        ExtensionInvocationProperties properties = new ExtensionInvocationProperties().toBuilder()
+                .circuitBreaker(circuitBreakerProperties)
+                .build();
+        invoker = new ExtensionInvoker("test", properties);
+        return invoker;
+    }
+
+    @Test
+    void invoke_shouldNotOpenCircuitBreaker_whenExtensionRejectsWithBusinessException() {
+        ExtensionInvoker invoker = newInvoker();
+        for (int i = 0; i < 10; i++) {
+            Mono<Boolean> result = invoker.invoke(
+                    () -> Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED)),
+                    Mono.just(true));
+            StepVerifier.create(result)
+                    .expectError(TurmsBusinessException.class)
+                    .verify();
+        }
+
+        assertThat(invoker.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void invoke_shouldOpenCircuitBreaker_whenExtensionThrowsUnexpectedExceptions() {
+        ExtensionInvoker invoker = newInvoker();
+        for (int i = 0; i < 4; i++) {
+            Mono<Boolean> result = invoker.invoke(
+                    () -> Mono.error(new IllegalStateException("broken")),
+                    Mono.just(true));
+            StepVerifier.create(result)
+                    .expectError(IllegalStateException.class)
+                    .verify();
+        }
+
+        assertThat(invoker.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        StepVerifier.create(invoker.invoke(() -> Mono.just(false), Mono.just(true)))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+}
@@ -27,6 +27,7 @@ import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 public abstract class BaseCodecTest {
 
@@ -37,10 +38,13 @@ public abstract class BaseCodecTest {
     public <T extends RpcRequest<?>> T writeRequestAndReadBuffer(RpcRequestCodec<T> codec, T request) {
         TracingContext tracingContext = new TracingContext();
         request.setTracingContext(tracingContext);
+        long deadline = System.currentTimeMillis() + 60_000;
+        request.setDeadline(deadline);
 
         T parsedRequest = writeDataAndReadBuffer(codec, request);
 
         assertThat(parsedRequest.getTracingContext().getTraceId()).isEqualTo(tracingContext.getTraceId());
+        assertThat(parsedRequest.getDeadline()).isCloseTo(deadline, within(1000L));
 
         return parsedRequest;
     }
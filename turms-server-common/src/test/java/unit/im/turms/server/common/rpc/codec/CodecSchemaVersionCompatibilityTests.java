@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.rpc.codec;
+
+import im.turms.common.constant.DeviceType;
+import im.turms.common.constant.statuscode.SessionCloseStatus;
+import im.turms.common.model.bo.common.Int64Values;
+import im.turms.common.model.dto.notification.TurmsNotification;
+import im.turms.common.model.dto.request.TurmsRequest;
+import im.turms.server.common.cluster.node.NodeVersion;
+import im.turms.server.common.cluster.service.codec.codec.Codec;
+import im.turms.server.common.cluster.service.codec.codec.CodecId;
+import im.turms.server.common.cluster.service.codec.codec.CodecPool;
+import im.turms.server.common.cluster.service.codec.codec.CodecSchemaVersionRange;
+import im.turms.server.common.cluster.service.connection.request.ClosingHandshakeRequest;
+import im.turms.server.common.cluster.service.connection.request.KeepaliveRequest;
+import im.turms.server.common.cluster.service.connection.request.OpeningHandshakeRequest;
+import im.turms.server.common.cluster.service.connection.response.OpeningHandshakeResponse;
+import im.turms.server.common.cluster.service.rpc.RpcErrorCode;
+import im.turms.server.common.cluster.service.rpc.codec.RpcFrameDecoder;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
+import im.turms.server.common.cluster.service.rpc.dto.RpcRequest;
+import im.turms.server.common.cluster.service.rpc.dto.RpcResponse;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamComplete;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
+import im.turms.server.common.cluster.service.rpc.exception.RpcException;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.dto.ServiceRequest;
+import im.turms.server.common.dto.ServiceResponse;
+import im.turms.server.common.lang.Null;
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.server.common.rpc.request.CountOnlineUsersRequest;
+import im.turms.server.common.rpc.request.HandleServiceRequest;
+import im.turms.server.common.rpc.codec.request.RpcRequestCodec;
+import im.turms.server.common.rpc.request.ManagePluginRequest;
+import im.turms.server.common.rpc.request.QueryTraceSpansRequest;
+import im.turms.server.common.rpc.request.SendNotificationRequest;
+import im.turms.server.common.rpc.request.SetUserOfflineRequest;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.tracing.TracingContext;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Encodes the data of every registered codec with the schema versions N - 1, N, and N + 1,
+ * and decodes them with the codec of the version N to ensure that the supported versions
+ * can be decoded and the unsupported versions are rejected clearly.
+ *
+ * @author James Chen
+ */
+class CodecSchemaVersionCompatibilityTests extends BaseCodecTest {
+
+    private static final int REQUEST_ID = 1;
+    private static final NodeVersion NODE_VERSION = NodeVersion.parse("1.0.0");
+
+    @AfterEach
+    void resetWriteSchemaVersions() {
+        CodecPool.negotiateWriteSchemaVersions(Collections.emptyList());
+    }
+
+    @Test
+    void samples_shouldCoverAllRegisteredCodecs() {
+        Set<Integer> sampleCodecIds = newSamples().keySet()
+                .stream()
+                .map(CodecId::getId)
+                .collect(Collectors.toSet());
+
+        assertThat(sampleCodecIds)
+                .as("Every registered codec should have a sample to test the compatibility")
+                .containsExactlyInAnyOrderElementsOf(CodecPool.getSchemaVersionRanges().keySet());
+    }
+
+    @Test
+    void decode_shouldSucceed_forSupportedSchemaVersions() {
+        for (Map.Entry<CodecId, Object> entry : newSamples().entrySet()) {
+            Codec<Object> codec = CodecPool.getCodec(entry.getKey().getId());
+            Object sample = entry.getValue();
+            for (int version = codec.getMinSchemaVersion(); version <= codec.getSchemaVersion(); version++) {
+                Object decoded = decode(encode(codec, sample, version));
+
+                assertDecoded(codec, sample, decoded);
+            }
+        }
+    }
+
+    @Test
+    void decode_shouldRejectFrame_forUnsupportedSchemaVersions() {
+        for (Map.Entry<CodecId, Object> entry : newSamples().entrySet()) {
+            Codec<Object> codec = CodecPool.getCodec(entry.getKey().getId());
+            Object sample = entry.getValue();
+            for (int version : List.of(codec.getMinSchemaVersion() - 1, codec.getSchemaVersion() + 1)) {
+                ByteBuf frame = encode(codec, sample, version);
+
+                assertThatThrownBy(() -> decode(frame))
+                        .as("The schema version %d of the codec %s should be rejected", version, codec.getCodecId())
+                        .isInstanceOf(CorruptedFrameException.class)
+                        .hasStackTraceContaining("The schema version %d of the codec %s is unsupported"
+                                .formatted(version, codec.getCodecId()));
+            }
+        }
+    }
+
+    @Test
+    void decode_shouldPropagateSpanContext_onlySinceSpanContextSchemaVersion() {
+        Codec<Object> codec = CodecPool.getCodec(CodecId.RPC_COUNT_ONLINE_USERS.getId());
+        TracingContext tracingContext = new TracingContext(1L, 2L, true);
+
+        CountOnlineUsersRequest request = new CountOnlineUsersRequest();
+        request.setTracingContext(tracingContext);
+        RpcRequest<?> decoded = (RpcRequest<?>) decode(encodeFrame(codec, request, RpcRequestCodec.SPAN_CONTEXT_SCHEMA_VERSION));
+        assertThat(decoded.getTracingContext().getTraceId()).isEqualTo(1L);
+        assertThat(decoded.getTracingContext().getSpanId()).isEqualTo(2L);
+        assertThat(decoded.getTracingContext().isSampled()).isTrue();
+
+        request = new CountOnlineUsersRequest();
+        request.setTracingContext(tracingContext);
+        decoded = (RpcRequest<?>) decode(encodeFrame(codec, request, RpcRequestCodec.SPAN_CONTEXT_SCHEMA_VERSION - 1));
+        assertThat(decoded.getTracingContext().getTraceId()).isEqualTo(1L);
+        assertThat(decoded.getTracingContext().hasSpanId()).isFalse();
+        assertThat(decoded.getTracingContext().isSampled()).isFalse();
+    }
+
+    @Test
+    void findIncompatibleCodecs_shouldReturnEmpty_ifSchemaVersionsOverlap() {
+        Map<Integer, CodecSchemaVersionRange> peerRanges = newPeerRanges(CodecId.STRING, 1, 2);
+
+        assertThat(CodecPool.findIncompatibleCodecs(peerRanges)).isEmpty();
+    }
+
+    @Test
+    void findIncompatibleCodecs_shouldReturnCodecs_ifSchemaVersionsDoNotOverlap() {
+        Codec<?> codec = CodecPool.getCodec(CodecId.STRING.getId());
+        int newerVersion = codec.getSchemaVersion() + 1;
+        Map<Integer, CodecSchemaVersionRange> peerRanges = newPeerRanges(CodecId.STRING, newerVersion, newerVersion);
+
+        assertThat(CodecPool.findIncompatibleCodecs(peerRanges))
+                .singleElement()
+                .asString()
+                .startsWith(CodecId.STRING.name());
+    }
+
+    @Test
+    void negotiateWriteSchemaVersions_shouldUseLatestVersionSupportedByAllPeers() {
+        Codec<?> codec = CodecPool.getCodec(CodecId.STRING.getId());
+        int version = codec.getSchemaVersion();
+        Map<Integer, CodecSchemaVersionRange> newerPeerRanges = newPeerRanges(CodecId.STRING, version, version + 1);
+        Map<Integer, CodecSchemaVersionRange> olderPeerRanges =
+                newPeerRanges(CodecId.STRING, codec.getMinSchemaVersion(), codec.getMinSchemaVersion());
+
+        CodecPool.negotiateWriteSchemaVersions(List.of(newerPeerRanges));
+        assertThat(CodecPool.getWriteSchemaVersion(codec)).isEqualTo(version);
+
+        CodecPool.negotiateWriteSchemaVersions(List.of(newerPeerRanges, olderPeerRanges));
+        assertThat(CodecPool.getWriteSchemaVersion(codec)).isEqualTo(codec.getMinSchemaVersion());
+    }
+
+    private Map<Integer, CodecSchemaVersionRange> newPeerRanges(CodecId codecId, int minVersion, int version) {
+        Map<Integer, CodecSchemaVersionRange> ranges = new HashMap<>(CodecPool.getSchemaVersionRanges());
+        ranges.put(codecId.getId(), new CodecSchemaVersionRange(minVersion, version));
+        return ranges;
+    }
+
+    private ByteBuf encode(Codec<Object> codec, Object data, int schemaVersion) {
+        if (data instanceof RpcRequest<?> request) {
+            request.setTracingContext(new TracingContext(1L));
+        }
+        return encodeFrame(codec, data, schemaVersion);
+    }
+
+    private ByteBuf encodeFrame(Codec<Object> codec, Object data, int schemaVersion) {
+        ByteBuf frame = Unpooled.buffer()
+                .writeShort(codec.getCodecId().getId())
+                .writeInt(REQUEST_ID)
+                .writeByte(schemaVersion);
+        codec.write(frame, data, schemaVersion);
+        ByteBuf bufferToComposite = codec.byteBufToComposite(data);
+        if (bufferToComposite != null) {
+            frame = Unpooled.wrappedBuffer(frame, bufferToComposite.retainedDuplicate());
+        }
+        return Unpooled.wrappedBuffer(Unpooled.buffer(Short.BYTES).writeShort(frame.readableBytes()), frame);
+    }
+
+    private Object decode(ByteBuf frame) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcFrameDecoder());
+        try {
+            channel.writeInbound(frame);
+            return channel.readInbound();
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    private void assertDecoded(Codec<?> codec, Object sample, Object decoded) {
+        String description = "The data decoded by the codec " + codec.getCodecId();
+        if (sample instanceof RpcRequest<?>
+                || sample instanceof RpcCancellation
+                || sample instanceof RpcStreamCredit
+                || sample instanceof RpcStreamComplete) {
+            assertThat(decoded).as(description).isInstanceOf(sample.getClass());
+            return;
+        }
+        assertThat(decoded).as(description).isInstanceOf(RpcResponse.class);
+        RpcResponse response = (RpcResponse) decoded;
+        if (sample instanceof RpcException) {
+            assertThat(response.exception()).as(description).isEqualTo(sample);
+        } else if (sample instanceof Null) {
+            assertThat(response.result()).as(description).isNull();
+        } else {
+            assertThat(response.result()).as(description).isInstanceOf(sample instanceof List ? List.class : sample.getClass());
+        }
+    }
+
+    private Map<CodecId, Object> newSamples() {
+        Map<Integer, CodecSchemaVersionRange> ranges = CodecPool.getSchemaVersionRanges();
+        ServiceRequest serviceRequest = new ServiceRequest(new byte[] {127, 0, 0, 1},
+                1L,
+                DeviceType.ANDROID,
+                1L,
+                TurmsRequest.KindCase.CREATE_MESSAGE_REQUEST,
+                Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4}));
+        TurmsNotification.Data data = TurmsNotification.Data.newBuilder()
+                .setIds(Int64Values.newBuilder().addValues(1).build())
+                .build();
+        Map<CodecId, Object> samples = new EnumMap<>(CodecId.class);
+        samples.put(CodecId.NULL, Null.INSTANCE);
+        samples.put(CodecId.PRIMITIVE_BYTE, (byte) 1);
+        samples.put(CodecId.PRIMITIVE_SHORT, (short) 1);
+        samples.put(CodecId.PRIMITIVE_INTEGER, 1);
+        samples.put(CodecId.PRIMITIVE_LONG, 1L);
+        samples.put(CodecId.PRIMITIVE_FLOAT, 1F);
+        samples.put(CodecId.PRIMITIVE_DOUBLE, 1D);
+        samples.put(CodecId.PRIMITIVE_CHAR, 'a');
+        samples.put(CodecId.PRIMITIVE_BOOL, true);
+        samples.put(CodecId.STRING, "turms");
+        samples.put(CodecId.COLLECTION_LIST, List.of("turms"));
+        samples.put(CodecId.RPC_EXCEPTION,
+                RpcException.get(RpcErrorCode.UNKNOWN_ERROR, TurmsStatusCode.SERVER_INTERNAL_ERROR, "error"));
+        samples.put(CodecId.RPC_CANCELLATION, new RpcCancellation(REQUEST_ID));
+        samples.put(CodecId.RPC_STREAM_CREDIT, new RpcStreamCredit(REQUEST_ID, 8));
+        samples.put(CodecId.RPC_STREAM_COMPLETE, new RpcStreamComplete(REQUEST_ID));
+        samples.put(CodecId.RPC_OPENING_HANDSHAKE, new OpeningHandshakeRequest("turms001", NODE_VERSION, ranges));
+        samples.put(CodecId.RPC_OPENING_HANDSHAKE_RESPONSE,
+                new OpeningHandshakeResponse(OpeningHandshakeRequest.RESPONSE_CODE_SUCCESS, NODE_VERSION, ranges));
+        samples.put(CodecId.RPC_CLOSING_HANDSHAKE,
+                new ClosingHandshakeRequest(ClosingHandshakeRequest.CLOSE_STATUS_CODE_SERVER_SHUTTING_DOWN));
+        samples.put(CodecId.RPC_KEEPALIVE, new KeepaliveRequest(List.of("turms002")));
+        samples.put(CodecId.RPC_HANDLE_SERVICE_REQUEST, new HandleServiceRequest(serviceRequest));
+        samples.put(CodecId.RPC_SEND_NOTIFICATION,
+                new SendNotificationRequest(Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4}), Set.of(1L)));
+        samples.put(CodecId.RPC_SET_USER_OFFLINE,
+                new SetUserOfflineRequest(1L, Set.of(DeviceType.ANDROID), SessionCloseStatus.ILLEGAL_REQUEST));
+        samples.put(CodecId.RPC_COUNT_ONLINE_USERS, new CountOnlineUsersRequest());
+        samples.put(CodecId.RPC_MANAGE_PLUGIN, new ManagePluginRequest(PluginAction.DISABLE, "turms-plugin-minio", null));
+        samples.put(CodecId.RPC_QUERY_TRACE_SPANS, new QueryTraceSpansRequest(Set.of(1L), 10));
+        samples.put(CodecId.BO_TRACING_SPAN, new SpanData(1L, 2L, TracingContext.NO_SPAN_ID, "gateway.clientRequest",
+                "turms001", 1L, 1L, null, Map.of("type", "CREATE_MESSAGE_REQUEST")));
+        samples.put(CodecId.DTO_SERVICE_RESPONSE, new ServiceResponse(data, TurmsStatusCode.OK, "ok"));
+        return samples;
+    }
+
+}
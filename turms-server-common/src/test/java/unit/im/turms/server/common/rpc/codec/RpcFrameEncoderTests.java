@@ -23,6 +23,9 @@ import im.turms.common.model.dto.request.TurmsRequest;
 import im.turms.common.model.dto.request.message.CreateMessageRequest;
 import im.turms.server.common.cluster.service.rpc.codec.RpcFrameDecoder;
 import im.turms.server.common.cluster.service.rpc.codec.RpcFrameEncoder;
+import im.turms.server.common.cluster.service.rpc.dto.RpcCancellation;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamComplete;
+import im.turms.server.common.cluster.service.rpc.dto.RpcStreamCredit;
 import im.turms.server.common.dto.ServiceRequest;
 import im.turms.server.common.rpc.request.HandleServiceRequest;
 import im.turms.server.common.tracing.TracingContext;
@@ -91,4 +94,34 @@ class RpcFrameEncoderTests extends BaseCodecTest {
         assertThat(parsedTurmsRequest).isNotNull();
     }
 
+    @Test
+    void shouldGetTheSameRequestId_afterEncodeAndDecode_forCancellation() {
+        ByteBuf buffer = RpcFrameEncoder.INSTANCE.encode(123, new RpcCancellation(123));
+
+        Object cancellation = new RpcFrameDecoder().decodePayload(null, buffer);
+        buffer.release();
+
+        assertThat(cancellation).isEqualTo(new RpcCancellation(123));
+    }
+
+    @Test
+    void shouldGetTheSameCredit_afterEncodeAndDecode_forStreamCredit() {
+        ByteBuf buffer = RpcFrameEncoder.INSTANCE.encode(123, new RpcStreamCredit(123, 32));
+
+        Object credit = new RpcFrameDecoder().decodePayload(null, buffer);
+        buffer.release();
+
+        assertThat(credit).isEqualTo(new RpcStreamCredit(123, 32));
+    }
+
+    @Test
+    void shouldGetTheSameRequestId_afterEncodeAndDecode_forStreamComplete() {
+        ByteBuf buffer = RpcFrameEncoder.INSTANCE.encode(123, new RpcStreamComplete(123));
+
+        Object complete = new RpcFrameDecoder().decodePayload(null, buffer);
+        buffer.release();
+
+        assertThat(complete).isEqualTo(new RpcStreamComplete(123));
+    }
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.rpc.codec.request;
+
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.server.common.rpc.codec.request.ManagePluginRequestCodec;
+import im.turms.server.common.rpc.request.ManagePluginRequest;
+import org.junit.jupiter.api.Test;
+import unit.im.turms.server.common.rpc.codec.BaseCodecTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ManagePluginRequestCodecTests extends BaseCodecTest {
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forLegalRequest() {
+        ManagePluginRequest expectedRequest = new ManagePluginRequest(PluginAction.UPGRADE,
+                "turms-plugin-minio",
+                "plugins/turms-plugin-minio-0.10.0.jar");
+        ManagePluginRequest actualRequest = writeRequestAndReadBuffer(new ManagePluginRequestCodec(),
+                expectedRequest);
+
+        assertThat(actualRequest.getAction()).isEqualTo(expectedRequest.getAction());
+        assertThat(actualRequest.getPluginId()).isEqualTo(expectedRequest.getPluginId());
+        assertThat(actualRequest.getPath()).isEqualTo(expectedRequest.getPath());
+    }
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forRequestWithoutPath() {
+        ManagePluginRequest expectedRequest = new ManagePluginRequest(PluginAction.DISABLE,
+                "turms-plugin-minio",
+                null);
+        ManagePluginRequest actualRequest = writeRequestAndReadBuffer(new ManagePluginRequestCodec(),
+                expectedRequest);
+
+        assertThat(actualRequest.getAction()).isEqualTo(expectedRequest.getAction());
+        assertThat(actualRequest.getPluginId()).isEqualTo(expectedRequest.getPluginId());
+        assertThat(actualRequest.getPath()).isNull();
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.rpc.codec.request;
+
+import im.turms.server.common.rpc.codec.request.QueryTraceSpansRequestCodec;
+import im.turms.server.common.rpc.codec.response.SpanDataCodec;
+import im.turms.server.common.rpc.request.QueryTraceSpansRequest;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.tracing.TracingContext;
+import org.junit.jupiter.api.Test;
+import unit.im.turms.server.common.rpc.codec.BaseCodecTest;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryTraceSpansRequestCodecTests extends BaseCodecTest {
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forRequestWithTraceIds() {
+        QueryTraceSpansRequest expectedRequest = new QueryTraceSpansRequest(Set.of(1L, 2L, 3L), 10);
+        QueryTraceSpansRequest actualRequest = writeRequestAndReadBuffer(new QueryTraceSpansRequestCodec(),
+                expectedRequest);
+
+        assertThat(actualRequest.getTraceIds()).isEqualTo(expectedRequest.getTraceIds());
+        assertThat(actualRequest.getMaxSlowTraces()).isEqualTo(expectedRequest.getMaxSlowTraces());
+    }
+
+    @Test
+    void shouldGetTheSameRequest_afterWriteAndRead_forRequestWithoutTraceIds() {
+        QueryTraceSpansRequest expectedRequest = new QueryTraceSpansRequest(null, 10);
+        QueryTraceSpansRequest actualRequest = writeRequestAndReadBuffer(new QueryTraceSpansRequestCodec(),
+                expectedRequest);
+
+        assertThat(actualRequest.getTraceIds()).isNull();
+        assertThat(actualRequest.getMaxSlowTraces()).isEqualTo(expectedRequest.getMaxSlowTraces());
+    }
+
+    @Test
+    void shouldGetTheSameSpan_afterWriteAndRead() {
+        SpanData expectedSpan = new SpanData(1L, 2L, TracingContext.NO_SPAN_ID, "rpc.server.handleServiceRequest",
+                "turms001", 1_600_000_000_000_000L, 1500L, "java.lang.IllegalStateException: 错误",
+                Map.of("fromNode", "gateway001", "queueMicros", "20"));
+        SpanData actualSpan = writeDataAndReadBuffer(new SpanDataCodec(), expectedSpan);
+
+        assertThat(actualSpan).isEqualTo(expectedSpan);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.server.common.security;
+
+import im.turms.server.common.security.HmacSigner;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author James Chen
+ */
+class HmacSignerTests {
+
+    private static final byte[] DATA = "data".getBytes(StandardCharsets.UTF_8);
+
+    private final HmacSigner signer = new HmacSigner("secret".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void verify_shouldReturnTrue_forValidSignature() {
+        byte[] signature = signer.sign(DATA);
+
+        assertThat(signature).hasSize(HmacSigner.SIGNATURE_LENGTH);
+        assertThat(signer.verify(DATA, signature)).isTrue();
+    }
+
+    @Test
+    void verify_shouldReturnTrue_forSignatureAppendedToData() {
+        byte[] signedData = Arrays.copyOf(DATA, DATA.length + HmacSigner.SIGNATURE_LENGTH);
+        System.arraycopy(signer.sign(DATA), 0, signedData, DATA.length, HmacSigner.SIGNATURE_LENGTH);
+
+        assertThat(signer.verify(signedData, 0, DATA.length, signedData, DATA.length)).isTrue();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forTamperedSignature() {
+        byte[] signature = signer.sign(DATA);
+        signature[HmacSigner.SIGNATURE_LENGTH - 1] ^= 1;
+
+        assertThat(signer.verify(DATA, signature)).isFalse();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forTruncatedSignature() {
+        byte[] signature = Arrays.copyOf(signer.sign(DATA), HmacSigner.SIGNATURE_LENGTH - 1);
+
+        assertThat(signer.verify(DATA, signature)).isFalse();
+        assertThat(signer.verify(DATA, 0, DATA.length, signature, 0)).isFalse();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forSignatureByOtherSecret() {
+        HmacSigner otherSigner = new HmacSigner("other".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(signer.verify(DATA, otherSigner.sign(DATA))).isFalse();
+    }
+
+    @Test
+    void constructor_shouldThrow_forEmptySecret() {
+        assertThatThrownBy(() -> new HmacSigner(new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
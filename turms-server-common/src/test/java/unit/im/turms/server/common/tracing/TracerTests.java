@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.server.common.tracing;
+
+import im.turms.server.common.property.env.common.TracingProperties;
+import im.turms.server.common.tracing.Span;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.tracing.Tracer;
+import im.turms.server.common.tracing.TracingContext;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class TracerTests {
+
+    @Test
+    void newRootContext_shouldNotBeSampled_ifTracingIsDisabled() {
+        TracingProperties properties = newProperties(1.0f);
+        properties.setEnabled(false);
+        Tracer tracer = new Tracer(properties, span -> {
+        });
+
+        TracingContext context = tracer.newRootContext();
+
+        assertThat(context.isSampled()).isFalse();
+        assertThat(context.getTraceId()).isPositive();
+        assertThat(tracer.startEntrySpan(context, "test")).isSameAs(Span.NOOP);
+    }
+
+    @Test
+    void newRootContext_shouldBeSampledAccordingToSampleRate() {
+        Tracer tracerSamplingAll = new Tracer(newProperties(1.0f), span -> {
+        });
+        Tracer tracerSamplingNone = new Tracer(newProperties(0), span -> {
+        });
+
+        assertThat(tracerSamplingAll.newRootContext().isSampled()).isTrue();
+        assertThat(tracerSamplingNone.newRootContext().isSampled()).isFalse();
+    }
+
+    @Test
+    void startSpan_shouldBeChildOfParent() {
+        List<SpanData> exportedSpans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(newProperties(1.0f), exportedSpans::add);
+        TracingContext rootContext = tracer.newRootContext();
+
+        Span rootSpan = tracer.startEntrySpan(rootContext, "root");
+        Span childSpan = tracer.startSpan(rootSpan.getContext(), "child").tag("key", 1);
+        childSpan.end();
+        rootSpan.end();
+        rootSpan.end();
+
+        assertThat(exportedSpans).hasSize(2);
+        SpanData child = exportedSpans.get(0);
+        SpanData root = exportedSpans.get(1);
+        assertThat(root.isRoot()).isTrue();
+        assertThat(root.traceId()).isEqualTo(rootContext.getTraceId());
+        assertThat(child.traceId()).isEqualTo(rootContext.getTraceId());
+        assertThat(child.parentSpanId()).isEqualTo(root.spanId());
+        assertThat(child.tags()).containsEntry("key", "1");
+    }
+
+    @Test
+    void startSpan_shouldReturnNoop_ifParentIsNotSampled() {
+        Tracer tracer = new Tracer(newProperties(1.0f), span -> {
+        });
+
+        assertThat(tracer.startSpan(null, "test")).isSameAs(Span.NOOP);
+        assertThat(tracer.startSpan(TracingContext.NOOP, "test")).isSameAs(Span.NOOP);
+        assertThat(tracer.startSpan(new TracingContext(1L), "test")).isSameAs(Span.NOOP);
+    }
+
+    @Test
+    void getRecentSlowTraceIds_shouldOnlyContainTracesWithSlowEntrySpans() {
+        TracingProperties properties = newProperties(1.0f);
+        properties.setSlowTraceThresholdMillis(0);
+        Tracer tracer = new Tracer(properties, span -> {
+        });
+        TracingContext slowTrace = tracer.newRootContext();
+        TracingContext otherTrace = tracer.newRootContext();
+
+        tracer.startEntrySpan(slowTrace, "entry").end();
+        tracer.startEntrySpan(slowTrace, "entry").end();
+        tracer.startSpan(otherTrace, "notEntry").end();
+
+        assertThat(tracer.getRecentSlowTraceIds(10)).containsExactly(slowTrace.getTraceId());
+        assertThat(tracer.getRecentSpans(List.of(slowTrace.getTraceId(), otherTrace.getTraceId())))
+                .hasSize(3);
+    }
+
+    @Test
+    void trace_shouldRecordSpanAsChildOfSpanInContext() {
+        List<SpanData> exportedSpans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(newProperties(1.0f), exportedSpans::add);
+        Span parent = tracer.startEntrySpan(tracer.newRootContext(), "parent");
+
+        Mono<Integer> mono = tracer.trace(Mono.just(1), "child", "key", "value")
+                .contextWrite(context -> context.put(TracingContext.CTX_KEY_NAME, parent.getContext()));
+
+        StepVerifier.create(mono)
+                .expectNext(1)
+                .verifyComplete();
+        assertThat(exportedSpans).hasSize(1);
+        SpanData child = exportedSpans.get(0);
+        assertThat(child.name()).isEqualTo("child");
+        assertThat(child.parentSpanId()).isEqualTo(parent.getSpanId());
+        assertThat(child.tags()).containsEntry("key", "value");
+    }
+
+    @Test
+    void trace_shouldRecordError() {
+        List<SpanData> exportedSpans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(newProperties(1.0f), exportedSpans::add);
+        Span parent = tracer.startEntrySpan(tracer.newRootContext(), "parent");
+
+        Mono<Integer> mono = tracer.trace(Mono.<Integer>error(new IllegalStateException()), "child")
+                .contextWrite(context -> context.put(TracingContext.CTX_KEY_NAME, parent.getContext()));
+
+        StepVerifier.create(mono)
+                .verifyError(IllegalStateException.class);
+        assertThat(exportedSpans).hasSize(1);
+        assertThat(exportedSpans.get(0).error()).contains(IllegalStateException.class.getName());
+    }
+
+    @Test
+    void trace_shouldNotRecordSpan_ifNoSpanInContext() {
+        List<SpanData> exportedSpans = new CopyOnWriteArrayList<>();
+        Tracer tracer = new Tracer(newProperties(1.0f), exportedSpans::add);
+
+        StepVerifier.create(tracer.trace(Mono.just(1), "child"))
+                .expectNext(1)
+                .verifyComplete();
+        assertThat(exportedSpans).isEmpty();
+    }
+
+    private static TracingProperties newProperties(float sampleRate) {
+        TracingProperties properties = new TracingProperties();
+        properties.setEnabled(true);
+        properties.setSampleRate(sampleRate);
+        return properties;
+    }
+
+}
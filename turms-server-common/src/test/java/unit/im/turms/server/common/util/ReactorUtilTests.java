@@ -19,12 +19,16 @@ package unit.im.turms.server.common.util;
 
 import im.turms.server.common.util.ReactorUtil;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 /**
  * @author James Chen
  */
@@ -72,4 +76,38 @@ class ReactorUtilTests {
                 .verifyComplete();
     }
 
+    @Test
+    void keysetStream_shouldQueryPagesAfterLastKey_untilPageIsNotFull() {
+        List<Integer> records = List.of(1, 2, 3, 4, 5, 6, 7);
+        List<Integer> queriedKeys = new ArrayList<>();
+        Flux<Integer> stream = ReactorUtil.keysetStream(lastKey -> {
+                    queriedKeys.add(lastKey);
+                    int start = lastKey == null ? 0 : records.indexOf(lastKey) + 1;
+                    return Flux.fromIterable(records.subList(start, Math.min(start + 3, records.size())));
+                },
+                record -> record,
+                3);
+
+        StepVerifier.create(stream)
+                .expectNextSequence(records)
+                .verifyComplete();
+        assertThat(queriedKeys).containsExactly(null, 3, 6);
+    }
+
+    @Test
+    void keysetStream_shouldQueryOnceMore_ifLastPageIsFull() {
+        List<Integer> queriedKeys = new ArrayList<>();
+        Flux<Integer> stream = ReactorUtil.keysetStream(lastKey -> {
+                    queriedKeys.add(lastKey);
+                    return lastKey == null ? Flux.just(1, 2) : Flux.empty();
+                },
+                record -> record,
+                2);
+
+        StepVerifier.create(stream)
+                .expectNext(1, 2)
+                .verifyComplete();
+        assertThat(queriedKeys).containsExactly(null, 2);
+    }
+
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.bo;
+
+import im.turms.server.common.constant.TurmsStatusCode;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a bulk group member operation.
+ * A bulk operation isn't atomic, so the users that failed are reported with the reason individually.
+ *
+ * @author James Chen
+ */
+@Data
+public class GroupMemberBulkResult {
+
+    private final List<Long> succeededUserIds;
+    private final Map<Long, TurmsStatusCode> failedUserIds;
+
+    public GroupMemberBulkResult() {
+        succeededUserIds = new ArrayList<>();
+        failedUserIds = new HashMap<>();
+    }
+
+    public GroupMemberBulkResult(int expectedSize) {
+        succeededUserIds = new ArrayList<>(expectedSize);
+        failedUserIds = new HashMap<>();
+    }
+
+    public void addSucceededUserIds(Collection<Long> userIds) {
+        succeededUserIds.addAll(userIds);
+    }
+
+    public void addFailedUserId(Long userId, TurmsStatusCode code) {
+        failedUserIds.put(userId, code);
+    }
+
+    public GroupMemberBulkResult merge(GroupMemberBulkResult result) {
+        succeededUserIds.addAll(result.succeededUserIds);
+        failedUserIds.putAll(result.failedUserIds);
+        return this;
+    }
+
+}
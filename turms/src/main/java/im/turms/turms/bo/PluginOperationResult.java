@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.bo;
+
+import im.turms.server.common.plugin.bo.PluginInfo;
+import lombok.Data;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a plugin lifecycle operation applied to the whole cluster.
+ * The operation is applied to the local node first and then to other members,
+ * so the members that failed are reported with the reason individually.
+ *
+ * @author James Chen
+ */
+@Data
+public class PluginOperationResult {
+
+    /**
+     * Null if the plugin has been unloaded
+     */
+    @Nullable
+    private final PluginInfo plugin;
+    private final List<String> succeededNodeIds = new ArrayList<>();
+    private final Map<String, String> failedNodeIds = new HashMap<>();
+
+    public void addSucceededNodeId(String nodeId) {
+        succeededNodeIds.add(nodeId);
+    }
+
+    public void addFailedNodeId(String nodeId, String reason) {
+        failedNodeIds.put(nodeId, reason);
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.turms.bo;
+
+import im.turms.server.common.tracing.SpanData;
+
+import java.util.List;
+
+/**
+ * A trace assembled from the spans recorded by all members
+ *
+ * @param durationMicros the duration from the start of the earliest span to the end of the latest span
+ * @param spans          the spans sorted by their start time
+ * @author James Chen
+ */
+public record TraceInfo(
+        long traceId,
+        long startEpochMicros,
+        long durationMicros,
+        List<SpanData> spans
+) {
+}
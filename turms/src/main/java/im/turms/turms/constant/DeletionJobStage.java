@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.constant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+
+/**
+ * The stages are processed in the declaration order of the same target type,
+ * and the targets themselves are deleted in the last stage so that the tombstones
+ * remain until all their dependent documents have been deleted.
+ * <p>
+ * Note that the enum is stored as an integer, so only append new stages to the end.
+ *
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Getter
+public enum DeletionJobStage {
+    GROUP_MEMBERS(DeletionJobTargetType.GROUP),
+    GROUP_CONVERSATIONS(DeletionJobTargetType.GROUP),
+    GROUP_VERSIONS(DeletionJobTargetType.GROUP),
+    GROUPS(DeletionJobTargetType.GROUP),
+
+    USER_RELATIONSHIPS(DeletionJobTargetType.USER),
+    USER_RELATIONSHIP_GROUPS(DeletionJobTargetType.USER),
+    PRIVATE_CONVERSATIONS(DeletionJobTargetType.USER),
+    USER_VERSIONS(DeletionJobTargetType.USER),
+    USERS(DeletionJobTargetType.USER);
+
+    private static final DeletionJobStage[] STAGES = values();
+
+    private final DeletionJobTargetType targetType;
+
+    public static DeletionJobStage first(DeletionJobTargetType targetType) {
+        return targetType == DeletionJobTargetType.GROUP ? GROUP_MEMBERS : USER_RELATIONSHIPS;
+    }
+
+    public boolean isTargetStage() {
+        return this == GROUPS || this == USERS;
+    }
+
+    /**
+     * @return null if it is the last stage of the target type
+     */
+    @Nullable
+    public DeletionJobStage next() {
+        int nextIndex = ordinal() + 1;
+        if (nextIndex < STAGES.length && STAGES[nextIndex].targetType == targetType) {
+            return STAGES[nextIndex];
+        }
+        return null;
+    }
+}
@@ -39,5 +39,7 @@ public final class MetricsConstant {
 
     public static final String ACKNOWLEDGED_MESSAGES_COUNTER_NAME = "msg.acknowledged";
     public static final String SENT_MESSAGES_COUNTER_NAME = "msg.sent";
+    public static final String DELETED_EXPIRED_MESSAGES_COUNTER_NAME = "msg.expired.deleted";
+    public static final String EXPIRED_MESSAGES_BACKLOG_GAUGE_NAME = "msg.expired.backlog";
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.constant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Note that the enum is stored as an integer, so only append new metrics to the end.
+ *
+ * @author James Chen
+ */
+@AllArgsConstructor
+@Getter
+public enum StatisticsMetric {
+    SENT_MESSAGES(true),
+    /**
+     * The number of the distinct senders of non-system messages
+     */
+    USERS_WHO_SENT_MESSAGES(false),
+    GROUPS_THAT_SENT_MESSAGES(false),
+    REGISTERED_USERS(true),
+    DELETED_USERS(true),
+    CREATED_GROUPS(true),
+    DELETED_GROUPS(true);
+
+    /**
+     * Whether the value of a range equals the sum of the values of its sub-ranges.
+     * The rollups of additive metrics are only computed hourly and summed on read,
+     * while the rollups of non-additive metrics (e.g. distinct counts) are computed
+     * for both hours and days and can only be used when a range matches a bucket exactly.
+     */
+    private final boolean additive;
+}
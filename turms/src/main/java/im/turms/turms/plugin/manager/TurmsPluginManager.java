@@ -17,6 +17,7 @@
 
 package im.turms.turms.plugin.manager;
 
+import im.turms.server.common.cluster.node.Node;
 import im.turms.server.common.plugin.base.AbstractTurmsPluginManager;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.turms.plugin.extension.handler.AdminActionHandler;
@@ -38,15 +39,18 @@ import java.util.List;
 @Log4j2
 public class TurmsPluginManager extends AbstractTurmsPluginManager {
 
-    private List<AdminActionHandler> adminActionHandlerList;
-    private List<ClientRequestHandler> clientRequestHandlerList;
-    private List<ExpiredMessageAutoDeletionNotificationHandler> expiredMessageAutoDeletionNotificationHandlerList;
-    private StorageServiceProvider storageServiceProvider;
+    private volatile List<AdminActionHandler> adminActionHandlerList;
+    private volatile List<ClientRequestHandler> clientRequestHandlerList;
+    private volatile List<ExpiredMessageAutoDeletionNotificationHandler> expiredMessageAutoDeletionNotificationHandlerList;
+    private volatile StorageServiceProvider storageServiceProvider;
 
-    public TurmsPluginManager(ApplicationContext context, TurmsPropertiesManager turmsPropertiesManager) {
-        super(context, turmsPropertiesManager.getLocalProperties());
+    public TurmsPluginManager(ApplicationContext context, Node node, TurmsPropertiesManager turmsPropertiesManager) {
+        super(context, node, turmsPropertiesManager.getLocalProperties());
     }
 
+    /**
+     * Called at startup and every time plugins are loaded, enabled, disabled, upgraded or unloaded at runtime
+     */
     @Override
     protected void initPlugins() {
         adminActionHandlerList = getAndInitExtensions(AdminActionHandler.class);
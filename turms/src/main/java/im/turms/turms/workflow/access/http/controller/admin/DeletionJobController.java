@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.access.http.controller.admin;
+
+import im.turms.server.common.access.http.dto.response.PaginationDTO;
+import im.turms.server.common.access.http.dto.response.ResponseDTO;
+import im.turms.server.common.access.http.dto.response.ResponseFactory;
+import im.turms.turms.constant.DeletionJobTargetType;
+import im.turms.turms.workflow.access.http.permission.AdminPermission;
+import im.turms.turms.workflow.access.http.permission.RequiredPermission;
+import im.turms.turms.workflow.access.http.util.PageUtil;
+import im.turms.turms.workflow.dao.domain.job.DeletionJob;
+import im.turms.turms.workflow.service.impl.job.DeletionJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Exposes the progress of the background deletion jobs of users and groups
+ *
+ * @author James Chen
+ */
+@RestController
+@RequestMapping("/deletion-jobs")
+public class DeletionJobController {
+
+    private final DeletionJobService deletionJobService;
+    private final PageUtil pageUtil;
+
+    public DeletionJobController(DeletionJobService deletionJobService, PageUtil pageUtil) {
+        this.deletionJobService = deletionJobService;
+        this.pageUtil = pageUtil;
+    }
+
+    @GetMapping
+    @RequiredPermission(AdminPermission.DELETION_JOB_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<Collection<DeletionJob>>>> queryDeletionJobs(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Set<DeletionJobTargetType> targetTypes,
+            @RequestParam(required = false) Boolean isCompleted,
+            @RequestParam(required = false) Integer size) {
+        size = pageUtil.getSize(size);
+        Flux<DeletionJob> jobsFlux = deletionJobService.queryJobs(
+                ids,
+                targetTypes,
+                isCompleted,
+                0,
+                size);
+        return ResponseFactory.okIfTruthy(jobsFlux);
+    }
+
+    @GetMapping("/page")
+    @RequiredPermission(AdminPermission.DELETION_JOB_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<PaginationDTO<DeletionJob>>>> queryDeletionJobs(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Set<DeletionJobTargetType> targetTypes,
+            @RequestParam(required = false) Boolean isCompleted,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size) {
+        size = pageUtil.getSize(size);
+        Mono<Long> count = deletionJobService.countJobs(ids, targetTypes, isCompleted);
+        Flux<DeletionJob> jobsFlux = deletionJobService.queryJobs(
+                ids,
+                targetTypes,
+                isCompleted,
+                page,
+                size);
+        return ResponseFactory.page(count, jobsFlux);
+    }
+
+}
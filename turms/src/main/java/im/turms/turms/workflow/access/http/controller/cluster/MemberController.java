@@ -117,6 +117,7 @@ public class MemberController {
                 updateMemberDTO.getIsSeed(),
                 updateMemberDTO.getIsLeaderEligible(),
                 updateMemberDTO.getIsActive(),
+                updateMemberDTO.getIsDraining(),
                 updateMemberDTO.getPriority());
         return addMemberMono.thenReturn(ResponseFactory.OK);
     }
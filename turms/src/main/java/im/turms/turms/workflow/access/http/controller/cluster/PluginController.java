@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.access.http.controller.cluster;
+
+import im.turms.server.common.access.http.dto.response.ResponseDTO;
+import im.turms.server.common.access.http.dto.response.ResponseFactory;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.plugin.bo.PluginInfo;
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.turms.bo.PluginOperationResult;
+import im.turms.turms.workflow.access.http.permission.RequiredPermission;
+import im.turms.turms.workflow.service.impl.plugin.PluginService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+import static im.turms.turms.workflow.access.http.permission.AdminPermission.CLUSTER_PLUGINS_CREATE;
+import static im.turms.turms.workflow.access.http.permission.AdminPermission.CLUSTER_PLUGINS_DELETE;
+import static im.turms.turms.workflow.access.http.permission.AdminPermission.CLUSTER_PLUGINS_QUERY;
+import static im.turms.turms.workflow.access.http.permission.AdminPermission.CLUSTER_PLUGINS_UPDATE;
+
+/**
+ * Loads, enables, disables, upgrades and unloads plugins at runtime on all members
+ *
+ * @author James Chen
+ */
+@RestController
+@RequestMapping("/cluster/plugins")
+public class PluginController {
+
+    private final PluginService pluginService;
+
+    public PluginController(PluginService pluginService) {
+        this.pluginService = pluginService;
+    }
+
+    @GetMapping
+    @RequiredPermission(CLUSTER_PLUGINS_QUERY)
+    public ResponseEntity<ResponseDTO<Collection<PluginInfo>>> queryPlugins() {
+        return ResponseFactory.okIfTruthy(pluginService.queryLocalPlugins());
+    }
+
+    @PostMapping
+    @RequiredPermission(CLUSTER_PLUGINS_CREATE)
+    public Mono<ResponseEntity<ResponseDTO<PluginOperationResult>>> loadPlugin(@RequestParam String path) {
+        return ResponseFactory.okIfTruthy(pluginService.handle(PluginAction.LOAD, null, path));
+    }
+
+    /**
+     * @param path the path of the new plugin and only required when the action is UPGRADE
+     */
+    @PutMapping
+    @RequiredPermission(CLUSTER_PLUGINS_UPDATE)
+    public Mono<ResponseEntity<ResponseDTO<PluginOperationResult>>> updatePlugin(
+            @RequestParam String id,
+            @RequestParam PluginAction action,
+            @RequestParam(required = false) String path) {
+        if (action != PluginAction.ENABLE && action != PluginAction.DISABLE && action != PluginAction.UPGRADE) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT,
+                    "The action must be one of ENABLE, DISABLE and UPGRADE");
+        }
+        return ResponseFactory.okIfTruthy(pluginService.handle(action, id, path));
+    }
+
+    @DeleteMapping
+    @RequiredPermission(CLUSTER_PLUGINS_DELETE)
+    public Mono<ResponseEntity<ResponseDTO<PluginOperationResult>>> unloadPlugin(@RequestParam String id) {
+        return ResponseFactory.okIfTruthy(pluginService.handle(PluginAction.UNLOAD, id, null));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.turms.workflow.access.http.controller.cluster;
+
+import im.turms.server.common.access.http.dto.response.ResponseDTO;
+import im.turms.server.common.access.http.dto.response.ResponseFactory;
+import im.turms.turms.bo.TraceInfo;
+import im.turms.turms.workflow.access.http.permission.RequiredPermission;
+import im.turms.turms.workflow.access.http.util.PageUtil;
+import im.turms.turms.workflow.service.impl.tracing.TraceService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Set;
+
+import static im.turms.turms.workflow.access.http.permission.AdminPermission.CLUSTER_TRACES_QUERY;
+
+/**
+ * Queries the sampled traces recorded in the memory of all members for troubleshooting slow requests
+ *
+ * @author James Chen
+ */
+@RestController
+@RequestMapping("/cluster/traces")
+public class TraceController {
+
+    private final TraceService traceService;
+    private final PageUtil pageUtil;
+
+    public TraceController(TraceService traceService, PageUtil pageUtil) {
+        this.traceService = traceService;
+        this.pageUtil = pageUtil;
+    }
+
+    /**
+     * @param ids the IDs of the traces to query, or null to query the recent slow traces
+     */
+    @GetMapping
+    @RequiredPermission(CLUSTER_TRACES_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<Collection<TraceInfo>>>> queryTraces(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Integer size) {
+        Flux<TraceInfo> traces = ids == null || ids.isEmpty()
+                ? traceService.queryRecentSlowTraces(pageUtil.getSize(size))
+                : traceService.queryTraces(ids);
+        return ResponseFactory.okIfTruthy(traces);
+    }
+
+}
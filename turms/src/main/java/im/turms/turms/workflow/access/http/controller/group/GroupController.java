@@ -18,6 +18,7 @@
 package im.turms.turms.workflow.access.http.controller.group;
 
 import com.mongodb.client.result.UpdateResult;
+import im.turms.server.common.access.http.dto.response.CursorPaginationDTO;
 import im.turms.server.common.access.http.dto.response.DeleteResultDTO;
 import im.turms.server.common.access.http.dto.response.PaginationDTO;
 import im.turms.server.common.access.http.dto.response.ResponseDTO;
@@ -33,7 +34,7 @@ import im.turms.turms.workflow.access.http.util.DateTimeUtil;
 import im.turms.turms.workflow.access.http.util.PageUtil;
 import im.turms.turms.workflow.dao.domain.group.Group;
 import im.turms.turms.workflow.service.impl.group.GroupService;
-import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.statistics.StatisticsRollupService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -65,14 +66,18 @@ import static im.turms.turms.workflow.access.http.permission.AdminPermission.GRO
 public class GroupController {
 
     private final GroupService groupService;
-    private final MessageService messageService;
+    private final StatisticsRollupService statisticsRollupService;
     private final PageUtil pageUtil;
     private final DateTimeUtil dateTimeUtil;
 
-    public GroupController(GroupService groupService, PageUtil pageUtil, MessageService messageService, DateTimeUtil dateTimeUtil) {
+    public GroupController(
+            GroupService groupService,
+            PageUtil pageUtil,
+            StatisticsRollupService statisticsRollupService,
+            DateTimeUtil dateTimeUtil) {
         this.groupService = groupService;
         this.pageUtil = pageUtil;
-        this.messageService = messageService;
+        this.statisticsRollupService = statisticsRollupService;
         this.dateTimeUtil = dateTimeUtil;
     }
 
@@ -170,6 +175,39 @@ public class GroupController {
         return ResponseFactory.page(count, groupsFlux);
     }
 
+    @GetMapping("/cursor")
+    @RequiredPermission(GROUP_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<CursorPaginationDTO<Group>>>> queryGroupsByCursor(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Set<Long> typeIds,
+            @RequestParam(required = false) Set<Long> creatorIds,
+            @RequestParam(required = false) Set<Long> ownerIds,
+            @RequestParam(required = false) Boolean isActive,
+            @RequestParam(required = false) Date creationDateStart,
+            @RequestParam(required = false) Date creationDateEnd,
+            @RequestParam(required = false) Date deletionDateStart,
+            @RequestParam(required = false) Date deletionDateEnd,
+            @RequestParam(required = false) Date muteEndDateStart,
+            @RequestParam(required = false) Date muteEndDateEnd,
+            @RequestParam(required = false) Set<Long> memberIds,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        int pageSize = pageUtil.getSize(size);
+        Flux<Group> groupsFlux = groupService.queryGroupsAfter(
+                ids,
+                typeIds,
+                creatorIds,
+                ownerIds,
+                isActive,
+                DateRange.of(creationDateStart, creationDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                DateRange.of(muteEndDateStart, muteEndDateEnd),
+                memberIds,
+                PageUtil.decodeCursor(cursor),
+                pageSize);
+        return ResponseFactory.cursorPage(groupsFlux, pageSize, group -> PageUtil.encodeCursor(group.getId()));
+    }
+
     @GetMapping("/count")
     public Mono<ResponseEntity<ResponseDTO<GroupStatisticsDTO>>> countGroups(
             @RequestParam(required = false) Date createdStartDate,
@@ -183,17 +221,17 @@ public class GroupController {
         GroupStatisticsDTO statistics = new GroupStatisticsDTO();
         if (divideBy == null || divideBy == DivideBy.NOOP) {
             if (deletedStartDate != null || deletedEndDate != null) {
-                counts.add(groupService.countDeletedGroups(
+                counts.add(statisticsRollupService.countDeletedGroups(
                                 DateRange.of(deletedStartDate, deletedEndDate))
                         .doOnNext(statistics::setDeletedGroups));
             }
             if (sentMessageStartDate != null || sentMessageEndDate != null) {
-                counts.add(messageService.countGroupsThatSentMessages(
+                counts.add(statisticsRollupService.countGroupsThatSentMessages(
                                 DateRange.of(sentMessageStartDate, sentMessageEndDate))
                         .doOnNext(statistics::setGroupsThatSentMessages));
             }
             if (counts.isEmpty() || createdStartDate != null || createdEndDate != null) {
-                counts.add(groupService.countCreatedGroups(
+                counts.add(statisticsRollupService.countCreatedGroups(
                                 DateRange.of(createdStartDate, createdEndDate))
                         .doOnNext(statistics::setCreatedGroups));
             }
@@ -202,21 +240,21 @@ public class GroupController {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(deletedStartDate, deletedEndDate),
                                 divideBy,
-                                groupService::countDeletedGroups)
+                                statisticsRollupService::countDeletedGroups)
                         .doOnNext(statistics::setDeletedGroupsRecords));
             }
             if (sentMessageStartDate != null && sentMessageEndDate != null) {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(sentMessageStartDate, sentMessageEndDate),
                                 divideBy,
-                                messageService::countGroupsThatSentMessages)
+                                statisticsRollupService::countGroupsThatSentMessages)
                         .doOnNext(statistics::setGroupsThatSentMessagesRecords));
             }
             if (createdStartDate != null && createdEndDate != null) {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(createdStartDate, createdEndDate),
                                 divideBy,
-                                groupService::countCreatedGroups)
+                                statisticsRollupService::countCreatedGroups)
                         .doOnNext(statistics::setCreatedGroupsRecords));
             }
             if (counts.isEmpty()) {
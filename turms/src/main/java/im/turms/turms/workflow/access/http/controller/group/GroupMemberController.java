@@ -26,8 +26,11 @@ import im.turms.server.common.access.http.dto.response.ResponseFactory;
 import im.turms.server.common.access.http.dto.response.UpdateResultDTO;
 import im.turms.server.common.bo.common.DateRange;
 import im.turms.server.common.util.CollectionUtil;
+import im.turms.turms.bo.GroupMemberBulkResult;
 import im.turms.turms.workflow.access.http.dto.request.group.AddGroupMemberDTO;
+import im.turms.turms.workflow.access.http.dto.request.group.AddGroupMembersDTO;
 import im.turms.turms.workflow.access.http.dto.request.group.UpdateGroupMemberDTO;
+import im.turms.turms.workflow.access.http.dto.request.group.UpdateGroupMemberRolesDTO;
 import im.turms.turms.workflow.access.http.permission.AdminPermission;
 import im.turms.turms.workflow.access.http.permission.RequiredPermission;
 import im.turms.turms.workflow.access.http.util.PageUtil;
@@ -159,4 +162,35 @@ public class GroupMemberController {
         return ResponseFactory.okIfTruthy(mono);
     }
 
+    @PostMapping("/bulk")
+    @RequiredPermission(AdminPermission.GROUP_MEMBER_CREATE)
+    public Mono<ResponseEntity<ResponseDTO<GroupMemberBulkResult>>> addGroupMembers(@RequestBody AddGroupMembersDTO addGroupMembersDTO) {
+        Mono<GroupMemberBulkResult> addMono = groupMemberService.addGroupMembers(
+                addGroupMembersDTO.getGroupId(),
+                addGroupMembersDTO.getUserIds(),
+                addGroupMembersDTO.getRole(),
+                addGroupMembersDTO.getMuteEndDate());
+        return ResponseFactory.okIfTruthy(addMono);
+    }
+
+    @PutMapping("/bulk")
+    @RequiredPermission(AdminPermission.GROUP_MEMBER_UPDATE)
+    public Mono<ResponseEntity<ResponseDTO<GroupMemberBulkResult>>> updateGroupMemberRoles(
+            @RequestBody UpdateGroupMemberRolesDTO updateGroupMemberRolesDTO) {
+        Mono<GroupMemberBulkResult> updateMono = groupMemberService.updateGroupMemberRoles(
+                updateGroupMemberRolesDTO.getGroupId(),
+                updateGroupMemberRolesDTO.getUserIds(),
+                updateGroupMemberRolesDTO.getRole());
+        return ResponseFactory.okIfTruthy(updateMono);
+    }
+
+    @DeleteMapping("/bulk")
+    @RequiredPermission(AdminPermission.GROUP_MEMBER_DELETE)
+    public Mono<ResponseEntity<ResponseDTO<GroupMemberBulkResult>>> removeGroupMembers(
+            @RequestParam Long groupId,
+            @RequestParam Set<Long> userIds) {
+        Mono<GroupMemberBulkResult> removeMono = groupMemberService.removeGroupMembers(groupId, userIds);
+        return ResponseFactory.okIfTruthy(removeMono);
+    }
+
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 
 package im.turms.turms.workflow.access.http.controller.message;
 
+import im.turms.server.common.access.http.dto.response.CursorPaginationDTO;
 import im.turms.server.common.access.http.dto.response.DeleteResultDTO;
 import im.turms.server.common.access.http.dto.response.PaginationDTO;
 import im.turms.server.common.access.http.dto.response.ResponseDTO;
@@ -32,6 +33,8 @@ import im.turms.turms.workflow.access.http.util.DateTimeUtil;
 import im.turms.turms.workflow.access.http.util.PageUtil;
 import im.turms.turms.workflow.dao.domain.message.Message;
 import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.statistics.StatisticsRollupService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -63,11 +66,17 @@ import static im.turms.turms.workflow.access.http.permission.AdminPermission.MES
 public class MessageController {
 
     private final MessageService messageService;
+    private final StatisticsRollupService statisticsRollupService;
     private final PageUtil pageUtil;
     private final DateTimeUtil dateTimeUtil;
 
-    public MessageController(MessageService messageService, PageUtil pageUtil, DateTimeUtil dateTimeUtil) {
+    public MessageController(
+            MessageService messageService,
+            StatisticsRollupService statisticsRollupService,
+            PageUtil pageUtil,
+            DateTimeUtil dateTimeUtil) {
         this.messageService = messageService;
+        this.statisticsRollupService = statisticsRollupService;
         this.pageUtil = pageUtil;
         this.dateTimeUtil = dateTimeUtil;
     }
@@ -154,6 +163,57 @@ public class MessageController {
         return ResponseFactory.page(count, completeMessagesFlux);
     }
 
+    @GetMapping("/cursor")
+    @RequiredPermission(MESSAGE_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<CursorPaginationDTO<Message>>>> queryMessagesByCursor(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Boolean areGroupMessages,
+            @RequestParam(required = false) Boolean areSystemMessages,
+            @RequestParam(required = false) Set<Long> senderIds,
+            @RequestParam(required = false) Set<Long> targetIds,
+            @RequestParam(required = false) Date deliveryDateStart,
+            @RequestParam(required = false) Date deliveryDateEnd,
+            @RequestParam(required = false) Date deletionDateStart,
+            @RequestParam(required = false) Date deletionDateEnd,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        int pageSize = pageUtil.getSize(size);
+        Flux<Message> messagesFlux = messageService.queryMessagesAfter(
+                ids,
+                areGroupMessages,
+                areSystemMessages,
+                senderIds,
+                targetIds,
+                DateRange.of(deliveryDateStart, deliveryDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                PageUtil.decodeCursor(cursor),
+                pageSize);
+        return ResponseFactory.cursorPage(messagesFlux, pageSize, message -> PageUtil.encodeCursor(message.getId()));
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @RequiredPermission(MESSAGE_QUERY)
+    public Flux<Message> exportMessages(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Boolean areGroupMessages,
+            @RequestParam(required = false) Boolean areSystemMessages,
+            @RequestParam(required = false) Set<Long> senderIds,
+            @RequestParam(required = false) Set<Long> targetIds,
+            @RequestParam(required = false) Date deliveryDateStart,
+            @RequestParam(required = false) Date deliveryDateEnd,
+            @RequestParam(required = false) Date deletionDateStart,
+            @RequestParam(required = false) Date deletionDateEnd) {
+        return messageService.exportMessages(
+                ids,
+                areGroupMessages,
+                areSystemMessages,
+                senderIds,
+                targetIds,
+                DateRange.of(deliveryDateStart, deliveryDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                pageUtil.getMaxSize());
+    }
+
     @GetMapping("/count")
     @RequiredPermission(MESSAGE_QUERY)
     public Mono<ResponseEntity<ResponseDTO<MessageStatisticsDTO>>> countMessages(
@@ -193,7 +253,7 @@ public class MessageController {
 //                        .doOnNext(statistics::setAcknowledgedMessagesOnAverage));
 //            }
             if (counts.isEmpty() || sentStartDate != null || sentEndDate != null) {
-                counts.add(messageService.countSentMessages(
+                counts.add(statisticsRollupService.countSentMessages(
                                 DateRange.of(sentStartDate, sentEndDate),
                                 areGroupMessages,
                                 areSystemMessages)
@@ -231,7 +291,7 @@ public class MessageController {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(sentStartDate, sentEndDate),
                                 divideBy,
-                                messageService::countSentMessages,
+                                statisticsRollupService::countSentMessages,
                                 areGroupMessages,
                                 areSystemMessages)
                         .doOnNext(statistics::setSentMessagesRecords));
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.access.http.controller.storage;
+
+import im.turms.server.common.access.http.dto.response.ResponseDTO;
+import im.turms.server.common.access.http.dto.response.ResponseFactory;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.turms.workflow.dao.domain.storage.StorageObject;
+import im.turms.turms.workflow.service.impl.storage.local.LocalStorageService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+
+/**
+ * Serves the files of the local storage.
+ * The requests are authorized by the signatures in the URLs issued by the storage service
+ * instead of the admin credentials, so the methods don't require any admin permission.
+ * <p>
+ * Range requests are supported for downloading large attachments partially,
+ * and the hash of a file is used as its ETag.
+ *
+ * @author James Chen
+ */
+@RestController
+@RequestMapping("/storage")
+public class LocalStorageController {
+
+    private final LocalStorageService localStorageService;
+
+    public LocalStorageController(LocalStorageService localStorageService) {
+        this.localStorageService = localStorageService;
+    }
+
+    /**
+     * @param uid the requester ID and only required for attachments
+     * @param exp the expiration time of the URL and only required for attachments
+     * @param sig the signature of the URL and only required for attachments
+     */
+    @GetMapping("/{bucket}/{*key}")
+    public Mono<ResponseEntity<Resource>> download(
+            @PathVariable String bucket,
+            @PathVariable String key,
+            @RequestParam(required = false) Long uid,
+            @RequestParam(required = false) Long exp,
+            @RequestParam(required = false) String sig,
+            ServerWebExchange exchange) {
+        if (!localStorageService.isEnabled()) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_NOT_IMPLEMENTED));
+        }
+        return localStorageService.queryBlob(bucket, trimLeadingSlash(key), uid, exp, sig)
+                .filterWhen(blob -> Mono.fromCallable(() -> Files.isReadable(blob.path()))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .map(blob -> {
+                    StorageObject object = blob.object();
+                    String hash = object.getHash();
+                    if (exchange.checkNotModified(hash)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(hash)
+                                .<Resource>build();
+                    }
+                    String contentType = object.getContentType();
+                    return ResponseEntity.ok()
+                            .eTag(hash)
+                            .contentType(contentType == null
+                                    ? MediaType.APPLICATION_OCTET_STREAM
+                                    : MediaType.parseMediaType(contentType))
+                            .body((Resource) new FileSystemResource(blob.path()));
+                })
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * @param uid the requester ID
+     * @param exp the expiration time of the URL
+     * @param len the maximum content length
+     * @param sig the signature of the URL
+     */
+    @PutMapping("/{bucket}/{*key}")
+    public Mono<ResponseEntity<ResponseDTO<Void>>> upload(
+            @PathVariable String bucket,
+            @PathVariable String key,
+            @RequestParam Long uid,
+            @RequestParam Long exp,
+            @RequestParam Long len,
+            @RequestParam String sig,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) MediaType contentType,
+            @RequestBody(required = false) Flux<DataBuffer> content) {
+        if (!localStorageService.isEnabled()) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_NOT_IMPLEMENTED));
+        }
+        Mono<Void> upload = localStorageService.upload(bucket, trimLeadingSlash(key), uid, exp, len, sig, contentType,
+                content == null ? Flux.empty() : content);
+        return upload.thenReturn(ResponseFactory.OK);
+    }
+
+    /**
+     * The path variable captured by "{*key}" starts with "/"
+     */
+    private static String trimLeadingSlash(String key) {
+        return key.startsWith("/")
+                ? key.substring(1)
+                : key;
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package im.turms.turms.workflow.access.http.controller.user;
 
+import im.turms.server.common.access.http.dto.response.CursorPaginationDTO;
 import im.turms.server.common.access.http.dto.response.DeleteResultDTO;
 import im.turms.server.common.access.http.dto.response.PaginationDTO;
 import im.turms.server.common.access.http.dto.response.ResponseDTO;
@@ -31,8 +32,9 @@ import im.turms.turms.workflow.access.http.dto.request.user.UserStatisticsDTO;
 import im.turms.turms.workflow.access.http.permission.RequiredPermission;
 import im.turms.turms.workflow.access.http.util.DateTimeUtil;
 import im.turms.turms.workflow.access.http.util.PageUtil;
-import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.statistics.StatisticsRollupService;
 import im.turms.turms.workflow.service.impl.user.UserService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -64,14 +66,18 @@ import static im.turms.turms.workflow.access.http.permission.AdminPermission.USE
 public class UserController {
 
     private final UserService userService;
-    private final MessageService messageService;
+    private final StatisticsRollupService statisticsRollupService;
     private final PageUtil pageUtil;
     private final DateTimeUtil dateTimeUtil;
 
-    public UserController(UserService userService, PageUtil pageUtil, MessageService messageService, DateTimeUtil dateTimeUtil) {
+    public UserController(
+            UserService userService,
+            PageUtil pageUtil,
+            StatisticsRollupService statisticsRollupService,
+            DateTimeUtil dateTimeUtil) {
         this.userService = userService;
         this.pageUtil = pageUtil;
-        this.messageService = messageService;
+        this.statisticsRollupService = statisticsRollupService;
         this.dateTimeUtil = dateTimeUtil;
     }
 
@@ -140,6 +146,47 @@ public class UserController {
         return ResponseFactory.page(count, usersFlux);
     }
 
+    @GetMapping("/cursor")
+    @RequiredPermission(USER_QUERY)
+    public Mono<ResponseEntity<ResponseDTO<CursorPaginationDTO<User>>>> queryUsersByCursor(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Date registrationDateStart,
+            @RequestParam(required = false) Date registrationDateEnd,
+            @RequestParam(required = false) Date deletionDateStart,
+            @RequestParam(required = false) Date deletionDateEnd,
+            @RequestParam(required = false) Boolean isActive,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        int pageSize = pageUtil.getSize(size);
+        Flux<User> usersFlux = userService.queryUsersAfter(
+                ids,
+                DateRange.of(registrationDateStart, registrationDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                isActive,
+                PageUtil.decodeCursor(cursor),
+                pageSize,
+                true);
+        return ResponseFactory.cursorPage(usersFlux, pageSize, user -> PageUtil.encodeCursor(user.getId()));
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @RequiredPermission(USER_QUERY)
+    public Flux<User> exportUsers(
+            @RequestParam(required = false) Set<Long> ids,
+            @RequestParam(required = false) Date registrationDateStart,
+            @RequestParam(required = false) Date registrationDateEnd,
+            @RequestParam(required = false) Date deletionDateStart,
+            @RequestParam(required = false) Date deletionDateEnd,
+            @RequestParam(required = false) Boolean isActive) {
+        return userService.exportUsers(
+                ids,
+                DateRange.of(registrationDateStart, registrationDateEnd),
+                DateRange.of(deletionDateStart, deletionDateEnd),
+                isActive,
+                pageUtil.getMaxSize(),
+                true);
+    }
+
     @GetMapping("/count")
     @RequiredPermission(USER_QUERY)
     public Mono<ResponseEntity<ResponseDTO<UserStatisticsDTO>>> countUsers(
@@ -154,20 +201,20 @@ public class UserController {
         UserStatisticsDTO statistics = new UserStatisticsDTO();
         if (divideBy == null || divideBy == DivideBy.NOOP) {
             if (deletedStartDate != null || deletedEndDate != null) {
-                counts.add(userService.countDeletedUsers(
+                counts.add(statisticsRollupService.countDeletedUsers(
                                 DateRange.of(deletedStartDate, deletedEndDate))
                         .doOnNext(statistics::setDeletedUsers));
             }
             if (sentMessageStartDate != null || sentMessageEndDate != null) {
-                counts.add(messageService.countUsersWhoSentMessage(
+                counts.add(statisticsRollupService.countUsersWhoSentMessage(
                                 DateRange.of(sentMessageStartDate, sentMessageEndDate),
                                 null,
                                 false)
                         .doOnNext(statistics::setUsersWhoSentMessages));
             }
             if (counts.isEmpty() || registeredStartDate != null || registeredEndDate != null) {
-                counts.add(userService.countRegisteredUsers(
-                                DateRange.of(registeredStartDate, registeredEndDate), true)
+                counts.add(statisticsRollupService.countRegisteredUsers(
+                                DateRange.of(registeredStartDate, registeredEndDate))
                         .doOnNext(statistics::setRegisteredUsers));
             }
         } else {
@@ -175,14 +222,14 @@ public class UserController {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(deletedStartDate, deletedEndDate),
                                 divideBy,
-                                userService::countDeletedUsers)
+                                statisticsRollupService::countDeletedUsers)
                         .doOnNext(statistics::setDeletedUsersRecords));
             }
             if (sentMessageStartDate != null && sentMessageEndDate != null) {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(sentMessageStartDate, sentMessageEndDate),
                                 divideBy,
-                                messageService::countUsersWhoSentMessage,
+                                statisticsRollupService::countUsersWhoSentMessage,
                                 null,
                                 false)
                         .doOnNext(statistics::setUsersWhoSentMessagesRecords));
@@ -191,7 +238,7 @@ public class UserController {
                 counts.add(dateTimeUtil.checkAndQueryBetweenDate(
                                 DateRange.of(registeredStartDate, registeredEndDate),
                                 divideBy,
-                                dateRange -> userService.countRegisteredUsers(dateRange, true))
+                                statisticsRollupService::countRegisteredUsers)
                         .doOnNext(statistics::setRegisteredUsersRecords));
             }
             if (counts.isEmpty()) {
@@ -27,5 +27,6 @@ public class UpdateMemberDTO {
     private final Boolean isSeed;
     private final Boolean isLeaderEligible;
     private final Boolean isActive;
+    private final Boolean isDraining;
     private final Integer priority;
 }
\ No newline at end of file
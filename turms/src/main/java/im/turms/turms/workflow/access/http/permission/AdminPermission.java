@@ -118,7 +118,16 @@ public enum AdminPermission {
     CLUSTER_LEADER_QUERY,
 
     CLUSTER_CONFIG_UPDATE,
-    CLUSTER_CONFIG_QUERY;
+    CLUSTER_CONFIG_QUERY,
+
+    CLUSTER_PLUGINS_CREATE,
+    CLUSTER_PLUGINS_DELETE,
+    CLUSTER_PLUGINS_UPDATE,
+    CLUSTER_PLUGINS_QUERY,
+
+    CLUSTER_TRACES_QUERY,
+
+    DELETION_JOB_QUERY;
 
     public static final Set<AdminPermission> ALL = Set.of(AdminPermission.values());
 
@@ -207,7 +216,12 @@ public enum AdminPermission {
             CLUSTER_MEMBERS_UPDATE,
             CLUSTER_MEMBERS_QUERY,
             CLUSTER_CONFIG_UPDATE,
-            CLUSTER_CONFIG_QUERY);
+            CLUSTER_CONFIG_QUERY,
+            CLUSTER_PLUGINS_CREATE,
+            CLUSTER_PLUGINS_DELETE,
+            CLUSTER_PLUGINS_UPDATE,
+            CLUSTER_PLUGINS_QUERY,
+            CLUSTER_TRACES_QUERY);
 
     public static final Set<AdminPermission> ALL_CREATE = Set.of(
             USER_CREATE,
@@ -225,7 +239,8 @@ public enum AdminPermission {
             MESSAGE_CREATE,
             ADMIN_CREATE,
             ADMIN_ROLE_CREATE,
-            CLUSTER_MEMBERS_CREATE);
+            CLUSTER_MEMBERS_CREATE,
+            CLUSTER_PLUGINS_CREATE);
 
     public static final Set<AdminPermission> ALL_QUERY = Set.of(
             STATISTICS_USER_QUERY,
@@ -249,6 +264,9 @@ public enum AdminPermission {
             ADMIN_QUERY,
             ADMIN_ROLE_QUERY,
             CLUSTER_MEMBERS_QUERY,
-            CLUSTER_CONFIG_QUERY);
+            CLUSTER_CONFIG_QUERY,
+            CLUSTER_PLUGINS_QUERY,
+            CLUSTER_TRACES_QUERY,
+            DELETION_JOB_QUERY);
 
 }
\ No newline at end of file
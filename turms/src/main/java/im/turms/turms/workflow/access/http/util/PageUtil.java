@@ -18,9 +18,13 @@
 package im.turms.turms.workflow.access.http.util;
 
 import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Base64;
 
 /**
  * @author James Chen
@@ -43,4 +47,33 @@ public class PageUtil {
         }
     }
 
+    public int getMaxSize() {
+        return node.getSharedProperties().getService().getAdminApi().getMaxAvailableRecordsPerRequest();
+    }
+
+    /**
+     * @return an opaque URL-safe cursor so that clients don't depend on the key format
+     */
+    public static String encodeCursor(long lastKey) {
+        byte[] bytes = ByteBuffer.allocate(Long.BYTES).putLong(lastKey).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    @Nullable
+    public static Long decodeCursor(@Nullable String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The cursor is illegal");
+        }
+        if (bytes.length != Long.BYTES) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The cursor is illegal");
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
 }
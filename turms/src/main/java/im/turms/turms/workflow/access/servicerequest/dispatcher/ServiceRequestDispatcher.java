@@ -32,6 +32,8 @@ import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.env.service.env.clientapi.ClientApiLoggingProperties;
 import im.turms.server.common.property.env.service.env.clientapi.property.LoggingRequestProperties;
 import im.turms.server.common.rpc.service.IServiceRequestDispatcher;
+import im.turms.server.common.tracing.Span;
+import im.turms.server.common.tracing.Tracer;
 import im.turms.server.common.tracing.TracingCloseableContext;
 import im.turms.server.common.tracing.TracingContext;
 import im.turms.server.common.util.ProtoUtil;
@@ -70,6 +72,9 @@ import static im.turms.server.common.constant.CommonMetricsConstant.CLIENT_REQUE
 @Service
 public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
 
+    private static final String SPAN_NAME_NOTIFICATION_FAN_OUT = "notification.fanOut";
+    private static final String SPAN_TAG_RECIPIENT_COUNT = "recipientCount";
+
     private final ServerStatusManager serverStatusManager;
     private final OutboundMessageService outboundMessageService;
     private final TurmsPluginManager turmsPluginManager;
@@ -191,7 +196,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
         if (pluginEnabled) {
             for (im.turms.turms.plugin.extension.handler.ClientRequestHandler clientRequestHandler : clientClientRequestHandlerList) {
                 clientRequestMono = clientRequestMono
-                        .flatMap(req -> Mono.defer(() -> clientRequestHandler.transform(req)));
+                        .flatMap(req -> clientRequestHandler.invoke(() -> clientRequestHandler.transform(req), Mono.just(req)));
             }
         }
         return clientRequestMono.flatMap(lastClientRequest -> {
@@ -215,7 +220,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                 Mono<RequestHandlerResult> requestResultMono = Mono.empty();
                 for (im.turms.turms.plugin.extension.handler.ClientRequestHandler clientRequestHandler : clientClientRequestHandlerList) {
                     requestResultMono = requestResultMono
-                            .switchIfEmpty(Mono.defer(() -> clientRequestHandler.handleClientRequest(lastClientRequest)));
+                            .switchIfEmpty(clientRequestHandler.invoke(() -> clientRequestHandler.handleClientRequest(lastClientRequest)));
                 }
                 result = requestResultMono.switchIfEmpty(Mono.defer(() -> handler.handle(lastClientRequest)));
             } else {
@@ -229,7 +234,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                     .defaultIfEmpty(RequestHandlerResultFactory.NO_CONTENT)
                     .doOnSuccess(requestResult -> {
                         if (requestResult.getCode() == TurmsStatusCode.OK) {
-                            notifyRelatedUsersOfAction(requestResult, userId, deviceType)
+                            notifyRelatedUsersOfAction(tracingContext, requestResult, userId, deviceType)
                                     .onErrorResume(t -> {
                                         try (TracingCloseableContext ignored = tracingContext.asCloseable()) {
                                             log.error("Failed to notify related users of the action", t);
@@ -274,6 +279,7 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
     }
 
     private Mono<Void> notifyRelatedUsersOfAction(
+            @NotNull TracingContext tracingContext,
             @NotNull RequestHandlerResult result,
             @NotNull Long requesterId,
             @NotNull DeviceType requesterDevice) {
@@ -288,18 +294,29 @@ public class ServiceRequestDispatcher implements IServiceRequestDispatcher {
                 .setRequesterId(requesterId)
                 .build();
         ByteBuf notificationByteBuf = ProtoUtil.getDirectByteBuffer(notificationForRecipients);
+        // Don't wait for the acknowledgements of the gateways because the results are never used
+        Mono<Void> notifyMono;
         if (result.isForwardDataForRecipientsToOtherSenderOnlineDevices()) {
             notificationByteBuf.retain(2);
             Mono<Boolean> notifyRequesterMono = outboundMessageService
-                    .forwardNotification(notificationForRecipients, notificationByteBuf, requesterId, requesterDevice);
+                    .forwardNotification(notificationForRecipients, notificationByteBuf, requesterId, requesterDevice, false);
             Mono<Boolean> notifyRecipientsMono = outboundMessageService
-                    .forwardNotification(notificationForRecipients, notificationByteBuf, recipients);
-            return Mono.when(notifyRequesterMono, notifyRecipientsMono)
+                    .forwardNotification(notificationForRecipients, notificationByteBuf, recipients, false);
+            notifyMono = Mono.when(notifyRequesterMono, notifyRecipientsMono)
                     .doFinally(signal -> notificationByteBuf.release());
         } else {
-            return outboundMessageService.forwardNotification(notificationForRecipients, notificationByteBuf, recipients)
+            notifyMono = outboundMessageService.forwardNotification(notificationForRecipients, notificationByteBuf, recipients, false)
                     .then();
         }
+        // The notifications are sent in a new subscription without the context of the request,
+        // so propagate the span context explicitly
+        Span span = Tracer.getGlobal().startSpan(tracingContext, SPAN_NAME_NOTIFICATION_FAN_OUT);
+        if (!span.isRecording()) {
+            return notifyMono;
+        }
+        span.tag(SPAN_TAG_RECIPIENT_COUNT, recipients.size());
+        return span.endOnTermination(notifyMono)
+                .contextWrite(ctx -> ctx.put(TracingContext.CTX_KEY_NAME, span.getContext()));
     }
 
 }
\ No newline at end of file
@@ -42,7 +42,12 @@ import im.turms.turms.workflow.dao.domain.group.GroupJoinRequest;
 import im.turms.turms.workflow.dao.domain.group.GroupMember;
 import im.turms.turms.workflow.dao.domain.group.GroupType;
 import im.turms.turms.workflow.dao.domain.group.GroupVersion;
+import im.turms.turms.workflow.dao.domain.job.DeletionJob;
 import im.turms.turms.workflow.dao.domain.message.Message;
+import im.turms.turms.workflow.dao.domain.message.MessageArchive;
+import im.turms.turms.workflow.dao.domain.statistics.StatisticsRollup;
+import im.turms.turms.workflow.dao.domain.storage.StorageObject;
+import im.turms.turms.workflow.dao.domain.storage.StorageUsage;
 import im.turms.turms.workflow.dao.domain.user.UserFriendRequest;
 import im.turms.turms.workflow.dao.domain.user.UserPermissionGroup;
 import im.turms.turms.workflow.dao.domain.user.UserRelationship;
@@ -151,6 +156,8 @@ public class MongoCollectionInitializer implements IMongoCollectionInitializer {
         return ReactorUtil.areAllTrue(
                 createCollectionIfNotExist(Admin.class),
                 createCollectionIfNotExist(AdminRole.class),
+                createCollectionIfNotExist(StatisticsRollup.class),
+                createCollectionIfNotExist(DeletionJob.class),
 
                 createCollectionIfNotExist(Group.class),
                 createCollectionIfNotExist(GroupBlockedUser.class),
@@ -164,6 +171,9 @@ public class MongoCollectionInitializer implements IMongoCollectionInitializer {
                 createCollectionIfNotExist(GroupConversation.class),
 
                 createCollectionIfNotExist(Message.class),
+                createCollectionIfNotExist(MessageArchive.class),
+                createCollectionIfNotExist(StorageObject.class),
+                createCollectionIfNotExist(StorageUsage.class),
 
                 createCollectionIfNotExist(User.class),
                 createCollectionIfNotExist(UserFriendRequest.class),
@@ -179,7 +189,8 @@ public class MongoCollectionInitializer implements IMongoCollectionInitializer {
      */
     private <T> Mono<Boolean> createCollectionIfNotExist(Class<T> clazz) {
         TurmsMongoClient mongoClient;
-        if (clazz == Admin.class || clazz == AdminRole.class) {
+        if (clazz == Admin.class || clazz == AdminRole.class || clazz == StatisticsRollup.class
+                || clazz == DeletionJob.class) {
             mongoClient = adminMongoClient;
         } else if (clazz == User.class || clazz == UserFriendRequest.class
                 || clazz == UserPermissionGroup.class || clazz == UserRelationship.class
@@ -191,7 +202,8 @@ public class MongoCollectionInitializer implements IMongoCollectionInitializer {
             mongoClient = groupMongoClient;
         } else if (clazz == PrivateConversation.class || clazz == GroupConversation.class) {
             mongoClient = conversationMongoClient;
-        } else if (clazz == Message.class) {
+        } else if (clazz == Message.class || clazz == MessageArchive.class || clazz == StorageObject.class
+                || clazz == StorageUsage.class) {
             mongoClient = messageMongoClient;
         } else {
             return Mono.error(new IllegalArgumentException("Unknown collection " + clazz.getName()));
@@ -41,7 +41,12 @@ import im.turms.turms.workflow.dao.domain.group.GroupJoinRequest;
 import im.turms.turms.workflow.dao.domain.group.GroupMember;
 import im.turms.turms.workflow.dao.domain.group.GroupType;
 import im.turms.turms.workflow.dao.domain.group.GroupVersion;
+import im.turms.turms.workflow.dao.domain.job.DeletionJob;
 import im.turms.turms.workflow.dao.domain.message.Message;
+import im.turms.turms.workflow.dao.domain.message.MessageArchive;
+import im.turms.turms.workflow.dao.domain.statistics.StatisticsRollup;
+import im.turms.turms.workflow.dao.domain.storage.StorageObject;
+import im.turms.turms.workflow.dao.domain.storage.StorageUsage;
 import im.turms.turms.workflow.dao.domain.user.UserFriendRequest;
 import im.turms.turms.workflow.dao.domain.user.UserPermissionGroup;
 import im.turms.turms.workflow.dao.domain.user.UserRelationship;
@@ -83,7 +88,9 @@ public class MongoConfig {
         TurmsMongoClient mongoClient = getMongoClient(properties);
         mongoClient.registerEntitiesByOptions(
                 MongoCollectionOptions.of(Admin.class, properties.getAdminWriteConcern()),
-                MongoCollectionOptions.of(AdminRole.class, properties.getAdminRoleWriteConcern()));
+                MongoCollectionOptions.of(AdminRole.class, properties.getAdminRoleWriteConcern()),
+                MongoCollectionOptions.of(StatisticsRollup.class, properties.getStatisticsRollupWriteConcern()),
+                MongoCollectionOptions.of(DeletionJob.class, properties.getDeletionJobWriteConcern()));
         return mongoClient;
     }
 
@@ -134,7 +141,10 @@ public class MongoConfig {
         MessageMongoProperties properties = turmsPropertiesManager.getLocalProperties().getService().getMongo().getMessage();
         TurmsMongoClient mongoClient = getMongoClient(properties);
         mongoClient.registerEntitiesByOptions(
-                MongoCollectionOptions.of(Message.class, properties.getMessageWriteConcern()));
+                MongoCollectionOptions.of(Message.class, properties.getMessageWriteConcern()),
+                MongoCollectionOptions.of(MessageArchive.class, properties.getMessageArchiveWriteConcern()),
+                MongoCollectionOptions.of(StorageObject.class, properties.getStorageObjectWriteConcern()),
+                MongoCollectionOptions.of(StorageUsage.class, properties.getStorageUsageWriteConcern()));
         return mongoClient;
     }
 
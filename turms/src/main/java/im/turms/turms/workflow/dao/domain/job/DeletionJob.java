@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.dao.domain.job;
+
+import im.turms.server.common.mongo.entity.annotation.Document;
+import im.turms.server.common.mongo.entity.annotation.Field;
+import im.turms.server.common.mongo.entity.annotation.Id;
+import im.turms.server.common.mongo.entity.annotation.Indexed;
+import im.turms.turms.constant.DeletionJobStage;
+import im.turms.turms.constant.DeletionJobTargetType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * A job to delete the dependent documents of tombstoned users or groups in bounded batches
+ * so that deleting a huge group or many users doesn't need to run in a single transaction.
+ *
+ * @author James Chen
+ */
+@Data
+@AllArgsConstructor(onConstructor = @__(@PersistenceConstructor))
+@Document(DeletionJob.COLLECTION_NAME)
+public final class DeletionJob {
+
+    public static final String COLLECTION_NAME = "deletionJob";
+
+    @Id
+    private final Long id;
+
+    @Field(Fields.TARGET_TYPE)
+    private final DeletionJobTargetType targetType;
+
+    /**
+     * Null if the job deletes the dependent documents of all groups
+     */
+    @Field(Fields.TARGET_IDS)
+    private final Set<Long> targetIds;
+
+    /**
+     * Whether to delete the target documents after their dependent documents are deleted.
+     * False for groups deleted logically.
+     */
+    @Field(Fields.DELETE_TARGETS)
+    private final Boolean deleteTargets;
+
+    /**
+     * Null if the job has completed
+     */
+    @Field(Fields.STAGE)
+    private final DeletionJobStage stage;
+
+    @Field(Fields.DELETED_COUNT)
+    private final Long deletedCount;
+
+    @Field(Fields.CREATION_DATE)
+    private final Date creationDate;
+
+    @Field(Fields.LAST_UPDATED_DATE)
+    private final Date lastUpdatedDate;
+
+    @Field(Fields.COMPLETION_DATE)
+    @Indexed
+    private final Date completionDate;
+
+    public static final class Fields {
+        public static final String TARGET_TYPE = "tt";
+        public static final String TARGET_IDS = "tid";
+        public static final String DELETE_TARGETS = "dt";
+        public static final String STAGE = "stg";
+        public static final String DELETED_COUNT = "dc";
+        public static final String CREATION_DATE = "cd";
+        public static final String LAST_UPDATED_DATE = "lud";
+        public static final String COMPLETION_DATE = "cmd";
+
+        private Fields() {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.turms.workflow.dao.domain.message;
+
+import im.turms.server.common.mongo.entity.ShardingStrategy;
+import im.turms.server.common.mongo.entity.annotation.CompoundIndex;
+import im.turms.server.common.mongo.entity.annotation.Document;
+import im.turms.server.common.mongo.entity.annotation.Field;
+import im.turms.server.common.mongo.entity.annotation.Id;
+import im.turms.server.common.mongo.entity.annotation.Indexed;
+import im.turms.server.common.mongo.entity.annotation.Sharded;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A bucket of cold messages sent to the same target in the same day.
+ * A day of a target may have more than one bucket because a bucket is capped by the number and the size of its messages
+ * so that it won't exceed the document size limit of MongoDB.
+ * <p>
+ * Compared with the message collection, there is only one index entry for a bucket instead of one for every message,
+ * and the messages in a bucket are stored contiguously so that WiredTiger can compress them better,
+ * so the index and working set of the message collection stay bounded while the history is still queryable.
+ *
+ * @author James Chen
+ */
+@Data
+@AllArgsConstructor(onConstructor = @__(@PersistenceConstructor))
+@Document(MessageArchive.COLLECTION_NAME)
+@CompoundIndex({MessageArchive.Fields.ID_TARGET_ID, MessageArchive.Fields.ID_BUCKET_START_DATE})
+@Sharded(shardKey = MessageArchive.Fields.ID_TARGET_ID, shardingStrategy = ShardingStrategy.HASH)
+public final class MessageArchive {
+
+    public static final String COLLECTION_NAME = "messageArchive";
+
+    @Id
+    private final Key key;
+
+    @Field(Fields.MESSAGES)
+    private final List<Message> messages;
+
+    @Field(Fields.MESSAGE_COUNT)
+    private final Integer messageCount;
+
+    /**
+     * The estimated size of the messages in bytes
+     */
+    @Field(Fields.MESSAGES_SIZE)
+    private final Long messagesSize;
+
+    /**
+     * Messages are archived in the ascending order of their IDs,
+     * so the messages whose IDs are not greater than the last message ID have been archived
+     */
+    @Field(Fields.LAST_MESSAGE_ID)
+    private final Long lastMessageId;
+
+    /**
+     * The same as the bucket start date in the key,
+     * which is used to query buckets by date without target IDs
+     */
+    @Field(Fields.BUCKET_START_DATE)
+    @Indexed
+    private final Date bucketStartDate;
+
+    @Field(Fields.ARCHIVE_DATE)
+    private final Date archiveDate;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static final class Key {
+
+        @Field(Fields.TARGET_ID)
+        private Long targetId;
+
+        @Field(Fields.IS_GROUP_MESSAGE)
+        private Boolean isGroupMessage;
+
+        @Field(Fields.BUCKET_START_DATE)
+        private Date bucketStartDate;
+
+        @Field(Fields.SEQUENCE)
+        private Integer sequence;
+
+        public static final class Fields {
+            public static final String TARGET_ID = "tid";
+            public static final String IS_GROUP_MESSAGE = "gm";
+            public static final String BUCKET_START_DATE = "bsd";
+            public static final String SEQUENCE = "seq";
+
+            private Fields() {
+            }
+        }
+    }
+
+    public static final class Fields {
+        public static final String ID_TARGET_ID = "_id." + Key.Fields.TARGET_ID;
+        public static final String ID_IS_GROUP_MESSAGE = "_id." + Key.Fields.IS_GROUP_MESSAGE;
+        public static final String ID_BUCKET_START_DATE = "_id." + Key.Fields.BUCKET_START_DATE;
+        public static final String ID_SEQUENCE = "_id." + Key.Fields.SEQUENCE;
+        public static final String MESSAGES = "msgs";
+        public static final String MESSAGE_COUNT = "cnt";
+        public static final String MESSAGES_SIZE = "sz";
+        public static final String LAST_MESSAGE_ID = "lmid";
+        public static final String BUCKET_START_DATE = "bsd";
+        public static final String ARCHIVE_DATE = "ad";
+
+        private Fields() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.dao.domain.statistics;
+
+import im.turms.server.common.mongo.entity.annotation.CompoundIndex;
+import im.turms.server.common.mongo.entity.annotation.Document;
+import im.turms.server.common.mongo.entity.annotation.Field;
+import im.turms.server.common.mongo.entity.annotation.Id;
+import im.turms.turms.constant.DivideBy;
+import im.turms.turms.constant.StatisticsMetric;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+import java.util.Date;
+
+/**
+ * The pre-aggregated value of a metric in a closed time bucket [startDate, startDate + granularity)
+ * so that the admin dashboards don't need to scan the raw collections for the past.
+ *
+ * @author James Chen
+ */
+@Data
+@AllArgsConstructor(onConstructor = @__(@PersistenceConstructor))
+@Document(StatisticsRollup.COLLECTION_NAME)
+@CompoundIndex({StatisticsRollup.Fields.ID_METRIC, StatisticsRollup.Fields.ID_GRANULARITY, StatisticsRollup.Fields.ID_START_DATE})
+public final class StatisticsRollup {
+
+    public static final String COLLECTION_NAME = "statisticsRollup";
+
+    @Id
+    private final Key key;
+
+    @Field(Fields.COUNT)
+    private final Long count;
+
+    @Field(Fields.COMPUTATION_DATE)
+    private final Date computationDate;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static final class Key {
+
+        @Field(Fields.METRIC)
+        private StatisticsMetric metric;
+
+        /**
+         * Only HOUR and DAY are used
+         */
+        @Field(Fields.GRANULARITY)
+        private DivideBy granularity;
+
+        @Field(Fields.START_DATE)
+        private Date startDate;
+
+        public static final class Fields {
+            public static final String METRIC = "m";
+            public static final String GRANULARITY = "g";
+            public static final String START_DATE = "sd";
+
+            private Fields() {
+            }
+        }
+    }
+
+    public static final class Fields {
+        public static final String ID_METRIC = "_id." + Key.Fields.METRIC;
+        public static final String ID_GRANULARITY = "_id." + Key.Fields.GRANULARITY;
+        public static final String ID_START_DATE = "_id." + Key.Fields.START_DATE;
+        public static final String COUNT = "cnt";
+        public static final String COMPUTATION_DATE = "cd";
+
+        private Fields() {
+        }
+    }
+}
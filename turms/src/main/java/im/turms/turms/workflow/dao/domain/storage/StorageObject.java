@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.dao.domain.storage;
+
+import im.turms.server.common.mongo.entity.annotation.Document;
+import im.turms.server.common.mongo.entity.annotation.Field;
+import im.turms.server.common.mongo.entity.annotation.Id;
+import im.turms.server.common.mongo.entity.annotation.Indexed;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+import java.util.Date;
+
+/**
+ * An object stored by the local storage service.
+ * The content of an object is stored in the file named after its hash,
+ * so objects with identical content share the same file.
+ *
+ * @author James Chen
+ */
+@Data
+@AllArgsConstructor(onConstructor = @__(@PersistenceConstructor))
+@Document(StorageObject.COLLECTION_NAME)
+public final class StorageObject {
+
+    public static final String COLLECTION_NAME = "storageObject";
+
+    /**
+     * "{bucket}/{key}"
+     */
+    @Id
+    private final String id;
+
+    @Field(Fields.BUCKET)
+    private final String bucket;
+
+    /**
+     * The hex-encoded SHA-256 hash of the content
+     */
+    @Field(Fields.HASH)
+    @Indexed
+    private final String hash;
+
+    @Field(Fields.SIZE)
+    private final Long size;
+
+    @Field(Fields.CONTENT_TYPE)
+    private final String contentType;
+
+    /**
+     * The user who uploaded the object and whose quota the size is charged to
+     */
+    @Field(Fields.OWNER_ID)
+    @Indexed
+    private final Long ownerId;
+
+    @Field(Fields.CREATION_DATE)
+    @Indexed
+    private final Date creationDate;
+
+    public static String getId(String bucket, String key) {
+        return bucket + "/" + key;
+    }
+
+    public static final class Fields {
+        public static final String BUCKET = "bkt";
+        public static final String HASH = "hash";
+        public static final String SIZE = "size";
+        public static final String CONTENT_TYPE = "ct";
+        public static final String OWNER_ID = "oid";
+        public static final String CREATION_DATE = "cd";
+
+        private Fields() {
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.turms.workflow.dao.domain.storage;
+
+import im.turms.server.common.mongo.entity.annotation.Document;
+import im.turms.server.common.mongo.entity.annotation.Field;
+import im.turms.server.common.mongo.entity.annotation.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.annotation.PersistenceConstructor;
+
+/**
+ * The storage usage of a user, which is updated atomically
+ * so that concurrent uploads cannot exceed the quota of the user.
+ *
+ * @author James Chen
+ */
+@Data
+@AllArgsConstructor(onConstructor = @__(@PersistenceConstructor))
+@Document(StorageUsage.COLLECTION_NAME)
+public final class StorageUsage {
+
+    public static final String COLLECTION_NAME = "storageUsage";
+
+    /**
+     * The owner ID of storage objects
+     */
+    @Id
+    private final Long id;
+
+    /**
+     * The total size of the objects owned by the user
+     * and the sizes reserved for the uploads in progress
+     */
+    @Field(Fields.SIZE)
+    private final Long size;
+
+    public static final class Fields {
+        public static final String SIZE = "size";
+
+        private Fields() {
+        }
+    }
+}
@@ -17,12 +17,17 @@
 
 package im.turms.turms.workflow.service.impl.group;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.ClientSession;
 import im.turms.common.constant.GroupInvitationStrategy;
 import im.turms.common.constant.GroupMemberRole;
 import im.turms.common.model.bo.group.GroupMembersWithVersion;
+import im.turms.common.model.dto.notification.TurmsNotification;
+import im.turms.common.model.dto.request.TurmsRequest;
+import im.turms.common.model.dto.request.group.member.QueryGroupMembersRequest;
 import im.turms.common.util.Validator;
 import im.turms.server.common.bo.common.DateRange;
 import im.turms.server.common.bo.session.UserSessionsStatus;
@@ -37,6 +42,8 @@ import im.turms.server.common.mongo.operation.option.Update;
 import im.turms.server.common.service.session.UserStatusService;
 import im.turms.server.common.util.AssertUtil;
 import im.turms.server.common.util.CollectionUtil;
+import im.turms.server.common.util.CollectorUtil;
+import im.turms.turms.bo.GroupMemberBulkResult;
 import im.turms.turms.bo.ServicePermission;
 import im.turms.turms.constant.DaoConstant;
 import im.turms.turms.constant.OperationResultConstant;
@@ -44,6 +51,7 @@ import im.turms.turms.constraint.ValidGroupMemberRole;
 import im.turms.turms.util.ProtoModelUtil;
 import im.turms.turms.workflow.dao.domain.group.GroupBlockedUser;
 import im.turms.turms.workflow.dao.domain.group.GroupMember;
+import im.turms.turms.workflow.service.impl.message.OutboundMessageService;
 import im.turms.turms.workflow.service.util.DomainConstraintUtil;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -62,6 +70,8 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -76,6 +86,7 @@ public class GroupMemberService {
     private final GroupService groupService;
     private final GroupVersionService groupVersionService;
     private final UserStatusService userStatusService;
+    private final OutboundMessageService outboundMessageService;
 
     /**
      * @param groupService is lazy because: GroupService -> GroupMemberService -> GroupService
@@ -85,11 +96,13 @@ public class GroupMemberService {
             @Qualifier("groupMongoClient") TurmsMongoClient mongoClient,
             @Lazy GroupService groupService,
             GroupVersionService groupVersionService,
-            UserStatusService userStatusService) {
+            UserStatusService userStatusService,
+            OutboundMessageService outboundMessageService) {
         this.mongoClient = mongoClient;
         this.groupService = groupService;
         this.groupVersionService = groupVersionService;
         this.userStatusService = userStatusService;
+        this.outboundMessageService = outboundMessageService;
         this.node = node;
     }
 
@@ -317,6 +330,224 @@ public class GroupMemberService {
         return updateGroupMembers(keys, name, role, joinDate, muteEndDate, session, updateGroupMembersVersion);
     }
 
+    // Bulk operations
+
+    /**
+     * Add the users to the group in chunks to migrate a huge number of members efficiently.
+     * For every chunk, the members are inserted in an unordered bulk write,
+     * the members version of the group is updated once, and one notification is sent to the added users.
+     */
+    public Mono<GroupMemberBulkResult> addGroupMembers(
+            @NotNull Long groupId,
+            @NotEmpty Set<Long> userIds,
+            @NotNull @ValidGroupMemberRole GroupMemberRole groupMemberRole,
+            @Nullable Date muteEndDate) {
+        try {
+            AssertUtil.notNull(groupId, "groupId");
+            AssertUtil.notEmpty(userIds, "userIds");
+            AssertUtil.notNull(groupMemberRole, "groupMemberRole");
+            DomainConstraintUtil.validGroupMemberRole(groupMemberRole);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        Mono<Integer> remainingQuotaMono = groupService.queryGroupType(groupId)
+                .flatMap(groupType -> {
+                    Integer groupSizeLimit = groupType.getGroupSizeLimit();
+                    if (groupSizeLimit == null) {
+                        return Mono.just(Integer.MAX_VALUE);
+                    }
+                    return countMembers(Set.of(groupId), null, null, null, null)
+                            .map(count -> (int) Math.max(0, groupSizeLimit - count));
+                })
+                .defaultIfEmpty(Integer.MAX_VALUE);
+        int chunkSize = node.getSharedProperties().getService().getGroup().getGroupMembersBulkOperationChunkSize();
+        return groupService.isGroupActiveAndNotDeleted(groupId)
+                .flatMap(isGroupActive -> isGroupActive
+                        ? remainingQuotaMono
+                        : Mono.error(TurmsBusinessException.get(TurmsStatusCode.ADD_USER_TO_INACTIVE_GROUP)))
+                .flatMap(remainingQuota -> {
+                    AtomicInteger quota = new AtomicInteger(remainingQuota);
+                    return Flux.fromIterable(userIds)
+                            .buffer(chunkSize)
+                            .concatMap(chunk -> addGroupMembersChunk(groupId, chunk, groupMemberRole, muteEndDate, quota))
+                            .reduce(new GroupMemberBulkResult(userIds.size()), GroupMemberBulkResult::merge);
+                });
+    }
+
+    public Mono<GroupMemberBulkResult> removeGroupMembers(
+            @NotNull Long groupId,
+            @NotEmpty Set<Long> userIds) {
+        try {
+            AssertUtil.notNull(groupId, "groupId");
+            AssertUtil.notEmpty(userIds, "userIds");
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        boolean notify = node.getSharedProperties().getService().getNotification().isNotifyUserAfterRemovedFromGroupByOthers();
+        return processExistingMembersInChunks(groupId, userIds, notify, keys -> {
+            Filter filter = Filter.newBuilder(1)
+                    .in(DaoConstant.ID_FIELD_NAME, keys);
+            return mongoClient.deleteMany(GroupMember.class, filter);
+        });
+    }
+
+    public Mono<GroupMemberBulkResult> updateGroupMemberRoles(
+            @NotNull Long groupId,
+            @NotEmpty Set<Long> userIds,
+            @NotNull @ValidGroupMemberRole GroupMemberRole groupMemberRole) {
+        try {
+            AssertUtil.notNull(groupId, "groupId");
+            AssertUtil.notEmpty(userIds, "userIds");
+            AssertUtil.notNull(groupMemberRole, "groupMemberRole");
+            DomainConstraintUtil.validGroupMemberRole(groupMemberRole);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        boolean notify = node.getSharedProperties().getService().getNotification().isNotifyMemberAfterInfoUpdatedByOthers();
+        return processExistingMembersInChunks(groupId, userIds, notify, keys -> {
+            Filter filter = Filter.newBuilder(1)
+                    .in(DaoConstant.ID_FIELD_NAME, keys);
+            Update update = Update.newBuilder(1)
+                    .set(GroupMember.Fields.ROLE, groupMemberRole);
+            return mongoClient.updateMany(GroupMember.class, filter, update);
+        });
+    }
+
+    private Mono<GroupMemberBulkResult> addGroupMembersChunk(
+            @NotNull Long groupId,
+            @NotEmpty List<Long> userIds,
+            @NotNull GroupMemberRole groupMemberRole,
+            @Nullable Date muteEndDate,
+            @NotNull AtomicInteger remainingQuota) {
+        Filter filter = Filter.newBuilder(2)
+                .eq(GroupBlockedUser.Fields.ID_GROUP_ID, groupId)
+                .in(GroupBlockedUser.Fields.ID_USER_ID, userIds);
+        QueryOptions options = QueryOptions.newBuilder(1)
+                .include(DaoConstant.ID_FIELD_NAME);
+        return mongoClient.findMany(GroupBlockedUser.class, filter, options)
+                .map(blockedUser -> blockedUser.getKey().getUserId())
+                .collect(Collectors.toSet())
+                .flatMap(blockedUserIds -> {
+                    GroupMemberBulkResult result = new GroupMemberBulkResult(userIds.size());
+                    Date joinDate = new Date();
+                    List<GroupMember> members = new ArrayList<>(userIds.size());
+                    for (Long userId : userIds) {
+                        if (blockedUserIds.contains(userId)) {
+                            result.addFailedUserId(userId, TurmsStatusCode.ADD_BLOCKED_USER_TO_GROUP);
+                        } else if (remainingQuota.get() <= 0) {
+                            result.addFailedUserId(userId, TurmsStatusCode.GROUP_MEMBERS_LIMIT_REACHED);
+                        } else {
+                            remainingQuota.decrementAndGet();
+                            members.add(new GroupMember(groupId, userId, null, groupMemberRole, joinDate, muteEndDate));
+                        }
+                    }
+                    if (members.isEmpty()) {
+                        return Mono.just(result);
+                    }
+                    return mongoClient.insertAllUnordered(GroupMember.class, members)
+                            .flatMap(errors -> {
+                                boolean[] failed = new boolean[members.size()];
+                                for (BulkWriteError error : errors) {
+                                    int index = error.getIndex();
+                                    failed[index] = true;
+                                    TurmsStatusCode code = error.getCategory() == ErrorCategory.DUPLICATE_KEY
+                                            ? TurmsStatusCode.ADD_EXISTING_MEMBER_TO_GROUP
+                                            : TurmsStatusCode.SERVER_INTERNAL_ERROR;
+                                    result.addFailedUserId(members.get(index).getKey().getUserId(), code);
+                                }
+                                remainingQuota.addAndGet(errors.size());
+                                List<Long> addedUserIds = new ArrayList<>(members.size() - errors.size());
+                                for (int i = 0; i < failed.length; i++) {
+                                    if (!failed[i]) {
+                                        addedUserIds.add(members.get(i).getKey().getUserId());
+                                    }
+                                }
+                                result.addSucceededUserIds(addedUserIds);
+                                boolean notify = node.getSharedProperties().getService().getNotification()
+                                        .isNotifyUserAfterAddedToGroupByOthers();
+                                return onGroupMembersChanged(groupId, addedUserIds, notify)
+                                        .thenReturn(result);
+                            });
+                });
+    }
+
+    /**
+     * @param operation the operation on the existing members in a chunk
+     */
+    private Mono<GroupMemberBulkResult> processExistingMembersInChunks(
+            @NotNull Long groupId,
+            @NotEmpty Set<Long> userIds,
+            boolean notifyChangedUsers,
+            @NotNull Function<List<GroupMember.Key>, Mono<?>> operation) {
+        int chunkSize = node.getSharedProperties().getService().getGroup().getGroupMembersBulkOperationChunkSize();
+        return Flux.fromIterable(userIds)
+                .buffer(chunkSize)
+                .concatMap(chunk -> {
+                    Filter filter = Filter.newBuilder(2)
+                            .eq(GroupMember.Fields.ID_GROUP_ID, groupId)
+                            .in(GroupMember.Fields.ID_USER_ID, chunk);
+                    QueryOptions options = QueryOptions.newBuilder(1)
+                            .include(DaoConstant.ID_FIELD_NAME);
+                    return mongoClient.findMany(GroupMember.class, filter, options)
+                            .map(GroupMember::getKey)
+                            .collect(CollectorUtil.toList(chunk.size()))
+                            .flatMap(keys -> {
+                                GroupMemberBulkResult result = new GroupMemberBulkResult(chunk.size());
+                                Set<Long> existingUserIds = CollectionUtil.newSetWithExpectedSize(keys.size());
+                                for (GroupMember.Key key : keys) {
+                                    existingUserIds.add(key.getUserId());
+                                }
+                                for (Long userId : chunk) {
+                                    if (!existingUserIds.contains(userId)) {
+                                        result.addFailedUserId(userId, TurmsStatusCode.UPDATE_OR_REMOVE_NON_EXISTING_GROUP_MEMBER);
+                                    }
+                                }
+                                if (keys.isEmpty()) {
+                                    return Mono.just(result);
+                                }
+                                List<Long> changedUserIds = new ArrayList<>(existingUserIds);
+                                result.addSucceededUserIds(changedUserIds);
+                                return operation.apply(keys)
+                                        .then(Mono.defer(() -> onGroupMembersChanged(groupId, changedUserIds, notifyChangedUsers)))
+                                        .thenReturn(result);
+                            });
+                })
+                .reduce(new GroupMemberBulkResult(userIds.size()), GroupMemberBulkResult::merge);
+    }
+
+    /**
+     * Update the members version once and send one aggregated notification for a chunk of changed members.
+     * The notification relays a QueryGroupMembersRequest carrying the IDs of the changed members
+     * so that clients can fetch their latest information.
+     */
+    private Mono<Void> onGroupMembersChanged(
+            @NotNull Long groupId,
+            @NotNull List<Long> changedUserIds,
+            boolean notifyChangedUsers) {
+        if (changedUserIds.isEmpty()) {
+            return Mono.empty();
+        }
+        Mono<Void> updateVersionMono = groupVersionService.updateMembersVersion(groupId)
+                .onErrorResume(t -> Mono.empty())
+                .then();
+        if (!notifyChangedUsers) {
+            return updateVersionMono;
+        }
+        return updateVersionMono.then(Mono.defer(() -> {
+            QueryGroupMembersRequest request = QueryGroupMembersRequest.newBuilder()
+                    .setGroupId(groupId)
+                    .addAllMemberIds(changedUserIds)
+                    .build();
+            TurmsNotification notification = TurmsNotification.newBuilder()
+                    .setRelayedRequest(TurmsRequest.newBuilder().setQueryGroupMembersRequest(request))
+                    .setRequestId(DaoConstant.ADMIN_REQUEST_ID)
+                    .build();
+            return outboundMessageService.forwardNotification(notification, CollectionUtil.newSet(changedUserIds))
+                    .onErrorResume(t -> Mono.empty())
+                    .then();
+        }));
+    }
+
     public Flux<Long> getMemberIdsByGroupId(@NotNull Long groupId) {
         try {
             AssertUtil.notNull(groupId, "groupId");
@@ -39,13 +39,14 @@ import im.turms.server.common.mongo.operation.option.Update;
 import im.turms.server.common.util.AssertUtil;
 import im.turms.server.common.util.ExceptionUtil;
 import im.turms.turms.bo.ServicePermission;
+import im.turms.turms.constant.DeletionJobTargetType;
 import im.turms.turms.constant.OperationResultConstant;
 import im.turms.turms.util.ProtoModelUtil;
 import im.turms.turms.workflow.dao.domain.group.Group;
 import im.turms.turms.workflow.dao.domain.group.GroupMember;
 import im.turms.turms.workflow.dao.domain.group.GroupType;
 import im.turms.turms.workflow.dao.domain.user.UserPermissionGroup;
-import im.turms.turms.workflow.service.impl.conversation.ConversationService;
+import im.turms.turms.workflow.service.impl.job.DeletionJobService;
 import im.turms.turms.workflow.service.impl.statistics.MetricsService;
 import im.turms.turms.workflow.service.impl.user.UserPermissionGroupService;
 import im.turms.turms.workflow.service.impl.user.UserVersionService;
@@ -92,7 +93,7 @@ public class GroupService {
     private final GroupVersionService groupVersionService;
     private final UserVersionService userVersionService;
     private final UserPermissionGroupService userPermissionGroupService;
-    private final ConversationService conversationService;
+    private final DeletionJobService deletionJobService;
 
     private final Counter createdGroupsCounter;
     private final Counter deletedGroupsCounter;
@@ -105,7 +106,7 @@ public class GroupService {
             UserVersionService userVersionService,
             GroupVersionService groupVersionService,
             UserPermissionGroupService userPermissionGroupService,
-            ConversationService conversationService,
+            DeletionJobService deletionJobService,
             MetricsService metricsService) {
         this.node = node;
         this.mongoClient = mongoClient;
@@ -114,7 +115,7 @@ public class GroupService {
         this.groupVersionService = groupVersionService;
         this.userVersionService = userVersionService;
         this.userPermissionGroupService = userPermissionGroupService;
-        this.conversationService = conversationService;
+        this.deletionJobService = deletionJobService;
 
         createdGroupsCounter = metricsService.getRegistry().counter(CREATED_GROUPS_COUNTER_NAME);
         deletedGroupsCounter = metricsService.getRegistry().counter(DELETED_GROUPS_COUNTER_NAME);
@@ -247,31 +248,22 @@ public class GroupService {
                     .isDeleteGroupLogicallyByDefault();
         }
         boolean finalShouldDeleteLogically = deleteLogically;
-        return mongoClient
-                .inTransaction(session -> {
-                    Filter filter = Filter.newBuilder(1)
-                            .inIfNotNull(ID_FIELD_NAME, groupIds);
-                    Mono<DeleteResult> updateOrRemoveMono;
-                    if (finalShouldDeleteLogically) {
-                        Update update = Update.newBuilder(1)
-                                .set(Group.Fields.DELETION_DATE, new Date());
-                        updateOrRemoveMono = mongoClient.updateMany(session, Group.class, filter, update)
-                                .map(OperationResultUtil::update2delete);
-                    } else {
-                        updateOrRemoveMono = mongoClient.deleteMany(session, Group.class, filter);
+        Filter filter = Filter.newBuilder(1)
+                .inIfNotNull(ID_FIELD_NAME, groupIds);
+        Update update = Update.newBuilder(1)
+                .set(Group.Fields.DELETION_DATE, new Date());
+        // Tombstone the groups first, and then delete their members, conversations, etc.
+        // (and the groups themselves if not deleted logically) in batches in the background
+        // because a huge group may have too many members to delete in a transaction
+        return mongoClient.updateMany(Group.class, filter, update)
+                .flatMap(result -> {
+                    long count = result.getModifiedCount();
+                    if (count > 0) {
+                        deletedGroupsCounter.increment(count);
                     }
-                    return updateOrRemoveMono.flatMap(result -> {
-                        long count = result.getDeletedCount();
-                        if (count > 0) {
-                            deletedGroupsCounter.increment(count);
-                        }
-                        return groupMemberService.deleteAllGroupMembers(groupIds, session, false)
-                                .then(conversationService.deleteGroupConversations(groupIds, session))
-                                .then(groupVersionService.delete(groupIds, session))
-                                .thenReturn(result);
-                    });
-                })
-                .retryWhen(TRANSACTION_RETRY);
+                    return deletionJobService.createJob(DeletionJobTargetType.GROUP, groupIds, !finalShouldDeleteLogically)
+                            .thenReturn(OperationResultUtil.update2delete(result));
+                });
     }
 
     public Flux<Group> queryGroups(
@@ -304,6 +296,40 @@ public class GroupService {
                 });
     }
 
+    /**
+     * Keyset pagination sorted by group ID in ascending order
+     */
+    public Flux<Group> queryGroupsAfter(
+            @Nullable Set<Long> ids,
+            @Nullable Set<Long> typeIds,
+            @Nullable Set<Long> creatorIds,
+            @Nullable Set<Long> ownerIds,
+            @Nullable Boolean isActive,
+            @Nullable DateRange creationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable DateRange muteEndDateRange,
+            @Nullable Set<Long> memberIds,
+            @Nullable Long lastGroupId,
+            int size) {
+        return getGroupIdsFromGroupIdsAndMemberIds(ids, memberIds)
+                .defaultIfEmpty(Collections.emptySet())
+                .flatMapMany(groupIds -> {
+                    Filter filter = Filter.newBuilder(11)
+                            .inIfNotNull(ID_FIELD_NAME, groupIds)
+                            .inIfNotNull(Group.Fields.TYPE_ID, typeIds)
+                            .inIfNotNull(Group.Fields.CREATOR_ID, creatorIds)
+                            .inIfNotNull(Group.Fields.OWNER_ID, ownerIds)
+                            .eqIfNotNull(Group.Fields.IS_ACTIVE, isActive)
+                            .addBetweenIfNotNull(Group.Fields.CREATION_DATE, creationDateRange)
+                            .addBetweenIfNotNull(Group.Fields.DELETION_DATE, deletionDateRange)
+                            .addBetweenIfNotNull(Group.Fields.MUTE_END_DATE, muteEndDateRange)
+                            .afterIfNotNull(ID_FIELD_NAME, lastGroupId, true);
+                    QueryOptions options = QueryOptions.newBuilder(2)
+                            .paginateByKeyset(ID_FIELD_NAME, true, size);
+                    return mongoClient.findMany(Group.class, filter, options);
+                });
+    }
+
     public Mono<Long> queryGroupTypeId(@NotNull Long groupId) {
         try {
             AssertUtil.notNull(groupId, "groupId");
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.job;
+
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.cluster.service.idgen.ServiceType;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.dao.domain.User;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.server.common.property.env.service.env.DeletionJobProperties;
+import im.turms.server.common.util.CollectorUtil;
+import im.turms.turms.constant.DaoConstant;
+import im.turms.turms.constant.DeletionJobStage;
+import im.turms.turms.constant.DeletionJobTargetType;
+import im.turms.turms.workflow.dao.domain.conversation.GroupConversation;
+import im.turms.turms.workflow.dao.domain.conversation.PrivateConversation;
+import im.turms.turms.workflow.dao.domain.group.Group;
+import im.turms.turms.workflow.dao.domain.group.GroupMember;
+import im.turms.turms.workflow.dao.domain.group.GroupVersion;
+import im.turms.turms.workflow.dao.domain.job.DeletionJob;
+import im.turms.turms.workflow.dao.domain.user.UserRelationship;
+import im.turms.turms.workflow.dao.domain.user.UserRelationshipGroup;
+import im.turms.turms.workflow.dao.domain.user.UserVersion;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Deletes the dependent documents (e.g. group members, relationships, conversations) of tombstoned
+ * users and groups in bounded batches in the background instead of a single huge transaction.
+ * <p>
+ * The jobs are persisted and processed by the leader, and the progress is saved after every batch,
+ * so a job can be resumed from its current stage after the leader changes or restarts.
+ * Every batch deletes the documents that still match the stage, so processing a batch more than once is harmless.
+ *
+ * @author James Chen
+ */
+@Service
+@Log4j2
+@DependsOn(IMongoCollectionInitializer.BEAN_NAME)
+public class DeletionJobService {
+
+    private final Node node;
+    private final TurmsMongoClient adminMongoClient;
+    private final TurmsMongoClient userMongoClient;
+    private final TurmsMongoClient groupMongoClient;
+    private final TurmsMongoClient conversationMongoClient;
+
+    private final AtomicBoolean isProcessingJobs = new AtomicBoolean();
+
+    public DeletionJobService(
+            Node node,
+            TurmsPropertiesManager turmsPropertiesManager,
+            TrivialTaskManager taskManager,
+            @Qualifier("adminMongoClient") TurmsMongoClient adminMongoClient,
+            @Qualifier("userMongoClient") TurmsMongoClient userMongoClient,
+            @Qualifier("groupMongoClient") TurmsMongoClient groupMongoClient,
+            @Qualifier("conversationMongoClient") TurmsMongoClient conversationMongoClient) {
+        this.node = node;
+        this.adminMongoClient = adminMongoClient;
+        this.userMongoClient = userMongoClient;
+        this.groupMongoClient = groupMongoClient;
+        this.conversationMongoClient = conversationMongoClient;
+        taskManager.reschedule(
+                "deletionJobsProcessing",
+                turmsPropertiesManager.getLocalProperties().getService().getDeletionJob().getProcessingCron(),
+                () -> {
+                    if (node.isLocalNodeLeader()) {
+                        processJobs().subscribe();
+                    }
+                });
+    }
+
+    /**
+     * @param targetIds     null to delete the dependent documents of all groups
+     * @param deleteTargets whether to delete the tombstoned targets themselves in the end
+     */
+    public Mono<DeletionJob> createJob(
+            @NotNull DeletionJobTargetType targetType,
+            @Nullable Set<Long> targetIds,
+            boolean deleteTargets) {
+        if (targetType == DeletionJobTargetType.USER && (targetIds == null || targetIds.isEmpty())) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The IDs of the users to delete must not be empty"));
+        }
+        Date now = new Date();
+        DeletionJob job = new DeletionJob(
+                node.nextRandomId(ServiceType.DELETION_JOB),
+                targetType,
+                targetIds,
+                deleteTargets,
+                DeletionJobStage.first(targetType),
+                0L,
+                now,
+                now,
+                null);
+        return adminMongoClient.insert(job)
+                .doOnSuccess(ignored -> {
+                    // Start as soon as possible instead of waiting for the next cron trigger
+                    if (node.isLocalNodeLeader()) {
+                        processJobs().subscribe();
+                    }
+                })
+                .thenReturn(job);
+    }
+
+    public Flux<DeletionJob> queryJobs(
+            @Nullable Set<Long> ids,
+            @Nullable Set<DeletionJobTargetType> targetTypes,
+            @Nullable Boolean isCompleted,
+            @Nullable Integer page,
+            @Nullable Integer size) {
+        Filter filter = Filter.newBuilder(3)
+                .inIfNotNull(DaoConstant.ID_FIELD_NAME, ids)
+                .inIfNotNull(DeletionJob.Fields.TARGET_TYPE, targetTypes);
+        if (isCompleted != null) {
+            filter = isCompleted
+                    ? filter.ne(DeletionJob.Fields.COMPLETION_DATE, null)
+                    : filter.eq(DeletionJob.Fields.COMPLETION_DATE, null);
+        }
+        QueryOptions options = QueryOptions.newBuilder(3)
+                .paginateIfNotNull(page, size)
+                .sort(false, DeletionJob.Fields.CREATION_DATE);
+        return adminMongoClient.findMany(DeletionJob.class, filter, options);
+    }
+
+    public Mono<Long> countJobs(
+            @Nullable Set<Long> ids,
+            @Nullable Set<DeletionJobTargetType> targetTypes,
+            @Nullable Boolean isCompleted) {
+        Filter filter = Filter.newBuilder(3)
+                .inIfNotNull(DaoConstant.ID_FIELD_NAME, ids)
+                .inIfNotNull(DeletionJob.Fields.TARGET_TYPE, targetTypes);
+        if (isCompleted != null) {
+            filter = isCompleted
+                    ? filter.ne(DeletionJob.Fields.COMPLETION_DATE, null)
+                    : filter.eq(DeletionJob.Fields.COMPLETION_DATE, null);
+        }
+        return adminMongoClient.count(DeletionJob.class, filter);
+    }
+
+    /**
+     * Process the pending jobs one by one in the order of their creation
+     */
+    public Mono<Void> processJobs() {
+        if (!isProcessingJobs.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        Filter filter = Filter.newBuilder(1)
+                .eq(DeletionJob.Fields.COMPLETION_DATE, null);
+        QueryOptions options = QueryOptions.newBuilder(1)
+                .sort(true, DeletionJob.Fields.CREATION_DATE);
+        return adminMongoClient.findMany(DeletionJob.class, filter, options)
+                .concatMap(job -> processJob(job)
+                        .onErrorResume(t -> {
+                            log.error("Failed to process the deletion job {}. The job will be resumed later", job.getId(), t);
+                            return Mono.empty();
+                        }))
+                .then(Mono.defer(this::removeExpiredCompletedJobs))
+                .onErrorResume(t -> {
+                    log.error("Failed to process the deletion jobs", t);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> isProcessingJobs.set(false));
+    }
+
+    private Mono<Void> processJob(DeletionJob job) {
+        DeletionJobStage initialStage = job.getStage();
+        if (initialStage == null) {
+            return updateProgress(job.getId(), null, job.getDeletedCount());
+        }
+        DeletionJobProperties properties = node.getSharedProperties().getService().getDeletionJob();
+        int batchSize = properties.getBatchSize();
+        Duration batchInterval = Duration.ofMillis(properties.getBatchIntervalMillis());
+        AtomicLong deletedCount = new AtomicLong(job.getDeletedCount() == null ? 0 : job.getDeletedCount());
+        return Mono.just(initialStage)
+                .expand(stage -> deleteBatch(job.getTargetIds(), stage, batchSize)
+                        .flatMap(result -> {
+                            long totalDeletedCount = deletedCount.addAndGet(result.deletedCount());
+                            DeletionJobStage nextStage = result.matchedCount() < batchSize
+                                    ? getNextStage(job, stage)
+                                    : stage;
+                            Mono<Void> updateProgress = updateProgress(job.getId(), nextStage, totalDeletedCount);
+                            if (nextStage == null) {
+                                return updateProgress.then(Mono.empty());
+                            }
+                            return batchInterval.isZero()
+                                    ? updateProgress.thenReturn(nextStage)
+                                    : updateProgress.then(Mono.delay(batchInterval)).thenReturn(nextStage);
+                        }))
+                .then();
+    }
+
+    @Nullable
+    private DeletionJobStage getNextStage(DeletionJob job, DeletionJobStage stage) {
+        DeletionJobStage nextStage = stage.next();
+        if (nextStage != null && nextStage.isTargetStage() && !Boolean.TRUE.equals(job.getDeleteTargets())) {
+            return null;
+        }
+        return nextStage;
+    }
+
+    /**
+     * @param stage null if the job has completed
+     */
+    private Mono<Void> updateProgress(Long jobId, @Nullable DeletionJobStage stage, long deletedCount) {
+        Date now = new Date();
+        Filter filter = Filter.newBuilder(1)
+                .eq(DaoConstant.ID_FIELD_NAME, jobId);
+        Update update = Update.newBuilder(4)
+                .set(DeletionJob.Fields.DELETED_COUNT, deletedCount)
+                .set(DeletionJob.Fields.LAST_UPDATED_DATE, now);
+        if (stage == null) {
+            update.unset(DeletionJob.Fields.STAGE)
+                    .set(DeletionJob.Fields.COMPLETION_DATE, now);
+        } else {
+            update.set(DeletionJob.Fields.STAGE, stage);
+        }
+        return adminMongoClient.updateOne(DeletionJob.class, filter, update).then();
+    }
+
+    private Mono<Void> removeExpiredCompletedJobs() {
+        int retentionHours = node.getSharedProperties().getService().getDeletionJob().getCompletedJobsRetentionHours();
+        if (retentionHours == 0) {
+            return Mono.empty();
+        }
+        Date expirationDate = Date.from(Instant.now().minus(retentionHours, ChronoUnit.HOURS));
+        Filter filter = Filter.newBuilder(1)
+                .lt(DeletionJob.Fields.COMPLETION_DATE, expirationDate);
+        return adminMongoClient.deleteMany(DeletionJob.class, filter).then();
+    }
+
+    // Batch deletion
+
+    private Mono<BatchResult> deleteBatch(@Nullable Set<Long> targetIds, DeletionJobStage stage, int batchSize) {
+        return switch (stage) {
+            case GROUP_MEMBERS -> deleteBatch(groupMongoClient, GroupMember.class,
+                    Filter.newBuilder(1).inIfNotNull(GroupMember.Fields.ID_GROUP_ID, targetIds),
+                    GroupMember::getKey, batchSize);
+            case GROUP_CONVERSATIONS -> deleteBatch(conversationMongoClient, GroupConversation.class,
+                    Filter.newBuilder(1).inIfNotNull(DaoConstant.ID_FIELD_NAME, targetIds),
+                    GroupConversation::getGroupId, batchSize);
+            case GROUP_VERSIONS -> deleteBatch(groupMongoClient, GroupVersion.class,
+                    Filter.newBuilder(1).inIfNotNull(DaoConstant.ID_FIELD_NAME, targetIds),
+                    GroupVersion::getGroupId, batchSize);
+            case GROUPS -> deleteBatch(groupMongoClient, Group.class,
+                    Filter.newBuilder(2)
+                            .inIfNotNull(DaoConstant.ID_FIELD_NAME, targetIds)
+                            .ne(Group.Fields.DELETION_DATE, null),
+                    Group::getId, batchSize);
+            case USER_RELATIONSHIPS -> deleteBatch(userMongoClient, UserRelationship.class,
+                    Filter.newBuilder(1)
+                            .or(Filter.newBuilder(1).in(UserRelationship.Fields.ID_OWNER_ID, targetIds),
+                                    Filter.newBuilder(1).in(UserRelationship.Fields.ID_RELATED_USER_ID, targetIds)),
+                    UserRelationship::getKey, batchSize);
+            case USER_RELATIONSHIP_GROUPS -> deleteBatch(userMongoClient, UserRelationshipGroup.class,
+                    Filter.newBuilder(2)
+                            .in(UserRelationshipGroup.Fields.ID_OWNER_ID, targetIds)
+                            .ne(UserRelationshipGroup.Fields.ID_GROUP_INDEX, 0),
+                    UserRelationshipGroup::getKey, batchSize);
+            case PRIVATE_CONVERSATIONS -> deleteBatch(conversationMongoClient, PrivateConversation.class,
+                    Filter.newBuilder(1).in(PrivateConversation.Fields.ID_OWNER_ID, targetIds),
+                    PrivateConversation::getKey, batchSize);
+            case USER_VERSIONS -> deleteBatch(userMongoClient, UserVersion.class,
+                    Filter.newBuilder(1).in(DaoConstant.ID_FIELD_NAME, targetIds),
+                    UserVersion::getUserId, batchSize);
+            case USERS -> deleteBatch(userMongoClient, User.class,
+                    Filter.newBuilder(2)
+                            .in(DaoConstant.ID_FIELD_NAME, targetIds)
+                            .ne(User.Fields.DELETION_DATE, null),
+                    User::getId, batchSize);
+        };
+    }
+
+    private <T> Mono<BatchResult> deleteBatch(
+            TurmsMongoClient mongoClient,
+            Class<T> clazz,
+            Filter filter,
+            Function<T, Object> idGetter,
+            int batchSize) {
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .include(DaoConstant.ID_FIELD_NAME)
+                .limit(batchSize);
+        return mongoClient.findMany(clazz, filter, options)
+                .map(idGetter)
+                .collect(CollectorUtil.toList(batchSize))
+                .flatMap(ids -> {
+                    if (ids.isEmpty()) {
+                        return Mono.just(new BatchResult(0, 0));
+                    }
+                    Filter idFilter = Filter.newBuilder(1)
+                            .in(DaoConstant.ID_FIELD_NAME, ids);
+                    return mongoClient.deleteMany(clazz, idFilter)
+                            .map(result -> new BatchResult(ids.size(), result.getDeletedCount()));
+                });
+    }
+
+    /**
+     * @param matchedCount the number of the documents matching the stage in the batch.
+     *                     The stage is done if it is less than the batch size
+     */
+    private record BatchResult(int matchedCount, long deletedCount) {
+    }
+
+}
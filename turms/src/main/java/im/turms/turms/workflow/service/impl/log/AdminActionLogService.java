@@ -79,7 +79,7 @@ public class AdminActionLogService {
                 Mono<Void> handleAdminAction = Mono.empty();
                 for (AdminActionHandler handler : turmsPluginManager.getAdminActionHandlerList()) {
                     handleAdminAction = handleAdminAction
-                            .then(Mono.defer(() -> handler.handleAdminAction(adminAction)));
+                            .then(handler.invoke(() -> handler.handleAdminAction(adminAction)));
                 }
                 handleAdminAction.subscribe();
             }
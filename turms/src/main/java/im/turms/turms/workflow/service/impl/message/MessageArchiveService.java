@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.turms.turms.workflow.service.impl.message;
+
+import im.turms.server.common.bo.common.DateRange;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.turms.constant.DaoConstant;
+import im.turms.turms.workflow.dao.domain.message.Message;
+import im.turms.turms.workflow.dao.domain.message.MessageArchive;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Moves cold messages from the message collection to capped day buckets in the message archive collection,
+ * and reads through the archive for the queries of old date ranges.
+ * <p>
+ * Archived messages are read-only, and they can only be queried with target IDs or a delivery date range with a start date
+ * so that a query never scans all buckets.
+ *
+ * @author James Chen
+ */
+@Service
+@Log4j2
+@DependsOn(IMongoCollectionInitializer.BEAN_NAME)
+public class MessageArchiveService {
+
+    private static final int MAX_CONCURRENT_BUCKET_UPSERTS = 16;
+    /**
+     * Half of the document size limit of MongoDB (16MB) so that
+     * a message can always be appended to a bucket unless the message itself is larger than the half
+     */
+    private static final long MAX_BUCKET_SIZE_BYTES = 8 * 1024 * 1024;
+    private static final long MESSAGE_SIZE_OVERHEAD_BYTES = 256;
+    private static final long RECORD_SIZE_OVERHEAD_BYTES = 16;
+    private static final String COUNT_FIELD_NAME = "count";
+
+    private final TurmsMongoClient mongoClient;
+    private final Node node;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    public MessageArchiveService(
+            @Qualifier("messageMongoClient") TurmsMongoClient mongoClient,
+            Node node,
+            TurmsPropertiesManager turmsPropertiesManager,
+            TrivialTaskManager taskManager) {
+        this.mongoClient = mongoClient;
+        this.node = node;
+        taskManager.reschedule(
+                "coldMessagesArchiving",
+                turmsPropertiesManager.getLocalProperties().getService().getMessage().getColdMessagesArchivingCron(),
+                () -> {
+                    if (node.isLocalNodeLeader()) {
+                        Date cutoffDate = getArchiveCutoffDate();
+                        if (cutoffDate != null) {
+                            int batchSize = node.getSharedProperties()
+                                    .getService()
+                                    .getMessage()
+                                    .getMessagesArchivingBatchSize();
+                            archiveMessages(cutoffDate, batchSize)
+                                    .subscribe(count -> log.info("Archived {} messages delivered before {}", count, cutoffDate),
+                                            t -> log.error("Caught an error while archiving messages", t));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return the start of the day before which messages should have been archived,
+     * or null if archiving is disabled
+     */
+    @Nullable
+    public Date getArchiveCutoffDate() {
+        int archiveAfterDays = node.getSharedProperties().getService().getMessage().getArchiveMessagesAfterDays();
+        if (archiveAfterDays <= 0) {
+            return null;
+        }
+        Instant cutoff = Instant.now().minus(archiveAfterDays, ChronoUnit.DAYS);
+        return Date.from(getBucketStartDate(cutoff));
+    }
+
+    /**
+     * @return whether the date range may contain archived messages
+     */
+    public boolean isArchiveQueried(@Nullable DateRange deliveryDateRange) {
+        if (deliveryDateRange == null) {
+            return false;
+        }
+        Date cutoffDate = getArchiveCutoffDate();
+        if (cutoffDate == null) {
+            return false;
+        }
+        Date start = deliveryDateRange.getStart();
+        Date end = deliveryDateRange.getEnd();
+        return start != null
+                ? start.before(cutoffDate)
+                : end != null && end.before(cutoffDate);
+    }
+
+    /**
+     * Moves messages in batches and in the order of their IDs.
+     * A batch is appended to the archive before being deleted from the message collection,
+     * and the append is guarded by the last archived message ID of the bucket,
+     * so a failed run can be retried without losing or duplicating messages.
+     *
+     * @return the number of archived messages
+     */
+    public Mono<Long> archiveMessages(@NotNull Date cutoffDate, int batchSize) {
+        return archiveBatch(cutoffDate, batchSize, null)
+                .expand(result -> result.count() < batchSize
+                        ? Mono.empty()
+                        : archiveBatch(cutoffDate, batchSize, result.lastMessageId()))
+                .reduce(0L, (count, result) -> count + result.count());
+    }
+
+    private Mono<BatchResult> archiveBatch(Date cutoffDate, int batchSize, @Nullable Long lastMessageId) {
+        Filter filter = Filter.newBuilder(2)
+                .lt(Message.Fields.DELIVERY_DATE, cutoffDate)
+                .afterIfNotNull(DaoConstant.ID_FIELD_NAME, lastMessageId, true);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateByKeyset(DaoConstant.ID_FIELD_NAME, true, batchSize);
+        return mongoClient.findMany(Message.class, filter, options)
+                .collectList()
+                .flatMap(messages -> {
+                    if (messages.isEmpty()) {
+                        return Mono.just(new BatchResult(0, null));
+                    }
+                    Map<BucketGroup, List<Message>> groups = new LinkedHashMap<>();
+                    List<Long> messageIds = new ArrayList<>(messages.size());
+                    for (Message message : messages) {
+                        BucketGroup group = new BucketGroup(message.getTargetId(),
+                                message.getIsGroupMessage(),
+                                Date.from(getBucketStartDate(message.getDeliveryDate().toInstant())));
+                        groups.computeIfAbsent(group, k -> new ArrayList<>()).add(message);
+                        messageIds.add(message.getId());
+                    }
+                    Date archiveDate = new Date();
+                    int maxMessagesPerBucket = node.getSharedProperties()
+                            .getService()
+                            .getMessage()
+                            .getMaxMessagesPerArchiveBucket();
+                    Long lastId = messageIds.get(messageIds.size() - 1);
+                    Filter messagesFilter = Filter.newBuilder(1)
+                            .in(DaoConstant.ID_FIELD_NAME, messageIds);
+                    return Flux.fromIterable(groups.entrySet())
+                            .flatMap(entry -> appendToBuckets(entry.getKey(), entry.getValue(), maxMessagesPerBucket, archiveDate),
+                                    MAX_CONCURRENT_BUCKET_UPSERTS)
+                            .then(Mono.defer(() -> mongoClient.deleteMany(Message.class, messagesFilter)))
+                            .thenReturn(new BatchResult(messages.size(), lastId));
+                });
+    }
+
+    /**
+     * Appends the messages to the latest bucket of the group until it is full, and then to new buckets
+     */
+    private Mono<Void> appendToBuckets(BucketGroup group, List<Message> messages, int maxMessagesPerBucket, Date archiveDate) {
+        Filter filter = Filter.newBuilder(3)
+                .eq(MessageArchive.Fields.ID_TARGET_ID, group.targetId())
+                .eq(MessageArchive.Fields.ID_IS_GROUP_MESSAGE, group.isGroupMessage())
+                .eq(MessageArchive.Fields.ID_BUCKET_START_DATE, group.bucketStartDate());
+        QueryOptions options = QueryOptions.newBuilder(3)
+                .include(MessageArchive.Fields.MESSAGE_COUNT,
+                        MessageArchive.Fields.MESSAGES_SIZE,
+                        MessageArchive.Fields.LAST_MESSAGE_ID)
+                .sort(false, MessageArchive.Fields.ID_SEQUENCE)
+                .limit(1);
+        return mongoClient.findOne(MessageArchive.class, filter, options)
+                .map(BucketState::from)
+                .defaultIfEmpty(BucketState.EMPTY)
+                .flatMap(latestBucket -> Flux
+                        .fromIterable(splitIntoChunks(messages, latestBucket, maxMessagesPerBucket))
+                        .concatMap(chunk -> pushMessages(group, chunk, maxMessagesPerBucket, archiveDate))
+                        .then());
+    }
+
+    private static List<Chunk> splitIntoChunks(List<Message> messages, BucketState latestBucket, int maxMessagesPerBucket) {
+        List<Chunk> chunks = new ArrayList<>(2);
+        int sequence = latestBucket.sequence();
+        int bucketMessageCount = latestBucket.messageCount();
+        long bucketSize = latestBucket.messagesSize();
+        List<Message> chunkMessages = new ArrayList<>(Math.min(messages.size(), maxMessagesPerBucket));
+        long chunkSize = 0;
+        for (Message message : messages) {
+            // The message has been archived by a failed run
+            if (message.getId() <= latestBucket.lastMessageId()) {
+                continue;
+            }
+            long messageSize = estimateSize(message);
+            if (bucketMessageCount > 0
+                    && (bucketMessageCount >= maxMessagesPerBucket || bucketSize + messageSize > MAX_BUCKET_SIZE_BYTES)) {
+                if (!chunkMessages.isEmpty()) {
+                    chunks.add(new Chunk(sequence, chunkMessages, chunkSize));
+                    chunkMessages = new ArrayList<>(Math.min(messages.size(), maxMessagesPerBucket));
+                    chunkSize = 0;
+                }
+                sequence++;
+                bucketMessageCount = 0;
+                bucketSize = 0;
+            }
+            chunkMessages.add(message);
+            chunkSize += messageSize;
+            bucketMessageCount++;
+            bucketSize += messageSize;
+        }
+        if (!chunkMessages.isEmpty()) {
+            chunks.add(new Chunk(sequence, chunkMessages, chunkSize));
+        }
+        return chunks;
+    }
+
+    /**
+     * The filter only matches the existing bucket if it has enough room and doesn't contain the messages,
+     * so the bucket can never exceed the limits. If the bucket doesn't exist, it will be inserted.
+     * If the bucket exists but doesn't match, the upsert fails with a duplicate key error
+     * and the batch will be retried by the next run
+     */
+    private Mono<Void> pushMessages(BucketGroup group, Chunk chunk, int maxMessagesPerBucket, Date archiveDate) {
+        List<Message> messages = chunk.messages();
+        int messageCount = messages.size();
+        MessageArchive.Key key = new MessageArchive.Key(group.targetId(),
+                group.isGroupMessage(),
+                group.bucketStartDate(),
+                chunk.sequence());
+        Filter filter = Filter.newBuilder(4)
+                .eq(DaoConstant.ID_FIELD_NAME, key)
+                .lte(MessageArchive.Fields.MESSAGE_COUNT, maxMessagesPerBucket - messageCount)
+                .lte(MessageArchive.Fields.MESSAGES_SIZE, MAX_BUCKET_SIZE_BYTES - chunk.size())
+                .lt(MessageArchive.Fields.LAST_MESSAGE_ID, messages.get(0).getId());
+        Update update = Update.newBuilder(4)
+                .push(MessageArchive.Fields.MESSAGES, messages)
+                .inc(MessageArchive.Fields.MESSAGE_COUNT, messageCount)
+                .inc(MessageArchive.Fields.MESSAGES_SIZE, chunk.size())
+                .set(MessageArchive.Fields.LAST_MESSAGE_ID, messages.get(messageCount - 1).getId())
+                .set(MessageArchive.Fields.BUCKET_START_DATE, group.bucketStartDate())
+                .set(MessageArchive.Fields.ARCHIVE_DATE, archiveDate);
+        return mongoClient.upsert(MessageArchive.class, filter, update);
+    }
+
+    /**
+     * Unwinds the matched buckets and filters, sorts and paginates the messages in mongo servers,
+     * so only the messages of the page are returned.
+     *
+     * @param messageFilter the filter for the message collection, which also applies to archived messages
+     * @param asc           whether to sort the messages by the delivery date in ascending order
+     * @throws TurmsBusinessException with {@link TurmsStatusCode#ILLEGAL_ARGUMENT} if neither the target IDs
+     *                                nor the start of the delivery date range is specified
+     */
+    public Flux<Message> queryMessages(
+            @NotNull Filter messageFilter,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            boolean asc,
+            int skip,
+            @Nullable Integer limit) {
+        Filter bucketFilter;
+        try {
+            bucketFilter = getBucketFilter(areGroupMessages, targetIds, deliveryDateRange);
+        } catch (TurmsBusinessException e) {
+            return Flux.error(e);
+        }
+        Aggregation aggregation = newMessagePipeline(bucketFilter, messageFilter, 7)
+                .sort(Message.Fields.DELIVERY_DATE, asc)
+                .allowDiskUse(true);
+        if (skip > 0) {
+            aggregation.skip(skip);
+        }
+        if (limit != null) {
+            aggregation.limit(limit);
+        }
+        return mongoClient.aggregate(MessageArchive.class, aggregation, Message.class);
+    }
+
+    public Mono<Long> countMessages(
+            @NotNull Filter messageFilter,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange) {
+        Filter bucketFilter;
+        try {
+            bucketFilter = getBucketFilter(areGroupMessages, targetIds, deliveryDateRange);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        Aggregation aggregation = newMessagePipeline(bucketFilter, messageFilter, 5)
+                .count(COUNT_FIELD_NAME);
+        return getCount(mongoClient.aggregate(MessageArchive.class, aggregation, Document.class));
+    }
+
+    /**
+     * Counts the distinct values of the field of the messages in both the message collection and the archive
+     */
+    public Mono<Long> countDistinctIncludingArchive(
+            @NotNull Filter messageFilter,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @NotNull String field) {
+        Filter bucketFilter;
+        try {
+            bucketFilter = getBucketFilter(areGroupMessages, targetIds, deliveryDateRange);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        Aggregation archivePipeline = newMessagePipeline(bucketFilter, messageFilter, 5)
+                .include(field);
+        Aggregation aggregation = Aggregation.newBuilder(5)
+                .match(messageFilter)
+                .include(field)
+                .unionWith(MessageArchive.COLLECTION_NAME, archivePipeline)
+                .group("$" + field)
+                .count(COUNT_FIELD_NAME)
+                .allowDiskUse(true);
+        return getCount(mongoClient.aggregate(Message.class, aggregation, Document.class));
+    }
+
+    /**
+     * Deletes the buckets whose messages have all expired.
+     * If handlers are passed, they decide which expired messages to delete in each bucket,
+     * and the messages they keep stay in their bucket until the next deletion
+     *
+     * @param getMessagesToDelete null if no handler needs to be notified
+     */
+    public Mono<Void> deleteExpiredArchives(
+            @NotNull Integer timeToLiveHours,
+            @Nullable Function<List<Message>, Mono<List<Message>>> getMessagesToDelete) {
+        Instant expirationDate = Instant.now().minus(timeToLiveHours, ChronoUnit.HOURS);
+        Filter filter = Filter.newBuilder(1)
+                .lt(MessageArchive.Fields.BUCKET_START_DATE, Date.from(expirationDate.minus(1, ChronoUnit.DAYS)));
+        if (getMessagesToDelete == null) {
+            return mongoClient.deleteMany(MessageArchive.class, filter).then();
+        }
+        return mongoClient.findMany(MessageArchive.class, filter)
+                .concatMap(bucket -> deleteExpiredMessages(bucket, getMessagesToDelete)
+                        .onErrorResume(t -> {
+                            log.error("Caught an error while deleting the expired messages of the bucket: " + bucket.getKey(), t);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Matches the message count to avoid overwriting the messages pushed after the bucket was read
+     */
+    private Mono<Void> deleteExpiredMessages(
+            MessageArchive bucket,
+            Function<List<Message>, Mono<List<Message>>> getMessagesToDelete) {
+        Filter filter = Filter.newBuilder(2)
+                .eq(DaoConstant.ID_FIELD_NAME, bucket.getKey())
+                .eq(MessageArchive.Fields.MESSAGE_COUNT, bucket.getMessageCount());
+        List<Message> messages = bucket.getMessages();
+        if (messages == null || messages.isEmpty()) {
+            return mongoClient.deleteMany(MessageArchive.class, filter).then();
+        }
+        return getMessagesToDelete.apply(messages)
+                .flatMap(messagesToDelete -> {
+                    if (messagesToDelete.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    Set<Long> messageIdsToDelete = new HashSet<>(messagesToDelete.size());
+                    for (Message message : messagesToDelete) {
+                        messageIdsToDelete.add(message.getId());
+                    }
+                    List<Message> messagesToKeep = new ArrayList<>(messages.size());
+                    long messagesSize = 0;
+                    for (Message message : messages) {
+                        if (!messageIdsToDelete.contains(message.getId())) {
+                            messagesToKeep.add(message);
+                            messagesSize += estimateSize(message);
+                        }
+                    }
+                    if (messagesToKeep.isEmpty()) {
+                        return mongoClient.deleteMany(MessageArchive.class, filter).then();
+                    }
+                    if (messagesToKeep.size() == messages.size()) {
+                        return Mono.empty();
+                    }
+                    Update update = Update.newBuilder(3)
+                            .set(MessageArchive.Fields.MESSAGES, messagesToKeep)
+                            .set(MessageArchive.Fields.MESSAGE_COUNT, messagesToKeep.size())
+                            .set(MessageArchive.Fields.MESSAGES_SIZE, messagesSize);
+                    return mongoClient.updateOne(MessageArchive.class, filter, update).then();
+                });
+    }
+
+    /**
+     * Refuses to scan all buckets because the archive is expected to be much larger than the message collection
+     */
+    private Filter getBucketFilter(
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange) {
+        boolean hasTargetIds = targetIds != null && !targetIds.isEmpty();
+        Date start = deliveryDateRange == null ? null : deliveryDateRange.getStart();
+        if (!hasTargetIds && start == null) {
+            throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT,
+                    "The target IDs or the start of the delivery date range must be specified to query archived messages");
+        }
+        DateRange bucketDateRange = deliveryDateRange == null
+                ? null
+                : DateRange.of(start == null ? null : Date.from(getBucketStartDate(start.toInstant())),
+                deliveryDateRange.getEnd());
+        // Use the compound index of the target ID and the bucket start date in the key if possible
+        return Filter.newBuilder(3)
+                .inIfNotNull(MessageArchive.Fields.ID_TARGET_ID, targetIds)
+                .eqIfNotNull(MessageArchive.Fields.ID_IS_GROUP_MESSAGE, areGroupMessages)
+                .addBetweenIfNotNull(hasTargetIds
+                                ? MessageArchive.Fields.ID_BUCKET_START_DATE
+                                : MessageArchive.Fields.BUCKET_START_DATE,
+                        bucketDateRange);
+    }
+
+    private Aggregation newMessagePipeline(Filter bucketFilter, Filter messageFilter, int expectedSize) {
+        return Aggregation.newBuilder(expectedSize)
+                .match(bucketFilter)
+                .unwind(MessageArchive.Fields.MESSAGES)
+                .replaceRoot(MessageArchive.Fields.MESSAGES)
+                .match(messageFilter);
+    }
+
+    private Mono<Long> getCount(Flux<Document> result) {
+        return result.next()
+                .map(document -> ((Number) document.get(COUNT_FIELD_NAME)).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Estimates the BSON size of the message to keep a bucket below the document size limit.
+     * The size of a character in UTF-8 is at most 3 bytes for characters in the BMP
+     * and 4 bytes (2 chars) for the others
+     */
+    private static long estimateSize(Message message) {
+        long size = MESSAGE_SIZE_OVERHEAD_BYTES;
+        String text = message.getText();
+        if (text != null) {
+            size += text.length() * 3L;
+        }
+        List<byte[]> records = message.getRecords();
+        if (records != null) {
+            for (byte[] bytes : records) {
+                size += bytes.length + RECORD_SIZE_OVERHEAD_BYTES;
+            }
+        }
+        return size;
+    }
+
+    private Instant getBucketStartDate(Instant instant) {
+        return instant.atZone(zoneId).truncatedTo(ChronoUnit.DAYS).toInstant();
+    }
+
+    private record BatchResult(int count, Long lastMessageId) {
+    }
+
+    private record BucketGroup(Long targetId, Boolean isGroupMessage, Date bucketStartDate) {
+    }
+
+    private record BucketState(int sequence, int messageCount, long messagesSize, long lastMessageId) {
+        private static final BucketState EMPTY = new BucketState(0, 0, 0, Long.MIN_VALUE);
+
+        private static BucketState from(MessageArchive bucket) {
+            Integer messageCount = bucket.getMessageCount();
+            Long messagesSize = bucket.getMessagesSize();
+            Long lastMessageId = bucket.getLastMessageId();
+            Integer sequence = bucket.getKey().getSequence();
+            return new BucketState(sequence == null ? 0 : sequence,
+                    messageCount == null ? 0 : messageCount,
+                    messagesSize == null ? 0 : messagesSize,
+                    lastMessageId == null ? Long.MIN_VALUE : lastMessageId);
+        }
+    }
+
+    private record Chunk(int sequence, List<Message> messages, long size) {
+    }
+
+}
@@ -40,8 +40,10 @@ import im.turms.server.common.mongo.operation.option.QueryOptions;
 import im.turms.server.common.mongo.operation.option.Update;
 import im.turms.server.common.property.TurmsPropertiesManager;
 import im.turms.server.common.property.constant.TimeType;
+import im.turms.server.common.property.env.service.business.message.MessageProperties;
 import im.turms.server.common.util.AssertUtil;
 import im.turms.server.common.util.CollectorUtil;
+import im.turms.server.common.util.ReactorUtil;
 import im.turms.turms.bo.ServicePermission;
 import im.turms.turms.constant.DaoConstant;
 import im.turms.turms.constant.OperationResultConstant;
@@ -78,6 +80,10 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static im.turms.server.common.constant.TurmsStatusCode.ILLEGAL_ARGUMENT;
@@ -87,6 +93,8 @@ import static im.turms.server.common.constant.TurmsStatusCode.OK;
 import static im.turms.server.common.constant.TurmsStatusCode.RECALLING_MESSAGE_IS_DISABLED;
 import static im.turms.server.common.constant.TurmsStatusCode.RECALL_NON_EXISTING_MESSAGE;
 import static im.turms.server.common.constant.TurmsStatusCode.UPDATING_MESSAGE_BY_SENDER_IS_DISABLED;
+import static im.turms.turms.constant.MetricsConstant.DELETED_EXPIRED_MESSAGES_COUNTER_NAME;
+import static im.turms.turms.constant.MetricsConstant.EXPIRED_MESSAGES_BACKLOG_GAUGE_NAME;
 import static im.turms.turms.constant.MetricsConstant.SENT_MESSAGES_COUNTER_NAME;
 
 /**
@@ -104,12 +112,16 @@ public class MessageService {
     private final GroupMemberService groupMemberService;
     private final UserService userService;
     private final TurmsPluginManager turmsPluginManager;
+    private final MessageArchiveService messageArchiveService;
     private final boolean pluginEnabled;
     @Getter
     private TimeType timeType;
     private final Cache<Long, Message> sentMessageCache;
 
     private final Counter sentMessageCounter;
+    private final Counter deletedExpiredMessagesCounter;
+    private final AtomicLong expiredMessagesBacklog;
+    private final AtomicBoolean isDeletingExpiredMessages = new AtomicBoolean();
 
     @Autowired
     public MessageService(
@@ -121,6 +133,7 @@ public class MessageService {
             UserService userService,
             OutboundMessageService outboundMessageService,
             TurmsPluginManager turmsPluginManager,
+            MessageArchiveService messageArchiveService,
             TrivialTaskManager taskManager,
             MetricsService metricsService) {
         this.mongoClient = mongoClient;
@@ -130,6 +143,7 @@ public class MessageService {
         this.userService = userService;
         this.outboundMessageService = outboundMessageService;
         this.turmsPluginManager = turmsPluginManager;
+        this.messageArchiveService = messageArchiveService;
         pluginEnabled = node.getSharedProperties().getPlugin().isEnabled();
         timeType = node.getSharedProperties().getService().getMessage().getTimeType();
         int relayedMessageCacheMaxSize = turmsPropertiesManager.getLocalProperties().getService().getMessage().getSentMessageCacheMaxSize();
@@ -144,6 +158,8 @@ public class MessageService {
             sentMessageCache = null;
         }
         sentMessageCounter = metricsService.getRegistry().counter(SENT_MESSAGES_COUNTER_NAME);
+        deletedExpiredMessagesCounter = metricsService.getRegistry().counter(DELETED_EXPIRED_MESSAGES_COUNTER_NAME);
+        expiredMessagesBacklog = metricsService.getRegistry().gauge(EXPIRED_MESSAGES_BACKLOG_GAUGE_NAME, new AtomicLong());
         node.addPropertiesChangeListener(properties -> timeType = properties.getService().getMessage().getTimeType());
         // Set up the checker for expired messages join requests
         taskManager.reschedule(
@@ -156,7 +172,10 @@ public class MessageService {
                                 .getMessage()
                                 .getMessageExpireAfterHours();
                         if (expireAfterHours > 0) {
-                            deleteExpiredMessagesAndStatuses(expireAfterHours).subscribe();
+                            deleteExpiredMessagesAndStatuses(expireAfterHours)
+                                    .then(Mono.defer(() -> messageArchiveService.deleteExpiredArchives(expireAfterHours,
+                                            getExpiredMessageAutoDeletionHandlerChain())))
+                                    .subscribe();
                         }
                     }
                 });
@@ -243,28 +262,57 @@ public class MessageService {
                 .defaultIfEmpty(ServicePermission.get(RECALL_NON_EXISTING_MESSAGE));
     }
 
+    /**
+     * @param fromId if areGroupMessages is true, the ID of the group whose messages are queried,
+     *               and nothing is returned if the user isn't a member of the group.
+     *               If areGroupMessages is false, the ID of the other user of the private conversation,
+     *               and the messages sent by the user to them are included.
+     *               Otherwise, the ID of the user who sent the messages to the user
+     */
     public Flux<Message> authAndQueryCompleteMessages(
             boolean closeToDate,
             @Nullable Collection<Long> messageIds,
             @Nullable Boolean areGroupMessages,
             @Nullable Boolean areSystemMessages,
-            @Nullable Long senderId,
-            @Nullable Long targetId,
+            @Nullable Long fromId,
+            @NotNull Long userId,
             @Nullable DateRange deliveryDateRange,
             @Nullable DateRange deletionDateRange,
             @Nullable Integer page,
             @Nullable Integer size) {
-        return queryMessages(
-                closeToDate,
-                messageIds,
-                areGroupMessages,
-                areSystemMessages,
-                senderId != null ? Set.of(senderId) : null,
-                targetId != null ? Set.of(targetId) : null,
-                deliveryDateRange,
-                deletionDateRange,
-                page,
-                size);
+        if (fromId == null || areGroupMessages == null) {
+            return queryMessages(
+                    closeToDate,
+                    messageIds,
+                    areGroupMessages,
+                    areSystemMessages,
+                    fromId != null ? Set.of(fromId) : null,
+                    Set.of(userId),
+                    deliveryDateRange,
+                    deletionDateRange,
+                    page,
+                    size);
+        }
+        if (areGroupMessages) {
+            return groupMemberService.isGroupMember(fromId, userId)
+                    .flatMapMany(isMember -> isMember
+                            ? queryMessages(closeToDate, messageIds, true, areSystemMessages, null, Set.of(fromId),
+                            deliveryDateRange, deletionDateRange, page, size)
+                            : Flux.empty());
+        }
+        Filter filter = Filter.newBuilder(7)
+                .eq(Message.Fields.IS_GROUP_MESSAGE, false)
+                .eqIfNotNull(Message.Fields.IS_SYSTEM_MESSAGE, areSystemMessages)
+                .or(Filter.newBuilder(2)
+                                .eq(Message.Fields.SENDER_ID, fromId)
+                                .eq(Message.Fields.TARGET_ID, userId),
+                        Filter.newBuilder(2)
+                                .eq(Message.Fields.SENDER_ID, userId)
+                                .eq(Message.Fields.TARGET_ID, fromId))
+                .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, deliveryDateRange)
+                .addBetweenIfNotNull(Message.Fields.DELETION_DATE, deletionDateRange)
+                .inIfNotNull(DaoConstant.ID_FIELD_NAME, messageIds);
+        return queryMessages(closeToDate, filter, false, Set.of(userId, fromId), deliveryDateRange, page, size);
     }
 
     public Mono<Message> queryMessage(@NotNull Long messageId) {
@@ -296,16 +344,132 @@ public class MessageService {
                 .inIfNotNull(Message.Fields.TARGET_ID, targetIds)
                 .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, deliveryDateRange)
                 .addBetweenIfNotNull(Message.Fields.DELETION_DATE, deletionDateRange);
-        QueryOptions options = QueryOptions.newBuilder(closeToDate ? 3 : 2)
-                .paginateIfNotNull(page, size);
-        if (closeToDate) {
-            boolean isAsc = deliveryDateRange != null && deliveryDateRange.getStart() != null;
-            options.sort(isAsc, Message.Fields.DELIVERY_DATE);
-        }
         filter.inIfNotNull(DaoConstant.ID_FIELD_NAME, messageIds);
+        return queryMessages(closeToDate, filter, areGroupMessages, targetIds, deliveryDateRange, page, size);
+    }
+
+    /**
+     * @param targetIds the target IDs that the filter is limited to, which are used to find the archive buckets
+     */
+    private Flux<Message> queryMessages(
+            boolean closeToDate,
+            @NotNull Filter filter,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable Integer page,
+            @Nullable Integer size) {
+        boolean isAsc = deliveryDateRange != null && deliveryDateRange.getStart() != null;
+        if (!messageArchiveService.isArchiveQueried(deliveryDateRange)) {
+            QueryOptions options = QueryOptions.newBuilder(closeToDate ? 3 : 2)
+                    .paginateIfNotNull(page, size);
+            if (closeToDate) {
+                options.sort(isAsc, Message.Fields.DELIVERY_DATE);
+            }
+            return mongoClient.findMany(Message.class, filter, options);
+        }
+        // Read through the archive. Archived messages are older than the messages in the message collection,
+        // so we can query the sources one after another and paginate them as a whole
+        boolean isArchiveFirst = !closeToDate || isAsc;
+        BiFunction<Integer, Integer, Flux<Message>> queryHotMessages = (skip, limit) -> {
+            QueryOptions options = QueryOptions.newBuilder(3);
+            if (skip > 0) {
+                options.skip(skip);
+            }
+            if (limit != null) {
+                options.limit(limit);
+            }
+            if (closeToDate) {
+                options.sort(isAsc, Message.Fields.DELIVERY_DATE);
+            }
+            return mongoClient.findMany(Message.class, filter, options);
+        };
+        BiFunction<Integer, Integer, Flux<Message>> queryArchivedMessages = (skip, limit) ->
+                messageArchiveService.queryMessages(filter, areGroupMessages, targetIds, deliveryDateRange,
+                        isArchiveFirst, skip, limit);
+        BiFunction<Integer, Integer, Flux<Message>> queryFirst = isArchiveFirst ? queryArchivedMessages : queryHotMessages;
+        BiFunction<Integer, Integer, Flux<Message>> querySecond = isArchiveFirst ? queryHotMessages : queryArchivedMessages;
+        if (size == null) {
+            return Flux.concat(queryFirst.apply(0, null), querySecond.apply(0, null));
+        }
+        int offset = (page == null ? 0 : page) * size;
+        return queryFirst.apply(offset, size)
+                .collectList()
+                .flatMapMany(messages -> {
+                    int remaining = size - messages.size();
+                    if (remaining == 0) {
+                        return Flux.fromIterable(messages);
+                    }
+                    // If the first source has returned some messages, the page starts in it
+                    // and the rest of the page starts from the beginning of the second source.
+                    // Otherwise, count the first source to know how many messages of the second source to skip
+                    Mono<Integer> skipOfSecond;
+                    if (!messages.isEmpty() || offset == 0) {
+                        skipOfSecond = Mono.just(0);
+                    } else {
+                        Mono<Long> countOfFirst = isArchiveFirst
+                                ? messageArchiveService.countMessages(filter, areGroupMessages, targetIds, deliveryDateRange)
+                                : mongoClient.count(Message.class, filter);
+                        skipOfSecond = countOfFirst.map(count -> (int) Math.max(0, offset - count));
+                    }
+                    return Flux.concat(Flux.fromIterable(messages),
+                            skipOfSecond.flatMapMany(skip -> querySecond.apply(skip, remaining)));
+                });
+    }
+
+    /**
+     * Keyset pagination sorted by message ID in ascending order.
+     * Archived messages aren't included, so the date range reaching into the archive is rejected
+     */
+    public Flux<Message> queryMessagesAfter(
+            @Nullable Collection<Long> messageIds,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Long lastMessageId,
+            int size) {
+        if (messageArchiveService.isArchiveQueried(deliveryDateRange)) {
+            return Flux.error(TurmsBusinessException.get(ILLEGAL_ARGUMENT,
+                    "Archived messages cannot be paginated by cursors or exported"));
+        }
+        Filter filter = Filter.newBuilder(8)
+                .eqIfNotNull(Message.Fields.IS_GROUP_MESSAGE, areGroupMessages)
+                .eqIfNotNull(Message.Fields.IS_SYSTEM_MESSAGE, areSystemMessages)
+                .inIfNotNull(Message.Fields.SENDER_ID, senderIds)
+                .inIfNotNull(Message.Fields.TARGET_ID, targetIds)
+                .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, deliveryDateRange)
+                .addBetweenIfNotNull(Message.Fields.DELETION_DATE, deletionDateRange)
+                .inIfNotNull(DaoConstant.ID_FIELD_NAME, messageIds)
+                .afterIfNotNull(DaoConstant.ID_FIELD_NAME, lastMessageId, true);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateByKeyset(DaoConstant.ID_FIELD_NAME, true, size);
         return mongoClient.findMany(Message.class, filter, options);
     }
 
+    /**
+     * Streams all matched messages batch by batch for exporting
+     * so that the messages won't be buffered in memory at once.
+     * Archived messages aren't included
+     */
+    public Flux<Message> exportMessages(
+            @Nullable Collection<Long> messageIds,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages,
+            @Nullable Set<Long> senderIds,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange,
+            @Nullable DateRange deletionDateRange,
+            int batchSize) {
+        return ReactorUtil.keysetStream(
+                lastMessageId -> queryMessagesAfter(messageIds, areGroupMessages, areSystemMessages, senderIds,
+                        targetIds, deliveryDateRange, deletionDateRange, lastMessageId, batchSize),
+                Message::getId,
+                batchSize);
+    }
+
     public Mono<Message> saveMessage(
             @Nullable Long messageId,
             @NotNull Long senderId,
@@ -383,46 +547,128 @@ public class MessageService {
                 .map(Message::getId);
     }
 
+    /**
+     * Deletes expired messages in fixed-size batches of IDs with bounded concurrency and an optional rate limit,
+     * so that a large backlog (e.g. after an outage) never needs to be loaded into memory at once.
+     * The batches are paginated by message ID, so the deletion makes progress even if some batches fail
+     * or some messages are kept by plugins, and a new run resumes with the remaining expired messages.
+     */
     public Mono<Void> deleteExpiredMessagesAndStatuses(@NotNull Integer timeToLiveHours) {
-        return queryExpiredMessageIds(timeToLiveHours)
-                .collectList()
-                .flatMap(expiredMessageIds -> {
-                    if (expiredMessageIds.isEmpty()) {
-                        return Mono.empty();
-                    } else {
-                        Mono<List<Long>> messageIdsToDeleteMono = Mono.just(expiredMessageIds);
-                        List<ExpiredMessageAutoDeletionNotificationHandler> handlerList =
-                                turmsPluginManager.getExpiredMessageAutoDeletionNotificationHandlerList();
-                        if (pluginEnabled && !handlerList.isEmpty()) {
-                            Filter messagesFilter = Filter.newBuilder(1)
-                                    .in(DaoConstant.ID_FIELD_NAME, expiredMessageIds);
-                            messageIdsToDeleteMono = mongoClient.findMany(Message.class, messagesFilter)
-                                    .collectList()
-                                    .flatMap(messages -> {
-                                        Mono<List<Message>> mono = Mono.just(messages);
-                                        for (ExpiredMessageAutoDeletionNotificationHandler handler : handlerList) {
-                                            mono = mono.flatMap(handler::getMessagesToDelete);
-                                        }
-                                        return mono;
-                                    })
-                                    .map(messages -> {
-                                        List<Long> messageIds = new ArrayList<>(messages.size());
-                                        for (Message message : messages) {
-                                            messageIds.add(message.getId());
-                                        }
-                                        return messageIds;
-                                    });
+        try {
+            AssertUtil.notNull(timeToLiveHours, "timeToLiveHours");
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        // Acquire the flag on subscription instead of on assembly
+        // so that a mono that is never subscribed or is resubscribed won't leave the flag set
+        return Mono.defer(() -> {
+            if (!isDeletingExpiredMessages.compareAndSet(false, true)) {
+                log.warn("Skip deleting expired messages because the previous deletion is still in progress");
+                return Mono.empty();
+            }
+            MessageProperties properties = node.getSharedProperties().getService().getMessage();
+            int batchSize = properties.getExpiredMessagesDeletionBatchSize();
+            int concurrency = properties.getExpiredMessagesDeletionConcurrency();
+            int batchIntervalMillis = properties.getExpiredMessagesDeletionBatchIntervalMillis();
+            Date beforeDate = Date.from(Instant.now().minus(timeToLiveHours, ChronoUnit.HOURS));
+            Filter expiredMessagesFilter = Filter.newBuilder(1)
+                    .lt(Message.Fields.DELIVERY_DATE, beforeDate);
+            Flux<List<Long>> batches = queryExpiredMessageIdBatch(beforeDate, null, batchSize)
+                    .expand(messageIds -> messageIds.size() < batchSize
+                            ? Mono.empty()
+                            : queryExpiredMessageIdBatch(beforeDate, messageIds.get(messageIds.size() - 1), batchSize))
+                    .filter(messageIds -> !messageIds.isEmpty());
+            if (batchIntervalMillis > 0) {
+                batches = batches.delayElements(Duration.ofMillis(batchIntervalMillis));
+            }
+            Flux<List<Long>> finalBatches = batches;
+            return mongoClient.count(Message.class, expiredMessagesFilter)
+                    .doOnNext(expiredMessagesBacklog::set)
+                    .thenMany(Flux.defer(() -> finalBatches))
+                    .flatMap(messageIds -> deleteExpiredMessageBatch(messageIds)
+                            .onErrorResume(t -> {
+                                log.error("Failed to delete a batch of {} expired messages", messageIds.size(), t);
+                                return Mono.just(0L);
+                            }), concurrency)
+                    .doOnNext(deletedCount -> {
+                        deletedExpiredMessagesCounter.increment(deletedCount);
+                        expiredMessagesBacklog.updateAndGet(backlog -> Math.max(0, backlog - deletedCount));
+                    })
+                    .then(Mono.defer(() -> mongoClient.count(Message.class, expiredMessagesFilter)))
+                    .doOnNext(expiredMessagesBacklog::set)
+                    .then()
+                    .doFinally(signal -> isDeletingExpiredMessages.set(false));
+        });
+    }
+
+    private Mono<List<Long>> queryExpiredMessageIdBatch(Date beforeDate, @Nullable Long lastMessageId, int batchSize) {
+        Filter filter = Filter.newBuilder(2)
+                .lt(Message.Fields.DELIVERY_DATE, beforeDate)
+                .afterIfNotNull(DaoConstant.ID_FIELD_NAME, lastMessageId, true);
+        QueryOptions options = QueryOptions.newBuilder(3)
+                .include(DaoConstant.ID_FIELD_NAME)
+                .paginateByKeyset(DaoConstant.ID_FIELD_NAME, true, batchSize);
+        return mongoClient.findMany(Message.class, filter, options)
+                .map(Message::getId)
+                .collect(CollectorUtil.toList(batchSize));
+    }
+
+    /**
+     * @return the number of deleted messages
+     */
+    private Mono<Long> deleteExpiredMessageBatch(List<Long> expiredMessageIds) {
+        Mono<List<Long>> messageIdsToDeleteMono = Mono.just(expiredMessageIds);
+        Function<List<Message>, Mono<List<Message>>> handlerChain = getExpiredMessageAutoDeletionHandlerChain();
+        if (handlerChain != null) {
+            Filter messagesFilter = Filter.newBuilder(1)
+                    .in(DaoConstant.ID_FIELD_NAME, expiredMessageIds);
+            messageIdsToDeleteMono = mongoClient.findMany(Message.class, messagesFilter)
+                    .collect(CollectorUtil.toList(expiredMessageIds.size()))
+                    .flatMap(handlerChain)
+                    .map(messages -> {
+                        List<Long> messageIds = new ArrayList<>(messages.size());
+                        for (Message message : messages) {
+                            messageIds.add(message.getId());
                         }
-                        return messageIdsToDeleteMono
-                                .flatMap(messageIds -> {
-                                    Filter messagesFilter = Filter.newBuilder(1)
-                                            .in(DaoConstant.ID_FIELD_NAME, messageIds);
-                                    return mongoClient.deleteMany(Message.class, messagesFilter).then();
-                                });
+                        return messageIds;
+                    });
+        }
+        return messageIdsToDeleteMono
+                .flatMap(messageIds -> {
+                    if (messageIds.isEmpty()) {
+                        return Mono.just(0L);
                     }
+                    Filter messagesFilter = Filter.newBuilder(1)
+                            .in(DaoConstant.ID_FIELD_NAME, messageIds);
+                    return mongoClient.deleteMany(Message.class, messagesFilter)
+                            .map(DeleteResult::getDeletedCount);
                 });
     }
 
+    /**
+     * @return null if no handler needs to be notified
+     */
+    @Nullable
+    private Function<List<Message>, Mono<List<Message>>> getExpiredMessageAutoDeletionHandlerChain() {
+        List<ExpiredMessageAutoDeletionNotificationHandler> handlerList =
+                turmsPluginManager.getExpiredMessageAutoDeletionNotificationHandlerList();
+        if (!pluginEnabled || handlerList.isEmpty()) {
+            return null;
+        }
+        return messages -> {
+            Mono<List<Message>> mono = Mono.just(messages);
+            for (ExpiredMessageAutoDeletionNotificationHandler handler : handlerList) {
+                mono = mono.flatMap(messagesToDelete -> messagesToDelete.isEmpty()
+                        ? Mono.just(messagesToDelete)
+                        : handler.invoke(() -> handler.getMessagesToDelete(messagesToDelete), Mono.just(messagesToDelete)));
+            }
+            return mono;
+        };
+    }
+
+    /**
+     * Archived messages are read-only, so they aren't deleted
+     */
     public Mono<DeleteResult> deleteMessages(
             @Nullable Set<Long> messageIds,
             @Nullable Boolean deleteLogically) {
@@ -443,6 +689,9 @@ public class MessageService {
         }
     }
 
+    /**
+     * Archived messages are read-only, so they aren't updated
+     */
     public Mono<UpdateResult> updateMessages(
             @NotEmpty Set<Long> messageIds,
             @Nullable Boolean isSystemMessage,
@@ -531,7 +780,7 @@ public class MessageService {
                 .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, deliveryDateRange)
                 .addBetweenIfNotNull(Message.Fields.DELETION_DATE, deletionDateRange)
                 .inIfNotNull(DaoConstant.ID_FIELD_NAME, messageIds);
-        return mongoClient.count(Message.class, filter);
+        return countHotAndArchivedMessages(filter, areGroupMessages, targetIds, deliveryDateRange);
     }
 
     public Mono<Long> countUsersWhoSentMessage(
@@ -542,6 +791,10 @@ public class MessageService {
                 .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, dateRange)
                 .eqIfNotNull(Message.Fields.IS_GROUP_MESSAGE, areGroupMessages)
                 .eqIfNotNull(Message.Fields.IS_SYSTEM_MESSAGE, areSystemMessages);
+        if (messageArchiveService.isArchiveQueried(dateRange)) {
+            return messageArchiveService.countDistinctIncludingArchive(filter, areGroupMessages, null, dateRange,
+                    Message.Fields.SENDER_ID);
+        }
         return mongoClient.countDistinct(
                 Message.class,
                 filter,
@@ -552,6 +805,10 @@ public class MessageService {
         Filter filter = Filter.newBuilder(3)
                 .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, dateRange)
                 .eq(Message.Fields.IS_GROUP_MESSAGE, true);
+        if (messageArchiveService.isArchiveQueried(dateRange)) {
+            return messageArchiveService.countDistinctIncludingArchive(filter, true, null, dateRange,
+                    Message.Fields.TARGET_ID);
+        }
         return mongoClient.countDistinct(
                 Message.class,
                 filter,
@@ -586,7 +843,21 @@ public class MessageService {
                 .addBetweenIfNotNull(Message.Fields.DELIVERY_DATE, dateRange)
                 .eqIfNotNull(Message.Fields.IS_GROUP_MESSAGE, areGroupMessages)
                 .eqIfNotNull(Message.Fields.IS_SYSTEM_MESSAGE, areSystemMessages);
-        return mongoClient.count(Message.class, filter);
+        return countHotAndArchivedMessages(filter, areGroupMessages, null, dateRange);
+    }
+
+    private Mono<Long> countHotAndArchivedMessages(
+            Filter filter,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Set<Long> targetIds,
+            @Nullable DateRange deliveryDateRange) {
+        Mono<Long> count = mongoClient.count(Message.class, filter);
+        if (!messageArchiveService.isArchiveQueried(deliveryDateRange)) {
+            return count;
+        }
+        return Mono.zip(count,
+                        messageArchiveService.countMessages(filter, areGroupMessages, targetIds, deliveryDateRange))
+                .map(counts -> counts.getT1() + counts.getT2());
     }
 
     public Mono<Long> countSentMessagesOnAverage(
@@ -641,6 +912,9 @@ public class MessageService {
 //                });
 //    }
 
+    /**
+     * Archived messages are read-only, so they are treated as non-existing messages
+     */
     public Mono<UpdateResult> authAndUpdateMessage(
             @NotNull Long requesterId,
             @NotNull Long messageId,
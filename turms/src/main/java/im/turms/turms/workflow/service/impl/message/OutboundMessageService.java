@@ -95,13 +95,27 @@ public class OutboundMessageService {
             @NotNull TurmsNotification notificationForLogging,
             @NotNull ByteBuf notificationData,
             @NotNull Set<Long> recipientIds) {
+        return forwardNotification(notificationForLogging, notificationData, recipientIds, true);
+    }
+
+    /**
+     * @param awaitAcknowledgement whether to wait for the gateways to tell if the recipients have received the notification.
+     *                             If false, the notification is sent to the gateways in the fire-and-forget mode
+     * @return true if recipientIds is empty, or at least one recipient has received the notification
+     * (or the notification has been sent to at least one gateway if awaitAcknowledgement is false)
+     */
+    public Mono<Boolean> forwardNotification(
+            @NotNull TurmsNotification notificationForLogging,
+            @NotNull ByteBuf notificationData,
+            @NotNull Set<Long> recipientIds,
+            boolean awaitAcknowledgement) {
         if (recipientIds.isEmpty()) {
             notificationData.release();
             return Mono.just(true);
         }
         Mono<Boolean> mono = recipientIds.size() == 1
-                ? forwardClientMessageByRecipientId(notificationData, recipientIds.iterator().next())
-                : forwardClientMessageByRecipientIds(notificationData, recipientIds);
+                ? forwardClientMessageByRecipientId(notificationData, recipientIds.iterator().next(), awaitAcknowledgement)
+                : forwardClientMessageByRecipientIds(notificationData, recipientIds, awaitAcknowledgement);
         return tryLogNotification(mono, notificationForLogging);
     }
 
@@ -113,6 +127,21 @@ public class OutboundMessageService {
             @NotNull ByteBuf notificationData,
             @NotNull Long recipientId,
             @NotNull DeviceType excludedDeviceType) {
+        return forwardNotification(notificationForLogging, notificationData, recipientId, excludedDeviceType, true);
+    }
+
+    /**
+     * @param awaitAcknowledgement whether to wait for the gateways to tell if the recipient has received the notification.
+     *                             If false, the notification is sent to the gateways in the fire-and-forget mode
+     * @return true if at least one device of the recipient has received the notification
+     * (or the notification has been sent to at least one gateway if awaitAcknowledgement is false)
+     */
+    public Mono<Boolean> forwardNotification(
+            @NotNull TurmsNotification notificationForLogging,
+            @NotNull ByteBuf notificationData,
+            @NotNull Long recipientId,
+            @NotNull DeviceType excludedDeviceType,
+            boolean awaitAcknowledgement) {
         return userStatusService.getDeviceAndNodeIdMapByUserId(recipientId)
                 .doOnError(t -> notificationData.release())
                 .flatMap(deviceTypeAndNodeIdMap -> {
@@ -127,7 +156,7 @@ public class OutboundMessageService {
                         notificationData.release();
                         return Mono.just(false);
                     }
-                    Mono<Boolean> mono = forwardClientMessageToNodes(notificationData, nodeIds, recipientId);
+                    Mono<Boolean> mono = forwardClientMessageToNodes(notificationData, nodeIds, recipientId, awaitAcknowledgement);
                     return tryLogNotification(mono, notificationForLogging);
                 })
                 .switchIfEmpty(Mono.fromCallable(() -> {
@@ -141,14 +170,15 @@ public class OutboundMessageService {
      */
     private Mono<Boolean> forwardClientMessageByRecipientIds(
             @NotNull ByteBuf messageData,
-            @NotNull Set<Long> recipientIds) {
+            @NotNull Set<Long> recipientIds,
+            boolean awaitAcknowledgement) {
         if (recipientIds.isEmpty()) {
             messageData.release();
             return Mono.just(true);
         }
         int recipientIdsSize = recipientIds.size();
         if (recipientIdsSize == 1) {
-            return forwardClientMessageByRecipientId(messageData, recipientIds.iterator().next());
+            return forwardClientMessageByRecipientId(messageData, recipientIds.iterator().next(), awaitAcknowledgement);
         }
         List<Mono<RecipientAndNodeIds>> monos = new ArrayList<>(recipientIdsSize);
         for (Long recipientId : recipientIds) {
@@ -177,7 +207,7 @@ public class OutboundMessageService {
                             userIdsByNodeId.put(nodeId, pair.getRecipientId());
                         }
                     }
-                    return forwardClientMessageToNodes(messageData, userIdsByNodeId);
+                    return forwardClientMessageToNodes(messageData, userIdsByNodeId, awaitAcknowledgement);
                 });
     }
 
@@ -186,7 +216,8 @@ public class OutboundMessageService {
      */
     private Mono<Boolean> forwardClientMessageByRecipientId(
             @NotNull ByteBuf notificationData,
-            @NotNull Long recipientId) {
+            @NotNull Long recipientId,
+            boolean awaitAcknowledgement) {
         return userStatusService.getDeviceAndNodeIdMapByUserId(recipientId)
                 .doOnError(t -> notificationData.release())
                 .flatMap(deviceTypeAndNodeIdMap -> {
@@ -195,7 +226,7 @@ public class OutboundMessageService {
                         notificationData.release();
                         return Mono.just(false);
                     }
-                    return forwardClientMessageToNodes(notificationData, nodeIds, recipientId);
+                    return forwardClientMessageToNodes(notificationData, nodeIds, recipientId, awaitAcknowledgement);
                 })
                 .switchIfEmpty(Mono.fromCallable(() -> {
                     notificationData.release();
@@ -205,7 +236,10 @@ public class OutboundMessageService {
 
     // Network transmission methods
 
-    private Mono<Boolean> forwardClientMessageToNodes(ByteBuf messageData, SetMultimap<String, Long> recipientIdsByNodeId) {
+    private Mono<Boolean> forwardClientMessageToNodes(
+            @NotNull ByteBuf messageData,
+            @NotNull SetMultimap<String, Long> recipientIdsByNodeId,
+            boolean awaitAcknowledgement) {
         Multiset<String> nodeIds = recipientIdsByNodeId.keys();
         int size = nodeIds.size();
         if (size == 0) {
@@ -214,13 +248,13 @@ public class OutboundMessageService {
         }
         if (size == 1) {
             String nodeId = nodeIds.iterator().next();
-            return forwardClientMessageToNode(messageData, nodeId, recipientIdsByNodeId.get(nodeId));
+            return forwardClientMessageToNode(messageData, nodeId, recipientIdsByNodeId.get(nodeId), awaitAcknowledgement);
         }
         List<Mono<Boolean>> monos = new ArrayList<>(size);
         messageData.retain(size);
         for (String nodeId : nodeIds) {
             Set<Long> recipientIds = recipientIdsByNodeId.get(nodeId);
-            monos.add(forwardClientMessageToNode(messageData, nodeId, recipientIds));
+            monos.add(forwardClientMessageToNode(messageData, nodeId, recipientIds, awaitAcknowledgement));
         }
         return ReactorUtil.atLeastOneTrue(monos)
                 .doFinally(signal -> messageData.release());
@@ -229,14 +263,15 @@ public class OutboundMessageService {
     private Mono<Boolean> forwardClientMessageToNodes(
             @NotNull ByteBuf messageData,
             @NotNull Set<String> nodeIds,
-            @NotNull Long recipientId) {
+            @NotNull Long recipientId,
+            boolean awaitAcknowledgement) {
         int size = nodeIds.size();
         if (size == 0) {
             messageData.release();
             return Mono.just(false);
         }
         if (size == 1) {
-            return forwardClientMessageToNode(messageData, nodeIds.iterator().next(), Set.of(recipientId));
+            return forwardClientMessageToNode(messageData, nodeIds.iterator().next(), Set.of(recipientId), awaitAcknowledgement);
         }
         SendNotificationRequest request = new SendNotificationRequest(
                 messageData,
@@ -244,7 +279,7 @@ public class OutboundMessageService {
         messageData.retain(size);
         List<Mono<Boolean>> monos = new ArrayList<>(size);
         for (String nodeId : nodeIds) {
-            monos.add(node.getRpcService().requestResponse(nodeId, request));
+            monos.add(sendNotificationRequest(nodeId, request, awaitAcknowledgement));
         }
         return ReactorUtil.atLeastOneTrue(monos)
                 .doFinally(signal -> messageData.release());
@@ -253,7 +288,8 @@ public class OutboundMessageService {
     private Mono<Boolean> forwardClientMessageToNode(
             @NotNull ByteBuf messageData,
             @NotNull String nodeId,
-            @NotNull Set<Long> recipients) {
+            @NotNull Set<Long> recipients,
+            boolean awaitAcknowledgement) {
         int size = recipients.size();
         if (size == 0) {
             messageData.release();
@@ -262,7 +298,13 @@ public class OutboundMessageService {
         SendNotificationRequest request = new SendNotificationRequest(
                 messageData,
                 recipients);
-        return node.getRpcService().requestResponse(nodeId, request);
+        return sendNotificationRequest(nodeId, request, awaitAcknowledgement);
+    }
+
+    private Mono<Boolean> sendNotificationRequest(String nodeId, SendNotificationRequest request, boolean awaitAcknowledgement) {
+        return awaitAcknowledgement
+                ? node.getRpcService().requestResponse(nodeId, request)
+                : node.getRpcService().requestFireAndForget(nodeId, request).thenReturn(true);
     }
 
     // Logging
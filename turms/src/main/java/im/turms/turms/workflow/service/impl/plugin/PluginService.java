@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.plugin;
+
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.plugin.bo.PluginInfo;
+import im.turms.server.common.plugin.constant.PluginAction;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.env.common.PluginProperties;
+import im.turms.server.common.rpc.request.ManagePluginRequest;
+import im.turms.turms.bo.PluginOperationResult;
+import im.turms.turms.plugin.manager.TurmsPluginManager;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manages the lifecycle of plugins across the cluster
+ *
+ * @author James Chen
+ */
+@Log4j2
+@Service
+public class PluginService {
+
+    private final Node node;
+    private final TurmsPluginManager turmsPluginManager;
+
+    public PluginService(Node node, TurmsPluginManager turmsPluginManager) {
+        this.node = node;
+        this.turmsPluginManager = turmsPluginManager;
+    }
+
+    public List<PluginInfo> queryLocalPlugins() {
+        return turmsPluginManager.getPlugins();
+    }
+
+    /**
+     * Applies the action to the local node first, and then to other members only if it succeeds locally,
+     * so that a bad plugin won't be rolled out to the whole cluster.
+     * The enabled state is also persisted in the shared properties
+     * so that the members that fail to apply the action or start later converge to it.
+     * Note that the plugin path should be accessible to all members.
+     */
+    public Mono<PluginOperationResult> handle(
+            @NotNull PluginAction action,
+            @Nullable String pluginId,
+            @Nullable String path) {
+        return turmsPluginManager.handle(action, pluginId, path)
+                .map(PluginOperationResult::new)
+                .defaultIfEmpty(new PluginOperationResult(null))
+                .flatMap(result -> persistDisabledState(action, pluginId).thenReturn(result))
+                .flatMap(result -> {
+                    result.addSucceededNodeId(node.getLocalMemberId());
+                    List<String> memberIds = node.getDiscoveryService().getOtherActiveConnectedMemberIds();
+                    if (memberIds.isEmpty()) {
+                        return Mono.just(result);
+                    }
+                    List<Mono<Void>> monos = new ArrayList<>(memberIds.size());
+                    for (String memberId : memberIds) {
+                        ManagePluginRequest request = new ManagePluginRequest(action, pluginId, path);
+                        Mono<Void> mono = node.getRpcService()
+                                .requestResponse(memberId, request)
+                                .doOnSuccess(ignored -> addSucceededNodeId(result, memberId))
+                                .onErrorResume(t -> {
+                                    log.error("Failed to apply the plugin action {} to the member {}", action, memberId, t);
+                                    addFailedNodeId(result, memberId, t.getMessage());
+                                    return Mono.empty();
+                                })
+                                .then();
+                        monos.add(mono);
+                    }
+                    return Mono.when(monos).thenReturn(result);
+                });
+    }
+
+    private Mono<Void> persistDisabledState(PluginAction action, String pluginId) {
+        if (action != PluginAction.ENABLE && action != PluginAction.DISABLE) {
+            return Mono.empty();
+        }
+        TurmsProperties properties = node.getSharedProperties();
+        PluginProperties pluginProperties = properties.getPlugin();
+        Set<String> disabledPluginIds = pluginProperties.getDisabledPluginIds();
+        boolean isDisabled = action == PluginAction.DISABLE;
+        if (disabledPluginIds.contains(pluginId) == isDisabled) {
+            return Mono.empty();
+        }
+        Set<String> newDisabledPluginIds = new HashSet<>(disabledPluginIds);
+        if (isDisabled) {
+            newDisabledPluginIds.add(pluginId);
+        } else {
+            newDisabledPluginIds.remove(pluginId);
+        }
+        TurmsProperties newProperties = properties.toBuilder()
+                .plugin(pluginProperties.toBuilder()
+                        .disabledPluginIds(newDisabledPluginIds)
+                        .build())
+                .build();
+        return node.getSharedPropertyService().updateSharedProperties(newProperties);
+    }
+
+    private void addSucceededNodeId(PluginOperationResult result, String nodeId) {
+        synchronized (result) {
+            result.addSucceededNodeId(nodeId);
+        }
+    }
+
+    private void addFailedNodeId(PluginOperationResult result, String nodeId, String reason) {
+        synchronized (result) {
+            result.addFailedNodeId(nodeId, reason);
+        }
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.statistics;
+
+import im.turms.server.common.bo.common.DateRange;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.server.common.property.env.service.env.StatisticsRollupProperties;
+import im.turms.turms.constant.DaoConstant;
+import im.turms.turms.constant.DivideBy;
+import im.turms.turms.constant.StatisticsMetric;
+import im.turms.turms.workflow.dao.domain.statistics.StatisticsRollup;
+import im.turms.turms.workflow.service.impl.group.GroupService;
+import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.user.UserService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Serves the statistics for admin dashboards from the pre-aggregated hourly/daily rollups
+ * so that only the partial buckets (e.g. the current open hour) need to count the raw collections.
+ *
+ * @author James Chen
+ */
+@Service
+@Log4j2
+@DependsOn(IMongoCollectionInitializer.BEAN_NAME)
+public class StatisticsRollupService {
+
+    private final TurmsMongoClient mongoClient;
+    private final Node node;
+    private final MessageService messageService;
+    private final UserService userService;
+    private final GroupService groupService;
+
+    /**
+     * Use the same time zone as {@link java.util.Calendar#getInstance()} used by
+     * {@link im.turms.turms.workflow.access.http.util.DateTimeUtil#divide}
+     * so that the divided ranges can match the rollup buckets
+     */
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    public StatisticsRollupService(
+            @Qualifier("adminMongoClient") TurmsMongoClient mongoClient,
+            Node node,
+            TurmsPropertiesManager turmsPropertiesManager,
+            TrivialTaskManager taskManager,
+            MessageService messageService,
+            UserService userService,
+            GroupService groupService) {
+        this.mongoClient = mongoClient;
+        this.node = node;
+        this.messageService = messageService;
+        this.userService = userService;
+        this.groupService = groupService;
+        taskManager.reschedule(
+                "statisticsRollup",
+                turmsPropertiesManager.getLocalProperties().getService().getAdminApi().getStatisticsRollup().getRollupCron(),
+                () -> {
+                    if (node.isLocalNodeLeader() && getProperties().isEnabled()) {
+                        rollup()
+                                .onErrorResume(t -> {
+                                    log.error("Failed to compute the statistics rollups", t);
+                                    return Mono.empty();
+                                })
+                                .subscribe();
+                    }
+                });
+    }
+
+    // Count
+
+    public Mono<Long> countSentMessages(
+            @Nullable DateRange dateRange,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages) {
+        if (areGroupMessages == null && areSystemMessages == null) {
+            return count(StatisticsMetric.SENT_MESSAGES, dateRange);
+        }
+        return messageService.countSentMessages(dateRange, areGroupMessages, areSystemMessages);
+    }
+
+    public Mono<Long> countUsersWhoSentMessage(
+            @Nullable DateRange dateRange,
+            @Nullable Boolean areGroupMessages,
+            @Nullable Boolean areSystemMessages) {
+        if (areGroupMessages == null && Boolean.FALSE.equals(areSystemMessages)) {
+            return count(StatisticsMetric.USERS_WHO_SENT_MESSAGES, dateRange);
+        }
+        return messageService.countUsersWhoSentMessage(dateRange, areGroupMessages, areSystemMessages);
+    }
+
+    public Mono<Long> countGroupsThatSentMessages(@Nullable DateRange dateRange) {
+        return count(StatisticsMetric.GROUPS_THAT_SENT_MESSAGES, dateRange);
+    }
+
+    public Mono<Long> countRegisteredUsers(@Nullable DateRange dateRange) {
+        return count(StatisticsMetric.REGISTERED_USERS, dateRange);
+    }
+
+    public Mono<Long> countDeletedUsers(@Nullable DateRange dateRange) {
+        return count(StatisticsMetric.DELETED_USERS, dateRange);
+    }
+
+    public Mono<Long> countCreatedGroups(@Nullable DateRange dateRange) {
+        return count(StatisticsMetric.CREATED_GROUPS, dateRange);
+    }
+
+    public Mono<Long> countDeletedGroups(@Nullable DateRange dateRange) {
+        return count(StatisticsMetric.DELETED_GROUPS, dateRange);
+    }
+
+    public Mono<Long> count(@NotNull StatisticsMetric metric, @Nullable DateRange dateRange) {
+        if (!getProperties().isEnabled()
+                || dateRange == null
+                || dateRange.getStart() == null
+                || dateRange.getEnd() == null) {
+            return countRaw(metric, dateRange);
+        }
+        Instant start = dateRange.getStart().toInstant();
+        Instant end = dateRange.getEnd().toInstant();
+        return metric.isAdditive()
+                ? countAdditiveMetric(metric, dateRange, start, end)
+                : countNonAdditiveMetric(metric, dateRange, start, end);
+    }
+
+    /**
+     * Sum the hourly rollups in the range and only count the raw collections
+     * for the partial hours at both ends, the open hour, and the hours whose rollups are missing
+     */
+    private Mono<Long> countAdditiveMetric(StatisticsMetric metric, DateRange dateRange, Instant start, Instant end) {
+        Instant rollupStart = ceil(start, DivideBy.HOUR);
+        Instant rollupEnd = floor(end, DivideBy.HOUR);
+        Instant openBucketStart = floor(Instant.now(), DivideBy.HOUR);
+        if (rollupEnd.isAfter(openBucketStart)) {
+            rollupEnd = openBucketStart;
+        }
+        if (!rollupStart.isBefore(rollupEnd)) {
+            return countRaw(metric, dateRange);
+        }
+        Instant finalRollupEnd = rollupEnd;
+        Filter filter = Filter.newBuilder(3)
+                .eq(StatisticsRollup.Fields.ID_METRIC, metric)
+                .eq(StatisticsRollup.Fields.ID_GRANULARITY, DivideBy.HOUR)
+                .addBetweenIfNotNull(StatisticsRollup.Fields.ID_START_DATE, toDateRange(rollupStart, rollupEnd));
+        QueryOptions options = QueryOptions.newBuilder(1)
+                .include(StatisticsRollup.Fields.COUNT);
+        return mongoClient.findMany(StatisticsRollup.class, filter, options)
+                .collectMap(rollup -> rollup.getKey().getStartDate().getTime(), StatisticsRollup::getCount)
+                .flatMap(rollupCounts -> {
+                    List<Mono<Long>> rawCounts = new ArrayList<>(4);
+                    if (start.isBefore(rollupStart)) {
+                        rawCounts.add(countRaw(metric, toDateRange(start, rollupStart)));
+                    }
+                    long rolledUpCount = 0;
+                    Instant missingStart = null;
+                    for (Instant bucket = rollupStart; bucket.isBefore(finalRollupEnd); bucket = next(bucket, DivideBy.HOUR)) {
+                        Long count = rollupCounts.get(bucket.toEpochMilli());
+                        if (count == null) {
+                            if (missingStart == null) {
+                                missingStart = bucket;
+                            }
+                        } else {
+                            rolledUpCount += count;
+                            if (missingStart != null) {
+                                rawCounts.add(countRaw(metric, toDateRange(missingStart, bucket)));
+                                missingStart = null;
+                            }
+                        }
+                    }
+                    if (missingStart != null) {
+                        rawCounts.add(countRaw(metric, toDateRange(missingStart, finalRollupEnd)));
+                    }
+                    if (finalRollupEnd.isBefore(end)) {
+                        rawCounts.add(countRaw(metric, toDateRange(finalRollupEnd, end)));
+                    }
+                    return Flux.merge(rawCounts)
+                            .reduce(rolledUpCount, Long::sum);
+                });
+    }
+
+    /**
+     * The values of non-additive metrics (e.g. distinct counts) cannot be summed,
+     * so the rollup can only be used when the range matches a closed hour or day exactly
+     */
+    private Mono<Long> countNonAdditiveMetric(StatisticsMetric metric, DateRange dateRange, Instant start, Instant end) {
+        if (end.isAfter(Instant.now())) {
+            return countRaw(metric, dateRange);
+        }
+        for (DivideBy granularity : List.of(DivideBy.HOUR, DivideBy.DAY)) {
+            if (floor(start, granularity).equals(start) && next(start, granularity).equals(end)) {
+                Filter filter = Filter.newBuilder(1)
+                        .eq(DaoConstant.ID_FIELD_NAME, new StatisticsRollup.Key(metric, granularity, dateRange.getStart()));
+                return mongoClient.findOne(StatisticsRollup.class, filter)
+                        .map(StatisticsRollup::getCount)
+                        .switchIfEmpty(Mono.defer(() -> countRaw(metric, dateRange)));
+            }
+        }
+        return countRaw(metric, dateRange);
+    }
+
+    private Mono<Long> countRaw(StatisticsMetric metric, @Nullable DateRange dateRange) {
+        return switch (metric) {
+            case SENT_MESSAGES -> messageService.countSentMessages(dateRange, null, null);
+            case USERS_WHO_SENT_MESSAGES -> messageService.countUsersWhoSentMessage(dateRange, null, false);
+            case GROUPS_THAT_SENT_MESSAGES -> messageService.countGroupsThatSentMessages(dateRange);
+            case REGISTERED_USERS -> userService.countRegisteredUsers(dateRange, true);
+            case DELETED_USERS -> userService.countDeletedUsers(dateRange);
+            case CREATED_GROUPS -> groupService.countCreatedGroups(dateRange);
+            case DELETED_GROUPS -> groupService.countDeletedGroups(dateRange);
+        };
+    }
+
+    // Rollup
+
+    /**
+     * Compute the rollups of the closed buckets within the backfill window that haven't been computed yet.
+     * The buckets are computed one by one to avoid putting burst load on the database.
+     */
+    public Mono<Void> rollup() {
+        Instant now = Instant.now();
+        Instant closedHoursEnd = floor(now, DivideBy.HOUR);
+        Instant closedDaysEnd = floor(now, DivideBy.DAY);
+        Instant from = closedHoursEnd.minus(getProperties().getMaxBackfillHours(), ChronoUnit.HOURS);
+        Mono<Void> rollup = Mono.empty();
+        for (StatisticsMetric metric : StatisticsMetric.values()) {
+            rollup = rollup.then(Mono.defer(() -> rollup(metric, DivideBy.HOUR, from, closedHoursEnd)));
+            if (!metric.isAdditive()) {
+                rollup = rollup.then(Mono.defer(() -> rollup(metric, DivideBy.DAY, ceil(from, DivideBy.DAY), closedDaysEnd)));
+            }
+        }
+        return rollup;
+    }
+
+    private Mono<Void> rollup(StatisticsMetric metric, DivideBy granularity, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return Mono.empty();
+        }
+        Filter filter = Filter.newBuilder(3)
+                .eq(StatisticsRollup.Fields.ID_METRIC, metric)
+                .eq(StatisticsRollup.Fields.ID_GRANULARITY, granularity)
+                .addBetweenIfNotNull(StatisticsRollup.Fields.ID_START_DATE, toDateRange(from, to));
+        QueryOptions options = QueryOptions.newBuilder(1)
+                .include(DaoConstant.ID_FIELD_NAME);
+        return mongoClient.findMany(StatisticsRollup.class, filter, options)
+                .map(rollup -> rollup.getKey().getStartDate().getTime())
+                .collect(Collectors.toSet())
+                .flatMapMany(existingBuckets -> Flux.fromIterable(getMissingBuckets(existingBuckets, granularity, from, to)))
+                .concatMap(bucketStart -> {
+                    Date startDate = Date.from(bucketStart);
+                    DateRange bucket = DateRange.of(startDate, Date.from(next(bucketStart, granularity)));
+                    return countRaw(metric, bucket)
+                            .flatMap(count -> upsertRollup(new StatisticsRollup.Key(metric, granularity, startDate), count));
+                })
+                .then()
+                .doOnSuccess(unused -> log.debug("Computed the {} rollups of the metric {}", granularity, metric));
+    }
+
+    private List<Instant> getMissingBuckets(Set<Long> existingBuckets, DivideBy granularity, Instant from, Instant to) {
+        List<Instant> missingBuckets = new ArrayList<>();
+        for (Instant bucket = from; bucket.isBefore(to); bucket = next(bucket, granularity)) {
+            if (!existingBuckets.contains(bucket.toEpochMilli())) {
+                missingBuckets.add(bucket);
+            }
+        }
+        return missingBuckets;
+    }
+
+    private Mono<Void> upsertRollup(StatisticsRollup.Key key, long count) {
+        Filter filter = Filter.newBuilder(1)
+                .eq(DaoConstant.ID_FIELD_NAME, key);
+        Update update = Update.newBuilder(2)
+                .set(StatisticsRollup.Fields.COUNT, count)
+                .set(StatisticsRollup.Fields.COMPUTATION_DATE, new Date());
+        return mongoClient.upsert(StatisticsRollup.class, filter, update);
+    }
+
+    // Bucket
+
+    private Instant floor(Instant instant, DivideBy granularity) {
+        ChronoUnit unit = granularity == DivideBy.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        return instant.atZone(zoneId).truncatedTo(unit).toInstant();
+    }
+
+    private Instant ceil(Instant instant, DivideBy granularity) {
+        Instant floor = floor(instant, granularity);
+        return floor.equals(instant) ? floor : next(floor, granularity);
+    }
+
+    private Instant next(Instant bucketStart, DivideBy granularity) {
+        return granularity == DivideBy.DAY
+                ? bucketStart.atZone(zoneId).plusDays(1).toInstant()
+                : bucketStart.plus(1, ChronoUnit.HOURS);
+    }
+
+    private DateRange toDateRange(Instant start, Instant end) {
+        return DateRange.of(Date.from(start), Date.from(end));
+    }
+
+    private StatisticsRollupProperties getProperties() {
+        return node.getSharedProperties().getService().getAdminApi().getStatisticsRollup();
+    }
+
+}
@@ -23,6 +23,7 @@ import im.turms.server.common.exception.TurmsBusinessException;
 import im.turms.server.common.util.AssertUtil;
 import im.turms.turms.plugin.extension.service.StorageServiceProvider;
 import im.turms.turms.plugin.manager.TurmsPluginManager;
+import im.turms.turms.workflow.service.impl.storage.local.LocalStorageService;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -30,15 +31,19 @@ import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 /**
+ * Delegates requests to the storage plugin if provided, or to the local storage if enabled
+ *
  * @author James Chen
  */
 @Service
 public class StorageService {
 
-    private final StorageServiceProvider provider;
+    private final TurmsPluginManager turmsPluginManager;
+    private final LocalStorageService localStorageService;
 
-    public StorageService(TurmsPluginManager turmsPluginManager) {
-        this.provider = turmsPluginManager.getStorageServiceProvider();
+    public StorageService(TurmsPluginManager turmsPluginManager, LocalStorageService localStorageService) {
+        this.turmsPluginManager = turmsPluginManager;
+        this.localStorageService = localStorageService;
     }
 
     public Mono<String> queryPresignedGetUrl(@NotNull Long requesterId,
@@ -51,12 +56,18 @@ public class StorageService {
         } catch (TurmsBusinessException e) {
             return Mono.error(e);
         }
+        // Get the provider for every request because it may be replaced at runtime
+        StorageServiceProvider provider = turmsPluginManager.getStorageServiceProvider();
         if (provider != null) {
             if (provider.isServing()) {
-                return provider.queryPresignedGetUrl(requesterId, contentType, keyStr, keyNum);
+                // Don't skip the provider because there is no other provider to handle the request
+                return provider.invoke(() -> provider.queryPresignedGetUrl(requesterId, contentType, keyStr, keyNum),
+                        Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE)));
             } else {
                 return Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE));
             }
+        } else if (localStorageService.isEnabled()) {
+            return localStorageService.queryPresignedGetUrl(requesterId, contentType, keyStr, keyNum);
         } else {
             return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_NOT_IMPLEMENTED));
         }
@@ -73,12 +84,16 @@ public class StorageService {
         } catch (TurmsBusinessException e) {
             return Mono.error(e);
         }
+        StorageServiceProvider provider = turmsPluginManager.getStorageServiceProvider();
         if (provider != null) {
             if (provider.isServing()) {
-                return provider.queryPresignedPutUrl(requesterId, contentType, keyStr, keyNum, contentLength);
+                return provider.invoke(() -> provider.queryPresignedPutUrl(requesterId, contentType, keyStr, keyNum, contentLength),
+                        Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE)));
             } else {
                 return Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE));
             }
+        } else if (localStorageService.isEnabled()) {
+            return localStorageService.queryPresignedPutUrl(requesterId, contentType, keyStr, keyNum, contentLength);
         } else {
             return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_NOT_IMPLEMENTED));
         }
@@ -94,12 +109,16 @@ public class StorageService {
         } catch (TurmsBusinessException e) {
             return Mono.error(e);
         }
+        StorageServiceProvider provider = turmsPluginManager.getStorageServiceProvider();
         if (provider != null) {
             if (provider.isServing()) {
-                return provider.deleteResource(requesterId, contentType, keyStr, keyNum);
+                return provider.invoke(() -> provider.deleteResource(requesterId, contentType, keyStr, keyNum),
+                        Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE)));
             } else {
                 return Mono.error(TurmsBusinessException.get(TurmsStatusCode.SERVER_UNAVAILABLE));
             }
+        } else if (localStorageService.isEnabled()) {
+            return localStorageService.deleteResource(requesterId, contentType, keyStr, keyNum);
         } else {
             return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_NOT_IMPLEMENTED));
         }
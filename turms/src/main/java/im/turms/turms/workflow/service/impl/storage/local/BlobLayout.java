@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.storage.local;
+
+import im.turms.server.common.property.constant.BlobLayoutType;
+
+import java.nio.file.Path;
+
+/**
+ * Decides where the file of a blob is stored in the blob directory.
+ * Provide a bean of this type to replace the layout specified by
+ * {@link im.turms.server.common.property.env.service.business.LocalStorageProperties#getLayout()}.
+ * <p>
+ * Note that the name of the file must be the hash of the blob
+ * because the orphaned blobs are identified by their file names.
+ *
+ * @author James Chen
+ */
+public interface BlobLayout {
+
+    /**
+     * @param blobDir the root directory of blobs
+     * @param hash    the hex-encoded SHA-256 hash of the blob
+     */
+    Path resolve(Path blobDir, String hash);
+
+    static BlobLayout of(BlobLayoutType type) {
+        return switch (type) {
+            case FLAT -> Path::resolve;
+            case HASH_PREFIX -> (blobDir, hash) -> blobDir
+                    .resolve(hash.substring(0, 2))
+                    .resolve(hash.substring(2, 4))
+                    .resolve(hash);
+        };
+    }
+
+}
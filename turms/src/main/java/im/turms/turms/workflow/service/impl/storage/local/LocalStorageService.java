@@ -0,0 +1,818 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.storage.local;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Striped;
+import com.mongodb.client.model.Accumulators;
+import im.turms.common.constant.ContentType;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.IMongoCollectionInitializer;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.exception.DuplicateKeyException;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.server.common.property.env.service.business.LocalStorageProperties;
+import im.turms.server.common.property.env.service.business.StorageProperties;
+import im.turms.turms.constant.DaoConstant;
+import im.turms.turms.workflow.dao.domain.storage.StorageObject;
+import im.turms.turms.workflow.dao.domain.storage.StorageUsage;
+import im.turms.turms.workflow.service.impl.group.GroupMemberService;
+import im.turms.turms.workflow.service.impl.message.MessageService;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.time.DateUtils;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.util.UriUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores files in the local file system and serves them over the HTTP server of turms
+ * so that small deployments don't need an external object storage service.
+ * <p>
+ * The content of a file is stored as a blob named after its SHA-256 hash,
+ * and the metadata of the file (e.g. the key, the owner, and the hash) is stored in the storage object collection,
+ * so identical files uploaded by different users or with different keys are stored only once.
+ * Uploading or deleting a file only changes its metadata, and the blobs no longer referenced
+ * are deleted by the leader when the cleanup cron is triggered.
+ * <p>
+ * The quota of a user is reserved in {@link StorageUsage} with a guarded $inc before uploading
+ * and settled after the object is saved, so concurrent uploads cannot exceed the quota.
+ *
+ * @author James Chen
+ */
+@Log4j2
+@Service
+@DependsOn(IMongoCollectionInitializer.BEAN_NAME)
+public class LocalStorageService {
+
+    private static final String BLOB_DIR = "blobs";
+    private static final String TEMP_DIR = "tmp";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String FIELD_TOTAL_SIZE = "total";
+    private static final int SECRET_LENGTH = 32;
+    private static final int CLEANUP_BATCH_SIZE = 500;
+    private static final int BLOB_LOCK_STRIPES = 64;
+
+    private final Node node;
+    private final TurmsMongoClient mongoClient;
+    private final MessageService messageService;
+    private final GroupMemberService groupMemberService;
+    private final StorageProperties storageProperties;
+    private final LocalStorageProperties localStorageProperties;
+    private final Path blobDir;
+    private final Path tempDir;
+    private final BlobLayout blobLayout;
+    private final UrlSigner urlSigner;
+    private final String baseUrl;
+
+    private final AtomicBoolean isCleaningBlobs = new AtomicBoolean();
+    /**
+     * Guards the check-then-act on a blob between reusing it for an upload and deleting it as an orphan.
+     * Because the directory may be shared by multiple servers, the modification time of the blob
+     * is also checked again before deleting it
+     */
+    private final Striped<Lock> blobLocks = Striped.lock(BLOB_LOCK_STRIPES);
+
+    /**
+     * @param blobLayoutProvider provides the custom layout of blobs if any
+     */
+    public LocalStorageService(
+            Node node,
+            TurmsPropertiesManager turmsPropertiesManager,
+            TrivialTaskManager taskManager,
+            @Qualifier("messageMongoClient") TurmsMongoClient mongoClient,
+            MessageService messageService,
+            GroupMemberService groupMemberService,
+            ObjectProvider<BlobLayout> blobLayoutProvider) {
+        this.node = node;
+        this.mongoClient = mongoClient;
+        this.messageService = messageService;
+        this.groupMemberService = groupMemberService;
+        storageProperties = turmsPropertiesManager.getLocalProperties().getService().getStorage();
+        localStorageProperties = storageProperties.getLocal();
+        Path dir = Path.of(localStorageProperties.getDir()).toAbsolutePath().normalize();
+        blobDir = dir.resolve(BLOB_DIR);
+        tempDir = dir.resolve(TEMP_DIR);
+        blobLayout = blobLayoutProvider.getIfAvailable(() -> BlobLayout.of(localStorageProperties.getLayout()));
+        urlSigner = new UrlSigner(getSecret(localStorageProperties));
+        baseUrl = trimTrailingSlash(localStorageProperties.getBaseUrl());
+        if (!localStorageProperties.isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(blobDir);
+            Files.createDirectories(tempDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create the directories for the local storage in: " + dir, e);
+        }
+        log.info("The local storage is enabled and stores files in: {}", dir);
+        taskManager.reschedule(
+                "storageBlobsCleanup",
+                localStorageProperties.getBlobsCleanupCron(),
+                () -> {
+                    if (node.isLocalNodeLeader()) {
+                        cleanBlobs().subscribe();
+                    }
+                });
+    }
+
+    public boolean isEnabled() {
+        return localStorageProperties.isEnabled();
+    }
+
+    // Presigned URLs
+
+    public Mono<String> queryPresignedGetUrl(@NotNull Long requesterId,
+                                             @NotNull ContentType contentType,
+                                             @Nullable String keyStr,
+                                             @Nullable Long keyNum) {
+        if (contentType == ContentType.PROFILE || contentType == ContentType.GROUP_PROFILE) {
+            // Profiles are public and can be downloaded by "{baseUrl}/storage/{bucket}/{id}" without signatures
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.REDUNDANT_REQUEST_FOR_PRESIGNED_PROFILE_URL));
+        }
+        String key;
+        try {
+            key = getKey(requesterId, contentType, keyStr, keyNum);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        return hasPermissionToGet(requesterId, contentType, keyNum)
+                .flatMap(hasPermission -> {
+                    if (!hasPermission) {
+                        return Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED));
+                    }
+                    long expireAt = System.currentTimeMillis() + storageProperties.getSignatureDurationForGet().toMillis();
+                    return Mono.just(getSignedUrl(HttpMethod.GET, getBucketName(contentType), key, requesterId, expireAt, 0));
+                });
+    }
+
+    public Mono<String> queryPresignedPutUrl(@NotNull Long requesterId,
+                                             @NotNull ContentType contentType,
+                                             @Nullable String keyStr,
+                                             @Nullable Long keyNum,
+                                             long contentLength) {
+        String key;
+        try {
+            if (contentLength < 0) {
+                throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The content length must not be negative");
+            }
+            int sizeLimit = getSizeLimit(contentType);
+            if (sizeLimit != 0 && contentLength > sizeLimit) {
+                throw TurmsBusinessException.get(TurmsStatusCode.FILE_TOO_LARGE);
+            }
+            key = getKey(requesterId, contentType, keyStr, keyNum);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        String bucket = getBucketName(contentType);
+        return hasPermissionToPut(requesterId, contentType, keyNum)
+                .flatMap(hasPermission -> {
+                    if (!hasPermission) {
+                        return Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED));
+                    }
+                    // Check the quota in advance so that the client doesn't upload a file that will be rejected
+                    return checkQuota(requesterId, StorageObject.getId(bucket, key), contentLength)
+                            .then(Mono.fromCallable(() -> {
+                                long expireAt = System.currentTimeMillis()
+                                        + storageProperties.getSignatureDurationForPut().toMillis();
+                                return getSignedUrl(HttpMethod.PUT, bucket, key, requesterId, expireAt, contentLength);
+                            }));
+                });
+    }
+
+    public Mono<Void> deleteResource(@NotNull Long requesterId,
+                                     @NotNull ContentType contentType,
+                                     @Nullable String keyStr,
+                                     @Nullable Long keyNum) {
+        if (contentType == ContentType.ATTACHMENT) {
+            return Mono.error(TurmsBusinessException
+                    .get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The attachments cannot be deleted"));
+        }
+        String key;
+        try {
+            key = getKey(requesterId, contentType, keyStr, keyNum);
+        } catch (TurmsBusinessException e) {
+            return Mono.error(e);
+        }
+        return hasPermissionToDelete(requesterId, contentType, keyNum)
+                .flatMap(hasPermission -> {
+                    if (!hasPermission) {
+                        return Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED));
+                    }
+                    // The blob will be deleted when cleaning blobs if it isn't referenced by other objects
+                    return mongoClient.findById(StorageObject.class, StorageObject.getId(getBucketName(contentType), key))
+                            .flatMap(this::deleteObject);
+                });
+    }
+
+    // HTTP
+
+    /**
+     * @param requesterId only required for attachments
+     * @param expireAt    only required for attachments
+     * @param signature   only required for attachments
+     * @return empty if the object doesn't exist
+     */
+    public Mono<StoredBlob> queryBlob(@NotNull String bucket,
+                                      @NotNull String key,
+                                      @Nullable Long requesterId,
+                                      @Nullable Long expireAt,
+                                      @Nullable String signature) {
+        ContentType contentType = parseBucketName(bucket);
+        if (contentType == null) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "Unknown bucket: " + bucket));
+        }
+        if (contentType == ContentType.ATTACHMENT
+                && (requesterId == null || expireAt == null || signature == null
+                || !urlSigner.verify(HttpMethod.GET.name(), bucket, key, requesterId, expireAt, 0,
+                signature, System.currentTimeMillis()))) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED));
+        }
+        return mongoClient.findById(StorageObject.class, StorageObject.getId(bucket, key))
+                .map(object -> new StoredBlob(object, blobLayout.resolve(blobDir, object.getHash())));
+    }
+
+    /**
+     * Streams the content to a temporary file while computing its hash,
+     * and then moves the file to the path of the blob unless the blob has existed
+     *
+     * @param contentType the content type of the request, or null if not specified
+     */
+    public Mono<Void> upload(@NotNull String bucket,
+                             @NotNull String key,
+                             long requesterId,
+                             long expireAt,
+                             long contentLength,
+                             @NotNull String signature,
+                             @Nullable MimeType contentType,
+                             @NotNull Flux<DataBuffer> content) {
+        ContentType type = parseBucketName(bucket);
+        if (type == null) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "Unknown bucket: " + bucket));
+        }
+        if (!urlSigner.verify(HttpMethod.PUT.name(), bucket, key, requesterId, expireAt, contentLength,
+                signature, System.currentTimeMillis())) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.UNAUTHORIZED));
+        }
+        MimeType allowedContentType = MimeTypeUtils.parseMimeType(getContentType(type));
+        if (!allowedContentType.equals(MimeTypeUtils.ALL)
+                && (contentType == null || !allowedContentType.isCompatibleWith(contentType))) {
+            return Mono.error(TurmsBusinessException
+                    .get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The content type must be " + allowedContentType));
+        }
+        String id = StorageObject.getId(bucket, key);
+        return reserveQuota(requesterId, id, contentLength)
+                .then(Mono.defer(() -> writeBlob(content, contentLength)
+                        .flatMap(blob -> {
+                            StorageObject object = new StorageObject(id, bucket, blob.hash(), blob.size(),
+                                    contentType == null ? null : contentType.toString(), requesterId, new Date());
+                            return saveObject(object, contentLength);
+                        })
+                        .onErrorResume(t -> incUsage(requesterId, -contentLength)
+                                .onErrorResume(e -> {
+                                    log.error("Failed to release the reserved quota of the user {}", requesterId, e);
+                                    return Mono.empty();
+                                })
+                                .then(Mono.error(t)))));
+    }
+
+    /**
+     * Settles the reserved size with the actual size of the object and the size of the replaced object
+     */
+    private Mono<Void> saveObject(StorageObject object, long reservedSize) {
+        return replaceOrInsertObject(object)
+                .flatMap(replacedObject -> {
+                    long delta = object.getSize() - reservedSize;
+                    if (replacedObject.isEmpty()) {
+                        return incUsage(object.getOwnerId(), delta);
+                    }
+                    StorageObject oldObject = replacedObject.get();
+                    if (oldObject.getOwnerId().equals(object.getOwnerId())) {
+                        return incUsage(object.getOwnerId(), delta - oldObject.getSize());
+                    }
+                    return incUsage(object.getOwnerId(), delta)
+                            .then(incUsage(oldObject.getOwnerId(), -oldObject.getSize()));
+                });
+    }
+
+    /**
+     * Replaces the object only if it has not been changed since it was read,
+     * so that the size of the replaced object is released from the quota of its owner exactly once
+     *
+     * @return the replaced object if any
+     */
+    private Mono<Optional<StorageObject>> replaceOrInsertObject(StorageObject object) {
+        return mongoClient.findById(StorageObject.class, object.getId())
+                .flatMap(oldObject -> {
+                    Update update = Update.newBuilder(6)
+                            .set(StorageObject.Fields.BUCKET, object.getBucket())
+                            .set(StorageObject.Fields.HASH, object.getHash())
+                            .set(StorageObject.Fields.SIZE, object.getSize())
+                            .set(StorageObject.Fields.OWNER_ID, object.getOwnerId())
+                            .set(StorageObject.Fields.CREATION_DATE, object.getCreationDate());
+                    if (object.getContentType() == null) {
+                        update.unset(StorageObject.Fields.CONTENT_TYPE);
+                    } else {
+                        update.set(StorageObject.Fields.CONTENT_TYPE, object.getContentType());
+                    }
+                    return mongoClient.updateOne(StorageObject.class, getExactObjectFilter(oldObject), update)
+                            .flatMap(result -> result.getMatchedCount() > 0
+                                    ? Mono.just(Optional.of(oldObject))
+                                    : Mono.empty());
+                })
+                .switchIfEmpty(Mono.defer(() -> mongoClient.insert(object)
+                        .thenReturn(Optional.<StorageObject>empty())
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())))
+                // The object has been replaced or inserted concurrently
+                .switchIfEmpty(Mono.defer(() -> replaceOrInsertObject(object)));
+    }
+
+    private Mono<Void> deleteObject(StorageObject object) {
+        return mongoClient.deleteMany(StorageObject.class, getExactObjectFilter(object))
+                .flatMap(result -> result.getDeletedCount() > 0
+                        ? incUsage(object.getOwnerId(), -object.getSize())
+                        : Mono.empty());
+    }
+
+    private Filter getExactObjectFilter(StorageObject object) {
+        return Filter.newBuilder(4)
+                .eq(DaoConstant.ID_FIELD_NAME, object.getId())
+                .eq(StorageObject.Fields.HASH, object.getHash())
+                .eq(StorageObject.Fields.OWNER_ID, object.getOwnerId())
+                .eq(StorageObject.Fields.CREATION_DATE, object.getCreationDate());
+    }
+
+    private Mono<WrittenBlob> writeBlob(Flux<DataBuffer> content, long maxSize) {
+        MessageDigest digest = newDigest();
+        AtomicLong size = new AtomicLong();
+        Flux<DataBuffer> source = content.handle((buffer, sink) -> {
+            if (size.addAndGet(buffer.readableByteCount()) > maxSize) {
+                DataBufferUtils.release(buffer);
+                sink.error(TurmsBusinessException.get(TurmsStatusCode.FILE_TOO_LARGE));
+                return;
+            }
+            // asByteBuffer() shares the content but has an independent position
+            digest.update(buffer.asByteBuffer());
+            sink.next(buffer);
+        });
+        Path tempFile = tempDir.resolve(UUID.randomUUID().toString());
+        return DataBufferUtils.write(source, tempFile)
+                .then(Mono.fromCallable(() -> {
+                    String hash = BaseEncoding.base16().lowerCase().encode(digest.digest());
+                    moveToBlob(tempFile, hash);
+                    return new WrittenBlob(hash, size.get());
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .onErrorResume(t -> Mono.fromCallable(() -> Files.deleteIfExists(tempFile))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> Mono.empty())
+                        .then(Mono.error(t)));
+    }
+
+    private void moveToBlob(Path tempFile, String hash) throws IOException {
+        Path blobPath = blobLayout.resolve(blobDir, hash);
+        Lock lock = blobLocks.get(hash);
+        lock.lock();
+        try {
+            if (Files.exists(blobPath)) {
+                // Refresh the modification time so that the blob won't be deleted as an orphan
+                // even if it was unreferenced just before the object is saved
+                Files.setLastModifiedTime(blobPath, FileTime.fromMillis(System.currentTimeMillis()));
+                Files.deleteIfExists(tempFile);
+                return;
+            }
+            Files.createDirectories(blobPath.getParent());
+            try {
+                Files.move(tempFile, blobPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // The same content has been uploaded concurrently
+                Files.setLastModifiedTime(blobPath, FileTime.fromMillis(System.currentTimeMillis()));
+                Files.deleteIfExists(tempFile);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Quota
+
+    /**
+     * Fails fast before the client uploads a file that will be rejected.
+     * The quota is charged by the size of objects instead of blobs,
+     * so a user cannot bypass the quota by uploading the files uploaded by others
+     */
+    private Mono<Void> checkQuota(Long ownerId, String objectId, long contentLength) {
+        long quota = localStorageProperties.getUserQuotaBytes();
+        if (quota <= 0) {
+            return Mono.empty();
+        }
+        if (contentLength > quota) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_QUOTA_EXCEEDED));
+        }
+        return Mono.zip(queryUsage(ownerId), queryOverwrittenSize(ownerId, objectId))
+                .flatMap(sizes -> sizes.getT1() - sizes.getT2() + contentLength > quota
+                        ? Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_QUOTA_EXCEEDED))
+                        : Mono.empty());
+    }
+
+    /**
+     * Reserves the content length with a guarded $inc so that concurrent uploads cannot exceed the quota.
+     * The usage is maintained even if the quota is disabled so that it is accurate once the quota is enabled.
+     */
+    private Mono<Void> reserveQuota(Long ownerId, String objectId, long contentLength) {
+        long quota = localStorageProperties.getUserQuotaBytes();
+        if (quota > 0 && contentLength > quota) {
+            return Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_QUOTA_EXCEEDED));
+        }
+        Mono<Long> overwrittenSize = quota > 0
+                ? queryOverwrittenSize(ownerId, objectId)
+                : Mono.just(0L);
+        return initUsageIfAbsent(ownerId)
+                .then(overwrittenSize)
+                .flatMap(size -> {
+                    Filter filter = Filter.newBuilder(2)
+                            .eq(DaoConstant.ID_FIELD_NAME, ownerId);
+                    if (quota > 0) {
+                        // The object to overwrite is still charged until the new one is saved
+                        filter.lte(StorageUsage.Fields.SIZE, quota - contentLength + size);
+                    }
+                    Update update = Update.newBuilder(1)
+                            .inc(StorageUsage.Fields.SIZE, contentLength);
+                    return mongoClient.updateOne(StorageUsage.class, filter, update);
+                })
+                .flatMap(result -> result.getMatchedCount() > 0
+                        ? Mono.empty()
+                        : Mono.error(TurmsBusinessException.get(TurmsStatusCode.STORAGE_QUOTA_EXCEEDED)));
+    }
+
+    private Mono<Long> queryUsage(Long ownerId) {
+        return mongoClient.findById(StorageUsage.class, ownerId)
+                .map(StorageUsage::getSize)
+                .switchIfEmpty(Mono.defer(() -> sumObjectSizes(ownerId)));
+    }
+
+    private Mono<Long> queryOverwrittenSize(Long ownerId, String objectId) {
+        return mongoClient.findById(StorageObject.class, objectId)
+                .map(object -> ownerId.equals(object.getOwnerId()) ? object.getSize() : 0L)
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Initializes the usage with the objects uploaded before the usage is tracked
+     */
+    private Mono<Void> initUsageIfAbsent(Long ownerId) {
+        Filter filter = Filter.newBuilder(1)
+                .eq(DaoConstant.ID_FIELD_NAME, ownerId);
+        return mongoClient.exists(StorageUsage.class, filter)
+                .flatMap(exists -> exists
+                        ? Mono.empty()
+                        : sumObjectSizes(ownerId)
+                        .flatMap(size -> mongoClient.insert(new StorageUsage(ownerId, size)))
+                        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty()));
+    }
+
+    private Mono<Long> sumObjectSizes(Long ownerId) {
+        Filter filter = Filter.newBuilder(1)
+                .eq(StorageObject.Fields.OWNER_ID, ownerId);
+        Aggregation aggregation = Aggregation.newBuilder(2)
+                .match(filter)
+                .group(null, Accumulators.sum(FIELD_TOTAL_SIZE, "$" + StorageObject.Fields.SIZE));
+        return mongoClient.aggregate(StorageObject.class, aggregation, Document.class)
+                .next()
+                .map(document -> ((Number) document.get(FIELD_TOTAL_SIZE)).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    private Mono<Void> incUsage(Long ownerId, long delta) {
+        if (delta == 0) {
+            return Mono.empty();
+        }
+        Filter filter = Filter.newBuilder(1)
+                .eq(DaoConstant.ID_FIELD_NAME, ownerId);
+        Update update = Update.newBuilder(1)
+                .inc(StorageUsage.Fields.SIZE, delta);
+        return mongoClient.updateOne(StorageUsage.class, filter, update).then();
+    }
+
+    // Cleanup
+
+    /**
+     * Deletes the expired objects, and then deletes the blobs and the temporary files
+     * that have not been referenced or modified for the grace period
+     */
+    public Mono<Long> cleanBlobs() {
+        if (!isCleaningBlobs.compareAndSet(false, true)) {
+            return Mono.just(0L);
+        }
+        long graceDeadline = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(localStorageProperties.getOrphanedBlobGracePeriodMinutes());
+        return deleteExpiredObjects()
+                .then(Mono.defer(() -> deleteOrphanedBlobs(graceDeadline)))
+                .doOnSuccess(count -> {
+                    if (count > 0) {
+                        log.info("Deleted {} orphaned blobs", count);
+                    }
+                })
+                .doOnError(t -> log.error("Failed to clean blobs", t))
+                .doFinally(signal -> isCleaningBlobs.set(false));
+    }
+
+    /**
+     * Deletes the expired objects one by one so that their sizes are released from the quota of their owners
+     */
+    private Mono<Void> deleteExpiredObjects() {
+        List<Mono<?>> deletions = new ArrayList<>(3);
+        Date now = new Date();
+        for (ContentType type : List.of(ContentType.PROFILE, ContentType.GROUP_PROFILE, ContentType.ATTACHMENT)) {
+            int days = switch (type) {
+                case PROFILE -> storageProperties.getProfileExpiration();
+                case GROUP_PROFILE -> storageProperties.getGroupProfileExpiration();
+                default -> storageProperties.getAttachmentExpiration();
+            };
+            if (days > 0) {
+                Filter filter = Filter.newBuilder(2)
+                        .eq(StorageObject.Fields.BUCKET, getBucketName(type))
+                        .lt(StorageObject.Fields.CREATION_DATE, DateUtils.addDays(now, -days));
+                deletions.add(mongoClient.findMany(StorageObject.class, filter)
+                        .concatMap(this::deleteObject));
+            }
+        }
+        return Mono.when(deletions);
+    }
+
+    private Mono<Long> deleteOrphanedBlobs(long graceDeadline) {
+        Mono<Long> deleteTempFiles = listFilesModifiedBefore(tempDir, graceDeadline)
+                .buffer(CLEANUP_BATCH_SIZE)
+                .concatMap(this::deleteFiles)
+                .reduce(0L, Long::sum);
+        Mono<Long> deleteBlobs = listFilesModifiedBefore(blobDir, graceDeadline)
+                .buffer(CLEANUP_BATCH_SIZE)
+                .concatMap(blobs -> {
+                    List<String> hashes = blobs.stream()
+                            .map(path -> path.getFileName().toString())
+                            .toList();
+                    Filter filter = Filter.newBuilder(1)
+                            .in(StorageObject.Fields.HASH, hashes);
+                    QueryOptions options = QueryOptions.newBuilder(1)
+                            .include(StorageObject.Fields.HASH);
+                    return mongoClient.findMany(StorageObject.class, filter, options)
+                            .map(StorageObject::getHash)
+                            .collect(Collectors.toSet())
+                            .flatMap(referencedHashes -> deleteBlobsModifiedBefore(blobs.stream()
+                                    .filter(path -> !referencedHashes.contains(path.getFileName().toString()))
+                                    .toList(), graceDeadline));
+                })
+                .reduce(0L, Long::sum);
+        return deleteTempFiles.then(deleteBlobs);
+    }
+
+    private Flux<Path> listFilesModifiedBefore(Path dir, long time) {
+        return Flux.using(() -> Files.walk(dir), Flux::fromStream, Stream::close)
+                .filter(path -> {
+                    try {
+                        return Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() < time;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Long> deleteBlobsModifiedBefore(List<Path> blobs, long time) {
+        return Mono.fromCallable(() -> {
+            long count = 0;
+            for (Path blob : blobs) {
+                Lock lock = blobLocks.get(blob.getFileName().toString());
+                lock.lock();
+                try {
+                    // Check again because the blob may have been reused by an upload after it was listed
+                    if (Files.getLastModifiedTime(blob).toMillis() < time && Files.deleteIfExists(blob)) {
+                        count++;
+                    }
+                } catch (NoSuchFileException ignored) {
+                    // Deleted by others
+                } catch (IOException e) {
+                    log.warn("Failed to delete the blob: {}", blob, e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return count;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Long> deleteFiles(List<Path> files) {
+        return Mono.fromCallable(() -> {
+            long count = 0;
+            for (Path file : files) {
+                try {
+                    if (Files.deleteIfExists(file)) {
+                        count++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to delete the file: {}", file, e);
+                }
+            }
+            return count;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Permission
+
+    private Mono<Boolean> hasPermissionToGet(@NotNull Long requesterId, @NotNull ContentType contentType, @Nullable Long keyNum) {
+        return switch (contentType) {
+            case PROFILE, GROUP_PROFILE -> Mono.just(true);
+            case ATTACHMENT -> messageService.isMessageRecipientOrSender(keyNum, requesterId);
+            default -> Mono.error(new IllegalStateException("Unexpected value: " + contentType));
+        };
+    }
+
+    private Mono<Boolean> hasPermissionToPut(@NotNull Long requesterId, @NotNull ContentType contentType, @Nullable Long keyNum) {
+        return switch (contentType) {
+            case PROFILE -> Mono.just(true);
+            case GROUP_PROFILE -> groupMemberService.isOwnerOrManager(requesterId, keyNum);
+            case ATTACHMENT -> messageService.isMessageRecipientOrSender(keyNum, requesterId);
+            default -> Mono.error(new IllegalStateException("Unexpected value: " + contentType));
+        };
+    }
+
+    private Mono<Boolean> hasPermissionToDelete(@NotNull Long requesterId, @NotNull ContentType contentType, @Nullable Long keyNum) {
+        return switch (contentType) {
+            case PROFILE -> Mono.just(true);
+            case GROUP_PROFILE -> groupMemberService.isOwnerOrManager(requesterId, keyNum);
+            default -> Mono.just(false);
+        };
+    }
+
+    // Utils
+
+    /**
+     * Use the same keys as the MinIO plugin so that files can be migrated between them
+     */
+    private String getKey(@NotNull Long requesterId,
+                          @NotNull ContentType contentType,
+                          @Nullable String keyStr,
+                          @Nullable Long keyNum) {
+        return switch (contentType) {
+            case PROFILE -> requesterId.toString();
+            case GROUP_PROFILE -> {
+                if (keyNum == null) {
+                    throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The group ID must not be null");
+                }
+                yield keyNum.toString();
+            }
+            case ATTACHMENT -> {
+                if (keyNum == null) {
+                    throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "The message ID must not be null");
+                }
+                yield keyStr == null
+                        ? keyNum.toString()
+                        : keyNum + "/" + keyStr;
+            }
+            default -> throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "Unexpected value: " + contentType);
+        };
+    }
+
+    private String getSignedUrl(HttpMethod method, String bucket, String key, long requesterId, long expireAt,
+                                long contentLength) {
+        String signature = urlSigner.sign(method.name(), bucket, key, requesterId, expireAt, contentLength);
+        StringBuilder builder = new StringBuilder(baseUrl.length() + key.length() + 128)
+                .append(baseUrl)
+                .append("/storage/")
+                .append(bucket)
+                .append('/')
+                .append(UriUtils.encodePath(key, StandardCharsets.UTF_8))
+                .append("?uid=")
+                .append(requesterId)
+                .append("&exp=")
+                .append(expireAt);
+        if (method == HttpMethod.PUT) {
+            builder.append("&len=").append(contentLength);
+        }
+        return builder.append("&sig=")
+                .append(signature)
+                .toString();
+    }
+
+    private int getSizeLimit(ContentType contentType) {
+        return switch (contentType) {
+            case PROFILE -> storageProperties.getProfileSizeLimit();
+            case GROUP_PROFILE -> storageProperties.getGroupProfileSizeLimit();
+            case ATTACHMENT -> storageProperties.getAttachmentSizeLimit();
+            default -> throw TurmsBusinessException.get(TurmsStatusCode.ILLEGAL_ARGUMENT, "Unexpected value: " + contentType);
+        };
+    }
+
+    private String getContentType(ContentType contentType) {
+        return switch (contentType) {
+            case PROFILE -> storageProperties.getProfileContentType();
+            case GROUP_PROFILE -> storageProperties.getGroupProfileContentType();
+            default -> storageProperties.getAttachmentContentType();
+        };
+    }
+
+    private static String getBucketName(ContentType contentType) {
+        return contentType.name().toLowerCase().replace("_", "-");
+    }
+
+    @Nullable
+    private static ContentType parseBucketName(String bucket) {
+        for (ContentType type : ContentType.values()) {
+            if (type != ContentType.UNRECOGNIZED && getBucketName(type).equals(bucket)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] getSecret(LocalStorageProperties properties) {
+        String secret = properties.getHmacSecret();
+        if (secret != null && !secret.isBlank()) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        if (properties.isEnabled()) {
+            log.warn("The HMAC secret of the local storage is blank and a random secret is used. " +
+                    "The URLs signed by this server cannot be verified by other servers");
+        }
+        byte[] bytes = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String trimTrailingSlash(String url) {
+        return url.endsWith("/")
+                ? url.substring(0, url.length() - 1)
+                : url;
+    }
+
+    public record StoredBlob(StorageObject object, Path path) {
+    }
+
+    private record WrittenBlob(String hash, long size) {
+    }
+
+}
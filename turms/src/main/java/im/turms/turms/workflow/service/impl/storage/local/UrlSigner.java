@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.turms.turms.workflow.service.impl.storage.local;
+
+import im.turms.server.common.security.HmacSigner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Signs the URLs of the local storage with HMAC-SHA256 so that the HTTP server can authorize
+ * a request by the URL itself without any session.
+ * The signature covers the method, the object, the requester, the expiration time and the content length,
+ * so a URL cannot be reused for other objects, other methods, or after it expires.
+ *
+ * @author James Chen
+ */
+public final class UrlSigner {
+
+    private final HmacSigner signer;
+
+    public UrlSigner(byte[] secret) {
+        signer = new HmacSigner(secret);
+    }
+
+    /**
+     * @param contentLength 0 for GET requests
+     * @return the Base64URL-encoded signature
+     */
+    public String sign(String method, String bucket, String key, long requesterId, long expireAt, long contentLength) {
+        byte[] signature = signer.sign(getPayload(method, bucket, key, requesterId, expireAt, contentLength));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    /**
+     * @return true if the signature is valid and the URL hasn't expired
+     */
+    public boolean verify(String method, String bucket, String key, long requesterId, long expireAt, long contentLength,
+                          String signature, long now) {
+        if (expireAt < now) {
+            return false;
+        }
+        byte[] signatureBytes;
+        try {
+            signatureBytes = Base64.getUrlDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return signer.verify(getPayload(method, bucket, key, requesterId, expireAt, contentLength), signatureBytes);
+    }
+
+    private static byte[] getPayload(String method, String bucket, String key, long requesterId, long expireAt, long contentLength) {
+        String payload = method + "\n" + bucket + "\n" + key + "\n" + requesterId + "\n" + expireAt + "\n" + contentLength;
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.turms.turms.workflow.service.impl.tracing;
+
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.rpc.request.QueryTraceSpansRequest;
+import im.turms.server.common.tracing.SpanData;
+import im.turms.server.common.tracing.Tracer;
+import im.turms.turms.bo.TraceInfo;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queries the traces whose spans are recorded in the memory of all members
+ *
+ * @author James Chen
+ */
+@Log4j2
+@Service
+public class TraceService {
+
+    private final Node node;
+
+    public TraceService(Node node) {
+        this.node = node;
+    }
+
+    /**
+     * A trace is slow if its entry span on any member is slow, so the slow traces are collected
+     * from all members first, and then the spans of these traces are queried from all members
+     * because a trace usually spans multiple members.
+     *
+     * @return the most recent slow traces
+     */
+    public Flux<TraceInfo> queryRecentSlowTraces(int maxTraces) {
+        return querySpansFromAllMembers(null, maxTraces)
+                .flatMapMany(spans -> {
+                    Set<Long> traceIds = getMostRecentTraceIds(spans, maxTraces);
+                    return traceIds.isEmpty()
+                            ? Flux.empty()
+                            : queryTraces(traceIds);
+                });
+    }
+
+    public Flux<TraceInfo> queryTraces(Set<Long> traceIds) {
+        return querySpansFromAllMembers(traceIds, 0)
+                .flatMapIterable(this::assembleTraces);
+    }
+
+    /**
+     * @return the spans responded by the available members,
+     * and the members that failed to respond are ignored
+     * so that the traces can still be troubleshot partially
+     */
+    private Mono<List<SpanData>> querySpansFromAllMembers(@Nullable Set<Long> traceIds, int maxSlowTraces) {
+        Tracer tracer = Tracer.getGlobal();
+        List<SpanData> localSpans = traceIds == null
+                ? tracer.getRecentSpans(tracer.getRecentSlowTraceIds(maxSlowTraces))
+                : tracer.getRecentSpans(traceIds);
+        List<String> memberIds = node.getDiscoveryService().getOtherActiveConnectedMemberIds();
+        if (memberIds.isEmpty()) {
+            return Mono.just(localSpans);
+        }
+        List<Mono<List<SpanData>>> monos = new ArrayList<>(memberIds.size());
+        for (String memberId : memberIds) {
+            QueryTraceSpansRequest request = new QueryTraceSpansRequest(traceIds, maxSlowTraces);
+            Mono<List<SpanData>> mono = node.getRpcService()
+                    .requestStream(memberId, request)
+                    .collectList()
+                    .onErrorResume(t -> {
+                        log.error("Failed to query the trace spans from the member {}", memberId, t);
+                        return Mono.empty();
+                    });
+            monos.add(mono);
+        }
+        return Flux.merge(monos)
+                .<List<SpanData>>collect(() -> new ArrayList<>(localSpans), List::addAll);
+    }
+
+    private Set<Long> getMostRecentTraceIds(List<SpanData> spans, int maxTraces) {
+        Map<Long, Long> traceIdToStartTime = new HashMap<>(spans.size());
+        for (SpanData span : spans) {
+            traceIdToStartTime.merge(span.traceId(), span.startEpochMicros(), Math::max);
+        }
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(traceIdToStartTime.entrySet());
+        entries.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+        int size = Math.min(maxTraces, entries.size());
+        Set<Long> traceIds = new LinkedHashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            traceIds.add(entries.get(i).getKey());
+        }
+        return traceIds;
+    }
+
+    /**
+     * @return the traces sorted from the most recent to the oldest
+     */
+    private List<TraceInfo> assembleTraces(List<SpanData> spans) {
+        if (spans.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, List<SpanData>> traceIdToSpans = new HashMap<>(32);
+        for (SpanData span : spans) {
+            traceIdToSpans.computeIfAbsent(span.traceId(), key -> new ArrayList<>()).add(span);
+        }
+        List<TraceInfo> traces = new ArrayList<>(traceIdToSpans.size());
+        for (Map.Entry<Long, List<SpanData>> entry : traceIdToSpans.entrySet()) {
+            List<SpanData> traceSpans = entry.getValue();
+            traceSpans.sort(Comparator.comparingLong(SpanData::startEpochMicros));
+            long start = traceSpans.get(0).startEpochMicros();
+            long end = start;
+            for (SpanData span : traceSpans) {
+                end = Math.max(end, span.startEpochMicros() + span.durationMicros());
+            }
+            traces.add(new TraceInfo(entry.getKey(), start, end - start, traceSpans));
+        }
+        traces.sort(Comparator.comparingLong(TraceInfo::startEpochMicros).reversed());
+        return traces;
+    }
+
+}
@@ -35,20 +35,24 @@ import im.turms.server.common.mongo.TurmsMongoClient;
 import im.turms.server.common.mongo.operation.option.Filter;
 import im.turms.server.common.mongo.operation.option.QueryOptions;
 import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.service.session.ResumptionTicketRevocationService;
 import im.turms.server.common.util.AssertUtil;
+import im.turms.server.common.util.ReactorUtil;
 import im.turms.turms.bo.ServicePermission;
 import im.turms.turms.constant.DaoConstant;
+import im.turms.turms.constant.DeletionJobTargetType;
 import im.turms.turms.constant.MetricsConstant;
 import im.turms.turms.constant.OperationResultConstant;
 import im.turms.turms.constraint.ValidProfileAccess;
-import im.turms.turms.workflow.service.impl.conversation.ConversationService;
 import im.turms.turms.workflow.service.impl.group.GroupMemberService;
+import im.turms.turms.workflow.service.impl.job.DeletionJobService;
 import im.turms.turms.workflow.service.impl.statistics.MetricsService;
 import im.turms.turms.workflow.service.impl.user.onlineuser.SessionService;
 import im.turms.turms.workflow.service.impl.user.relationship.UserRelationshipGroupService;
 import im.turms.turms.workflow.service.impl.user.relationship.UserRelationshipService;
 import im.turms.turms.workflow.service.util.DomainConstraintUtil;
 import io.micrometer.core.instrument.Counter;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
@@ -68,6 +72,7 @@ import java.util.Set;
  * @author James Chen
  */
 @Component
+@Log4j2
 @DependsOn(IMongoCollectionInitializer.BEAN_NAME)
 public class UserService {
 
@@ -76,7 +81,8 @@ public class UserService {
     private final UserRelationshipGroupService userRelationshipGroupService;
     private final UserVersionService userVersionService;
     private final SessionService sessionService;
-    private final ConversationService conversationService;
+    private final DeletionJobService deletionJobService;
+    private final ResumptionTicketRevocationService resumptionTicketRevocationService;
 
     private final Node node;
     private final PasswordManager passwordManager;
@@ -94,7 +100,8 @@ public class UserService {
             UserVersionService userVersionService,
             UserRelationshipGroupService userRelationshipGroupService,
             SessionService sessionService,
-            ConversationService conversationService,
+            DeletionJobService deletionJobService,
+            ResumptionTicketRevocationService resumptionTicketRevocationService,
             MetricsService metricsService) {
         this.node = node;
         this.mongoClient = mongoClient;
@@ -105,7 +112,8 @@ public class UserService {
         this.userVersionService = userVersionService;
         this.userRelationshipGroupService = userRelationshipGroupService;
         this.sessionService = sessionService;
-        this.conversationService = conversationService;
+        this.deletionJobService = deletionJobService;
+        this.resumptionTicketRevocationService = resumptionTicketRevocationService;
 
         registeredUsersCounter = metricsService.getRegistry().counter(MetricsConstant.REGISTERED_USERS_COUNTER_NAME);
         deletedUsersCounter = metricsService.getRegistry().counter(MetricsConstant.DELETED_USERS_COUNTER_NAME);
@@ -319,34 +327,30 @@ public class UserService {
         }
         Filter filter = Filter.newBuilder(1)
                 .in(DaoConstant.ID_FIELD_NAME, userIds);
-        Mono<DeleteResult> deleteOrUpdateMono;
         if (deleteLogically == null) {
             deleteLogically = node.getSharedProperties().getService().getUser().isDeleteUserLogically();
         }
-        if (deleteLogically) {
-            Date now = new Date();
-            Update update = Update.newBuilder(2)
-                    .set(User.Fields.DELETION_DATE, now)
-                    .set(User.Fields.LAST_UPDATED_DATE, now);
-            deleteOrUpdateMono = mongoClient.updateMany(User.class, filter, update)
-                    .map(OperationResultUtil::update2delete);
-        } else {
-            deleteOrUpdateMono = mongoClient
-                    .inTransaction(session -> mongoClient.deleteMany(session, User.class, filter)
-                            .flatMap(result -> {
-                                long count = result.getDeletedCount();
-                                if (count > 0) {
-                                    deletedUsersCounter.increment(count);
-                                }
-                                return userRelationshipService.deleteAllRelationships(userIds, session, false)
-                                        .then(userRelationshipGroupService.deleteAllRelationshipGroups(userIds, session, false))
-                                        .then(conversationService.deletePrivateConversations(userIds, session))
-                                        .then(userVersionService.delete(userIds, session).onErrorResume(t -> Mono.empty()))
-                                        .thenReturn(result);
-                            }))
-                    .retryWhen(DaoConstant.TRANSACTION_RETRY);
-        }
+        boolean finalDeleteLogically = deleteLogically;
+        Date now = new Date();
+        Update update = Update.newBuilder(2)
+                .set(User.Fields.DELETION_DATE, now)
+                .set(User.Fields.LAST_UPDATED_DATE, now);
+        Mono<DeleteResult> deleteOrUpdateMono = mongoClient.updateMany(User.class, filter, update)
+                .flatMap(result -> {
+                    if (finalDeleteLogically) {
+                        return Mono.just(OperationResultUtil.update2delete(result));
+                    }
+                    long count = result.getModifiedCount();
+                    if (count > 0) {
+                        deletedUsersCounter.increment(count);
+                    }
+                    // Tombstone the users first, and then delete them with their relationships, conversations, etc.
+                    // in batches in the background because there may be too many documents to delete in a transaction
+                    return deletionJobService.createJob(DeletionJobTargetType.USER, userIds, true)
+                            .thenReturn(OperationResultUtil.update2delete(result));
+                });
         return deleteOrUpdateMono
+                .flatMap(result -> revokeResumptionTickets(userIds).thenReturn(result))
                 .doOnNext(ignored -> sessionService.disconnect(userIds, SessionCloseStatus.USER_IS_DELETED_OR_INACTIVATED).subscribe());
     }
 
@@ -408,6 +412,46 @@ public class UserService {
         return mongoClient.findMany(User.class, filter, options);
     }
 
+    /**
+     * Keyset pagination sorted by user ID in ascending order
+     */
+    public Flux<User> queryUsersAfter(
+            @Nullable Collection<Long> userIds,
+            @Nullable DateRange registrationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Boolean isActive,
+            @Nullable Long lastUserId,
+            int size,
+            boolean queryDeletedRecords) {
+        Filter filter = Filter.newBuilder(7)
+                .inIfNotNull(DaoConstant.ID_FIELD_NAME, userIds)
+                .addBetweenIfNotNull(User.Fields.REGISTRATION_DATE, registrationDateRange)
+                .addBetweenIfNotNull(User.Fields.DELETION_DATE, deletionDateRange)
+                .eqIfNotNull(User.Fields.IS_ACTIVE, isActive)
+                .eqIfFalse(User.Fields.DELETION_DATE, null, queryDeletedRecords)
+                .afterIfNotNull(DaoConstant.ID_FIELD_NAME, lastUserId, true);
+        QueryOptions options = QueryOptions.newBuilder(2)
+                .paginateByKeyset(DaoConstant.ID_FIELD_NAME, true, size);
+        return mongoClient.findMany(User.class, filter, options);
+    }
+
+    /**
+     * Streams all matched users batch by batch for exporting
+     */
+    public Flux<User> exportUsers(
+            @Nullable Collection<Long> userIds,
+            @Nullable DateRange registrationDateRange,
+            @Nullable DateRange deletionDateRange,
+            @Nullable Boolean isActive,
+            int batchSize,
+            boolean queryDeletedRecords) {
+        return ReactorUtil.keysetStream(
+                lastUserId -> queryUsersAfter(userIds, registrationDateRange, deletionDateRange, isActive,
+                        lastUserId, batchSize, queryDeletedRecords),
+                User::getId,
+                batchSize);
+    }
+
     public Mono<Long> countRegisteredUsers(@Nullable DateRange dateRange, boolean queryDeletedRecords) {
         Filter filter = Filter.newBuilder(3)
                 .addBetweenIfNotNull(User.Fields.REGISTRATION_DATE, dateRange)
@@ -479,13 +523,29 @@ public class UserService {
                 .setIfNotNull(User.Fields.REGISTRATION_DATE, registrationDate)
                 .setIfNotNull(User.Fields.IS_ACTIVE, isActive)
                 .setIfNotNull(User.Fields.LAST_UPDATED_DATE, new Date());
+        boolean shouldRevokeResumptionTickets = password != null || Boolean.FALSE.equals(isActive);
         return mongoClient.updateMany(User.class, filter, update)
+                .flatMap(result -> shouldRevokeResumptionTickets && result.getModifiedCount() > 0
+                        ? revokeResumptionTickets(userIds).thenReturn(result)
+                        : Mono.just(result))
                 .flatMap(result -> Boolean.FALSE.equals(isActive) && result.getModifiedCount() > 0
                         ? Mono.just(sessionService.disconnect(userIds, SessionCloseStatus.USER_IS_DELETED_OR_INACTIVATED))
                         .onErrorResume(t -> Mono.empty()).thenReturn(result)
                         : Mono.just(result));
     }
 
+    /**
+     * Revokes the session resumption tickets so that the users have to log in with their credentials again.
+     * The users have been updated, so the failure is logged instead of failing the update
+     */
+    private Mono<Void> revokeResumptionTickets(Set<Long> userIds) {
+        return resumptionTicketRevocationService.revokeAllTickets(userIds)
+                .onErrorResume(t -> {
+                    log.error("Failed to revoke the session resumption tickets of the users: {}", userIds, t);
+                    return Mono.empty();
+                });
+    }
+
     private Mono<Boolean> isActiveAndNotDeleted(@NotNull Long userId) {
         Filter filter = Filter.newBuilder(3)
                 .eq(DaoConstant.ID_FIELD_NAME, userId)
@@ -494,4 +554,4 @@ public class UserService {
         return mongoClient.exists(User.class, filter);
     }
 
-}
\ No newline at end of file
+}
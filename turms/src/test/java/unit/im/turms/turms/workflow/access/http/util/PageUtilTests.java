@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.turms.workflow.access.http.util;
+
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.turms.workflow.access.http.util.PageUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author James Chen
+ */
+class PageUtilTests {
+
+    @Test
+    void decodeCursor_shouldReturnEncodedKey() {
+        for (long key : new long[]{0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 123456789012345L}) {
+            String cursor = PageUtil.encodeCursor(key);
+
+            assertThat(cursor).doesNotContain("+", "/", "=");
+            assertThat(PageUtil.decodeCursor(cursor)).isEqualTo(key);
+        }
+    }
+
+    @Test
+    void decodeCursor_shouldReturnNull_forFirstPage() {
+        assertThat(PageUtil.decodeCursor(null)).isNull();
+        assertThat(PageUtil.decodeCursor("")).isNull();
+    }
+
+    @Test
+    void decodeCursor_shouldThrow_forIllegalCursor() {
+        assertThatThrownBy(() -> PageUtil.decodeCursor("not a cursor"))
+                .isInstanceOfSatisfying(TurmsBusinessException.class,
+                        e -> assertThat(e.getCode()).isEqualTo(TurmsStatusCode.ILLEGAL_ARGUMENT));
+        assertThatThrownBy(() -> PageUtil.decodeCursor("AQID"))
+                .isInstanceOfSatisfying(TurmsBusinessException.class,
+                        e -> assertThat(e.getCode()).isEqualTo(TurmsStatusCode.ILLEGAL_ARGUMENT));
+    }
+
+}
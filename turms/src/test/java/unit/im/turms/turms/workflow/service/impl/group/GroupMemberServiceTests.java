@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.turms.workflow.service.impl.group;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.DeleteResult;
+import im.turms.common.constant.GroupMemberRole;
+import im.turms.common.model.dto.notification.TurmsNotification;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.service.session.UserStatusService;
+import im.turms.turms.bo.GroupMemberBulkResult;
+import im.turms.turms.workflow.dao.domain.group.GroupBlockedUser;
+import im.turms.turms.workflow.dao.domain.group.GroupMember;
+import im.turms.turms.workflow.dao.domain.group.GroupType;
+import im.turms.turms.workflow.service.impl.group.GroupMemberService;
+import im.turms.turms.workflow.service.impl.group.GroupService;
+import im.turms.turms.workflow.service.impl.group.GroupVersionService;
+import im.turms.turms.workflow.service.impl.message.OutboundMessageService;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class GroupMemberServiceTests {
+
+    private static final Long GROUP_ID = 1L;
+    private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+    private final TurmsProperties properties = new TurmsProperties();
+    private TurmsMongoClient mongoClient;
+    private GroupService groupService;
+    private GroupVersionService groupVersionService;
+    private OutboundMessageService outboundMessageService;
+    private GroupMemberService groupMemberService;
+
+    @BeforeEach
+    void setUp() {
+        properties.getService().getGroup().setGroupMembersBulkOperationChunkSize(2);
+        mongoClient = mock(TurmsMongoClient.class);
+        groupService = mock(GroupService.class);
+        groupVersionService = mock(GroupVersionService.class);
+        outboundMessageService = mock(OutboundMessageService.class);
+        Node node = mock(Node.class);
+        when(node.getSharedProperties()).thenReturn(properties);
+        groupMemberService = new GroupMemberService(node,
+                mongoClient,
+                groupService,
+                groupVersionService,
+                mock(UserStatusService.class),
+                outboundMessageService);
+        when(groupService.isGroupActiveAndNotDeleted(GROUP_ID)).thenReturn(Mono.just(true));
+        when(groupVersionService.updateMembersVersion(GROUP_ID)).thenReturn(Mono.just(true));
+        when(outboundMessageService.forwardNotification(any(TurmsNotification.class), anySet()))
+                .thenReturn(Mono.just(true));
+        when(mongoClient.count(eq(GroupMember.class), any(Filter.class))).thenReturn(Mono.just(0L));
+        when(mongoClient.findMany(eq(GroupBlockedUser.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.empty());
+    }
+
+    @Test
+    void addGroupMembers_shouldReportBlockedAndExistingUsers_andUpdateVersionOncePerChunk() {
+        mockGroupSizeLimit(null);
+        when(mongoClient.findMany(eq(GroupBlockedUser.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(new GroupBlockedUser(GROUP_ID, 2L, new Date(), 10L)));
+        // The first chunk is [1, 2] and the second chunk is [3, 4], and the user 4 is already a member
+        when(mongoClient.insertAllUnordered(eq(GroupMember.class), any()))
+                .thenReturn(Mono.just(Collections.emptyList()),
+                        Mono.just(List.of(new BulkWriteError(DUPLICATE_KEY_ERROR_CODE, "duplicate key", new BsonDocument(), 1))));
+
+        StepVerifier.create(groupMemberService.addGroupMembers(GROUP_ID, orderedSet(1L, 2L, 3L, 4L), GroupMemberRole.MEMBER, null))
+                .assertNext(result -> {
+                    assertThat(result.getSucceededUserIds()).containsExactly(1L, 3L);
+                    assertThat(result.getFailedUserIds()).isEqualTo(Map.of(
+                            2L, TurmsStatusCode.ADD_BLOCKED_USER_TO_GROUP,
+                            4L, TurmsStatusCode.ADD_EXISTING_MEMBER_TO_GROUP));
+                })
+                .verifyComplete();
+        verify(mongoClient, times(2)).insertAllUnordered(eq(GroupMember.class), any());
+        verify(groupVersionService, times(2)).updateMembersVersion(GROUP_ID);
+        verify(outboundMessageService).forwardNotification(any(TurmsNotification.class), eq(Set.of(1L)));
+        verify(outboundMessageService).forwardNotification(any(TurmsNotification.class), eq(Set.of(3L)));
+    }
+
+    @Test
+    void addGroupMembers_shouldRejectUsersBeyondGroupSizeLimit() {
+        mockGroupSizeLimit(3);
+        when(mongoClient.count(eq(GroupMember.class), any(Filter.class))).thenReturn(Mono.just(1L));
+        when(mongoClient.insertAllUnordered(eq(GroupMember.class), any()))
+                .thenReturn(Mono.just(Collections.emptyList()));
+
+        StepVerifier.create(groupMemberService.addGroupMembers(GROUP_ID, orderedSet(1L, 2L, 3L, 4L), GroupMemberRole.MEMBER, null))
+                .assertNext(result -> {
+                    assertThat(result.getSucceededUserIds()).containsExactly(1L, 2L);
+                    assertThat(result.getFailedUserIds()).isEqualTo(Map.of(
+                            3L, TurmsStatusCode.GROUP_MEMBERS_LIMIT_REACHED,
+                            4L, TurmsStatusCode.GROUP_MEMBERS_LIMIT_REACHED));
+                })
+                .verifyComplete();
+        // The second chunk is rejected without writing
+        verify(mongoClient, times(1)).insertAllUnordered(eq(GroupMember.class), any());
+        verify(groupVersionService, times(1)).updateMembersVersion(GROUP_ID);
+    }
+
+    @Test
+    void addGroupMembers_shouldReject_ifGroupIsInactive() {
+        mockGroupSizeLimit(null);
+        when(groupService.isGroupActiveAndNotDeleted(GROUP_ID)).thenReturn(Mono.just(false));
+
+        StepVerifier.create(groupMemberService.addGroupMembers(GROUP_ID, Set.of(1L), GroupMemberRole.MEMBER, null))
+                .expectErrorMatches(t -> t instanceof TurmsBusinessException e
+                        && e.getCode() == TurmsStatusCode.ADD_USER_TO_INACTIVE_GROUP)
+                .verify();
+        verify(mongoClient, never()).insertAllUnordered(any(), any());
+    }
+
+    @Test
+    void removeGroupMembers_shouldOnlyRemoveExistingMembers() {
+        when(mongoClient.findMany(eq(GroupMember.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(member(1L), member(2L)), Flux.empty());
+        when(mongoClient.deleteMany(eq(GroupMember.class), any(Filter.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(2)));
+
+        StepVerifier.create(groupMemberService.removeGroupMembers(GROUP_ID, orderedSet(1L, 2L, 3L)))
+                .assertNext(result -> {
+                    assertThat(result.getSucceededUserIds()).containsExactlyInAnyOrder(1L, 2L);
+                    assertThat(result.getFailedUserIds())
+                            .isEqualTo(Map.of(3L, TurmsStatusCode.UPDATE_OR_REMOVE_NON_EXISTING_GROUP_MEMBER));
+                })
+                .verifyComplete();
+        verify(mongoClient, times(1)).deleteMany(eq(GroupMember.class), any(Filter.class));
+        verify(groupVersionService, times(1)).updateMembersVersion(GROUP_ID);
+    }
+
+    @Test
+    void updateGroupMemberRoles_shouldNotWrite_ifNoUserIsMember() {
+        when(mongoClient.findMany(eq(GroupMember.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(groupMemberService.updateGroupMemberRoles(GROUP_ID, orderedSet(1L, 2L), GroupMemberRole.MANAGER))
+                .assertNext(result -> {
+                    assertThat(result.getSucceededUserIds()).isEmpty();
+                    assertThat(result.getFailedUserIds()).containsOnlyKeys(1L, 2L);
+                })
+                .verifyComplete();
+        verify(mongoClient, never()).updateMany(any(), any(Filter.class), any(Update.class));
+        verify(groupVersionService, never()).updateMembersVersion(GROUP_ID);
+        verify(outboundMessageService, never()).forwardNotification(any(TurmsNotification.class), anySet());
+    }
+
+    @Test
+    void updateGroupMemberRoles_shouldNotifyChangedMembersOnce() {
+        when(mongoClient.findMany(eq(GroupMember.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(member(1L), member(2L)));
+        when(mongoClient.updateMany(eq(GroupMember.class), any(Filter.class), any(Update.class)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(groupMemberService.updateGroupMemberRoles(GROUP_ID, orderedSet(1L, 2L), GroupMemberRole.MANAGER))
+                .assertNext(result -> assertThat(result.getSucceededUserIds()).containsExactlyInAnyOrder(1L, 2L))
+                .verifyComplete();
+        ArgumentCaptor<TurmsNotification> captor = ArgumentCaptor.forClass(TurmsNotification.class);
+        verify(outboundMessageService).forwardNotification(captor.capture(), eq(Set.of(1L, 2L)));
+        assertThat(captor.getValue().getRelayedRequest().getQueryGroupMembersRequest().getMemberIdsList())
+                .containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    private void mockGroupSizeLimit(Integer groupSizeLimit) {
+        GroupType groupType = new GroupType(1L, "type", groupSizeLimit,
+                null, null, null, null, null, null, null, null);
+        when(groupService.queryGroupType(GROUP_ID)).thenReturn(Mono.just(groupType));
+    }
+
+    private static GroupMember member(Long userId) {
+        return new GroupMember(GROUP_ID, userId, null, GroupMemberRole.MEMBER, new Date(), null);
+    }
+
+    private static Set<Long> orderedSet(Long... userIds) {
+        return new LinkedHashSet<>(List.of(userIds));
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.turms.workflow.service.impl.job;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.dao.domain.User;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.turms.constant.DeletionJobStage;
+import im.turms.turms.constant.DeletionJobTargetType;
+import im.turms.turms.workflow.dao.domain.group.GroupMember;
+import im.turms.turms.workflow.dao.domain.group.GroupVersion;
+import im.turms.turms.workflow.dao.domain.job.DeletionJob;
+import im.turms.turms.workflow.dao.domain.user.UserVersion;
+import im.turms.turms.workflow.service.impl.job.DeletionJobService;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class DeletionJobServiceTests {
+
+    private final TurmsProperties properties = new TurmsProperties();
+    private TurmsMongoClient adminMongoClient;
+    private TurmsMongoClient userMongoClient;
+    private TurmsMongoClient groupMongoClient;
+    private TurmsMongoClient conversationMongoClient;
+    private DeletionJobService deletionJobService;
+
+    @BeforeEach
+    void setUp() {
+        properties.getService().getDeletionJob().setBatchSize(2);
+        properties.getService().getDeletionJob().setBatchIntervalMillis(0);
+        adminMongoClient = mock(TurmsMongoClient.class);
+        userMongoClient = mockEmptyClient();
+        groupMongoClient = mockEmptyClient();
+        conversationMongoClient = mockEmptyClient();
+        when(adminMongoClient.updateOne(eq(DeletionJob.class), any(Filter.class), any(Update.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(adminMongoClient.deleteMany(eq(DeletionJob.class), any(Filter.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(0)));
+        Node node = mock(Node.class);
+        when(node.getSharedProperties()).thenReturn(properties);
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        when(propertiesManager.getLocalProperties()).thenReturn(properties);
+        deletionJobService = new DeletionJobService(node,
+                propertiesManager,
+                mock(TrivialTaskManager.class),
+                adminMongoClient,
+                userMongoClient,
+                groupMongoClient,
+                conversationMongoClient);
+    }
+
+    @Test
+    void createJob_shouldReject_ifUserIdsAreEmpty() {
+        StepVerifier.create(deletionJobService.createJob(DeletionJobTargetType.USER, Collections.emptySet(), true))
+                .expectErrorMatches(t -> t instanceof TurmsBusinessException e
+                        && e.getCode() == TurmsStatusCode.ILLEGAL_ARGUMENT)
+                .verify();
+        verify(adminMongoClient, never()).insert(any());
+    }
+
+    @Test
+    void processJobs_shouldRunEveryStage_andCompleteJob_withoutDeletingTargets() {
+        mockJobs(job(1L, DeletionJobTargetType.USER, DeletionJobStage.first(DeletionJobTargetType.USER), false));
+
+        StepVerifier.create(deletionJobService.processJobs())
+                .verifyComplete();
+
+        List<BsonDocument> updates = captureProgressUpdates(4);
+        assertThat(stageOf(updates.get(0))).isEqualTo(DeletionJobStage.USER_RELATIONSHIP_GROUPS.ordinal());
+        assertThat(stageOf(updates.get(1))).isEqualTo(DeletionJobStage.PRIVATE_CONVERSATIONS.ordinal());
+        assertThat(stageOf(updates.get(2))).isEqualTo(DeletionJobStage.USER_VERSIONS.ordinal());
+        assertCompleted(updates.get(3));
+        verify(userMongoClient).findMany(eq(UserVersion.class), any(Filter.class), any(QueryOptions.class));
+        verify(userMongoClient, never()).findMany(eq(User.class), any(Filter.class), any(QueryOptions.class));
+    }
+
+    @Test
+    void processJobs_shouldDeleteTargetsInLastStage_ifRequested() {
+        mockJobs(job(1L, DeletionJobTargetType.USER, DeletionJobStage.USER_VERSIONS, true));
+
+        StepVerifier.create(deletionJobService.processJobs())
+                .verifyComplete();
+
+        List<BsonDocument> updates = captureProgressUpdates(2);
+        assertThat(stageOf(updates.get(0))).isEqualTo(DeletionJobStage.USERS.ordinal());
+        assertCompleted(updates.get(1));
+        verify(userMongoClient).findMany(eq(User.class), any(Filter.class), any(QueryOptions.class));
+    }
+
+    @Test
+    void processJobs_shouldResumeFromStage_andRepeatStageUntilBatchIsNotFull() {
+        when(groupMongoClient.findMany(eq(GroupVersion.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(groupVersion(1L), groupVersion(2L)), Flux.empty());
+        when(groupMongoClient.deleteMany(eq(GroupVersion.class), any(Filter.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(2)));
+        mockJobs(job(1L, DeletionJobTargetType.GROUP, DeletionJobStage.GROUP_VERSIONS, false));
+
+        StepVerifier.create(deletionJobService.processJobs())
+                .verifyComplete();
+
+        List<BsonDocument> updates = captureProgressUpdates(2);
+        assertThat(stageOf(updates.get(0))).isEqualTo(DeletionJobStage.GROUP_VERSIONS.ordinal());
+        assertThat(deletedCountOf(updates.get(0))).isEqualTo(2L);
+        assertCompleted(updates.get(1));
+        assertThat(deletedCountOf(updates.get(1))).isEqualTo(2L);
+        verify(groupMongoClient, times(2)).findMany(eq(GroupVersion.class), any(Filter.class), any(QueryOptions.class));
+        verify(groupMongoClient, never()).findMany(eq(GroupMember.class), any(Filter.class), any(QueryOptions.class));
+    }
+
+    @Test
+    void processJobs_shouldContinueWithNextJob_ifJobFails() {
+        when(groupMongoClient.findMany(eq(GroupMember.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.error(new IllegalStateException("Mocked error")));
+        mockJobs(job(1L, DeletionJobTargetType.GROUP, DeletionJobStage.GROUP_MEMBERS, false),
+                job(2L, DeletionJobTargetType.USER, DeletionJobStage.USER_VERSIONS, false));
+
+        StepVerifier.create(deletionJobService.processJobs())
+                .verifyComplete();
+
+        List<BsonDocument> updates = captureProgressUpdates(1);
+        assertCompleted(updates.get(0));
+        verify(adminMongoClient).deleteMany(eq(DeletionJob.class), any(Filter.class));
+    }
+
+    private TurmsMongoClient mockEmptyClient() {
+        TurmsMongoClient client = mock(TurmsMongoClient.class);
+        when(client.findMany(any(), any(Filter.class), any(QueryOptions.class))).thenReturn(Flux.empty());
+        return client;
+    }
+
+    private void mockJobs(DeletionJob... jobs) {
+        when(adminMongoClient.findMany(eq(DeletionJob.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(jobs));
+    }
+
+    private List<BsonDocument> captureProgressUpdates(int expectedCount) {
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(adminMongoClient, times(expectedCount)).updateOne(eq(DeletionJob.class), any(Filter.class), captor.capture());
+        return captor.getAllValues()
+                .stream()
+                .map(update -> update.toBsonDocument(BsonDocument.class, null))
+                .toList();
+    }
+
+    private static int stageOf(BsonDocument update) {
+        return update.getDocument("$set").getInt32(DeletionJob.Fields.STAGE).getValue();
+    }
+
+    private static long deletedCountOf(BsonDocument update) {
+        return update.getDocument("$set").getInt64(DeletionJob.Fields.DELETED_COUNT).getValue();
+    }
+
+    private static void assertCompleted(BsonDocument update) {
+        assertThat(update.getDocument("$unset").containsKey(DeletionJob.Fields.STAGE)).isTrue();
+        assertThat(update.getDocument("$set").containsKey(DeletionJob.Fields.COMPLETION_DATE)).isTrue();
+    }
+
+    private static DeletionJob job(Long id, DeletionJobTargetType targetType, DeletionJobStage stage, boolean deleteTargets) {
+        Date now = new Date();
+        return new DeletionJob(id, targetType, Set.of(1L, 2L), deleteTargets, stage, 0L, now, now, null);
+    }
+
+    private static GroupVersion groupVersion(Long groupId) {
+        return new GroupVersion(groupId, null, null, null, null, null, null);
+    }
+
+}
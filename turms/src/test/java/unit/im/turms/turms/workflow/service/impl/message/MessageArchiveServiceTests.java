@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.turms.workflow.service.impl.message;
+
+import im.turms.server.common.bo.common.DateRange;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.codec.MongoCodecProvider;
+import im.turms.server.common.mongo.operation.option.Aggregation;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.mongo.util.SerializationUtil;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.turms.workflow.dao.domain.message.Message;
+import im.turms.turms.workflow.dao.domain.message.MessageArchive;
+import im.turms.turms.workflow.service.impl.message.MessageArchiveService;
+import org.bson.BsonDocument;
+import org.bson.codecs.BsonValueCodecProvider;
+import org.bson.codecs.DocumentCodecProvider;
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class MessageArchiveServiceTests {
+
+    private static final long TARGET_ID = 100L;
+
+    private static CodecRegistry codecRegistry;
+
+    private final Date bucketStartDate = Date.from(Instant.now()
+            .atZone(ZoneId.systemDefault())
+            .truncatedTo(ChronoUnit.DAYS)
+            .minusDays(30)
+            .toInstant());
+    private final Date deliveryDate = Date.from(bucketStartDate.toInstant().plus(1, ChronoUnit.HOURS));
+    private final TurmsProperties properties = new TurmsProperties();
+    private TurmsMongoClient mongoClient;
+    private MessageArchiveService archiveService;
+
+    @BeforeAll
+    static void setUpCodecs() {
+        MongoCodecProvider mongoCodecProvider = new MongoCodecProvider();
+        codecRegistry = CodecRegistries.fromRegistries(
+                CodecRegistries.fromProviders(new ValueCodecProvider(),
+                        new BsonValueCodecProvider(),
+                        new DocumentCodecProvider()),
+                CodecRegistries.fromProviders(mongoCodecProvider));
+        mongoCodecProvider.setRegistry(codecRegistry);
+        SerializationUtil.codecRegistry = codecRegistry;
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = mock(TurmsMongoClient.class);
+        Node node = mock(Node.class);
+        when(node.getSharedProperties()).thenReturn(properties);
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        when(propertiesManager.getLocalProperties()).thenReturn(properties);
+        archiveService = new MessageArchiveService(mongoClient, node, propertiesManager, mock(TrivialTaskManager.class));
+        properties.getService().getMessage().setMaxMessagesPerArchiveBucket(2);
+        when(mongoClient.upsert(eq(MessageArchive.class), any(Filter.class), any(Update.class)))
+                .thenReturn(Mono.empty());
+        when(mongoClient.deleteMany(eq(Message.class), any(Filter.class)))
+                .thenReturn(Mono.empty());
+    }
+
+    @Test
+    void archiveMessages_shouldAppendToNewBucket_ifLatestBucketIsFull() {
+        mockMessages(message(1L, null), message(2L, null), message(3L, null));
+        mockLatestBucket(bucket(0, 1, 1_000, 0L));
+
+        StepVerifier.create(archiveService.archiveMessages(new Date(), 10))
+                .expectNext(3L)
+                .verifyComplete();
+        List<Upsert> upserts = captureUpserts(2);
+        assertThat(upserts.get(0).sequence()).isZero();
+        assertThat(upserts.get(0).pushedMessageCount()).isEqualTo(1);
+        assertThat(upserts.get(0).maxExistingCount()).isEqualTo(1);
+        assertThat(upserts.get(1).sequence()).isEqualTo(1);
+        assertThat(upserts.get(1).pushedMessageCount()).isEqualTo(2);
+        assertThat(upserts.get(1).maxExistingCount()).isZero();
+        verify(mongoClient).deleteMany(eq(Message.class), any(Filter.class));
+    }
+
+    @Test
+    void archiveMessages_shouldSkipArchivedMessages_ifPreviousRunFailedAfterAppending() {
+        mockMessages(message(1L, null), message(2L, null), message(3L, null));
+        mockLatestBucket(bucket(0, 1, 1_000, 2L));
+
+        StepVerifier.create(archiveService.archiveMessages(new Date(), 10))
+                .expectNext(3L)
+                .verifyComplete();
+        List<Upsert> upserts = captureUpserts(1);
+        assertThat(upserts.get(0).sequence()).isZero();
+        assertThat(upserts.get(0).pushedMessageCount()).isEqualTo(1);
+        assertThat(upserts.get(0).lastMessageIdGuard()).isEqualTo(3L);
+        // All messages are deleted from the message collection because they have been archived
+        verify(mongoClient).deleteMany(eq(Message.class), any(Filter.class));
+    }
+
+    @Test
+    void archiveMessages_shouldAppendToNewBucket_ifBucketSizeWouldExceedLimit() {
+        byte[] largeRecord = new byte[6 * 1024 * 1024];
+        mockMessages(message(1L, largeRecord));
+        mockLatestBucket(bucket(0, 1, 3 * 1024 * 1024, 0L));
+
+        StepVerifier.create(archiveService.archiveMessages(new Date(), 10))
+                .expectNext(1L)
+                .verifyComplete();
+        List<Upsert> upserts = captureUpserts(1);
+        assertThat(upserts.get(0).sequence()).isEqualTo(1);
+    }
+
+    @Test
+    void queryMessages_shouldReject_ifNeitherTargetIdsNorStartDateIsSpecified() {
+        DateRange range = DateRange.of(null, deliveryDate);
+        Flux<Message> messages = archiveService.queryMessages(Filter.newBuilder(), null, null, range, true, 0, 10);
+
+        StepVerifier.create(messages)
+                .expectErrorMatches(t -> t instanceof TurmsBusinessException e
+                        && e.getCode() == TurmsStatusCode.ILLEGAL_ARGUMENT)
+                .verify();
+        verify(mongoClient, never()).aggregate(any(), any(Aggregation.class), any());
+    }
+
+    @Test
+    void queryMessages_shouldPaginateInPipeline() {
+        when(mongoClient.aggregate(eq(MessageArchive.class), any(Aggregation.class), eq(Message.class)))
+                .thenReturn(Flux.just(message(1L, null)));
+
+        StepVerifier.create(archiveService.queryMessages(Filter.newBuilder(), false, Set.of(TARGET_ID), null, true, 20, 10))
+                .expectNextCount(1)
+                .verifyComplete();
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoClient).aggregate(eq(MessageArchive.class), captor.capture(), eq(Message.class));
+        List<BsonDocument> stages = captor.getValue().getStages()
+                .stream()
+                .map(this::toDocument)
+                .toList();
+        assertThat(stages.get(0).getDocument("$match").containsKey(MessageArchive.Fields.ID_TARGET_ID)).isTrue();
+        assertThat(stages).anyMatch(stage -> stage.containsKey("$skip") && stage.getInt32("$skip").getValue() == 20);
+        assertThat(stages.get(stages.size() - 1).getInt32("$limit").getValue()).isEqualTo(10);
+    }
+
+    @Test
+    void deleteExpiredArchives_shouldKeepMessages_ifHandlersKeepThem() {
+        mockExpiredBucket(message(1L, null), message(2L, null));
+        when(mongoClient.updateOne(eq(MessageArchive.class), any(Filter.class), any(Update.class)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(archiveService.deleteExpiredArchives(24, messages -> Mono.just(messages.subList(0, 1))))
+                .verifyComplete();
+        ArgumentCaptor<Filter> filterCaptor = ArgumentCaptor.forClass(Filter.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoClient).updateOne(eq(MessageArchive.class), filterCaptor.capture(), updateCaptor.capture());
+        verify(mongoClient, never()).deleteMany(eq(MessageArchive.class), any(Filter.class));
+        // The bucket is updated only if no message has been pushed to it since it was read
+        assertThat(toDocument(filterCaptor.getValue()).getInt32(MessageArchive.Fields.MESSAGE_COUNT).getValue()).isEqualTo(2);
+        BsonDocument set = toDocument(updateCaptor.getValue()).getDocument("$set");
+        assertThat(set.getInt32(MessageArchive.Fields.MESSAGE_COUNT).getValue()).isEqualTo(1);
+        assertThat(set.getArray(MessageArchive.Fields.MESSAGES)).hasSize(1);
+    }
+
+    @Test
+    void deleteExpiredArchives_shouldDeleteBucket_ifHandlersDeleteAllMessages() {
+        mockExpiredBucket(message(1L, null), message(2L, null));
+        when(mongoClient.deleteMany(eq(MessageArchive.class), any(Filter.class)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(archiveService.deleteExpiredArchives(24, Mono::just))
+                .verifyComplete();
+        verify(mongoClient).deleteMany(eq(MessageArchive.class), any(Filter.class));
+        verify(mongoClient, never()).updateOne(eq(MessageArchive.class), any(Filter.class), any(Update.class));
+    }
+
+    private void mockExpiredBucket(Message... messages) {
+        MessageArchive.Key key = new MessageArchive.Key(TARGET_ID, false, bucketStartDate, 0);
+        MessageArchive bucket = new MessageArchive(key, List.of(messages), messages.length, 0L,
+                messages[messages.length - 1].getId(), bucketStartDate, new Date());
+        when(mongoClient.findMany(eq(MessageArchive.class), any(Filter.class)))
+                .thenReturn(Flux.just(bucket));
+    }
+
+    private void mockMessages(Message... messages) {
+        when(mongoClient.findMany(eq(Message.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(messages));
+    }
+
+    private void mockLatestBucket(MessageArchive bucket) {
+        when(mongoClient.findOne(eq(MessageArchive.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Mono.just(bucket));
+    }
+
+    private List<Upsert> captureUpserts(int expectedCount) {
+        ArgumentCaptor<Filter> filterCaptor = ArgumentCaptor.forClass(Filter.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoClient, times(expectedCount))
+                .upsert(eq(MessageArchive.class), filterCaptor.capture(), updateCaptor.capture());
+        List<Filter> filters = filterCaptor.getAllValues();
+        List<Update> updates = updateCaptor.getAllValues();
+        return IntStream.range(0, expectedCount)
+                .mapToObj(i -> {
+                    BsonDocument filter = toDocument(filters.get(i));
+                    BsonDocument update = toDocument(updates.get(i));
+                    return new Upsert(
+                            filter.getDocument("_id").getInt32(MessageArchive.Key.Fields.SEQUENCE).getValue(),
+                            filter.getDocument(MessageArchive.Fields.MESSAGE_COUNT).getInt32("$lte").getValue(),
+                            filter.getDocument(MessageArchive.Fields.LAST_MESSAGE_ID).getInt64("$lt").getValue(),
+                            update.getDocument("$push")
+                                    .getDocument(MessageArchive.Fields.MESSAGES)
+                                    .getArray("$each")
+                                    .size());
+                })
+                .toList();
+    }
+
+    private BsonDocument toDocument(Bson bson) {
+        return bson.toBsonDocument(BsonDocument.class, codecRegistry);
+    }
+
+    private Message message(long id, byte[] record) {
+        return new Message(id, false, false, deliveryDate, null, null, null, "text", 1L, TARGET_ID,
+                record == null ? null : List.of(record), null, null);
+    }
+
+    private MessageArchive bucket(int sequence, int messageCount, long messagesSize, long lastMessageId) {
+        MessageArchive.Key key = new MessageArchive.Key(TARGET_ID, false, bucketStartDate, sequence);
+        return new MessageArchive(key, null, messageCount, messagesSize, lastMessageId, bucketStartDate, new Date());
+    }
+
+    private record Upsert(int sequence, int maxExistingCount, long lastMessageIdGuard, int pushedMessageCount) {
+    }
+
+}
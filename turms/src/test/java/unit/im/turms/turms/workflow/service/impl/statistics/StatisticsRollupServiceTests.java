@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package unit.im.turms.turms.workflow.service.impl.statistics;
+
+import im.turms.server.common.bo.common.DateRange;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.turms.constant.DivideBy;
+import im.turms.turms.constant.StatisticsMetric;
+import im.turms.turms.workflow.dao.domain.statistics.StatisticsRollup;
+import im.turms.turms.workflow.service.impl.group.GroupService;
+import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.statistics.StatisticsRollupService;
+import im.turms.turms.workflow.service.impl.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class StatisticsRollupServiceTests {
+
+    /**
+     * A closed day in the past so that all of its hours are closed buckets
+     */
+    private final ZonedDateTime day = ZonedDateTime.now(ZoneId.systemDefault())
+            .truncatedTo(ChronoUnit.DAYS)
+            .minusDays(2);
+
+    private final TurmsProperties properties = new TurmsProperties();
+    private TurmsMongoClient mongoClient;
+    private MessageService messageService;
+    private UserService userService;
+    private GroupService groupService;
+    private StatisticsRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = mock(TurmsMongoClient.class);
+        messageService = mock(MessageService.class);
+        userService = mock(UserService.class);
+        groupService = mock(GroupService.class);
+        Node node = mock(Node.class);
+        when(node.getSharedProperties()).thenReturn(properties);
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        when(propertiesManager.getLocalProperties()).thenReturn(properties);
+        rollupService = new StatisticsRollupService(mongoClient,
+                node,
+                propertiesManager,
+                mock(TrivialTaskManager.class),
+                messageService,
+                userService,
+                groupService);
+        when(messageService.countSentMessages(any(), isNull(), isNull())).thenReturn(Mono.just(1L));
+    }
+
+    @Test
+    void count_shouldCountRawCollection_ifRollupIsDisabled() {
+        properties.getService().getAdminApi().getStatisticsRollup().setEnabled(false);
+        DateRange range = range(hour(10), hour(14));
+
+        StepVerifier.create(rollupService.count(StatisticsMetric.SENT_MESSAGES, range))
+                .expectNext(1L)
+                .verifyComplete();
+        verify(messageService).countSentMessages(range, null, null);
+        verify(mongoClient, never()).findMany(any(), any(Filter.class), any(QueryOptions.class));
+    }
+
+    @Test
+    void count_shouldSumHourlyRollups_andCountRawCollectionForPartialHours() {
+        when(mongoClient.findMany(eq(StatisticsRollup.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(
+                        rollup(StatisticsMetric.SENT_MESSAGES, DivideBy.HOUR, hour(11), 5L),
+                        rollup(StatisticsMetric.SENT_MESSAGES, DivideBy.HOUR, hour(12), 7L)));
+        DateRange range = range(hour(10).plusMinutes(30), hour(13).plusMinutes(30));
+
+        StepVerifier.create(rollupService.count(StatisticsMetric.SENT_MESSAGES, range))
+                .expectNext(5L + 7L + 2L)
+                .verifyComplete();
+        verify(messageService).countSentMessages(range(hour(10).plusMinutes(30), hour(11)), null, null);
+        verify(messageService).countSentMessages(range(hour(13), hour(13).plusMinutes(30)), null, null);
+        verify(messageService, times(2)).countSentMessages(any(), isNull(), isNull());
+    }
+
+    @Test
+    void count_shouldCountRawCollection_forHoursWithoutRollups() {
+        when(mongoClient.findMany(eq(StatisticsRollup.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(rollup(StatisticsMetric.SENT_MESSAGES, DivideBy.HOUR, hour(10), 5L)));
+        DateRange range = range(hour(10), hour(13));
+
+        StepVerifier.create(rollupService.count(StatisticsMetric.SENT_MESSAGES, range))
+                .expectNext(5L + 1L)
+                .verifyComplete();
+        verify(messageService).countSentMessages(range(hour(11), hour(13)), null, null);
+        verify(messageService, times(1)).countSentMessages(any(), isNull(), isNull());
+    }
+
+    @Test
+    void count_shouldUseRollupOfNonAdditiveMetric_ifRangeMatchesClosedDay() {
+        when(mongoClient.findOne(eq(StatisticsRollup.class), any(Filter.class)))
+                .thenReturn(Mono.just(rollup(StatisticsMetric.USERS_WHO_SENT_MESSAGES, DivideBy.DAY, day, 9L)));
+        DateRange range = range(day, day.plusDays(1));
+
+        StepVerifier.create(rollupService.count(StatisticsMetric.USERS_WHO_SENT_MESSAGES, range))
+                .expectNext(9L)
+                .verifyComplete();
+        verify(messageService, never()).countUsersWhoSentMessage(any(), any(), any());
+    }
+
+    @Test
+    void count_shouldCountRawCollection_ifNonAdditiveRangeDoesNotMatchBucket() {
+        when(messageService.countUsersWhoSentMessage(any(), isNull(), eq(false))).thenReturn(Mono.just(3L));
+        DateRange range = range(hour(10), hour(12));
+
+        StepVerifier.create(rollupService.count(StatisticsMetric.USERS_WHO_SENT_MESSAGES, range))
+                .expectNext(3L)
+                .verifyComplete();
+        verify(mongoClient, never()).findOne(any(), any(Filter.class));
+    }
+
+    @Test
+    void rollup_shouldOnlyComputeMissingBuckets() {
+        properties.getService().getAdminApi().getStatisticsRollup().setMaxBackfillHours(2);
+        ZonedDateTime lastClosedHour = ZonedDateTime.now(ZoneId.systemDefault())
+                .truncatedTo(ChronoUnit.HOURS)
+                .minusHours(1);
+        // Every metric has the rollup of the last closed hour
+        when(mongoClient.findMany(eq(StatisticsRollup.class), any(Filter.class), any(QueryOptions.class)))
+                .thenAnswer(invocation -> Flux.just(
+                        rollup(StatisticsMetric.SENT_MESSAGES, DivideBy.HOUR, lastClosedHour, 1L)));
+        when(mongoClient.upsert(eq(StatisticsRollup.class), any(Filter.class), any(Update.class)))
+                .thenReturn(Mono.empty());
+        when(messageService.countUsersWhoSentMessage(any(), any(), any())).thenReturn(Mono.just(1L));
+        when(messageService.countGroupsThatSentMessages(any())).thenReturn(Mono.just(1L));
+        when(userService.countRegisteredUsers(any(), eq(true))).thenReturn(Mono.just(1L));
+        when(userService.countDeletedUsers(any())).thenReturn(Mono.just(1L));
+        when(groupService.countCreatedGroups(any())).thenReturn(Mono.just(1L));
+        when(groupService.countDeletedGroups(any())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(rollupService.rollup())
+                .verifyComplete();
+        // Only the hour before the last closed hour is missing for SENT_MESSAGES
+        verify(messageService).countSentMessages(range(lastClosedHour.minusHours(1), lastClosedHour), null, null);
+        verify(messageService, times(1)).countSentMessages(any(), isNull(), isNull());
+        verify(mongoClient, times(StatisticsMetric.values().length))
+                .upsert(eq(StatisticsRollup.class), any(Filter.class), any(Update.class));
+    }
+
+    private ZonedDateTime hour(int hour) {
+        return day.plusHours(hour);
+    }
+
+    private static DateRange range(ZonedDateTime start, ZonedDateTime end) {
+        return DateRange.of(Date.from(start.toInstant()), Date.from(end.toInstant()));
+    }
+
+    private static StatisticsRollup rollup(StatisticsMetric metric, DivideBy granularity, ZonedDateTime start, long count) {
+        StatisticsRollup.Key key = new StatisticsRollup.Key(metric, granularity, Date.from(start.toInstant()));
+        return new StatisticsRollup(key, count, new Date());
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package unit.im.turms.turms.workflow.service.impl.storage.local;
+
+import com.google.common.hash.Hashing;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import im.turms.server.common.cluster.node.Node;
+import im.turms.server.common.constant.TurmsStatusCode;
+import im.turms.server.common.exception.TurmsBusinessException;
+import im.turms.server.common.manager.TrivialTaskManager;
+import im.turms.server.common.mongo.TurmsMongoClient;
+import im.turms.server.common.mongo.operation.option.Filter;
+import im.turms.server.common.mongo.operation.option.QueryOptions;
+import im.turms.server.common.mongo.operation.option.Update;
+import im.turms.server.common.property.TurmsProperties;
+import im.turms.server.common.property.TurmsPropertiesManager;
+import im.turms.server.common.property.constant.BlobLayoutType;
+import im.turms.server.common.property.env.service.ServiceProperties;
+import im.turms.server.common.property.env.service.business.LocalStorageProperties;
+import im.turms.server.common.property.env.service.business.StorageProperties;
+import im.turms.turms.workflow.dao.domain.storage.StorageObject;
+import im.turms.turms.workflow.dao.domain.storage.StorageUsage;
+import im.turms.turms.workflow.service.impl.group.GroupMemberService;
+import im.turms.turms.workflow.service.impl.message.MessageService;
+import im.turms.turms.workflow.service.impl.storage.local.BlobLayout;
+import im.turms.turms.workflow.service.impl.storage.local.LocalStorageService;
+import im.turms.turms.workflow.service.impl.storage.local.UrlSigner;
+import org.bson.BsonInt64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author James Chen
+ */
+class LocalStorageServiceTests {
+
+    private static final String SECRET = "secret";
+    private static final String BUCKET = "attachment";
+    private static final long USER_ID = 1L;
+    private static final long QUOTA = 100L;
+
+    private final UrlSigner signer = new UrlSigner(SECRET.getBytes(StandardCharsets.UTF_8));
+
+    @TempDir
+    Path dir;
+
+    private Path blobDir;
+    private TurmsMongoClient mongoClient;
+    private LocalStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        blobDir = dir.resolve("blobs");
+        LocalStorageProperties localStorageProperties = new LocalStorageProperties().toBuilder()
+                .enabled(true)
+                .dir(dir.toString())
+                .hmacSecret(SECRET)
+                .layout(BlobLayoutType.FLAT)
+                .userQuotaBytes(QUOTA)
+                .build();
+        TurmsProperties properties = new TurmsProperties().toBuilder()
+                .service(new ServiceProperties().toBuilder()
+                        .storage(new StorageProperties().toBuilder()
+                                .local(localStorageProperties)
+                                .build())
+                        .build())
+                .build();
+        TurmsPropertiesManager propertiesManager = mock(TurmsPropertiesManager.class);
+        when(propertiesManager.getLocalProperties())
+                .thenReturn(properties);
+        ObjectProvider<BlobLayout> blobLayoutProvider = mock(ObjectProvider.class);
+        when(blobLayoutProvider.getIfAvailable(any()))
+                .thenReturn(BlobLayout.of(BlobLayoutType.FLAT));
+
+        mongoClient = mock(TurmsMongoClient.class);
+        when(mongoClient.exists(eq(StorageUsage.class), any()))
+                .thenReturn(Mono.just(true));
+        when(mongoClient.updateOne(eq(StorageUsage.class), any(), any()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoClient.findById(eq(StorageObject.class), any()))
+                .thenReturn(Mono.empty());
+        when(mongoClient.insert(any()))
+                .thenReturn(Mono.empty());
+        when(mongoClient.findMany(eq(StorageObject.class), any(Filter.class)))
+                .thenReturn(Flux.empty());
+        when(mongoClient.findMany(eq(StorageObject.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.empty());
+
+        service = new LocalStorageService(mock(Node.class),
+                propertiesManager,
+                mock(TrivialTaskManager.class),
+                mongoClient,
+                mock(MessageService.class),
+                mock(GroupMemberService.class),
+                blobLayoutProvider);
+    }
+
+    // Deduplication
+
+    @Test
+    void upload_shouldStoreIdenticalContentOnce() throws IOException {
+        byte[] content = "hello".getBytes(StandardCharsets.UTF_8);
+
+        StepVerifier.create(upload("1/a", content, content.length))
+                .verifyComplete();
+        StepVerifier.create(upload("2/b", content, content.length))
+                .verifyComplete();
+
+        assertThat(listFiles(blobDir)).containsExactly(blobDir.resolve(hash(content)));
+        assertThat(listFiles(dir.resolve("tmp"))).isEmpty();
+        verify(mongoClient, times(2)).insert(any(StorageObject.class));
+    }
+
+    // Quota
+
+    @Test
+    void upload_shouldRejectWithoutWritingBlob_ifQuotaCannotBeReserved() throws IOException {
+        when(mongoClient.updateOne(eq(StorageUsage.class), any(), any()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+        byte[] content = new byte[10];
+
+        StepVerifier.create(upload("1", content, content.length))
+                .expectErrorMatches(t -> isBusinessException(t, TurmsStatusCode.STORAGE_QUOTA_EXCEEDED))
+                .verify();
+
+        ArgumentCaptor<Filter> filterCaptor = ArgumentCaptor.forClass(Filter.class);
+        verify(mongoClient).updateOne(eq(StorageUsage.class), filterCaptor.capture(), any());
+        assertThat(filterCaptor.getValue().toBsonDocument(null, null)
+                .getDocument(StorageUsage.Fields.SIZE)
+                .get("$lte"))
+                .isEqualTo(new BsonInt64(QUOTA - content.length));
+        assertThat(listFiles(blobDir)).isEmpty();
+    }
+
+    @Test
+    void upload_shouldReleaseReservedQuota_ifUploadFails() {
+        byte[] content = new byte[4];
+
+        StepVerifier.create(upload("1", content, 2))
+                .expectErrorMatches(t -> isBusinessException(t, TurmsStatusCode.FILE_TOO_LARGE))
+                .verify();
+
+        List<Long> increments = captureUsageIncrements();
+        assertThat(increments).containsExactly(2L, -2L);
+    }
+
+    @Test
+    void upload_shouldReleaseSizeOfReplacedObject() {
+        StorageObject oldObject = new StorageObject(BUCKET + "/1", BUCKET, "hash", 30L, null, USER_ID, new Date());
+        when(mongoClient.findById(eq(StorageObject.class), any()))
+                .thenReturn(Mono.just(oldObject));
+        when(mongoClient.updateOne(eq(StorageObject.class), any(), any()))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        byte[] content = new byte[10];
+
+        StepVerifier.create(upload("1", content, 20))
+                .verifyComplete();
+
+        // Reserve 20 bytes, and then release the unused 10 bytes and the 30 bytes of the replaced object
+        assertThat(captureUsageIncrements()).containsExactly(20L, -40L);
+    }
+
+    // GC
+
+    @Test
+    void cleanBlobs_shouldDeleteOnlyUnreferencedBlobsPastGracePeriod() throws IOException {
+        Path orphan = createBlob("orphan", true);
+        Path referenced = createBlob("referenced", true);
+        Path fresh = createBlob("fresh", false);
+        StorageObject object = new StorageObject(BUCKET + "/1", BUCKET, "referenced", 1L, null, USER_ID, new Date());
+        when(mongoClient.findMany(eq(StorageObject.class), any(Filter.class), any(QueryOptions.class)))
+                .thenReturn(Flux.just(object));
+
+        StepVerifier.create(service.cleanBlobs())
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertThat(orphan).doesNotExist();
+        assertThat(referenced).exists();
+        assertThat(fresh).exists();
+    }
+
+    @Test
+    void cleanBlobs_shouldKeepOldBlob_reusedByUpload() throws IOException {
+        byte[] content = "hello".getBytes(StandardCharsets.UTF_8);
+        Path blob = createBlob(hash(content), true);
+
+        StepVerifier.create(upload("1", content, content.length))
+                .verifyComplete();
+        // The object referencing the blob may not be visible to the cleanup yet
+        StepVerifier.create(service.cleanBlobs())
+                .expectNext(0L)
+                .verifyComplete();
+
+        assertThat(blob).exists();
+    }
+
+    @Test
+    void cleanBlobs_shouldReleaseQuotaOfExpiredObjects() {
+        StorageObject expiredObject = new StorageObject(BUCKET + "/1", BUCKET, "hash", 30L, null, USER_ID, new Date(0));
+        when(mongoClient.findMany(eq(StorageObject.class), any(Filter.class)))
+                .thenReturn(Flux.just(expiredObject), Flux.empty(), Flux.empty());
+        when(mongoClient.deleteMany(eq(StorageObject.class), any()))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        StepVerifier.create(service.cleanBlobs())
+                .expectNext(0L)
+                .verifyComplete();
+
+        assertThat(captureUsageIncrements()).containsExactly(-30L);
+    }
+
+    private Mono<Void> upload(String key, byte[] content, long contentLength) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        String signature = signer.sign("PUT", BUCKET, key, USER_ID, expireAt, contentLength);
+        return service.upload(BUCKET, key, USER_ID, expireAt, contentLength, signature, MimeTypeUtils.TEXT_PLAIN,
+                Flux.just(new DefaultDataBufferFactory().wrap(content)));
+    }
+
+    private List<Long> captureUsageIncrements() {
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoClient, atLeastOnce())
+                .updateOne(eq(StorageUsage.class), any(), updateCaptor.capture());
+        return updateCaptor.getAllValues()
+                .stream()
+                .map(update -> update.toBsonDocument(null, null)
+                        .getDocument("$inc")
+                        .getNumber(StorageUsage.Fields.SIZE)
+                        .longValue())
+                .toList();
+    }
+
+    private Path createBlob(String name, boolean isOld) throws IOException {
+        Files.createDirectories(blobDir);
+        Path blob = Files.writeString(blobDir.resolve(name), name);
+        if (isOld) {
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+        }
+        return blob;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static String hash(byte[] content) {
+        return Hashing.sha256().hashBytes(content).toString();
+    }
+
+    private static boolean isBusinessException(Throwable throwable, TurmsStatusCode code) {
+        return throwable instanceof TurmsBusinessException e && e.getCode() == code;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 The Turms Project
+ * https://github.com/turms-im/turms
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.im.turms.turms.workflow.service.impl.storage.local;
+
+import im.turms.turms.workflow.service.impl.storage.local.UrlSigner;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author James Chen
+ */
+class UrlSignerTests {
+
+    private final UrlSigner signer = new UrlSigner("secret".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void verify_shouldReturnTrue_forValidSignature() {
+        String signature = signer.sign("PUT", "attachment", "1/a.png", 1L, 1000L, 100L);
+
+        assertThat(signer.verify("PUT", "attachment", "1/a.png", 1L, 1000L, 100L, signature, 999L)).isTrue();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forExpiredUrl() {
+        String signature = signer.sign("GET", "attachment", "1", 1L, 1000L, 0L);
+
+        assertThat(signer.verify("GET", "attachment", "1", 1L, 1000L, 0L, signature, 1001L)).isFalse();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forTamperedUrl() {
+        String signature = signer.sign("PUT", "attachment", "1", 1L, 1000L, 100L);
+
+        assertThat(signer.verify("GET", "attachment", "1", 1L, 1000L, 100L, signature, 0L)).isFalse();
+        assertThat(signer.verify("PUT", "profile", "1", 1L, 1000L, 100L, signature, 0L)).isFalse();
+        assertThat(signer.verify("PUT", "attachment", "2", 1L, 1000L, 100L, signature, 0L)).isFalse();
+        assertThat(signer.verify("PUT", "attachment", "1", 2L, 1000L, 100L, signature, 0L)).isFalse();
+        assertThat(signer.verify("PUT", "attachment", "1", 1L, 2000L, 100L, signature, 0L)).isFalse();
+        assertThat(signer.verify("PUT", "attachment", "1", 1L, 1000L, 200L, signature, 0L)).isFalse();
+    }
+
+    @Test
+    void verify_shouldReturnFalse_forSignatureByOtherSecret() {
+        UrlSigner otherSigner = new UrlSigner("other".getBytes(StandardCharsets.UTF_8));
+        String signature = otherSigner.sign("GET", "attachment", "1", 1L, 1000L, 0L);
+
+        assertThat(signer.verify("GET", "attachment", "1", 1L, 1000L, 0L, signature, 0L)).isFalse();
+    }
+
+}